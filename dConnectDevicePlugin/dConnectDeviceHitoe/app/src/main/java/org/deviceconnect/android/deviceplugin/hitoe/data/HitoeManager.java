@@ -14,6 +14,7 @@ import android.util.Log;
 import android.widget.Toast;
 
 import org.deviceconnect.android.deviceplugin.hitoe.BuildConfig;
+import org.deviceconnect.android.deviceplugin.hitoe.util.AccelerationRingBuffer;
 import org.deviceconnect.android.deviceplugin.hitoe.util.RawDataParseUtils;
 
 import java.util.ArrayList;
@@ -66,6 +67,10 @@ public class HitoeManager {
     private static final int CONNECTING_RETRY_WAIT = 500;
     /** Connecting retry count. */
     private static final int CONNECTING_RETRY_COUNT = 10;
+    /** Number of acceleration data added to the unit number for extended analysis. */
+    private static final int EX_WINDOW_MARGIN = 5;
+    /** Number of acceleration data by which the window for extended analysis slides. */
+    private static final int EX_WINDOW_SLIDE_NUM = 25;
     /** Device scanning flag. */
     private boolean mScanning;
     /** Device scanning running. */
@@ -134,15 +139,15 @@ public class HitoeManager {
     /** Acceleration's interval. */
     private long mInterval = 0;
     /** Temporary storage data for pose estimation. */
-    private ArrayList<String> mListForPosture;
+    private AccelerationRingBuffer mListForPosture;
     /** Lock for pose estimation. */
     private ReentrantLock mLockForPosture;
     /** Temporary storage data for walking state estimation. */
-    private ArrayList<String> mListForWalk;
+    private AccelerationRingBuffer mListForWalk;
     /** Lock for walking state estimation. */
     private ReentrantLock mLockForWalk;
     /** Temporary storage data for the left and right balance estimation. */
-    private ArrayList<String> mListForLRBalance;
+    private AccelerationRingBuffer mListForLRBalance;
     /** Lock for the left and right balance estimation. */
     private ReentrantLock mLockForLRBalance;
     /** Hitoe API Callback. */
@@ -313,11 +318,11 @@ public class HitoeManager {
         mWalkStateData = new ConcurrentHashMap<>();
         mAccelData = new ConcurrentHashMap<>();
         mConnectionListeners = new ArrayList<>();
-        mListForPosture = new ArrayList<>();
+        mListForPosture = new AccelerationRingBuffer(HitoeConstants.EX_POSTURE_UNIT_NUM + EX_WINDOW_MARGIN + 1);
         mLockForPosture = new ReentrantLock();
-        mListForWalk = new ArrayList<>();
+        mListForWalk = new AccelerationRingBuffer(HitoeConstants.EX_WALK_UNIT_NUM + EX_WINDOW_MARGIN + 1);
         mLockForWalk = new ReentrantLock();
-        mListForLRBalance = new ArrayList<>();
+        mListForLRBalance = new AccelerationRingBuffer(HitoeConstants.EX_LR_BALANCE_UNIT_NUM + EX_WINDOW_MARGIN + 1);
         mLockForLRBalance = new ReentrantLock();
         mListForEx = new ArrayList<>();
         mLockForEx = new ReentrantLock();
@@ -1138,7 +1143,6 @@ public class HitoeManager {
     private void addExReceiverProcess(final int pos, final TempExData exData) {
 
         String keyString = exData.getKey();
-        ArrayList<String> dataList = exData.getDataList();
 
         if (!mRegisterDevices.get(pos).getAvailableExDataList().contains(keyString)) {
 
@@ -1159,18 +1163,9 @@ public class HitoeManager {
         keys[0] = keyString;
 
         StringBuilder paramStringBuilder = new StringBuilder();
-        StringBuilder dataStringBuilder = new StringBuilder();
         String paramString;
         String dataString;
 
-        for (int i = 0; i < dataList.size(); i++) {
-
-            if (dataStringBuilder.length() > 0) {
-
-                dataStringBuilder.append(HitoeConstants.BR);
-            }
-            dataStringBuilder.append(dataList.get(i));
-        }
         if (keyString.equals("ex.posture")) {
 
             if (paramStringBuilder.length() > 0) {
@@ -1221,7 +1216,7 @@ public class HitoeManager {
         }
 
         paramString = paramStringBuilder.toString();
-        dataString = dataStringBuilder.toString();
+        dataString = exData.getData();
         mHitoeSdkAPI.removeReceiver(null);
         responseId = mHitoeSdkAPI.addReceiver(null, keys, mDataReceiverCallback, paramString, dataString);
         if (responseId != HitoeConstants.RES_ID_SUCCESS) {
@@ -1364,18 +1359,11 @@ public class HitoeManager {
      * @param data 周波数領域特徴量データ
      */
     private void parseFreqDomain(final HitoeDevice receiveDevice, final String data) {
-
-        String[] lineList = data.split(HitoeConstants.BR);
-        ArrayList<String> stressInputList = new ArrayList<String>();
-
         if (receiveDevice.getAvailableExDataList().contains("ex.stress")) {
-            for (int i = 0; i < lineList.length; i++) {
-                stressInputList.add(lineList[i]);
-            }
-
+            // 周波数領域特徴量データはそのまま解析に渡す
             try {
                 mLockForEx.lock();
-                mListForEx.add(new TempExData("ex.stress", stressInputList));
+                mListForEx.add(new TempExData("ex.stress", data));
             } finally {
                 mLockForEx.unlock();
             }
@@ -1439,131 +1427,78 @@ public class HitoeManager {
      * @param receiveDevice receive device
      */
     private void analyzeAccelerationData(final String rawData, final HitoeDevice receiveDevice) {
-        String[] lineList = rawData.split(HitoeConstants.BR);
-        ArrayList<String> postureInputList  = new ArrayList<String>();
-        ArrayList<String> walkInputList  = new ArrayList<String>();
-        ArrayList<String> lrBalanceInputList  = new ArrayList<String>();
-
-        ArrayList<String> workList = new ArrayList<String>();
-
-        for (int i = 0; i < lineList.length; i++) {
-
-            if (receiveDevice.getAvailableExDataList().contains("ex.posture")) {
-                try {
-                    mLockForPosture.lock();
-                    mListForPosture.add(lineList[i]);
-                    if (mListForPosture.size() > HitoeConstants.EX_POSTURE_UNIT_NUM + 5) {
-
-                        for (int j = 0; j < HitoeConstants.EX_POSTURE_UNIT_NUM; j++) {
-
-                            postureInputList.add(mListForPosture.get(j));
-                        }
-                        for (int j = HitoeConstants.EX_POSTURE_UNIT_NUM;
-                                    j < HitoeConstants.EX_POSTURE_UNIT_NUM + 5; j++) {
-
-                            postureInputList.add(mListForPosture.get(j));
-                        }
-                        workList = new ArrayList<>();
-                        for (int j = 25; j < mListForPosture.size(); j++) {
-
-                            workList.add(mListForPosture.get(j));
-                        }
-                        mListForPosture = workList;
-                    }
-                } finally {
-
-                    mLockForPosture.unlock();
-                }
-                if (postureInputList.size() > 0) {
-
-                    try {
-                        mLockForEx.lock();
-                        mListForEx.add(new TempExData("ex.posture", postureInputList));
-
-                    } finally {
-                        mLockForEx.unlock();
-                    }
+        List<String> exDataList = receiveDevice.getAvailableExDataList();
+        boolean posture = exDataList.contains("ex.posture");
+        boolean walk = exDataList.contains("ex.walk");
+        boolean lrBalance = exDataList.contains("ex.lr_balance");
+        if (!posture && !walk && !lrBalance) {
+            return;
+        }
 
-                    postureInputList.clear();
+        double[] values = new double[3];
+        for (int start = RawDataParseUtils.firstLine(rawData); start < rawData.length();) {
+            int end = RawDataParseUtils.lineEnd(rawData, start);
+            long timestamp;
+            try {
+                timestamp = RawDataParseUtils.parseAccelerationLine(rawData, start, end, values);
+            } catch (NumberFormatException e) {
+                if (BuildConfig.DEBUG) {
+                    Log.w(TAG, "Invalid acceleration data: " + rawData.substring(start, end));
                 }
+                start = RawDataParseUtils.nextLine(rawData, end);
+                continue;
             }
-            if (receiveDevice.getAvailableExDataList().contains("ex.walk")) {
-                try {
-                    mLockForWalk.lock();
-                    mListForWalk.add(lineList[i]);
-                    if (mListForWalk.size() > HitoeConstants.EX_WALK_UNIT_NUM + 5) {
-
-                        for (int j = 0; j < HitoeConstants.EX_WALK_UNIT_NUM; j++) {
-
-                            walkInputList.add(mListForWalk.get(j));
-                        }
-                        for (int j = HitoeConstants.EX_WALK_UNIT_NUM;
-                                    j < HitoeConstants.EX_WALK_UNIT_NUM + 5; j++) {
-
-                            walkInputList.add(mListForWalk.get(j));
-                        }
+            start = RawDataParseUtils.nextLine(rawData, end);
 
-                        workList = new ArrayList<>();
-                        for (int j = 25; j < mListForWalk.size(); j++) {
-
-                            workList.add(mListForWalk.get(j));
-                        }
-                        mListForWalk = workList;
-                    }
-                } finally {
-
-                    mLockForWalk.unlock();
-                }
-                if (walkInputList.size() > 0) {
-
-                    try {
-                        mLockForEx.lock();
-                        mListForEx.add(new TempExData("ex.walk", walkInputList));
-                    } finally {
-                        mLockForEx.unlock();
-                    }
-
-                    walkInputList.clear();
-                }
+            if (posture) {
+                addExWindow("ex.posture", mListForPosture, mLockForPosture,
+                        HitoeConstants.EX_POSTURE_UNIT_NUM, timestamp, values);
             }
-            if (receiveDevice.getAvailableExDataList().contains("ex.lr_balance")) {
-                try {
-                    mLockForLRBalance.lock();
-                    mListForLRBalance.add(lineList[i]);
-                    if (mListForLRBalance.size() > HitoeConstants.EX_LR_BALANCE_UNIT_NUM + 5) {
-
-                        for (int j = 0; j < HitoeConstants.EX_LR_BALANCE_UNIT_NUM; j++) {
-
-                            lrBalanceInputList.add(mListForLRBalance.get(j));
-                        }
-                        for (int j = HitoeConstants.EX_LR_BALANCE_UNIT_NUM;
-                                j < HitoeConstants.EX_LR_BALANCE_UNIT_NUM + 5; j++) {
-
-                            lrBalanceInputList.add(mListForLRBalance.get(j));
-                        }
-                        workList = new ArrayList<>();
-                        for (int j = 25; j < mListForLRBalance.size(); j++) {
-
-                            workList.add(mListForLRBalance.get(j));
-                        }
-                        mListForLRBalance = workList;
-
-                    }
-                } finally {
-
-                    mLockForLRBalance.unlock();
-                }
-                if (lrBalanceInputList.size() > 0) {
-
-                    try {
-                        mLockForEx.lock();
-                        mListForEx.add(new TempExData("ex.lr_balance", lrBalanceInputList));
-                    } finally {
-                        mLockForEx.unlock();
-                    }
+            if (walk) {
+                addExWindow("ex.walk", mListForWalk, mLockForWalk,
+                        HitoeConstants.EX_WALK_UNIT_NUM, timestamp, values);
+            }
+            if (lrBalance) {
+                addExWindow("ex.lr_balance", mListForLRBalance, mLockForLRBalance,
+                        HitoeConstants.EX_LR_BALANCE_UNIT_NUM, timestamp, values);
+            }
+        }
+    }
 
-                    lrBalanceInputList.clear();
-                }
+    /**
+     * Add acceleration data to the window for extended analysis.
+     * <p>
+     * When the window is filled, the data of the window is added to the extended analysis queue,
+     * and the window slides by {@link #EX_WINDOW_SLIDE_NUM}.
+     * </p>
+     * @param key Ex data's key
+     * @param window window
+     * @param lock lock for the window
+     * @param unitNum unit number of the extended analysis
+     * @param timestamp timestamp
+     * @param values x, y and z values
+     */
+    private void addExWindow(final String key, final AccelerationRingBuffer window, final ReentrantLock lock,
+                             final int unitNum, final long timestamp, final double[] values) {
+        String data = null;
+        try {
+            lock.lock();
+            window.add(timestamp, values[0], values[1], values[2]);
+            if (window.size() > unitNum + EX_WINDOW_MARGIN) {
+                StringBuilder builder = new StringBuilder();
+                window.appendTo(builder, unitNum + EX_WINDOW_MARGIN);
+                data = builder.toString();
+                window.discard(EX_WINDOW_SLIDE_NUM);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (data != null) {
+            try {
+                mLockForEx.lock();
+                mListForEx.add(new TempExData(key, data));
+            } finally {
+                mLockForEx.unlock();
             }
         }
     }
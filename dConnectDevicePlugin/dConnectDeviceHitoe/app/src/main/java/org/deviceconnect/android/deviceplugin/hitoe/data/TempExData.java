@@ -6,8 +6,6 @@
  */
 package org.deviceconnect.android.deviceplugin.hitoe.data;
 
-import java.util.ArrayList;
-
 /**
  * Temporary holding the Exdata.
  * @author NTT DOCOMO, INC.
@@ -15,20 +13,17 @@ import java.util.ArrayList;
 public class TempExData {
     /** EX data's key. */
     private String mKey;
-    /** EX data's list. */
-    private ArrayList<String> mDataList;
+    /** EX data. Lines are separated by {@link HitoeConstants#BR}. */
+    private String mData;
 
     /**
      * Consutructor.
      * @param key Key
-     * @param dataList Ex data list
+     * @param data Ex data
      */
-    public TempExData(final String key, final ArrayList<String> dataList) {
+    public TempExData(final String key, final String data) {
         setKey(key);
-        setDataList(new ArrayList<String>());
-        for (int i = 0; i < dataList.size(); i++) {
-            getDataList().add(dataList.get(i));
-        }
+        setData(data);
     }
 
     /**
@@ -48,18 +43,18 @@ public class TempExData {
     }
 
     /**
-     * Get Ex data list.
-     * @return Ex data list
+     * Get Ex data.
+     * @return Ex data
      */
-    public ArrayList<String> getDataList() {
-        return mDataList;
+    public String getData() {
+        return mData;
     }
 
     /**
-     * Set Ex data list.
-     * @param dataList Ex data list
+     * Set Ex data.
+     * @param data Ex data
      */
-    public void setDataList(final ArrayList<String> dataList) {
-        mDataList = dataList;
+    public void setData(final String data) {
+        mData = data;
     }
 }
@@ -0,0 +1,194 @@
+/*
+ AccelerationRingBuffer
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
+
+/**
+ * Fixed-capacity ring buffer of acceleration samples.
+ * <p>
+ * Samples are stored in primitive arrays, so that adding a sample does not allocate.
+ * When the buffer is full, the oldest sample is overwritten.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public final class AccelerationRingBuffer {
+
+    /** Timestamps. */
+    private final long[] mTimestamps;
+    /** X values. */
+    private final double[] mX;
+    /** Y values. */
+    private final double[] mY;
+    /** Z values. */
+    private final double[] mZ;
+    /** Index of the oldest sample. */
+    private int mHead;
+    /** Number of samples. */
+    private int mSize;
+
+    /**
+     * Constructor.
+     * @param capacity max number of samples
+     */
+    public AccelerationRingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity is invalid: " + capacity);
+        }
+        mTimestamps = new long[capacity];
+        mX = new double[capacity];
+        mY = new double[capacity];
+        mZ = new double[capacity];
+    }
+
+    /**
+     * Get the max number of samples.
+     * @return max number of samples
+     */
+    public int capacity() {
+        return mTimestamps.length;
+    }
+
+    /**
+     * Get the number of samples.
+     * @return number of samples
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Add a sample.
+     * @param timestamp timestamp
+     * @param x x value
+     * @param y y value
+     * @param z z value
+     */
+    public void add(final long timestamp, final double x, final double y, final double z) {
+        int index;
+        if (mSize == mTimestamps.length) {
+            index = mHead;
+            mHead = next(mHead);
+        } else {
+            index = position(mSize);
+            mSize++;
+        }
+        mTimestamps[index] = timestamp;
+        mX[index] = x;
+        mY[index] = y;
+        mZ[index] = z;
+    }
+
+    /**
+     * Get the timestamp of the sample.
+     * @param i index of the sample. 0 is the oldest one
+     * @return timestamp
+     */
+    public long getTimestamp(final int i) {
+        return mTimestamps[checkedPosition(i)];
+    }
+
+    /**
+     * Get the x value of the sample.
+     * @param i index of the sample. 0 is the oldest one
+     * @return x value
+     */
+    public double getX(final int i) {
+        return mX[checkedPosition(i)];
+    }
+
+    /**
+     * Get the y value of the sample.
+     * @param i index of the sample. 0 is the oldest one
+     * @return y value
+     */
+    public double getY(final int i) {
+        return mY[checkedPosition(i)];
+    }
+
+    /**
+     * Get the z value of the sample.
+     * @param i index of the sample. 0 is the oldest one
+     * @return z value
+     */
+    public double getZ(final int i) {
+        return mZ[checkedPosition(i)];
+    }
+
+    /**
+     * Remove the oldest samples.
+     * @param count number of samples to remove
+     */
+    public void discard(final int count) {
+        int n = Math.min(count, mSize);
+        mHead = position(n);
+        mSize -= n;
+    }
+
+    /**
+     * Remove all samples.
+     */
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Append the oldest samples in the raw data format.
+     * <p>
+     * Each sample is formatted as "timestamp,x:y:z" and separated by {@link HitoeConstants#BR}.
+     * </p>
+     * @param builder builder
+     * @param count number of samples
+     */
+    public void appendTo(final StringBuilder builder, final int count) {
+        int n = Math.min(count, mSize);
+        for (int i = 0; i < n; i++) {
+            int index = position(i);
+            if (i > 0) {
+                builder.append(HitoeConstants.BR);
+            }
+            builder.append(mTimestamps[index]).append(HitoeConstants.COMMA);
+            RawDataParseUtils.appendDouble(builder, mX[index]);
+            builder.append(HitoeConstants.COLON);
+            RawDataParseUtils.appendDouble(builder, mY[index]);
+            builder.append(HitoeConstants.COLON);
+            RawDataParseUtils.appendDouble(builder, mZ[index]);
+        }
+    }
+
+    /**
+     * Convert the index of the sample to the position in the arrays.
+     * @param i index of the sample
+     * @return position in the arrays
+     */
+    private int position(final int i) {
+        int p = mHead + i;
+        return p >= mTimestamps.length ? p - mTimestamps.length : p;
+    }
+
+    /**
+     * Convert the index of the sample to the position in the arrays with range check.
+     * @param i index of the sample
+     * @return position in the arrays
+     */
+    private int checkedPosition(final int i) {
+        if (i < 0 || i >= mSize) {
+            throw new IndexOutOfBoundsException("index: " + i + ", size: " + mSize);
+        }
+        return position(i);
+    }
+
+    /**
+     * Get the next position.
+     * @param p position
+     * @return next position
+     */
+    private int next(final int p) {
+        return p + 1 == mTimestamps.length ? 0 : p + 1;
+    }
+}
@@ -17,6 +17,7 @@ import org.deviceconnect.android.deviceplugin.hitoe.data.WalkStateData;
 import org.deviceconnect.profile.PoseEstimationProfileConstants;
 import org.deviceconnect.profile.WalkStateProfileConstants;
 
+import java.math.BigDecimal;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -24,10 +25,40 @@ import java.util.TimeZone;
 
 /**
  * A class containing utility methods parse raw data.
+ * <p>
+ * Raw data is scanned by index in a single pass instead of being split into strings,
+ * because ECG and acceleration data arrive many times per second.
+ * </p>
  * @author NTT DOCOMO, INC.
  */
 public final class RawDataParseUtils {
 
+    /** Separator of the fields. */
+    private static final char COMMA = HitoeConstants.COMMA.charAt(0);
+
+    /** Separator of the values in a field. */
+    private static final char COLON = HitoeConstants.COLON.charAt(0);
+
+    /** Max number of digits parsed without {@link Double#parseDouble(String)}. */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /** Powers of ten which are exactly representable by double. */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /** Number of the fields of Walk State data. */
+    private static final int WALK_FIELD_COUNT = 8;
+
+    /** Date format of the timestamp string. */
+    private static final ThreadLocal<DateFormat> DATE_FORMAT = new ThreadLocal<DateFormat>() {
+        @Override
+        protected DateFormat initialValue() {
+            return new SimpleDateFormat("yyyyMMddHHmmss.SSSZZZ");
+        }
+    };
+
     /**
      * Private Constructor.
      */
@@ -92,19 +123,46 @@ public final class RawDataParseUtils {
         if (raw == null) {
             return data;
         }
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] list = lineList[0].split(HitoeConstants.COMMA, -1);
-        String[] accList = list[1].split(HitoeConstants.COLON, -1);
-        double[] accelList = new double[3];
-        for (int i = 0; i < accList.length; i++) {
-            accelList[i] = Double.valueOf(accList[i]);
-        }
-        data.setAccelX(accelList[0]);
-        data.setAccelY(accelList[1]);
-        data.setAccelZ(accelList[2]);
+        int start = skipEmptyLines(raw, 0);
+        int end = lineEnd(raw, start);
+        int xStart = fieldEnd(raw, start, end, COMMA) + 1;
+        int xEnd = fieldEnd(raw, xStart, end, COLON);
+        int yEnd = fieldEnd(raw, xEnd + 1, end, COLON);
+        int zEnd = fieldEnd(raw, yEnd + 1, end, COLON);
+        data.setAccelX(parseDouble(raw, xStart, xEnd));
+        data.setAccelY(parseDouble(raw, xEnd + 1, yEnd));
+        data.setAccelZ(parseDouble(raw, yEnd + 1, zEnd));
         return data;
     }
 
+    /**
+     * Parse a line of Acceleration Data.
+     * <p>
+     * A line is formatted as "timestamp,x:y:z".
+     * </p>
+     * @param raw raw data
+     * @param start start index of the line
+     * @param end end index of the line
+     * @param values array to store x, y and z
+     * @return timestamp
+     * @throws NumberFormatException if the line is not acceleration data
+     */
+    public static long parseAccelerationLine(final String raw, final int start, final int end,
+                                             final double[] values) {
+        int timestampEnd = fieldEnd(raw, start, end, COMMA);
+        if (timestampEnd == end) {
+            throw new NumberFormatException("acceleration is not found: " + raw.substring(start, end));
+        }
+        long timestamp = parseLong(raw, start, timestampEnd);
+        int valueStart = timestampEnd + 1;
+        for (int i = 0; i < values.length; i++) {
+            int valueEnd = fieldEnd(raw, valueStart, end, COLON);
+            values[i] = parseDouble(raw, valueStart, valueEnd);
+            valueStart = valueEnd + 1;
+        }
+        return timestamp;
+    }
+
 
 
     /**
@@ -113,20 +171,17 @@ public final class RawDataParseUtils {
      * @return ECG data object
      */
     public static HeartData parseECG(final String raw) {
-        String[] lineList = raw.split(HitoeConstants.BR);
         HeartData heart = new HeartData();
-        for (int i = 0; i < lineList.length; i++) {
-            String val = lineList[i];
-            if (val == null) {
-                continue;
-            }
-            String[] list = val.split(HitoeConstants.COMMA, -1);
-            long timestamp = Long.parseLong(list[0]);
-            String[] ecgList = list[1].split(HitoeConstants.COLON, -1);
-            String date = nowTimeStampString(timestamp);
-            heart.setValue(Float.parseFloat(ecgList[0]));
+        // Only the last sample is reported.
+        int end = lastLineEnd(raw);
+        if (end > 0) {
+            int start = lineStart(raw, end);
+            int timestampEnd = fieldEnd(raw, start, end, COMMA);
+            int ecgEnd = fieldEnd(raw, timestampEnd + 1, end, COLON);
+            long timestamp = parseLong(raw, start, timestampEnd);
+            heart.setValue((float) parseDouble(raw, timestampEnd + 1, ecgEnd));
             heart.setTimeStamp(timestamp);
-            heart.setTimeStampString(date);
+            heart.setTimeStampString(nowTimeStampString(timestamp));
         }
         heart.setHeartRateType(HeartData.HeartRateType.ECG);
         heart.setMderFloat(MDERFloatConvreterUtils.convertMDERFloatToFloat(heart.getValue()));
@@ -149,13 +204,15 @@ public final class RawDataParseUtils {
         if (raw == null) {
             return stress;
         }
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] stressList = lineList[0].split(HitoeConstants.COMMA, -1);
-        if (stressList[0].isEmpty() || stressList[1].isEmpty()) {
+        int start = skipEmptyLines(raw, 0);
+        int end = lineEnd(raw, start);
+        int timestampEnd = fieldEnd(raw, start, end, COMMA);
+        int lfhfEnd = fieldEnd(raw, timestampEnd + 1, end, COMMA);
+        if (timestampEnd == start || timestampEnd + 1 >= lfhfEnd) {
             return stress;
         }
-        long timestamp = Long.parseLong(stressList[0]);
-        double lfhf = Double.parseDouble(stressList[1]);
+        long timestamp = parseLong(raw, start, timestampEnd);
+        double lfhf = parseDouble(raw, timestampEnd + 1, lfhfEnd);
         stress.setLFHFValue(lfhf);
         stress.setTimeStamp(timestamp);
         stress.setTimeStampString(nowTimeStampString(timestamp));
@@ -173,29 +230,33 @@ public final class RawDataParseUtils {
         if (raw == null) {
             return pose;
         }
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] poseList = lineList[0].split(HitoeConstants.COMMA, -1);
+        int start = skipEmptyLines(raw, 0);
+        int end = lineEnd(raw, start);
+        int timestampEnd = fieldEnd(raw, start, end, COMMA);
         long timestamp  = 0;
         try {
-            timestamp = Long.parseLong(poseList[0]);
+            timestamp = parseLong(raw, start, timestampEnd);
         } catch (NumberFormatException e) {
             return pose;
         }
         pose.setTimeStamp(timestamp);
         pose.setTimeStampString(nowTimeStampString(timestamp));
 
-        String type = poseList[1];
+        int typeStart = timestampEnd + 1;
+        int typeEnd = fieldEnd(raw, typeStart, end, COMMA);
+        int backForwardEnd = fieldEnd(raw, typeEnd + 1, end, COMMA);
+        int leftRightEnd = fieldEnd(raw, backForwardEnd + 1, end, COMMA);
 
-        int backForward = Integer.parseInt(poseList[2]);
-        int leftRight = Integer.parseInt(poseList[3]);
+        int backForward = parseInt(raw, typeEnd + 1, backForwardEnd);
+        int leftRight = parseInt(raw, backForwardEnd + 1, leftRightEnd);
 
-        if (type.equals("LyingLeft")) {
+        if (equalsField(raw, typeStart, typeEnd, "LyingLeft")) {
             pose.setPoseState(PoseEstimationProfileConstants.PoseState.FaceLeft);
-        } else if (type.equals("LyingRight")) {
+        } else if (equalsField(raw, typeStart, typeEnd, "LyingRight")) {
             pose.setPoseState(PoseEstimationProfileConstants.PoseState.FaceRight);
-        } else if (type.equals("LyingFaceUp")) {
+        } else if (equalsField(raw, typeStart, typeEnd, "LyingFaceUp")) {
             pose.setPoseState(PoseEstimationProfileConstants.PoseState.FaceUp);
-        } else if (type.equals("LyingFaceDown")) {
+        } else if (equalsField(raw, typeStart, typeEnd, "LyingFaceDown")) {
             pose.setPoseState(PoseEstimationProfileConstants.PoseState.FaceDown);
         } else {
             if (backForward > HitoeConstants.BACK_FORWARD_THRESHOLD) {
@@ -221,26 +282,29 @@ public final class RawDataParseUtils {
      * @return walk state object
      */
     public static WalkStateData parseWalkState(final WalkStateData data, final String raw) {
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] walkList = lineList[0].split(HitoeConstants.COMMA, -1);
+        int start = skipEmptyLines(raw, 0);
+        int end = lineEnd(raw, start);
+        // Start and end indexes of the fields: timestamp, step, -, -, state, -, speed, distance.
+        int[] fields = new int[WALK_FIELD_COUNT * 2];
+        splitFields(raw, start, end, fields);
         long timestamp  = 0;
         try {
-            timestamp = Long.parseLong(walkList[0]);
+            timestamp = parseLong(raw, fields[0], fields[1]);
         } catch (NumberFormatException e) {
             return data;
         }
         data.setTimeStamp(timestamp);
         data.setTimeStampString(nowTimeStampString(timestamp));
-        data.setStep(Integer.parseInt(walkList[1]));
-        if (walkList[4].equals("Walking")) {
+        data.setStep(parseInt(raw, fields[2], fields[3]));
+        if (equalsField(raw, fields[8], fields[9], "Walking")) {
             data.setState(WalkStateProfileConstants.WalkState.Walking);
-        } else if (walkList[4].equals("Running")) {
+        } else if (equalsField(raw, fields[8], fields[9], "Running")) {
             data.setState(WalkStateProfileConstants.WalkState.Running);
         } else {
             data.setState(WalkStateProfileConstants.WalkState.Stop);
         }
-        data.setSpeed(Double.parseDouble(walkList[6]));
-        data.setDistance(Double.parseDouble(walkList[7]));
+        data.setSpeed(parseDouble(raw, fields[12], fields[13]));
+        data.setDistance(parseDouble(raw, fields[14], fields[15]));
         return data;
     }
 
@@ -251,12 +315,14 @@ public final class RawDataParseUtils {
      * @return walk state object
      */
     public static WalkStateData parseWalkStateForBalance(final WalkStateData data, final String raw) {
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String[] walkList = lineList[0].split(HitoeConstants.COMMA, -1);
-        if (walkList.length <= 1) {
+        int start = skipEmptyLines(raw, 0);
+        int end = lineEnd(raw, start);
+        int timestampEnd = fieldEnd(raw, start, end, COMMA);
+        if (timestampEnd == end) {
             return data;
         }
-        data.setBalance(Double.parseDouble(walkList[1]));
+        int balanceEnd = fieldEnd(raw, timestampEnd + 1, end, COMMA);
+        data.setBalance(parseDouble(raw, timestampEnd + 1, balanceEnd));
         return data;
     }
 
@@ -274,35 +340,254 @@ public final class RawDataParseUtils {
                                             final String type, final int typeCode,
                                             final String unit, final int unitCode) {
         HeartData heart = new HeartData();
-        String[] lineList = raw.split(HitoeConstants.BR);
-        String rateString = lineList[lineList.length - 1];
+        int end = lastLineEnd(raw);
+        int start = lineStart(raw, end);
         heart.setHeartRateType(heartRateType);
-        if (rateString == null) {
-            return null;
-        }
-        String[] hrValue = splitComma(rateString);
-        float rate = Float.parseFloat(hrValue[1]);
+        int timestampEnd = fieldEnd(raw, start, end, COMMA);
+        int rateEnd = fieldEnd(raw, timestampEnd + 1, end, COMMA);
+        float rate = (float) parseDouble(raw, timestampEnd + 1, rateEnd);
+        long timestamp = parseLong(raw, start, timestampEnd);
         heart.setValue(rate);
         heart.setMderFloat(MDERFloatConvreterUtils.convertMDERFloatToFloat(rate));
         heart.setType(type);
         heart.setTypeCode(typeCode);
         heart.setUnit(unit);
         heart.setUnitCode(unitCode);
-        heart.setTimeStamp(Long.parseLong(hrValue[0]));
-        heart.setTimeStampString(nowTimeStampString(Long.parseLong(hrValue[0])));
+        heart.setTimeStamp(timestamp);
+        heart.setTimeStampString(nowTimeStampString(timestamp));
         return heart;
 
     }
 
+    /**
+     * Get the start index of the first non-empty line.
+     * @param raw raw data
+     * @return start index of the first line. If there is no line, length of raw data
+     */
+    public static int firstLine(final String raw) {
+        return skipEmptyLines(raw, 0);
+    }
 
+    /**
+     * Get the end index of the line.
+     * @param raw raw data
+     * @param start start index of the line
+     * @return end index of the line
+     */
+    public static int lineEnd(final String raw, final int start) {
+        int end = raw.indexOf(HitoeConstants.BR, start);
+        return end < 0 ? raw.length() : end;
+    }
+
+    /**
+     * Get the start index of the next non-empty line.
+     * @param raw raw data
+     * @param end end index of the current line
+     * @return start index of the next line. If there is no line, length of raw data
+     */
+    public static int nextLine(final String raw, final int end) {
+        return skipEmptyLines(raw, Math.min(raw.length(), end + HitoeConstants.BR.length()));
+    }
 
     /**
-     * Split Comma.
-     * @param val split value
-     * @return string array
+     * Append a value of raw data.
+     * <p>
+     * The value is appended without exponent.
+     * </p>
+     * @param builder builder
+     * @param value value
      */
-    private static String[] splitComma(final String val) {
-        return val.split(",", -1);
+    public static void appendDouble(final StringBuilder builder, final double value) {
+        double abs = Math.abs(value);
+        if (abs != 0 && (abs < 1e-3 || abs >= 1e7) && !Double.isInfinite(value) && !Double.isNaN(value)) {
+            builder.append(new BigDecimal(Double.toString(value)).stripTrailingZeros().toPlainString());
+        } else {
+            builder.append(value);
+        }
+    }
+
+    /**
+     * Skip empty lines.
+     * @param raw raw data
+     * @param start start index
+     * @return start index of the non-empty line
+     */
+    private static int skipEmptyLines(final String raw, final int start) {
+        int pos = start;
+        while (raw.startsWith(HitoeConstants.BR, pos)) {
+            pos += HitoeConstants.BR.length();
+        }
+        return pos;
+    }
+
+    /**
+     * Get the end index of the last non-empty line.
+     * @param raw raw data
+     * @return end index of the last line
+     */
+    private static int lastLineEnd(final String raw) {
+        int end = raw.length();
+        int brLength = HitoeConstants.BR.length();
+        while (end >= brLength && raw.startsWith(HitoeConstants.BR, end - brLength)) {
+            end -= brLength;
+        }
+        return end;
+    }
+
+    /**
+     * Get the start index of the line.
+     * @param raw raw data
+     * @param end end index of the line
+     * @return start index of the line
+     */
+    private static int lineStart(final String raw, final int end) {
+        if (end == 0) {
+            return 0;
+        }
+        int br = raw.lastIndexOf(HitoeConstants.BR, end - 1);
+        return br < 0 ? 0 : br + HitoeConstants.BR.length();
+    }
+
+    /**
+     * Get the end index of the field.
+     * @param raw raw data
+     * @param start start index of the field
+     * @param end end index of the line
+     * @param separator separator of the fields
+     * @return end index of the field
+     */
+    private static int fieldEnd(final String raw, final int start, final int end, final char separator) {
+        for (int i = start; i < end; i++) {
+            if (raw.charAt(i) == separator) {
+                return i;
+            }
+        }
+        return Math.max(start, end);
+    }
+
+    /**
+     * Split the line into fields.
+     * <p>
+     * The fields which do not exist are set to empty.
+     * </p>
+     * @param raw raw data
+     * @param start start index of the line
+     * @param end end index of the line
+     * @param fields array to store the start and end index of each field
+     */
+    private static void splitFields(final String raw, final int start, final int end, final int[] fields) {
+        int pos = start;
+        for (int i = 0; i < fields.length; i += 2) {
+            int fieldEnd = fieldEnd(raw, pos, end, COMMA);
+            fields[i] = pos;
+            fields[i + 1] = fieldEnd;
+            pos = Math.min(end, fieldEnd + 1);
+        }
+    }
+
+    /**
+     * Check the field is equal to the value.
+     * @param raw raw data
+     * @param start start index of the field
+     * @param end end index of the field
+     * @param value value
+     * @return true if the field is equal to the value
+     */
+    private static boolean equalsField(final String raw, final int start, final int end, final String value) {
+        return end - start == value.length() && raw.regionMatches(start, value, 0, value.length());
+    }
+
+    /**
+     * Parse int value.
+     * @param raw raw data
+     * @param start start index of the value
+     * @param end end index of the value
+     * @return value
+     * @throws NumberFormatException if the value is not int
+     */
+    private static int parseInt(final String raw, final int start, final int end) {
+        long value = parseLong(raw, start, end);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw new NumberFormatException("For input string: \"" + raw.substring(start, end) + "\"");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parse long value.
+     * @param raw raw data
+     * @param start start index of the value
+     * @param end end index of the value
+     * @return value
+     * @throws NumberFormatException if the value is not long
+     */
+    static long parseLong(final String raw, final int start, final int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (raw.charAt(pos) == '-' || raw.charAt(pos) == '+')) {
+            negative = raw.charAt(pos) == '-';
+            pos++;
+        }
+        if (pos >= end || end - pos > 18) {
+            // Empty or may overflow.
+            return Long.parseLong(raw.substring(start, end));
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = raw.charAt(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("For input string: \"" + raw.substring(start, end) + "\"");
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse double value.
+     * <p>
+     * Plain decimal values up to {@value #MAX_FAST_DIGITS} digits are parsed without allocation.
+     * Other values are parsed by {@link Double#parseDouble(String)}.
+     * </p>
+     * @param raw raw data
+     * @param start start index of the value
+     * @param end end index of the value
+     * @return value
+     * @throws NumberFormatException if the value is not double
+     */
+    static double parseDouble(final String raw, final int start, final int end) {
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (raw.charAt(pos) == '-' || raw.charAt(pos) == '+')) {
+            negative = raw.charAt(pos) == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean hasDigit = false;
+        for (; pos < end; pos++) {
+            char c = raw.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                break;
+            }
+        }
+        if (pos != end || !hasDigit || digits > MAX_FAST_DIGITS || fractionDigits >= POWERS_OF_TEN.length) {
+            return Double.parseDouble(raw.substring(start, end));
+        }
+        double value = fractionDigits > 0 ? mantissa / POWERS_OF_TEN[fractionDigits] : mantissa;
+        return negative ? -value : value;
     }
 
     /**
@@ -311,7 +596,7 @@ public final class RawDataParseUtils {
      * @return timestamp string
      */
     private static String nowTimeStampString(final long now) {
-        DateFormat df = new SimpleDateFormat("yyyyMMddHHmmss.SSSZZZ");
+        DateFormat df = DATE_FORMAT.get();
         df.setTimeZone(TimeZone.getDefault());
         return df.format(new Date(System.currentTimeMillis()));
     }
@@ -0,0 +1,94 @@
+/*
+ AccelerationRingBufferTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of {@link AccelerationRingBuffer}.
+ * @author NTT DOCOMO, INC.
+ */
+public class AccelerationRingBufferTest {
+
+    @Test
+    public void add_overwritesOldest() {
+        AccelerationRingBuffer buffer = new AccelerationRingBuffer(3);
+        for (int i = 0; i < 5; i++) {
+            buffer.add(i, i, -i, i * 0.5);
+        }
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.getTimestamp(0));
+        assertEquals(4, buffer.getTimestamp(2));
+        assertEquals(-3, buffer.getY(1), 0);
+        assertEquals(2, buffer.getZ(2), 0);
+    }
+
+    @Test
+    public void discard() {
+        AccelerationRingBuffer buffer = new AccelerationRingBuffer(4);
+        for (int i = 0; i < 6; i++) {
+            buffer.add(i, i, i, i);
+        }
+        buffer.discard(3);
+        assertEquals(1, buffer.size());
+        assertEquals(5, buffer.getTimestamp(0));
+
+        buffer.add(6, 6, 6, 6);
+        buffer.add(7, 7, 7, 7);
+        assertEquals(3, buffer.size());
+        assertEquals(7, buffer.getTimestamp(2));
+
+        buffer.discard(10);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_outOfRange() {
+        AccelerationRingBuffer buffer = new AccelerationRingBuffer(4);
+        buffer.add(0, 0, 0, 0);
+        buffer.getX(1);
+    }
+
+    @Test
+    public void appendTo_formatsRawData() {
+        AccelerationRingBuffer buffer = new AccelerationRingBuffer(4);
+        buffer.add(1468292587000L, 0.1, -0.2, 0.98);
+        buffer.add(1468292587040L, 0.0001, 1, -2.5);
+        buffer.add(1468292587080L, 0, 0, 0);
+
+        StringBuilder builder = new StringBuilder();
+        buffer.appendTo(builder, 2);
+        assertEquals("1468292587000,0.1:-0.2:0.98" + HitoeConstants.BR
+                + "1468292587040,0.0001:1.0:-2.5", builder.toString());
+    }
+
+    @Test
+    public void appendTo_canBeParsed() {
+        AccelerationRingBuffer buffer = new AccelerationRingBuffer(8);
+        for (int i = 0; i < 8; i++) {
+            buffer.add(1468292587000L + i * 40, Math.sin(i), Math.cos(i), i * 1e-5);
+        }
+        StringBuilder builder = new StringBuilder();
+        buffer.appendTo(builder, buffer.size());
+        String raw = builder.toString();
+
+        double[] values = new double[3];
+        int i = 0;
+        for (int start = RawDataParseUtils.firstLine(raw); start < raw.length(); i++) {
+            int end = RawDataParseUtils.lineEnd(raw, start);
+            assertEquals(buffer.getTimestamp(i), RawDataParseUtils.parseAccelerationLine(raw, start, end, values));
+            assertEquals(buffer.getX(i), values[0], 0);
+            assertEquals(buffer.getY(i), values[1], 0);
+            assertEquals(buffer.getZ(i), values[2], 0);
+            start = RawDataParseUtils.nextLine(raw, end);
+        }
+        assertEquals(buffer.size(), i);
+    }
+}
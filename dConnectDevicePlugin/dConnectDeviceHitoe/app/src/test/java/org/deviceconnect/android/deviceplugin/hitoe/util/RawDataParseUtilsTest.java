@@ -0,0 +1,165 @@
+/*
+ RawDataParseUtilsTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+import org.deviceconnect.android.deviceplugin.hitoe.data.AccelerationData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.HeartData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
+import org.deviceconnect.android.deviceplugin.hitoe.data.PoseEstimationData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.StressEstimationData;
+import org.deviceconnect.android.deviceplugin.hitoe.data.WalkStateData;
+import org.deviceconnect.profile.PoseEstimationProfileConstants;
+import org.deviceconnect.profile.WalkStateProfileConstants;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of {@link RawDataParseUtils}.
+ * @author NTT DOCOMO, INC.
+ */
+public class RawDataParseUtilsTest {
+
+    /** Line separator. */
+    private static final String BR = HitoeConstants.BR;
+
+    @Test
+    public void parseDouble_isSameAsDoubleParseDouble() {
+        String[] values = {
+            "0", "-0", "1", "-1", "+1", "0.5", "-0.98", "12.345", "1000000", "0.001",
+            "0.000001", "123456789012345", "1234567890123456789", "1.5e3", "-2.5E-4",
+            "007.250", ".5", "5.", "0.1234567890123456789"
+        };
+        for (String value : values) {
+            String raw = "x" + value + "y";
+            assertEquals(value, Double.parseDouble(value),
+                    RawDataParseUtils.parseDouble(raw, 1, raw.length() - 1), 0);
+        }
+    }
+
+    @Test
+    public void parseDouble_invalid() {
+        String[] values = {"", "-", ".", "1.2.3", "abc", "1-2"};
+        for (String value : values) {
+            try {
+                RawDataParseUtils.parseDouble(value, 0, value.length());
+                fail(value);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void parseLong_isSameAsLongParseLong() {
+        String[] values = {"0", "-1", "+12", "1468292587123", "9223372036854775807", "-9223372036854775808"};
+        for (String value : values) {
+            assertEquals(value, Long.parseLong(value),
+                    RawDataParseUtils.parseLong(value, 0, value.length()));
+        }
+        try {
+            RawDataParseUtils.parseLong("12a", 0, 3);
+            fail();
+        } catch (NumberFormatException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parseAccelerationLine() {
+        String raw = "1468292587000,0.1:-0.2:0.98" + BR + "1468292587040,-1.5:0:2" + BR;
+        double[] values = new double[3];
+
+        int start = RawDataParseUtils.firstLine(raw);
+        int end = RawDataParseUtils.lineEnd(raw, start);
+        assertEquals(1468292587000L, RawDataParseUtils.parseAccelerationLine(raw, start, end, values));
+        assertEquals(0.1, values[0], 0);
+        assertEquals(-0.2, values[1], 0);
+        assertEquals(0.98, values[2], 0);
+
+        start = RawDataParseUtils.nextLine(raw, end);
+        end = RawDataParseUtils.lineEnd(raw, start);
+        assertEquals(1468292587040L, RawDataParseUtils.parseAccelerationLine(raw, start, end, values));
+        assertEquals(-1.5, values[0], 0);
+        assertEquals(0, values[1], 0);
+        assertEquals(2, values[2], 0);
+
+        assertEquals(raw.length(), RawDataParseUtils.nextLine(raw, end));
+    }
+
+    @Test
+    public void parseAccelerationData() {
+        AccelerationData data = RawDataParseUtils.parseAccelerationData(new AccelerationData(),
+                "1468292587000,0.1:-0.2:0.98" + BR + "1468292587040,-1.5:0:2");
+        assertEquals(0.1, data.getAccelX(), 0);
+        assertEquals(-0.2, data.getAccelY(), 0);
+        assertEquals(0.98, data.getAccelZ(), 0);
+    }
+
+    @Test
+    public void parseECG_usesLastLine() {
+        HeartData ecg = RawDataParseUtils.parseECG(
+                "1468292587000,0.25:1" + BR + "1468292587004,-0.125:1" + BR);
+        assertEquals(1468292587004L, ecg.getTimeStamp());
+        assertEquals(-0.125f, ecg.getValue(), 0);
+        assertEquals(HeartData.HeartRateType.ECG, ecg.getHeartRateType());
+    }
+
+    @Test
+    public void parseHeartRate_usesLastLine() {
+        HeartData heart = RawDataParseUtils.parseHeartRate("1468292587000,70" + BR + "1468292588000,72");
+        assertEquals(1468292588000L, heart.getTimeStamp());
+        assertEquals(72f, heart.getValue(), 0);
+    }
+
+    @Test
+    public void parseStressEstimation() {
+        StressEstimationData stress = RawDataParseUtils.parseStressEstimation("1468292587000,1.25");
+        assertEquals(1468292587000L, stress.getTimeStamp());
+        assertEquals(1.25, stress.getLFHFValue(), 0);
+
+        stress = RawDataParseUtils.parseStressEstimation("1468292587000,");
+        assertEquals(0, stress.getTimeStamp());
+    }
+
+    @Test
+    public void parsePoseEstimation() {
+        PoseEstimationData pose = RawDataParseUtils.parsePoseEstimation("1468292587000,LyingFaceUp,0,0");
+        assertEquals(PoseEstimationProfileConstants.PoseState.FaceUp, pose.getPoseState());
+
+        pose = RawDataParseUtils.parsePoseEstimation("1468292587000,Standing,0,0");
+        assertEquals(PoseEstimationProfileConstants.PoseState.Standing, pose.getPoseState());
+        assertEquals(1468292587000L, pose.getTimeStamp());
+    }
+
+    @Test
+    public void parseWalkState() {
+        WalkStateData walk = RawDataParseUtils.parseWalkState(new WalkStateData(),
+                "1468292587000,120,0,0,Running,0,2.5,300.25");
+        assertEquals(1468292587000L, walk.getTimeStamp());
+        assertEquals(120, walk.getStep());
+        assertEquals(WalkStateProfileConstants.WalkState.Running, walk.getState());
+        assertEquals(2.5, walk.getSpeed(), 0);
+        assertEquals(300.25, walk.getDistance(), 0);
+
+        walk = RawDataParseUtils.parseWalkStateForBalance(walk, "1468292587000,0.75");
+        assertEquals(0.75, walk.getBalance(), 0);
+    }
+
+    @Test
+    public void appendDouble_withoutExponent() {
+        double[] values = {0, 1, -0.98, 0.0001, -12345678.5, 0.123456789};
+        for (double value : values) {
+            StringBuilder builder = new StringBuilder();
+            RawDataParseUtils.appendDouble(builder, value);
+            String text = builder.toString();
+            assertEquals(text, -1, text.indexOf('E'));
+            assertEquals(text, value, Double.parseDouble(text), 0);
+        }
+    }
+}
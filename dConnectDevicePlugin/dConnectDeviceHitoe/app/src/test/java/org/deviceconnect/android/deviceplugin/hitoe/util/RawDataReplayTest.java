@@ -0,0 +1,233 @@
+/*
+ RawDataReplayTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.hitoe.util;
+
+import org.deviceconnect.android.deviceplugin.hitoe.data.HitoeConstants;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays raw acceleration data, and checks the parsed values and the allocation of the parser.
+ * <p>
+ * The fixture {@value #FIXTURE} contains one raw.acc packet per line,
+ * and the lines of a packet are separated by "|".
+ * Another recording in the same format can be replayed by specifying the file with
+ * the system property {@value #PROPERTY_REPLAY_FILE}.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class RawDataReplayTest {
+
+    /** Resource of the raw data packets. */
+    private static final String FIXTURE = "/raw_acc.txt";
+
+    /** System property of the file to replay. */
+    private static final String PROPERTY_REPLAY_FILE = "hitoe.replay";
+
+    /** Number of times to replay the packets when measuring the allocation. */
+    private static final int REPLAY_COUNT = 500;
+
+    /**
+     * Allowed bytes allocated by replaying the packets {@value #REPLAY_COUNT} times.
+     * <p>
+     * The parser and the window do not allocate per sample, so this only covers the noise of the measurement.
+     * Allocating even one object per sample exceeds it by far.
+     * </p>
+     */
+    private static final long MAX_ALLOCATED_BYTES = 16 * 1024;
+
+    /** Raw data packets. */
+    private List<String> mPackets;
+
+    /** Lines of the packets, which are parsed by {@link String#split(String)} as the expected values. */
+    private List<String> mLines;
+
+    @Before
+    public void setUp() throws IOException {
+        String file = System.getProperty(PROPERTY_REPLAY_FILE);
+        InputStream in;
+        if (file != null) {
+            in = new FileInputStream(new File(file));
+        } else {
+            in = RawDataReplayTest.class.getResourceAsStream(FIXTURE);
+            assertNotNull(FIXTURE + " is not found.", in);
+        }
+        mPackets = new ArrayList<>();
+        mLines = new ArrayList<>();
+        readPackets(in, mPackets, mLines);
+    }
+
+    @Test
+    public void replay_fixtureValues() {
+        Assume.assumeTrue(System.getProperty(PROPERTY_REPLAY_FILE) == null);
+        assertEquals(40, mPackets.size());
+        assertEquals(200, mLines.size());
+
+        AccelerationRingBuffer window = new AccelerationRingBuffer(HitoeConstants.EX_LR_BALANCE_UNIT_NUM);
+        assertEquals(200, replay(window, new double[3], 1));
+        assertEquals(200, window.size());
+        assertEquals(1468292587000L, window.getTimestamp(0));
+        assertEquals(-0.0026, window.getX(0), 0);
+        assertEquals(-0.0137, window.getY(0), 0);
+        assertEquals(1.1114, window.getZ(0), 0);
+        assertEquals(1468292594960L, window.getTimestamp(199));
+        assertEquals(0.0988, window.getX(199), 0);
+        assertEquals(0.0198, window.getY(199), 0);
+        assertEquals(0.9736, window.getZ(199), 0);
+    }
+
+    @Test
+    public void replay_parsesAllLines() {
+        AccelerationRingBuffer window = new AccelerationRingBuffer(mLines.size());
+        replay(window, new double[3], 1);
+
+        assertEquals(mLines.size(), window.size());
+        for (int i = 0; i < mLines.size(); i++) {
+            String line = mLines.get(i);
+            String[] fields = line.split(HitoeConstants.COMMA);
+            String[] values = fields[1].split(HitoeConstants.COLON);
+            assertEquals(line, Long.parseLong(fields[0]), window.getTimestamp(i));
+            assertEquals(line, Double.parseDouble(values[0]), window.getX(i), 0);
+            assertEquals(line, Double.parseDouble(values[1]), window.getY(i), 0);
+            assertEquals(line, Double.parseDouble(values[2]), window.getZ(i), 0);
+        }
+    }
+
+    @Test
+    public void replay_keepsLatestSamples() {
+        AccelerationRingBuffer window = new AccelerationRingBuffer(HitoeConstants.EX_WALK_UNIT_NUM);
+        replay(window, new double[3], 1);
+
+        int size = Math.min(mLines.size(), window.capacity());
+        assertEquals(size, window.size());
+        for (int i = 0; i < size; i++) {
+            String line = mLines.get(mLines.size() - size + i);
+            assertEquals(line, Long.parseLong(line.split(HitoeConstants.COMMA)[0]), window.getTimestamp(i));
+        }
+    }
+
+    @Test
+    public void replay_recordsPerFixedIterations() {
+        AccelerationRingBuffer expected = new AccelerationRingBuffer(HitoeConstants.EX_LR_BALANCE_UNIT_NUM);
+        replay(expected, new double[3], 1);
+
+        AccelerationRingBuffer window = new AccelerationRingBuffer(HitoeConstants.EX_LR_BALANCE_UNIT_NUM);
+        long records = replay(window, new double[3], REPLAY_COUNT);
+
+        // Every iteration parses every line, and ends with the same window.
+        assertEquals((long) mLines.size() * REPLAY_COUNT, records);
+        assertEquals(expected.size(), window.size());
+        for (int i = 0; i < window.size(); i++) {
+            assertEquals(expected.getTimestamp(i), window.getTimestamp(i));
+            assertEquals(expected.getX(i), window.getX(i), 0);
+            assertEquals(expected.getY(i), window.getY(i), 0);
+            assertEquals(expected.getZ(i), window.getZ(i), 0);
+        }
+    }
+
+    @Test
+    public void replay_doesNotAllocate() {
+        com.sun.management.ThreadMXBean bean = getThreadMXBean();
+        Assume.assumeTrue(bean != null);
+
+        double[] values = new double[3];
+        AccelerationRingBuffer window = new AccelerationRingBuffer(HitoeConstants.EX_LR_BALANCE_UNIT_NUM);
+        // Warm up
+        replay(window, values, REPLAY_COUNT);
+
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        long records = replay(window, values, REPLAY_COUNT);
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals((long) mLines.size() * REPLAY_COUNT, records);
+        assertTrue("allocated " + allocated + " bytes for " + records + " records",
+                allocated <= MAX_ALLOCATED_BYTES);
+    }
+
+    /**
+     * Parse all packets in the same way as HitoeManager.
+     * @param window window of acceleration data
+     * @param values array to store the values
+     * @param count number of times to replay the packets
+     * @return number of records parsed
+     */
+    private long replay(final AccelerationRingBuffer window, final double[] values, final int count) {
+        long records = 0;
+        for (int n = 0; n < count; n++) {
+            window.clear();
+            for (int i = 0; i < mPackets.size(); i++) {
+                String packet = mPackets.get(i);
+                for (int start = RawDataParseUtils.firstLine(packet); start < packet.length();) {
+                    int end = RawDataParseUtils.lineEnd(packet, start);
+                    long timestamp = RawDataParseUtils.parseAccelerationLine(packet, start, end, values);
+                    window.add(timestamp, values[0], values[1], values[2]);
+                    records++;
+                    start = RawDataParseUtils.nextLine(packet, end);
+                }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Read raw data packets.
+     * @param in stream of the packets
+     * @param packets list to store the packets
+     * @param lines list to store the lines of the packets
+     * @throws IOException if the packets cannot be read
+     */
+    private static void readPackets(final InputStream in, final List<String> packets,
+                                    final List<String> lines) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    packets.add(line.replace("|", HitoeConstants.BR));
+                    for (String sample : line.split("\\|")) {
+                        lines.add(sample);
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Get the ThreadMXBean which can measure allocated bytes.
+     * @return ThreadMXBean, or null if it is not supported
+     */
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+}
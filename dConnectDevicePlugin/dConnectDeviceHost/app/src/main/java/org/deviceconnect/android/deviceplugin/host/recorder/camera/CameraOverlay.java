@@ -13,6 +13,7 @@ import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.graphics.Bitmap.CompressFormat;
 import android.graphics.BitmapFactory;
+import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.PixelFormat;
 import android.graphics.Point;
@@ -35,8 +36,9 @@ import android.view.WindowManager;
 import org.deviceconnect.android.deviceplugin.host.BuildConfig;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDeviceRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.util.CapabilityUtil;
-import org.deviceconnect.android.deviceplugin.host.recorder.util.MixedReplaceMediaServer;
+import org.deviceconnect.android.deviceplugin.host.recorder.util.YuvUtil;
 import org.deviceconnect.android.provider.FileManager;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -76,6 +78,11 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
     /** Default Maximum Frame Rate. */
     private static final double DEFAULT_MAX_FPS = 10.0d;
 
+    /**
+     * プレビュー用のバッファの数.
+     */
+    private static final int PREVIEW_BUFFER_COUNT = 3;
+
     /** 日付のフォーマット. */
     private SimpleDateFormat mSimpleDateFormat = new SimpleDateFormat("yyyyMMdd_kkmmss", Locale.JAPAN);
 
@@ -173,6 +180,21 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
      */
     private boolean mFlashLightState = false;
 
+    /**
+     * プレビュー画像の回転角度.
+     */
+    private volatile int mPreviewRotation;
+
+    /**
+     * 回転したプレビュー画像の出力先.
+     */
+    private byte[] mRotatedFrame;
+
+    /**
+     * プレビュー画像をJPEGに変換する時の出力先.
+     */
+    private final JpegOutputStream mJpegStream = new JpegOutputStream();
+
     /**
      * 画面回転のイベントを受け付けるレシーバー.
      */
@@ -180,6 +202,7 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
         @Override
         public void onReceive(final Context context, final Intent intent) {
             if (Intent.ACTION_CONFIGURATION_CHANGED.equals(intent.getAction())) {
+                mPreviewRotation = Preview.getCameraDisplayOrientation(mContext, mCameraId);
                 updatePosition(mPreview);
             }
         }
@@ -344,7 +367,8 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
                     }
                     setCameraParameter(mCamera);
                     mPreview.switchCamera(mCameraId, mCamera);
-                    mCamera.setPreviewCallback(CameraOverlay.this);
+                    mPreviewRotation = Preview.getCameraDisplayOrientation(mContext, mCameraId);
+                    startPreviewCallback(mCamera);
                     mCamera.setErrorCallback(CameraOverlay.this);
 
                     IntentFilter filter = new IntentFilter();
@@ -590,66 +614,172 @@ public class CameraOverlay implements Camera.PreviewCallback, Camera.ErrorCallba
     @Override
     public void onPreviewFrame(final byte[] data, final Camera camera) {
         synchronized (mCameraLock) {
-            final long currentTime = System.currentTimeMillis();
-            if (mLastFrameTime != 0) {
-                if ((currentTime - mLastFrameTime) < mFrameInterval) {
-                    mLastFrameTime = currentTime;
-                    return;
-                }
+            if (mCamera == null || !mCamera.equals(camera)) {
+                return;
             }
 
-            if (mCamera != null && mCamera.equals(camera)) {
-                mCamera.setPreviewCallback(null);
+            try {
+                final long currentTime = System.currentTimeMillis();
+                if (mLastFrameTime != 0) {
+                    if ((currentTime - mLastFrameTime) < mFrameInterval) {
+                        mLastFrameTime = currentTime;
+                        return;
+                    }
+                }
+
+                offerPreviewFrame(data);
 
-                if (mServer != null && mPreview != null) {
-                    int format = mPreview.getPreviewFormat();
-                    int width = mPreview.getPreviewWidth();
-                    int height = mPreview.getPreviewHeight();
+                mLastFrameTime = currentTime;
+            } finally {
+                // 処理が終わったバッファをカメラに返却して、次のプレビューで再利用する
+                camera.addCallbackBuffer(data);
+            }
+        }
+    }
 
-                    YuvImage yuvimage = new YuvImage(data, format, width, height, null);
-                    Rect rect = new Rect(0, 0, width, height);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                    if (yuvimage.compressToJpeg(rect, mJpegQuality, baos)) {
-                        byte[] jdata = baos.toByteArray();
+    /**
+     * プレビュー画像をJPEGに変換してサーバに渡す.
+     * <p>
+     * NV21形式のプレビュー画像は、YUVのまま回転してからJPEGに1回だけ変換する。
+     * </p>
+     *
+     * @param data プレビュー画像
+     */
+    private void offerPreviewFrame(final byte[] data) {
+        final MixedReplaceMediaServer server = mServer;
+        if (server == null || mPreview == null) {
+            return;
+        }
 
-                        int degree = Preview.getCameraDisplayOrientation(mContext, mCameraId);
-                        if (degree == 0 && mFacingDirection == FACING_DIRECTION_BACK) {
-                            mServer.offerMedia(jdata);
-                        } else {
-                            try {
-                                BitmapFactory.Options bitmapFactoryOptions = new BitmapFactory.Options();
-                                bitmapFactoryOptions.inPreferredConfig = Bitmap.Config.RGB_565;
-                                Bitmap bmp = BitmapFactory.decodeByteArray(jdata, 0, jdata.length, bitmapFactoryOptions);
-                                if (bmp != null) {
-                                    Matrix m = new Matrix();
-                                    if (mFacingDirection == FACING_DIRECTION_FRONT) {
-                                        m.preRotate(degree);
-                                        m.preScale(mFacingDirection, 1);
-                                    } else {
-                                        m.postRotate(degree);
-                                    }
-                                    Bitmap rotatedBmp = Bitmap.createBitmap(bmp, 0, 0, bmp.getWidth(), bmp.getHeight(), m, true);
-                                    if (rotatedBmp != null) {
-                                        baos.reset();
-                                        if (rotatedBmp.compress(CompressFormat.JPEG, mJpegQuality, baos)) {
-                                            mServer.offerMedia(baos.toByteArray());
-                                        }
-                                        rotatedBmp.recycle();
-                                    }
-                                    bmp.recycle();
-                                }
-                            } catch (OutOfMemoryError e) {
-                                mServer.stop();
-                                return;
-                            }
-                        }
-                    }
+        // MJPEGを受信しているクライアントがいない場合は変換しない
+        if (server.getClientCount() == 0) {
+            return;
+        }
+
+        int format = mPreview.getPreviewFormat();
+        int width = mPreview.getPreviewWidth();
+        int height = mPreview.getPreviewHeight();
+        int degree = mPreviewRotation;
+        boolean mirror = mFacingDirection == FACING_DIRECTION_FRONT;
+
+        try {
+            byte[] yuv = data;
+            if (format == ImageFormat.NV21 && (degree != 0 || mirror)) {
+                int size = YuvUtil.getNV21Size(width, height);
+                if (mRotatedFrame == null || mRotatedFrame.length < size) {
+                    mRotatedFrame = new byte[size];
+                }
+                YuvUtil.rotateNV21(data, mRotatedFrame, width, height, degree, mirror);
+                yuv = mRotatedFrame;
+                if (degree == 90 || degree == 270) {
+                    int tmp = width;
+                    width = height;
+                    height = tmp;
                 }
+                degree = 0;
+                mirror = false;
+            }
+
+            YuvImage yuvimage = new YuvImage(yuv, format, width, height, null);
+            mJpegStream.reset();
+            if (!yuvimage.compressToJpeg(new Rect(0, 0, width, height), mJpegQuality, mJpegStream)) {
+                return;
+            }
+
+            if (degree == 0 && !mirror) {
+                byte[] jpeg = server.obtainBuffer(mJpegStream.size());
+                int length = mJpegStream.copyTo(jpeg);
+                server.offerMedia(null, jpeg, length);
+            } else {
+                // NV21以外のフォーマットは、Bitmapで回転する
+                offerRotatedBitmap(server, degree);
+            }
+        } catch (OutOfMemoryError e) {
+            server.stop();
+        }
+    }
 
-                mCamera.setPreviewCallback(this);
+    /**
+     * mJpegStreamに格納されたJPEGをBitmapで回転してサーバに渡す.
+     *
+     * @param server サーバ
+     * @param degree 回転角度
+     */
+    private void offerRotatedBitmap(final MixedReplaceMediaServer server, final int degree) {
+        BitmapFactory.Options bitmapFactoryOptions = new BitmapFactory.Options();
+        bitmapFactoryOptions.inPreferredConfig = Bitmap.Config.RGB_565;
+        Bitmap bmp = BitmapFactory.decodeByteArray(mJpegStream.getBuffer(), 0, mJpegStream.size(),
+                bitmapFactoryOptions);
+        if (bmp != null) {
+            Matrix m = new Matrix();
+            if (mFacingDirection == FACING_DIRECTION_FRONT) {
+                m.preRotate(degree);
+                m.preScale(mFacingDirection, 1);
+            } else {
+                m.postRotate(degree);
             }
+            Bitmap rotatedBmp = Bitmap.createBitmap(bmp, 0, 0, bmp.getWidth(), bmp.getHeight(), m, true);
+            if (rotatedBmp != null) {
+                mJpegStream.reset();
+                if (rotatedBmp.compress(CompressFormat.JPEG, mJpegQuality, mJpegStream)) {
+                    byte[] jpeg = server.obtainBuffer(mJpegStream.size());
+                    int length = mJpegStream.copyTo(jpeg);
+                    server.offerMedia(null, jpeg, length);
+                }
+                rotatedBmp.recycle();
+            }
+            bmp.recycle();
+        }
+    }
 
-            mLastFrameTime = currentTime;
+    /**
+     * プレビュー用のバッファを登録して、プレビュー画像の受信を開始する.
+     * <p>
+     * 登録したバッファは{@link #onPreviewFrame(byte[], Camera)}の処理が終わった後に
+     * カメラに返却して再利用する。
+     * </p>
+     *
+     * @param camera カメラ
+     */
+    private void startPreviewCallback(final Camera camera) {
+        Camera.Parameters params = camera.getParameters();
+        Camera.Size size = params.getPreviewSize();
+        int bitsPerPixel = ImageFormat.getBitsPerPixel(params.getPreviewFormat());
+        if (bitsPerPixel <= 0) {
+            bitsPerPixel = Integer.SIZE;
+        }
+        int bufferSize = size.width * size.height * bitsPerPixel / Byte.SIZE;
+        for (int i = 0; i < PREVIEW_BUFFER_COUNT; i++) {
+            camera.addCallbackBuffer(new byte[bufferSize]);
+        }
+        camera.setPreviewCallbackWithBuffer(this);
+    }
+
+    /**
+     * 再利用できるJPEGの出力先.
+     */
+    private static class JpegOutputStream extends ByteArrayOutputStream {
+        /**
+         * 内部のバッファを取得する.
+         * <p>
+         * 有効なデータは{@link #size()}までとなる。
+         * </p>
+         *
+         * @return バッファ
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        /**
+         * 書き込まれたデータを指定した配列にコピーする.
+         *
+         * @param dst コピー先. {@link #size()}以上のサイズが必要.
+         * @return コピーしたサイズ
+         */
+        int copyTo(final byte[] dst) {
+            System.arraycopy(buf, 0, dst, 0, count);
+            return count;
         }
     }
 
@@ -14,8 +14,8 @@ import android.util.Log;
 import org.deviceconnect.android.deviceplugin.host.BuildConfig;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDevicePhotoRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDevicePreviewServer;
-import org.deviceconnect.android.deviceplugin.host.recorder.util.MixedReplaceMediaServer;
 import org.deviceconnect.android.provider.FileManager;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -30,8 +30,8 @@ import android.view.WindowManager;
 
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDevicePhotoRecorder;
 import org.deviceconnect.android.deviceplugin.host.recorder.HostDevicePreviewServer;
-import org.deviceconnect.android.deviceplugin.host.recorder.util.MixedReplaceMediaServer;
 import org.deviceconnect.android.provider.FileManager;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 
 import java.io.ByteArrayOutputStream;
 import java.text.SimpleDateFormat;
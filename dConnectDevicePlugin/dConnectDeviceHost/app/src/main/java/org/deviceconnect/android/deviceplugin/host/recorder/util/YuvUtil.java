@@ -0,0 +1,142 @@
+/*
+ YuvUtil.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.util;
+
+/**
+ * YUV形式の画像を操作するユーティリティクラス.
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class YuvUtil {
+
+    private YuvUtil() {
+    }
+
+    /**
+     * NV21形式の画像のサイズを取得する.
+     *
+     * @param width 横幅
+     * @param height 縦幅
+     * @return 画像のサイズ(バイト)
+     */
+    public static int getNV21Size(final int width, final int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * NV21形式の画像を時計回りに回転する.
+     * <p>
+     * mirrorがtrueの場合は、左右反転してから回転する。
+     * 90度または270度回転した場合は、出力先の画像の横幅と縦幅が入れ替わる。
+     * </p>
+     * <p>
+     * 横幅と縦幅は偶数であること。
+     * </p>
+     *
+     * @param src 回転する画像
+     * @param dst 回転した画像の出力先. {@link #getNV21Size(int, int)}以上のサイズが必要.
+     * @param width 回転する画像の横幅
+     * @param height 回転する画像の縦幅
+     * @param degrees 回転角度(0, 90, 180, 270)
+     * @param mirror 左右反転する場合はtrue
+     */
+    public static void rotateNV21(final byte[] src, final byte[] dst, final int width, final int height,
+                                  final int degrees, final boolean mirror) {
+        if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+            throw new IllegalArgumentException("degrees must be 0, 90, 180 or 270.");
+        }
+        int frameSize = width * height;
+        if (src.length < getNV21Size(width, height) || dst.length < getNV21Size(width, height)) {
+            throw new IllegalArgumentException("buffer is too small.");
+        }
+
+        // Y
+        transform(src, 0, dst, 0, width, height, 1, degrees, mirror);
+        // VU (2バイトを1組として扱う)
+        transform(src, frameSize, dst, frameSize, width / 2, height / 2, 2, degrees, mirror);
+    }
+
+    /**
+     * 1プレーンを回転する.
+     *
+     * @param src 回転する画像
+     * @param srcOffset 回転するプレーンの開始位置
+     * @param dst 出力先
+     * @param dstOffset 出力先のプレーンの開始位置
+     * @param width プレーンの横幅(要素数)
+     * @param height プレーンの縦幅(要素数)
+     * @param pixelSize 1要素のバイト数
+     * @param degrees 回転角度
+     * @param mirror 左右反転する場合はtrue
+     */
+    private static void transform(final byte[] src, final int srcOffset, final byte[] dst, final int dstOffset,
+                                  final int width, final int height, final int pixelSize,
+                                  final int degrees, final boolean mirror) {
+        // 出力先の1要素分、および1行分の移動量を求めて、入力を先頭から順に読み込む
+        final int dstWidth = (degrees == 90 || degrees == 270) ? height : width;
+        final int dstHeight = (degrees == 90 || degrees == 270) ? width : height;
+        final int dstStride = dstWidth * pixelSize;
+
+        int start;
+        int stepX;
+        int stepY;
+        switch (degrees) {
+            case 90:
+                // (x, y) -> (dstWidth - 1 - y, x)
+                start = (dstWidth - 1) * pixelSize;
+                stepX = dstStride;
+                stepY = -pixelSize;
+                break;
+            case 180:
+                // (x, y) -> (dstWidth - 1 - x, dstHeight - 1 - y)
+                start = (dstHeight - 1) * dstStride + (dstWidth - 1) * pixelSize;
+                stepX = -pixelSize;
+                stepY = -dstStride;
+                break;
+            case 270:
+                // (x, y) -> (y, dstHeight - 1 - x)
+                start = (dstHeight - 1) * dstStride;
+                stepX = -dstStride;
+                stepY = pixelSize;
+                break;
+            default:
+                // (x, y) -> (x, y)
+                start = 0;
+                stepX = pixelSize;
+                stepY = dstStride;
+                break;
+        }
+        if (mirror) {
+            // 左右反転は、入力のx座標を逆から辿ることと同じ
+            start += stepX * (width - 1);
+            stepX = -stepX;
+        }
+
+        int srcPos = srcOffset;
+        int rowStart = dstOffset + start;
+        if (pixelSize == 1) {
+            for (int y = 0; y < height; y++) {
+                int dstPos = rowStart;
+                for (int x = 0; x < width; x++) {
+                    dst[dstPos] = src[srcPos++];
+                    dstPos += stepX;
+                }
+                rowStart += stepY;
+            }
+        } else {
+            for (int y = 0; y < height; y++) {
+                int dstPos = rowStart;
+                for (int x = 0; x < width; x++) {
+                    dst[dstPos] = src[srcPos++];
+                    dst[dstPos + 1] = src[srcPos++];
+                    dstPos += stepX;
+                }
+                rowStart += stepY;
+            }
+        }
+    }
+}
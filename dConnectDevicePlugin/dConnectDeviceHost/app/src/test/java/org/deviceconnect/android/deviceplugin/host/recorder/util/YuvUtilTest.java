@@ -0,0 +1,187 @@
+/*
+ YuvUtilTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.host.recorder.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test of {@link YuvUtil}.
+ * @author NTT DOCOMO, INC.
+ */
+public class YuvUtilTest {
+
+    /** Width of the hand-built frame. */
+    private static final int WIDTH = 4;
+
+    /** Height of the hand-built frame. */
+    private static final int HEIGHT = 4;
+
+    /**
+     * Hand-built 4x4 NV21 frame.
+     * <p>
+     * The Y plane is 4x4. The VU plane is 2x2 pairs of interleaved V and U.
+     * </p>
+     */
+    private static final byte[] FRAME = {
+            // Y
+            1, 2, 3, 4,
+            5, 6, 7, 8,
+            9, 10, 11, 12,
+            13, 14, 15, 16,
+            // VU
+            20, 21, 22, 23,
+            24, 25, 26, 27
+    };
+
+    @Test
+    public void getNV21Size() {
+        assertEquals(24, YuvUtil.getNV21Size(4, 4));
+        assertEquals(320 * 240 * 3 / 2, YuvUtil.getNV21Size(320, 240));
+    }
+
+    @Test
+    public void rotateNV21_0() {
+        assertRotation(0, false, FRAME);
+    }
+
+    @Test
+    public void rotateNV21_90() {
+        assertRotation(90, false, new byte[] {
+                13, 9, 5, 1,
+                14, 10, 6, 2,
+                15, 11, 7, 3,
+                16, 12, 8, 4,
+                24, 25, 20, 21,
+                26, 27, 22, 23
+        });
+    }
+
+    @Test
+    public void rotateNV21_180() {
+        assertRotation(180, false, new byte[] {
+                16, 15, 14, 13,
+                12, 11, 10, 9,
+                8, 7, 6, 5,
+                4, 3, 2, 1,
+                26, 27, 24, 25,
+                22, 23, 20, 21
+        });
+    }
+
+    @Test
+    public void rotateNV21_270() {
+        assertRotation(270, false, new byte[] {
+                4, 8, 12, 16,
+                3, 7, 11, 15,
+                2, 6, 10, 14,
+                1, 5, 9, 13,
+                22, 23, 26, 27,
+                20, 21, 24, 25
+        });
+    }
+
+    @Test
+    public void rotateNV21_0_mirror() {
+        assertRotation(0, true, new byte[] {
+                4, 3, 2, 1,
+                8, 7, 6, 5,
+                12, 11, 10, 9,
+                16, 15, 14, 13,
+                22, 23, 20, 21,
+                26, 27, 24, 25
+        });
+    }
+
+    @Test
+    public void rotateNV21_90_mirror() {
+        assertRotation(90, true, new byte[] {
+                16, 12, 8, 4,
+                15, 11, 7, 3,
+                14, 10, 6, 2,
+                13, 9, 5, 1,
+                26, 27, 22, 23,
+                24, 25, 20, 21
+        });
+    }
+
+    @Test
+    public void rotateNV21_180_mirror() {
+        assertRotation(180, true, new byte[] {
+                13, 14, 15, 16,
+                9, 10, 11, 12,
+                5, 6, 7, 8,
+                1, 2, 3, 4,
+                24, 25, 26, 27,
+                20, 21, 22, 23
+        });
+    }
+
+    @Test
+    public void rotateNV21_270_mirror() {
+        assertRotation(270, true, new byte[] {
+                1, 5, 9, 13,
+                2, 6, 10, 14,
+                3, 7, 11, 15,
+                4, 8, 12, 16,
+                20, 21, 24, 25,
+                22, 23, 26, 27
+        });
+    }
+
+    @Test
+    public void rotateNV21_nonSquare() {
+        // 4x2 frame, whose VU plane is a single row of 2 pairs.
+        byte[] src = {
+                1, 2, 3, 4,
+                5, 6, 7, 8,
+                20, 21, 22, 23
+        };
+        byte[] dst = new byte[src.length];
+
+        YuvUtil.rotateNV21(src, dst, 4, 2, 90, false);
+
+        // The rotated frame is 2x4, whose VU plane is 2 rows of a single pair.
+        assertArrayEquals(new byte[] {
+                5, 1,
+                6, 2,
+                7, 3,
+                8, 4,
+                20, 21,
+                22, 23
+        }, dst);
+    }
+
+    @Test
+    public void rotateNV21_largerDestination() {
+        byte[] dst = new byte[FRAME.length + 4];
+
+        YuvUtil.rotateNV21(FRAME, dst, WIDTH, HEIGHT, 0, false);
+
+        byte[] expected = new byte[dst.length];
+        System.arraycopy(FRAME, 0, expected, 0, FRAME.length);
+        assertArrayEquals(expected, dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotateNV21_invalidDegrees() {
+        YuvUtil.rotateNV21(FRAME, new byte[FRAME.length], WIDTH, HEIGHT, 45, false);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rotateNV21_smallDestination() {
+        YuvUtil.rotateNV21(FRAME, new byte[FRAME.length - 1], WIDTH, HEIGHT, 90, false);
+    }
+
+    private static void assertRotation(final int degrees, final boolean mirror, final byte[] expected) {
+        byte[] dst = new byte[FRAME.length];
+        YuvUtil.rotateNV21(FRAME, dst, WIDTH, HEIGHT, degrees, mirror);
+        assertArrayEquals("degrees=" + degrees + ", mirror=" + mirror, expected, dst);
+    }
+}
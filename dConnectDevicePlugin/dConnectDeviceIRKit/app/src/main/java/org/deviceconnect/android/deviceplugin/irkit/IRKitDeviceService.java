@@ -10,6 +10,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.content.SharedPreferences;
 import android.net.wifi.WifiManager;
 import android.support.v4.content.LocalBroadcastManager;
 
@@ -21,6 +22,7 @@ import org.deviceconnect.android.deviceplugin.irkit.network.WiFiUtil;
 import org.deviceconnect.android.deviceplugin.irkit.profile.IRKitSystemProfile;
 import org.deviceconnect.android.deviceplugin.irkit.service.IRKitService;
 import org.deviceconnect.android.deviceplugin.irkit.service.VirtualService;
+import org.deviceconnect.android.deviceplugin.irkit.settings.activity.IRKitSettingActivity;
 import org.deviceconnect.android.event.EventManager;
 import org.deviceconnect.android.event.cache.MemoryCacheController;
 import org.deviceconnect.android.localoauth.LocalOAuth2Main;
@@ -142,6 +144,9 @@ public class IRKitDeviceService extends DConnectMessageService implements Detect
         IRKitApplication app = (IRKitApplication) getApplication();
         app.setIRKitDevices(mDevices);
         IRKitManager.INSTANCE.init(this);
+        SharedPreferences sp = getSharedPreferences(IRKitSettingActivity.SP_NAME, MODE_PRIVATE);
+        IRKitManager.INSTANCE.setRequestInterval(sp.getLong(IRKitSettingActivity.SP_KEY_REQUEST_INTERVAL,
+                IRKitManager.INSTANCE.getRequestInterval()));
         IRKitManager.INSTANCE.setDetectionListener(this);
         if (WiFiUtil.isOnWiFi(this)) {
             startDetection();
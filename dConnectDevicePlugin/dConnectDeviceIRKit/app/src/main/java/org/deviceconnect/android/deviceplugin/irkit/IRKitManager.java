@@ -21,13 +21,21 @@ import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.entity.StringEntity;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 import org.apache.http.util.ByteArrayBuffer;
@@ -46,8 +54,9 @@ import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.jmdns.JmDNS;
 import javax.jmdns.ServiceEvent;
@@ -133,6 +142,21 @@ public enum IRKitManager {
     /** スリープ時間を定義. */
     private static final long SLEEP_TIME = 1000;
 
+    /**
+     * IRKitへのリクエストを並列に実行するスレッド数.
+     */
+    private static final int REQUEST_THREAD_COUNT = 8;
+
+    /**
+     * 再利用のために保持するIRKitとの接続の最大数.
+     */
+    private static final int MAX_DEVICE_CONNECTIONS = 32;
+
+    /**
+     * IRKitとの接続を再利用せずに閉じるまでのアイドル時間 {@value} ミリ秒.
+     */
+    private static final long IDLE_CONNECTION_TIMEOUT = 30 * 1000;
+
     /** 3.0用ヘッダー名. */
     private static final String X_REQUESTED_WITH_HEADER_NAME = "X-Requested-With";
     /** 3.0用ヘッダー値. */
@@ -189,9 +213,25 @@ public enum IRKitManager {
     private ServiceRemovingDiscoveryHandler mRemoveHandler;
     
     /**
-     * 実行用スレッド管理クラス.
+     * IRKitへのリクエストを実行するスレッド. 全てのIRKitのキューで共有する.
+     */
+    private final ScheduledExecutorService mRequestExecutor = Executors.newScheduledThreadPool(REQUEST_THREAD_COUNT);
+
+    /**
+     * IRKitのIPアドレスごとのリクエストキュー.
+     */
+    private final ConcurrentHashMap<String, IRKitRequestQueue> mRequestQueues
+            = new ConcurrentHashMap<String, IRKitRequestQueue>();
+
+    /**
+     * 同じIRKitへのリクエストの最小間隔(ミリ秒).
+     */
+    private long mRequestInterval = SLEEP_TIME;
+
+    /**
+     * IRKitとの接続を再利用するHttpClient.
      */
-    private ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    private final HttpClient mDeviceClient = createKeepAliveClient(HTTP_REQUEST_TIMEOUT);
 
     /**
      * WiFiのセキュリティタイプ.
@@ -294,6 +334,112 @@ public enum IRKitManager {
         return client;
     }
 
+    /**
+     * 接続を再利用するHttpClientを作成する.
+     * <p>
+     * IRKitは同時に複数の接続を受け付けられないため、1台あたりの接続数は1つにする。
+     * </p>
+     *
+     * @param timeout タイムアウト
+     * @return HttpClientのインスタンス
+     */
+    private static HttpClient createKeepAliveClient(final int timeout) {
+        HttpParams params = new BasicHttpParams();
+        HttpConnectionParams.setSoTimeout(params, timeout);
+        HttpConnectionParams.setConnectionTimeout(params, timeout);
+        ConnManagerParams.setMaxConnectionsPerRoute(params, new ConnPerRouteBean(1));
+        ConnManagerParams.setMaxTotalConnections(params, MAX_DEVICE_CONNECTIONS);
+
+        SchemeRegistry registry = new SchemeRegistry();
+        registry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+        return new DefaultHttpClient(new ThreadSafeClientConnManager(params, registry), params);
+    }
+
+    /**
+     * IRKitへのリクエストを接続を再利用して実行する.
+     * <p>
+     * レスポンスのボディは{@link ResponseHandler}から戻った後に読み捨てられ、接続はプールに戻される。
+     * </p>
+     *
+     * @param req リクエスト
+     * @param handler レスポンスを処理するハンドラ
+     * @param <T> ハンドラの結果の型
+     * @return ハンドラの結果. 通信に失敗した場合はnull
+     */
+    private <T> T executeDeviceRequest(final HttpUriRequest req, final ResponseHandler<T> handler) {
+        mDeviceClient.getConnectionManager().closeIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.MILLISECONDS);
+        try {
+            return mDeviceClient.execute(req, handler);
+        } catch (IOException e) {
+            if (BuildConfig.DEBUG) {
+                e.printStackTrace();
+            }
+            req.abort();
+            return null;
+        }
+    }
+
+    /**
+     * 指定したIPのIRKitのリクエストキューを取得する.
+     *
+     * @param ip IRKitのIPアドレス
+     * @return リクエストキュー
+     */
+    private IRKitRequestQueue getRequestQueue(final String ip) {
+        IRKitRequestQueue queue = mRequestQueues.get(ip);
+        if (queue == null) {
+            IRKitRequestQueue newQueue;
+            synchronized (this) {
+                newQueue = new IRKitRequestQueue(mRequestExecutor, mRequestInterval);
+            }
+            queue = mRequestQueues.putIfAbsent(ip, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * 同じIRKitへのリクエストの最小間隔を設定する.
+     * <p>
+     * IRKitに連続で通信を行うと正常に動作しないことがあるため、デフォルトは{@value #SLEEP_TIME}ミリ秒。
+     * 異なるIRKitへのリクエストはこの間隔に関係なく並列に実行される。
+     * </p>
+     *
+     * @param interval 最小間隔(ミリ秒)
+     */
+    public synchronized void setRequestInterval(final long interval) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("interval is negative: " + interval);
+        }
+        mRequestInterval = interval;
+        for (IRKitRequestQueue queue : mRequestQueues.values()) {
+            queue.setInterval(interval);
+        }
+    }
+
+    /**
+     * 同じIRKitへのリクエストの最小間隔を取得する.
+     *
+     * @return 最小間隔(ミリ秒)
+     */
+    public synchronized long getRequestInterval() {
+        return mRequestInterval;
+    }
+
+    /**
+     * 指定したIPのIRKitのリクエストキューを削除する. 実行待ちのリクエストには失敗を通知する.
+     *
+     * @param ip IRKitのIPアドレス
+     */
+    private void removeRequestQueue(final String ip) {
+        IRKitRequestQueue queue = mRequestQueues.remove(ip);
+        if (queue != null) {
+            queue.clear();
+        }
+    }
+
     /**
      * リクエストを実行する.
      * 
@@ -472,6 +618,7 @@ public enum IRKitManager {
         }
         
         mServices.remove(device.getName());
+        removeRequestQueue(device.getIp());
         
         if (BuildConfig.DEBUG) {
             Log.d("IRKit", "Lost Device : " + device);
@@ -614,6 +761,9 @@ public enum IRKitManager {
             mRemoveHandler = null;
             mIsDetecting = false;
             mServices.clear();
+            for (String ip : mRequestQueues.keySet()) {
+                removeRequestQueue(ip);
+            }
             mDNS.removeServiceListener(SERVICE_TYPE, mServiceListener);
             try {
                 mDNS.close();
@@ -638,78 +788,73 @@ public enum IRKitManager {
 
     /**
      * 指定したIPに紐づくIRKitから赤外線データを取得する.
+     * <p>
+     * 同じIRKitへの取得要求が実行待ちの場合は、まとめて1回だけ取得する。
+     * </p>
      * 
      * @param ip IRKitのIPアドレス
      * @param callback 処理結果を受けるコールバック
      */
     public void fetchMessage(final String ip, final GetMessageCallback callback) {
-        mExecutor.execute(new Runnable() {
-
+        getRequestQueue(ip).offer(new IRKitRequestQueue.Request<String>("GET /messages",
+                new IRKitRequestQueue.ResultListener<String>() {
+                    @Override
+                    public void onResult(final String message) {
+                        callback.onGetMessage(message);
+                    }
+                }) {
             @Override
-            public void run() {
+            String execute() {
                 HttpGet req = createGetRequest(ip, "/messages");
-                HttpClient client = createClient();
-                String message = executeRequest(req, client);
-                callback.onGetMessage(message);
-
-                // 連続でIRKitに通信を行わないようにするためのスリープ
-                // IRKitに連続で通信を行うと正常に動作しないことがあるため
-                try {
-                    Thread.sleep(SLEEP_TIME);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
+                return executeDeviceRequest(req, new ResponseHandler<String>() {
+                    @Override
+                    public String handleResponse(final HttpResponse res) throws IOException {
+                        if (res.getStatusLine().getStatusCode() == STATUS_CODE_OK) {
+                            return EntityUtils.toString(res.getEntity());
+                        }
+                        return null;
+                    }
+                });
             }
         });
     }
 
-
-
     /**
      * 赤外線データを送信する.
+     * <p>
+     * 同じIRKitへの送信は順番に行い、前の送信から最小間隔を空ける。
+     * 同じ赤外線データの送信が実行待ちの場合は、まとめて1回だけ送信する。
+     * </p>
      * 
      * @param ip IRKitのIP
      * @param message 赤外線データ
      * @param callback 処理結果の通知を受けるコールバック
      */
     public void sendMessage(final String ip, final String message, final PostMessageCallback callback) {
-        mExecutor.execute(new Runnable() {
-
+        getRequestQueue(ip).offer(new IRKitRequestQueue.Request<Boolean>("POST /messages " + message,
+                new IRKitRequestQueue.ResultListener<Boolean>() {
+                    @Override
+                    public void onResult(final Boolean result) {
+                        callback.onPostMessage(result != null && result);
+                    }
+                }) {
             @Override
-            public void run() {
+            Boolean execute() {
+                if (BuildConfig.DEBUG) {
+                    Log.d("IRKit", "ip=" + ip + " post message : " + message);
+                }
                 HttpPost req = createPostRequest(ip, "/messages");
-                HttpClient client = createClient();
-                boolean result = false;
                 try {
-                    if (BuildConfig.DEBUG) {
-                        Log.d("IRKit", "ip=" + ip + " post message : " + message);
-                    }
-                    StringEntity body = new StringEntity(message);
-                    req.setEntity(body);
-                    HttpResponse res = client.execute(req);
-                    if (res.getStatusLine().getStatusCode() == STATUS_CODE_OK) {
-                        result = true;
-                    }
-                    
-                    // 連続でIRKitに通信を行わないようにするためのスリープ
-                    // IRKitに連続で通信を行うと正常に動作しないことがあるため
-                    try {
-                        Thread.sleep(SLEEP_TIME);
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    }
-                } catch (ClientProtocolException e) {
-                    if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
-                    }
-                } catch (IOException e) {
-                    if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
-                    }
-                } finally {
-                    client.getConnectionManager().shutdown();
-                    callback.onPostMessage(result);
+                    req.setEntity(new StringEntity(message));
+                } catch (UnsupportedEncodingException e) {
+                    return false;
                 }
+                return executeDeviceRequest(req, new ResponseHandler<Boolean>() {
+                    @Override
+                    public Boolean handleResponse(final HttpResponse res) {
+                        return res.getStatusLine().getStatusCode() == STATUS_CODE_OK;
+                    }
+                });
             }
         });
     }
@@ -887,39 +1032,38 @@ public enum IRKitManager {
     
     /**
      * 指定されたIPのデバイスがIRKitかをチェックする.
+     * <p>
+     * 同じIPへのリクエストと同じキューで実行するため、送信中のIRKitには送信が終わってから問い合わせる。
+     * 赤外線データの送信間隔は待たずに、送信の合間に問い合わせる。
+     * </p>
      * 
      * @param ip IPアドレス
      * @param callback コールバック
      */
     public void checkIfTargetIsIRKit(final String ip, final CheckingIRKitCallback callback) {
-        new Thread(new Runnable() {
-
+        getRequestQueue(ip).offer(new IRKitRequestQueue.Request<Boolean>("CHECK /messages", false,
+                new IRKitRequestQueue.ResultListener<Boolean>() {
+                    @Override
+                    public void onResult(final Boolean isIRKit) {
+                        callback.onChecked(isIRKit != null && isIRKit);
+                    }
+                }) {
             @Override
-            public void run() {
-
-                boolean isIRKit = false;
+            Boolean execute() {
                 HttpGet req = createGetRequest(ip, "/messages");
-                HttpClient client = createClient(HTTP_REQUEST_TIMEOUT);
-                try {
-                    HttpResponse res = client.execute(req);
-                    Header[] headers = res.getAllHeaders();
-                    for (Header h : headers) {
-                        if (h.getName().equals("Server") && h.getValue().contains("IRKit")) {
-                            isIRKit = true;
-                            break;
+                return executeDeviceRequest(req, new ResponseHandler<Boolean>() {
+                    @Override
+                    public Boolean handleResponse(final HttpResponse res) {
+                        for (Header h : res.getAllHeaders()) {
+                            if (h.getName().equals("Server") && h.getValue().contains("IRKit")) {
+                                return true;
+                            }
                         }
+                        return false;
                     }
-                } catch (IOException e) {
-                    if (BuildConfig.DEBUG) {
-                        e.printStackTrace();
-                    }
-                } finally {
-                    client.getConnectionManager().shutdown();
-                }
-
-                callback.onChecked(isIRKit);
+                });
             }
-        }).start();
+        });
     }
     
     /**
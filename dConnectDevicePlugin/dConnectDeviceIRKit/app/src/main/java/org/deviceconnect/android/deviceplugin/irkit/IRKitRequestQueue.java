@@ -0,0 +1,317 @@
+/*
+ IRKitRequestQueue.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.irkit;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1台のIRKitへのリクエストを順番に実行するキュー.
+ * <p>
+ * IRKitに連続で通信を行うと正常に動作しないことがあるため、前のリクエストが終わってから
+ * 最小間隔が経過するまで次のリクエストを実行しない。待つ間はスレッドを占有しないので、
+ * 別のIRKitのキューは並列に実行される。
+ * </p>
+ * <p>
+ * 最小間隔を空ける必要のないリクエスト(IRKitかどうかの確認など)は、間隔を待っているリクエストより先に実行し、
+ * 次のリクエストまでの間隔にも含めない。
+ * </p>
+ * <p>
+ * 実行待ちのリクエストと同じキーのリクエストが追加された場合は、1回だけ実行して両方に結果を通知する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class IRKitRequestQueue {
+
+    /**
+     * リクエストを実行するスレッド.
+     */
+    private final ScheduledExecutorService mExecutor;
+
+    /**
+     * 実行待ちのリクエスト.
+     */
+    private final LinkedList<Request<?>> mPending = new LinkedList<Request<?>>();
+
+    /**
+     * リクエストの最小間隔(ミリ秒).
+     */
+    private long mInterval;
+
+    /**
+     * 最小間隔を空けるリクエストが最後に終了した時刻(ミリ秒).
+     */
+    private long mLastFinishTime;
+
+    /**
+     * リクエストの実行中の場合はtrue.
+     */
+    private boolean mExecuting;
+
+    /**
+     * 予約済みの実行時刻(ミリ秒). 予約していない場合は{@link Long#MAX_VALUE}.
+     */
+    private long mScheduledTime = Long.MAX_VALUE;
+
+    /**
+     * 先頭のリクエストを実行するRunnable.
+     */
+    private final Runnable mRunner = new Runnable() {
+        @Override
+        public void run() {
+            runNext();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     *
+     * @param executor リクエストを実行するスレッド
+     * @param interval リクエストの最小間隔(ミリ秒)
+     */
+    IRKitRequestQueue(final ScheduledExecutorService executor, final long interval) {
+        mExecutor = executor;
+        mInterval = interval;
+        mLastFinishTime = now() - interval;
+    }
+
+    /**
+     * リクエストの最小間隔を設定する.
+     * <p>
+     * 間隔を待っているリクエストがある場合は、新しい間隔で実行時刻を決め直す。
+     * </p>
+     *
+     * @param interval リクエストの最小間隔(ミリ秒)
+     */
+    synchronized void setInterval(final long interval) {
+        mInterval = interval;
+        scheduleNext();
+    }
+
+    /**
+     * 実行待ちのリクエストの数を取得する.
+     *
+     * @return リクエストの数
+     */
+    synchronized int getPendingCount() {
+        return mPending.size();
+    }
+
+    /**
+     * リクエストを追加する.
+     *
+     * @param request リクエスト
+     */
+    synchronized void offer(final Request<?> request) {
+        if (request.mKey != null) {
+            for (Request<?> pending : mPending) {
+                if (request.mKey.equals(pending.mKey)) {
+                    pending.merge(request);
+                    return;
+                }
+            }
+        }
+        mPending.add(request);
+        scheduleNext();
+    }
+
+    /**
+     * 実行待ちのリクエストを全て破棄する. 破棄したリクエストには結果としてnullを通知する.
+     */
+    void clear() {
+        List<Request<?>> requests;
+        synchronized (this) {
+            requests = new ArrayList<Request<?>>(mPending);
+            mPending.clear();
+        }
+        for (Request<?> request : requests) {
+            request.cancel();
+        }
+    }
+
+    private void scheduleNext() {
+        if (mExecuting || mPending.isEmpty()) {
+            return;
+        }
+        long now = now();
+        long time = hasUnpacedRequest() ? now : mLastFinishTime + mInterval;
+        if (mScheduledTime <= time) {
+            // 既に予約した実行で次のリクエストを選び直す
+            return;
+        }
+        try {
+            mExecutor.schedule(mRunner, Math.max(0, time - now), TimeUnit.MILLISECONDS);
+            mScheduledTime = time;
+        } catch (RejectedExecutionException e) {
+            if (BuildConfig.DEBUG) {
+                Log.w("IRKit", "Request queue is already shut down.");
+            }
+        }
+    }
+
+    private void runNext() {
+        Request<?> request;
+        synchronized (this) {
+            long now = now();
+            if (now >= mScheduledTime) {
+                mScheduledTime = Long.MAX_VALUE;
+            }
+            if (mExecuting) {
+                return;
+            }
+            request = pollReadyRequest(now);
+            if (request == null) {
+                scheduleNext();
+                return;
+            }
+            mExecuting = true;
+        }
+        try {
+            request.run();
+        } finally {
+            synchronized (this) {
+                if (request.mPaced) {
+                    mLastFinishTime = now();
+                }
+                mExecuting = false;
+                scheduleNext();
+            }
+        }
+    }
+
+    private boolean hasUnpacedRequest() {
+        for (Request<?> request : mPending) {
+            if (!request.mPaced) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 実行できるリクエストを取り出す.
+     * <p>
+     * 最小間隔が経過している場合は先頭のリクエストを、経過していない場合は最小間隔を空けないリクエストを取り出す。
+     * </p>
+     *
+     * @param now 現在時刻(ミリ秒)
+     * @return リクエスト. 実行できるリクエストがない場合はnull
+     */
+    private Request<?> pollReadyRequest(final long now) {
+        boolean paceElapsed = now >= mLastFinishTime + mInterval;
+        for (Iterator<Request<?>> it = mPending.iterator(); it.hasNext();) {
+            Request<?> request = it.next();
+            if (paceElapsed || !request.mPaced) {
+                it.remove();
+                return request;
+            }
+        }
+        return null;
+    }
+
+    private static long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * 結果を受け取るリスナー.
+     *
+     * @param <T> 結果の型
+     */
+    interface ResultListener<T> {
+        /**
+         * 結果を通知する.
+         *
+         * @param result 結果. キャンセルされた場合はnull
+         */
+        void onResult(T result);
+    }
+
+    /**
+     * キューで実行するリクエスト.
+     *
+     * @param <T> 結果の型
+     */
+    abstract static class Request<T> {
+
+        /**
+         * 同じリクエストを判定するためのキー. nullの場合はまとめない.
+         */
+        private final String mKey;
+
+        /**
+         * 前後のリクエストとの間に最小間隔を空ける場合はtrue.
+         */
+        private final boolean mPaced;
+
+        /**
+         * 結果を受け取るリスナー一覧.
+         */
+        private final List<ResultListener<T>> mListeners = new ArrayList<ResultListener<T>>();
+
+        /**
+         * 前後のリクエストとの間に最小間隔を空けるリクエストを作成する.
+         *
+         * @param key 同じリクエストを判定するためのキー. キーが同じ場合は結果の型も同じであること
+         * @param listener 結果を受け取るリスナー
+         */
+        Request(final String key, final ResultListener<T> listener) {
+            this(key, true, listener);
+        }
+
+        /**
+         * コンストラクタ.
+         *
+         * @param key 同じリクエストを判定するためのキー. キーが同じ場合は結果の型も同じであること
+         * @param paced 前後のリクエストとの間に最小間隔を空ける場合はtrue
+         * @param listener 結果を受け取るリスナー
+         */
+        Request(final String key, final boolean paced, final ResultListener<T> listener) {
+            mKey = key;
+            mPaced = paced;
+            mListeners.add(listener);
+        }
+
+        /**
+         * リクエストを実行する.
+         *
+         * @return 結果
+         */
+        abstract T execute();
+
+        @SuppressWarnings("unchecked")
+        private void merge(final Request<?> request) {
+            mListeners.addAll(((Request<T>) request).mListeners);
+        }
+
+        private void run() {
+            T result = null;
+            try {
+                result = execute();
+            } finally {
+                notifyResult(result);
+            }
+        }
+
+        private void cancel() {
+            notifyResult(null);
+        }
+
+        private void notifyResult(final T result) {
+            for (ResultListener<T> listener : mListeners) {
+                listener.onResult(result);
+            }
+        }
+    }
+}
@@ -45,6 +45,11 @@ public class IRKitSettingActivity extends IRKitAbstractSettingActivity {
      */
     public static final String SP_KEY_CLIENT_KEY = "client_key";
 
+    /**
+     * SharedPreference キー 同じIRKitへのリクエストの最小間隔(ミリ秒).
+     */
+    public static final String SP_KEY_REQUEST_INTERVAL = "request_interval";
+
     /**
      * クライアントキー.
      */
@@ -192,6 +197,27 @@ public class IRKitSettingActivity extends IRKitAbstractSettingActivity {
         sp.edit().putString(SP_KEY_CLIENT_KEY, clientKey).commit();
     }
 
+    /**
+     * 同じIRKitへのリクエストの最小間隔を取得する.
+     *
+     * @return 最小間隔(ミリ秒)。保存されていない場合はデフォルト値を返す。
+     */
+    public long getRequestInterval() {
+        SharedPreferences sp = getSharedPreferences(SP_NAME, MODE_PRIVATE);
+        return sp.getLong(SP_KEY_REQUEST_INTERVAL, IRKitManager.INSTANCE.getRequestInterval());
+    }
+
+    /**
+     * 同じIRKitへのリクエストの最小間隔を保存し、IRKitManagerに反映する.
+     *
+     * @param interval 最小間隔(ミリ秒)
+     */
+    public void saveRequestInterval(final long interval) {
+        IRKitManager.INSTANCE.setRequestInterval(interval);
+        SharedPreferences sp = getSharedPreferences(SP_NAME, MODE_PRIVATE);
+        sp.edit().putLong(SP_KEY_REQUEST_INTERVAL, interval).commit();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
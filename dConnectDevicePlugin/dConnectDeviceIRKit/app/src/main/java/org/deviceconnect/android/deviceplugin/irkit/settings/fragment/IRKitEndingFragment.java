@@ -20,6 +20,7 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.EditText;
 
 /**
  * 最後の画面のフラグメント.
@@ -54,9 +55,50 @@ public class IRKitEndingFragment extends IRKitBaseFragment implements OnClickLis
         Button conBtn = (Button) rootView.findViewById(R.id.buttonWiFiSettings);
         conBtn.setOnClickListener(this);
 
+        final EditText intervalText = (EditText) rootView.findViewById(R.id.inputRequestInterval);
+        IRKitSettingActivity a = (IRKitSettingActivity) getActivity();
+        if (a != null) {
+            intervalText.setText(String.valueOf(a.getRequestInterval()));
+        }
+        Button intervalBtn = (Button) rootView.findViewById(R.id.buttonRequestInterval);
+        intervalBtn.setOnClickListener(new OnClickListener() {
+            @Override
+            public void onClick(final View v) {
+                saveRequestInterval(intervalText.getText().toString());
+            }
+        });
+
         return rootView;
     }
 
+    /**
+     * 入力された送信間隔を保存する.
+     *
+     * @param text 入力された送信間隔(ミリ秒)
+     */
+    private void saveRequestInterval(final String text) {
+        IRKitSettingActivity a = (IRKitSettingActivity) getActivity();
+        if (a == null) {
+            return;
+        }
+
+        long interval;
+        try {
+            interval = Long.parseLong(text.trim());
+        } catch (NumberFormatException e) {
+            interval = -1;
+        }
+        if (interval < 0) {
+            showAlert(R.string.alert_title_error, R.string.alert_message_request_interval_invalid,
+                    R.string.alert_btn_close, null);
+            return;
+        }
+
+        a.saveRequestInterval(interval);
+        showAlert(R.string.alert_title_request_interval, R.string.alert_message_request_interval_saved,
+                R.string.alert_btn_close, null);
+    }
+
     @Override
     public void onClick(final View v) {
 
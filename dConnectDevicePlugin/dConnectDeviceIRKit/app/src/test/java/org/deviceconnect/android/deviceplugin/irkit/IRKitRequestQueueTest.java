@@ -0,0 +1,346 @@
+/*
+ IRKitRequestQueueTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.irkit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link IRKitRequestQueue} with {@link MockIRKitServer}.
+ * @author NTT DOCOMO, INC.
+ */
+public class IRKitRequestQueueTest {
+
+    /** Minimum interval of the requests in milliseconds. */
+    private static final long INTERVAL = 300;
+
+    /** Allowed error of the timer in milliseconds. */
+    private static final long TOLERANCE = 5;
+
+    /** Time to wait for the results in seconds. */
+    private static final long TIMEOUT = 10;
+
+    private ScheduledExecutorService mExecutor;
+
+    private final List<MockIRKitServer> mServers = new ArrayList<MockIRKitServer>();
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newScheduledThreadPool(4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        mExecutor.shutdownNow();
+        for (MockIRKitServer server : mServers) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void offer_keepsInterval() throws Exception {
+        MockIRKitServer server = startServer();
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, INTERVAL);
+        ResultCollector<Integer> results = new ResultCollector<Integer>(3);
+        for (int i = 0; i < 3; i++) {
+            queue.offer(new PostRequest(server, "message" + i, results));
+        }
+        results.await();
+
+        assertEquals(Arrays.asList(200, 200, 200), results.get());
+        List<MockIRKitServer.Exchange> exchanges = server.getExchanges();
+        assertEquals(3, exchanges.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("message" + i, exchanges.get(i).getBody());
+        }
+        assertGap(exchanges.get(0), exchanges.get(1), INTERVAL);
+        assertGap(exchanges.get(1), exchanges.get(2), INTERVAL);
+    }
+
+    @Test
+    public void offer_mergesSameRequests() throws Exception {
+        MockIRKitServer server = startServer();
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, INTERVAL);
+        ResultCollector<Integer> results = new ResultCollector<Integer>(4);
+        queue.offer(new PostRequest(server, "first", results));
+        for (int i = 0; i < 3; i++) {
+            queue.offer(new PostRequest(server, "second", results));
+        }
+        results.await();
+
+        assertEquals(4, results.get().size());
+        List<MockIRKitServer.Exchange> exchanges = server.getExchanges();
+        assertEquals(2, exchanges.size());
+        assertEquals("first", exchanges.get(0).getBody());
+        assertEquals("second", exchanges.get(1).getBody());
+    }
+
+    @Test
+    public void offer_unpacedRequestDoesNotWaitForInterval() throws Exception {
+        MockIRKitServer server = startServer();
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, INTERVAL);
+        ResultCollector<Integer> posts = new ResultCollector<Integer>(2);
+        ResultCollector<Integer> checks = new ResultCollector<Integer>(1);
+        queue.offer(new PostRequest(server, "first", posts));
+        queue.offer(new PostRequest(server, "second", posts));
+        queue.offer(new CheckRequest(server, checks));
+        posts.await();
+        checks.await();
+
+        List<MockIRKitServer.Exchange> exchanges = server.getExchanges();
+        assertEquals(3, exchanges.size());
+        MockIRKitServer.Exchange first = exchanges.get(0);
+        MockIRKitServer.Exchange check = exchanges.get(1);
+        MockIRKitServer.Exchange second = exchanges.get(2);
+        assertEquals("POST", first.getMethod());
+        assertEquals("GET", check.getMethod());
+        assertEquals("second", second.getBody());
+
+        // The check runs between the posts, and does not delay the second post.
+        assertTrue("check waited " + (check.getStartTime() - first.getEndTime()) + " ms",
+                check.getStartTime() - first.getEndTime() < INTERVAL);
+        assertGap(first, second, INTERVAL);
+        assertTrue("second post waited " + (second.getStartTime() - first.getEndTime()) + " ms",
+                second.getStartTime() - first.getEndTime() < INTERVAL * 2);
+    }
+
+    @Test
+    public void offer_differentDevicesRunInParallel() throws Exception {
+        MockIRKitServer server1 = startServer();
+        MockIRKitServer server2 = startServer();
+        server1.setResponseDelay(INTERVAL);
+        server2.setResponseDelay(INTERVAL);
+        IRKitRequestQueue queue1 = new IRKitRequestQueue(mExecutor, INTERVAL);
+        IRKitRequestQueue queue2 = new IRKitRequestQueue(mExecutor, INTERVAL);
+        ResultCollector<Integer> results = new ResultCollector<Integer>(2);
+        queue1.offer(new PostRequest(server1, "message", results));
+        queue2.offer(new PostRequest(server2, "message", results));
+        results.await();
+
+        MockIRKitServer.Exchange exchange1 = server1.getExchanges().get(0);
+        MockIRKitServer.Exchange exchange2 = server2.getExchanges().get(0);
+        assertTrue("requests did not overlap",
+                exchange1.getStartTime() < exchange2.getEndTime()
+                        && exchange2.getStartTime() < exchange1.getEndTime());
+    }
+
+    @Test
+    public void clear_notifiesNull() throws Exception {
+        MockIRKitServer server = startServer();
+        server.setResponseDelay(INTERVAL);
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, INTERVAL);
+        ResultCollector<Integer> results = new ResultCollector<Integer>(3);
+        queue.offer(new PostRequest(server, "first", results));
+        queue.offer(new PostRequest(server, "second", results));
+        queue.offer(new CheckRequest(server, results));
+        queue.clear();
+        assertEquals(0, queue.getPendingCount());
+        results.await();
+
+        // The first request may have started before clear().
+        List<Integer> list = results.get();
+        assertEquals(3, list.size());
+        int cancelled = 0;
+        for (Integer result : list) {
+            if (result == null) {
+                cancelled++;
+            }
+        }
+        assertTrue(cancelled >= 2);
+        assertEquals(3 - cancelled, server.getExchanges().size());
+    }
+
+    @Test
+    public void clear_thenOffer() throws Exception {
+        MockIRKitServer server = startServer();
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, INTERVAL);
+        queue.clear();
+        ResultCollector<Integer> results = new ResultCollector<Integer>(1);
+        queue.offer(new CheckRequest(server, results));
+        results.await();
+
+        assertEquals(Collections.singletonList(200), results.get());
+    }
+
+    @Test
+    public void setInterval_shortensWaitOfPendingRequest() throws Exception {
+        MockIRKitServer server = startServer();
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, TimeUnit.SECONDS.toMillis(TIMEOUT * 2));
+        ResultCollector<Integer> first = new ResultCollector<Integer>(1);
+        ResultCollector<Integer> second = new ResultCollector<Integer>(1);
+        queue.offer(new PostRequest(server, "first", first));
+        first.await();
+        queue.offer(new PostRequest(server, "second", second));
+
+        // The second request would wait longer than TIMEOUT without the change.
+        queue.setInterval(INTERVAL);
+        second.await();
+
+        List<MockIRKitServer.Exchange> exchanges = server.getExchanges();
+        assertEquals(2, exchanges.size());
+        assertGap(exchanges.get(0), exchanges.get(1), INTERVAL);
+    }
+
+    @Test
+    public void setInterval_lengthensWaitOfPendingRequest() throws Exception {
+        MockIRKitServer server = startServer();
+        IRKitRequestQueue queue = new IRKitRequestQueue(mExecutor, INTERVAL);
+        ResultCollector<Integer> first = new ResultCollector<Integer>(1);
+        ResultCollector<Integer> second = new ResultCollector<Integer>(1);
+        queue.offer(new PostRequest(server, "first", first));
+        first.await();
+        queue.offer(new PostRequest(server, "second", second));
+
+        queue.setInterval(INTERVAL * 3);
+        second.await();
+
+        List<MockIRKitServer.Exchange> exchanges = server.getExchanges();
+        assertEquals(2, exchanges.size());
+        assertGap(exchanges.get(0), exchanges.get(1), INTERVAL * 3);
+    }
+
+    private MockIRKitServer startServer() throws IOException {
+        MockIRKitServer server = new MockIRKitServer();
+        mServers.add(server);
+        return server;
+    }
+
+    private static void assertGap(final MockIRKitServer.Exchange before, final MockIRKitServer.Exchange after,
+                                  final long interval) {
+        long gap = after.getStartTime() - before.getEndTime();
+        assertTrue("gap is " + gap + " ms", gap >= interval - TOLERANCE);
+    }
+
+    /**
+     * Sends a request to the server, and returns the status code.
+     * @param host host of the server
+     * @param method method of the request
+     * @param body body of the request, or null if the request has no body
+     * @return status code, or null if the request failed
+     */
+    static Integer executeRequest(final String host, final String method, final String body) {
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL("http://" + host + "/messages").openConnection();
+            conn.setRequestMethod(method);
+            conn.setRequestProperty("X-Requested-With", "curl");
+            if (body != null) {
+                byte[] bytes = body.getBytes("UTF-8");
+                conn.setDoOutput(true);
+                conn.setFixedLengthStreamingMode(bytes.length);
+                OutputStream out = conn.getOutputStream();
+                out.write(bytes);
+                out.close();
+            }
+            int status = conn.getResponseCode();
+            if (!"IRKit".equals(String.valueOf(conn.getHeaderField("Server")).split("/")[0])) {
+                return null;
+            }
+            InputStream in = conn.getInputStream();
+            ByteArrayOutputStream response = new ByteArrayOutputStream();
+            byte[] buf = new byte[1024];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                response.write(buf, 0, len);
+            }
+            in.close();
+            return status;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Request to send a message, which keeps the interval.
+     */
+    private static class PostRequest extends IRKitRequestQueue.Request<Integer> {
+        private final MockIRKitServer mServer;
+        private final String mMessage;
+
+        PostRequest(final MockIRKitServer server, final String message, final ResultCollector<Integer> results) {
+            super("POST /messages " + message, results);
+            mServer = server;
+            mMessage = message;
+        }
+
+        @Override
+        Integer execute() {
+            return executeRequest(mServer.getHost(), "POST", mMessage);
+        }
+    }
+
+    /**
+     * Request to check whether the device is IRKit, which does not keep the interval.
+     */
+    private static class CheckRequest extends IRKitRequestQueue.Request<Integer> {
+        private final MockIRKitServer mServer;
+
+        CheckRequest(final MockIRKitServer server, final ResultCollector<Integer> results) {
+            super("CHECK /messages", false, results);
+            mServer = server;
+        }
+
+        @Override
+        Integer execute() {
+            return executeRequest(mServer.getHost(), "GET", null);
+        }
+    }
+
+    /**
+     * Collects the results of requests.
+     * @param <T> type of the result
+     */
+    private static class ResultCollector<T> implements IRKitRequestQueue.ResultListener<T> {
+        private final List<T> mResults = new ArrayList<T>();
+        private final CountDownLatch mLatch;
+
+        ResultCollector(final int count) {
+            mLatch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onResult(final T result) {
+            synchronized (mResults) {
+                mResults.add(result);
+            }
+            mLatch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("timed out", mLatch.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+
+        List<T> get() {
+            synchronized (mResults) {
+                return new ArrayList<T>(mResults);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ MockIRKitServer
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.irkit;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mock of the HTTP server of IRKit.
+ * <p>
+ * Like IRKit, it handles one connection at a time, answers GET /messages with the last received
+ * message and POST /messages with 200, and sends the "Server: IRKit" header.
+ * Every request is recorded with the time when it started and ended.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class MockIRKitServer {
+
+    /** Message returned by GET /messages before any message is posted. */
+    static final String DEFAULT_MESSAGE = "{\"format\":\"raw\",\"freq\":38,\"data\":[18031,8755,1190,1190]}";
+
+    private final ServerSocket mServerSocket;
+
+    private final Thread mThread;
+
+    private final List<Exchange> mExchanges = new ArrayList<Exchange>();
+
+    private volatile long mResponseDelay;
+
+    private String mMessage = DEFAULT_MESSAGE;
+
+    /**
+     * Starts a server on the loopback address.
+     * @throws IOException if the server cannot be started
+     */
+    public MockIRKitServer() throws IOException {
+        mServerSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, "MockIRKitServer");
+        mThread.start();
+    }
+
+    /**
+     * Gets the host of this server in the form of "address:port".
+     * @return host
+     */
+    public String getHost() {
+        return "127.0.0.1:" + mServerSocket.getLocalPort();
+    }
+
+    /**
+     * Sets the time to wait before sending a response.
+     * @param delay delay in milliseconds
+     */
+    public void setResponseDelay(final long delay) {
+        mResponseDelay = delay;
+    }
+
+    /**
+     * Gets the requests which are handled so far.
+     * @return requests
+     */
+    public List<Exchange> getExchanges() {
+        synchronized (mExchanges) {
+            return new ArrayList<Exchange>(mExchanges);
+        }
+    }
+
+    /**
+     * Stops the server.
+     * @throws InterruptedException if interrupted while waiting for the server thread
+     */
+    public void close() throws InterruptedException {
+        try {
+            mServerSocket.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        mThread.join();
+    }
+
+    private void accept() {
+        while (true) {
+            Socket socket;
+            try {
+                socket = mServerSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+            try {
+                handle(socket);
+            } catch (IOException e) {
+                // The client closed the connection.
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void handle(final Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        String requestLine = readLine(in);
+        if (requestLine == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        int contentLength = 0;
+        String line;
+        while ((line = readLine(in)) != null && !line.isEmpty()) {
+            String lower = line.toLowerCase(Locale.ENGLISH);
+            if (lower.startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring("content-length:".length()).trim());
+            }
+        }
+        byte[] body = new byte[contentLength];
+        for (int n = 0; n < contentLength;) {
+            int read = in.read(body, n, contentLength - n);
+            if (read < 0) {
+                throw new IOException("Unexpected end of the request.");
+            }
+            n += read;
+        }
+
+        String[] parts = requestLine.split(" ");
+        String method = parts[0];
+        String path = parts.length > 1 ? parts[1] : "";
+        String responseBody = "";
+        int status = 200;
+        if ("/messages".equals(path) && "GET".equals(method)) {
+            synchronized (this) {
+                responseBody = mMessage;
+            }
+        } else if ("/messages".equals(path) && "POST".equals(method)) {
+            synchronized (this) {
+                mMessage = new String(body, "UTF-8");
+            }
+        } else {
+            status = 404;
+        }
+
+        long delay = mResponseDelay;
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+
+        // Record the request before responding, so that the client sees it after the response.
+        synchronized (mExchanges) {
+            mExchanges.add(new Exchange(method, path, new String(body, "UTF-8"), start, System.nanoTime()));
+        }
+
+        byte[] responseBytes = responseBody.getBytes("UTF-8");
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.0 " + status + (status == 200 ? " OK" : " Not Found") + "\r\n"
+                + "Server: IRKit/3.0.0.0.g85190b5\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + responseBytes.length + "\r\n"
+                + "Connection: close\r\n"
+                + "\r\n").getBytes("UTF-8"));
+        out.write(responseBytes);
+        out.flush();
+    }
+
+    private static String readLine(final InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                return line.size() > 0 ? line.toString("UTF-8") : null;
+            }
+            if (c != '\r') {
+                line.write(c);
+            }
+        }
+        return line.toString("UTF-8");
+    }
+
+    /**
+     * Request handled by {@link MockIRKitServer}.
+     */
+    public static class Exchange {
+        private final String mMethod;
+        private final String mPath;
+        private final String mBody;
+        private final long mStartTime;
+        private final long mEndTime;
+
+        Exchange(final String method, final String path, final String body,
+                 final long startTime, final long endTime) {
+            mMethod = method;
+            mPath = path;
+            mBody = body;
+            mStartTime = startTime;
+            mEndTime = endTime;
+        }
+
+        public String getMethod() {
+            return mMethod;
+        }
+
+        public String getPath() {
+            return mPath;
+        }
+
+        public String getBody() {
+            return mBody;
+        }
+
+        /**
+         * Gets the time when the request is received.
+         * @return time in milliseconds, which is comparable only with the other exchanges
+         */
+        public long getStartTime() {
+            return TimeUnit.NANOSECONDS.toMillis(mStartTime);
+        }
+
+        /**
+         * Gets the time just before the response is sent.
+         * @return time in milliseconds, which is comparable only with the other exchanges
+         */
+        public long getEndTime() {
+            return TimeUnit.NANOSECONDS.toMillis(mEndTime);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package org.deviceconnect.android.deviceplugin.linking.beacon;
+
+import android.content.Context;
+import android.content.Intent;
+
+import org.deviceconnect.android.deviceplugin.linking.LinkingDevicePluginService;
+
+import java.util.Random;
+
+/**
+ * Linkingアプリから届くビーコンのスキャン結果を擬似的に生成するクラス.
+ */
+class FakeBeaconAdvertiser {
+
+    static final int VENDOR_ID = 1;
+    static final int FIRST_EXTRA_ID = 10000;
+
+    private final Context mContext;
+    private final int mBeaconCount;
+    private final Random mRandom;
+    private long mTimeStamp;
+    private int mNext;
+
+    FakeBeaconAdvertiser(final Context context, final int beaconCount, final long startTimeStamp) {
+        mContext = context;
+        mBeaconCount = beaconCount;
+        mTimeStamp = startTimeStamp;
+        mRandom = new Random(beaconCount);
+    }
+
+    /**
+     * 次のビーコンのスキャン結果を作成する.
+     * <p>
+     * ビーコンは順番に巡回し、タイムスタンプは1ミリ秒ずつ進める。
+     * </p>
+     * @return スキャン結果
+     */
+    Intent next() {
+        int extraId = FIRST_EXTRA_ID + mNext;
+        mNext = (mNext + 1) % mBeaconCount;
+        mTimeStamp++;
+
+        Intent intent = new Intent();
+        intent.setAction(LinkingBeaconUtil.ACTION_BEACON_SCAN_RESULT);
+        intent.setClass(mContext, LinkingDevicePluginService.class);
+        intent.putExtra(LinkingBeaconUtil.EXTRA_ID, extraId);
+        intent.putExtra(LinkingBeaconUtil.VENDOR_ID, VENDOR_ID);
+        intent.putExtra(LinkingBeaconUtil.VERSION, 1);
+        intent.putExtra(LinkingBeaconUtil.TIME_STAMP, mTimeStamp);
+        intent.putExtra(LinkingBeaconUtil.RSSI, -40 - mRandom.nextInt(60));
+        intent.putExtra(LinkingBeaconUtil.TX_POWER, -59);
+        intent.putExtra(LinkingBeaconUtil.DISTANCE, 1 + mRandom.nextInt(3));
+        intent.putExtra(LinkingBeaconUtil.TEMPERATURE, 20.0f + mRandom.nextInt(100) / 10.0f);
+        intent.putExtra(LinkingBeaconUtil.HUMIDITY, 40.0f + mRandom.nextInt(200) / 10.0f);
+        intent.putExtra(LinkingBeaconUtil.ATMOSPHERIC_PRESSURE, 1000.0f + mRandom.nextInt(300) / 10.0f);
+        intent.putExtra(LinkingBeaconUtil.LOW_BATTERY, false);
+        intent.putExtra(LinkingBeaconUtil.BATTERY_LEVEL, (float) mRandom.nextInt(100));
+        return intent;
+    }
+
+    long getTimeStamp() {
+        return mTimeStamp;
+    }
+}
@@ -0,0 +1,185 @@
+package org.deviceconnect.android.deviceplugin.linking.beacon;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.deviceconnect.android.deviceplugin.linking.beacon.data.TemperatureData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class LinkingBeaconJournalTest {
+
+    private ScheduledExecutorService mExecutorService;
+    private final List<List<LinkingBeaconJournal.Record>> mWritten = new ArrayList<>();
+    private CountDownLatch mWriteLatch;
+    private boolean mFailWrite;
+    private boolean mRejectWrite;
+
+    private final LinkingBeaconJournal.Writer mWriter = new LinkingBeaconJournal.Writer() {
+        @Override
+        public boolean write(final List<LinkingBeaconJournal.Record> records) {
+            if (mFailWrite) {
+                throw new IllegalStateException("test");
+            }
+            if (mRejectWrite) {
+                return false;
+            }
+            synchronized (mWritten) {
+                mWritten.add(records);
+            }
+            if (mWriteLatch != null) {
+                mWriteLatch.countDown();
+            }
+            return true;
+        }
+    };
+
+    @Before
+    public void setUp() {
+        mExecutorService = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void put_coalesce() throws Exception {
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 100, 60 * 1000);
+        TemperatureData last = null;
+        for (int i = 0; i < 10; i++) {
+            last = createTemperature(i);
+            journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, last);
+        }
+        journal.put(1, 101, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.GATT, new Object());
+        assertThat(journal.getPendingSize(), is(3));
+
+        journal.flush();
+        assertThat(journal.getPendingSize(), is(0));
+        assertThat(mWritten.size(), is(1));
+        assertThat(mWritten.get(0).size(), is(3));
+        assertThat(findData(mWritten.get(0), 100, LinkingBeaconJournal.Sensor.TEMPERATURE), is(sameInstance((Object) last)));
+    }
+
+    @Test
+    public void put_flushBySize() throws Exception {
+        mWriteLatch = new CountDownLatch(1);
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 10, 60 * 1000);
+        for (int i = 0; i < 10; i++) {
+            journal.put(1, i, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(i));
+        }
+        assertThat(mWriteLatch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(mWritten.get(0).size(), is(10));
+    }
+
+    @Test
+    public void put_flushByTime() throws Exception {
+        mWriteLatch = new CountDownLatch(1);
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 100, 200);
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+        assertThat(mWriteLatch.await(5, TimeUnit.SECONDS), is(true));
+        assertThat(mWritten.get(0).size(), is(1));
+    }
+
+    @Test
+    public void remove() throws Exception {
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 100, 60 * 1000);
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.GATT, new Object());
+        journal.put(1, 101, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+
+        journal.remove(1, 100);
+        assertThat(journal.getPendingSize(), is(1));
+
+        journal.flush();
+        assertThat(findData(mWritten.get(0), 100, LinkingBeaconJournal.Sensor.TEMPERATURE), is((Object) null));
+    }
+
+    @Test
+    public void flush_failure() throws Exception {
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 100, 60 * 1000);
+        TemperatureData newer = createTemperature(1);
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+        journal.put(1, 101, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+
+        mFailWrite = true;
+        try {
+            journal.flush();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertThat(journal.getPendingSize(), is(2));
+
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, newer);
+        mFailWrite = false;
+        journal.flush();
+        assertThat(mWritten.get(0).size(), is(2));
+        assertThat(findData(mWritten.get(0), 100, LinkingBeaconJournal.Sensor.TEMPERATURE), is(sameInstance((Object) newer)));
+    }
+
+    @Test
+    public void flush_rejected() throws Exception {
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 100, 60 * 1000);
+        TemperatureData newer = createTemperature(1);
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+        journal.put(1, 101, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+
+        mRejectWrite = true;
+        journal.flush();
+        assertThat(mWritten.size(), is(0));
+        assertThat(journal.getPendingSize(), is(2));
+
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, newer);
+        mRejectWrite = false;
+        journal.flush();
+        assertThat(mWritten.get(0).size(), is(2));
+        assertThat(findData(mWritten.get(0), 100, LinkingBeaconJournal.Sensor.TEMPERATURE), is(sameInstance((Object) newer)));
+    }
+
+    @Test
+    public void close() throws Exception {
+        mWriteLatch = new CountDownLatch(1);
+        LinkingBeaconJournal journal = new LinkingBeaconJournal(mWriter, mExecutorService, 100, 60 * 1000);
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(0));
+        journal.close();
+        mExecutorService.shutdown();
+
+        assertThat(mWriteLatch.await(5, TimeUnit.SECONDS), is(true));
+        journal.put(1, 100, LinkingBeaconJournal.Sensor.TEMPERATURE, createTemperature(1));
+        assertThat(journal.getPendingSize(), is(0));
+    }
+
+    private static TemperatureData createTemperature(final int i) {
+        TemperatureData temp = new TemperatureData();
+        temp.setTimeStamp(i);
+        temp.setValue(20.0f + i);
+        return temp;
+    }
+
+    private static Object findData(final List<LinkingBeaconJournal.Record> records, final int extraId,
+                                   final LinkingBeaconJournal.Sensor sensor) {
+        for (LinkingBeaconJournal.Record record : records) {
+            if (record.getExtraId() == extraId && record.getSensor() == sensor) {
+                return record.getData();
+            }
+        }
+        return null;
+    }
+}
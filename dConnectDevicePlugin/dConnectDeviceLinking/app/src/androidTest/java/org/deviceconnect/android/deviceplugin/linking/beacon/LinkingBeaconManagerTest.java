@@ -617,6 +617,41 @@ public class LinkingBeaconManagerTest {
 
         mgr.destroy();
     }
+
+    @Test
+    public void onReceivedBeacon_manyBeacons() throws Exception {
+        final int beaconCount = 50;
+        final int advertisementCount = beaconCount * 20;
+        final long startTimeStamp = System.currentTimeMillis();
+        final LinkingBeaconManager mgr = new LinkingBeaconManager(mContext);
+        mgr.removeAllBeacons();
+
+        FakeBeaconAdvertiser advertiser = new FakeBeaconAdvertiser(mContext, beaconCount, startTimeStamp);
+        for (int i = 0; i < advertisementCount; i++) {
+            mgr.onReceivedBeacon(advertiser.next());
+        }
+        mgr.flush();
+
+        assertThat(mgr.getLinkingBeacons().size(), is(beaconCount));
+        for (int i = 0; i < beaconCount; i++) {
+            LinkingBeacon beacon = mgr.findBeacon(FakeBeaconAdvertiser.FIRST_EXTRA_ID + i, FakeBeaconAdvertiser.VENDOR_ID);
+            assertThat(beacon, notNullValue());
+            assertThat(beacon.isOnline(), is(true));
+        }
+
+        LinkingDBAdapter adapter = new LinkingDBAdapter(mContext);
+        List<TemperatureData> history = adapter.queryTemperatureHistory(FakeBeaconAdvertiser.VENDOR_ID,
+                FakeBeaconAdvertiser.FIRST_EXTRA_ID, startTimeStamp, advertiser.getTimeStamp());
+        assertThat(history.isEmpty(), is(false));
+        TemperatureData latest = adapter.queryTemperature(FakeBeaconAdvertiser.VENDOR_ID, FakeBeaconAdvertiser.FIRST_EXTRA_ID);
+        LinkingBeacon beacon = mgr.findBeacon(FakeBeaconAdvertiser.FIRST_EXTRA_ID, FakeBeaconAdvertiser.VENDOR_ID);
+        assertThat(latest.getTimeStamp(), is(beacon.getTemperatureData().getTimeStamp()));
+        assertThat(latest.getValue(), is(beacon.getTemperatureData().getValue()));
+
+        mgr.removeAllBeacons();
+        mgr.destroy();
+    }
+
     private void sendDelay(final LinkingBeaconManager mgr, final Intent intent) {
         new Thread(new Runnable() {
             @Override
@@ -0,0 +1,287 @@
+/*
+ LinkingBeaconJournal.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.linking.beacon;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ビーコンから受信したデータを遅延してまとめて書き込むためのジャーナル.
+ * <p>
+ * ビーコンとセンサーの組み合わせごとに最新のデータだけを保持し、
+ * 保持しているデータの数が閾値を超えるか、最初のデータを保持してから一定時間が経過した時に、
+ * {@link Writer}に一度に渡す。
+ * </p>
+ */
+class LinkingBeaconJournal {
+
+    enum Sensor {
+        GATT,
+        TEMPERATURE,
+        HUMIDITY,
+        ATMOSPHERIC_PRESSURE,
+        BATTERY,
+        RAW_DATA
+    }
+
+    private final Writer mWriter;
+    private final ScheduledExecutorService mExecutorService;
+    private final int mMaxPendingSize;
+    private final long mMaxDelay;
+
+    private final Map<Sensor, Map<Long, Record>> mPending = new EnumMap<>(Sensor.class);
+    private int mPendingSize;
+
+    private ScheduledFuture<?> mScheduledFuture;
+    private boolean mFlushRequested;
+    private boolean mClosed;
+
+    /**
+     * 書き込みを直列化するためのロック.
+     */
+    private final Object mWriteLock = new Object();
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    LinkingBeaconJournal(final Writer writer, final ScheduledExecutorService executorService,
+                         final int maxPendingSize, final long maxDelay) {
+        if (maxPendingSize <= 0) {
+            throw new IllegalArgumentException("maxPendingSize is invalid: " + maxPendingSize);
+        }
+        mWriter = writer;
+        mExecutorService = executorService;
+        mMaxPendingSize = maxPendingSize;
+        mMaxDelay = maxDelay;
+        for (Sensor sensor : Sensor.values()) {
+            mPending.put(sensor, new LinkedHashMap<Long, Record>());
+        }
+    }
+
+    /**
+     * データを追加する.
+     * <p>
+     * 同じビーコンとセンサーのデータが書き込み前に残っている場合は上書きする。
+     * </p>
+     * @param vendorId ベンダーID
+     * @param extraId 個別ID
+     * @param sensor センサーの種類
+     * @param data データ. 追加した後は変更しないこと
+     */
+    synchronized void put(final int vendorId, final int extraId, final Sensor sensor, final Object data) {
+        if (mClosed) {
+            return;
+        }
+
+        Record old = mPending.get(sensor).put(toKey(vendorId, extraId),
+                new Record(vendorId, extraId, sensor, data));
+        if (old == null) {
+            mPendingSize++;
+        }
+
+        if (mPendingSize >= mMaxPendingSize) {
+            requestFlush();
+        } else {
+            scheduleFlush();
+        }
+    }
+
+    /**
+     * 指定されたビーコンの書き込み前のデータを破棄する.
+     * @param vendorId ベンダーID
+     * @param extraId 個別ID
+     */
+    synchronized void remove(final int vendorId, final int extraId) {
+        Long key = toKey(vendorId, extraId);
+        for (Map<Long, Record> records : mPending.values()) {
+            if (records.remove(key) != null) {
+                mPendingSize--;
+            }
+        }
+    }
+
+    /**
+     * 書き込み前のデータを全て破棄する.
+     */
+    synchronized void clear() {
+        for (Map<Long, Record> records : mPending.values()) {
+            records.clear();
+        }
+        mPendingSize = 0;
+    }
+
+    /**
+     * 書き込み前のデータの数を取得する.
+     * @return データの数
+     */
+    synchronized int getPendingSize() {
+        return mPendingSize;
+    }
+
+    /**
+     * 書き込み前のデータを呼び出したスレッドで書き込む.
+     */
+    void flush() {
+        synchronized (mWriteLock) {
+            List<Record> records = drain();
+            if (records.isEmpty()) {
+                return;
+            }
+
+            boolean written;
+            try {
+                written = mWriter.write(records);
+            } catch (RuntimeException e) {
+                restore(records);
+                throw e;
+            }
+            if (!written) {
+                restore(records);
+            }
+        }
+    }
+
+    /**
+     * 残っているデータを書き込み、以降のデータを受け付けないようにする.
+     * <p>
+     * 書き込みは実行サービスで行うため、この後に実行サービスを停止しても書き込まれる。
+     * </p>
+     */
+    synchronized void close() {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        requestFlush();
+    }
+
+    private synchronized List<Record> drain() {
+        if (mScheduledFuture != null) {
+            mScheduledFuture.cancel(false);
+            mScheduledFuture = null;
+        }
+        mFlushRequested = false;
+
+        List<Record> records = new ArrayList<>(mPendingSize);
+        for (Map<Long, Record> pending : mPending.values()) {
+            records.addAll(pending.values());
+            pending.clear();
+        }
+        mPendingSize = 0;
+        return records;
+    }
+
+    /**
+     * 書き込みに失敗したデータを戻し、一定時間後に再度書き込む.
+     * 既に新しいデータがある場合は新しいデータを優先する.
+     * @param records 書き込みに失敗したデータ
+     */
+    private synchronized void restore(final List<Record> records) {
+        if (mClosed) {
+            return;
+        }
+        for (Record record : records) {
+            Map<Long, Record> pending = mPending.get(record.getSensor());
+            Long key = toKey(record.getVendorId(), record.getExtraId());
+            if (!pending.containsKey(key)) {
+                pending.put(key, record);
+                mPendingSize++;
+            }
+        }
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (mScheduledFuture != null || mFlushRequested || mPendingSize == 0) {
+            return;
+        }
+        try {
+            mScheduledFuture = mExecutorService.schedule(mFlushRunnable, mMaxDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 実行サービスが停止している場合は、次のflushで書き込む
+        }
+    }
+
+    private void requestFlush() {
+        if (mFlushRequested) {
+            return;
+        }
+        if (mScheduledFuture != null) {
+            mScheduledFuture.cancel(false);
+            mScheduledFuture = null;
+        }
+        try {
+            mExecutorService.execute(mFlushRunnable);
+            mFlushRequested = true;
+        } catch (RejectedExecutionException e) {
+            // 実行サービスが停止している場合は、次のflushで書き込む
+        }
+    }
+
+    private static Long toKey(final int vendorId, final int extraId) {
+        return ((long) vendorId << 32) | (extraId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * ジャーナルに保持されるデータ.
+     */
+    static final class Record {
+        private final int mVendorId;
+        private final int mExtraId;
+        private final Sensor mSensor;
+        private final Object mData;
+
+        Record(final int vendorId, final int extraId, final Sensor sensor, final Object data) {
+            mVendorId = vendorId;
+            mExtraId = extraId;
+            mSensor = sensor;
+            mData = data;
+        }
+
+        int getVendorId() {
+            return mVendorId;
+        }
+
+        int getExtraId() {
+            return mExtraId;
+        }
+
+        Sensor getSensor() {
+            return mSensor;
+        }
+
+        Object getData() {
+            return mData;
+        }
+    }
+
+    /**
+     * ジャーナルのデータを書き込むインターフェース.
+     */
+    interface Writer {
+        /**
+         * データをまとめて書き込む.
+         * <p>
+         * falseを返した場合、または例外を投げた場合は、データがジャーナルに戻され、一定時間後に再度書き込まれる。
+         * </p>
+         * @param records データ
+         * @return 全てのデータを書き込めた場合はtrue、それ以外はfalse
+         */
+        boolean write(List<Record> records);
+    }
+}
@@ -24,7 +24,9 @@ import org.deviceconnect.android.deviceplugin.linking.util.PreferenceUtil;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -35,6 +37,16 @@ public class LinkingBeaconManager {
 
     private static final int INTERVAL = 20 * 1000;
 
+    /**
+     * 書き込み前のデータがこの数を超えたらデータベースに書き込む.
+     */
+    private static final int JOURNAL_FLUSH_SIZE = 64;
+
+    /**
+     * 書き込み前のデータを保持する最大時間(ミリ秒).
+     */
+    private static final int JOURNAL_FLUSH_DELAY = 5 * 1000;
+
     private Context mContext;
     private LinkingBeaconUtil.ScanState mScanState;
     private LinkingBeaconUtil.ScanDetail mScanDetail;
@@ -45,6 +57,11 @@ public class LinkingBeaconManager {
 
     private final List<LinkingBeacon> mLinkingBeacons = Collections.synchronizedList(new ArrayList<LinkingBeacon>());
 
+    /**
+     * ベンダーIDと個別IDからビーコンを検索するためのインデックス. mLinkingBeaconsで同期する.
+     */
+    private final Map<Long, LinkingBeacon> mBeaconIndex = new HashMap<>();
+
     private final List<OnBeaconConnectListener> mOnBeaconConnectListeners = Collections.synchronizedList(new ArrayList<OnBeaconConnectListener>());
     private final List<OnBeaconEventListener> mOnBeaconEventListeners = Collections.synchronizedList(new ArrayList<OnBeaconEventListener>());
     private final List<OnBeaconButtonEventListener> mOnBeaconButtonEventListeners = Collections.synchronizedList(new ArrayList<OnBeaconButtonEventListener>());
@@ -58,6 +75,8 @@ public class LinkingBeaconManager {
 
     private LinkingDBAdapter mDBAdapter;
 
+    private LinkingBeaconJournal mJournal;
+
     private TimeoutRunnable mTimeoutRunnable;
 
     private boolean mScanFlag;
@@ -65,7 +84,24 @@ public class LinkingBeaconManager {
     public LinkingBeaconManager(final Context context) {
         mContext = context;
         mDBAdapter = new LinkingDBAdapter(context);
-        mLinkingBeacons.addAll(mDBAdapter.queryBeacons());
+        mJournal = new LinkingBeaconJournal(new LinkingBeaconJournal.Writer() {
+            @Override
+            public boolean write(final List<LinkingBeaconJournal.Record> records) {
+                if (!mDBAdapter.insertRecords(records)) {
+                    if (BuildConfig.DEBUG) {
+                        Log.e(TAG, "Failed to insert the beacon data.");
+                    }
+                    return false;
+                }
+                return true;
+            }
+        }, mScheduledExecutorService, JOURNAL_FLUSH_SIZE, JOURNAL_FLUSH_DELAY);
+        synchronized (mLinkingBeacons) {
+            for (LinkingBeacon beacon : mDBAdapter.queryBeacons()) {
+                mLinkingBeacons.add(beacon);
+                mBeaconIndex.put(toKey(beacon.getExtraId(), beacon.getVendorId()), beacon);
+            }
+        }
         mScanMode = LinkingBeaconUtil.ScanMode.valueOf(PreferenceUtil.getInstance(mContext).getBeaconScanMode());
 
         boolean scan = isStartedForceBeaconScan();
@@ -84,6 +120,7 @@ public class LinkingBeaconManager {
         stopBeaconScan();
         stopCheckConnectionOfBeacon();
 
+        mJournal.close();
         mScheduledExecutorService.shutdown();
 
         mOnBeaconEventListeners.clear();
@@ -183,28 +220,37 @@ public class LinkingBeaconManager {
 
     public LinkingBeacon findBeacon(final int extraId, final int vendorId) {
         synchronized (mLinkingBeacons) {
-            for (LinkingBeacon beacon : mLinkingBeacons) {
-                if (beacon.getExtraId() == extraId &&
-                        beacon.getVendorId() == vendorId) {
-                    return beacon;
-                }
-            }
+            return mBeaconIndex.get(toKey(extraId, vendorId));
         }
-        return null;
     }
 
     public void removeBeacon(final LinkingBeacon beacon) {
         if (beacon != null) {
-            mLinkingBeacons.remove(beacon);
+            synchronized (mLinkingBeacons) {
+                mLinkingBeacons.remove(beacon);
+                mBeaconIndex.remove(toKey(beacon.getExtraId(), beacon.getVendorId()));
+            }
+            mJournal.remove(beacon.getVendorId(), beacon.getExtraId());
             mDBAdapter.delete(beacon);
         }
     }
 
     public void removeAllBeacons() {
-        mLinkingBeacons.clear();
+        synchronized (mLinkingBeacons) {
+            mLinkingBeacons.clear();
+            mBeaconIndex.clear();
+        }
+        mJournal.clear();
         mDBAdapter.deleteAll();
     }
 
+    /**
+     * 書き込み前のビーコンのデータをデータベースに書き込む.
+     */
+    void flush() {
+        mJournal.flush();
+    }
+
     public void onReceivedBeacon(final Intent intent) {
         if (BuildConfig.DEBUG) {
             Log.i(TAG, "@@ LinkingBeaconManager#onReceivedBeacon");
@@ -386,15 +432,23 @@ public class LinkingBeaconManager {
         int vendorId = intent.getIntExtra(LinkingBeaconUtil.VENDOR_ID, -1);
         int version = intent.getIntExtra(LinkingBeaconUtil.VERSION, -1);
 
-        LinkingBeacon beacon = findBeacon(extraId, vendorId);
-        if (beacon == null) {
-            beacon = new LinkingBeacon();
-            beacon.setExtraId(extraId);
-            beacon.setVendorId(vendorId);
-            beacon.setVersion(version);
-            beacon.setDisplayName(mContext.getString(R.string.linking_beacon_display_name, extraId));
-            mLinkingBeacons.add(beacon);
+        LinkingBeacon beacon;
+        boolean created = false;
+        synchronized (mLinkingBeacons) {
+            beacon = mBeaconIndex.get(toKey(extraId, vendorId));
+            if (beacon == null) {
+                beacon = new LinkingBeacon();
+                beacon.setExtraId(extraId);
+                beacon.setVendorId(vendorId);
+                beacon.setVersion(version);
+                beacon.setDisplayName(mContext.getString(R.string.linking_beacon_display_name, extraId));
+                mLinkingBeacons.add(beacon);
+                mBeaconIndex.put(toKey(extraId, vendorId), beacon);
+                created = true;
+            }
+        }
 
+        if (created) {
             if (!mDBAdapter.insertBeacon(beacon)) {
                 if (BuildConfig.DEBUG) {
                     Log.e(TAG, "Failed to insert LinkingBeacon.");
@@ -421,11 +475,8 @@ public class LinkingBeaconManager {
     }
 
     private void parseGattData(final Intent intent, final LinkingBeacon beacon) {
-        GattData gatt = beacon.getGattData();
-        if (gatt == null) {
-            gatt = new GattData();
-            beacon.setGattData(gatt);
-        }
+        // ジャーナルが書き込むまで保持するため、受信ごとに新しいインスタンスを作成する
+        GattData gatt = new GattData();
 
         long timeStamp = intent.getLongExtra(LinkingBeaconUtil.TIME_STAMP, 0);
         int rssi = intent.getIntExtra(LinkingBeaconUtil.RSSI, 0);
@@ -437,25 +488,23 @@ public class LinkingBeaconManager {
         gatt.setTxPower(txPower);
         gatt.setDistance(distance);
 
-        mDBAdapter.insertGatt(beacon, gatt);
+        beacon.setGattData(gatt);
+        mJournal.put(beacon.getVendorId(), beacon.getExtraId(), LinkingBeaconJournal.Sensor.GATT, gatt);
 
         notifyBeaconProximityEventListener(beacon, gatt);
     }
 
     private void parseAtmosphericPressureData(final Intent intent, final LinkingBeacon beacon) {
         if (intent.getExtras().containsKey(LinkingBeaconUtil.ATMOSPHERIC_PRESSURE)) {
-            AtmosphericPressureData atm = beacon.getAtmosphericPressureData();
-            if (atm == null) {
-                atm = new AtmosphericPressureData();
-                beacon.setAtmosphericPressureData(atm);
-            }
+            AtmosphericPressureData atm = new AtmosphericPressureData();
 
             long timeStamp = intent.getLongExtra(LinkingBeaconUtil.TIME_STAMP, 0);
             float value = intent.getFloatExtra(LinkingBeaconUtil.ATMOSPHERIC_PRESSURE, 0);
             atm.setTimeStamp(timeStamp);
             atm.setValue(value);
 
-            mDBAdapter.insertAtmosphericPressure(beacon, atm);
+            beacon.setAtmosphericPressureData(atm);
+            mJournal.put(beacon.getVendorId(), beacon.getExtraId(), LinkingBeaconJournal.Sensor.ATMOSPHERIC_PRESSURE, atm);
 
             notifyBeaconAtmosphericPressureEventListener(beacon, atm);
         }
@@ -464,11 +513,7 @@ public class LinkingBeaconManager {
     private void parseBatteryData(final Intent intent, final LinkingBeacon beacon) {
         if (intent.getExtras().containsKey(LinkingBeaconUtil.LOW_BATTERY) ||
                 intent.getExtras().containsKey(LinkingBeaconUtil.BATTERY_LEVEL)) {
-            BatteryData battery = beacon.getBatteryData();
-            if (battery == null) {
-                battery = new BatteryData();
-                beacon.setBatteryData(battery);
-            }
+            BatteryData battery = new BatteryData();
 
             long timeStamp = intent.getLongExtra(LinkingBeaconUtil.TIME_STAMP, 0);
             boolean lowBattery = intent.getBooleanExtra(LinkingBeaconUtil.LOW_BATTERY, false);
@@ -477,7 +522,8 @@ public class LinkingBeaconManager {
             battery.setLowBatteryFlag(lowBattery);
             battery.setLevel(level);
 
-            mDBAdapter.insertBattery(beacon, battery);
+            beacon.setBatteryData(battery);
+            mJournal.put(beacon.getVendorId(), beacon.getExtraId(), LinkingBeaconJournal.Sensor.BATTERY, battery);
 
             notifyBeaconBatteryEventListener(beacon, battery);
         }
@@ -485,18 +531,15 @@ public class LinkingBeaconManager {
 
     private void parseHumidityData(final Intent intent, final LinkingBeacon beacon) {
         if (intent.getExtras().containsKey(LinkingBeaconUtil.HUMIDITY)) {
-            HumidityData humidity = beacon.getHumidityData();
-            if (humidity == null) {
-                humidity = new HumidityData();
-                beacon.setHumidityData(humidity);
-            }
+            HumidityData humidity = new HumidityData();
 
             long timeStamp = intent.getLongExtra(LinkingBeaconUtil.TIME_STAMP, 0);
             float value = intent.getFloatExtra(LinkingBeaconUtil.HUMIDITY, 0);
             humidity.setTimeStamp(timeStamp);
             humidity.setValue(value);
 
-            mDBAdapter.insertHumidity(beacon, humidity);
+            beacon.setHumidityData(humidity);
+            mJournal.put(beacon.getVendorId(), beacon.getExtraId(), LinkingBeaconJournal.Sensor.HUMIDITY, humidity);
 
             notifyBeaconHumidityEventListener(beacon, humidity);
         }
@@ -504,18 +547,15 @@ public class LinkingBeaconManager {
 
     private void parseTemperatureData(final Intent intent, final LinkingBeacon beacon) {
         if (intent.getExtras().containsKey(LinkingBeaconUtil.TEMPERATURE)) {
-            TemperatureData temp = beacon.getTemperatureData();
-            if (temp == null) {
-                temp = new TemperatureData();
-                beacon.setTemperatureData(temp);
-            }
+            TemperatureData temp = new TemperatureData();
 
             long timeStamp = intent.getLongExtra(LinkingBeaconUtil.TIME_STAMP, 0);
             float value = intent.getFloatExtra(LinkingBeaconUtil.TEMPERATURE, 0);
             temp.setTimeStamp(timeStamp);
             temp.setValue(value);
 
-            mDBAdapter.insertTemperature(beacon, temp);
+            beacon.setTemperatureData(temp);
+            mJournal.put(beacon.getVendorId(), beacon.getExtraId(), LinkingBeaconJournal.Sensor.TEMPERATURE, temp);
 
             notifyBeaconTemperatureEventListener(beacon, temp);
         }
@@ -523,17 +563,14 @@ public class LinkingBeaconManager {
 
     private void parseRawData(final Intent intent, final LinkingBeacon beacon) {
         if (intent.getExtras().containsKey(LinkingBeaconUtil.RAW_DATA)) {
-            RawData raw = beacon.getRawData();
-            if (raw == null) {
-                raw = new RawData();
-                beacon.setRawData(raw);
-            }
+            RawData raw = new RawData();
             long timeStamp = intent.getLongExtra(LinkingBeaconUtil.TIME_STAMP, 0);
             int value = intent.getIntExtra(LinkingBeaconUtil.RAW_DATA, 0);
             raw.setTimeStamp(timeStamp);
             raw.setValue(value);
 
-            mDBAdapter.insertRawData(beacon, raw);
+            beacon.setRawData(raw);
+            mJournal.put(beacon.getVendorId(), beacon.getExtraId(), LinkingBeaconJournal.Sensor.RAW_DATA, raw);
 
             notifyBeaconRawDataEventListener(beacon, raw);
         }
@@ -665,6 +702,10 @@ public class LinkingBeaconManager {
         }
     }
 
+    private static Long toKey(final int extraId, final int vendorId) {
+        return ((long) vendorId << 32) | (extraId & 0xFFFFFFFFL);
+    }
+
     private abstract class TimeoutRunnable implements Runnable {
         protected ScheduledExecutorService mExecutorService = Executors.newSingleThreadScheduledExecutor();
         protected ScheduledFuture<?> mScheduledFuture;
@@ -27,14 +27,21 @@ import org.deviceconnect.android.deviceplugin.linking.beacon.data.RawData;
 import org.deviceconnect.android.deviceplugin.linking.beacon.data.TemperatureData;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 class LinkingDBAdapter {
 
     private static final String TAG = "LinkingDB";
 
     private static final String DB_FILE_NAME = "linking_beacon.db";
-    private static final int DB_VERSION = 1;
+    private static final int DB_VERSION = 2;
+
+    /**
+     * 1つのビーコンのセンサーごとに保持する履歴の最大数.
+     */
+    private static final int MAX_HISTORY_SIZE = 1000;
 
     private static final String TABLE_BEACON = "table_beacon";
     private static final String TABLE_GATT = "table_gatt";
@@ -82,14 +89,9 @@ class LinkingDBAdapter {
         values.put(BeaconColumns.EXTRA_ID, beacon.getExtraId());
         values.put(BeaconColumns.VERSION, beacon.getVersion());
 
+        // ジャーナルの書き込みと同じ接続を使用するため、ここでは閉じない
         SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_BEACON, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
+        return db.insert(TABLE_BEACON, null, values) > 0;
     }
 
     public List<LinkingBeacon> queryBeacons() {
@@ -146,29 +148,6 @@ class LinkingDBAdapter {
         return false;
     }
 
-    public boolean insertGatt(final LinkingBeacon beacon, GattData gatt) {
-        return insertGatt(beacon.getVendorId(), beacon.getExtraId(), gatt);
-    }
-
-    public boolean insertGatt(final int vendorId, final int extraId, final GattData gatt) {
-        ContentValues values = new ContentValues();
-        values.put(GattColumns.VENDOR_ID, vendorId);
-        values.put(GattColumns.EXTRA_ID, extraId);
-        values.put(GattColumns.RSSI, gatt.getRssi());
-        values.put(GattColumns.TX_POWER, gatt.getTxPower());
-        values.put(GattColumns.DISTANCE, gatt.getDistance());
-        values.put(GattColumns.TIME_STAMP, gatt.getTimeStamp());
-
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_GATT, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
-    }
-
     public GattData queryGatt(final LinkingBeacon beacon) {
         return queryGatt(beacon.getVendorId(), beacon.getExtraId());
     }
@@ -188,12 +167,7 @@ class LinkingDBAdapter {
         if (cursor != null) {
             try {
                 if (cursor.moveToFirst()) {
-                    GattData gatt = new GattData();
-                    gatt.setRssi(cursor.getInt(cursor.getColumnIndex(GattColumns.RSSI)));
-                    gatt.setTxPower(cursor.getInt(cursor.getColumnIndex(GattColumns.TX_POWER)));
-                    gatt.setDistance(cursor.getInt(cursor.getColumnIndex(GattColumns.DISTANCE)));
-                    gatt.setTimeStamp(cursor.getLong(cursor.getColumnIndex(GattColumns.TIME_STAMP)));
-                    return gatt;
+                    return toGattData(cursor);
                 }
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
@@ -230,27 +204,6 @@ class LinkingDBAdapter {
         return false;
     }
 
-    public boolean insertTemperature(final LinkingBeacon beacon, final TemperatureData temp) {
-        return insertTemperature(beacon.getVendorId(), beacon.getExtraId(), temp);
-    }
-
-    public boolean insertTemperature(final int vendorId, final int extraId, final TemperatureData temp) {
-        ContentValues values = new ContentValues();
-        values.put(TemperatureColumns.VENDOR_ID, vendorId);
-        values.put(TemperatureColumns.EXTRA_ID, extraId);
-        values.put(TemperatureColumns.TEMPERATURE, temp.getValue());
-        values.put(TemperatureColumns.TIME_STAMP, temp.getTimeStamp());
-
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_TEMPERATURE, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
-    }
-
     public TemperatureData queryTemperature(final LinkingBeacon beacon) {
         return queryTemperature(beacon.getVendorId(), beacon.getExtraId());
     }
@@ -270,10 +223,7 @@ class LinkingDBAdapter {
         if (cursor != null) {
             try {
                 if (cursor.moveToFirst()) {
-                    TemperatureData temp = new TemperatureData();
-                    temp.setValue(cursor.getFloat(cursor.getColumnIndex(TemperatureColumns.TEMPERATURE)));
-                    temp.setTimeStamp(cursor.getLong(cursor.getColumnIndex(TemperatureColumns.TIME_STAMP)));
-                    return temp;
+                    return toTemperatureData(cursor);
                 }
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
@@ -310,27 +260,6 @@ class LinkingDBAdapter {
         return false;
     }
 
-    public boolean insertHumidity(final LinkingBeacon beacon, final HumidityData humidity) {
-        return insertHumidity(beacon.getVendorId(), beacon.getExtraId(), humidity);
-    }
-
-    public boolean insertHumidity(final int vendorId, final int extraId, final HumidityData humidity) {
-        ContentValues values = new ContentValues();
-        values.put(HumidityColumns.VENDOR_ID, vendorId);
-        values.put(HumidityColumns.EXTRA_ID, extraId);
-        values.put(HumidityColumns.HUMIDITY, humidity.getValue());
-        values.put(HumidityColumns.TIME_STAMP, humidity.getTimeStamp());
-
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_HUMIDITY, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
-    }
-
     public HumidityData queryHumidity(final LinkingBeacon beacon) {
         return queryHumidity(beacon.getVendorId(), beacon.getExtraId());
     }
@@ -350,10 +279,7 @@ class LinkingDBAdapter {
         if (cursor != null) {
             try {
                 if (cursor.moveToFirst()) {
-                    HumidityData humidity = new HumidityData();
-                    humidity.setValue(cursor.getFloat(cursor.getColumnIndex(HumidityColumns.HUMIDITY)));
-                    humidity.setTimeStamp(cursor.getLong(cursor.getColumnIndex(HumidityColumns.TIME_STAMP)));
-                    return humidity;
+                    return toHumidityData(cursor);
                 }
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
@@ -390,27 +316,6 @@ class LinkingDBAdapter {
         return false;
     }
 
-    public boolean insertAtmosphericPressure(final LinkingBeacon beacon, final AtmosphericPressureData ap) {
-        return insertAtmosphericPressure(beacon.getVendorId(), beacon.getExtraId(), ap);
-    }
-
-    public boolean insertAtmosphericPressure(final int vendorId, final int extraId, final AtmosphericPressureData ap) {
-        ContentValues values = new ContentValues();
-        values.put(AtmosphericPressure.VENDOR_ID, vendorId);
-        values.put(AtmosphericPressure.EXTRA_ID, extraId);
-        values.put(AtmosphericPressure.ATMOSPHERIC_PRESSURE, ap.getValue());
-        values.put(AtmosphericPressure.TIME_STAMP, ap.getTimeStamp());
-
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_ATMOSPHERIC_PRESSURE, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
-    }
-
     public AtmosphericPressureData queryAtmosphericPressure(final LinkingBeacon beacon) {
         return queryAtmosphericPressure(beacon.getVendorId(), beacon.getExtraId());
     }
@@ -430,10 +335,7 @@ class LinkingDBAdapter {
         if (cursor != null) {
             try {
                 if (cursor.moveToFirst()) {
-                    AtmosphericPressureData ap = new AtmosphericPressureData();
-                    ap.setValue(cursor.getFloat(cursor.getColumnIndex(AtmosphericPressure.ATMOSPHERIC_PRESSURE)));
-                    ap.setTimeStamp(cursor.getLong(cursor.getColumnIndex(AtmosphericPressure.TIME_STAMP)));
-                    return ap;
+                    return toAtmosphericPressureData(cursor);
                 }
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
@@ -470,28 +372,6 @@ class LinkingDBAdapter {
         return false;
     }
 
-    public boolean insertBattery(final LinkingBeacon beacon, final BatteryData battery) {
-        return insertBattery(beacon.getVendorId(), beacon.getExtraId(), battery);
-    }
-
-    public boolean insertBattery(final int vendorId, final int extraId, final BatteryData battery) {
-        ContentValues values = new ContentValues();
-        values.put(BatteryColumns.VENDOR_ID, vendorId);
-        values.put(BatteryColumns.EXTRA_ID, extraId);
-        values.put(BatteryColumns.LEVEL, battery.getLevel());
-        values.put(BatteryColumns.LOW_BATTERY, battery.isLowBatteryFlag() ? 1 : 0);
-        values.put(BatteryColumns.TIME_STAMP, battery.getTimeStamp());
-
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_BATTERY, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
-    }
-
     public BatteryData queryBattery(final LinkingBeacon beacon) {
         return queryBattery(beacon.getVendorId(), beacon.getExtraId());
     }
@@ -511,11 +391,7 @@ class LinkingDBAdapter {
         if (cursor != null) {
             try {
                 if (cursor.moveToFirst()) {
-                    BatteryData battery = new BatteryData();
-                    battery.setLevel(cursor.getFloat(cursor.getColumnIndex(BatteryColumns.LEVEL)));
-                    battery.setLowBatteryFlag(cursor.getInt(cursor.getColumnIndex(BatteryColumns.LOW_BATTERY)) == 1);
-                    battery.setTimeStamp(cursor.getLong(cursor.getColumnIndex(BatteryColumns.TIME_STAMP)));
-                    return battery;
+                    return toBatteryData(cursor);
                 }
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
@@ -552,27 +428,6 @@ class LinkingDBAdapter {
         return false;
     }
 
-    public boolean insertRawData(final LinkingBeacon beacon, final RawData raw) {
-        return insertRawData(beacon.getVendorId(), beacon.getExtraId(), raw);
-    }
-
-    public boolean insertRawData(final int vendorId, final int extraId, final RawData raw) {
-        ContentValues values = new ContentValues();
-        values.put(RawDataColumns.VENDOR_ID, vendorId);
-        values.put(RawDataColumns.EXTRA_ID, extraId);
-        values.put(RawDataColumns.RAW_DATA, raw.getValue());
-        values.put(RawDataColumns.TIME_STAMP, raw.getTimeStamp());
-
-        SQLiteDatabase db = mHelper.getWritableDatabase();
-        long ret;
-        try {
-            ret = db.insert(TABLE_RAW_DATA, null, values);
-        } finally {
-            db.close();
-        }
-        return ret > 0;
-    }
-
     public RawData queryRawData(final LinkingBeacon beacon) {
         return queryRawData(beacon.getVendorId(), beacon.getExtraId());
     }
@@ -592,10 +447,7 @@ class LinkingDBAdapter {
         if (cursor != null) {
             try {
                 if (cursor.moveToFirst()) {
-                    RawData raw = new RawData();
-                    raw.setValue(cursor.getInt(cursor.getColumnIndex(RawDataColumns.RAW_DATA)));
-                    raw.setTimeStamp(cursor.getLong(cursor.getColumnIndex(RawDataColumns.TIME_STAMP)));
-                    return raw;
+                    return toRawData(cursor);
                 }
             } catch (Exception e) {
                 if (BuildConfig.DEBUG) {
@@ -632,6 +484,286 @@ class LinkingDBAdapter {
         return false;
     }
 
+    public boolean insertRecords(final List<LinkingBeaconJournal.Record> records) {
+        SQLiteDatabase db = mHelper.getWritableDatabase();
+        Set<String> pruned = new HashSet<>();
+        db.beginTransaction();
+        try {
+            for (LinkingBeaconJournal.Record record : records) {
+                String table = getTableName(record.getSensor());
+                if (db.insert(table, null, toContentValues(record)) < 0) {
+                    return false;
+                }
+                if (pruned.add(table + ":" + record.getVendorId() + ":" + record.getExtraId())) {
+                    pruneHistory(db, table, record.getVendorId(), record.getExtraId());
+                }
+            }
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public List<GattData> queryGattHistory(final int vendorId, final int extraId, final long from, final long to) {
+        List<GattData> list = new ArrayList<>();
+        Cursor cursor = queryHistory(TABLE_GATT, vendorId, extraId, from, to);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(toGattData(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return list;
+    }
+
+    public List<TemperatureData> queryTemperatureHistory(final int vendorId, final int extraId, final long from, final long to) {
+        List<TemperatureData> list = new ArrayList<>();
+        Cursor cursor = queryHistory(TABLE_TEMPERATURE, vendorId, extraId, from, to);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(toTemperatureData(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return list;
+    }
+
+    public List<HumidityData> queryHumidityHistory(final int vendorId, final int extraId, final long from, final long to) {
+        List<HumidityData> list = new ArrayList<>();
+        Cursor cursor = queryHistory(TABLE_HUMIDITY, vendorId, extraId, from, to);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(toHumidityData(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return list;
+    }
+
+    public List<AtmosphericPressureData> queryAtmosphericPressureHistory(final int vendorId, final int extraId, final long from, final long to) {
+        List<AtmosphericPressureData> list = new ArrayList<>();
+        Cursor cursor = queryHistory(TABLE_ATMOSPHERIC_PRESSURE, vendorId, extraId, from, to);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(toAtmosphericPressureData(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return list;
+    }
+
+    public List<BatteryData> queryBatteryHistory(final int vendorId, final int extraId, final long from, final long to) {
+        List<BatteryData> list = new ArrayList<>();
+        Cursor cursor = queryHistory(TABLE_BATTERY, vendorId, extraId, from, to);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(toBatteryData(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return list;
+    }
+
+    public List<RawData> queryRawDataHistory(final int vendorId, final int extraId, final long from, final long to) {
+        List<RawData> list = new ArrayList<>();
+        Cursor cursor = queryHistory(TABLE_RAW_DATA, vendorId, extraId, from, to);
+        if (cursor != null) {
+            try {
+                while (cursor.moveToNext()) {
+                    list.add(toRawData(cursor));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        return list;
+    }
+
+    private Cursor queryHistory(final String tbl, final int vendorId, final int extraId, final long from, final long to) {
+        String selection = LinkingBaseColumns.VENDOR_ID + "=? AND " + LinkingBaseColumns.EXTRA_ID + "=? AND "
+                + LinkingBaseColumns.TIME_STAMP + ">=? AND " + LinkingBaseColumns.TIME_STAMP + "<=?";
+        String[] selectionArgs = {
+                String.valueOf(vendorId),
+                String.valueOf(extraId),
+                String.valueOf(from),
+                String.valueOf(to)
+        };
+        return query(tbl, null, selection, selectionArgs, LinkingBaseColumns.TIME_STAMP + " ASC");
+    }
+
+    private void pruneHistory(final SQLiteDatabase db, final String tbl, final int vendorId, final int extraId) {
+        String where = LinkingBaseColumns.VENDOR_ID + "=? AND " + LinkingBaseColumns.EXTRA_ID + "=?";
+        String selection = where + " AND " + BaseColumns._ID + " NOT IN (SELECT " + BaseColumns._ID
+                + " FROM " + tbl + " WHERE " + where
+                + " ORDER BY " + LinkingBaseColumns.TIME_STAMP + " DESC, " + BaseColumns._ID + " DESC"
+                + " LIMIT " + MAX_HISTORY_SIZE + ")";
+        String[] selectionArgs = {
+                String.valueOf(vendorId),
+                String.valueOf(extraId),
+                String.valueOf(vendorId),
+                String.valueOf(extraId)
+        };
+        db.delete(tbl, selection, selectionArgs);
+    }
+
+    private static String getTableName(final LinkingBeaconJournal.Sensor sensor) {
+        switch (sensor) {
+            case GATT:
+                return TABLE_GATT;
+            case TEMPERATURE:
+                return TABLE_TEMPERATURE;
+            case HUMIDITY:
+                return TABLE_HUMIDITY;
+            case ATMOSPHERIC_PRESSURE:
+                return TABLE_ATMOSPHERIC_PRESSURE;
+            case BATTERY:
+                return TABLE_BATTERY;
+            case RAW_DATA:
+                return TABLE_RAW_DATA;
+            default:
+                throw new IllegalArgumentException("Unknown sensor: " + sensor);
+        }
+    }
+
+    private static ContentValues toContentValues(final LinkingBeaconJournal.Record record) {
+        int vendorId = record.getVendorId();
+        int extraId = record.getExtraId();
+        switch (record.getSensor()) {
+            case GATT:
+                return toContentValues(vendorId, extraId, (GattData) record.getData());
+            case TEMPERATURE:
+                return toContentValues(vendorId, extraId, (TemperatureData) record.getData());
+            case HUMIDITY:
+                return toContentValues(vendorId, extraId, (HumidityData) record.getData());
+            case ATMOSPHERIC_PRESSURE:
+                return toContentValues(vendorId, extraId, (AtmosphericPressureData) record.getData());
+            case BATTERY:
+                return toContentValues(vendorId, extraId, (BatteryData) record.getData());
+            case RAW_DATA:
+                return toContentValues(vendorId, extraId, (RawData) record.getData());
+            default:
+                throw new IllegalArgumentException("Unknown sensor: " + record.getSensor());
+        }
+    }
+
+    private static ContentValues toContentValues(final int vendorId, final int extraId, final GattData gatt) {
+        ContentValues values = new ContentValues();
+        values.put(GattColumns.VENDOR_ID, vendorId);
+        values.put(GattColumns.EXTRA_ID, extraId);
+        values.put(GattColumns.RSSI, gatt.getRssi());
+        values.put(GattColumns.TX_POWER, gatt.getTxPower());
+        values.put(GattColumns.DISTANCE, gatt.getDistance());
+        values.put(GattColumns.TIME_STAMP, gatt.getTimeStamp());
+        return values;
+    }
+
+    private static ContentValues toContentValues(final int vendorId, final int extraId, final TemperatureData temp) {
+        ContentValues values = new ContentValues();
+        values.put(TemperatureColumns.VENDOR_ID, vendorId);
+        values.put(TemperatureColumns.EXTRA_ID, extraId);
+        values.put(TemperatureColumns.TEMPERATURE, temp.getValue());
+        values.put(TemperatureColumns.TIME_STAMP, temp.getTimeStamp());
+        return values;
+    }
+
+    private static ContentValues toContentValues(final int vendorId, final int extraId, final HumidityData humidity) {
+        ContentValues values = new ContentValues();
+        values.put(HumidityColumns.VENDOR_ID, vendorId);
+        values.put(HumidityColumns.EXTRA_ID, extraId);
+        values.put(HumidityColumns.HUMIDITY, humidity.getValue());
+        values.put(HumidityColumns.TIME_STAMP, humidity.getTimeStamp());
+        return values;
+    }
+
+    private static ContentValues toContentValues(final int vendorId, final int extraId, final AtmosphericPressureData ap) {
+        ContentValues values = new ContentValues();
+        values.put(AtmosphericPressure.VENDOR_ID, vendorId);
+        values.put(AtmosphericPressure.EXTRA_ID, extraId);
+        values.put(AtmosphericPressure.ATMOSPHERIC_PRESSURE, ap.getValue());
+        values.put(AtmosphericPressure.TIME_STAMP, ap.getTimeStamp());
+        return values;
+    }
+
+    private static ContentValues toContentValues(final int vendorId, final int extraId, final BatteryData battery) {
+        ContentValues values = new ContentValues();
+        values.put(BatteryColumns.VENDOR_ID, vendorId);
+        values.put(BatteryColumns.EXTRA_ID, extraId);
+        values.put(BatteryColumns.LEVEL, battery.getLevel());
+        values.put(BatteryColumns.LOW_BATTERY, battery.isLowBatteryFlag() ? 1 : 0);
+        values.put(BatteryColumns.TIME_STAMP, battery.getTimeStamp());
+        return values;
+    }
+
+    private static ContentValues toContentValues(final int vendorId, final int extraId, final RawData raw) {
+        ContentValues values = new ContentValues();
+        values.put(RawDataColumns.VENDOR_ID, vendorId);
+        values.put(RawDataColumns.EXTRA_ID, extraId);
+        values.put(RawDataColumns.RAW_DATA, raw.getValue());
+        values.put(RawDataColumns.TIME_STAMP, raw.getTimeStamp());
+        return values;
+    }
+
+    private static GattData toGattData(final Cursor cursor) {
+        GattData gatt = new GattData();
+        gatt.setRssi(cursor.getInt(cursor.getColumnIndex(GattColumns.RSSI)));
+        gatt.setTxPower(cursor.getInt(cursor.getColumnIndex(GattColumns.TX_POWER)));
+        gatt.setDistance(cursor.getInt(cursor.getColumnIndex(GattColumns.DISTANCE)));
+        gatt.setTimeStamp(cursor.getLong(cursor.getColumnIndex(GattColumns.TIME_STAMP)));
+        return gatt;
+    }
+
+    private static TemperatureData toTemperatureData(final Cursor cursor) {
+        TemperatureData temp = new TemperatureData();
+        temp.setValue(cursor.getFloat(cursor.getColumnIndex(TemperatureColumns.TEMPERATURE)));
+        temp.setTimeStamp(cursor.getLong(cursor.getColumnIndex(TemperatureColumns.TIME_STAMP)));
+        return temp;
+    }
+
+    private static HumidityData toHumidityData(final Cursor cursor) {
+        HumidityData humidity = new HumidityData();
+        humidity.setValue(cursor.getFloat(cursor.getColumnIndex(HumidityColumns.HUMIDITY)));
+        humidity.setTimeStamp(cursor.getLong(cursor.getColumnIndex(HumidityColumns.TIME_STAMP)));
+        return humidity;
+    }
+
+    private static AtmosphericPressureData toAtmosphericPressureData(final Cursor cursor) {
+        AtmosphericPressureData ap = new AtmosphericPressureData();
+        ap.setValue(cursor.getFloat(cursor.getColumnIndex(AtmosphericPressure.ATMOSPHERIC_PRESSURE)));
+        ap.setTimeStamp(cursor.getLong(cursor.getColumnIndex(AtmosphericPressure.TIME_STAMP)));
+        return ap;
+    }
+
+    private static BatteryData toBatteryData(final Cursor cursor) {
+        BatteryData battery = new BatteryData();
+        battery.setLevel(cursor.getFloat(cursor.getColumnIndex(BatteryColumns.LEVEL)));
+        battery.setLowBatteryFlag(cursor.getInt(cursor.getColumnIndex(BatteryColumns.LOW_BATTERY)) == 1);
+        battery.setTimeStamp(cursor.getLong(cursor.getColumnIndex(BatteryColumns.TIME_STAMP)));
+        return battery;
+    }
+
+    private static RawData toRawData(final Cursor cursor) {
+        RawData raw = new RawData();
+        raw.setValue(cursor.getInt(cursor.getColumnIndex(RawDataColumns.RAW_DATA)));
+        raw.setTimeStamp(cursor.getLong(cursor.getColumnIndex(RawDataColumns.TIME_STAMP)));
+        return raw;
+    }
+
     private Cursor query(final String tbl, final String[] projection, final String selection,
                          final String[] selectionArgs, final String sortOrder) {
         SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
@@ -668,10 +800,14 @@ class LinkingDBAdapter {
             createAtmosphericPressureTable(db);
             createBatteryTable(db);
             createRawDataTable(db);
+            createTimeStampIndexes(db);
         }
 
         @Override
         public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+            if (oldVersion < 2) {
+                createTimeStampIndexes(db);
+            }
         }
 
         @Override
@@ -750,6 +886,23 @@ class LinkingDBAdapter {
                     + ");";
             db.execSQL(sql);
         }
+
+        private void createTimeStampIndexes(final SQLiteDatabase db) {
+            String[] tables = {
+                    TABLE_GATT,
+                    TABLE_TEMPERATURE,
+                    TABLE_HUMIDITY,
+                    TABLE_ATMOSPHERIC_PRESSURE,
+                    TABLE_BATTERY,
+                    TABLE_RAW_DATA
+            };
+            for (String tbl : tables) {
+                db.execSQL("CREATE INDEX IF NOT EXISTS index_" + tbl + "_time_stamp ON " + tbl + " ("
+                        + LinkingBaseColumns.VENDOR_ID + ","
+                        + LinkingBaseColumns.EXTRA_ID + ","
+                        + LinkingBaseColumns.TIME_STAMP + ");");
+            }
+        }
     }
 
     public interface LinkingBaseColumns extends BaseColumns {
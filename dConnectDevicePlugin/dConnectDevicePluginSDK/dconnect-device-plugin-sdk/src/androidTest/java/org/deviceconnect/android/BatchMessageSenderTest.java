@@ -0,0 +1,260 @@
+/*
+ BatchMessageSenderTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.IBinder;
+import android.os.RemoteException;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * BatchMessageSenderのテスト.
+ * <p>
+ * 別プロセスの{@link StandInPluginService}に対して、1件ずつ送信する場合とまとめて送信する場合の
+ * スループットを比較する。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BatchMessageSenderTest {
+
+    private static final String TAG = "BatchMessageSenderTest";
+
+    /**
+     * 小さいメッセージの送信回数.
+     */
+    private static final int SMALL_MESSAGE_COUNT = 2000;
+
+    /**
+     * 大きいメッセージの送信回数.
+     */
+    private static final int LARGE_MESSAGE_COUNT = 20;
+
+    /**
+     * 大きいメッセージのサイズ.
+     * <p>
+     * バインダーのトランザクションの上限(1MB)を超えるサイズにする。
+     * </p>
+     */
+    private static final int LARGE_MESSAGE_SIZE = 2 * 1024 * 1024;
+
+    private Context mContext;
+
+    private ServiceConnection mConnection;
+
+    private IDConnectPlugin mPlugin;
+
+    @Before
+    public void setUp() throws Exception {
+        mContext = InstrumentationRegistry.getTargetContext();
+        final CountDownLatch latch = new CountDownLatch(1);
+        mConnection = new ServiceConnection() {
+            @Override
+            public void onServiceConnected(final ComponentName name, final IBinder service) {
+                mPlugin = IDConnectPlugin.Stub.asInterface(service);
+                latch.countDown();
+            }
+
+            @Override
+            public void onServiceDisconnected(final ComponentName name) {
+                mPlugin = null;
+            }
+        };
+        Intent intent = new Intent(mContext, StandInPluginService.class);
+        mContext.bindService(intent, mConnection, Context.BIND_AUTO_CREATE);
+        latch.await(10, TimeUnit.SECONDS);
+        assertThat(mPlugin, is(notNullValue()));
+    }
+
+    @After
+    public void tearDown() {
+        mContext.unbindService(mConnection);
+    }
+
+    /**
+     * バイト列とメッセージの相互変換を行う.
+     * <pre>
+     * 【期待する動作】
+     * ・変換前と同じextrasを持つメッセージに戻ること。
+     * </pre>
+     */
+    @Test
+    public void testMarshall() {
+        Intent message = createMessage(16);
+        Intent result = MessageBatch.unmarshall(MessageBatch.marshall(message));
+        assertThat(result.getAction(), is(message.getAction()));
+        assertThat(result.getIntExtra("requestCode", 0), is(1));
+        assertThat(Arrays.equals(result.getByteArrayExtra("data"), message.getByteArrayExtra("data")), is(true));
+    }
+
+    /**
+     * トランザクションの上限を超えるメッセージをまとめて送信する.
+     * <pre>
+     * 【期待する動作】
+     * ・例外が発生せずに全てのメッセージが送信されること。
+     * </pre>
+     * @throws Exception 送信に失敗した場合
+     */
+    @Test
+    public void testLargeMessage() throws Exception {
+        assertThat(sendWithBatch(createMessages(LARGE_MESSAGE_COUNT, LARGE_MESSAGE_SIZE)), is(LARGE_MESSAGE_COUNT));
+    }
+
+    /**
+     * 1件ずつ送信する場合とまとめて送信する場合のスループットを計測する.
+     * <pre>
+     * 【期待する動作】
+     * ・全てのメッセージが送信され、処理時間がログに出力されること。
+     * </pre>
+     * @throws Exception 送信に失敗した場合
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        List<Intent> messages = createMessages(SMALL_MESSAGE_COUNT, 256);
+
+        long start = System.nanoTime();
+        for (Intent message : messages) {
+            mPlugin.sendMessage(message);
+        }
+        long singleTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int count = sendWithBatch(messages);
+        long batchTime = System.nanoTime() - start;
+
+        assertThat(count, is(SMALL_MESSAGE_COUNT));
+        Log.i(TAG, String.format("count=%d single=%.1fmsg/s batch=%.1fmsg/s", SMALL_MESSAGE_COUNT,
+                SMALL_MESSAGE_COUNT * 1e9 / singleTime, SMALL_MESSAGE_COUNT * 1e9 / batchTime));
+    }
+
+    /**
+     * 送信先がRemoteExceptionを投げる状態でメッセージを送信する.
+     * <pre>
+     * 【期待する動作】
+     * ・送信できなかったメッセージがリスナーに通知されること。
+     * ・送信に失敗した後も、新しいメッセージを送信できること。
+     * </pre>
+     * @throws Exception 送信に失敗した場合
+     */
+    @Test
+    public void testSendFailed() throws Exception {
+        final int count = 10;
+        final CountDownLatch failedLatch = new CountDownLatch(count);
+        final CountDownLatch sentLatch = new CountDownLatch(1);
+        final boolean[] broken = {true};
+        BatchMessageSender sender = new BatchMessageSender(new BatchMessageSender.Transport() {
+            @Override
+            public void sendMessage(final Intent message) throws RemoteException {
+                send();
+            }
+
+            @Override
+            public void sendMessages(final MessageBatch batch) throws RemoteException {
+                send();
+            }
+
+            private void send() throws RemoteException {
+                synchronized (broken) {
+                    if (broken[0]) {
+                        throw new RemoteException();
+                    }
+                }
+                sentLatch.countDown();
+            }
+        });
+        sender.setOnSendFailedListener(new BatchMessageSender.OnSendFailedListener() {
+            @Override
+            public void onSendFailed(final List<Intent> messages) {
+                for (int i = 0; i < messages.size(); i++) {
+                    failedLatch.countDown();
+                }
+            }
+        });
+        for (Intent message : createMessages(count, 16)) {
+            sender.send(message);
+        }
+        assertThat(failedLatch.await(10, TimeUnit.SECONDS), is(true));
+
+        synchronized (broken) {
+            broken[0] = false;
+        }
+        sender.send(createMessage(16));
+        assertThat(sentLatch.await(10, TimeUnit.SECONDS), is(true));
+    }
+
+    /**
+     * BatchMessageSenderでメッセージを送信し、全て送信されるまで待つ.
+     *
+     * @param messages メッセージのリスト
+     * @return 送信したメッセージの数
+     * @throws InterruptedException 待機中に割り込まれた場合
+     */
+    private int sendWithBatch(final List<Intent> messages) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(messages.size());
+        BatchMessageSender sender = new BatchMessageSender(new BatchMessageSender.Transport() {
+            @Override
+            public void sendMessage(final Intent message) throws RemoteException {
+                mPlugin.sendMessage(message);
+                latch.countDown();
+            }
+
+            @Override
+            public void sendMessages(final MessageBatch batch) throws RemoteException {
+                mPlugin.sendMessages(batch);
+                for (int i = 0; i < batch.size(); i++) {
+                    latch.countDown();
+                }
+            }
+        });
+        for (Intent message : messages) {
+            sender.send(message);
+        }
+        latch.await(60, TimeUnit.SECONDS);
+        return (int) (messages.size() - latch.getCount());
+    }
+
+    private List<Intent> createMessages(final int count, final int size) {
+        List<Intent> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(createMessage(size));
+        }
+        return messages;
+    }
+
+    private Intent createMessage(final int size) {
+        Intent message = new Intent("org.deviceconnect.action.EVENT");
+        message.putExtra("requestCode", 1);
+        message.putExtra("serviceId", "standin.localhost.deviceconnect.org");
+        message.putExtra("data", new byte[size]);
+        Bundle child = new Bundle();
+        child.putString("profile", "deviceOrientation");
+        message.putExtra("orientation", child);
+        return message;
+    }
+}
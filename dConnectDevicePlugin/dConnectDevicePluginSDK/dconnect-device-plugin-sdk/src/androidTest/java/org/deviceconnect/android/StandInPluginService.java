@@ -0,0 +1,62 @@
+/*
+ StandInPluginService.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android;
+
+import android.app.Service;
+import android.content.Intent;
+import android.os.IBinder;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+
+/**
+ * バインダー通信のベンチマークで、プラグインの代わりに別プロセスで動作するサービス.
+ * <p>
+ * 受信したメッセージは、extrasを展開するだけで破棄する。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class StandInPluginService extends Service {
+
+    private final IDConnectPlugin.Stub mBinder = new IDConnectPlugin.Stub() {
+        @Override
+        public void registerCallback(final IDConnectCallback callback) throws RemoteException {
+        }
+
+        @Override
+        public void sendMessage(final Intent message) throws RemoteException {
+            receive(message);
+        }
+
+        @Override
+        public ParcelFileDescriptor readFileDescriptor(final String fileId) throws RemoteException {
+            return null;
+        }
+
+        @Override
+        public int getProtocolVersion() throws RemoteException {
+            return BatchMessageSender.PROTOCOL_VERSION;
+        }
+
+        @Override
+        public void sendMessages(final MessageBatch batch) throws RemoteException {
+            for (Intent message : batch.getMessages()) {
+                receive(message);
+            }
+        }
+    };
+
+    @Override
+    public IBinder onBind(final Intent intent) {
+        return mBinder;
+    }
+
+    private void receive(final Intent message) {
+        // プラグインと同じように、extrasを展開する
+        message.getExtras().size();
+    }
+}
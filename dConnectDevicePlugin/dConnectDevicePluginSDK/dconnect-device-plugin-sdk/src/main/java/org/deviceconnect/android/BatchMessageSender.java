@@ -0,0 +1,365 @@
+/*
+ BatchMessageSender.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android;
+
+import android.content.Intent;
+import android.os.ParcelFileDescriptor;
+import android.os.RemoteException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * バインダー経由のメッセージをまとめて送信するクラス.
+ * <p>
+ * {@link #send(Intent)}はメッセージをキューに追加して即座に返る。
+ * 送信用のスレッドは、送信中に溜まったメッセージを{@link MessageBatch}にまとめて1回のトランザクションで送信する。
+ * </p>
+ * <p>
+ * 送信先が{@link #PROTOCOL_VERSION}に対応していることを確認してから使用すること。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class BatchMessageSender {
+
+    /**
+     * メッセージをまとめて送信するバインダー通信のプロトコルバージョン.
+     * <p>
+     * 未対応の相手に{@code getProtocolVersion()}を呼び出した場合は0が返る。
+     * </p>
+     */
+    public static final int PROTOCOL_VERSION = 2;
+
+    /**
+     * バイト列のまま送信するメッセージの最大サイズ.
+     * <p>
+     * これを超えるメッセージはパイプ経由で送信する。
+     * </p>
+     */
+    static final int MAX_INLINE_SIZE = 64 * 1024;
+
+    /**
+     * 1回のトランザクションで送信するバイト列の合計サイズの上限.
+     */
+    static final int MAX_BATCH_SIZE = 256 * 1024;
+
+    /**
+     * 1回のトランザクションで送信するメッセージの最大数.
+     */
+    static final int MAX_BATCH_COUNT = 64;
+
+    /**
+     * 送信処理を行うスレッドの最大数.
+     */
+    static final int SEND_THREAD_COUNT = 4;
+
+    /**
+     * パイプへの書き込みを行うスレッドの最大数.
+     */
+    static final int PIPE_THREAD_COUNT = 4;
+
+    /**
+     * スレッドが待機状態のまま終了するまでの時間(秒).
+     */
+    private static final long THREAD_IDLE_TIME = 30;
+
+    /**
+     * 送信処理を行うスレッドプール.
+     * <p>
+     * 送信先の数に関わらず、スレッド数は{@link #SEND_THREAD_COUNT}までに制限する。
+     * </p>
+     */
+    private static final ThreadPoolExecutor SEND_EXECUTOR = createExecutor(SEND_THREAD_COUNT);
+
+    /**
+     * パイプへの書き込みを行うスレッドプール.
+     * <p>
+     * 書き込みは送信スレッドのトランザクション中に受信側が読み込むまで終わらないため、
+     * 送信処理とは別のスレッドプールで実行する。
+     * </p>
+     */
+    private static final ThreadPoolExecutor PIPE_EXECUTOR = createExecutor(PIPE_THREAD_COUNT);
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /**
+     * 送信先.
+     */
+    private final Transport mTransport;
+
+    /**
+     * 送信待ちのメッセージ.
+     */
+    private final LinkedList<Intent> mQueue = new LinkedList<>();
+
+    /**
+     * 送信スレッドが動作中であることを示すフラグ.
+     */
+    private boolean mSending;
+
+    /**
+     * 送信に失敗したことを通知するリスナー.
+     */
+    private OnSendFailedListener mOnSendFailedListener;
+
+    /**
+     * 送信処理.
+     */
+    private final Runnable mSendTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * コンストラクタ.
+     *
+     * @param transport 送信先
+     */
+    public BatchMessageSender(final Transport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport is null.");
+        }
+        mTransport = transport;
+    }
+
+    /**
+     * 送信に失敗したことを通知するリスナーを設定する.
+     *
+     * @param listener リスナー
+     */
+    public void setOnSendFailedListener(final OnSendFailedListener listener) {
+        mOnSendFailedListener = listener;
+    }
+
+    /**
+     * メッセージを送信する.
+     * <p>
+     * メッセージは別スレッドで送信される。送信に失敗した場合は、送信できなかったメッセージと
+     * 送信待ちのメッセージを破棄して{@link OnSendFailedListener}に通知する。
+     * </p>
+     *
+     * @param message メッセージ
+     */
+    public void send(final Intent message) {
+        synchronized (mQueue) {
+            mQueue.add(message);
+            if (mSending) {
+                return;
+            }
+            mSending = true;
+        }
+        SEND_EXECUTOR.execute(mSendTask);
+    }
+
+    /**
+     * キューが空になるまでメッセージを送信する.
+     */
+    private void drain() {
+        while (true) {
+            List<Intent> messages;
+            synchronized (mQueue) {
+                if (mQueue.isEmpty()) {
+                    mSending = false;
+                    return;
+                }
+                messages = new ArrayList<>(Math.min(mQueue.size(), MAX_BATCH_COUNT));
+                while (!mQueue.isEmpty() && messages.size() < MAX_BATCH_COUNT) {
+                    messages.add(mQueue.poll());
+                }
+            }
+            int sent = sendMessages(messages);
+            if (sent < messages.size()) {
+                // 送信先が応答しないため、以降のメッセージも送信せずに失敗させる
+                List<Intent> failed = new ArrayList<>(messages.subList(sent, messages.size()));
+                synchronized (mQueue) {
+                    failed.addAll(mQueue);
+                    mQueue.clear();
+                }
+                notifySendFailed(failed);
+            }
+        }
+    }
+
+    /**
+     * メッセージをまとめて送信する.
+     *
+     * @param messages メッセージのリスト
+     * @return 送信できたメッセージの数. 送信に失敗した場合は、先頭から送信できたメッセージの数
+     */
+    private int sendMessages(final List<Intent> messages) {
+        MessageBatch batch = new MessageBatch();
+        int batchStart = 0;
+        int batchSize = 0;
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                Intent message = messages.get(i);
+                byte[] data;
+                try {
+                    data = MessageBatch.marshall(message);
+                } catch (RuntimeException e) {
+                    // バインダーなどを含むメッセージは、順序を保ったまま個別に送信する
+                    flush(batch);
+                    batch = new MessageBatch();
+                    batchStart = i;
+                    batchSize = 0;
+                    mTransport.sendMessage(message);
+                    batchStart = i + 1;
+                    continue;
+                }
+
+                if (data.length > MAX_INLINE_SIZE) {
+                    ParcelFileDescriptor fd = openPipe(data);
+                    if (fd != null) {
+                        batch.addStream(fd, data.length);
+                        continue;
+                    }
+                }
+                if (batchSize > 0 && batchSize + data.length > MAX_BATCH_SIZE) {
+                    flush(batch);
+                    batch = new MessageBatch();
+                    batchStart = i;
+                    batchSize = 0;
+                }
+                batch.addInline(data);
+                batchSize += data.length;
+            }
+            flush(batch);
+            return messages.size();
+        } catch (RemoteException e) {
+            // 送信していないパイプを閉じて、書き込みスレッドを終了させる
+            batch.close();
+            mLogger.warning("Failed to send messages: count = " + (messages.size() - batchStart)
+                    + ", error = " + e.getMessage());
+            return batchStart;
+        }
+    }
+
+    /**
+     * 送信に失敗したメッセージをリスナーに通知する.
+     *
+     * @param messages 送信に失敗したメッセージのリスト
+     */
+    private void notifySendFailed(final List<Intent> messages) {
+        OnSendFailedListener listener = mOnSendFailedListener;
+        if (listener != null) {
+            listener.onSendFailed(messages);
+        }
+    }
+
+    /**
+     * まとめたメッセージを送信する.
+     *
+     * @param batch まとめたメッセージ
+     * @throws RemoteException 送信に失敗した場合
+     */
+    private void flush(final MessageBatch batch) throws RemoteException {
+        if (batch.size() == 0) {
+            return;
+        }
+        try {
+            mTransport.sendMessages(batch);
+        } finally {
+            batch.close();
+        }
+    }
+
+    /**
+     * データを書き込んだパイプを作成する.
+     * <p>
+     * パイプのバッファはデータより小さいため、書き込みは受信側の読み込みと並行して別スレッドで行う。
+     * </p>
+     *
+     * @param data 書き込むデータ
+     * @return パイプの読み込み側. パイプの作成に失敗した場合はnull
+     */
+    private ParcelFileDescriptor openPipe(final byte[] data) {
+        final ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            mLogger.warning("Failed to create a pipe: " + e.getMessage());
+            return null;
+        }
+        PIPE_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(pipe[1]);
+                try {
+                    out.write(data);
+                } catch (IOException e) {
+                    mLogger.warning("Failed to write a message to the pipe: " + e.getMessage());
+                } finally {
+                    try {
+                        out.close();
+                    } catch (IOException e) {
+                        // ignore.
+                    }
+                }
+            }
+        });
+        return pipe[0];
+    }
+
+    /**
+     * 送信処理用のスレッドプールを作成する.
+     *
+     * @param threadCount スレッドの最大数
+     * @return スレッドプール
+     */
+    private static ThreadPoolExecutor createExecutor(final int threadCount) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                THREAD_IDLE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * メッセージの送信に失敗したことを通知するリスナー.
+     */
+    public interface OnSendFailedListener {
+        /**
+         * メッセージの送信に失敗した場合に、送信スレッドから呼び出される.
+         *
+         * @param messages 送信できなかったメッセージのリスト
+         */
+        void onSendFailed(List<Intent> messages);
+    }
+
+    /**
+     * メッセージの送信先.
+     */
+    public interface Transport {
+        /**
+         * メッセージを1件送信する.
+         *
+         * @param message メッセージ
+         * @throws RemoteException 送信に失敗した場合
+         */
+        void sendMessage(Intent message) throws RemoteException;
+
+        /**
+         * まとめたメッセージを送信する.
+         *
+         * @param batch まとめたメッセージ
+         * @throws RemoteException 送信に失敗した場合
+         */
+        void sendMessages(MessageBatch batch) throws RemoteException;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ MessageBatch.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android;
+
+import android.content.Intent;
+import android.os.Parcel;
+import android.os.ParcelFileDescriptor;
+import android.os.Parcelable;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * 1回のバインダー通信でまとめて送信するメッセージ群.
+ * <p>
+ * 各メッセージは{@link Parcel#marshall()}でバイト列に変換して格納する。
+ * サイズの大きいメッセージは、バインダーのトランザクションの上限を超えないように
+ * パイプの{@link ParcelFileDescriptor}経由で送信する。
+ * </p>
+ * <p>
+ * 送信側は{@link BatchMessageSender}で作成し、受信側は{@link #getMessages()}でメッセージを取り出す。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class MessageBatch implements Parcelable {
+
+    /**
+     * メッセージをバイト列として格納していることを示す定数.
+     */
+    private static final int TYPE_INLINE = 0;
+
+    /**
+     * メッセージをパイプ経由で送信することを示す定数.
+     */
+    private static final int TYPE_STREAM = 1;
+
+    /**
+     * ロガー.
+     */
+    private static final Logger LOGGER = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /**
+     * 送信するメッセージのバイト列. ストリームの場合はnull.
+     */
+    private final List<byte[]> mInlineData = new ArrayList<>();
+
+    /**
+     * 送信するメッセージのパイプの読み込み側. バイト列の場合はnull.
+     */
+    private final List<ParcelFileDescriptor> mStreams = new ArrayList<>();
+
+    /**
+     * パイプで送信するメッセージのサイズ.
+     */
+    private final List<Integer> mStreamSizes = new ArrayList<>();
+
+    /**
+     * 受信したメッセージ.
+     */
+    private final List<Intent> mMessages;
+
+    /**
+     * 送信用のコンストラクタ.
+     */
+    MessageBatch() {
+        mMessages = Collections.emptyList();
+    }
+
+    /**
+     * 受信用のコンストラクタ.
+     *
+     * @param in 受信したデータ
+     */
+    private MessageBatch(final Parcel in) {
+        int count = in.readInt();
+        mMessages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = in.readInt();
+            int size = in.readInt();
+            byte[] data;
+            if (type == TYPE_INLINE) {
+                data = in.createByteArray();
+            } else {
+                ParcelFileDescriptor fd = ParcelFileDescriptor.CREATOR.createFromParcel(in);
+                try {
+                    data = readFully(fd, size);
+                } catch (IOException e) {
+                    LOGGER.warning("Failed to read a message from the pipe: " + e.getMessage());
+                    continue;
+                }
+            }
+            mMessages.add(unmarshall(data));
+        }
+    }
+
+    /**
+     * メッセージのバイト列を追加する.
+     *
+     * @param data メッセージのバイト列
+     */
+    void addInline(final byte[] data) {
+        mInlineData.add(data);
+        mStreams.add(null);
+        mStreamSizes.add(data.length);
+    }
+
+    /**
+     * パイプ経由で送信するメッセージを追加する.
+     *
+     * @param fd パイプの読み込み側
+     * @param size メッセージのサイズ
+     */
+    void addStream(final ParcelFileDescriptor fd, final int size) {
+        mInlineData.add(null);
+        mStreams.add(fd);
+        mStreamSizes.add(size);
+    }
+
+    /**
+     * 送信するメッセージの個数を取得する.
+     *
+     * @return メッセージの個数
+     */
+    int size() {
+        return mInlineData.size();
+    }
+
+    /**
+     * 送信側のパイプを閉じる.
+     * <p>
+     * 受信側にはバインダーによって複製されたファイルディスクリプタが渡されるため、
+     * 送信が終わったら閉じて構わない。
+     * </p>
+     */
+    void close() {
+        for (ParcelFileDescriptor fd : mStreams) {
+            if (fd != null) {
+                try {
+                    fd.close();
+                } catch (IOException e) {
+                    // ignore.
+                }
+            }
+        }
+    }
+
+    /**
+     * 受信したメッセージを取得する.
+     *
+     * @return 受信したメッセージのリスト
+     */
+    public List<Intent> getMessages() {
+        return mMessages;
+    }
+
+    @Override
+    public int describeContents() {
+        return mStreams.isEmpty() ? 0 : CONTENTS_FILE_DESCRIPTOR;
+    }
+
+    @Override
+    public void writeToParcel(final Parcel dest, final int flags) {
+        int count = mInlineData.size();
+        dest.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            byte[] data = mInlineData.get(i);
+            if (data != null) {
+                dest.writeInt(TYPE_INLINE);
+                dest.writeInt(data.length);
+                dest.writeByteArray(data);
+            } else {
+                dest.writeInt(TYPE_STREAM);
+                dest.writeInt(mStreamSizes.get(i));
+                mStreams.get(i).writeToParcel(dest, 0);
+            }
+        }
+    }
+
+    /**
+     * メッセージをバイト列に変換する.
+     * <p>
+     * バインダーやファイルディスクリプタを含むメッセージは変換できない。
+     * </p>
+     *
+     * @param message メッセージ
+     * @return バイト列
+     * @throws RuntimeException 変換できないメッセージの場合
+     */
+    static byte[] marshall(final Intent message) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            message.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * バイト列をメッセージに変換する.
+     *
+     * @param data バイト列
+     * @return メッセージ
+     */
+    static Intent unmarshall(final byte[] data) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            return Intent.CREATOR.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * パイプから指定されたサイズのデータを読み込む.
+     *
+     * @param fd パイプの読み込み側
+     * @param size データのサイズ
+     * @return 読み込んだデータ
+     * @throws IOException 読み込みに失敗した場合
+     */
+    private static byte[] readFully(final ParcelFileDescriptor fd, final int size) throws IOException {
+        byte[] data = new byte[size];
+        InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(fd);
+        try {
+            new DataInputStream(in).readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * MessageBatchを作成するクラス.
+     */
+    public static final Creator<MessageBatch> CREATOR = new Creator<MessageBatch>() {
+        @Override
+        public MessageBatch createFromParcel(final Parcel in) {
+            return new MessageBatch(in);
+        }
+
+        @Override
+        public MessageBatch[] newArray(final int size) {
+            return new MessageBatch[size];
+        }
+    };
+}
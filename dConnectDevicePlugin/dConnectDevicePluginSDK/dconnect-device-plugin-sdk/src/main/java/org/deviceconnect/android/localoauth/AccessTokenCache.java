@@ -0,0 +1,303 @@
+/*
+ AccessTokenCache.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.localoauth;
+
+import org.deviceconnect.android.BuildConfig;
+import org.deviceconnect.android.localoauth.oauthserver.db.SQLiteToken;
+import org.restlet.ext.oauth.internal.Scope;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * アクセストークンの確認結果をメモリ上に保持するキャッシュ.
+ * <p>
+ * DBから読み込んだトークンのスコープ毎の有効期限を事前に計算しておき、
+ * キャッシュに存在するトークンの確認ではDBへのアクセスもロックの取得も行わない。
+ * </p>
+ * <p>
+ * キャッシュへの追加・削除は、LocalOAuth2MainのDBアクセス用ロックを取得した状態で行うこと。
+ * 初回アクセス時のアクセス時間の更新は、{@link #pollAccessTimeUpdates()}で取り出してまとめてDBに書き込む。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class AccessTokenCache {
+
+    /** キャッシュするトークンの最大数. */
+    private final int mMaxSize;
+
+    /** キャッシュ. (キー: アクセストークン) */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /** DBへの書き込み待ちのアクセス時間の更新. */
+    private final ConcurrentLinkedQueue<AccessTimeUpdate> mAccessTimeUpdates = new ConcurrentLinkedQueue<>();
+
+    /**
+     * コンストラクタ.
+     * @param maxSize キャッシュするトークンの最大数
+     */
+    AccessTokenCache(final int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be greater than 0.");
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * キャッシュからトークンを取得する.
+     * @param accessToken アクセストークン
+     * @return トークン。キャッシュに存在しない場合はnull
+     */
+    Entry get(final String accessToken) {
+        Entry entry = mEntries.get(accessToken);
+        if (entry != null) {
+            entry.mLastUsedTime = System.currentTimeMillis();
+        }
+        return entry;
+    }
+
+    /**
+     * DBから読み込んだトークンをキャッシュに追加する.
+     * <p>
+     * キャッシュが上限に達している場合は、最も長く使用されていないトークンを削除する。
+     * </p>
+     * @param token DBから読み込んだトークン
+     * @param isExistClientId トークンを発行したクライアントが存在する場合はtrue
+     * @return 追加したトークン
+     */
+    Entry put(final SQLiteToken token, final boolean isExistClientId) {
+        Entry entry = new Entry(token, isExistClientId);
+        if (!mEntries.containsKey(token.getAccessToken()) && mEntries.size() >= mMaxSize) {
+            evictLeastRecentlyUsed();
+        }
+        mEntries.put(token.getAccessToken(), entry);
+        return entry;
+    }
+
+    /**
+     * 指定したトークンIDのトークンをキャッシュから削除する.
+     * @param tokenId トークンID
+     */
+    void removeByTokenId(final long tokenId) {
+        for (Iterator<Entry> it = mEntries.values().iterator(); it.hasNext(); ) {
+            if (it.next().mToken.getId() == tokenId) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * キャッシュを全て削除する.
+     */
+    void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * キャッシュされているトークンの数を取得する.
+     * @return トークンの数
+     */
+    int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * DBへの書き込み待ちのアクセス時間の更新を全て取り出す.
+     * @return アクセス時間の更新一覧
+     */
+    List<AccessTimeUpdate> pollAccessTimeUpdates() {
+        List<AccessTimeUpdate> updates = new ArrayList<>();
+        AccessTimeUpdate update;
+        while ((update = mAccessTimeUpdates.poll()) != null) {
+            updates.add(update);
+        }
+        return updates;
+    }
+
+    /**
+     * DBへの書き込み待ちのアクセス時間の更新があるか確認する.
+     * @return 書き込み待ちがある場合はtrue
+     */
+    boolean hasAccessTimeUpdates() {
+        return !mAccessTimeUpdates.isEmpty();
+    }
+
+    /**
+     * 最も長く使用されていないトークンを削除する.
+     */
+    private void evictLeastRecentlyUsed() {
+        String oldestKey = null;
+        long oldestTime = Long.MAX_VALUE;
+        for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+            long time = e.getValue().mLastUsedTime;
+            if (time < oldestTime) {
+                oldestTime = time;
+                oldestKey = e.getKey();
+            }
+        }
+        if (oldestKey != null) {
+            mEntries.remove(oldestKey);
+        }
+    }
+
+    /**
+     * キャッシュされたトークン.
+     */
+    final class Entry {
+        /** DBから読み込んだトークン. */
+        private final SQLiteToken mToken;
+
+        /** トークンを発行したクライアントの有無. */
+        private final boolean mIsExistClientId;
+
+        /** mScopesに含まれないスコープにもアクセスできるトークンか. */
+        private final boolean mIsWildcard;
+
+        /** スコープ毎の有効期限. (キー: スコープ名) */
+        private final Map<String, ScopeExpiry> mScopes;
+
+        /** 初回アクセス前のトークンか. */
+        private final AtomicBoolean mFirstAccess;
+
+        /** 最後に使用された時刻. */
+        private volatile long mLastUsedTime;
+
+        /**
+         * コンストラクタ.
+         * @param token DBから読み込んだトークン
+         * @param isExistClientId トークンを発行したクライアントが存在する場合はtrue
+         */
+        private Entry(final SQLiteToken token, final boolean isExistClientId) {
+            mToken = token;
+            mIsExistClientId = isExistClientId;
+            mFirstAccess = new AtomicBoolean(token.isFirstAccess());
+            mLastUsedTime = System.currentTimeMillis();
+
+            boolean wildcard = false;
+            Map<String, ScopeExpiry> scopes = new HashMap<>();
+            for (Scope s : token.getScope()) {
+                // token.scopeに"*"が含まれていたら、それ以降に並ぶスコープにもアクセスできる
+                if (BuildConfig.DEBUG && s.getScope().equals("*")) {
+                    wildcard = true;
+                    break;
+                }
+                // 同名のスコープが複数ある場合は、先頭のスコープを使用する
+                if (!scopes.containsKey(s.getScope())) {
+                    scopes.put(s.getScope(), new ScopeExpiry(s, token.getRegistrationDate()));
+                }
+            }
+            mIsWildcard = wildcard;
+            mScopes = scopes;
+        }
+
+        /**
+         * トークンを確認する.
+         * <p>
+         * 初回アクセスの場合は、アクセス時間の更新をDBへの書き込み待ちに追加する。
+         * </p>
+         * @param scope 確認するスコープ
+         * @return チェック結果
+         */
+        CheckAccessTokenResult check(final String scope) {
+            long now = System.currentTimeMillis();
+            boolean isFirstAccess = mFirstAccess.getAndSet(false);
+            if (isFirstAccess) {
+                mAccessTimeUpdates.add(new AccessTimeUpdate(mToken, now));
+            }
+
+            ScopeExpiry expiry = mScopes.get(scope);
+            if (expiry == null) {
+                if (mIsWildcard) {
+                    return new CheckAccessTokenResult(mIsExistClientId, true, true, true);
+                }
+                return new CheckAccessTokenResult(mIsExistClientId, true, false, false);
+            }
+            return new CheckAccessTokenResult(mIsExistClientId, true, true,
+                    expiry.isNotExpired(now, isFirstAccess));
+        }
+    }
+
+    /**
+     * 事前に計算したスコープの有効期限.
+     */
+    private static final class ScopeExpiry {
+        /** 初回アクセスのみ有効なスコープか. */
+        private final boolean mFirstAccessOnly;
+
+        /** 有効期間の開始時刻. */
+        private final long mStartTime;
+
+        /** 有効期間の終了時刻. */
+        private final long mExpireTime;
+
+        /**
+         * コンストラクタ.
+         * @param scope スコープ
+         * @param registrationDate トークンの発行日時
+         */
+        ScopeExpiry(final Scope scope, final long registrationDate) {
+            long period = scope.getExpirePeriod();
+            if (period == 0) {
+                // 有効期限0の場合は、トークン発行から1分以内の初回アクセスなら有効期限内とする
+                mFirstAccessOnly = true;
+                mStartTime = registrationDate;
+                mExpireTime = registrationDate
+                        + LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC;
+            } else if (period > 0) {
+                // 有効期限1以上の場合は、トークン発行からの経過時間が有効期限内かを判定する
+                mFirstAccessOnly = false;
+                mStartTime = Long.MIN_VALUE;
+                mExpireTime = scope.getTimestamp() + period * LocalOAuth2Settings.MSEC;
+            } else {
+                // 有効期限にマイナス値が設定されていたら、有効期限切れとみなす
+                mFirstAccessOnly = false;
+                mStartTime = Long.MAX_VALUE;
+                mExpireTime = Long.MIN_VALUE;
+            }
+        }
+
+        /**
+         * 有効期限内か判定する.
+         * @param now 現在時刻
+         * @param isFirstAccess 初回アクセスの場合はtrue
+         * @return true: 有効期限内 / false: 有効期限切れ
+         */
+        boolean isNotExpired(final long now, final boolean isFirstAccess) {
+            if (mFirstAccessOnly && !isFirstAccess) {
+                return false;
+            }
+            return mStartTime <= now && now <= mExpireTime;
+        }
+    }
+
+    /**
+     * DBへの書き込み待ちのアクセス時間の更新.
+     */
+    static final class AccessTimeUpdate {
+        /** 更新するトークン. */
+        final SQLiteToken mToken;
+
+        /** アクセス時間. */
+        final long mAccessDate;
+
+        /**
+         * コンストラクタ.
+         * @param token 更新するトークン
+         * @param accessDate アクセス時間
+         */
+        AccessTimeUpdate(final SQLiteToken token, final long accessDate) {
+            mToken = token;
+            mAccessDate = accessDate;
+        }
+    }
+}
@@ -87,6 +87,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -143,6 +147,23 @@ public final class LocalOAuth2Main {
     /** DBアクセス用Lockオブジェクト. */
     private static final Object sLockForDbAccess = new Object();
 
+    /** アクセス時間をDBにまとめて書き込むまでの待ち時間(ミリ秒). */
+    private static final long ACCESS_TIME_FLUSH_DELAY = 1000;
+
+    /**
+     * アクセストークンのキャッシュ.
+     * <p>
+     * 追加・削除はsLockForDbAccessを取得した状態で行う。
+     * </p>
+     */
+    private static final AccessTokenCache sAccessTokenCache = new AccessTokenCache(LocalOAuth2Settings.CLIENT_MAX);
+
+    /** アクセス時間をDBに書き込むスレッド. */
+    private static ScheduledExecutorService sAccessTimeWriter;
+
+    /** アクセス時間の書き込みが予約済みか. */
+    private static final AtomicBoolean sAccessTimeFlushScheduled = new AtomicBoolean();
+
     /**
      * Bindフラグ.
      * <p>
@@ -240,6 +261,7 @@ public final class LocalOAuth2Main {
         sUserManager = new SampleUserManager();
         sClientManager = new SQLiteClientManager(sDb);
         sTokenManager = new SQLiteTokenManager(sDb);
+        sAccessTimeWriter = Executors.newSingleThreadScheduledExecutor();
 
         // ユーザー追加
         addUserData(SampleUser.LOCALOAUTH_USER, SampleUser.LOCALOAUTH_PASS);
@@ -250,6 +272,18 @@ public final class LocalOAuth2Main {
      */
     public static void destroy() {
 
+        // 書き込み待ちのアクセス時間を反映してからキャッシュを破棄
+        if (sAccessTimeWriter != null) {
+            sAccessTimeWriter.shutdownNow();
+            sAccessTimeWriter = null;
+        }
+        synchronized (sLockForDbAccess) {
+            if (sDb != null && sDb.isOpen()) {
+                flushAccessTimeUpdates();
+            }
+            sAccessTokenCache.clear();
+        }
+
         // DBをまとめてクローズ
         if (sDbHelper != null) {
             sDbHelper.close();
@@ -298,6 +332,7 @@ public final class LocalOAuth2Main {
         ClientData clientData = null;
 
         synchronized (sLockForDbAccess) {
+            invalidateAccessTokenCache();
             try {
                 sDb.beginTransaction();
 
@@ -406,12 +441,11 @@ public final class LocalOAuth2Main {
         }
     }
 
-    private static boolean checkTime(final long t) {
-        return 0 <= t && t <= (LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC);
-    }
-
     /**
      * (7)アクセストークンを確認する.
+     * <p>
+     * 一度確認したアクセストークンはキャッシュされ、以降の確認ではDBにアクセスしない。
+     * </p>
      * 
      * @param accessToken 確認するアクセストークン
      * @param scope このスコープがアクセストークンに含まれるかチェックする
@@ -424,16 +458,6 @@ public final class LocalOAuth2Main {
             throw new IllegalArgumentException("scope is null.");
         }
 
-        // true: アクセストークンを発行したクライアントIDあり /
-        // false: アクセストークンを発行したクライアントIDなし.
-        boolean isExistClientId = false;
-        // true: アクセストークンあり / false: アクセストークンなし
-        boolean isExistAccessToken = false;
-        // true: スコープあり / false: スコープなし
-        boolean isExistScope = false;
-        // true: 有効期限内 / false: 有効期限切れ
-        boolean isNotExpired = false;
-
         // 無視するスコープが指定されていた場合
         if (specialScopes != null && Arrays.asList(specialScopes).contains(scope)) {
             return new CheckAccessTokenResult(true, true, true, true);
@@ -444,79 +468,133 @@ public final class LocalOAuth2Main {
             return new CheckAccessTokenResult(false, false, false, false);
         }
 
+        // キャッシュに存在しない場合のみDBから読み込む
+        AccessTokenCache.Entry entry = sAccessTokenCache.get(accessToken);
+        if (entry == null) {
+            entry = loadAccessToken(accessToken);
+        }
+
+        CheckAccessTokenResult result;
+        if (entry != null) {
+            result = entry.check(scope);
+            scheduleAccessTimeFlush();
+        } else {
+            result = new CheckAccessTokenResult(false, false, false, false);
+        }
+
+        if (!result.checkResult()) {
+            sLogger.warning("checkAccessToken() - error.");
+            sLogger.warning(" - isExistClientId: " + result.isExistClientId());
+            sLogger.warning(" - isExistAccessToken: " + result.isExistAccessToken());
+            sLogger.warning(" - isExistScope:" + result.isExistScope());
+            sLogger.warning(" - isNotExpired:" + result.isNotExpired());
+            sLogger.warning(" - accessToken:" + accessToken);
+            sLogger.warning(" - scope:" + scope);
+        }
+        return result;
+    }
+
+    /**
+     * アクセストークンをDBから読み込み、キャッシュに追加する.
+     *
+     * @param accessToken アクセストークン
+     * @return キャッシュに追加したトークン。アクセストークンが存在しない場合はnull
+     */
+    private static AccessTokenCache.Entry loadAccessToken(final String accessToken) {
         synchronized (sLockForDbAccess) {
             if (!sDb.isOpen()) {
                 throw new RuntimeException("Database is not opened.");
             }
 
+            // ロック待ちの間に他のスレッドが読み込んでいる場合
+            AccessTokenCache.Entry entry = sAccessTokenCache.get(accessToken);
+            if (entry != null) {
+                return entry;
+            }
+
+            // 初回アクセスの判定がDBと食い違わないように、書き込み待ちのアクセス時間を先に反映する
+            flushAccessTimeUpdates();
+
             try {
                 sDb.beginTransaction();
 
                 // アクセストークンを元にトークンを検索する
                 SQLiteToken token = (SQLiteToken) sTokenManager.findTokenByAccessToken(accessToken);
                 if (token != null) {
-                    // アクセストークンあり
-                    isExistAccessToken = true;
-                    Scope[] scopes = token.getScope();
-                    for (Scope s : scopes) {
-                        // token.scopeに"*"が含まれていたら、どんなスコープにもアクセスできる
-                        if (BuildConfig.DEBUG && s.getScope().equals("*")) {
-                            isExistScope = true; // スコープあり
-                            isNotExpired = true; // 有効期限
-                            break;
-                        }
-
-                        if (s.getScope().equals(scope)) {
-                            isExistScope = true; // スコープあり
-                            
-                            if (s.getExpirePeriod() == 0) {
-                                // 有効期限0の場合は、トークン発行から1分以内の初回アクセスなら有効期限内とする
-                                long t = System.currentTimeMillis() - token.getRegistrationDate();
-                                if (checkTime(t) && token.isFirstAccess()) {
-                                    isNotExpired = true;
-                                }
-                            } else if (s.getExpirePeriod() > 0) {
-                                // 有効期限1以上の場合は、トークン発行からの経過時間が有効期限内かを判定して返す
-                                isNotExpired = !s.isExpired();
-                            } else {
-                                // 有効期限にマイナス値が設定されていたら、有効期限切れとみなす
-                                isNotExpired = false;
-                            }
-                            break;
-                        }
-                    }
-    
                     // このトークンを発行したクライアントIDが存在するかチェック
-                    if (sClientManager.findById(token.getClientId()) != null) {
-                        isExistClientId = true;
-                    }
-    
-                    // トークンのアクセス時間更新
-                    if (token.isFirstAccess()) {
-                        token.dbUpdateTokenAccessTime(sDb);
-                    }
+                    boolean isExistClientId = sClientManager.findById(token.getClientId()) != null;
+                    entry = sAccessTokenCache.put(token, isExistClientId);
                 }
-                
+
                 sDb.setTransactionSuccessful();
             } catch (SQLiteException e) {
                 throw new RuntimeException(e);
             } finally {
                 sDb.endTransaction();
             }
+            return entry;
         }
-        
-        CheckAccessTokenResult result = new CheckAccessTokenResult(isExistClientId,
-                isExistAccessToken, isExistScope, isNotExpired);
-        if (!result.checkResult()) {
-            sLogger.warning("checkAccessToken() - error.");
-            sLogger.warning(" - isExistClientId: " + isExistClientId);
-            sLogger.warning(" - isExistAccessToken: " + isExistAccessToken);
-            sLogger.warning(" - isExistScope:" + isExistScope);
-            sLogger.warning(" - isNotExpired:" + isNotExpired);
-            sLogger.warning(" - accessToken:" + accessToken);
-            sLogger.warning(" - scope:" + scope);
+    }
+
+    /**
+     * 書き込み待ちのアクセス時間があれば、DBへの書き込みを予約する.
+     * <p>
+     * 短時間に発生したアクセス時間の更新は、1つのトランザクションでまとめて書き込む。
+     * </p>
+     */
+    private static void scheduleAccessTimeFlush() {
+        ScheduledExecutorService writer = sAccessTimeWriter;
+        if (writer == null || !sAccessTokenCache.hasAccessTimeUpdates()) {
+            return;
         }
-        return result;
+        if (sAccessTimeFlushScheduled.compareAndSet(false, true)) {
+            writer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    sAccessTimeFlushScheduled.set(false);
+                    synchronized (sLockForDbAccess) {
+                        if (sDb != null && sDb.isOpen()) {
+                            flushAccessTimeUpdates();
+                        }
+                    }
+                }
+            }, ACCESS_TIME_FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 書き込み待ちのアクセス時間をDBに書き込む.
+     * <p>
+     * sLockForDbAccessを取得した状態で呼び出すこと。
+     * </p>
+     */
+    private static void flushAccessTimeUpdates() {
+        List<AccessTokenCache.AccessTimeUpdate> updates = sAccessTokenCache.pollAccessTimeUpdates();
+        if (updates.isEmpty()) {
+            return;
+        }
+        try {
+            sDb.beginTransaction();
+            for (AccessTokenCache.AccessTimeUpdate update : updates) {
+                update.mToken.dbUpdateTokenAccessTime(sDb, update.mAccessDate);
+            }
+            sDb.setTransactionSuccessful();
+        } catch (SQLiteException e) {
+            sLogger.warning("Failed to update the access time of tokens: " + e.getMessage());
+        } finally {
+            sDb.endTransaction();
+        }
+    }
+
+    /**
+     * アクセストークンのキャッシュを破棄する.
+     * <p>
+     * トークンやクライアントを変更する前に、sLockForDbAccessを取得した状態で呼び出すこと。
+     * </p>
+     */
+    private static void invalidateAccessTokenCache() {
+        flushAccessTimeUpdates();
+        sAccessTokenCache.clear();
     }
 
     /**
@@ -605,6 +683,8 @@ public final class LocalOAuth2Main {
                 throw new RuntimeException("Database is not opened.");
             }
 
+            flushAccessTimeUpdates();
+            sAccessTokenCache.removeByTokenId(tokenId);
             try {
                 sDb.beginTransaction();
 
@@ -629,6 +709,7 @@ public final class LocalOAuth2Main {
                 throw new RuntimeException("Database is not opened.");
             }
 
+            invalidateAccessTokenCache();
             try {
                 sDb.beginTransaction();
                 
@@ -674,6 +755,7 @@ public final class LocalOAuth2Main {
                 throw new RuntimeException("Database is not opened.");
             }
 
+            invalidateAccessTokenCache();
             try {
                 sDb.beginTransaction();
                 
@@ -750,6 +832,7 @@ public final class LocalOAuth2Main {
                     if (!sDb.isOpen()) {
                         exception = new AuthorizationException(AuthorizationException.SQLITE_ERROR);
                     } else {
+                        invalidateAccessTokenCache();
                         try {
                             sDb.beginTransaction();
 
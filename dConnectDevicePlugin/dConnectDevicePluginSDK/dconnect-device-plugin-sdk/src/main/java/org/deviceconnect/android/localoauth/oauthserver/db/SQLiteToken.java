@@ -332,8 +332,18 @@ public class SQLiteToken implements ServerToken {
      * @param db データベース
      */
     public void dbUpdateTokenAccessTime(final SQLiteDatabase db) {
+        dbUpdateTokenAccessTime(db, System.currentTimeMillis());
+    }
+
+    /**
+     * トークンのアクセス時間を指定した時刻に更新する.
+     * 
+     * @param db データベース
+     * @param accessDate アクセス時間
+     */
+    public void dbUpdateTokenAccessTime(final SQLiteDatabase db, final long accessDate) {
         /* アクセス時間を更新 */
-        mAccessDate = System.currentTimeMillis();
+        mAccessDate = accessDate;
 
         /* tokensレコード更新 */
         ContentValues values = new ContentValues();
@@ -14,12 +14,15 @@ import android.content.res.AssetManager;
 import android.os.Binder;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.ParcelFileDescriptor;
 import android.os.RemoteException;
 
 import org.deviceconnect.android.BuildConfig;
+import org.deviceconnect.android.BatchMessageSender;
 import org.deviceconnect.android.IDConnectCallback;
 import org.deviceconnect.android.IDConnectPlugin;
+import org.deviceconnect.android.MessageBatch;
 import org.deviceconnect.android.compat.AuthorizationRequestConverter;
 import org.deviceconnect.android.compat.LowerCaseConverter;
 import org.deviceconnect.android.compat.MessageConverter;
@@ -38,6 +41,7 @@ import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.DConnectProfileProvider;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.android.profile.SystemProfile;
+import org.deviceconnect.android.profile.api.DConnectApi;
 import org.deviceconnect.android.profile.spec.DConnectPluginSpec;
 import org.deviceconnect.android.profile.spec.DConnectProfileSpec;
 import org.deviceconnect.android.service.DConnectService;
@@ -56,8 +60,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.logging.SimpleFormatter;
@@ -86,6 +88,9 @@ public abstract class DConnectMessageService extends Service implements DConnect
     /** プロファイル仕様定義ファイルの拡張子. */
     private static final String SPEC_FILE_EXTENSION = ".json";
 
+    /** リクエストを実行するデフォルトのスレッド数. */
+    private static final int DEFAULT_REQUEST_THREAD_COUNT = 4;
+
     /**
      * ロガー.
      */
@@ -136,7 +141,7 @@ public abstract class DConnectMessageService extends Service implements DConnect
         }
     };
 
-    private ScheduledExecutorService mExecutorService;
+    private DConnectRequestExecutor mRequestExecutor;
 
     private boolean mIsEnabled;
 
@@ -160,7 +165,7 @@ public abstract class DConnectMessageService extends Service implements DConnect
         serviceManager.setPluginSpec(mPluginSpec);
         serviceManager.setContext(getContext());
         mServiceProvider = serviceManager;
-        mExecutorService = Executors.newSingleThreadScheduledExecutor();
+        mRequestExecutor = new DConnectRequestExecutor(getRequestExecutionMode(), getRequestThreadCount());
 
         // LocalOAuthの初期化
         LocalOAuth2Main.initialize(this);
@@ -176,8 +181,14 @@ public abstract class DConnectMessageService extends Service implements DConnect
     public void onDestroy() {
         super.onDestroy();
         // スレッドの停止
-        if (mExecutorService != null) {
-            mExecutorService.shutdown();
+        if (mRequestExecutor != null) {
+            if (BuildConfig.DEBUG) {
+                mLogger.info("Request executor: started=" + mRequestExecutor.getStartedCount()
+                        + ", maxQueueDepth=" + mRequestExecutor.getMaxQueueDepth()
+                        + ", averageWaitTime=" + mRequestExecutor.getAverageWaitTime()
+                        + "ms, maxWaitTime=" + mRequestExecutor.getMaxWaitTime() + "ms");
+            }
+            mRequestExecutor.shutdown();
         }
         // LocalOAuthの後始末
         LocalOAuth2Main.destroy();
@@ -426,12 +437,52 @@ public abstract class DConnectMessageService extends Service implements DConnect
 
     private void onRequest(final Intent request) {
         convertRequest(request);
-        mExecutorService.submit(new Runnable() {
+        Runnable task = new Runnable() {
             @Override
             public void run() {
                 onRequest(request, MessageUtils.createResponseIntent(request));
             }
-        });
+        };
+
+        // MEMO startServiceで受信したリクエストはメインスレッドで呼ばれるので、
+        // インライン実行のAPIであってもメインスレッドでは実行しない
+        DConnectApi api = findApi(request);
+        if (api != null && api.isInline() && !isMainThread()) {
+            task.run();
+        } else {
+            mRequestExecutor.execute(DConnectProfile.getServiceID(request), task);
+        }
+    }
+
+    /**
+     * 呼び出し元のスレッドがメインスレッドか確認する.
+     *
+     * @return メインスレッドの場合はtrue、それ以外はfalse
+     */
+    private static boolean isMainThread() {
+        return Looper.myLooper() == Looper.getMainLooper();
+    }
+
+    /**
+     * リクエストに対応するAPI実装を取得する.
+     *
+     * @param request リクエスト
+     * @return API実装. 見つからない場合は<code>null</code>
+     */
+    private DConnectApi findApi(final Intent request) {
+        String profileName = request.getStringExtra(DConnectMessage.EXTRA_PROFILE);
+        if (profileName == null) {
+            return null;
+        }
+        DConnectProfile profile = getProfile(profileName);
+        if (profile == null) {
+            String serviceId = DConnectProfile.getServiceID(request);
+            DConnectService service = serviceId != null ? getServiceProvider().getService(serviceId) : null;
+            if (service != null) {
+                profile = service.getProfile(profileName);
+            }
+        }
+        return profile != null ? profile.findApi(request) : null;
     }
 
     private MessageSender getMessageSender(final Intent message) {
@@ -709,6 +760,46 @@ public abstract class DConnectMessageService extends Service implements DConnect
         return new MemoryCacheController();
     }
 
+    /**
+     * リクエストの実行モードを返す.
+     *
+     * <p>
+     * デフォルトでは{@link DConnectRequestExecutor.Mode#SINGLE_THREAD}を使用し、全てのリクエストを1つのスレッドで順番に実行する.<br>
+     * 複数のリクエストを並列に実行したい場合は本メソッドをオーバーライドすること.
+     * その場合、プロファイルやAPIの実装はスレッドセーフにすること.
+     * </p>
+     *
+     * @return リクエストの実行モード
+     */
+    protected DConnectRequestExecutor.Mode getRequestExecutionMode() {
+        return DConnectRequestExecutor.Mode.SINGLE_THREAD;
+    }
+
+    /**
+     * リクエストを実行するスレッド数を返す.
+     *
+     * <p>
+     * {@link #getRequestExecutionMode()}が{@link DConnectRequestExecutor.Mode#SINGLE_THREAD}以外の場合に使用される.<br>
+     * 変更したい場合は本メソッドをオーバーライドすること.
+     * </p>
+     *
+     * @return スレッド数
+     */
+    protected int getRequestThreadCount() {
+        return DEFAULT_REQUEST_THREAD_COUNT;
+    }
+
+    /**
+     * リクエストを実行するクラスを取得する.
+     * <p>
+     * 実行待ちのリクエスト数や待ち時間を取得する場合に使用する。
+     * </p>
+     * @return リクエストを実行するクラス. {@link #onCreate()}の前は<code>null</code>
+     */
+    public final DConnectRequestExecutor getRequestExecutor() {
+        return mRequestExecutor;
+    }
+
     /**
      * Device Connect Managerがアンインストールされた時に呼ばれる処理部.
      * <p>
@@ -821,12 +912,44 @@ public abstract class DConnectMessageService extends Service implements DConnect
         public ParcelFileDescriptor readFileDescriptor(final String fileId) throws RemoteException {
             return mDelegate.readFileDescriptor(fileId);
         }
+
+        @Override
+        public int getProtocolVersion() throws RemoteException {
+            return mDelegate.getProtocolVersion();
+        }
+
+        @Override
+        public void sendMessages(final MessageBatch batch) throws RemoteException {
+            mDelegate.sendMessages(batch);
+        }
     }
     
     private class PluginBinder extends IDConnectPlugin.Stub {
 
         @Override
         public void registerCallback(final IDConnectCallback callback) throws RemoteException {
+            // 旧バージョンのManagerは0を返すので、メッセージを1件ずつ送信する
+            if (callback.getProtocolVersion() >= BatchMessageSender.PROTOCOL_VERSION) {
+                final BatchMessageSender sender = new BatchMessageSender(new BatchMessageSender.Transport() {
+                    @Override
+                    public void sendMessage(final Intent message) throws RemoteException {
+                        callback.sendMessage(message);
+                    }
+
+                    @Override
+                    public void sendMessages(final MessageBatch batch) throws RemoteException {
+                        callback.sendMessages(batch);
+                    }
+                });
+                mBindingSenders.put(getCallingPackage(), new MessageSender() {
+                    @Override
+                    public void send(final Intent message) {
+                        sender.send(message);
+                    }
+                });
+                return;
+            }
+
             mBindingSenders.put(getCallingPackage(), new MessageSender() {
                 @Override
                 public void send(final Intent message) {
@@ -849,6 +972,18 @@ public abstract class DConnectMessageService extends Service implements DConnect
         public ParcelFileDescriptor readFileDescriptor(final String fileId) throws RemoteException {
             return null; // 将来的に必要になった場合に実装.
         }
+
+        @Override
+        public int getProtocolVersion() throws RemoteException {
+            return BatchMessageSender.PROTOCOL_VERSION;
+        }
+
+        @Override
+        public void sendMessages(final MessageBatch batch) throws RemoteException {
+            for (Intent message : batch.getMessages()) {
+                handleMessage(message);
+            }
+        }
     }
 
     private interface MessageSender {
@@ -0,0 +1,347 @@
+/*
+ DConnectRequestExecutor.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * プラグインが受信したリクエストを実行するクラス.
+ * <p>
+ * 実行モードによって、リクエストを実行するスレッドの割り当て方が変わる。
+ * </p>
+ * <ul>
+ * <li>{@link Mode#SINGLE_THREAD}: 全てのリクエストを1つのスレッドで順番に実行する。</li>
+ * <li>{@link Mode#THREAD_POOL}: 全てのリクエストを指定した数のスレッドで並列に実行する。</li>
+ * <li>{@link Mode#SERIAL_PER_SERVICE}: 同じサービスIDのリクエストは受信順に1つずつ実行し、
+ * 異なるサービスIDのリクエストは指定した数のスレッドで並列に実行する。</li>
+ * </ul>
+ * <p>
+ * 実行待ちのリクエスト数と、実行開始までの待ち時間を計測する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class DConnectRequestExecutor {
+
+    /**
+     * リクエストの実行モード.
+     */
+    public enum Mode {
+        /** 1つのスレッドで順番に実行する. */
+        SINGLE_THREAD,
+        /** 複数のスレッドで並列に実行する. */
+        THREAD_POOL,
+        /** サービスID毎に順番に実行し、サービス間では並列に実行する. */
+        SERIAL_PER_SERVICE
+    }
+
+    /** ロガー. */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.dplugin");
+
+    /** 実行モード. */
+    private final Mode mMode;
+
+    /** リクエストを実行するスレッドプール. */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** サービスID毎の実行待ち行列. (キー: サービスID) */
+    private final Map<String, SerialQueue> mSerialQueues = new HashMap<>();
+
+    /** 実行待ちのリクエスト数. */
+    private final AtomicInteger mQueueDepth = new AtomicInteger();
+
+    /** 実行待ちのリクエスト数の最大値. */
+    private final AtomicInteger mMaxQueueDepth = new AtomicInteger();
+
+    /** 実行を開始したリクエスト数. */
+    private final AtomicLong mStartedCount = new AtomicLong();
+
+    /** 実行開始までの待ち時間の合計(ナノ秒). */
+    private final AtomicLong mTotalWaitTime = new AtomicLong();
+
+    /** 実行開始までの待ち時間の最大値(ナノ秒). */
+    private final AtomicLong mMaxWaitTime = new AtomicLong();
+
+    /**
+     * コンストラクタ.
+     * @param mode 実行モード
+     * @param threadCount スレッド数. {@link Mode#SINGLE_THREAD}の場合は無視される.
+     */
+    public DConnectRequestExecutor(final Mode mode, final int threadCount) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode is null.");
+        }
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be greater than 0.");
+        }
+        int size = (mode == Mode.SINGLE_THREAD) ? 1 : threadCount;
+        mMode = mode;
+        mExecutor = new ThreadPoolExecutor(size, size, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+    }
+
+    /**
+     * 実行モードを取得する.
+     * @return 実行モード
+     */
+    public Mode getMode() {
+        return mMode;
+    }
+
+    /**
+     * リクエストの実行を予約する.
+     * <p>
+     * {@link Mode#SERIAL_PER_SERVICE}の場合にサービスIDが<code>null</code>のリクエストは、
+     * 他のリクエストと順序付けせずに実行する。
+     * </p>
+     * @param serviceId リクエスト先のサービスID
+     * @param task 実行するタスク
+     */
+    public void execute(final String serviceId, final Runnable task) {
+        RequestTask requestTask = new RequestTask(task);
+        if (mMode == Mode.SERIAL_PER_SERVICE && serviceId != null) {
+            enqueueSerial(serviceId, requestTask);
+        } else {
+            submit(requestTask);
+        }
+    }
+
+    /**
+     * リクエストの実行を終了する.
+     * <p>
+     * 実行待ちのリクエストは実行されない。
+     * </p>
+     */
+    public void shutdown() {
+        mExecutor.shutdownNow();
+        synchronized (mSerialQueues) {
+            mSerialQueues.clear();
+        }
+    }
+
+    /**
+     * 実行待ちのリクエスト数を取得する.
+     * @return 実行待ちのリクエスト数
+     */
+    public int getQueueDepth() {
+        return mQueueDepth.get();
+    }
+
+    /**
+     * 指定したサービスIDの実行待ちのリクエスト数を取得する.
+     * <p>
+     * {@link Mode#SERIAL_PER_SERVICE}以外の場合は常に0を返す。
+     * </p>
+     * @param serviceId サービスID
+     * @return 実行待ちのリクエスト数
+     */
+    public int getQueueDepth(final String serviceId) {
+        synchronized (mSerialQueues) {
+            SerialQueue queue = mSerialQueues.get(serviceId);
+            return queue != null ? queue.mTasks.size() : 0;
+        }
+    }
+
+    /**
+     * 実行待ちのリクエスト数の最大値を取得する.
+     * @return 実行待ちのリクエスト数の最大値
+     */
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth.get();
+    }
+
+    /**
+     * 実行を開始したリクエスト数を取得する.
+     * @return 実行を開始したリクエスト数
+     */
+    public long getStartedCount() {
+        return mStartedCount.get();
+    }
+
+    /**
+     * 実行開始までの平均待ち時間を取得する.
+     * @return 平均待ち時間(ミリ秒)
+     */
+    public long getAverageWaitTime() {
+        long count = mStartedCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(mTotalWaitTime.get() / count);
+    }
+
+    /**
+     * 実行開始までの最大待ち時間を取得する.
+     * @return 最大待ち時間(ミリ秒)
+     */
+    public long getMaxWaitTime() {
+        return TimeUnit.NANOSECONDS.toMillis(mMaxWaitTime.get());
+    }
+
+    /**
+     * スレッドプールにタスクを渡す.
+     * @param task タスク
+     */
+    private void submit(final Runnable task) {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            mLogger.warning("Request executor is already shut down.");
+        }
+    }
+
+    /**
+     * サービスID毎の実行待ち行列にタスクを追加する.
+     * @param serviceId サービスID
+     * @param task タスク
+     */
+    private void enqueueSerial(final String serviceId, final RequestTask task) {
+        synchronized (mSerialQueues) {
+            SerialQueue queue = mSerialQueues.get(serviceId);
+            if (queue == null) {
+                queue = new SerialQueue(serviceId);
+                mSerialQueues.put(serviceId, queue);
+            }
+            queue.mTasks.offer(task);
+            if (!queue.mRunning) {
+                queue.mRunning = true;
+                submitNext(queue);
+            }
+        }
+    }
+
+    /**
+     * 実行待ち行列から次のタスクを取り出して、スレッドプールに渡す.
+     * <p>
+     * mSerialQueuesのロックを取得した状態で呼び出すこと。
+     * </p>
+     * @param queue 実行待ち行列
+     */
+    private void submitNext(final SerialQueue queue) {
+        final RequestTask task = queue.mTasks.poll();
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } finally {
+                    onSerialTaskFinished(queue);
+                }
+            }
+        });
+    }
+
+    /**
+     * 実行待ち行列のタスクが終了した時の処理を行う.
+     * @param queue 実行待ち行列
+     */
+    private void onSerialTaskFinished(final SerialQueue queue) {
+        synchronized (mSerialQueues) {
+            if (queue.mTasks.isEmpty()) {
+                queue.mRunning = false;
+                mSerialQueues.remove(queue.mServiceId);
+            } else {
+                submitNext(queue);
+            }
+        }
+    }
+
+    /**
+     * 最大値を更新する.
+     * @param max 最大値
+     * @param value 値
+     */
+    private static void updateMax(final AtomicInteger max, final int value) {
+        int current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 最大値を更新する.
+     * @param max 最大値
+     * @param value 値
+     */
+    private static void updateMax(final AtomicLong max, final long value) {
+        long current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 待ち時間を計測するためのタスク.
+     */
+    private class RequestTask implements Runnable {
+        /** 実行するタスク. */
+        private final Runnable mTask;
+
+        /** 実行を予約した時刻(ナノ秒). */
+        private final long mQueuedTime;
+
+        /**
+         * コンストラクタ.
+         * @param task 実行するタスク
+         */
+        RequestTask(final Runnable task) {
+            mTask = task;
+            mQueuedTime = System.nanoTime();
+            updateMax(mMaxQueueDepth, mQueueDepth.incrementAndGet());
+        }
+
+        @Override
+        public void run() {
+            long waitTime = System.nanoTime() - mQueuedTime;
+            mQueueDepth.decrementAndGet();
+            mStartedCount.incrementAndGet();
+            mTotalWaitTime.addAndGet(waitTime);
+            updateMax(mMaxWaitTime, waitTime);
+            try {
+                mTask.run();
+            } catch (Throwable e) {
+                mLogger.log(Level.WARNING, "Failed to execute a request.", e);
+            }
+        }
+    }
+
+    /**
+     * サービスID毎の実行待ち行列.
+     */
+    private static class SerialQueue {
+        /** サービスID. */
+        private final String mServiceId;
+
+        /** 実行待ちのタスク. */
+        private final Queue<RequestTask> mTasks = new LinkedList<>();
+
+        /** タスクを実行中か. */
+        private boolean mRunning;
+
+        /**
+         * コンストラクタ.
+         * @param serviceId サービスID
+         */
+        SerialQueue(final String serviceId) {
+            mServiceId = serviceId;
+        }
+    }
+}
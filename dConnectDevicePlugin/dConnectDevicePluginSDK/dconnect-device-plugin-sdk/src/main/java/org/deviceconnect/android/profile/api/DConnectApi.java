@@ -45,6 +45,20 @@ public abstract class DConnectApi implements DConnectSpecConstants {
      */
     public abstract Method getMethod();
 
+    /**
+     * リクエストを受信したスレッドで直接実行するかを取得する.
+     * <p>
+     * デフォルトではfalseを返し、リクエスト実行用のスレッドで実行される。<br>
+     * すぐに処理が終わり、ブロックすることのないAPIの場合は、このメソッドをオーバーライドしてtrueを返すことで、
+     * 他のリクエストの実行待ちに影響されずに実行できる。<br>
+     * ただし、リクエストをメインスレッドで受信した場合は、UIを止めないようにリクエスト実行用のスレッドで実行される。
+     * </p>
+     * @return 直接実行する場合はtrue、それ以外はfalse
+     */
+    public boolean isInline() {
+        return false;
+    }
+
     /**
      * API仕様を取得する.
      * @return API仕様
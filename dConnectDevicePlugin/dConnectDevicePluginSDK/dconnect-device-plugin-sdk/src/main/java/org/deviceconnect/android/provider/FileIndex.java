@@ -0,0 +1,222 @@
+/*
+ FileIndex.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.provider;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link FileManager}が保存したファイルの一覧.
+ * <p>
+ * ファイルを保存した順(有効期限が切れる順)に管理し、有効期限が切れたファイルと
+ * 合計サイズの上限を超えた分のファイルを、一覧の先頭から順に取り出す。
+ * ファイルの削除は行わないので、取り出したファイルは呼び出し元で削除すること。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class FileIndex {
+
+    /**
+     * 管理しているファイルの一覧.
+     * <p>
+     * 保存した順(有効期限が切れる順)に並んでいる。
+     * </p>
+     */
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>();
+
+    /** 管理しているファイルの合計サイズ. */
+    private long mTotalSize;
+
+    /** 保存できるファイルの合計サイズの上限. */
+    private long mMaxSize = Long.MAX_VALUE;
+
+    /**
+     * 保存できるファイルの合計サイズの上限を設定する.
+     *
+     * @param maxSize 合計サイズの上限(バイト)
+     */
+    synchronized void setMaxSize(final long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize is negative.");
+        }
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * 管理しているファイルの数を取得する.
+     *
+     * @return ファイルの数
+     */
+    synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 管理しているファイルの合計サイズを取得する.
+     *
+     * @return 合計サイズ(バイト)
+     */
+    synchronized long getTotalSize() {
+        return mTotalSize;
+    }
+
+    /**
+     * 保存したファイルを一覧の末尾に追加する.
+     * <p>
+     * 既に一覧にあるファイルは、一度削除してから末尾に追加し直す。
+     * </p>
+     *
+     * @param file 保存したファイル
+     * @param savedTime ファイルを保存した時間
+     * @return 合計サイズが上限を超えた場合はtrue、それ以外はfalse
+     */
+    synchronized boolean add(final File file, final long savedTime) {
+        put(new Entry(file, savedTime, file.length()));
+        return mTotalSize > mMaxSize;
+    }
+
+    /**
+     * ファイルを一覧から削除する.
+     *
+     * @param file 削除したファイル
+     */
+    synchronized void remove(final File file) {
+        Entry entry = mEntries.remove(file.getAbsolutePath());
+        if (entry != null) {
+            mTotalSize -= entry.mSize;
+        }
+    }
+
+    /**
+     * 有効期限が切れたファイル、および合計サイズの上限を超えた分のファイルを一覧から取り出す.
+     * <p>
+     * 一覧の先頭から、有効期限内かつ合計サイズが上限以下になるまで取り出す。
+     * </p>
+     *
+     * @param now 現在時刻
+     * @param expire 有効期限(ミリ秒)
+     * @return 一覧から取り出したファイル. 古い順に並んでいる.
+     */
+    synchronized List<File> removeExpired(final long now, final long expire) {
+        List<File> removed = new ArrayList<>();
+        for (Iterator<Entry> it = mEntries.values().iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (now - entry.mSavedTime <= expire && mTotalSize <= mMaxSize) {
+                break;
+            }
+            it.remove();
+            mTotalSize -= entry.mSize;
+            removed.add(new File(entry.mPath));
+        }
+        return removed;
+    }
+
+    /**
+     * フォルダ全体を調べて、一覧を作り直す.
+     * <p>
+     * {@link FileManager}を経由せずに作成、削除されたファイルを一覧に反映する。
+     * フォルダ内のファイルは更新日時を保存した時間とする。
+     * </p>
+     *
+     * @param dir フォルダ
+     * @param scanTime 調べ始めた時間. これ以降に追加されたファイルは一覧に残す.
+     */
+    void rescan(final File dir, final long scanTime) {
+        List<Entry> entries = new ArrayList<>();
+        collectFiles(dir, entries);
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(final Entry lhs, final Entry rhs) {
+                return lhs.mSavedTime < rhs.mSavedTime ? -1 : (lhs.mSavedTime == rhs.mSavedTime ? 0 : 1);
+            }
+        });
+
+        synchronized (this) {
+            // 調べている間に保存されたファイルは、一覧に残しておく
+            Map<String, Entry> saved = new LinkedHashMap<>();
+            for (Entry entry : mEntries.values()) {
+                if (entry.mSavedTime >= scanTime) {
+                    saved.put(entry.mPath, entry);
+                }
+            }
+            mEntries.clear();
+            mTotalSize = 0;
+            for (Entry entry : entries) {
+                put(entry);
+            }
+            for (Entry entry : saved.values()) {
+                put(entry);
+            }
+        }
+    }
+
+    /**
+     * ファイルを一覧の末尾に追加する.
+     *
+     * @param entry 追加するファイル
+     */
+    private void put(final Entry entry) {
+        Entry old = mEntries.remove(entry.mPath);
+        if (old != null) {
+            mTotalSize -= old.mSize;
+        }
+        mEntries.put(entry.mPath, entry);
+        mTotalSize += entry.mSize;
+    }
+
+    /**
+     * フォルダ内のファイルを再帰的に集める.
+     *
+     * @param dir フォルダ
+     * @param entries ファイルを格納するリスト
+     */
+    private static void collectFiles(final File dir, final List<Entry> entries) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                collectFiles(file, entries);
+            } else if (file.isFile()) {
+                entries.add(new Entry(file, file.lastModified(), file.length()));
+            }
+        }
+    }
+
+    /**
+     * 管理しているファイルの情報.
+     */
+    private static class Entry {
+        /** ファイルの絶対パス. */
+        final String mPath;
+        /** ファイルを保存した時間. */
+        final long mSavedTime;
+        /** ファイルのサイズ. */
+        final long mSize;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param file ファイル
+         * @param savedTime ファイルを保存した時間
+         * @param size ファイルのサイズ
+         */
+        Entry(final File file, final long savedTime, final long size) {
+            mPath = file.getAbsolutePath();
+            mSavedTime = savedTime;
+            mSize = size;
+        }
+    }
+}
@@ -27,6 +27,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -47,6 +48,29 @@ public class FileManager {
     /** ファイルが生存できる有効時間. */
     private long mExpire = DEFAULT_EXPIRE;
 
+    /** 自動削除のデフォルトのインターバルを定義する. */
+    private static final long DEFAULT_REMOVE_INTERVAL = 1000 * 60;
+
+    /** フォルダ全体を調べ直す間隔を自動削除の回数で定義する. */
+    private static final int RESCAN_PERIOD = 10;
+
+    /** 管理しているファイルの一覧. */
+    private final FileIndex mFileIndex = new FileIndex();
+
+    /** 自動削除のインターバル. 自動削除を行わない場合は0. */
+    private long mRemoveInterval;
+
+    /** 前回フォルダ全体を調べてからの自動削除の回数. */
+    private int mRemoveCount;
+
+    /** 自動削除処理. */
+    private final Runnable mRemoveTask = new Runnable() {
+        @Override
+        public void run() {
+            removeExpiredFiles();
+        }
+    };
+
     /** コンテキスト. */
     private Context mContext;
 
@@ -245,6 +269,7 @@ public class FileManager {
                 }
             }
         }
+        addFileIndex(new File(u.getPath()));
         String contentUri = getContentUri();
         if (contentUri == null) {
             throw new RuntimeException("Content URI is null.");
@@ -300,6 +325,7 @@ public class FileManager {
                 }
             }
         }
+        addFileIndex(new File(u.getPath()));
 
         String contentUri = getContentUri();
         if (contentUri == null) {
@@ -363,6 +389,8 @@ public class FileManager {
                     }
                 }
 
+                addFileIndex(new File(u.getPath()));
+
                 String contentUri = getContentUri();
                 if (contentUri == null) {
                     callback.onFail(new IOException("Content URI is null."));
@@ -430,6 +458,8 @@ public class FileManager {
                     }
                 }
 
+                addFileIndex(new File(u.getPath()));
+
                 String contentUri = getContentUri();
                 if (contentUri == null) {
                     callback.onFail(new IOException("Content URI is null."));
@@ -476,6 +506,7 @@ public class FileManager {
             return false;
         } else if (file.isFile()) {
             Boolean result = file.delete();
+            removeFileIndex(file);
             return result;
         } else {
             return false;
@@ -497,6 +528,7 @@ public class FileManager {
                 @Override
                 public void onSuccess() {
                     if (file.delete()) {
+                        removeFileIndex(file);
                         callback.onSuccess();
                     } else {
                         callback.onFail(new IOException("Failed to remove the file."));
@@ -648,6 +680,131 @@ public class FileManager {
         }
     }
 
+    /**
+     * 保存できるファイルの合計サイズの上限を設定する.
+     * <p>
+     * 上限を超えた場合には、古く保存されたファイルから削除する。
+     * デフォルトでは、上限は設定されていない。
+     * </p>
+     * <p>
+     * 上限の確認は、{@link #startAutoRemove()}で自動削除を開始している場合にのみ行う。
+     * </p>
+     *
+     * @param maxCacheSize 合計サイズの上限(バイト)
+     */
+    public final void setMaxCacheSize(final long maxCacheSize) {
+        if (maxCacheSize <= 0) {
+            throw new IllegalArgumentException("maxCacheSize is negative.");
+        }
+        mFileIndex.setMaxSize(maxCacheSize);
+    }
+
+    /**
+     * 有効期限が切れたファイルの自動削除を開始する.
+     * <p>
+     * インターバルには、デフォルトの60秒を使用する。
+     * </p>
+     */
+    public void startAutoRemove() {
+        startAutoRemove(DEFAULT_REMOVE_INTERVAL);
+    }
+
+    /**
+     * 有効期限が切れたファイルの自動削除を開始する.
+     * <p>
+     * 作業用スレッドで、保存したファイルの一覧から有効期限が切れたファイルを古い順に削除する。
+     * フォルダ全体を調べるのは、開始時と{@link #RESCAN_PERIOD}回に1回のみで、
+     * このクラスを経由せずに作成されたファイルはその時に一覧に追加される。
+     * </p>
+     *
+     * @param interval 自動削除のインターバル(ミリ秒)
+     */
+    public void startAutoRemove(final long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval is negative.");
+        }
+        synchronized (mFileIndex) {
+            mRemoveInterval = interval;
+            mRemoveCount = 0;
+        }
+        mHandler.removeCallbacks(mRemoveTask);
+        mHandler.post(mRemoveTask);
+    }
+
+    /**
+     * 有効期限が切れたファイルの自動削除を停止する.
+     */
+    public void stopAutoRemove() {
+        synchronized (mFileIndex) {
+            mRemoveInterval = 0;
+        }
+        mHandler.removeCallbacks(mRemoveTask);
+    }
+
+    /**
+     * 保存したファイルを一覧に追加する.
+     * <p>
+     * 合計サイズが上限を超えた場合には、自動削除を前倒しで実行する。
+     * </p>
+     *
+     * @param file 保存したファイル
+     */
+    private void addFileIndex(final File file) {
+        boolean overflow;
+        synchronized (mFileIndex) {
+            overflow = mFileIndex.add(file, System.currentTimeMillis()) && mRemoveInterval > 0;
+        }
+        if (overflow) {
+            mHandler.removeCallbacks(mRemoveTask);
+            mHandler.post(mRemoveTask);
+        }
+    }
+
+    /**
+     * ファイルを一覧から削除する.
+     *
+     * @param file 削除したファイル
+     */
+    private void removeFileIndex(final File file) {
+        mFileIndex.remove(file);
+    }
+
+    /**
+     * 有効期限が切れたファイル、および合計サイズの上限を超えた分のファイルを削除する.
+     * <p>
+     * 作業用スレッドで実行される。
+     * </p>
+     */
+    private void removeExpiredFiles() {
+        boolean rescan;
+        synchronized (mFileIndex) {
+            if (mRemoveInterval <= 0) {
+                return;
+            }
+            rescan = (mRemoveCount++ % RESCAN_PERIOD) == 0;
+        }
+        if (rescan) {
+            mFileIndex.rescan(getBasePath(), System.currentTimeMillis());
+        }
+
+        List<File> removeFiles = mFileIndex.removeExpired(System.currentTimeMillis(), mExpire);
+        long interval;
+        synchronized (mFileIndex) {
+            interval = mRemoveInterval;
+        }
+
+        for (File file : removeFiles) {
+            if (file.isFile() && !file.delete()) {
+                mLogger.warning("Failed to remove the file: " + file.getPath());
+            }
+        }
+
+        if (interval > 0) {
+            mHandler.removeCallbacks(mRemoveTask);
+            mHandler.postDelayed(mRemoveTask, interval);
+        }
+    }
+
     public interface CheckPermissionCallback {
         void onSuccess();
 
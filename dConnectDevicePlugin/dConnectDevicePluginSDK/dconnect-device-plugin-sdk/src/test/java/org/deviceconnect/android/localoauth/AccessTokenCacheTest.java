@@ -0,0 +1,234 @@
+/*
+ AccessTokenCacheTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.localoauth;
+
+import org.deviceconnect.android.localoauth.oauthserver.db.SQLiteToken;
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.ext.oauth.internal.Scope;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link AccessTokenCache}.
+ * @author NTT DOCOMO, INC.
+ */
+public class AccessTokenCacheTest {
+
+    /** Maximum number of the cached tokens. */
+    private static final int MAX_SIZE = 3;
+
+    /** One hour in seconds, which is the unit of the expire period of a scope. */
+    private static final long ONE_HOUR = 60 * 60;
+
+    private AccessTokenCache mCache;
+
+    @Before
+    public void setUp() {
+        mCache = new AccessTokenCache(MAX_SIZE);
+    }
+
+    @Test
+    public void check_notExpired() {
+        long now = System.currentTimeMillis();
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("battery", now, ONE_HOUR)), true);
+
+        CheckAccessTokenResult result = entry.check("battery");
+        assertTrue(result.isExistClientId());
+        assertTrue(result.isExistAccessToken());
+        assertTrue(result.isExistScope());
+        assertTrue(result.isNotExpired());
+        assertTrue(result.checkResult());
+    }
+
+    @Test
+    public void check_expired() {
+        // The scope was granted two hours ago for one hour.
+        long granted = System.currentTimeMillis() - 2 * ONE_HOUR * LocalOAuth2Settings.MSEC;
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("battery", granted, ONE_HOUR)), true);
+
+        CheckAccessTokenResult result = entry.check("battery");
+        assertTrue(result.isExistScope());
+        assertFalse(result.isNotExpired());
+        assertFalse(result.checkResult());
+    }
+
+    @Test
+    public void check_expiresPerScope() {
+        long now = System.currentTimeMillis();
+        long granted = now - 2 * ONE_HOUR * LocalOAuth2Settings.MSEC;
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("battery", granted, ONE_HOUR),
+                new Scope("light", now, ONE_HOUR)), true);
+
+        assertFalse(entry.check("battery").isNotExpired());
+        assertTrue(entry.check("light").isNotExpired());
+    }
+
+    @Test
+    public void check_negativePeriodIsExpired() {
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("battery", System.currentTimeMillis(), -1)), true);
+
+        assertFalse(entry.check("battery").isNotExpired());
+    }
+
+    @Test
+    public void check_zeroPeriodIsValidOnlyForFirstAccess() {
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", true,
+                new Scope("battery", System.currentTimeMillis(), 0)), true);
+
+        assertTrue(entry.check("battery").isNotExpired());
+        assertFalse(entry.check("battery").isNotExpired());
+    }
+
+    @Test
+    public void check_zeroPeriodAfterGraceTime() {
+        long registered = System.currentTimeMillis()
+                - 2 * LocalOAuth2Settings.ACCESS_TOKEN_GRACE_TIME * LocalOAuth2Settings.MSEC;
+        SQLiteToken token = createToken(1, "token1", false, new Scope("battery", registered, 0));
+        token.setRegistrationDate(registered);
+        token.setAccessDate(registered);
+        AccessTokenCache.Entry entry = mCache.put(token, true);
+
+        assertFalse(entry.check("battery").isNotExpired());
+    }
+
+    @Test
+    public void check_unknownScope() {
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("battery", System.currentTimeMillis(), ONE_HOUR)), true);
+
+        CheckAccessTokenResult result = entry.check("light");
+        assertFalse(result.isExistScope());
+        assertFalse(result.checkResult());
+    }
+
+    @Test
+    public void check_firstAccessIsQueuedOnce() {
+        mCache.put(createToken(1, "token1", true,
+                new Scope("battery", System.currentTimeMillis(), ONE_HOUR)), true);
+        assertFalse(mCache.hasAccessTimeUpdates());
+
+        AccessTokenCache.Entry entry = mCache.get("token1");
+        entry.check("battery");
+        entry.check("battery");
+
+        assertTrue(mCache.hasAccessTimeUpdates());
+        List<AccessTokenCache.AccessTimeUpdate> updates = mCache.pollAccessTimeUpdates();
+        assertEquals(1, updates.size());
+        assertEquals(1, updates.get(0).mToken.getId());
+        assertFalse(mCache.hasAccessTimeUpdates());
+    }
+
+    @Test
+    public void get() {
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("battery", System.currentTimeMillis(), ONE_HOUR)), true);
+
+        assertSame(entry, mCache.get("token1"));
+        assertNull(mCache.get("token2"));
+    }
+
+    @Test
+    public void put_replacesSameAccessToken() {
+        long now = System.currentTimeMillis();
+        mCache.put(createToken(1, "token1", false, new Scope("battery", now, ONE_HOUR)), true);
+        AccessTokenCache.Entry entry = mCache.put(createToken(1, "token1", false,
+                new Scope("light", now, ONE_HOUR)), true);
+
+        assertEquals(1, mCache.size());
+        assertSame(entry, mCache.get("token1"));
+        assertFalse(mCache.get("token1").check("battery").isExistScope());
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        mCache.put(createToken(1, "token1", false, new Scope("battery", now, ONE_HOUR)), true);
+        Thread.sleep(2);
+        mCache.put(createToken(2, "token2", false, new Scope("battery", now, ONE_HOUR)), true);
+        Thread.sleep(2);
+        mCache.put(createToken(3, "token3", false, new Scope("battery", now, ONE_HOUR)), true);
+        Thread.sleep(2);
+        assertNotNull(mCache.get("token1"));
+        Thread.sleep(2);
+
+        mCache.put(createToken(4, "token4", false, new Scope("battery", now, ONE_HOUR)), true);
+
+        assertEquals(MAX_SIZE, mCache.size());
+        assertNotNull(mCache.get("token1"));
+        assertNull(mCache.get("token2"));
+        assertNotNull(mCache.get("token3"));
+        assertNotNull(mCache.get("token4"));
+    }
+
+    @Test
+    public void removeByTokenId() {
+        long now = System.currentTimeMillis();
+        mCache.put(createToken(1, "token1", false, new Scope("battery", now, ONE_HOUR)), true);
+        mCache.put(createToken(2, "token2", false, new Scope("battery", now, ONE_HOUR)), true);
+
+        mCache.removeByTokenId(1);
+
+        assertEquals(1, mCache.size());
+        assertNull(mCache.get("token1"));
+        assertNotNull(mCache.get("token2"));
+    }
+
+    @Test
+    public void removeByTokenId_unknownId() {
+        mCache.put(createToken(1, "token1", false,
+                new Scope("battery", System.currentTimeMillis(), ONE_HOUR)), true);
+
+        mCache.removeByTokenId(2);
+
+        assertNotNull(mCache.get("token1"));
+    }
+
+    @Test
+    public void clear() {
+        long now = System.currentTimeMillis();
+        mCache.put(createToken(1, "token1", false, new Scope("battery", now, ONE_HOUR)), true);
+        mCache.put(createToken(2, "token2", false, new Scope("battery", now, ONE_HOUR)), true);
+
+        mCache.clear();
+
+        assertEquals(0, mCache.size());
+        assertNull(mCache.get("token1"));
+        assertNull(mCache.get("token2"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_invalidMaxSize() {
+        new AccessTokenCache(0);
+    }
+
+    /**
+     * Creates a token as if it were read from the database.
+     */
+    private static SQLiteToken createToken(final long id, final String accessToken,
+                                           final boolean firstAccess, final Scope... scopes) {
+        SQLiteToken token = new SQLiteToken() {};
+        token.setId(id);
+        token.setAccessToken(accessToken);
+        token.setScope(scopes);
+        if (!firstAccess) {
+            token.setAccessDate(token.getRegistrationDate() + 1);
+        }
+        return token;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ DConnectRequestExecutorTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.message;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link DConnectRequestExecutor}.
+ * @author NTT DOCOMO, INC.
+ */
+public class DConnectRequestExecutorTest {
+
+    /** Number of the threads. */
+    private static final int THREAD_COUNT = 4;
+
+    /** Number of the requests per service. */
+    private static final int REQUEST_COUNT = 100;
+
+    /** Time to wait for the requests in seconds. */
+    private static final long WAIT = 10;
+
+    private DConnectRequestExecutor mExecutor;
+
+    @After
+    public void tearDown() {
+        if (mExecutor != null) {
+            mExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void execute_serialPerServiceKeepsOrderOfService() throws InterruptedException {
+        mExecutor = new DConnectRequestExecutor(DConnectRequestExecutor.Mode.SERIAL_PER_SERVICE, THREAD_COUNT);
+        String[] serviceIds = {"service1", "service2", "service3"};
+        final Map<String, List<Integer>> log = new HashMap<>();
+        final Map<String, AtomicInteger> running = new HashMap<>();
+        final AtomicInteger overlaps = new AtomicInteger();
+        for (String serviceId : serviceIds) {
+            log.put(serviceId, new ArrayList<Integer>());
+            running.put(serviceId, new AtomicInteger());
+        }
+        final CountDownLatch latch = new CountDownLatch(REQUEST_COUNT * serviceIds.length);
+
+        // The requests of the services are interleaved as they would be received.
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            for (final String serviceId : serviceIds) {
+                final int index = i;
+                mExecutor.execute(serviceId, new Runnable() {
+                    @Override
+                    public void run() {
+                        AtomicInteger count = running.get(serviceId);
+                        if (count.incrementAndGet() != 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        List<Integer> serviceLog = log.get(serviceId);
+                        synchronized (serviceLog) {
+                            serviceLog.add(index);
+                        }
+                        Thread.yield();
+                        count.decrementAndGet();
+                        latch.countDown();
+                    }
+                });
+            }
+        }
+
+        assertTrue(latch.await(WAIT, TimeUnit.SECONDS));
+        assertEquals(0, overlaps.get());
+        for (String serviceId : serviceIds) {
+            List<Integer> serviceLog = log.get(serviceId);
+            synchronized (serviceLog) {
+                assertEquals(REQUEST_COUNT, serviceLog.size());
+                for (int i = 0; i < REQUEST_COUNT; i++) {
+                    assertEquals(serviceId, i, (int) serviceLog.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void execute_serialPerServiceRunsServicesInParallel() throws InterruptedException {
+        mExecutor = new DConnectRequestExecutor(DConnectRequestExecutor.Mode.SERIAL_PER_SERVICE, THREAD_COUNT);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        mExecutor.execute("service1", new BlockingTask(blocked, blocker));
+        mExecutor.execute("service1", new LatchTask(new CountDownLatch(1)));
+        assertTrue(blocked.await(WAIT, TimeUnit.SECONDS));
+
+        // A request of another service is not blocked by service1.
+        mExecutor.execute("service2", new LatchTask(done));
+        assertTrue(done.await(WAIT, TimeUnit.SECONDS));
+        assertEquals(1, mExecutor.getQueueDepth("service1"));
+        assertEquals(0, mExecutor.getQueueDepth("service2"));
+
+        blocker.countDown();
+    }
+
+    @Test
+    public void execute_serialPerServiceWithoutServiceId() throws InterruptedException {
+        mExecutor = new DConnectRequestExecutor(DConnectRequestExecutor.Mode.SERIAL_PER_SERVICE, THREAD_COUNT);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        mExecutor.execute(null, new BlockingTask(blocked, blocker));
+        assertTrue(blocked.await(WAIT, TimeUnit.SECONDS));
+
+        // Requests without a service ID are not ordered with each other.
+        mExecutor.execute(null, new LatchTask(done));
+        assertTrue(done.await(WAIT, TimeUnit.SECONDS));
+
+        blocker.countDown();
+    }
+
+    @Test
+    public void execute_serialPerServiceContinuesAfterException() throws InterruptedException {
+        mExecutor = new DConnectRequestExecutor(DConnectRequestExecutor.Mode.SERIAL_PER_SERVICE, THREAD_COUNT);
+        CountDownLatch done = new CountDownLatch(1);
+        mExecutor.execute("service1", new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        });
+        mExecutor.execute("service1", new LatchTask(done));
+
+        assertTrue(done.await(WAIT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void execute_singleThreadKeepsOrder() throws InterruptedException {
+        mExecutor = new DConnectRequestExecutor(DConnectRequestExecutor.Mode.SINGLE_THREAD, THREAD_COUNT);
+        final List<Integer> log = new ArrayList<>();
+        final CountDownLatch latch = new CountDownLatch(REQUEST_COUNT);
+        for (int i = 0; i < REQUEST_COUNT; i++) {
+            final int index = i;
+            mExecutor.execute("service" + (i % 3), new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (log) {
+                        log.add(index);
+                    }
+                    latch.countDown();
+                }
+            });
+        }
+
+        assertTrue(latch.await(WAIT, TimeUnit.SECONDS));
+        synchronized (log) {
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                assertEquals(i, (int) log.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void metrics() throws InterruptedException {
+        mExecutor = new DConnectRequestExecutor(DConnectRequestExecutor.Mode.SINGLE_THREAD, 1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        mExecutor.execute("service1", new BlockingTask(blocked, blocker));
+        assertTrue(blocked.await(WAIT, TimeUnit.SECONDS));
+        mExecutor.execute("service1", new LatchTask(done));
+        mExecutor.execute("service1", new LatchTask(done));
+        assertEquals(2, mExecutor.getQueueDepth());
+        assertEquals(1, mExecutor.getStartedCount());
+
+        blocker.countDown();
+        assertTrue(done.await(WAIT, TimeUnit.SECONDS));
+
+        assertEquals(0, mExecutor.getQueueDepth());
+        assertEquals(2, mExecutor.getMaxQueueDepth());
+        assertEquals(3, mExecutor.getStartedCount());
+        assertTrue(mExecutor.getMaxWaitTime() >= mExecutor.getAverageWaitTime());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_nullMode() {
+        new DConnectRequestExecutor(null, THREAD_COUNT);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_invalidThreadCount() {
+        new DConnectRequestExecutor(DConnectRequestExecutor.Mode.THREAD_POOL, 0);
+    }
+
+    /**
+     * Task which counts down a latch.
+     */
+    private static class LatchTask implements Runnable {
+        private final CountDownLatch mLatch;
+
+        LatchTask(final CountDownLatch latch) {
+            mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            mLatch.countDown();
+        }
+    }
+
+    /**
+     * Task which blocks until it is released.
+     */
+    private static class BlockingTask implements Runnable {
+        private final CountDownLatch mStarted;
+        private final CountDownLatch mBlocker;
+
+        BlockingTask(final CountDownLatch started, final CountDownLatch blocker) {
+            mStarted = started;
+            mBlocker = blocker;
+        }
+
+        @Override
+        public void run() {
+            mStarted.countDown();
+            try {
+                mBlocker.await(WAIT, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // ignore
+            }
+        }
+    }
+}
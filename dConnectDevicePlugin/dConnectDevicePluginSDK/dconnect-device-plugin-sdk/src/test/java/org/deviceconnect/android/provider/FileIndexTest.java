@@ -0,0 +1,233 @@
+/*
+ FileIndexTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.provider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the expiry and eviction of {@link FileIndex}.
+ * @author NTT DOCOMO, INC.
+ */
+public class FileIndexTest {
+
+    /** Expiry period in milliseconds. */
+    private static final long EXPIRE = 1000;
+
+    /** Base time of the saved files. */
+    private static final long BASE_TIME = 1500000000000L;
+
+    private File mDir;
+
+    private FileIndex mIndex;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = File.createTempFile("FileIndexTest", "");
+        assertTrue(mDir.delete());
+        assertTrue(mDir.mkdirs());
+        mIndex = new FileIndex();
+    }
+
+    @After
+    public void tearDown() {
+        deleteRecursively(mDir);
+    }
+
+    @Test
+    public void removeExpired_removesExpiredFilesInSavedOrder() throws IOException {
+        File a = createFile("a", 10);
+        File b = createFile("b", 10);
+        File c = createFile("c", 10);
+        mIndex.add(a, BASE_TIME);
+        mIndex.add(b, BASE_TIME + 100);
+        mIndex.add(c, BASE_TIME + 500);
+
+        // b has lived exactly for the expiry period, which is still valid.
+        List<File> removed = mIndex.removeExpired(BASE_TIME + 100 + EXPIRE, EXPIRE);
+
+        assertEquals(Collections.singletonList(a), removed);
+        assertEquals(2, mIndex.size());
+        assertEquals(20, mIndex.getTotalSize());
+
+        removed = mIndex.removeExpired(BASE_TIME + 500 + EXPIRE + 1, EXPIRE);
+
+        assertEquals(Arrays.asList(b, c), removed);
+        assertEquals(0, mIndex.size());
+        assertEquals(0, mIndex.getTotalSize());
+    }
+
+    @Test
+    public void removeExpired_noExpiredFiles() throws IOException {
+        mIndex.add(createFile("a", 10), BASE_TIME);
+
+        assertTrue(mIndex.removeExpired(BASE_TIME + EXPIRE, EXPIRE).isEmpty());
+        assertEquals(1, mIndex.size());
+    }
+
+    @Test
+    public void removeExpired_resavedFileIsNotExpired() throws IOException {
+        File a = createFile("a", 10);
+        File b = createFile("b", 10);
+        mIndex.add(a, BASE_TIME);
+        mIndex.add(b, BASE_TIME + 100);
+        // Overwriting a moves it behind b and restarts its expiry period.
+        mIndex.add(a, BASE_TIME + 200);
+
+        List<File> removed = mIndex.removeExpired(BASE_TIME + 100 + EXPIRE + 1, EXPIRE);
+
+        assertEquals(Collections.singletonList(b), removed);
+        assertEquals(1, mIndex.size());
+        assertEquals(10, mIndex.getTotalSize());
+    }
+
+    @Test
+    public void add_reportsOverflow() throws IOException {
+        mIndex.setMaxSize(25);
+
+        assertFalse(mIndex.add(createFile("a", 10), BASE_TIME));
+        assertFalse(mIndex.add(createFile("b", 15), BASE_TIME + 1));
+        assertTrue(mIndex.add(createFile("c", 1), BASE_TIME + 2));
+    }
+
+    @Test
+    public void removeExpired_evictsOldestFilesOverSizeBudget() throws IOException {
+        File a = createFile("a", 100);
+        File b = createFile("b", 100);
+        File c = createFile("c", 100);
+        File d = createFile("d", 100);
+        mIndex.add(a, BASE_TIME);
+        mIndex.add(b, BASE_TIME + 1);
+        mIndex.add(c, BASE_TIME + 2);
+        mIndex.add(d, BASE_TIME + 3);
+        mIndex.setMaxSize(250);
+
+        // None of the files has expired, but the oldest ones are evicted until the total fits.
+        List<File> removed = mIndex.removeExpired(BASE_TIME + 3, EXPIRE);
+
+        assertEquals(Arrays.asList(a, b), removed);
+        assertEquals(2, mIndex.size());
+        assertEquals(200, mIndex.getTotalSize());
+    }
+
+    @Test
+    public void removeExpired_sizeBudgetAndExpiry() throws IOException {
+        File a = createFile("a", 10);
+        File b = createFile("b", 10);
+        File c = createFile("c", 100);
+        mIndex.add(a, BASE_TIME);
+        mIndex.add(b, BASE_TIME + 1);
+        mIndex.add(c, BASE_TIME + EXPIRE);
+        mIndex.setMaxSize(105);
+
+        // a has expired. b has not, but is evicted to get under the budget.
+        List<File> removed = mIndex.removeExpired(BASE_TIME + EXPIRE + 1, EXPIRE);
+
+        assertEquals(Arrays.asList(a, b), removed);
+        assertEquals(100, mIndex.getTotalSize());
+    }
+
+    @Test
+    public void remove_updatesTotalSize() throws IOException {
+        File a = createFile("a", 10);
+        File b = createFile("b", 20);
+        mIndex.add(a, BASE_TIME);
+        mIndex.add(b, BASE_TIME + 1);
+
+        mIndex.remove(a);
+        mIndex.remove(createFile("notAdded", 5));
+
+        assertEquals(1, mIndex.size());
+        assertEquals(20, mIndex.getTotalSize());
+        assertEquals(Collections.singletonList(b), mIndex.removeExpired(BASE_TIME + 1 + EXPIRE + 1, EXPIRE));
+    }
+
+    @Test
+    public void rescan_indexesFilesByLastModified() throws IOException {
+        File a = createFile("a", 10);
+        File sub = new File(mDir, "sub");
+        assertTrue(sub.mkdirs());
+        File b = createFile("sub/b", 20);
+        File c = createFile("c", 30);
+        assertTrue(a.setLastModified(BASE_TIME + 2000));
+        assertTrue(b.setLastModified(BASE_TIME));
+        assertTrue(c.setLastModified(BASE_TIME + 1000));
+        // A file which has been deleted outside the index is dropped on rescan.
+        File deleted = createFile("deleted", 40);
+        mIndex.add(deleted, BASE_TIME);
+        assertTrue(deleted.delete());
+
+        mIndex.rescan(mDir, BASE_TIME + 3000);
+
+        assertEquals(3, mIndex.size());
+        assertEquals(60, mIndex.getTotalSize());
+        List<File> removed = mIndex.removeExpired(BASE_TIME + 3000 + EXPIRE, EXPIRE);
+        assertEquals(Arrays.asList(b.getAbsoluteFile(), c.getAbsoluteFile(), a.getAbsoluteFile()), removed);
+    }
+
+    @Test
+    public void rescan_keepsFilesSavedDuringScan() throws IOException {
+        File a = createFile("a", 10);
+        assertTrue(a.setLastModified(BASE_TIME));
+        File outside = new File(mDir.getParentFile(), mDir.getName() + "-outside");
+        writeFile(outside, 5);
+        try {
+            mIndex.add(outside, BASE_TIME + 500);
+
+            mIndex.rescan(mDir, BASE_TIME + 100);
+
+            assertEquals(2, mIndex.size());
+            assertEquals(15, mIndex.getTotalSize());
+            List<File> removed = mIndex.removeExpired(BASE_TIME + 500 + EXPIRE + 1, EXPIRE);
+            assertEquals(Arrays.asList(a.getAbsoluteFile(), outside.getAbsoluteFile()), removed);
+        } finally {
+            assertTrue(outside.delete());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setMaxSize_zero() {
+        mIndex.setMaxSize(0);
+    }
+
+    private File createFile(final String name, final int size) throws IOException {
+        File file = new File(mDir, name);
+        writeFile(file, size);
+        return file;
+    }
+
+    private static void writeFile(final File file, final int size) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[size]);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void deleteRecursively(final File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
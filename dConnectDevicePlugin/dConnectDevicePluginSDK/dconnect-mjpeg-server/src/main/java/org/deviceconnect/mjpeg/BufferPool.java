@@ -0,0 +1,83 @@
+/*
+ BufferPool.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.mjpeg;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of byte arrays used for frame data.
+ * <p>
+ * Frames are usually about the same size, so a pooled array is reused
+ * if it is large enough, otherwise a new array is allocated.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+final class BufferPool {
+
+    /**
+     * Max number of pooled arrays.
+     */
+    private final int mMaxSize;
+
+    /**
+     * Pooled arrays.
+     */
+    private final ConcurrentLinkedQueue<byte[]> mBuffers = new ConcurrentLinkedQueue<byte[]>();
+
+    /**
+     * Number of pooled arrays.
+     */
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    /**
+     * Constructor.
+     * @param maxSize max number of pooled arrays
+     */
+    BufferPool(final int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Obtains an array whose length is at least the specified size.
+     * @param size required size
+     * @return array
+     */
+    byte[] obtain(final int size) {
+        byte[] buf;
+        while ((buf = mBuffers.poll()) != null) {
+            mSize.decrementAndGet();
+            if (buf.length >= size) {
+                return buf;
+            }
+        }
+        // Leave some room so that a slightly larger next frame can reuse this array.
+        return new byte[size + (size >> 3)];
+    }
+
+    /**
+     * Returns an array to this pool.
+     * @param buf array
+     */
+    void recycle(final byte[] buf) {
+        if (mSize.incrementAndGet() <= mMaxSize) {
+            mBuffers.offer(buf);
+        } else {
+            mSize.decrementAndGet();
+        }
+    }
+
+    /**
+     * Discards all pooled arrays.
+     */
+    void clear() {
+        while (mBuffers.poll() != null) {
+            mSize.decrementAndGet();
+        }
+    }
+}
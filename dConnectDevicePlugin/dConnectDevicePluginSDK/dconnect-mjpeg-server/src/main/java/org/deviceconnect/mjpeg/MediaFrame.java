@@ -0,0 +1,109 @@
+/*
+ MediaFrame.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.mjpeg;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A frame shared by all viewers of a stream.
+ * <p>
+ * The frame is reference counted. The ring buffer of a stream holds one reference,
+ * and each viewer holds one while the frame is being written to its socket.
+ * When the last reference is released, the frame data is returned to the buffer pool
+ * if the frame was created from a pooled buffer.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+final class MediaFrame {
+
+    /**
+     * Frame data.
+     */
+    private final byte[] mData;
+
+    /**
+     * Length of frame data.
+     */
+    private final int mLength;
+
+    /**
+     * Multipart header of this frame.
+     */
+    private final ByteBuffer mPartHeader;
+
+    /**
+     * Pool that frame data is returned to, or null if the data is not pooled.
+     */
+    private final BufferPool mPool;
+
+    /**
+     * Reference count.
+     */
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    /**
+     * Constructor.
+     * @param data frame data
+     * @param length length of frame data
+     * @param partHeader multipart header of this frame
+     * @param pool pool that frame data is returned to, or null if the data is not pooled
+     */
+    MediaFrame(final byte[] data, final int length, final byte[] partHeader, final BufferPool pool) {
+        mData = data;
+        mLength = length;
+        mPartHeader = ByteBuffer.wrap(partHeader).asReadOnlyBuffer();
+        mPool = pool;
+    }
+
+    /**
+     * Get a length of frame data.
+     * @return length
+     */
+    int getLength() {
+        return mLength;
+    }
+
+    /**
+     * Get a multipart header of this frame.
+     * <p>
+     * The returned buffer has its own position, so it can be written by each viewer.
+     * </p>
+     * @return multipart header
+     */
+    ByteBuffer getPartHeader() {
+        return mPartHeader.duplicate();
+    }
+
+    /**
+     * Get frame data without copying.
+     * @return frame data
+     */
+    ByteBuffer getData() {
+        return ByteBuffer.wrap(mData, 0, mLength).asReadOnlyBuffer();
+    }
+
+    /**
+     * Increments a reference count.
+     */
+    void retain() {
+        mRefCount.incrementAndGet();
+    }
+
+    /**
+     * Decrements a reference count.
+     * <p>
+     * Frame data is returned to the pool when the reference count becomes 0.
+     * </p>
+     */
+    void release() {
+        if (mRefCount.decrementAndGet() == 0 && mPool != null) {
+            mPool.recycle(mData);
+        }
+    }
+}
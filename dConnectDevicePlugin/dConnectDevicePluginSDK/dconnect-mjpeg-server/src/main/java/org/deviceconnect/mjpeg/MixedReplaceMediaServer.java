@@ -0,0 +1,1696 @@
+/*
+ MixedReplaceMediaServer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.mjpeg;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Mixed Replace Media Server.
+ * <p>
+ * All clients are served by a single thread with a NIO selector.
+ * Offered frames are stored in a ring buffer of each stream, and all clients of the stream
+ * write the same frame data to their sockets without copying it.
+ * A client that cannot keep up with the producer skips to the oldest frame in the ring buffer,
+ * so {@link #offerMedia(byte[])} never waits for clients.
+ * </p>
+ * <p>
+ * A stream is identified by a segment of URL. The default stream is served at {@link #getUrl()},
+ * and the other streams are served at {@link #getUrl(String)}.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class MixedReplaceMediaServer {
+
+    /**
+     * Default max value of client.
+     */
+    public static final int DEFAULT_MAX_CLIENT_SIZE = 8;
+
+    /**
+     * Default number of frames held by a stream.
+     */
+    public static final int DEFAULT_FRAME_BUFFER_SIZE = 2;
+
+    /**
+     * Max number of pooled frame buffers.
+     */
+    private static final int MAX_POOLED_BUFFERS = 8;
+
+    /**
+     * Defined buffer size for reading a http header.
+     */
+    private static final int BUF_SIZE = 8192;
+
+    /**
+     * Segment of the default stream.
+     */
+    private static final String DEFAULT_SEGMENT = "";
+
+    /**
+     * Charset of http header.
+     */
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    /**
+     * Trailer of a multipart.
+     */
+    private static final ByteBuffer PART_TRAILER = ByteBuffer.wrap("\r\n\r\n".getBytes(ASCII)).asReadOnlyBuffer();
+
+    /** Logger. */
+    private final Logger mLogger = Logger.getLogger("org.deviceconnect.mjpeg");
+
+    /**
+     * Port of the Socket.
+     */
+    private int mPort = -1;
+
+    /**
+     * The boundary of a multipart.
+     */
+    private volatile String mBoundary = UUID.randomUUID().toString();
+
+    /**
+     * Content type.
+     * Default is "image/jpg".
+     */
+    private volatile String mContentType = "image/jpg";
+
+    /**
+     * Name of web server.
+     */
+    private volatile String mServerName = "DevicePlugin Server";
+
+    /**
+     * Value of Access-Control-Allow-Origin header.
+     * Default is "*".
+     */
+    private volatile String mAccessControlAllowOrigin = "*";
+
+    /**
+     * Max value of client.
+     */
+    private volatile int mMaxClientSize = DEFAULT_MAX_CLIENT_SIZE;
+
+    /**
+     * Number of frames held by a stream.
+     */
+    private int mFrameBufferSize = DEFAULT_FRAME_BUFFER_SIZE;
+
+    /**
+     * Minimum interval of frames sent to a client (milliseconds).
+     */
+    private volatile int mTimeSlice;
+
+    /**
+     * Server event listener.
+     */
+    private volatile ServerEventListener mServerEventListener;
+
+    /**
+     * Stream event listener.
+     */
+    private volatile StreamEventListener mStreamEventListener;
+
+    /**
+     * Pool of frame buffers.
+     */
+    private final BufferPool mBufferPool = new BufferPool(MAX_POOLED_BUFFERS);
+
+    /**
+     * Number of frames dropped by slow clients.
+     */
+    private final AtomicLong mDroppedFrameCount = new AtomicLong();
+
+    /**
+     * Selector loop of the running server.
+     */
+    private volatile ServerLoop mLoop;
+
+    /**
+     * Set a ServerEventListener.
+     * @param listener server event listener
+     */
+    public void setServerEventListener(final ServerEventListener listener) {
+        mServerEventListener = listener;
+    }
+
+    /**
+     * Set a StreamEventListener.
+     * @param listener stream event listener
+     */
+    public void setStreamEventListener(final StreamEventListener listener) {
+        mStreamEventListener = listener;
+    }
+
+    /**
+     * Set a boundary.
+     * @param boundary boundary of a multipart
+     */
+    public void setBoundary(final String boundary) {
+        if (boundary == null) {
+            throw new IllegalArgumentException("boundary is null.");
+        }
+        if (boundary.isEmpty()) {
+            throw new IllegalArgumentException("boundary is empty.");
+        }
+        mBoundary = boundary;
+    }
+
+    /**
+     * Get a boundary.
+     * @return boundary
+     */
+    public String getBoundary() {
+        return mBoundary;
+    }
+
+    /**
+     * Set a content type.
+     * <p>
+     * Default is "image/jpg".
+     * </p>
+     * @param contentType content type
+     */
+    public void setContentType(final String contentType) {
+        mContentType = contentType;
+    }
+
+    /**
+     * Get a content type.
+     * @return content type
+     */
+    public String getContentType() {
+        return mContentType;
+    }
+
+    /**
+     * Set a port of web server.
+     * @param port port of a web server
+     */
+    public void setPort(final int port) {
+        if (port < 1000) {
+            throw new IllegalArgumentException("Port is smaller than 1000.");
+        }
+        mPort = port;
+    }
+
+    /**
+     * Get a port of web server.
+     * <p>
+     * If the server is running, returns the port that the server is listening to.
+     * </p>
+     * @return port
+     */
+    public int getPort() {
+        ServerLoop loop = mLoop;
+        return loop != null ? loop.mLocalPort : mPort;
+    }
+
+    /**
+     * Set a name of server.
+     * @param name name of server
+     */
+    public void setServerName(final String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("name is null.");
+        }
+        mServerName = name;
+    }
+
+    /**
+     * Get a name of server.
+     * @return name of server
+     */
+    public String getServerName() {
+        return mServerName;
+    }
+
+    /**
+     * Set a value of Access-Control-Allow-Origin header.
+     * <p>
+     * The header is sent with the stream, the JPEG and the error responses.
+     * Default is "*", which allows a page of any origin to read the stream.
+     * </p>
+     * @param origin value of the header, or null not to send the header
+     */
+    public void setAccessControlAllowOrigin(final String origin) {
+        mAccessControlAllowOrigin = origin;
+    }
+
+    /**
+     * Get a value of Access-Control-Allow-Origin header.
+     * @return value of the header, or null if the header is not sent
+     */
+    public String getAccessControlAllowOrigin() {
+        return mAccessControlAllowOrigin;
+    }
+
+    /**
+     * Set a max value of client.
+     * <p>
+     * A client that connects over this value receives 503 Service Unavailable.
+     * Default is {@link #DEFAULT_MAX_CLIENT_SIZE}.
+     * </p>
+     * @param maxClientSize max value of client
+     */
+    public void setMaxClientSize(final int maxClientSize) {
+        if (maxClientSize <= 0) {
+            throw new IllegalArgumentException("maxClientSize must be greater than 0.");
+        }
+        mMaxClientSize = maxClientSize;
+    }
+
+    /**
+     * Get a max value of client.
+     * @return max value of client
+     */
+    public int getMaxClientSize() {
+        return mMaxClientSize;
+    }
+
+    /**
+     * Set a number of frames held by a stream.
+     * <p>
+     * A client that falls behind by more than this number skips the frames.
+     * This value is applied when the server starts. Default is {@link #DEFAULT_FRAME_BUFFER_SIZE}.
+     * </p>
+     * @param frameBufferSize number of frames
+     */
+    public void setFrameBufferSize(final int frameBufferSize) {
+        if (frameBufferSize <= 0) {
+            throw new IllegalArgumentException("frameBufferSize must be greater than 0.");
+        }
+        mFrameBufferSize = frameBufferSize;
+    }
+
+    /**
+     * Get a number of frames held by a stream.
+     * @return number of frames
+     */
+    public int getFrameBufferSize() {
+        return mFrameBufferSize;
+    }
+
+    /**
+     * Set a frame rate of each client.
+     * @param fps frame rate
+     */
+    public void setFPS(final int fps) {
+        if (fps <= 0) {
+            throw new IllegalArgumentException("fps must be greater than 0.");
+        }
+        mTimeSlice = 1000 / fps;
+    }
+
+    /**
+     * Set a minimum interval of frames sent to each client.
+     * <p>
+     * Default is 0, which sends every frame as soon as possible.
+     * </p>
+     * @param timeSlice interval (milliseconds)
+     */
+    public void setTimeSlice(final int timeSlice) {
+        if (timeSlice < 0) {
+            throw new IllegalArgumentException("timeSlice is negative.");
+        }
+        mTimeSlice = timeSlice;
+    }
+
+    /**
+     * Get a minimum interval of frames sent to each client.
+     * @return interval (milliseconds)
+     */
+    public int getTimeSlice() {
+        return mTimeSlice;
+    }
+
+    /**
+     * Get a url of the default stream.
+     * @return url, or null if the server is not running
+     */
+    public String getUrl() {
+        ServerLoop loop = mLoop;
+        if (loop == null) {
+            return null;
+        }
+        return loop.mBaseUrl + "/" + loop.mPath;
+    }
+
+    /**
+     * Get a url of the specified stream.
+     * @param segment segment of the stream
+     * @return url, or null if the server is not running
+     */
+    public String getUrl(final String segment) {
+        String url = getUrl();
+        if (url == null) {
+            return null;
+        }
+        return url + "/" + segment;
+    }
+
+    /**
+     * Get a server running status.
+     * @return server status
+     */
+    public boolean isRunning() {
+        return mLoop != null;
+    }
+
+    /**
+     * Get a number of connected clients.
+     * @return number of clients
+     */
+    public int getClientCount() {
+        ServerLoop loop = mLoop;
+        return loop != null ? loop.mClientCount.get() : 0;
+    }
+
+    /**
+     * Get a number of frames dropped by slow clients.
+     * @return number of frames
+     */
+    public long getDroppedFrameCount() {
+        return mDroppedFrameCount.get();
+    }
+
+    /**
+     * Obtains a buffer for a frame from the pool.
+     * <p>
+     * The buffer is returned to the pool when it is offered by {@link #offerMedia(String, byte[], int)}
+     * and all clients have sent it. The length of the buffer may be longer than the specified size.
+     * </p>
+     * @param size required size
+     * @return buffer
+     */
+    public byte[] obtainBuffer(final int size) {
+        return mBufferPool.obtain(size);
+    }
+
+    /**
+     * Inserts the media data into the default stream.
+     * <p>
+     * The media data must not be modified after calling this method.
+     * </p>
+     * @param media media data
+     */
+    public void offerMedia(final byte[] media) {
+        offerMedia(DEFAULT_SEGMENT, media);
+    }
+
+    /**
+     * Inserts the media data into the specified stream.
+     * <p>
+     * The media data must not be modified after calling this method.
+     * </p>
+     * @param segment segment of the stream
+     * @param media media data
+     */
+    public void offerMedia(final String segment, final byte[] media) {
+        if (media == null) {
+            return;
+        }
+        offerFrame(segment, media, media.length, null);
+    }
+
+    /**
+     * Inserts the media data in the buffer obtained by {@link #obtainBuffer(int)} into the specified stream.
+     * <p>
+     * The server takes the ownership of the buffer. It must not be used after calling this method.
+     * </p>
+     * @param segment segment of the stream, or null for the default stream
+     * @param buffer buffer obtained by {@link #obtainBuffer(int)}
+     * @param length length of the media data
+     */
+    public void offerMedia(final String segment, final byte[] buffer, final int length) {
+        if (buffer == null) {
+            return;
+        }
+        if (length < 0 || length > buffer.length) {
+            throw new IllegalArgumentException("length is out of range.");
+        }
+        offerFrame(segment != null ? segment : DEFAULT_SEGMENT, buffer, length, mBufferPool);
+    }
+
+    /**
+     * Stops the specified stream.
+     * <p>
+     * The connections of the clients of the stream are closed.
+     * </p>
+     * @param segment segment of the stream
+     */
+    public void stopMedia(final String segment) {
+        ServerLoop loop = mLoop;
+        if (loop != null && segment != null) {
+            loop.stopStream(segment);
+        }
+    }
+
+    /**
+     * Start a mixed replace media server.
+     * <p>
+     * If a port is not set, looking for a port that is not used between 9000 to 10000, set to server.
+     * </p>
+     * @return the url of the default stream or {@code null} if this server cannot start.
+     */
+    public synchronized String start() {
+        if (mLoop != null) {
+            return getUrl();
+        }
+
+        ServerLoop loop;
+        try {
+            loop = new ServerLoop(openServerSocket(), mFrameBufferSize);
+            mLogger.fine("Open a server socket.");
+        } catch (IOException e) {
+            // Failed to open server socket
+            ServerEventListener listener = mServerEventListener;
+            if (listener != null) {
+                listener.onError();
+            }
+            return null;
+        }
+
+        mLoop = loop;
+        Thread thread = new Thread(loop, "MixedReplaceMediaServer");
+        thread.start();
+        return getUrl();
+    }
+
+    /**
+     * Stop a mixed replace media server.
+     * <p>
+     * This method can be called from any thread including the callbacks of listeners.
+     * The connections are closed asynchronously.
+     * </p>
+     */
+    public synchronized void stop() {
+        ServerLoop loop = mLoop;
+        if (loop == null) {
+            return;
+        }
+        mLogger.fine("Stopping MixedReplaceMediaServer...");
+        mLoop = null;
+        loop.shutdown();
+    }
+
+    /**
+     * Open a server socket that looking for a port that can be used.
+     * @return ServerSocketChannel
+     * @throws IOException if an error occurs while open socket.
+     */
+    private ServerSocketChannel openServerSocket() throws IOException {
+        if (mPort != -1) {
+            return openServerSocket(mPort);
+        } else {
+            for (int i = 9000; i < 10000; i++) {
+                try {
+                    return openServerSocket(i);
+                } catch (IOException e) {
+                    continue;
+                }
+            }
+            throw new IOException("Cannot open server socket.");
+        }
+    }
+
+    /**
+     * Open a non-blocking server socket with the specified port.
+     * @param port port
+     * @return ServerSocketChannel
+     * @throws IOException if an error occurs while open socket.
+     */
+    private static ServerSocketChannel openServerSocket(final int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.socket().setReuseAddress(true);
+            channel.socket().bind(new InetSocketAddress(port));
+            channel.configureBlocking(false);
+            return channel;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Inserts a frame into the stream.
+     * @param segment segment of the stream
+     * @param data frame data
+     * @param length length of frame data
+     * @param pool pool that frame data is returned to, or null if the data is not pooled
+     */
+    private void offerFrame(final String segment, final byte[] data, final int length, final BufferPool pool) {
+        ServerLoop loop = mLoop;
+        if (loop == null) {
+            if (pool != null) {
+                pool.recycle(data);
+            }
+            return;
+        }
+        loop.offerFrame(segment, new MediaFrame(data, length, generatePartHeader(length), pool));
+    }
+
+    /**
+     * Generate a header of a multipart.
+     * @param length length of frame data
+     * @return header
+     */
+    private byte[] generatePartHeader(final int length) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("--").append(mBoundary).append("\r\n");
+        sb.append("Content-Type: ").append(mContentType).append("\r\n");
+        sb.append("Content-Length: ").append(length).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    /**
+     * Generate a http header for MJPEG.
+     * @return http header
+     */
+    private byte[] generateHttpHeaderMJPEG() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.0 200 OK\r\n");
+        sb.append("Server: ").append(mServerName).append("\r\n");
+        sb.append("Connection: close\r\n");
+        sb.append("Max-Age: 0\r\n");
+        sb.append("Expires: 0\r\n");
+        sb.append("Cache-Control: no-store, no-cache, must-revalidate, pre-check=0, post-check=0, max-age=0\r\n");
+        sb.append("Pragma: no-cache\r\n");
+        appendAccessControlAllowOrigin(sb);
+        sb.append("Content-Type: multipart/x-mixed-replace; ");
+        sb.append("boundary=").append(mBoundary).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    /**
+     * Generate a http header for plain JPEG.
+     * @param length length of JPEG
+     * @return http header
+     */
+    private byte[] generateHttpHeaderJPEG(final int length) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.0 200 OK\r\n");
+        sb.append("Server: ").append(mServerName).append("\r\n");
+        appendAccessControlAllowOrigin(sb);
+        sb.append("Connection: close\r\n");
+        sb.append("Content-Type: image/jpeg\r\n");
+        sb.append("Content-Length: ").append(length).append("\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    /**
+     * Generate a error http header.
+     * @param status status
+     * @return http header
+     */
+    private byte[] generateErrorHeader(final String status) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("HTTP/1.0 ").append(status).append("\r\n");
+        sb.append("Server: ").append(mServerName).append("\r\n");
+        appendAccessControlAllowOrigin(sb);
+        sb.append("Connection: close\r\n");
+        sb.append("\r\n");
+        return sb.toString().getBytes(ASCII);
+    }
+
+    /**
+     * Append Access-Control-Allow-Origin header if it is enabled.
+     * @param sb http header
+     */
+    private void appendAccessControlAllowOrigin(final StringBuilder sb) {
+        String origin = mAccessControlAllowOrigin;
+        if (origin != null) {
+            sb.append("Access-Control-Allow-Origin: ").append(origin).append("\r\n");
+        }
+    }
+
+    /**
+     * Interface of Server event.
+     * <p>
+     * {@link #onStart()} and {@link #onStop()} are called on the thread of the server.
+     * </p>
+     */
+    public interface ServerEventListener {
+        /**
+         * Event that started a server.
+         */
+        void onStart();
+        /**
+         * Event that stopped a server.
+         */
+        void onStop();
+        /**
+         * Event that occurred a error on server.
+         */
+        void onError();
+    }
+
+    /**
+     * Interface of Stream event.
+     * <p>
+     * These methods are called on the thread of the server, so they must return immediately.
+     * </p>
+     */
+    public interface StreamEventListener {
+        /**
+         * Event that a client has connected.
+         * <p>
+         * If the client requested a snapshot and this method returns JPEG data,
+         * the data is sent to the client instead of a frame of the stream.
+         * </p>
+         * @param request request of the client
+         * @return JPEG data for a snapshot, or null
+         */
+        byte[] onConnect(Request request);
+        /**
+         * Event that a client has disconnected.
+         * @param request request of the client
+         */
+        void onDisconnect(Request request);
+    }
+
+    /**
+     * Request of a client.
+     */
+    public static final class Request {
+        /**
+         * Base url of the server.
+         */
+        private final String mBaseUrl;
+
+        /**
+         * Decoded path.
+         */
+        private final String mPath;
+
+        /**
+         * Segment of the stream.
+         */
+        private final String mSegment;
+
+        /**
+         * Parameters of the request.
+         */
+        private final Map<String, String> mParams;
+
+        /**
+         * Constructor.
+         * @param baseUrl base url of the server
+         * @param path decoded path
+         * @param segment segment of the stream
+         * @param params parameters of the request
+         */
+        Request(final String baseUrl, final String path, final String segment, final Map<String, String> params) {
+            mBaseUrl = baseUrl;
+            mPath = path;
+            mSegment = segment;
+            mParams = params;
+        }
+
+        /**
+         * Get a url of the request without parameters.
+         * @return url
+         */
+        public String getUri() {
+            return mBaseUrl + mPath;
+        }
+
+        /**
+         * Get a path of the request.
+         * @return path
+         */
+        public String getPath() {
+            return mPath;
+        }
+
+        /**
+         * Get a segment of the stream.
+         * @return segment. The default stream is an empty string.
+         */
+        public String getSegment() {
+            return mSegment;
+        }
+
+        /**
+         * Get a parameter of the request.
+         * @param name name of parameter
+         * @return value, or null if not exists
+         */
+        public String getParameter(final String name) {
+            return mParams.get(name);
+        }
+
+        /**
+         * Checks whether the client requested a snapshot.
+         * @return true if a snapshot is requested, otherwise false
+         */
+        public boolean isSnapshot() {
+            return mParams.containsKey("snapshot");
+        }
+    }
+
+    /**
+     * Stream identified by a segment.
+     * <p>
+     * Frames are written by a producer thread and read by the server thread,
+     * so the ring buffer is guarded by this object. The clients are accessed
+     * only by the server thread.
+     * </p>
+     */
+    private static final class MediaStream {
+        /**
+         * Segment of the stream.
+         */
+        private final String mSegment;
+
+        /**
+         * Ring buffer of frames.
+         */
+        private final MediaFrame[] mFrames;
+
+        /**
+         * Sequence number of the latest frame. -1 if there is no frame.
+         */
+        private long mLatestSequence = -1;
+
+        /**
+         * Whether the stream is waiting for the server thread to deliver new frames.
+         */
+        private final AtomicBoolean mDirty = new AtomicBoolean();
+
+        /**
+         * Clients of the stream.
+         */
+        private final List<Client> mClients = new ArrayList<Client>();
+
+        /**
+         * Constructor.
+         * @param segment segment of the stream
+         * @param capacity number of frames
+         */
+        MediaStream(final String segment, final int capacity) {
+            mSegment = segment;
+            mFrames = new MediaFrame[capacity];
+        }
+
+        /**
+         * Puts a frame into the ring buffer.
+         * @param frame frame
+         */
+        void put(final MediaFrame frame) {
+            MediaFrame old;
+            synchronized (this) {
+                mLatestSequence++;
+                int index = (int) (mLatestSequence % mFrames.length);
+                old = mFrames[index];
+                mFrames[index] = frame;
+            }
+            if (old != null) {
+                old.release();
+            }
+        }
+
+        /**
+         * Get a sequence number of the latest frame.
+         * @return sequence number, or -1 if there is no frame
+         */
+        synchronized long getLatestSequence() {
+            return mLatestSequence;
+        }
+
+        /**
+         * Retains the frame that the client sends next.
+         * <p>
+         * If the frame has already been overwritten, the oldest frame in the ring buffer is returned instead
+         * and the skipped frames are counted.
+         * </p>
+         * @param client client
+         * @param latestOnly true to skip to the latest frame
+         * @return retained frame, or null if there is no new frame
+         */
+        MediaFrame acquire(final Client client, final boolean latestOnly) {
+            synchronized (this) {
+                long seq = client.mNextSequence;
+                if (seq > mLatestSequence || mLatestSequence < 0) {
+                    return null;
+                }
+                long oldest = Math.max(0, mLatestSequence - mFrames.length + 1);
+                if (latestOnly) {
+                    seq = mLatestSequence;
+                } else if (seq < oldest) {
+                    client.mDroppedFrames += oldest - seq;
+                    seq = oldest;
+                }
+                MediaFrame frame = mFrames[(int) (seq % mFrames.length)];
+                frame.retain();
+                client.mNextSequence = seq + 1;
+                return frame;
+            }
+        }
+
+        /**
+         * Releases all frames.
+         */
+        void clear() {
+            MediaFrame[] frames;
+            synchronized (this) {
+                frames = mFrames.clone();
+                for (int i = 0; i < mFrames.length; i++) {
+                    mFrames[i] = null;
+                }
+            }
+            for (MediaFrame frame : frames) {
+                if (frame != null) {
+                    frame.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * State of a client.
+     */
+    private enum ClientState {
+        /** Reading a http header. */
+        READING_HEADER,
+        /** Sending frames of a stream. */
+        STREAMING,
+        /** Waiting for a frame to send as a snapshot. */
+        WAITING_SNAPSHOT,
+        /** Sending the last response. */
+        CLOSING
+    }
+
+    /**
+     * Connection of a client.
+     * <p>
+     * This class is accessed only by the server thread.
+     * </p>
+     */
+    private static final class Client {
+        /**
+         * Channel of the connection.
+         */
+        private final SocketChannel mChannel;
+
+        /**
+         * Key of the channel registered with the selector.
+         */
+        private SelectionKey mKey;
+
+        /**
+         * Buffer for reading a http header.
+         */
+        private ByteBuffer mReadBuffer = ByteBuffer.allocate(BUF_SIZE);
+
+        /**
+         * State.
+         */
+        private ClientState mState = ClientState.READING_HEADER;
+
+        /**
+         * Request. null until the http header is read.
+         */
+        private Request mRequest;
+
+        /**
+         * Stream that this client is watching.
+         */
+        private MediaStream mStream;
+
+        /**
+         * Whether this client is counted in the number of clients.
+         */
+        private boolean mCounted;
+
+        /**
+         * Buffers being written.
+         */
+        private ByteBuffer[] mWriteBuffers;
+
+        /**
+         * Frame being written.
+         */
+        private MediaFrame mWritingFrame;
+
+        /**
+         * Sequence number of the frame that this client sends next.
+         */
+        private long mNextSequence;
+
+        /**
+         * Time of the last frame sent (milliseconds).
+         */
+        private long mLastSentTime;
+
+        /**
+         * Whether this client is waiting for the time slice.
+         */
+        private boolean mThrottled;
+
+        /**
+         * Number of frames skipped by this client.
+         */
+        private long mDroppedFrames;
+
+        /**
+         * Constructor.
+         * @param channel channel of the connection
+         */
+        Client(final SocketChannel channel) {
+            mChannel = channel;
+        }
+
+        /**
+         * Checks whether buffers are being written.
+         * @return true if buffers are being written
+         */
+        boolean isWriting() {
+            return mWriteBuffers != null;
+        }
+    }
+
+    /**
+     * Selector loop of a running server.
+     */
+    private final class ServerLoop implements Runnable {
+        /**
+         * Server socket channel.
+         */
+        private final ServerSocketChannel mServerChannel;
+
+        /**
+         * Selector.
+         */
+        private final Selector mSelector;
+
+        /**
+         * Port that the server is listening to.
+         */
+        private final int mLocalPort;
+
+        /**
+         * Base url.
+         */
+        private final String mBaseUrl;
+
+        /**
+         * Path of the default stream.
+         */
+        private final String mPath = UUID.randomUUID().toString();
+
+        /**
+         * Number of frames held by a stream.
+         */
+        private final int mFrameBufferSize;
+
+        /**
+         * Streams. (key: segment)
+         */
+        private final Map<String, MediaStream> mStreams = new ConcurrentHashMap<String, MediaStream>();
+
+        /**
+         * Streams that have new frames.
+         */
+        private final ConcurrentLinkedQueue<MediaStream> mUpdatedStreams = new ConcurrentLinkedQueue<MediaStream>();
+
+        /**
+         * Streams that have been stopped.
+         */
+        private final ConcurrentLinkedQueue<MediaStream> mStoppedStreams = new ConcurrentLinkedQueue<MediaStream>();
+
+        /**
+         * Clients waiting for the time slice.
+         */
+        private final List<Client> mThrottledClients = new ArrayList<Client>();
+
+        /**
+         * Buffer for discarding data sent by clients after the http header.
+         */
+        private final ByteBuffer mDiscardBuffer = ByteBuffer.allocate(BUF_SIZE);
+
+        /**
+         * Number of clients.
+         */
+        private final AtomicInteger mClientCount = new AtomicInteger();
+
+        /**
+         * Stop flag.
+         */
+        private volatile boolean mStopFlag;
+
+        /**
+         * Constructor.
+         * @param serverChannel server socket channel
+         * @param frameBufferSize number of frames held by a stream
+         * @throws IOException if an error occurs while opening a selector.
+         */
+        ServerLoop(final ServerSocketChannel serverChannel, final int frameBufferSize) throws IOException {
+            mServerChannel = serverChannel;
+            mLocalPort = serverChannel.socket().getLocalPort();
+            mBaseUrl = "http://localhost:" + mLocalPort;
+            mFrameBufferSize = frameBufferSize;
+            try {
+                mSelector = Selector.open();
+                serverChannel.register(mSelector, SelectionKey.OP_ACCEPT);
+            } catch (IOException e) {
+                serverChannel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Requests to stop this loop.
+         */
+        void shutdown() {
+            mStopFlag = true;
+            mSelector.wakeup();
+        }
+
+        /**
+         * Inserts a frame into the stream. Called by a producer thread.
+         * @param segment segment of the stream
+         * @param frame frame
+         */
+        void offerFrame(final String segment, final MediaFrame frame) {
+            MediaStream stream = getStream(segment);
+            stream.put(frame);
+            if (mStopFlag) {
+                stream.clear();
+                return;
+            }
+            if (stream.mDirty.compareAndSet(false, true)) {
+                mUpdatedStreams.offer(stream);
+                mSelector.wakeup();
+            }
+        }
+
+        /**
+         * Stops a stream. Called by any thread.
+         * @param segment segment of the stream
+         */
+        void stopStream(final String segment) {
+            MediaStream stream = mStreams.remove(segment);
+            if (stream != null) {
+                mStoppedStreams.offer(stream);
+                mSelector.wakeup();
+            }
+        }
+
+        /**
+         * Get a stream. If not exists, a new stream is created.
+         * @param segment segment of the stream
+         * @return stream
+         */
+        private MediaStream getStream(final String segment) {
+            MediaStream stream = mStreams.get(segment);
+            if (stream == null) {
+                synchronized (mStreams) {
+                    stream = mStreams.get(segment);
+                    if (stream == null) {
+                        stream = new MediaStream(segment, mFrameBufferSize);
+                        mStreams.put(segment, stream);
+                    }
+                }
+            }
+            return stream;
+        }
+
+        @Override
+        public void run() {
+            ServerEventListener listener = mServerEventListener;
+            if (listener != null) {
+                listener.onStart();
+            }
+            try {
+                while (!mStopFlag) {
+                    mSelector.select(nextTimeout());
+                    if (mStopFlag) {
+                        break;
+                    }
+                    handleSelectedKeys();
+                    handleStoppedStreams();
+                    handleUpdatedStreams();
+                    handleThrottledClients();
+                }
+            } catch (IOException e) {
+                mLogger.warning("Error server socket[" + mServerName + "]");
+            } catch (RuntimeException e) {
+                mLogger.log(Level.WARNING, "Error server socket[" + mServerName + "]", e);
+            } finally {
+                close();
+                listener = mServerEventListener;
+                if (listener != null) {
+                    listener.onStop();
+                }
+                mLogger.fine("MixedReplaceMediaServer has been stopped.");
+            }
+        }
+
+        /**
+         * Closes all connections and releases all frames.
+         */
+        private void close() {
+            // Remove this loop from the server, if this loop stopped by an error.
+            synchronized (MixedReplaceMediaServer.this) {
+                if (mLoop == this) {
+                    mLoop = null;
+                }
+            }
+            mStopFlag = true;
+
+            for (SelectionKey key : new ArrayList<SelectionKey>(mSelector.keys())) {
+                Object attachment = key.attachment();
+                if (attachment instanceof Client) {
+                    closeClient((Client) attachment);
+                }
+            }
+            try {
+                mServerChannel.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+            try {
+                mSelector.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+            for (MediaStream stream : mStreams.values()) {
+                stream.clear();
+            }
+            mStreams.clear();
+            mUpdatedStreams.clear();
+            mStoppedStreams.clear();
+            mThrottledClients.clear();
+            mBufferPool.clear();
+        }
+
+        /**
+         * Calculates a timeout of select until the next throttled client can send a frame.
+         * @return timeout (milliseconds). 0 if there is no throttled client.
+         */
+        private long nextTimeout() {
+            if (mThrottledClients.isEmpty()) {
+                return 0;
+            }
+            long now = System.currentTimeMillis();
+            long timeSlice = mTimeSlice;
+            long timeout = Long.MAX_VALUE;
+            for (Client client : mThrottledClients) {
+                timeout = Math.min(timeout, client.mLastSentTime + timeSlice - now);
+            }
+            // 0 means infinite, so wait at least 1 millisecond.
+            return Math.max(1, timeout);
+        }
+
+        /**
+         * Handles the selected keys.
+         */
+        private void handleSelectedKeys() {
+            Iterator<SelectionKey> it = mSelector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                Client client = (Client) key.attachment();
+                try {
+                    if (key.isReadable()) {
+                        read(client);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(client);
+                    }
+                } catch (IOException e) {
+                    closeClient(client);
+                }
+            }
+        }
+
+        /**
+         * Accepts new connections.
+         */
+        private void accept() {
+            while (true) {
+                SocketChannel channel;
+                try {
+                    channel = mServerChannel.accept();
+                } catch (IOException e) {
+                    mLogger.warning("Failed to accept a client.");
+                    return;
+                }
+                if (channel == null) {
+                    return;
+                }
+                mLogger.fine("accept client.");
+                Client client = new Client(channel);
+                try {
+                    channel.configureBlocking(false);
+                    channel.socket().setTcpNoDelay(true);
+                    client.mKey = channel.register(mSelector, SelectionKey.OP_READ, client);
+                } catch (IOException e) {
+                    closeClient(client);
+                }
+            }
+        }
+
+        /**
+         * Reads data from a client.
+         * @param client client
+         * @throws IOException if an error occurs while reading.
+         */
+        private void read(final Client client) throws IOException {
+            if (client.mState != ClientState.READING_HEADER) {
+                // Data after the http header is not used, but the end of stream means disconnection.
+                mDiscardBuffer.clear();
+                if (client.mChannel.read(mDiscardBuffer) < 0) {
+                    closeClient(client);
+                }
+                return;
+            }
+
+            ByteBuffer buf = client.mReadBuffer;
+            int len = client.mChannel.read(buf);
+            if (len < 0) {
+                closeClient(client);
+                return;
+            }
+            if (!hasHeaderEnd(buf) && buf.hasRemaining()) {
+                return;
+            }
+            client.mReadBuffer = null;
+            handleRequest(client, new String(buf.array(), 0, buf.position(), ASCII));
+        }
+
+        /**
+         * Checks whether the buffer contains the end of a http header.
+         * @param buf buffer
+         * @return true if the buffer contains the end of a http header
+         */
+        private boolean hasHeaderEnd(final ByteBuffer buf) {
+            byte[] array = buf.array();
+            int end = buf.position();
+            for (int i = 0; i < end - 1; i++) {
+                if (array[i] == '\n' && (array[i + 1] == '\n'
+                        || (array[i + 1] == '\r' && i + 2 < end && array[i + 2] == '\n'))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Handles a request of a client.
+         * @param client client
+         * @param header http header
+         */
+        private void handleRequest(final Client client, final String header) {
+            Request request = decodeHeader(header);
+            if (request == null) {
+                sendAndClose(client, generateErrorHeader("400 Bad Request"));
+                return;
+            }
+            if (mClientCount.get() >= mMaxClientSize) {
+                sendAndClose(client, generateErrorHeader("503 Service Unavailable"));
+                return;
+            }
+            client.mRequest = request;
+            client.mCounted = true;
+            mClientCount.incrementAndGet();
+
+            MediaStream stream = getStream(request.getSegment());
+            client.mStream = stream;
+
+            byte[] jpeg = null;
+            StreamEventListener listener = mStreamEventListener;
+            if (listener != null) {
+                try {
+                    jpeg = listener.onConnect(request);
+                } catch (RuntimeException e) {
+                    mLogger.log(Level.WARNING, "Error in StreamEventListener.", e);
+                }
+            }
+
+            if (request.isSnapshot()) {
+                if (jpeg != null) {
+                    sendAndClose(client, generateHttpHeaderJPEG(jpeg.length), ByteBuffer.wrap(jpeg));
+                    return;
+                }
+                long latest = stream.getLatestSequence();
+                client.mState = ClientState.WAITING_SNAPSHOT;
+                client.mNextSequence = Math.max(0, latest);
+                stream.mClients.add(client);
+                sendNextFrame(client);
+            } else {
+                // Start from the latest frame, so that a client shows an image immediately.
+                long latest = stream.getLatestSequence();
+                client.mState = ClientState.STREAMING;
+                client.mNextSequence = Math.max(0, latest);
+                stream.mClients.add(client);
+                write(client, new ByteBuffer[] {ByteBuffer.wrap(generateHttpHeaderMJPEG())}, null);
+            }
+        }
+
+        /**
+         * Decode a Http header.
+         * @param header http header
+         * @return request, or null if this http header is invalid.
+         */
+        private Request decodeHeader(final String header) {
+            int lineEnd = header.indexOf('\n');
+            String inLine = lineEnd >= 0 ? header.substring(0, lineEnd) : header;
+
+            StringTokenizer st = new StringTokenizer(inLine);
+            if (!st.hasMoreTokens()) {
+                return null;
+            }
+            String method = st.nextToken();
+            if (!method.toLowerCase(Locale.ENGLISH).equals("get")) {
+                return null;
+            }
+            if (!st.hasMoreTokens()) {
+                return null;
+            }
+
+            String uri = st.nextToken();
+            Map<String, String> params = new HashMap<String, String>();
+            int qmi = uri.indexOf('?');
+            if (qmi >= 0) {
+                decodeParms(uri.substring(qmi + 1), params);
+                uri = decodePercent(uri.substring(0, qmi));
+            } else {
+                uri = decodePercent(uri);
+            }
+            if (uri == null) {
+                return null;
+            }
+
+            String root = "/" + mPath;
+            String segment;
+            if (uri.equals(root) || uri.equals(root + "/")) {
+                segment = DEFAULT_SEGMENT;
+            } else if (uri.startsWith(root + "/")) {
+                segment = uri.substring(root.length() + 1);
+            } else {
+                return null;
+            }
+            return new Request(mBaseUrl, uri, segment, params);
+        }
+
+        /**
+         * Decode of uri param.
+         * @param parms uri
+         * @param p parameters
+         */
+        private void decodeParms(final String parms, final Map<String, String> p) {
+            StringTokenizer st = new StringTokenizer(parms, "&");
+            while (st.hasMoreTokens()) {
+                String e = st.nextToken();
+                int sep = e.indexOf('=');
+                String key;
+                String value;
+                if (sep >= 0) {
+                    key = decodePercent(e.substring(0, sep));
+                    value = decodePercent(e.substring(sep + 1));
+                } else {
+                    key = decodePercent(e);
+                    value = "";
+                }
+                if (key != null) {
+                    p.put(key.trim(), value);
+                }
+            }
+        }
+
+        /**
+         * Decode of uri.
+         * @param str uri
+         * @return The decoded URI, or null if the uri is invalid
+         */
+        private String decodePercent(final String str) {
+            try {
+                return URLDecoder.decode(str, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                return null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Sends the last response and closes the connection.
+         * @param client client
+         * @param header http header
+         * @param buffers body of the response
+         */
+        private void sendAndClose(final Client client, final byte[] header, final ByteBuffer... buffers) {
+            ByteBuffer[] all = new ByteBuffer[buffers.length + 1];
+            all[0] = ByteBuffer.wrap(header);
+            System.arraycopy(buffers, 0, all, 1, buffers.length);
+            client.mState = ClientState.CLOSING;
+            write(client, all, null);
+        }
+
+        /**
+         * Sends the next frame to the client, if the client is ready.
+         * @param client client
+         */
+        private void sendNextFrame(final Client client) {
+            if (client.isWriting() || client.mThrottled) {
+                return;
+            }
+
+            if (client.mState == ClientState.WAITING_SNAPSHOT) {
+                MediaFrame frame = client.mStream.acquire(client, true);
+                if (frame != null) {
+                    client.mState = ClientState.CLOSING;
+                    write(client, new ByteBuffer[] {
+                            ByteBuffer.wrap(generateHttpHeaderJPEG(frame.getLength())),
+                            frame.getData()
+                    }, frame);
+                }
+                return;
+            }
+
+            if (client.mState != ClientState.STREAMING) {
+                return;
+            }
+
+            long timeSlice = mTimeSlice;
+            if (timeSlice > 0) {
+                long now = System.currentTimeMillis();
+                if (now - client.mLastSentTime < timeSlice) {
+                    client.mThrottled = true;
+                    mThrottledClients.add(client);
+                    return;
+                }
+            }
+
+            long dropped = client.mDroppedFrames;
+            MediaFrame frame = client.mStream.acquire(client, timeSlice > 0);
+            if (frame == null) {
+                return;
+            }
+            if (client.mDroppedFrames != dropped) {
+                mDroppedFrameCount.addAndGet(client.mDroppedFrames - dropped);
+            }
+            client.mLastSentTime = System.currentTimeMillis();
+            write(client, new ByteBuffer[] {
+                    frame.getPartHeader(),
+                    frame.getData(),
+                    PART_TRAILER.duplicate()
+            }, frame);
+        }
+
+        /**
+         * Starts writing buffers to a client.
+         * @param client client
+         * @param buffers buffers
+         * @param frame frame included in buffers, or null
+         */
+        private void write(final Client client, final ByteBuffer[] buffers, final MediaFrame frame) {
+            client.mWriteBuffers = buffers;
+            client.mWritingFrame = frame;
+            try {
+                flush(client);
+            } catch (IOException e) {
+                closeClient(client);
+            }
+        }
+
+        /**
+         * Writes the remaining buffers to a client.
+         * <p>
+         * If the socket buffer is full, waits for the channel to be writable.
+         * </p>
+         * @param client client
+         * @throws IOException if an error occurs while writing.
+         */
+        private void flush(final Client client) throws IOException {
+            if (client.mKey == null) {
+                return;
+            }
+            ByteBuffer[] buffers = client.mWriteBuffers;
+            if (buffers == null) {
+                client.mKey.interestOps(SelectionKey.OP_READ);
+                return;
+            }
+
+            client.mChannel.write(buffers);
+            if (buffers[buffers.length - 1].hasRemaining()) {
+                client.mKey.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+
+            client.mWriteBuffers = null;
+            if (client.mWritingFrame != null) {
+                client.mWritingFrame.release();
+                client.mWritingFrame = null;
+            }
+            client.mKey.interestOps(SelectionKey.OP_READ);
+
+            if (client.mState == ClientState.CLOSING) {
+                closeClient(client);
+            } else {
+                sendNextFrame(client);
+            }
+        }
+
+        /**
+         * Delivers frames to the clients of updated streams.
+         */
+        private void handleUpdatedStreams() {
+            MediaStream stream;
+            while ((stream = mUpdatedStreams.poll()) != null) {
+                stream.mDirty.set(false);
+                // Copy the list, because a client may be removed while sending.
+                for (Client client : new ArrayList<Client>(stream.mClients)) {
+                    sendNextFrame(client);
+                }
+            }
+        }
+
+        /**
+         * Closes the clients of stopped streams.
+         */
+        private void handleStoppedStreams() {
+            MediaStream stream;
+            while ((stream = mStoppedStreams.poll()) != null) {
+                for (Client client : new ArrayList<Client>(stream.mClients)) {
+                    closeClient(client);
+                }
+                stream.clear();
+            }
+        }
+
+        /**
+         * Sends frames to the clients whose time slice has passed.
+         */
+        private void handleThrottledClients() {
+            if (mThrottledClients.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            long timeSlice = mTimeSlice;
+            List<Client> ready = null;
+            for (Iterator<Client> it = mThrottledClients.iterator(); it.hasNext(); ) {
+                Client client = it.next();
+                if (now - client.mLastSentTime >= timeSlice) {
+                    it.remove();
+                    client.mThrottled = false;
+                    if (ready == null) {
+                        ready = new ArrayList<Client>();
+                    }
+                    ready.add(client);
+                }
+            }
+            if (ready != null) {
+                for (Client client : ready) {
+                    sendNextFrame(client);
+                }
+            }
+        }
+
+        /**
+         * Closes a connection of a client.
+         * @param client client
+         */
+        private void closeClient(final Client client) {
+            if (!client.mChannel.isOpen() && client.mKey == null) {
+                return;
+            }
+            mLogger.fine("socket close.");
+            if (client.mKey != null) {
+                client.mKey.cancel();
+                client.mKey = null;
+            }
+            try {
+                client.mChannel.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+            if (client.mWritingFrame != null) {
+                client.mWritingFrame.release();
+                client.mWritingFrame = null;
+            }
+            client.mWriteBuffers = null;
+            if (client.mStream != null) {
+                client.mStream.mClients.remove(client);
+            }
+            if (client.mThrottled) {
+                client.mThrottled = false;
+                mThrottledClients.remove(client);
+            }
+            if (client.mCounted) {
+                client.mCounted = false;
+                mClientCount.decrementAndGet();
+                StreamEventListener listener = mStreamEventListener;
+                if (listener != null) {
+                    try {
+                        listener.onDisconnect(client.mRequest);
+                    } catch (RuntimeException e) {
+                        mLogger.log(Level.WARNING, "Error in StreamEventListener.", e);
+                    }
+                }
+            }
+        }
+    }
+}
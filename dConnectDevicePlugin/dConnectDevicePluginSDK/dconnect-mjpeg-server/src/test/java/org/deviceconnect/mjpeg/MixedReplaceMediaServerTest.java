@@ -0,0 +1,223 @@
+/*
+ MixedReplaceMediaServerTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.mjpeg;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Test of the responses of {@link MixedReplaceMediaServer}.
+ * <p>
+ * The multipart stream must be the same bytes as the server of the Host plugin used to send.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class MixedReplaceMediaServerTest {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final String BOUNDARY = "test-boundary";
+
+    private static final String SERVER_NAME = "Test Server";
+
+    /** Timeout of reading a response in milliseconds. */
+    private static final int READ_TIMEOUT = 10000;
+
+    /** Http header of the stream, which is the same as that of the Host plugin. */
+    private static final String STREAM_HEADER = "HTTP/1.0 200 OK\r\n"
+            + "Server: " + SERVER_NAME + "\r\n"
+            + "Connection: close\r\n"
+            + "Max-Age: 0\r\n"
+            + "Expires: 0\r\n"
+            + "Cache-Control: no-store, no-cache, must-revalidate, pre-check=0, post-check=0, max-age=0\r\n"
+            + "Pragma: no-cache\r\n"
+            + "Access-Control-Allow-Origin: *\r\n"
+            + "Content-Type: multipart/x-mixed-replace; boundary=" + BOUNDARY + "\r\n"
+            + "\r\n";
+
+    private MixedReplaceMediaServer mServer;
+
+    private URL mUrl;
+
+    @Before
+    public void setUp() {
+        mServer = new MixedReplaceMediaServer();
+        mServer.setBoundary(BOUNDARY);
+        mServer.setServerName(SERVER_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void stream_headerAndFirstPart() throws IOException {
+        start();
+        byte[] media = createMedia(100);
+        mServer.offerMedia(media);
+
+        byte[] expected = concat(STREAM_HEADER.getBytes(ASCII), createPart(media));
+        byte[] actual = request("GET " + mUrl.getPath() + " HTTP/1.1\r\nHost: localhost\r\n\r\n", expected.length);
+
+        assertEquals(new String(expected, ASCII), new String(actual, ASCII));
+    }
+
+    @Test
+    public void stream_secondPart() throws IOException {
+        start();
+        byte[] media1 = createMedia(100);
+        byte[] media2 = createMedia(50);
+        mServer.offerMedia(media1);
+
+        byte[] expected = concat(STREAM_HEADER.getBytes(ASCII), concat(createPart(media1), createPart(media2)));
+        Socket socket = connect("GET " + mUrl.getPath() + " HTTP/1.1\r\n\r\n");
+        try {
+            InputStream in = socket.getInputStream();
+            byte[] first = readFully(in, STREAM_HEADER.length() + createPart(media1).length);
+            mServer.offerMedia(media2);
+            byte[] second = readFully(in, createPart(media2).length);
+            assertEquals(new String(expected, ASCII), new String(concat(first, second), ASCII));
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void stream_withoutAccessControlAllowOrigin() throws IOException {
+        mServer.setAccessControlAllowOrigin(null);
+        start();
+        byte[] media = createMedia(10);
+        mServer.offerMedia(media);
+
+        String header = STREAM_HEADER.replace("Access-Control-Allow-Origin: *\r\n", "");
+        byte[] expected = concat(header.getBytes(ASCII), createPart(media));
+        byte[] actual = request("GET " + mUrl.getPath() + " HTTP/1.1\r\n\r\n", expected.length);
+
+        assertEquals(new String(expected, ASCII), new String(actual, ASCII));
+    }
+
+    @Test
+    public void error_badRequest() throws IOException {
+        start();
+
+        String response = new String(request("POST " + mUrl.getPath() + " HTTP/1.1\r\n\r\n", -1), ASCII);
+
+        assertEquals("HTTP/1.0 400 Bad Request\r\n"
+                + "Server: " + SERVER_NAME + "\r\n"
+                + "Access-Control-Allow-Origin: *\r\n"
+                + "Connection: close\r\n"
+                + "\r\n", response);
+    }
+
+    @Test
+    public void error_serviceUnavailable() throws IOException {
+        mServer.setMaxClientSize(1);
+        mServer.setAccessControlAllowOrigin("http://localhost:4035");
+        start();
+        mServer.offerMedia(createMedia(10));
+
+        Socket first = connect("GET " + mUrl.getPath() + " HTTP/1.1\r\n\r\n");
+        try {
+            // Wait until the first client is accepted.
+            readFully(first.getInputStream(), 1);
+            String response = new String(request("GET " + mUrl.getPath() + " HTTP/1.1\r\n\r\n", -1), ASCII);
+            assertEquals("HTTP/1.0 503 Service Unavailable\r\n"
+                    + "Server: " + SERVER_NAME + "\r\n"
+                    + "Access-Control-Allow-Origin: http://localhost:4035\r\n"
+                    + "Connection: close\r\n"
+                    + "\r\n", response);
+        } finally {
+            first.close();
+        }
+    }
+
+    private void start() throws IOException {
+        String url = mServer.start();
+        assertNotNull(url);
+        mUrl = new URL(url);
+    }
+
+    /**
+     * Sends a request and reads the response.
+     * @param request http request
+     * @param length length to read, or -1 to read until the connection is closed
+     * @return response
+     */
+    private byte[] request(final String request, final int length) throws IOException {
+        Socket socket = connect(request);
+        try {
+            return readFully(socket.getInputStream(), length);
+        } finally {
+            socket.close();
+        }
+    }
+
+    private Socket connect(final String request) throws IOException {
+        Socket socket = new Socket("localhost", mUrl.getPort());
+        socket.setSoTimeout(READ_TIMEOUT);
+        OutputStream out = socket.getOutputStream();
+        out.write(request.getBytes(ASCII));
+        out.flush();
+        return socket;
+    }
+
+    private static byte[] readFully(final InputStream in, final int length) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[1024];
+        while (length < 0 || out.size() < length) {
+            int max = length < 0 ? buf.length : Math.min(buf.length, length - out.size());
+            int len = in.read(buf, 0, max);
+            if (len < 0) {
+                break;
+            }
+            out.write(buf, 0, len);
+        }
+        if (length >= 0) {
+            assertEquals("length of response", length, out.size());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a part in the same format as the Host plugin.
+     */
+    private static byte[] createPart(final byte[] media) {
+        String header = "--" + BOUNDARY + "\r\n"
+                + "Content-Type: image/jpg\r\n"
+                + "Content-Length: " + media.length + "\r\n"
+                + "\r\n";
+        return concat(concat(header.getBytes(ASCII), media), "\r\n\r\n".getBytes(ASCII));
+    }
+
+    private static byte[] createMedia(final int length) {
+        byte[] media = new byte[length];
+        for (int i = 0; i < length; i++) {
+            media[i] = (byte) ('a' + i % 26);
+        }
+        return media;
+    }
+
+    private static byte[] concat(final byte[] a, final byte[] b) {
+        byte[] result = new byte[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ IntegratedPowerWindow.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Map;
+
+/**
+ * 積算電力量取得APIが要求する30分コマの範囲.
+ * <p>
+ * 日は1970年1月1日(ローカル時刻)からの日数、コマは0時0分を0とした30分単位の番号で表す。
+ * 範囲は指定日時を含むコマで終わる48コマで、前日にまたがる場合がある。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class IntegratedPowerWindow {
+    /** 1日のコマ数. */
+    static final int SLOTS_PER_DAY = 48;
+    /** 積算履歴収集日に指定できる最大の日数. */
+    static final int MAX_DAYS_BEFORE = 99;
+    /** 1日のミリ秒. */
+    private static final long DAY_MILLISECOND = 24 * 60 * 60 * 1000;
+
+    /** 範囲の最初のコマ(通算). */
+    private final long mFirstSlot;
+    /** 範囲の最後のコマ(通算). */
+    private final long mLastSlot;
+    /** 現在日時のコマ(通算). */
+    private final long mNowSlot;
+    /** 現在の日. */
+    private final int mToday;
+
+    /**
+     * コンストラクタ.
+     * @param date 取得する日時.
+     * @param count コマ数（24 or 48）. 24の場合は1時間分の2コマを含むように範囲を決める.
+     * @param now 現在日時.
+     */
+    IntegratedPowerWindow(final Calendar date, final int count, final Calendar now) {
+        int slot = date.get(Calendar.HOUR_OF_DAY) * 2;
+        if (count == 48) {
+            slot += date.get(Calendar.MINUTE) / 30;
+        } else {
+            slot += 1;
+        }
+        mLastSlot = (long) toDay(date) * SLOTS_PER_DAY + slot;
+        mFirstSlot = mLastSlot - SLOTS_PER_DAY + 1;
+        mToday = toDay(now);
+        mNowSlot = (long) mToday * SLOTS_PER_DAY + now.get(Calendar.HOUR_OF_DAY) * 2 + now.get(Calendar.MINUTE) / 30;
+    }
+
+    /**
+     * 日時を日に変換する.
+     * @param calendar 日時.
+     * @return 1970年1月1日からの日数.
+     */
+    static int toDay(final Calendar calendar) {
+        long local = calendar.getTimeInMillis() + calendar.get(Calendar.ZONE_OFFSET) + calendar.get(Calendar.DST_OFFSET);
+        return (int) Math.floor((double) local / DAY_MILLISECOND);
+    }
+
+    /**
+     * 範囲に含まれる日を取得する.
+     * @return 日の配列(古い順).
+     */
+    int[] getDays() {
+        int first = (int) (mFirstSlot / SLOTS_PER_DAY);
+        int last = (int) (mLastSlot / SLOTS_PER_DAY);
+        int[] days = new int[last - first + 1];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = first + i;
+        }
+        return days;
+    }
+
+    /**
+     * 現在の日を取得する.
+     * @return 現在の日.
+     */
+    int getToday() {
+        return mToday;
+    }
+
+    /**
+     * 積算履歴収集日に指定する、今日から何日前かを取得する.
+     * @param day 日.
+     * @return 今日から何日前か.
+     */
+    int getDaysBefore(final int day) {
+        return mToday - day;
+    }
+
+    /**
+     * 指定した日をスマートメーターから取得する必要があるかを判定する.
+     * <p>
+     * 範囲内で既に計測済みのはずのコマがキャッシュに無い場合に取得が必要とする。
+     * まだ計測されていない未来のコマや、積算履歴収集日に指定できない日は取得しない。
+     * </p>
+     * @param day 日.
+     * @param cached キャッシュされている値. 値が無いコマはNaN.
+     * @return 取得が必要な場合はtrue、それ以外はfalse
+     */
+    boolean needsFetch(final int day, final double[] cached) {
+        int daysBefore = getDaysBefore(day);
+        if (daysBefore < 0 || daysBefore > MAX_DAYS_BEFORE) {
+            return false;
+        }
+        long base = (long) day * SLOTS_PER_DAY;
+        long from = Math.max(mFirstSlot, base);
+        long to = Math.min(Math.min(mLastSlot, mNowSlot), base + SLOTS_PER_DAY - 1);
+        for (long slot = from; slot <= to; slot++) {
+            if (Double.isNaN(cached[(int) (slot - base)])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * スマートメーターから取得した値のうち、キャッシュしてよい値を取り出す.
+     * <p>
+     * 過去の日の値は確定しているので全てキャッシュする。今日の値は計測済みのコマの値だけをキャッシュし、
+     * 未計測のコマはNaNにする。
+     * </p>
+     * @param day 日.
+     * @param values スマートメーターから取得した値.
+     * @param noData 未計測を表す値.
+     * @return キャッシュする値. キャッシュしないコマはNaN.
+     */
+    double[] getFixedValues(final int day, final double[] values, final double noData) {
+        double[] fixed = Arrays.copyOf(values, SLOTS_PER_DAY);
+        if (day < mToday) {
+            return fixed;
+        }
+        long base = (long) day * SLOTS_PER_DAY;
+        for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+            if (base + slot > mNowSlot || fixed[slot] == noData) {
+                fixed[slot] = Double.NaN;
+            }
+        }
+        return fixed;
+    }
+
+    /**
+     * 範囲内の値を古い順に取り出す.
+     * @param values 日ごとの値.
+     * @param noData 値が無いコマに設定する値.
+     * @return 48コマ分の値.
+     */
+    double[] collect(final Map<Integer, double[]> values, final double noData) {
+        double[] result = new double[SLOTS_PER_DAY];
+        for (int i = 0; i < result.length; i++) {
+            long slot = mFirstSlot + i;
+            double[] day = values.get((int) (slot / SLOTS_PER_DAY));
+            double value = day != null ? day[(int) (slot % SLOTS_PER_DAY)] : Double.NaN;
+            result[i] = Double.isNaN(value) ? noData : value;
+        }
+        return result;
+    }
+}
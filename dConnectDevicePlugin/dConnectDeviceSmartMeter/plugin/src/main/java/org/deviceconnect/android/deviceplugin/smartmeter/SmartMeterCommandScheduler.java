@@ -0,0 +1,217 @@
+/*
+ SmartMeterCommandScheduler.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * スマートメーターへのコマンドを順番に実行するスケジューラ.
+ * <p>
+ * Wi-SUNドングルは1つずつしかコマンドを処理できないため、実行中のコマンドがある間に
+ * 要求されたコマンドはキューに格納し、優先度の高い順(同じ優先度の場合は要求順)に実行する。
+ * 応答が返ってこない場合はタイムアウトとしてコマンドをキャンセルし、次のコマンドを実行する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class SmartMeterCommandScheduler {
+    /** 優先度: 高. */
+    static final int PRIORITY_HIGH = 0;
+    /** 優先度: 通常. */
+    static final int PRIORITY_NORMAL = 1;
+    /** 優先度: 低. */
+    static final int PRIORITY_LOW = 2;
+
+    /**
+     * コマンドをキャンセルした理由.
+     */
+    enum CancelReason {
+        /** スマートメーターから応答が無かった. */
+        TIMEOUT,
+        /** ドングルのクローズやセッションの終了によって破棄された. */
+        CLEARED
+    }
+
+    /** コマンドの実行とタイムアウト監視を行うスレッド. */
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    /** 実行待ちのコマンド. */
+    private final PriorityQueue<Command> mQueue = new PriorityQueue<>(11, new Comparator<Command>() {
+        @Override
+        public int compare(final Command lhs, final Command rhs) {
+            if (lhs.mPriority != rhs.mPriority) {
+                return lhs.mPriority < rhs.mPriority ? -1 : 1;
+            }
+            return lhs.mSequence < rhs.mSequence ? -1 : (lhs.mSequence == rhs.mSequence ? 0 : 1);
+        }
+    });
+
+    /** 実行中のコマンド. */
+    private Command mCurrent;
+
+    /** 実行中のコマンドのタイムアウト. */
+    private ScheduledFuture<?> mTimeoutFuture;
+
+    /** 要求順を判定するための通し番号. */
+    private long mSequence;
+
+    /**
+     * コマンドを追加する.
+     * <p>
+     * 実行中のコマンドが無い場合は、すぐに実行する。
+     * </p>
+     * @param command コマンド.
+     */
+    synchronized void offer(final Command command) {
+        command.mSequence = mSequence++;
+        mQueue.add(command);
+        if (mCurrent == null) {
+            startNext();
+        }
+    }
+
+    /**
+     * 実行待ちのコマンド数を取得する.
+     * @return コマンド数.
+     */
+    synchronized int getPendingCount() {
+        return mQueue.size();
+    }
+
+    /**
+     * 実行中のコマンドを完了して、次のコマンドを実行する.
+     */
+    synchronized void complete() {
+        if (mCurrent == null) {
+            return;
+        }
+        cancelTimeout();
+        mCurrent = null;
+        startNext();
+    }
+
+    /**
+     * 実行中及び実行待ちのコマンドを全てキャンセルする.
+     */
+    void clear() {
+        List<Command> commands = new ArrayList<>();
+        synchronized (this) {
+            if (mCurrent != null) {
+                cancelTimeout();
+                commands.add(mCurrent);
+                mCurrent = null;
+            }
+            while (!mQueue.isEmpty()) {
+                commands.add(mQueue.poll());
+            }
+        }
+        for (Command command : commands) {
+            command.cancel(CancelReason.CLEARED);
+        }
+    }
+
+    /**
+     * スケジューラを終了する. 残っているコマンドはキャンセルする.
+     */
+    void shutdown() {
+        clear();
+        mExecutor.shutdownNow();
+    }
+
+    private void startNext() {
+        final Command command = mQueue.poll();
+        mCurrent = command;
+        if (command == null) {
+            return;
+        }
+        try {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (SmartMeterCommandScheduler.this) {
+                        if (mCurrent != command) {
+                            return;
+                        }
+                    }
+                    command.execute();
+                }
+            });
+            mTimeoutFuture = mExecutor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    onTimeout(command);
+                }
+            }, command.mTimeout, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            mCurrent = null;
+            mQueue.clear();
+        }
+    }
+
+    private void onTimeout(final Command command) {
+        synchronized (this) {
+            if (mCurrent != command) {
+                return;
+            }
+            mTimeoutFuture = null;
+            mCurrent = null;
+            startNext();
+        }
+        // 次のコマンドは同じスレッドで実行されるので、キャンセル処理が先に終わる.
+        command.cancel(CancelReason.TIMEOUT);
+    }
+
+    private void cancelTimeout() {
+        if (mTimeoutFuture != null) {
+            mTimeoutFuture.cancel(false);
+            mTimeoutFuture = null;
+        }
+    }
+
+    /**
+     * スケジューラで実行するコマンド.
+     */
+    abstract static class Command {
+        /** 優先度. */
+        private final int mPriority;
+        /** タイムアウト時間(ミリ秒). */
+        private final long mTimeout;
+        /** 要求順. */
+        private long mSequence;
+
+        /**
+         * コンストラクタ.
+         * @param priority 優先度.
+         * @param timeout タイムアウト時間(ミリ秒).
+         */
+        Command(final int priority, final long timeout) {
+            mPriority = priority;
+            mTimeout = timeout;
+        }
+
+        /**
+         * コマンドを実行する.
+         * <p>
+         * 処理が終わったら{@link SmartMeterCommandScheduler#complete()}を呼び出すこと。
+         * </p>
+         */
+        abstract void execute();
+
+        /**
+         * タイムアウトまたは破棄された時に呼び出される.
+         * @param reason キャンセルした理由.
+         */
+        abstract void cancel(CancelReason reason);
+    }
+}
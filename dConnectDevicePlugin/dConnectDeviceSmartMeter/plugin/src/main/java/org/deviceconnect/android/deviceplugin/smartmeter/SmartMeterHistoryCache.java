@@ -0,0 +1,173 @@
+/*
+ SmartMeterHistoryCache.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.provider.BaseColumns;
+
+import java.util.Arrays;
+
+/**
+ * スマートメーターから取得した30分毎の積算電力量を格納するDBヘルパークラス.
+ * <p>
+ * 同じ日の積算電力量を何度もWi-SUN経由で取得しないように、スマートメーターのMACアドレス、
+ * 方向、日ごとにキャッシュする。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class SmartMeterHistoryCache {
+    /** Define the name of the database. */
+    private static final String DB_NAME = "smartmeter_history.db";
+    /** Define the version of the database. */
+    private static final int DB_VERSION = 1;
+    /** 積算電力量を格納するテーブル名. */
+    private static final String TBL_NAME = "integrated_power_tbl";
+    /** スマートメーターのMACアドレスを格納するカラム名. */
+    private static final String COL_MAC_ADDRESS = "mac_address";
+    /** 方向(normal or reverse)を格納するカラム名. */
+    private static final String COL_POWER_FLOW = "power_flow";
+    /** 日(1970年1月1日からの日数)を格納するカラム名. */
+    private static final String COL_DAY = "day";
+    /** コマ(0〜47)を格納するカラム名. */
+    private static final String COL_SLOT = "slot";
+    /** 積算電力量(kWh)を格納するカラム名. */
+    private static final String COL_VALUE = "value";
+
+    /** DB管理ヘルパー. */
+    private DBHelper mDBHelper;
+
+    /**
+     * コンストラクター.
+     * @param context context.
+     */
+    SmartMeterHistoryCache(final Context context) {
+        mDBHelper = new DBHelper(context);
+    }
+
+    /**
+     * 指定した日の積算電力量を取得.
+     * @param macAddress スマートメーターのMACアドレス.
+     * @param powerFlow 方向.
+     * @param day 日.
+     * @return 48コマ分の積算電力量. キャッシュされていないコマはNaN.
+     */
+    synchronized double[] getDay(final String macAddress, final String powerFlow, final int day) {
+        double[] values = new double[IntegratedPowerWindow.SLOTS_PER_DAY];
+        Arrays.fill(values, Double.NaN);
+
+        String sql = "SELECT " + COL_SLOT + ", " + COL_VALUE + " FROM " + TBL_NAME
+                + " WHERE " + COL_MAC_ADDRESS + "=? AND " + COL_POWER_FLOW + "=? AND " + COL_DAY + "=?";
+        String[] selectionArgs = {
+                macAddress, powerFlow, String.valueOf(day)
+        };
+
+        SQLiteDatabase db = mDBHelper.getReadableDatabase();
+        Cursor cursor = db.rawQuery(sql, selectionArgs);
+        try {
+            boolean next = cursor.moveToFirst();
+            while (next) {
+                int slot = cursor.getInt(0);
+                if (slot >= 0 && slot < values.length) {
+                    values[slot] = cursor.getDouble(1);
+                }
+                next = cursor.moveToNext();
+            }
+            return values;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * 指定した日の積算電力量を格納.
+     * @param macAddress スマートメーターのMACアドレス.
+     * @param powerFlow 方向.
+     * @param day 日.
+     * @param values 48コマ分の積算電力量. NaNのコマは格納しない.
+     */
+    synchronized void putDay(final String macAddress, final String powerFlow, final int day, final double[] values) {
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        try {
+            db.beginTransaction();
+            try {
+                for (int slot = 0; slot < values.length; slot++) {
+                    if (Double.isNaN(values[slot])) {
+                        continue;
+                    }
+                    ContentValues contentValues = new ContentValues();
+                    contentValues.put(COL_MAC_ADDRESS, macAddress);
+                    contentValues.put(COL_POWER_FLOW, powerFlow);
+                    contentValues.put(COL_DAY, day);
+                    contentValues.put(COL_SLOT, slot);
+                    contentValues.put(COL_VALUE, values[slot]);
+                    db.insertWithOnConflict(TBL_NAME, null, contentValues, SQLiteDatabase.CONFLICT_REPLACE);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * 指定した日より古い積算電力量を削除.
+     * @param day 日.
+     * @return 削除された個数
+     */
+    synchronized int removeBefore(final int day) {
+        String whereClause = COL_DAY + "<?";
+        String[] whereArgs = {
+                String.valueOf(day)
+        };
+
+        SQLiteDatabase db = mDBHelper.getWritableDatabase();
+        try {
+            return db.delete(TBL_NAME, whereClause, whereArgs);
+        } finally {
+            db.close();
+        }
+    }
+
+    /**
+     * DBHelper.
+     */
+    private static class DBHelper extends SQLiteOpenHelper {
+        DBHelper(Context context) {
+            super(context, DB_NAME, null, DB_VERSION);
+        }
+
+        @Override
+        public void onCreate(final SQLiteDatabase db) {
+            createDB(db);
+        }
+
+        @Override
+        public void onUpgrade(final SQLiteDatabase db, final int oldVersion, final int newVersion) {
+            db.execSQL("DROP TABLE IF EXISTS " + TBL_NAME);
+            createDB(db);
+        }
+
+        private void createDB(final SQLiteDatabase db) {
+            String sql = "CREATE TABLE " + TBL_NAME + " ("
+                    + BaseColumns._ID + " INTEGER PRIMARY KEY, "
+                    + COL_MAC_ADDRESS + " TEXT NOT NULL, "
+                    + COL_POWER_FLOW + " TEXT NOT NULL, "
+                    + COL_DAY + " INTEGER NOT NULL, "
+                    + COL_SLOT + " INTEGER NOT NULL, "
+                    + COL_VALUE + " REAL NOT NULL, "
+                    + "UNIQUE (" + COL_MAC_ADDRESS + ", " + COL_POWER_FLOW + ", " + COL_DAY + ", " + COL_SLOT + ")"
+                    + ");";
+            db.execSQL(sql);
+        }
+    }
+}
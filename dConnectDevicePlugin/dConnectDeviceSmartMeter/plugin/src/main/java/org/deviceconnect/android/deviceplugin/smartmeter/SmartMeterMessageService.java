@@ -40,8 +40,13 @@ import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -82,6 +87,16 @@ public class SmartMeterMessageService extends DConnectMessageService {
     private Intent mPairingResponse;
     /** ペアリング先ServiceId. */
     private String mPairngServiceId;
+    /** 積算電力量のキャッシュ. */
+    private SmartMeterHistoryCache mHistoryCache;
+    /** スマートメーターへのコマンドのスケジューラ. */
+    private final SmartMeterCommandScheduler mCommandScheduler = new SmartMeterCommandScheduler();
+    /** コマンドのタイムアウト時間(ミリ秒). */
+    private static final long COMMAND_TIMEOUT = 20 * 1000;
+    /** 積算電力量取得のタイムアウト時間(ミリ秒). 最大で2日分の取得を行うため長めに設定する. */
+    private static final long DAILY_DATA_TIMEOUT = 60 * 1000;
+    /** 積算電力量のキャッシュを保持する日数. */
+    private static final int HISTORY_RETENTION_DAYS = 100;
 
     @Override
     public void onCreate() {
@@ -92,6 +107,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
 
         mPrefUtil = new PrefUtil(this);
         mSmartMeterDBHelper = new SmartMeterDBHelper(getApplicationContext());
+        mHistoryCache = new SmartMeterHistoryCache(getApplicationContext());
 
         // USBのEvent用のBroadcast Receiverを設定.
         IntentFilter mIntentFilter = new IntentFilter();
@@ -106,6 +122,12 @@ public class SmartMeterMessageService extends DConnectMessageService {
         startSearchUSBSerialDeviceThread();
     }
 
+    @Override
+    public void onDestroy() {
+        mCommandScheduler.shutdown();
+        super.onDestroy();
+    }
+
     @Override
     protected SystemProfile getSystemProfile() {
         return new SmartMeterSystemProfile();
@@ -527,6 +549,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
         }
 
         // 切断コマンド送信.
+        mCommandScheduler.clear();
         mPairingResponse = response;
         mPairngServiceId = device.getServiceId();
         ExecuteProcess(BP35C2.Command.TERMINATE, null);
@@ -536,6 +559,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * USBシリアルデバイスクローズ.
      */
     private void closeDevice() {
+        mCommandScheduler.clear();
         Iterator<UsbSerialDevice> index = mUsbSerialDevices.iterator();
 
         while (index.hasNext()) {
@@ -792,6 +816,66 @@ public class SmartMeterMessageService extends DConnectMessageService {
         sendBroadcast(intent);
     }
 
+    /**
+     * スマートメーターからの応答が無かったことを要求元に返却する.
+     * @param response レスポンス設定用Intent.
+     */
+    private void sendTimeoutError(final Intent response) {
+        MessageUtils.setTimeoutError(response, "No response from smartmeter.");
+        sendResponse(response);
+    }
+
+    /**
+     * コマンドがキャンセルされたことを、キャンセルの理由に応じたエラーで要求元に返却する.
+     * @param response レスポンス設定用Intent.
+     * @param reason キャンセルの理由.
+     */
+    private void sendCancelError(final Intent response, final SmartMeterCommandScheduler.CancelReason reason) {
+        if (reason == SmartMeterCommandScheduler.CancelReason.TIMEOUT) {
+            sendTimeoutError(response);
+        } else {
+            MessageUtils.setIllegalDeviceStateError(response, "Smartmeter is disconnected.");
+            sendResponse(response);
+        }
+    }
+
+    /**
+     * スマートメーターから想定外の応答があったことを要求元に返却して、次のコマンドを実行する.
+     * @param response レスポンス設定用Intent.
+     * @param esv 応答のESV.
+     */
+    private void sendUnexpectedResponseError(final Intent response, final int esv) {
+        MessageUtils.setIllegalDeviceStateError(response,
+                String.format(Locale.ENGLISH, "Unexpected response from smartmeter. (ESV: 0x%02X)", esv));
+        sendResponse(response);
+        mCommandScheduler.complete();
+    }
+
+    /**
+     * 実行中の要求に対する応答ではないパケットのESVかを判定する.
+     * <p>
+     * スマートメーターは定時積算電力量などを自発的に通知するため、応答待ちの間に受信することがある。
+     * また、タイムアウトした要求への応答が遅れて届いた場合はTIDが一致しないため、{@link ENLUtil#checkEsv(byte[])}は0xFFを返す。
+     * これらは無視して応答を待ち続ける。
+     * </p>
+     * @param esv ESV.
+     * @return 実行中の要求に対する応答ではない場合はtrue、それ以外はfalse
+     */
+    private static boolean isUnsolicited(final int esv) {
+        return esv == 0xFF || esv == ENLUtil.ESV_INF || esv == ENLUtil.ESV_INFC;
+    }
+
+    /**
+     * ECHONET Lite パケットをスマートメーターへ送信する.
+     * @param command 生成要求コマンド.
+     * @param data パラメータデータ.
+     */
+    private void sendEchonetLitePacket(final String command, final byte[] data) {
+        byte[] enlCmd = mENLUtil.makeEchonetLitePacket(command, data);
+        mExecCommand = BP35C2.Command.SEND_TO;
+        SendMessage(BP35C2.makeSendToCommand(mWiSunDevice.getIpv6Address(), enlCmd));
+    }
+
     /** 実行中コマンド. */
     private BP35C2.Command mExecCommand;
     /** シーケンス状態. */
@@ -1025,7 +1109,6 @@ public class SmartMeterMessageService extends DConnectMessageService {
                     mExecCommand = BP35C2.Command.NONE;
                     break;
                 default:
-                    byte[] cmd;
                     if (new String(data, 0, data.length).contains(BP35C2.Result.EVENT_24.getString()) && mSequenceState == 0) {
                         if (mDeviceIndex >= mDevices.size()) {
                             // 接続失敗。再検索.
@@ -1038,14 +1121,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
                         if (DEBUG) {
                             Log.i(TAG, "Result: CMD_RESULT_EVENT_25");
                         }
-                        byte[] enlCmd = mENLUtil.makeEchonetLitePacket("INIT1", null);
-                        String command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                        cmd = command.getBytes();
-                        ByteBuffer sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                        sendCmd.put(cmd);
-                        sendCmd.put(enlCmd);
-                        mExecCommand = BP35C2.Command.SEND_TO;
-                        SendMessage(sendCmd.array());
+                        sendEchonetLitePacket("INIT1", null);
                         mSequenceState = 1;
                     } else if (mExecCommand == BP35C2.Command.SEND_TO) {
                         if (DEBUG) {
@@ -1057,14 +1133,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
 
                             mENLUtil.analysisEchonetLitePacket(enlData);
                             if (mSequenceState == 1) {
-                                byte[] enlCmd = mENLUtil.makeEchonetLitePacket("INIT2", null);
-                                String command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                                cmd = command.getBytes();
-                                ByteBuffer sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                                sendCmd.put(cmd);
-                                sendCmd.put(enlCmd);
-                                mExecCommand = BP35C2.Command.SEND_TO;
-                                SendMessage(sendCmd.array());
+                                sendEchonetLitePacket("INIT2", null);
                                 mSequenceState = 2;
 
                                 if (mPairngServiceId != null) {
@@ -1102,9 +1171,20 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param response レスポンス設定用Intent.
      */
     public void getOperationStatus(final Intent response) {
-        mGetOperationStatusResponse = response;
-        sequenceGetOperationStatusProcess = 1;
-        getOperationStatusProcess(null);
+        mCommandScheduler.offer(new SmartMeterCommandScheduler.Command(SmartMeterCommandScheduler.PRIORITY_NORMAL, COMMAND_TIMEOUT) {
+            @Override
+            void execute() {
+                mGetOperationStatusResponse = response;
+                sequenceGetOperationStatusProcess = 1;
+                getOperationStatusProcess(null);
+            }
+
+            @Override
+            void cancel(final SmartMeterCommandScheduler.CancelReason reason) {
+                sequenceGetOperationStatusProcess = 0;
+                sendCancelError(response, reason);
+            }
+        });
     }
 
     /**
@@ -1114,31 +1194,20 @@ public class SmartMeterMessageService extends DConnectMessageService {
     public void getOperationStatusProcess(final byte[] data) {
         byte[] enlData;
         int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
 
         switch (sequenceGetOperationStatusProcess) {
             case 1:
                 // 動作状態取得.
-                enlCmd = mENLUtil.makeEchonetLitePacket("GET_80", null);
-                command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                cmd = command.getBytes();
-                sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                sendCmd.put(cmd);
-                sendCmd.put(enlCmd);
-                mExecCommand = BP35C2.Command.SEND_TO;
-                SendMessage(sendCmd.array());
+                sendEchonetLitePacket("GET_80", null);
                 sequenceGetOperationStatusProcess++;
                 break;
             case 2:
                 int operationStatus;
                 enlData = mENLUtil.convertHex2Bin(data);
                 esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
+                ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
+                if (esv == ENLUtil.ESV_GET_RES && rd != null) {
                     // 正常応答.
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
                     for (ENLUtil.ResultData resultData : rd) {
                         if (resultData.mEpc == 0x80 && resultData.mPdc == 1) {
                             // 動作状態保存.
@@ -1152,8 +1221,9 @@ public class SmartMeterMessageService extends DConnectMessageService {
                     // 不可応答.
                     operationStatus = 0xFF;
                     resultOperationStatus(operationStatus);
-                } else {
-                    break;
+                } else if (!isUnsolicited(esv)) {
+                    sequenceGetOperationStatusProcess = 0;
+                    sendUnexpectedResponseError(mGetOperationStatusResponse, esv);
                 }
                 break;
         }
@@ -1164,6 +1234,9 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param operationStatus 動作状態.
      */
     public void resultOperationStatus(final int operationStatus) {
+        if (sequenceGetOperationStatusProcess == 0) {
+            return;
+        }
         String strOperationStatus;
         setResult(mGetOperationStatusResponse, DConnectMessage.RESULT_OK);
         Bundle root = mGetOperationStatusResponse.getExtras();
@@ -1184,6 +1257,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
         mGetOperationStatusResponse.putExtras(root);
         sendResponse(mGetOperationStatusResponse);
         sequenceGetOperationStatusProcess = 0;
+        mCommandScheduler.complete();
     }
 
     /** 瞬時電力量取得シーケンス管理用. */
@@ -1199,6 +1273,8 @@ public class SmartMeterMessageService extends DConnectMessageService {
     final int DEF_INT_UNDERFLOW = 0x80000000;
     /** 未計測判定値(32bit). */
     final int DEF_INT_NO_DATA = 0x7FFFFFFE;
+    /** 積算電力量計測値履歴の未計測判定値(32bit). */
+    final int DEF_HISTORY_NO_DATA = 0xFFFFFFFE;
 
     /**
      * 瞬時電力量取得.
@@ -1206,10 +1282,21 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param response レスポンス設定用Intent.
      */
     public void getInstantaneousPower(final String unit, final Intent response) {
-        mGetInstantaneousPowerUnit = unit;
-        mInstantaneousPowerResponse = response;
-        sequenceGetInstantaneousPowerProcess = 1;
-        getInstantaneousPowerProcess(null);
+        mCommandScheduler.offer(new SmartMeterCommandScheduler.Command(SmartMeterCommandScheduler.PRIORITY_NORMAL, COMMAND_TIMEOUT) {
+            @Override
+            void execute() {
+                mGetInstantaneousPowerUnit = unit;
+                mInstantaneousPowerResponse = response;
+                sequenceGetInstantaneousPowerProcess = 1;
+                getInstantaneousPowerProcess(null);
+            }
+
+            @Override
+            void cancel(final SmartMeterCommandScheduler.CancelReason reason) {
+                sequenceGetInstantaneousPowerProcess = 0;
+                sendCancelError(response, reason);
+            }
+        });
     }
 
     /**
@@ -1219,31 +1306,20 @@ public class SmartMeterMessageService extends DConnectMessageService {
     public void getInstantaneousPowerProcess(final byte[] data) {
         byte[] enlData;
         int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
 
         switch (sequenceGetInstantaneousPowerProcess) {
             case 1:
                 // 瞬時電力計測値取得.
-                enlCmd = mENLUtil.makeEchonetLitePacket("GET_E7", null);
-                command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                cmd = command.getBytes();
-                sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                sendCmd.put(cmd);
-                sendCmd.put(enlCmd);
-                mExecCommand = BP35C2.Command.SEND_TO;
-                SendMessage(sendCmd.array());
+                sendEchonetLitePacket("GET_E7", null);
                 sequenceGetInstantaneousPowerProcess++;
                 break;
             case 2:
                 long instantaneousPower;
                 enlData = mENLUtil.convertHex2Bin(data);
                 esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
+                ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
+                if (esv == ENLUtil.ESV_GET_RES && rd != null) {
                     // 正常応答.
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
                     for (ENLUtil.ResultData resultData : rd) {
                         if (resultData.mEpc == 0xE7 && resultData.mPdc == 4) {
                             // 瞬時電力量保存.
@@ -1269,8 +1345,9 @@ public class SmartMeterMessageService extends DConnectMessageService {
                     // 不可応答.
                     instantaneousPower = DEF_INT_NO_DATA;
                     resultInstantaneousPower(instantaneousPower);
-                } else {
-                    break;
+                } else if (!isUnsolicited(esv)) {
+                    sequenceGetInstantaneousPowerProcess = 0;
+                    sendUnexpectedResponseError(mInstantaneousPowerResponse, esv);
                 }
                 break;
         }
@@ -1281,6 +1358,9 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param instantaneousPower 瞬時電力量.
      */
     public void resultInstantaneousPower(final long instantaneousPower) {
+        if (sequenceGetInstantaneousPowerProcess == 0) {
+            return;
+        }
         setResult(mInstantaneousPowerResponse, DConnectMessage.RESULT_OK);
         Bundle root = mInstantaneousPowerResponse.getExtras();
         double power;
@@ -1306,6 +1386,7 @@ public class SmartMeterMessageService extends DConnectMessageService {
         mInstantaneousPowerResponse.putExtras(root);
         sendResponse(mInstantaneousPowerResponse);
         sequenceGetInstantaneousPowerProcess = 0;
+        mCommandScheduler.complete();
     }
 
     /** 瞬時電流量取得シーケンス管理用. */
@@ -1328,10 +1409,21 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param response レスポンス設定用Intent.
      */
     public void getInstantaneousCurrent(final String unit, final Intent response) {
-        mGetInstantaneousCurrentUnit = unit;
-        mInstantaneousCurrentResponse = response;
-        sequenceGetInstantaneousCurrentProcess = 1;
-        getInstantaneousCurrentProcess(null);
+        mCommandScheduler.offer(new SmartMeterCommandScheduler.Command(SmartMeterCommandScheduler.PRIORITY_NORMAL, COMMAND_TIMEOUT) {
+            @Override
+            void execute() {
+                mGetInstantaneousCurrentUnit = unit;
+                mInstantaneousCurrentResponse = response;
+                sequenceGetInstantaneousCurrentProcess = 1;
+                getInstantaneousCurrentProcess(null);
+            }
+
+            @Override
+            void cancel(final SmartMeterCommandScheduler.CancelReason reason) {
+                sequenceGetInstantaneousCurrentProcess = 0;
+                sendCancelError(response, reason);
+            }
+        });
     }
 
     /**
@@ -1341,32 +1433,21 @@ public class SmartMeterMessageService extends DConnectMessageService {
     public void getInstantaneousCurrentProcess(final byte[] data) {
         byte[] enlData;
         int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
         float effectiveRPhase;
         float effectiveTPhase;
 
         switch (sequenceGetInstantaneousCurrentProcess) {
             case 1:
                 // 瞬時電流計測値取得.
-                enlCmd = mENLUtil.makeEchonetLitePacket("GET_E8", null);
-                command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                cmd = command.getBytes();
-                sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                sendCmd.put(cmd);
-                sendCmd.put(enlCmd);
-                mExecCommand = BP35C2.Command.SEND_TO;
-                SendMessage(sendCmd.array());
+                sendEchonetLitePacket("GET_E8", null);
                 sequenceGetInstantaneousCurrentProcess++;
                 break;
             case 2:
                 enlData = mENLUtil.convertHex2Bin(data);
                 esv = mENLUtil.checkEsv(enlData);
-                if (esv == ENLUtil.ESV_GET_RES) {
+                ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
+                if (esv == ENLUtil.ESV_GET_RES && rd != null) {
                     // 正常応答.
-                    ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
                     for (ENLUtil.ResultData resultData : rd) {
                         if (resultData.mEpc == 0xE8 && resultData.mPdc == 4) {
                             float unit;
@@ -1421,8 +1502,9 @@ public class SmartMeterMessageService extends DConnectMessageService {
                 } else if (esv == ENLUtil.ESV_GET_SNA) {
                     // 不可応答.
                     resultInstantaneousCurrent(DEF_SHORT_NO_DATA, DEF_SHORT_NO_DATA);
-                } else {
-                    break;
+                } else if (!isUnsolicited(esv)) {
+                    sequenceGetInstantaneousCurrentProcess = 0;
+                    sendUnexpectedResponseError(mInstantaneousCurrentResponse, esv);
                 }
                 break;
         }
@@ -1434,6 +1516,9 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param tPhase T相電流量.
      */
     public void resultInstantaneousCurrent(final float rPhase, final float tPhase) {
+        if (sequenceGetInstantaneousCurrentProcess == 0) {
+            return;
+        }
         setResult(mInstantaneousCurrentResponse, DConnectMessage.RESULT_OK);
         Bundle root = mInstantaneousCurrentResponse.getExtras();
         Bundle instantaneouscurrent = new Bundle();
@@ -1446,59 +1531,81 @@ public class SmartMeterMessageService extends DConnectMessageService {
         mInstantaneousCurrentResponse.putExtras(root);
         sendResponse(mInstantaneousCurrentResponse);
         sequenceGetInstantaneousCurrentProcess = 0;
+        mCommandScheduler.complete();
     }
 
     /** 積算電力量取得シーケンス管理用. */
     private int sequenceGetDayDataProcess = 0;
-    /** 取得日保存用. */
-    private int mGetDateCount = 0;
-    /** 取得時間（時）保存用. */
-    private int mGetDateHour = 0;
-    /** 取得時間（分）保存用. */
-    private int mGetDateMinute = 0;
     /** データ格納数保存用. */
     private int mGetDateDataCount = 0;
-    /** 積算電力量要求ループ数. */
-    private int mGetDateLoop = 0;
     /** 積算電力量応答用Intent. */
     private Intent mDailyDataResponse;
     /** 積算電力量方向保存用. */
     private String mGetDatePowerFlow = null;
     /** 単位変換保存用. */
     private String mGetDatePowerUnit = null;
-    /** 保存処理用インデックス. */
-    private int mIndex = 0;
-    /** 積算電力量一時保存用変数. */
-    double mDayData[] = new double[96];
+    /** 取得するコマの範囲. */
+    private IntegratedPowerWindow mGetDateWindow;
+    /** スマートメーターから取得する必要がある日. */
+    private final List<Integer> mGetDateFetchDays = new ArrayList<>();
+    /** 日ごとの積算電力量一時保存用. */
+    private final Map<Integer, double[]> mGetDateValues = new HashMap<>();
 
     /**
-         * 積算電力量取得.
-         * @param dateCount 取得日設定（0〜99日前）.
-         * @param hour 取得開始指定時刻(時間).
-         * @param minute 取得開始指定時刻（分）.
-         * @param count コマ数（24 or 48）.
-         * @param powerFlow 取得積算電力量方向（normal or reverse）.
-         * @param unit 電力量単位.
-         * @param response レスポンス設定用Intent.
-         */
-    public void getDailyData(final int dateCount, final int hour, final int minute, final int count, final String powerFlow, final String unit, final Intent response) {
-        mGetDateCount = dateCount;
-        mGetDateHour = hour;
-        mGetDateMinute = minute;
-        mGetDatePowerFlow = powerFlow;
-        mGetDateDataCount = count;
-        mGetDatePowerUnit = unit;
-        mDailyDataResponse = response;
-
-        if ((count == 48 && hour == 0 && minute < 30) ||
-                (count == 24 && hour == 0 && minute < 59)) {
-            mGetDateLoop = 1;
-        } else {
-            mGetDateLoop = 2;
-        }
-        mIndex = 0;
-        sequenceGetDayDataProcess = 1;
-        getDayDataProcess(null);
+     * 積算電力量取得.
+     * <p>
+     * キャッシュに無いコマを含む日だけをスマートメーターから取得する。
+     * </p>
+     * @param date 取得する日時.
+     * @param count コマ数（24 or 48）.
+     * @param powerFlow 取得積算電力量方向（normal or reverse）.
+     * @param unit 電力量単位.
+     * @param response レスポンス設定用Intent.
+     */
+    public void getDailyData(final Calendar date, final int count, final String powerFlow, final String unit, final Intent response) {
+        mCommandScheduler.offer(new SmartMeterCommandScheduler.Command(SmartMeterCommandScheduler.PRIORITY_LOW, DAILY_DATA_TIMEOUT) {
+            @Override
+            void execute() {
+                mGetDatePowerFlow = powerFlow;
+                mGetDateDataCount = count;
+                mGetDatePowerUnit = unit;
+                mDailyDataResponse = response;
+                mGetDateWindow = new IntegratedPowerWindow(date, count, Calendar.getInstance());
+                mGetDateFetchDays.clear();
+                mGetDateValues.clear();
+
+                String macAddress = mWiSunDevice.getMacAddress();
+                if (macAddress == null) {
+                    MessageUtils.setIllegalDeviceStateError(response, "Smartmeter is not connected.");
+                    sendResponse(response);
+                    mCommandScheduler.complete();
+                    return;
+                }
+                for (int day : mGetDateWindow.getDays()) {
+                    double[] values = mHistoryCache.getDay(macAddress, powerFlow, day);
+                    mGetDateValues.put(day, values);
+                    if (mGetDateWindow.needsFetch(day, values)) {
+                        mGetDateFetchDays.add(day);
+                    }
+                }
+                if (DEBUG) {
+                    Log.i(TAG, "getDailyData: fetch days = " + mGetDateFetchDays);
+                }
+
+                sequenceGetDayDataProcess = 1;
+                if (mGetDateFetchDays.isEmpty()) {
+                    resultIntegratedPower(mGetDateWindow.collect(mGetDateValues, DEF_INT_NO_DATA));
+                } else {
+                    getDayDataProcess(null);
+                }
+            }
+
+            @Override
+            void cancel(final SmartMeterCommandScheduler.CancelReason reason) {
+                sequenceGetDayDataProcess = 0;
+                sendCancelError(response, reason);
+            }
+        });
     }
 
     /**
@@ -1506,21 +1613,10 @@ public class SmartMeterMessageService extends DConnectMessageService {
      * @param dataCount 取得日.
      */
     public void sendCmdGetDateCount(final int dataCount) {
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
         byte[] excData = new byte[1];
 
         excData[0] = (byte)(dataCount & 0xFF);
-        enlCmd = mENLUtil.makeEchonetLitePacket("SET_E5", excData);
-        command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-        cmd = command.getBytes();
-        sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-        sendCmd.put(cmd);
-        sendCmd.put(enlCmd);
-        mExecCommand = BP35C2.Command.SEND_TO;
-        SendMessage(sendCmd.array());
+        sendEchonetLitePacket("SET_E5", excData);
     }
 
     /**
@@ -1530,94 +1626,94 @@ public class SmartMeterMessageService extends DConnectMessageService {
     public void getDayDataProcess(final byte[] data) {
         byte[] enlData;
         int esv;
-        byte[] enlCmd;
-        String command;
-        byte[] cmd;
-        ByteBuffer sendCmd;
 
         switch (sequenceGetDayDataProcess) {
             case 1:
                 // 取得日設定
-                if (mGetDateCount!= 0) {
-                    sendCmdGetDateCount(mGetDateCount + 1);
-                } else {
-                    sendCmdGetDateCount(mGetDateCount);
-                }
+                sendCmdGetDateCount(mGetDateWindow.getDaysBefore(mGetDateFetchDays.get(0)));
                 sequenceGetDayDataProcess++;
                 break;
             case 2:
                 enlData = mENLUtil.convertHex2Bin(data);
                 esv = mENLUtil.checkEsv(enlData);
+                if (isUnsolicited(esv)) {
+                    break;
+                }
+                String getCommand = null;
                 if (esv == ENLUtil.ESV_SET_RES) {
                     ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for(ENLUtil.ResultData resultData : rd) {
-                        if (resultData.mEpc == 0xE5 && resultData.mPdc == 0) {
+                    for (int i = 0; rd != null && i < rd.length; i++) {
+                        if (rd[i].mEpc == 0xE5 && rd[i].mPdc == 0) {
                             // Next.
-                            switch (mGetDatePowerFlow) {
-                                case "normal":
-                                    enlCmd = mENLUtil.makeEchonetLitePacket("GET_E2", null);
-                                    break;
-                                case "reverse":
-                                    enlCmd = mENLUtil.makeEchonetLitePacket("GET_E4", null);
-                                    break;
-                                default:
-                                    return;
+                            if ("normal".equals(mGetDatePowerFlow)) {
+                                getCommand = "GET_E2";
+                            } else if ("reverse".equals(mGetDatePowerFlow)) {
+                                getCommand = "GET_E4";
                             }
-                            command = BP35C2.Command.SEND_TO.getString() + "1 " + mWiSunDevice.getIpv6Address() + " 0E1A 1 0 " + String.format("%04x", enlCmd.length) + " ";
-                            cmd = command.getBytes();
-                            sendCmd = ByteBuffer.allocate(cmd.length + enlCmd.length);
-                            sendCmd.put(cmd);
-                            sendCmd.put(enlCmd);
-                            mExecCommand = BP35C2.Command.SEND_TO;
-                            SendMessage(sendCmd.array());
-                            sequenceGetDayDataProcess++;
                             break;
                         }
                     }
                 }
+                if (getCommand == null) {
+                    sequenceGetDayDataProcess = 0;
+                    sendUnexpectedResponseError(mDailyDataResponse, esv);
+                    break;
+                }
+                sendEchonetLitePacket(getCommand, null);
+                sequenceGetDayDataProcess++;
                 break;
             case 3:
                 enlData = mENLUtil.convertHex2Bin(data);
                 esv = mENLUtil.checkEsv(enlData);
+                double[] dayData = new double[IntegratedPowerWindow.SLOTS_PER_DAY];
+                boolean fixed = false;
                 if (esv == ENLUtil.ESV_GET_RES) {
                     // 正常応答.
                     float unitValue = mENLUtil.getUnitValue();
                     int coeff = mENLUtil.getCoeffValue();
                     ENLUtil.ResultData[] rd = mENLUtil.splitResultData(enlData);
-                    for (ENLUtil.ResultData resultData : rd) {
-                        if ((resultData.mEpc == 0xE2 || resultData.mEpc == 0xE4) && resultData.mPdc == 194) {
-                            // 積算電力量保存.
-                            byte[] byTmp = new byte[4];
-                            int pos = 2;
-                            for (int n = 0; n < 48; n++) {
-                                System.arraycopy(resultData.mEdt, pos, byTmp, 0, 4);
-                                pos += 4;
-                                int tmp = ByteBuffer.wrap(byTmp).asIntBuffer().get();
-                                if (tmp == DEF_INT_NO_DATA || unitValue == 0) {
-                                    mDayData[mIndex++] = DEF_INT_NO_DATA;
-                                } else {
-                                    mDayData[mIndex++] = tmp * coeff * unitValue;
-                                }
-                            }
-                        } else {
-                            for (int n = 0; n < 48; n++) {
-                                mDayData[mIndex++] = DEF_INT_NO_DATA;
+                    ENLUtil.ResultData resultData = rd != null && rd.length > 0 ? rd[0] : null;
+                    if (resultData != null && (resultData.mEpc == 0xE2 || resultData.mEpc == 0xE4) && resultData.mPdc == 194) {
+                        // 積算電力量保存.
+                        int pos = 2;
+                        for (int n = 0; n < dayData.length; n++) {
+                            int tmp = ENLUtil.toInt(resultData.mEdt, pos);
+                            pos += 4;
+                            if (tmp == DEF_INT_NO_DATA || tmp == DEF_HISTORY_NO_DATA || unitValue == 0) {
+                                dayData[n] = DEF_INT_NO_DATA;
+                            } else {
+                                dayData[n] = tmp * coeff * unitValue;
                             }
                         }
+                        fixed = unitValue != 0;
+                    } else {
+                        Arrays.fill(dayData, DEF_INT_NO_DATA);
                     }
                 } else if (esv == ENLUtil.ESV_GET_SNA) {
                     // 不可応答.
-                    for (int n = 0; n < 48; n++) {
-                        mDayData[mIndex++] = DEF_INT_NO_DATA;
+                    Arrays.fill(dayData, DEF_INT_NO_DATA);
+                } else {
+                    if (!isUnsolicited(esv)) {
+                        sequenceGetDayDataProcess = 0;
+                        sendUnexpectedResponseError(mDailyDataResponse, esv);
                     }
-                }else {
                     break;
                 }
-                mGetDateLoop--;
-                if (mGetDateLoop == 0) {
-                    resultIntegratedPower(mDayData);
+
+                int day = mGetDateFetchDays.remove(0);
+                mGetDateValues.put(day, dayData);
+                String macAddress = mWiSunDevice.getMacAddress();
+                if (fixed && macAddress != null) {
+                    // 計測済みの値だけをキャッシュする.
+                    mHistoryCache.putDay(macAddress, mGetDatePowerFlow, day,
+                            mGetDateWindow.getFixedValues(day, dayData, DEF_INT_NO_DATA));
+                    mHistoryCache.removeBefore(mGetDateWindow.getToday() - HISTORY_RETENTION_DAYS);
+                }
+
+                if (mGetDateFetchDays.isEmpty()) {
+                    resultIntegratedPower(mGetDateWindow.collect(mGetDateValues, DEF_INT_NO_DATA));
                 } else {
-                    sendCmdGetDateCount(mGetDateCount);
+                    sendCmdGetDateCount(mGetDateWindow.getDaysBefore(mGetDateFetchDays.get(0)));
                     sequenceGetDayDataProcess = 2;
                 }
                 break;
@@ -1627,9 +1723,12 @@ public class SmartMeterMessageService extends DConnectMessageService {
 
     /**
      * 指定された単位変換をして積算電力量を要求元へ返却する.
-     * @param dayData 積算電力量データ.
+     * @param slotData 取得範囲の48コマ分の積算電力量データ(古い順).
      */
-    public void resultIntegratedPower(final double[] dayData) {
+    public void resultIntegratedPower(final double[] slotData) {
+        if (sequenceGetDayDataProcess == 0) {
+            return;
+        }
         setResult(mDailyDataResponse, DConnectMessage.RESULT_OK);
         Bundle root = mDailyDataResponse.getExtras();
 
@@ -1646,32 +1745,27 @@ public class SmartMeterMessageService extends DConnectMessageService {
         }
 
         // 積算電力量データ設定.
-        int index;
         double[] integratedpower = new double[mGetDateDataCount];
         if (mGetDateDataCount == 48) {
-            // Index計算.
-            index = ((mGetDateHour * 2) + (mGetDateMinute/30)) + 48;
-            for (int n = mGetDateDataCount - 1; n >= 0; n--) {
-                if (dayData[index] == DEF_INT_NO_DATA) {
-                    integratedpower[n] = dayData[index--];
+            for (int n = 0; n < mGetDateDataCount; n++) {
+                if (slotData[n] == DEF_INT_NO_DATA) {
+                    integratedpower[n] = slotData[n];
                 } else {
-                    integratedpower[n] = dayData[index--] * coeff;
+                    integratedpower[n] = slotData[n] * coeff;
                 }
             }
         } else {
-            // Index計算.
-            index = (mGetDateHour * 2) + 48;
-            for (int n = mGetDateDataCount - 1; n >= 0; n--) {
-                if (dayData[index] == DEF_INT_NO_DATA && dayData[index + 1] == DEF_INT_NO_DATA) {
-                    integratedpower[n] = dayData[index];
-                } else if (dayData[index] != DEF_INT_NO_DATA && dayData[index + 1] == DEF_INT_NO_DATA) {
-                    integratedpower[n] = dayData[index] * coeff;
-                } else if (dayData[index] == DEF_INT_NO_DATA && dayData[index + 1] != DEF_INT_NO_DATA) {
-                    integratedpower[n] = dayData[index + 1] * coeff;
+            for (int n = 0; n < mGetDateDataCount; n++) {
+                int index = n * 2;
+                if (slotData[index] == DEF_INT_NO_DATA && slotData[index + 1] == DEF_INT_NO_DATA) {
+                    integratedpower[n] = slotData[index];
+                } else if (slotData[index] != DEF_INT_NO_DATA && slotData[index + 1] == DEF_INT_NO_DATA) {
+                    integratedpower[n] = slotData[index] * coeff;
+                } else if (slotData[index] == DEF_INT_NO_DATA && slotData[index + 1] != DEF_INT_NO_DATA) {
+                    integratedpower[n] = slotData[index + 1] * coeff;
                 } else {
-                    integratedpower[n] = (dayData[index] + dayData[index + 1]) * coeff;
+                    integratedpower[n] = (slotData[index] + slotData[index + 1]) * coeff;
                 }
-                index -= 2;
             }
         }
         root.putDoubleArray("integratedpower", integratedpower);
@@ -1681,5 +1775,6 @@ public class SmartMeterMessageService extends DConnectMessageService {
         mDailyDataResponse.putExtras(root);
         sendResponse(mDailyDataResponse);
         sequenceGetDayDataProcess = 0;
+        mCommandScheduler.complete();
     }
 }
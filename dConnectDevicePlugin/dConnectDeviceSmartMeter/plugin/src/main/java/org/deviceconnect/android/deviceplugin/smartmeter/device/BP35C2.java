@@ -141,6 +141,11 @@ public class BP35C2 {
     /** デバイス名称. */
     public static String DEVICE_NAME = "BP35C2";
 
+    /** SKSENDTOのハンドル、ポート番号、セキュリティ、送信元指定. */
+    private static final String SEND_TO_PARAM = " 0E1A 1 0 ";
+    /** データ長を16進数ASCIIに変換するための文字. */
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+
     /** ボーレート */
     private static int baudrate = Baudrate.BAUDRATE_115200.getBaudrate();
     /** キャラクター間インターバル. */
@@ -156,6 +161,30 @@ public class BP35C2 {
         return DEVICE_NAME;
     }
 
+    /**
+     * UDPでデータを送信するSKSENDTOコマンドを生成する.
+     * <p>
+     * コマンド部分とデータ長の16進数ASCIIを直接バイト配列に書き込み、その後ろにバイナリーのデータを連結する。
+     * </p>
+     * @param ipv6Address 送信先IPv6アドレス.
+     * @param data 送信データ(ECHONET Lite パケット).
+     * @return SKSENDTOコマンド.
+     */
+    public static byte[] makeSendToCommand(final String ipv6Address, final byte[] data) {
+        String command = Command.SEND_TO.getString() + "1 " + ipv6Address + SEND_TO_PARAM;
+        byte[] frame = new byte[command.length() + 5 + data.length];
+        int pos = 0;
+        for (int i = 0; i < command.length(); i++) {
+            frame[pos++] = (byte) command.charAt(i);
+        }
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            frame[pos++] = HEX_DIGITS[(data.length >> shift) & 0x0F];
+        }
+        frame[pos++] = ' ';
+        System.arraycopy(data, 0, frame, pos, data.length);
+        return frame;
+    }
+
     /**
      * ボーレート取得.
      * @return ボーレート.
@@ -270,7 +270,7 @@ public class SmartMeterPowerMeterProfile extends DConnectProfile {
                         return true;
                 }
                 // 積算電力量取得.
-                ((SmartMeterMessageService) getContext()).getDailyData((int)diffDay, calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE), count, powerFlow, unit, response);
+                ((SmartMeterMessageService) getContext()).getDailyData(calendar, count, powerFlow, unit, response);
                 return false;
             }
         });
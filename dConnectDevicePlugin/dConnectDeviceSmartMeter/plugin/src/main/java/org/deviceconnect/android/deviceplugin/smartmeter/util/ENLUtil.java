@@ -71,6 +71,11 @@ public class ENLUtil {
     static final int IDX_ESV = 10;
     static final int IDX_OPC = 11;
 
+    /** ERXUDP受信データのデータ長の位置. */
+    static final int IDX_RCV_LENGTH = 118;
+    /** ERXUDP受信データのデータの位置. */
+    static final int IDX_RCV_DATA = 123;
+
     /** EPC. */
     static final int EPC_OPERATION_STATUS = 0x80;
 
@@ -110,21 +115,60 @@ public class ENLUtil {
      * @return 変換バイナリーデータ.
      */
     public byte[] convertHex2Bin(final byte[] data) {
-        String strLength = new String(data, 118, 4);
-        Integer length = Integer.decode("0x" + strLength);
+        if (data == null || data.length < IDX_RCV_DATA) {
+            return new byte[0];
+        }
+        int length = decodeHex(data, IDX_RCV_LENGTH, 4);
         if (BuildConfig.DEBUG) {
-            Log.i(TAG, "strLength:" + strLength + ", length: " + length);
+            Log.i(TAG, "length: " + length);
+        }
+        if (length < 0 || data.length < IDX_RCV_DATA + length * 2) {
+            return new byte[0];
         }
 
-        String hex = new String(data, 123, length * 2);
-
-        byte[] bytes = new byte[hex.length() / 2];
-        for (int index = 0; index < bytes.length; index++) {
-            bytes[index] = (byte) Integer.parseInt(hex.substring(index * 2, (index + 1) * 2), 16);
+        byte[] bytes = new byte[length];
+        int pos = IDX_RCV_DATA;
+        for (int index = 0; index < length; index++) {
+            int value = decodeHex(data, pos, 2);
+            if (value < 0) {
+                return new byte[0];
+            }
+            bytes[index] = (byte) value;
+            pos += 2;
         }
         return bytes;
     }
 
+    /**
+     * 16進数ASCIIを数値に変換する.
+     * @param data 変換元データ.
+     * @param offset 変換開始位置.
+     * @param length 桁数.
+     * @return 変換結果. 16進数以外の文字が含まれている場合は-1.
+     */
+    private static int decodeHex(final byte[] data, final int offset, final int length) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = Character.digit(data[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * ビッグエンディアンの4バイトを数値に変換する.
+     * @param buf 変換元データ.
+     * @param pos 変換開始位置.
+     * @return 変換結果.
+     */
+    public static int toInt(final byte[] buf, final int pos) {
+        return (buf[pos] & 0xFF) << 24 | (buf[pos + 1] & 0xFF) << 16
+                | (buf[pos + 2] & 0xFF) << 8 | (buf[pos + 3] & 0xFF);
+    }
+
     /**
      * 参照Property Map Table初期化.
      */
@@ -399,7 +443,7 @@ public class ENLUtil {
     public int checkEsv(final byte[] buf) {
         // 受信パケット長判定.
         int dataLength = buf.length;
-        if (dataLength < 10) {
+        if (dataLength <= IDX_OPC) {
             return 0xFF;
         }
 
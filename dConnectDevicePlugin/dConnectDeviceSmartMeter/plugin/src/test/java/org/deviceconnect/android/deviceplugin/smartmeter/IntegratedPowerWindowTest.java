@@ -0,0 +1,192 @@
+/*
+ IntegratedPowerWindowTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link IntegratedPowerWindow}.
+ * @author NTT DOCOMO, INC.
+ */
+public class IntegratedPowerWindowTest {
+
+    /** Value of a slot which has no data. */
+    private static final double NO_DATA = -1;
+
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone("Asia/Tokyo");
+
+    @Test
+    public void toDay_usesLocalTime() {
+        assertEquals(0, IntegratedPowerWindow.toDay(date(1970, 1, 1, 0, 0)));
+        assertEquals(0, IntegratedPowerWindow.toDay(date(1970, 1, 1, 23, 59)));
+        assertEquals(1, IntegratedPowerWindow.toDay(date(1970, 1, 2, 0, 0)));
+    }
+
+    @Test
+    public void getDays_spansPreviousDay() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(date(2017, 6, 10, 10, 40), 48, now);
+        int today = IntegratedPowerWindow.toDay(now);
+
+        assertArrayEquals(new int[] {today - 1, today}, window.getDays());
+        assertEquals(today, window.getToday());
+        assertEquals(1, window.getDaysBefore(today - 1));
+    }
+
+    @Test
+    public void getDays_lastSlotOfDay() {
+        Calendar now = date(2017, 6, 11, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(date(2017, 6, 10, 23, 30), 48, now);
+
+        assertArrayEquals(new int[] {IntegratedPowerWindow.toDay(now) - 1}, window.getDays());
+    }
+
+    @Test
+    public void getDays_hourly() {
+        Calendar now = date(2017, 6, 11, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(date(2017, 6, 10, 23, 0), 24, now);
+
+        // 24 slots include both halves of the hour, so the window ends at 23:30.
+        assertArrayEquals(new int[] {IntegratedPowerWindow.toDay(now) - 1}, window.getDays());
+    }
+
+    @Test
+    public void needsFetch_missingMeasuredSlot() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(now, 48, now);
+        int today = IntegratedPowerWindow.toDay(now);
+
+        double[] cached = filled(1);
+        assertFalse(window.needsFetch(today, cached));
+        cached[24] = Double.NaN;
+        assertTrue(window.needsFetch(today, cached));
+    }
+
+    @Test
+    public void needsFetch_ignoresFutureSlots() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(now, 48, now);
+        int today = IntegratedPowerWindow.toDay(now);
+
+        double[] cached = filled(1);
+        Arrays.fill(cached, 25, IntegratedPowerWindow.SLOTS_PER_DAY, Double.NaN);
+        assertFalse(window.needsFetch(today, cached));
+    }
+
+    @Test
+    public void needsFetch_ignoresSlotsOutOfWindow() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(now, 48, now);
+        int yesterday = IntegratedPowerWindow.toDay(now) - 1;
+
+        double[] cached = filled(1);
+        Arrays.fill(cached, 0, 25, Double.NaN);
+        assertFalse(window.needsFetch(yesterday, cached));
+        cached[25] = Double.NaN;
+        assertTrue(window.needsFetch(yesterday, cached));
+    }
+
+    @Test
+    public void needsFetch_outOfCollectionDays() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        int today = IntegratedPowerWindow.toDay(now);
+        double[] cached = filled(Double.NaN);
+
+        IntegratedPowerWindow future = new IntegratedPowerWindow(date(2017, 6, 12, 12, 0), 48, now);
+        assertFalse(future.needsFetch(today + 2, cached));
+        IntegratedPowerWindow old = new IntegratedPowerWindow(date(2017, 1, 1, 12, 0), 48, now);
+        int oldDay = IntegratedPowerWindow.toDay(date(2017, 1, 1, 12, 0));
+        assertTrue(today - oldDay > IntegratedPowerWindow.MAX_DAYS_BEFORE);
+        assertFalse(old.needsFetch(oldDay, cached));
+    }
+
+    @Test
+    public void getFixedValues_pastDay() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(now, 48, now);
+        double[] values = filled(2);
+
+        assertArrayEquals(values, window.getFixedValues(IntegratedPowerWindow.toDay(now) - 1, values, NO_DATA), 0);
+    }
+
+    @Test
+    public void getFixedValues_today() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(now, 48, now);
+        double[] values = filled(2);
+        values[3] = NO_DATA;
+        values[40] = 3;
+
+        double[] fixed = window.getFixedValues(IntegratedPowerWindow.toDay(now), values, NO_DATA);
+        assertEquals(2, fixed[0], 0);
+        assertTrue(Double.isNaN(fixed[3]));
+        assertEquals(2, fixed[24], 0);
+        assertTrue(Double.isNaN(fixed[25]));
+        assertTrue(Double.isNaN(fixed[40]));
+        // The values from the meter are not changed.
+        assertEquals(3, values[40], 0);
+    }
+
+    @Test
+    public void collect_spansDays() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(date(2017, 6, 10, 10, 40), 48, now);
+        int today = IntegratedPowerWindow.toDay(now);
+        double[] yesterdayValues = new double[IntegratedPowerWindow.SLOTS_PER_DAY];
+        double[] todayValues = new double[IntegratedPowerWindow.SLOTS_PER_DAY];
+        for (int slot = 0; slot < IntegratedPowerWindow.SLOTS_PER_DAY; slot++) {
+            yesterdayValues[slot] = 1000 + slot;
+            todayValues[slot] = 2000 + slot;
+        }
+        todayValues[0] = Double.NaN;
+        Map<Integer, double[]> values = new HashMap<>();
+        values.put(today - 1, yesterdayValues);
+        values.put(today, todayValues);
+
+        double[] result = window.collect(values, NO_DATA);
+        // The window is from 11:00 of yesterday to 10:30 of today.
+        assertEquals(1022, result[0], 0);
+        assertEquals(1047, result[25], 0);
+        assertEquals(NO_DATA, result[26], 0);
+        assertEquals(2001, result[27], 0);
+        assertEquals(2021, result[47], 0);
+    }
+
+    @Test
+    public void collect_missingDay() {
+        Calendar now = date(2017, 6, 10, 12, 0);
+        IntegratedPowerWindow window = new IntegratedPowerWindow(now, 48, now);
+
+        double[] result = window.collect(new HashMap<Integer, double[]>(), NO_DATA);
+        assertArrayEquals(filled(NO_DATA), result, 0);
+    }
+
+    private static Calendar date(final int year, final int month, final int day,
+                                 final int hour, final int minute) {
+        Calendar calendar = Calendar.getInstance(TIME_ZONE);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar;
+    }
+
+    private static double[] filled(final double value) {
+        double[] values = new double[IntegratedPowerWindow.SLOTS_PER_DAY];
+        Arrays.fill(values, value);
+        return values;
+    }
+}
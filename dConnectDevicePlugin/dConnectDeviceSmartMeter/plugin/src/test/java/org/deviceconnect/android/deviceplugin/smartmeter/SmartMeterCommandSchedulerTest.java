@@ -0,0 +1,195 @@
+/*
+ SmartMeterCommandSchedulerTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link SmartMeterCommandScheduler}.
+ * @author NTT DOCOMO, INC.
+ */
+public class SmartMeterCommandSchedulerTest {
+
+    /** Timeout of the commands which should not time out, in milliseconds. */
+    private static final long LONG_TIMEOUT = 10000;
+
+    /** Timeout of the commands which should time out, in milliseconds. */
+    private static final long SHORT_TIMEOUT = 100;
+
+    /** Time to wait for the results in seconds. */
+    private static final long WAIT = 10;
+
+    private SmartMeterCommandScheduler mScheduler;
+
+    private final List<String> mLog = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mScheduler = new SmartMeterCommandScheduler();
+    }
+
+    @After
+    public void tearDown() {
+        mScheduler.shutdown();
+    }
+
+    @Test
+    public void offer_runsByPriorityThenOrder() throws Exception {
+        TestCommand first = new TestCommand("first", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT);
+        mScheduler.offer(first);
+        first.awaitExecute();
+
+        List<TestCommand> commands = Arrays.asList(
+                new TestCommand("low", SmartMeterCommandScheduler.PRIORITY_LOW, LONG_TIMEOUT),
+                new TestCommand("normal1", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT),
+                new TestCommand("high", SmartMeterCommandScheduler.PRIORITY_HIGH, LONG_TIMEOUT),
+                new TestCommand("normal2", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT));
+        for (TestCommand command : commands) {
+            mScheduler.offer(command);
+        }
+        assertEquals(4, mScheduler.getPendingCount());
+
+        mScheduler.complete();
+        commands.get(2).awaitExecute();
+        mScheduler.complete();
+        commands.get(1).awaitExecute();
+        mScheduler.complete();
+        commands.get(3).awaitExecute();
+        mScheduler.complete();
+        commands.get(0).awaitExecute();
+        mScheduler.complete();
+
+        assertEquals(Arrays.asList("execute first", "execute high", "execute normal1",
+                "execute normal2", "execute low"), getLog());
+        assertEquals(0, mScheduler.getPendingCount());
+    }
+
+    @Test
+    public void timeout_cancelsAndRunsNext() throws Exception {
+        TestCommand first = new TestCommand("first", SmartMeterCommandScheduler.PRIORITY_NORMAL, SHORT_TIMEOUT);
+        TestCommand second = new TestCommand("second", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT);
+        mScheduler.offer(first);
+        mScheduler.offer(second);
+
+        first.awaitCancel();
+        second.awaitExecute();
+        assertEquals(SmartMeterCommandScheduler.CancelReason.TIMEOUT, first.getCancelReason());
+        // The command is cancelled before the next command runs.
+        assertEquals(Arrays.asList("execute first", "cancel first TIMEOUT", "execute second"), getLog());
+        assertNull(second.getCancelReason());
+    }
+
+    @Test
+    public void clear_cancelsRunningAndPendingCommands() throws Exception {
+        TestCommand first = new TestCommand("first", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT);
+        TestCommand second = new TestCommand("second", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT);
+        mScheduler.offer(first);
+        mScheduler.offer(second);
+        first.awaitExecute();
+
+        mScheduler.clear();
+        assertEquals(SmartMeterCommandScheduler.CancelReason.CLEARED, first.getCancelReason());
+        assertEquals(SmartMeterCommandScheduler.CancelReason.CLEARED, second.getCancelReason());
+        assertEquals(0, mScheduler.getPendingCount());
+        assertEquals(Arrays.asList("execute first", "cancel first CLEARED", "cancel second CLEARED"), getLog());
+    }
+
+    @Test
+    public void clear_thenOffer() throws Exception {
+        mScheduler.clear();
+        TestCommand command = new TestCommand("command", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT);
+        mScheduler.offer(command);
+
+        command.awaitExecute();
+    }
+
+    @Test
+    public void complete_withoutRunningCommand() throws Exception {
+        mScheduler.complete();
+        TestCommand command = new TestCommand("command", SmartMeterCommandScheduler.PRIORITY_NORMAL, LONG_TIMEOUT);
+        mScheduler.offer(command);
+        command.awaitExecute();
+        mScheduler.complete();
+        mScheduler.complete();
+
+        assertEquals(0, mScheduler.getPendingCount());
+        assertEquals(Arrays.asList("execute command"), getLog());
+    }
+
+    @Test
+    public void complete_stopsTimeout() throws Exception {
+        TestCommand command = new TestCommand("command", SmartMeterCommandScheduler.PRIORITY_NORMAL, SHORT_TIMEOUT);
+        mScheduler.offer(command);
+        command.awaitExecute();
+        mScheduler.complete();
+        Thread.sleep(SHORT_TIMEOUT * 3);
+
+        assertNull(command.getCancelReason());
+    }
+
+    private List<String> getLog() {
+        synchronized (mLog) {
+            return new ArrayList<>(mLog);
+        }
+    }
+
+    /**
+     * Command which records the calls.
+     */
+    private class TestCommand extends SmartMeterCommandScheduler.Command {
+        private final String mName;
+        private final CountDownLatch mExecuted = new CountDownLatch(1);
+        private final CountDownLatch mCancelled = new CountDownLatch(1);
+        private volatile SmartMeterCommandScheduler.CancelReason mCancelReason;
+
+        TestCommand(final String name, final int priority, final long timeout) {
+            super(priority, timeout);
+            mName = name;
+        }
+
+        @Override
+        void execute() {
+            synchronized (mLog) {
+                mLog.add("execute " + mName);
+            }
+            mExecuted.countDown();
+        }
+
+        @Override
+        void cancel(final SmartMeterCommandScheduler.CancelReason reason) {
+            synchronized (mLog) {
+                mLog.add("cancel " + mName + " " + reason);
+            }
+            mCancelReason = reason;
+            mCancelled.countDown();
+        }
+
+        SmartMeterCommandScheduler.CancelReason getCancelReason() {
+            return mCancelReason;
+        }
+
+        void awaitExecute() throws InterruptedException {
+            assertTrue(mName + " is not executed", mExecuted.await(WAIT, TimeUnit.SECONDS));
+        }
+
+        void awaitCancel() throws InterruptedException {
+            assertTrue(mName + " is not cancelled", mCancelled.await(WAIT, TimeUnit.SECONDS));
+        }
+    }
+}
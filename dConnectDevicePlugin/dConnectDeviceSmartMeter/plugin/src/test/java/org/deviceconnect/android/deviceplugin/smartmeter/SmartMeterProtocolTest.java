@@ -0,0 +1,186 @@
+/*
+ SmartMeterProtocolTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import org.deviceconnect.android.deviceplugin.smartmeter.device.BP35C2;
+import org.deviceconnect.android.deviceplugin.smartmeter.util.ENLUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test of {@link ENLUtil} and {@link BP35C2} with {@link SmartMeterSimulator}.
+ * <p>
+ * The packets are built and parsed in the same way as SmartMeterMessageService.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SmartMeterProtocolTest {
+
+    private ENLUtil mENLUtil;
+
+    private SmartMeterSimulator mMeter;
+
+    @Before
+    public void setUp() {
+        mENLUtil = new ENLUtil();
+        mMeter = new SmartMeterSimulator();
+    }
+
+    @Test
+    public void getInstantaneousPower() {
+        mMeter.setInstantaneousPower(987);
+        byte[] response = request("GET_E7", null);
+
+        assertEquals(ENLUtil.ESV_GET_RES, mENLUtil.checkEsv(response));
+        ENLUtil.ResultData[] rd = mENLUtil.splitResultData(response);
+        assertNotNull(rd);
+        assertEquals(0xE7, rd[0].mEpc);
+        assertEquals(4, rd[0].mPdc);
+        assertEquals(987, ENLUtil.toInt(rd[0].mEdt, 0));
+    }
+
+    @Test
+    public void getInstantaneousCurrent() {
+        byte[] response = request("GET_E8", null);
+
+        assertEquals(ENLUtil.ESV_GET_RES, mENLUtil.checkEsv(response));
+        ENLUtil.ResultData[] rd = mENLUtil.splitResultData(response);
+        assertEquals(0xE8, rd[0].mEpc);
+        assertEquals(4, rd[0].mPdc);
+        assertEquals(50, (rd[0].mEdt[0] << 8) | (rd[0].mEdt[1] & 0xFF));
+        assertEquals(70, (rd[0].mEdt[2] << 8) | (rd[0].mEdt[3] & 0xFF));
+    }
+
+    @Test
+    public void getOperationStatus() {
+        byte[] response = request("GET_80", null);
+
+        assertEquals(ENLUtil.ESV_GET_RES, mENLUtil.checkEsv(response));
+        ENLUtil.ResultData[] rd = mENLUtil.splitResultData(response);
+        assertEquals(0x80, rd[0].mEpc);
+        assertEquals(0x30, rd[0].mEdt[0]);
+    }
+
+    @Test
+    public void getIntegratedPowerHistory() {
+        mENLUtil.analysisEchonetLitePacket(request("GET_E1", null));
+        assertEquals(0.1f, mENLUtil.getUnitValue(), 0);
+
+        byte[] response = request("SET_E5", new byte[] {3});
+        assertEquals(ENLUtil.ESV_SET_RES, mENLUtil.checkEsv(response));
+        ENLUtil.ResultData[] rd = mENLUtil.splitResultData(response);
+        assertEquals(0xE5, rd[0].mEpc);
+        assertEquals(0, rd[0].mPdc);
+
+        response = request("GET_E2", null);
+        assertEquals(ENLUtil.ESV_GET_RES, mENLUtil.checkEsv(response));
+        rd = mENLUtil.splitResultData(response);
+        assertEquals(0xE2, rd[0].mEpc);
+        assertEquals(194, rd[0].mPdc);
+        assertEquals(3, (rd[0].mEdt[0] << 8) | (rd[0].mEdt[1] & 0xFF));
+        for (int slot = 0; slot < IntegratedPowerWindow.SLOTS_PER_DAY; slot++) {
+            int value = ENLUtil.toInt(rd[0].mEdt, 2 + slot * 4);
+            assertEquals(SmartMeterSimulator.getHistoryValue(3, slot), value);
+            assertEquals(SmartMeterSimulator.getHistoryValue(3, slot) * 0.1f,
+                    value * mENLUtil.getCoeffValue() * mENLUtil.getUnitValue(), 0);
+        }
+        assertEquals(Collections.singletonList(3), mMeter.getCollectionDayLog());
+    }
+
+    @Test
+    public void getIntegratedPowerHistory_todayIsNotMeasuredYet() {
+        mMeter.setNowSlot(20);
+        request("SET_E5", new byte[] {0});
+        byte[] response = request("GET_E2", null);
+
+        ENLUtil.ResultData[] rd = mENLUtil.splitResultData(response);
+        assertEquals(SmartMeterSimulator.getHistoryValue(0, 20), ENLUtil.toInt(rd[0].mEdt, 2 + 20 * 4));
+        assertEquals(SmartMeterSimulator.HISTORY_NO_DATA, ENLUtil.toInt(rd[0].mEdt, 2 + 21 * 4));
+        assertEquals(SmartMeterSimulator.HISTORY_NO_DATA, ENLUtil.toInt(rd[0].mEdt, 2 + 47 * 4));
+    }
+
+    @Test
+    public void get_unsupportedProperty() {
+        mMeter.setUnsupported(0xE8);
+        byte[] response = request("GET_E8", null);
+
+        assertEquals(ENLUtil.ESV_GET_SNA, mENLUtil.checkEsv(response));
+        ENLUtil.ResultData[] rd = mENLUtil.splitResultData(response);
+        assertEquals(0xE8, rd[0].mEpc);
+        assertEquals(0, rd[0].mPdc);
+        assertNull(rd[0].mEdt);
+    }
+
+    @Test
+    public void set_unsupportedProperty() {
+        mMeter.setUnsupported(0xE5);
+        byte[] response = request("SET_E5", new byte[] {1});
+
+        assertEquals(ENLUtil.ESV_SETC_SNA, mENLUtil.checkEsv(response));
+        assertEquals(0, mMeter.getCollectionDayLog().size());
+    }
+
+    @Test
+    public void checkEsv_staleResponse() {
+        byte[] stale = mMeter.write(BP35C2.makeSendToCommand(SmartMeterSimulator.METER_ADDRESS,
+                mENLUtil.makeEchonetLitePacket("GET_E7", null)));
+        byte[] current = request("GET_E8", null);
+
+        // The response to the previous request has an old transaction ID.
+        assertEquals(0xFF, mENLUtil.checkEsv(mENLUtil.convertHex2Bin(stale)));
+        assertEquals(ENLUtil.ESV_GET_RES, mENLUtil.checkEsv(current));
+    }
+
+    @Test
+    public void checkEsv_notification() {
+        request("GET_E7", null);
+        byte[] event = mMeter.makeNotification(0x1234, 0xEA, new byte[11]);
+
+        // Notifications are accepted regardless of the transaction ID.
+        assertEquals(ENLUtil.ESV_INF, mENLUtil.checkEsv(mENLUtil.convertHex2Bin(event)));
+    }
+
+    @Test
+    public void convertHex2Bin_truncatedEvent() {
+        byte[] event = mMeter.write(BP35C2.makeSendToCommand(SmartMeterSimulator.METER_ADDRESS,
+                mENLUtil.makeEchonetLitePacket("GET_E7", null)));
+
+        byte[] header = Arrays.copyOf(event, 100);
+        assertEquals(0, mENLUtil.convertHex2Bin(header).length);
+        byte[] truncated = Arrays.copyOf(event, event.length - 6);
+        assertEquals(0, mENLUtil.convertHex2Bin(truncated).length);
+        assertEquals(0xFF, mENLUtil.checkEsv(mENLUtil.convertHex2Bin(truncated)));
+    }
+
+    @Test
+    public void convertHex2Bin_invalidDigit() {
+        byte[] event = mMeter.write(BP35C2.makeSendToCommand(SmartMeterSimulator.METER_ADDRESS,
+                mENLUtil.makeEchonetLitePacket("GET_E7", null)));
+        event[130] = 'G';
+
+        assertEquals(0, mENLUtil.convertHex2Bin(event).length);
+    }
+
+    /**
+     * Sends a request to the meter, and returns the received ECHONET Lite packet.
+     * @param command command of {@link ENLUtil#makeEchonetLitePacket(String, byte[])}
+     * @param data parameter of the command
+     * @return ECHONET Lite packet
+     */
+    private byte[] request(final String command, final byte[] data) {
+        byte[] packet = mENLUtil.makeEchonetLitePacket(command, data);
+        byte[] event = mMeter.write(BP35C2.makeSendToCommand(SmartMeterSimulator.METER_ADDRESS, packet));
+        return mENLUtil.convertHex2Bin(event);
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ SmartMeterSimulator
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.smartmeter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Simulator of a smart meter behind a BP35C2 dongle.
+ * <p>
+ * It receives SKSENDTO commands written to the dongle, and returns the ERXUDP event which the
+ * dongle would write back, in the same format as a real dongle in binary mode.
+ * The meter answers Get and SetC requests for the properties used by the plugin.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class SmartMeterSimulator {
+
+    /** IPv6 address of the meter. */
+    static final String METER_ADDRESS = "FE80:0000:0000:0000:021C:6400:030C:12A4";
+
+    /** IPv6 address of the dongle. */
+    private static final String DONGLE_ADDRESS = "FE80:0000:0000:0000:021D:1290:1234:5678";
+
+    /** MAC address of the meter. */
+    static final String METER_MAC_ADDRESS = "001C640003123456";
+
+    /** Value of a history slot which is not measured yet. */
+    static final int HISTORY_NO_DATA = 0xFFFFFFFE;
+
+    /** Number of spaces before the data of SKSENDTO. */
+    private static final int SEND_TO_SPACES = 7;
+
+    private int mInstantaneousPower = 1234;
+
+    private short mRPhaseCurrent = 50;
+
+    private short mTPhaseCurrent = 70;
+
+    private int mOperationStatus = 0x30;
+
+    private int mUnit = 0x01;
+
+    private int mCollectionDay;
+
+    private int mNowSlot = IntegratedPowerWindow.SLOTS_PER_DAY - 1;
+
+    private final Set<Integer> mUnsupported = new HashSet<>();
+
+    private final List<Integer> mCollectionDayLog = new ArrayList<>();
+
+    private int mSendCount;
+
+    /**
+     * Sets the instantaneous power.
+     * @param power power in W
+     */
+    void setInstantaneousPower(final int power) {
+        mInstantaneousPower = power;
+    }
+
+    /**
+     * Sets the last measured slot of today. The later slots return {@link #HISTORY_NO_DATA}.
+     * @param slot slot of today
+     */
+    void setNowSlot(final int slot) {
+        mNowSlot = slot;
+    }
+
+    /**
+     * Makes the meter answer Get_SNA for the property.
+     * @param epc property
+     */
+    void setUnsupported(final int epc) {
+        mUnsupported.add(epc);
+    }
+
+    /**
+     * Gets the collection days which are set to 0xE5.
+     * @return collection days in the order of the requests
+     */
+    List<Integer> getCollectionDayLog() {
+        return mCollectionDayLog;
+    }
+
+    /**
+     * Gets the number of the SKSENDTO commands.
+     * @return number of the commands
+     */
+    int getSendCount() {
+        return mSendCount;
+    }
+
+    /**
+     * Gets the raw value of the history.
+     * @param daysBefore collection day
+     * @param slot slot of the day
+     * @return raw value
+     */
+    static int getHistoryValue(final int daysBefore, final int slot) {
+        return 10000 + (100 - daysBefore) * 100 + slot;
+    }
+
+    /**
+     * Handles a command written to the dongle.
+     * @param command SKSENDTO command
+     * @return ERXUDP event of the response
+     */
+    byte[] write(final byte[] command) {
+        String head = new String(command, 0, Math.min(command.length, 9));
+        if (!head.equals("SKSENDTO ")) {
+            throw new IllegalArgumentException("Not SKSENDTO: " + new String(command));
+        }
+        int pos = 0;
+        for (int spaces = 0; spaces < SEND_TO_SPACES; pos++) {
+            if (command[pos] == ' ') {
+                spaces++;
+            }
+        }
+        int length = Integer.parseInt(new String(command, pos - 5, 4), 16);
+        if (length != command.length - pos) {
+            throw new IllegalArgumentException("Wrong data length: " + length);
+        }
+        byte[] request = new byte[length];
+        System.arraycopy(command, pos, request, 0, length);
+        mSendCount++;
+        return toReceiveEvent(respond(request));
+    }
+
+    /**
+     * Makes a property notification (INF) of the meter.
+     * @param tid transaction ID
+     * @param epc property
+     * @param edt value
+     * @return ERXUDP event of the notification
+     */
+    byte[] makeNotification(final int tid, final int epc, final byte[] edt) {
+        ByteBuffer out = ByteBuffer.allocate(14 + edt.length);
+        putHeader(out, (byte) (tid >> 8), (byte) tid);
+        out.put(new byte[] {0x73, 1, (byte) epc, (byte) edt.length});
+        out.put(edt);
+        return toReceiveEvent(out.array());
+    }
+
+    private byte[] respond(final byte[] request) {
+        int esv = request[10] & 0xFF;
+        int epc = request[12] & 0xFF;
+        ByteBuffer out = ByteBuffer.allocate(256);
+        putHeader(out, request[2], request[3]);
+        if (mUnsupported.contains(epc)) {
+            out.put(new byte[] {(byte) (esv == 0x62 ? 0x52 : 0x51), 1, (byte) epc, 0});
+        } else if (esv == 0x61 && epc == 0xE5) {
+            mCollectionDay = request[14] & 0xFF;
+            mCollectionDayLog.add(mCollectionDay);
+            out.put(new byte[] {0x71, 1, (byte) 0xE5, 0});
+        } else if (esv == 0x62 && epc == 0xE2) {
+            out.put(new byte[] {0x72, 1, (byte) 0xE2, (byte) 194});
+            out.putShort((short) mCollectionDay);
+            for (int slot = 0; slot < IntegratedPowerWindow.SLOTS_PER_DAY; slot++) {
+                boolean measured = mCollectionDay > 0 || slot <= mNowSlot;
+                out.putInt(measured ? getHistoryValue(mCollectionDay, slot) : HISTORY_NO_DATA);
+            }
+        } else if (esv == 0x62 && epc == 0xE7) {
+            out.put(new byte[] {0x72, 1, (byte) 0xE7, 4});
+            out.putInt(mInstantaneousPower);
+        } else if (esv == 0x62 && epc == 0xE8) {
+            out.put(new byte[] {0x72, 1, (byte) 0xE8, 4});
+            out.putShort(mRPhaseCurrent);
+            out.putShort(mTPhaseCurrent);
+        } else if (esv == 0x62 && epc == 0x80) {
+            out.put(new byte[] {0x72, 1, (byte) 0x80, 1, (byte) mOperationStatus});
+        } else if (esv == 0x62 && epc == 0xE1) {
+            out.put(new byte[] {0x72, 1, (byte) 0xE1, 1, (byte) mUnit});
+        } else {
+            out.put(new byte[] {(byte) (esv == 0x62 ? 0x52 : 0x51), 1, (byte) epc, 0});
+        }
+        byte[] response = new byte[out.position()];
+        out.flip();
+        out.get(response);
+        return response;
+    }
+
+    private static void putHeader(final ByteBuffer out, final byte tid1, final byte tid2) {
+        out.put(new byte[] {0x10, (byte) 0x81, tid1, tid2, 0x02, (byte) 0x88, 0x01, 0x05, (byte) 0xFF, 0x01});
+    }
+
+    private static byte[] toReceiveEvent(final byte[] data) {
+        StringBuilder event = new StringBuilder("ERXUDP ")
+                .append(METER_ADDRESS).append(' ')
+                .append(DONGLE_ADDRESS).append(' ')
+                .append("0E1A 0E1A ").append(METER_MAC_ADDRESS).append(" 1 0 ")
+                .append(String.format(Locale.ENGLISH, "%04X", data.length)).append(' ');
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < event.length(); i++) {
+            out.write(event.charAt(i));
+        }
+        for (byte b : data) {
+            String hex = String.format(Locale.ENGLISH, "%02X", b & 0xFF);
+            out.write(hex.charAt(0));
+            out.write(hex.charAt(1));
+        }
+        out.write('\r');
+        out.write('\n');
+        return out.toByteArray();
+    }
+}
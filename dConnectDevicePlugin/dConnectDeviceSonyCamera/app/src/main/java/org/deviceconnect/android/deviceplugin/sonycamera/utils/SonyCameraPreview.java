@@ -9,6 +9,7 @@ package org.deviceconnect.android.deviceplugin.sonycamera.utils;
 import com.example.sony.cameraremote.SimpleRemoteApi;
 import com.example.sony.cameraremote.utils.SimpleLiveviewSlicer;
 
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -96,6 +97,20 @@ public class SonyCameraPreview extends Thread {
                         mWhileFetching = false;
                     }
                 });
+                mServer.setStreamEventListener(new MixedReplaceMediaServer.StreamEventListener() {
+                    @Override
+                    public byte[] onConnect(final MixedReplaceMediaServer.Request request) {
+                        return null;
+                    }
+                    @Override
+                    public void onDisconnect(final MixedReplaceMediaServer.Request request) {
+                        // 全てのクライアントが切断されたらプレビューを停止する
+                        MixedReplaceMediaServer server = mServer;
+                        if (server != null && server.getClientCount() == 0) {
+                            server.stop();
+                        }
+                    }
+                });
                 mServer.setServerName("SonyCameraDevicePlugin Server");
                 mServer.setContentType("image/jpg");
                 mServer.setTimeSlice(mTimeSlice);
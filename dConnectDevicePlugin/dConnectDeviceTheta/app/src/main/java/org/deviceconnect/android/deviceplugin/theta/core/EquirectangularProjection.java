@@ -0,0 +1,275 @@
+package org.deviceconnect.android.deviceplugin.theta.core;
+
+
+import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Projects an equirectangular image to a perspective view without OpenGL.
+ *
+ * The result is the same view as SphericalViewRenderer draws. The mapping from output pixels
+ * to source pixels is built once per view and output size, and cached while the view is not changed.
+ * The rows are split into bands and processed on a thread pool.
+ *
+ * This class does not depend on Android, so that it can be used in a headless process.
+ */
+public class EquirectangularProjection {
+
+    /**
+     * Number of cached remap tables.
+     */
+    private static final int MAX_CACHED_TABLES = 2;
+
+    /**
+     * Minimum number of rows processed by a task.
+     */
+    private static final int MIN_ROWS_PER_TASK = 16;
+
+    private final int mParallelism;
+
+    private final ExecutorService mExecutor;
+
+    /**
+     * Cached remap tables in order of use. The first one is the most recently used.
+     */
+    private final LinkedList<EquirectangularRemapTable> mTables = new LinkedList<EquirectangularRemapTable>();
+
+    /**
+     * Constructor. Uses as many threads as available processors.
+     */
+    public EquirectangularProjection() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param parallelism number of threads. If 1, the projection runs on the caller thread.
+     */
+    public EquirectangularProjection(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism is invalid: " + parallelism);
+        }
+        mParallelism = parallelism;
+        if (parallelism > 1) {
+            mExecutor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    Thread thread = new Thread(r, "EquirectangularProjection");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            mExecutor = null;
+        }
+    }
+
+    /**
+     * Projects the equirectangular image.
+     *
+     * @param source ARGB pixels of the equirectangular image
+     * @param sourceWidth width of the equirectangular image
+     * @param sourceHeight height of the equirectangular image
+     * @param view camera of the perspective view
+     * @param dest ARGB pixels of the output
+     * @param offset index of the top-left pixel of the view in dest
+     * @param stride number of pixels per row in dest
+     * @param width width of the view
+     * @param height height of the view
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public void project(final int[] source, final int sourceWidth, final int sourceHeight,
+                        final View view, final int[] dest, final int offset, final int stride,
+                        final int width, final int height) throws InterruptedException {
+        if (sourceWidth <= 0 || sourceHeight <= 0 || source.length < sourceWidth * sourceHeight) {
+            throw new IllegalArgumentException("source is invalid: " + sourceWidth + " x " + sourceHeight);
+        }
+        if (width <= 0 || height <= 0 || stride < width || dest.length < offset + (height - 1) * stride + width) {
+            throw new IllegalArgumentException("dest is invalid: " + width + " x " + height);
+        }
+
+        final EquirectangularRemapTable table = getTable(view, width, height, sourceWidth, sourceHeight);
+        runInBands(height, new Band() {
+            @Override
+            public void run(final int fromRow, final int toRow) {
+                table.remap(source, dest, offset, stride, fromRow, toRow);
+            }
+        });
+    }
+
+    /**
+     * Projects the equirectangular image as stereo views side by side.
+     *
+     * @param source ARGB pixels of the equirectangular image
+     * @param sourceWidth width of the equirectangular image
+     * @param sourceHeight height of the equirectangular image
+     * @param left camera of the left view
+     * @param right camera of the right view
+     * @param dest ARGB pixels of the output
+     * @param width width of the output
+     * @param height height of the output
+     * @throws InterruptedException if the current thread is interrupted
+     */
+    public void projectStereo(final int[] source, final int sourceWidth, final int sourceHeight,
+                              final View left, final View right,
+                              final int[] dest, final int width, final int height) throws InterruptedException {
+        int halfWidth = width / 2;
+        project(source, sourceWidth, sourceHeight, left, dest, 0, width, halfWidth, height);
+        project(source, sourceWidth, sourceHeight, right, dest, halfWidth, width, halfWidth, height);
+    }
+
+    /**
+     * Stops the threads. This instance can not be used after this method is called.
+     */
+    public void shutdown() {
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+        synchronized (mTables) {
+            mTables.clear();
+        }
+    }
+
+    private EquirectangularRemapTable getTable(final View view, final int width, final int height,
+                                               final int sourceWidth, final int sourceHeight)
+        throws InterruptedException {
+        synchronized (mTables) {
+            for (Iterator<EquirectangularRemapTable> it = mTables.iterator(); it.hasNext(); ) {
+                EquirectangularRemapTable table = it.next();
+                if (table.matches(view, width, height, sourceWidth, sourceHeight)) {
+                    it.remove();
+                    mTables.addFirst(table);
+                    return table;
+                }
+            }
+        }
+
+        final EquirectangularRemapTable table
+            = new EquirectangularRemapTable(view, width, height, sourceWidth, sourceHeight);
+        runInBands(height, new Band() {
+            @Override
+            public void run(final int fromRow, final int toRow) {
+                table.build(fromRow, toRow);
+            }
+        });
+
+        synchronized (mTables) {
+            mTables.addFirst(table);
+            while (mTables.size() > MAX_CACHED_TABLES) {
+                mTables.removeLast();
+            }
+        }
+        return table;
+    }
+
+    private void runInBands(final int height, final Band band) throws InterruptedException {
+        int tasks = Math.min(mParallelism, (height + MIN_ROWS_PER_TASK - 1) / MIN_ROWS_PER_TASK);
+        if (mExecutor == null || tasks <= 1) {
+            band.run(0, height);
+            return;
+        }
+
+        List<Callable<Void>> callables = new ArrayList<Callable<Void>>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            final int fromRow = height * i / tasks;
+            final int toRow = height * (i + 1) / tasks;
+            callables.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    band.run(fromRow, toRow);
+                    return null;
+                }
+            });
+        }
+        for (Future<Void> future : mExecutor.invokeAll(callables)) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+    }
+
+    private interface Band {
+        void run(int fromRow, int toRow);
+    }
+
+    /**
+     * Camera of a perspective view.
+     */
+    public static final class View {
+
+        static final int POSITION_X = 0;
+        static final int POSITION_Y = 1;
+        static final int POSITION_Z = 2;
+        static final int FRONT_X = 3;
+        static final int FRONT_Y = 4;
+        static final int FRONT_Z = 5;
+        static final int UP_X = 6;
+        static final int UP_Y = 7;
+        static final int UP_Z = 8;
+        static final int FOV = 9;
+        static final int RADIUS = 10;
+
+        final float[] mValues;
+
+        /**
+         * Constructor.
+         *
+         * @param position position of the camera
+         * @param front point which the camera looks at
+         * @param up upper direction of the camera
+         * @param fovDegree vertical field of view in degrees
+         * @param sphereRadius radius of the sphere
+         */
+        public View(final Vector3D position, final Vector3D front, final Vector3D up,
+                    final float fovDegree, final float sphereRadius) {
+            if (fovDegree <= 0 || fovDegree >= 180) {
+                throw new IllegalArgumentException("fov is invalid: " + fovDegree);
+            }
+            if (sphereRadius <= 0) {
+                throw new IllegalArgumentException("sphere radius is invalid: " + sphereRadius);
+            }
+            mValues = new float[] {
+                position.x(), position.y(), position.z(),
+                front.x(), front.y(), front.z(),
+                up.x(), up.y(), up.z(),
+                fovDegree, sphereRadius
+            };
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof View)) {
+                return false;
+            }
+            return Arrays.equals(mValues, ((View) o).mValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(mValues);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.deviceconnect.android.deviceplugin.theta.core;
+
+
+/**
+ * Lookup table which maps each pixel of a perspective view to a position on an equirectangular image.
+ *
+ * For each output pixel, the table holds the top-left source pixel and the 8-bit fractions
+ * for bilinear filtering, so that a frame can be projected without any trigonometric function.
+ */
+final class EquirectangularRemapTable {
+
+    /**
+     * Max width and height of a source image. The coordinates are packed into an int.
+     */
+    static final int MAX_SOURCE_SIZE = 0x7FFF;
+
+    /**
+     * Color of the pixels which do not hit the sphere. Same as the clear color of SphericalViewRenderer.
+     */
+    private static final int BACKGROUND = 0xFF000000;
+
+    private static final int NO_SOURCE = -1;
+
+    private static final int FRACTION_BITS = 8;
+
+    private static final int FRACTION_ONE = 1 << FRACTION_BITS;
+
+    private static final int FRACTION_MASK = FRACTION_ONE - 1;
+
+    private final EquirectangularProjection.View mView;
+    private final int mWidth;
+    private final int mHeight;
+    private final int mSourceWidth;
+    private final int mSourceHeight;
+
+    /**
+     * (y0 << 16 | x0) of the top-left source pixel, or {@link #NO_SOURCE}.
+     */
+    private final int[] mCoords;
+
+    /**
+     * (fy << 8 | fx) of the bilinear filter.
+     */
+    private final char[] mFractions;
+
+    private final float[] mPosition = new float[3];
+    private final float[] mForward = new float[3];
+    private final float[] mSide = new float[3];
+    private final float[] mUp = new float[3];
+    private final float mTanX;
+    private final float mTanY;
+
+    EquirectangularRemapTable(final EquirectangularProjection.View view, final int width, final int height,
+                              final int sourceWidth, final int sourceHeight) {
+        if (sourceWidth > MAX_SOURCE_SIZE || sourceHeight > MAX_SOURCE_SIZE) {
+            throw new IllegalArgumentException("source is too large: " + sourceWidth + " x " + sourceHeight);
+        }
+        mView = view;
+        mWidth = width;
+        mHeight = height;
+        mSourceWidth = sourceWidth;
+        mSourceHeight = sourceHeight;
+        mCoords = new int[width * height];
+        mFractions = new char[width * height];
+
+        // Same basis as Matrix.setLookAtM: the camera looks at the front point from its position.
+        float[] values = view.mValues;
+        mPosition[0] = values[EquirectangularProjection.View.POSITION_X];
+        mPosition[1] = values[EquirectangularProjection.View.POSITION_Y];
+        mPosition[2] = values[EquirectangularProjection.View.POSITION_Z];
+        mForward[0] = values[EquirectangularProjection.View.FRONT_X] - mPosition[0];
+        mForward[1] = values[EquirectangularProjection.View.FRONT_Y] - mPosition[1];
+        mForward[2] = values[EquirectangularProjection.View.FRONT_Z] - mPosition[2];
+        normalize(mForward);
+        float[] up = {
+            values[EquirectangularProjection.View.UP_X],
+            values[EquirectangularProjection.View.UP_Y],
+            values[EquirectangularProjection.View.UP_Z]
+        };
+        cross(mForward, up, mSide);
+        normalize(mSide);
+        cross(mSide, mForward, mUp);
+
+        // Same as Matrix.perspectiveM: fov is vertical.
+        double halfFov = Math.toRadians(values[EquirectangularProjection.View.FOV]) / 2.0;
+        mTanY = (float) Math.tan(halfFov);
+        mTanX = mTanY * width / height;
+    }
+
+    boolean matches(final EquirectangularProjection.View view, final int width, final int height,
+                    final int sourceWidth, final int sourceHeight) {
+        return mView.equals(view) && mWidth == width && mHeight == height
+            && mSourceWidth == sourceWidth && mSourceHeight == sourceHeight;
+    }
+
+    /**
+     * Builds the table for the specified rows.
+     *
+     * @param fromRow first row (inclusive)
+     * @param toRow last row (exclusive)
+     */
+    void build(final int fromRow, final int toRow) {
+        final float radius = mView.mValues[EquirectangularProjection.View.RADIUS];
+        final float px = mPosition[0];
+        final float py = mPosition[1];
+        final float pz = mPosition[2];
+        final float c = px * px + py * py + pz * pz - radius * radius;
+
+        for (int y = fromRow; y < toRow; y++) {
+            float ny = (1.0f - 2.0f * (y + 0.5f) / mHeight) * mTanY;
+            int index = y * mWidth;
+            for (int x = 0; x < mWidth; x++, index++) {
+                float nx = (2.0f * (x + 0.5f) / mWidth - 1.0f) * mTanX;
+                float dx = mForward[0] + nx * mSide[0] + ny * mUp[0];
+                float dy = mForward[1] + nx * mSide[1] + ny * mUp[1];
+                float dz = mForward[2] + nx * mSide[2] + ny * mUp[2];
+                float norm = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+                dx /= norm;
+                dy /= norm;
+                dz /= norm;
+
+                // Intersection with the sphere seen from inside.
+                float b = px * dx + py * dy + pz * dz;
+                float d = b * b - c;
+                if (d < 0) {
+                    mCoords[index] = NO_SOURCE;
+                    mFractions[index] = 0;
+                    continue;
+                }
+                float t = -b + (float) Math.sqrt(d);
+                float hx = px + t * dx;
+                float hy = py + t * dy;
+                float hz = pz + t * dz;
+
+                // Same texture coordinates as UVSphere.
+                double longitude = Math.atan2(hz, hx);
+                double latitude = Math.asin(Math.max(-1.0f, Math.min(1.0f, hy / radius)));
+                double u = 0.5 + longitude / (2.0 * Math.PI);
+                double v = 0.5 - latitude / Math.PI;
+                set(index, (float) (u * mSourceWidth - 0.5), (float) (v * mSourceHeight - 0.5));
+            }
+        }
+    }
+
+    private void set(final int index, final float sx, final float sy) {
+        int x0 = (int) Math.floor(sx);
+        int fx = Math.min(FRACTION_MASK, Math.round((sx - x0) * FRACTION_ONE));
+        x0 %= mSourceWidth;
+        if (x0 < 0) {
+            x0 += mSourceWidth;
+        }
+
+        int y0 = (int) Math.floor(sy);
+        int fy = Math.min(FRACTION_MASK, Math.round((sy - y0) * FRACTION_ONE));
+        if (y0 < 0) {
+            y0 = 0;
+            fy = 0;
+        } else if (y0 >= mSourceHeight - 1) {
+            y0 = mSourceHeight - 1;
+            fy = 0;
+        }
+
+        mCoords[index] = (y0 << 16) | x0;
+        mFractions[index] = (char) ((fy << FRACTION_BITS) | fx);
+    }
+
+    /**
+     * Projects the specified rows of the source image.
+     *
+     * @param source ARGB pixels of the equirectangular image
+     * @param dest ARGB pixels of the output
+     * @param offset index of the top-left pixel in dest
+     * @param stride number of pixels per row in dest
+     * @param fromRow first row (inclusive)
+     * @param toRow last row (exclusive)
+     */
+    void remap(final int[] source, final int[] dest, final int offset, final int stride,
+               final int fromRow, final int toRow) {
+        final int sw = mSourceWidth;
+        final int lastRow = (mSourceHeight - 1) * sw;
+        for (int y = fromRow; y < toRow; y++) {
+            int index = y * mWidth;
+            int out = offset + y * stride;
+            for (int x = 0; x < mWidth; x++, index++, out++) {
+                int coord = mCoords[index];
+                if (coord == NO_SOURCE) {
+                    dest[out] = BACKGROUND;
+                    continue;
+                }
+                int x0 = coord & 0xFFFF;
+                int x1 = x0 + 1 == sw ? 0 : x0 + 1;
+                int row0 = (coord >>> 16) * sw;
+                int row1 = row0 == lastRow ? row0 : row0 + sw;
+                int fraction = mFractions[index];
+                int fx = fraction & FRACTION_MASK;
+                int fy = fraction >>> FRACTION_BITS;
+
+                int top = lerp(source[row0 + x0], source[row0 + x1], fx);
+                int bottom = lerp(source[row1 + x0], source[row1 + x1], fx);
+                dest[out] = lerp(top, bottom, fy);
+            }
+        }
+    }
+
+    /**
+     * Interpolates 4 channels of ARGB colors at once.
+     */
+    private static int lerp(final int c0, final int c1, final int f) {
+        if (f == 0) {
+            return c0;
+        }
+        int g = FRACTION_ONE - f;
+        int rb = (((c0 & 0x00FF00FF) * g + (c1 & 0x00FF00FF) * f) >>> FRACTION_BITS) & 0x00FF00FF;
+        int ag = (((c0 >>> 8) & 0x00FF00FF) * g + ((c1 >>> 8) & 0x00FF00FF) * f) & 0xFF00FF00;
+        return ag | rb;
+    }
+
+    private static void cross(final float[] a, final float[] b, final float[] out) {
+        out[0] = a[1] * b[2] - a[2] * b[1];
+        out[1] = a[2] * b[0] - a[0] * b[2];
+        out[2] = a[0] * b[1] - a[1] * b[0];
+    }
+
+    private static void normalize(final float[] v) {
+        float norm = (float) Math.sqrt(v[0] * v[0] + v[1] * v[1] + v[2] * v[2]);
+        if (norm != 0) {
+            v[0] /= norm;
+            v[1] /= norm;
+            v[2] /= norm;
+        }
+    }
+}
@@ -1,29 +1,53 @@
 package org.deviceconnect.android.deviceplugin.theta.core;
 
 
+import org.deviceconnect.android.deviceplugin.theta.utils.MotionJpegFrame;
 import org.deviceconnect.android.deviceplugin.theta.utils.MotionJpegInputStream;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-public abstract class LivePreviewTask implements Runnable {
+/**
+ * Task to read a live preview of THETA.
+ * <p>
+ * A frame is shared by all listeners without copying. Each listener is called on its own thread,
+ * and a frame which arrives while the listener is busy replaces the frame waiting for the listener.
+ * So a slow listener drops frames instead of stalling the camera stream and other listeners.
+ * </p>
+ */
+public class LivePreviewTask implements Runnable {
 
-    private boolean mIsStarted;
+    private volatile boolean mIsStarted;
 
     private final LiveCamera mLiveCamera;
 
+    private final List<FrameDispatcher> mDispatchers = new CopyOnWriteArrayList<FrameDispatcher>();
+
     public LivePreviewTask(final LiveCamera liveCamera) {
         mLiveCamera = liveCamera;
     }
 
-    public void stop() {
-        if (!mIsStarted) {
-            return;
+    public void addFrameListener(final FrameListener listener) {
+        FrameDispatcher dispatcher = new FrameDispatcher(listener);
+        mDispatchers.add(dispatcher);
+        new Thread(dispatcher, "LivePreviewTask-FrameDispatcher").start();
+    }
+
+    public void removeFrameListener(final FrameListener listener) {
+        for (FrameDispatcher dispatcher : mDispatchers) {
+            if (dispatcher.mListener == listener) {
+                mDispatchers.remove(dispatcher);
+                dispatcher.close();
+            }
         }
-        mIsStarted = false;
     }
 
-    protected abstract void onFrame(byte[] frame);
+    public void stop() {
+        mIsStarted = false;
+        closeDispatchers();
+    }
 
     @Override
     public void run() {
@@ -33,15 +57,19 @@ public abstract class LivePreviewTask implements Runnable {
         try {
             is = mLiveCamera.getLiveStream();
             mjpeg = new MotionJpegInputStream(is);
-            byte[] frame;
+            MotionJpegFrame frame;
 
             while (mIsStarted && (frame = mjpeg.readFrame()) != null) {
-                onFrame(frame);
+                for (FrameDispatcher dispatcher : mDispatchers) {
+                    dispatcher.offer(frame);
+                }
+                frame.release();
             }
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
             mIsStarted = false;
+            closeDispatchers();
             try {
                 if (is != null) {
                     is.close();
@@ -55,4 +83,101 @@ public abstract class LivePreviewTask implements Runnable {
         }
     }
 
+    private void closeDispatchers() {
+        for (FrameDispatcher dispatcher : mDispatchers) {
+            mDispatchers.remove(dispatcher);
+            dispatcher.close();
+        }
+    }
+
+    /**
+     * Listener of live preview frames.
+     */
+    public interface FrameListener {
+
+        /**
+         * Called when a frame is received.
+         * <p>
+         * The frame is valid until this method returns. Call {@link MotionJpegFrame#retain()}
+         * to use it after that, and {@link MotionJpegFrame#release()} when it is no longer needed.
+         * </p>
+         * @param frame frame
+         */
+        void onFrame(MotionJpegFrame frame);
+
+    }
+
+    /**
+     * Delivers the latest frame to a listener on its own thread.
+     */
+    private static class FrameDispatcher implements Runnable {
+
+        private final FrameListener mListener;
+
+        private MotionJpegFrame mPending;
+
+        private boolean mClosed;
+
+        FrameDispatcher(final FrameListener listener) {
+            mListener = listener;
+        }
+
+        void offer(final MotionJpegFrame frame) {
+            MotionJpegFrame dropped;
+            synchronized (this) {
+                if (mClosed) {
+                    return;
+                }
+                frame.retain();
+                dropped = mPending;
+                mPending = frame;
+                notify();
+            }
+            if (dropped != null) {
+                dropped.release();
+            }
+        }
+
+        void close() {
+            MotionJpegFrame dropped;
+            synchronized (this) {
+                mClosed = true;
+                dropped = mPending;
+                mPending = null;
+                notify();
+            }
+            if (dropped != null) {
+                dropped.release();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                MotionJpegFrame frame;
+                synchronized (this) {
+                    try {
+                        while (mPending == null && !mClosed) {
+                            wait();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (mClosed) {
+                        return;
+                    }
+                    frame = mPending;
+                    mPending = null;
+                }
+                try {
+                    mListener.onFrame(frame);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                } finally {
+                    frame.release();
+                }
+            }
+        }
+    }
+
 }
@@ -9,6 +9,7 @@ import org.deviceconnect.android.deviceplugin.theta.core.sensor.DefaultHeadTrack
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.HeadTracker;
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.HeadTrackingListener;
 import org.deviceconnect.android.deviceplugin.theta.utils.BitmapUtils;
+import org.deviceconnect.android.deviceplugin.theta.utils.MotionJpegFrame;
 import org.deviceconnect.android.deviceplugin.theta.utils.Quaternion;
 import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
 
@@ -80,17 +81,18 @@ public class SphericalViewApi implements HeadTrackingListener {
         mRenderer = renderer;
         mRenderer.setScreenSettings(param.getWidth(), param.getHeight(), param.isStereo());
 
-        mLivePreviewTask = new LivePreviewTask(camera) {
+        mLivePreviewTask = new LivePreviewTask(camera);
+        mLivePreviewTask.addFrameListener(new LivePreviewTask.FrameListener() {
 
             @Override
-            protected void onFrame(final byte[] frame) {
-                Bitmap texture = BitmapFactory.decodeByteArray(frame, 0, frame.length);
+            public void onFrame(final MotionJpegFrame frame) {
+                Bitmap texture = BitmapFactory.decodeByteArray(frame.getData(), 0, frame.getLength());
                 // Fix texture size to power of two.
                 texture = BitmapUtils.resize(texture, 512, 256);
                 mRenderer.setTexture(texture);
             }
 
-        };
+        });
         mExecutor.execute(mLivePreviewTask);
 
         mState = State.RUNNING;
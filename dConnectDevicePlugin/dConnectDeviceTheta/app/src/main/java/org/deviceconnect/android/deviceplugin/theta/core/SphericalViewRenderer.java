@@ -28,7 +28,7 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
     /**
      * Distance of left and right eye: {@value} cm.
      */
-    private static final float DISTANCE_EYES = 10.0f / 100.0f;
+    public static final float DISTANCE_EYES = 10.0f / 100.0f;
     /**
      * Radius of sphere for photo.
      */
@@ -67,6 +67,7 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
     protected StereoImageType mStereoType = StereoImageType.HALF;
     private Camera mCamera = new Camera();
     private boolean mFlipVertical;
+    private boolean mFlipOutput;
 
     private UVSphere mShell;
 
@@ -112,6 +113,22 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
         mFlipVertical = isFlip;
     }
 
+    public boolean isFlipVertical() {
+        return mFlipVertical;
+    }
+
+    /**
+     * Flips the rendered image upside down by the projection matrix.
+     *
+     * glReadPixels returns rows from bottom to top, so an off-screen renderer can use this
+     * instead of flipping the read pixels on CPU.
+     *
+     * @param isFlip true if the rendered image is flipped
+     */
+    public void setFlipOutput(final boolean isFlip) {
+        mFlipOutput = isFlip;
+    }
+
     public void setStereoImageType(final StereoImageType type) {
         mStereoType = type;
     }
@@ -230,6 +247,9 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
 
         Matrix.setLookAtM(mViewMatrix, 0, x, y, z, frontX, frontY, frontZ, upX, upY, upZ);
         Matrix.perspectiveM(mProjectionMatrix, 0, fov, getScreenAspect(), Z_NEAR, Z_FAR);
+        if (mFlipOutput) {
+            Matrix.scaleM(mProjectionMatrix, 0, 1, -1, 1);
+        }
 
         GLES20.glUniformMatrix4fv(mModelMatrixHandle, 1, false, mModelMatrix, 0);
         GLES20.glUniformMatrix4fv(mProjectionMatrixHandle, 1, false, mProjectionMatrix, 0);
@@ -303,6 +323,7 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
         }
         mTexture = texture;
         mTextureUpdate = true;
+        notifyContentChanged();
     }
 
     /**
@@ -390,9 +411,14 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
         return mIsScreenSizeMutable;
     }
 
+    public float getSphereRadius() {
+        return mShell.getRadius();
+    }
+
     public void setSphereRadius(final float radius) {
         if (radius != mShell.getRadius()) {
             mShell = new UVSphere(radius, SHELL_DIVIDES);
+            notifyContentChanged();
         }
     }
 
@@ -402,6 +428,14 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
 
     public void setCamera(final Camera camera) {
         mCamera = camera;
+        notifyContentChanged();
+    }
+
+    private void notifyContentChanged() {
+        SurfaceListener listener = mSurfaceListener;
+        if (listener != null) {
+            listener.onContentChanged();
+        }
     }
 
     public static class CameraBuilder {
@@ -518,6 +552,10 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
                 Quaternion.quaternionFromAxisAndAngle(new Vector3D(1.0f, 0.0f, 0.0f), 0));
         }
 
+        public float getFovDegree() {
+            return mFovDegree;
+        }
+
         public Vector3D getPosition() {
             return mPosition;
         }
@@ -551,6 +589,11 @@ public class SphericalViewRenderer implements GLSurfaceView.Renderer {
 
         void onSurfaceChanged(final int width, final int height, final boolean isStereo);
 
+        /**
+         * Called when the camera, the sphere or the texture is changed.
+         */
+        void onContentChanged();
+
     }
 
     public enum StereoImageType {
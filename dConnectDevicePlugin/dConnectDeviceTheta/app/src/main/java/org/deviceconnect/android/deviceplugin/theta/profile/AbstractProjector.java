@@ -52,4 +52,8 @@ abstract class AbstractProjector implements Projector, SphericalViewRenderer.Sur
         mIsChangedImageSize = true;
     }
 
+    @Override
+    public void onContentChanged() {
+    }
+
 }
@@ -7,16 +7,27 @@ import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewRenderer;
 import org.deviceconnect.android.deviceplugin.theta.opengl.PixelBuffer;
 
 import java.io.ByteArrayOutputStream;
-import java.nio.IntBuffer;
 
 
 class DefaultProjector extends AbstractProjector {
 
+    static final int DEFAULT_QUALITY = 100;
+
+    private static final long MIN_INTERVAL = 100;
+
+    private final Object mRenderLock = new Object();
+
+    private final ByteArrayOutputStream mOutput = new ByteArrayOutputStream();
+
     private PixelBuffer mPixelBuffer;
 
     private Thread mThread;
 
-    private boolean mIsRequestedToStop;
+    private volatile boolean mIsRequestedToStop;
+
+    private boolean mIsRenderRequested = true;
+
+    private volatile int mQuality = DEFAULT_QUALITY;
 
     private byte[] mImageCache;
 
@@ -24,6 +35,43 @@ class DefaultProjector extends AbstractProjector {
     public void setRenderer(final SphericalViewRenderer renderer) {
         super.setRenderer(renderer);
         mRenderer.setSurfaceListener(this);
+        mRenderer.setFlipOutput(true);
+    }
+
+    public void setQuality(final int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality is invalid: " + quality);
+        }
+        mQuality = quality;
+        requestRender();
+    }
+
+    @Override
+    public void onSurfaceChanged(final int width, final int height, final boolean isStereo) {
+        super.onSurfaceChanged(width, height, isStereo);
+        requestRender();
+    }
+
+    @Override
+    public void onContentChanged() {
+        requestRender();
+    }
+
+    private void requestRender() {
+        synchronized (mRenderLock) {
+            mIsRenderRequested = true;
+            mRenderLock.notifyAll();
+        }
+    }
+
+    private boolean waitForRenderRequest() throws InterruptedException {
+        synchronized (mRenderLock) {
+            while (!mIsRenderRequested && !mIsRequestedToStop) {
+                mRenderLock.wait();
+            }
+            mIsRenderRequested = false;
+            return !mIsRequestedToStop;
+        }
     }
 
     @Override
@@ -41,7 +89,9 @@ class DefaultProjector extends AbstractProjector {
                 try {
                     mScreen.onStart(DefaultProjector.this);
 
-                    while(!mIsRequestedToStop) {
+                    // Renders only when the camera, the texture or the screen is changed.
+                    // The last frame remains in the media server while nothing is changed.
+                    while (waitForRenderRequest()) {
                         long start = System.currentTimeMillis();
 
                         if (mIsChangedImageSize) {
@@ -54,7 +104,7 @@ class DefaultProjector extends AbstractProjector {
                         readBuffer();
 
                         long end = System.currentTimeMillis();
-                        long interval = 100 - (end - start);
+                        long interval = MIN_INTERVAL - (end - start);
                         if (interval > 0) {
                             Thread.sleep(interval);
                         }
@@ -82,7 +132,10 @@ class DefaultProjector extends AbstractProjector {
         if (mThread == null) {
             return false;
         }
-        mIsRequestedToStop = true;
+        synchronized (mRenderLock) {
+            mIsRequestedToStop = true;
+            mRenderLock.notifyAll();
+        }
         return true;
     }
 
@@ -91,7 +144,7 @@ class DefaultProjector extends AbstractProjector {
         return mImageCache;
     }
 
-    private void prepareBuffer() {
+    protected void prepareBuffer() {
         if (mPixelBuffer == null) {
             int width = mRenderer.getScreenWidth();
             int height = mRenderer.getScreenHeight();
@@ -101,7 +154,7 @@ class DefaultProjector extends AbstractProjector {
         }
     }
 
-    private void disposeBuffer() {
+    protected void disposeBuffer() {
         if (mPixelBuffer != null) {
             mPixelBuffer.destroy();
             mPixelBuffer = null;
@@ -109,33 +162,22 @@ class DefaultProjector extends AbstractProjector {
     }
 
     private void readBuffer() {
-        Bitmap b = mPixelBuffer.convertToBitmap();
-        reverse(b);
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        b.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-        byte[] jpeg = baos.toByteArray();
+        // The rows are already flipped by the renderer. See SphericalViewRenderer#setFlipOutput.
+        Bitmap b = readPixels();
+        mOutput.reset();
+        b.compress(Bitmap.CompressFormat.JPEG, mQuality, mOutput);
+        byte[] jpeg = mOutput.toByteArray();
         mImageCache = jpeg;
 
         mScreen.onProjected(this, jpeg);
     }
 
-    private void reverse(final Bitmap b) {
-        int width = b.getWidth();
-        int height = b.getHeight();
-        IntBuffer buf = IntBuffer.allocate(width * height);
-        IntBuffer tmp = IntBuffer.allocate(width * height);
-        b.copyPixelsToBuffer(buf);
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                tmp.put((height - i - 1) * width + j, buf.get(i * width + j));
-            }
-        }
-        b.copyPixelsFromBuffer(tmp);
-        buf.clear();
+    protected void draw() throws InterruptedException {
+        mPixelBuffer.render();
     }
 
-    protected void draw() {
-        mPixelBuffer.render();
+    protected Bitmap readPixels() {
+        return mPixelBuffer.convertToBitmap();
     }
 
 }
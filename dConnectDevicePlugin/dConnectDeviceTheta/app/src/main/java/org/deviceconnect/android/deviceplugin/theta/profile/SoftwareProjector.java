@@ -0,0 +1,87 @@
+package org.deviceconnect.android.deviceplugin.theta.profile;
+
+
+import android.graphics.Bitmap;
+
+import org.deviceconnect.android.deviceplugin.theta.core.EquirectangularProjection;
+import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewRenderer;
+import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
+
+
+/**
+ * Projector which projects the texture on CPU instead of OpenGL ES.
+ */
+class SoftwareProjector extends DefaultProjector {
+
+    private static final EquirectangularProjection PROJECTION = new EquirectangularProjection();
+
+    private Bitmap mTexture;
+
+    private int[] mTexturePixels;
+
+    private int[] mPixels;
+
+    private Bitmap mBitmap;
+
+    @Override
+    protected void prepareBuffer() {
+        int width = mRenderer.getOutputWidth();
+        int height = mRenderer.getOutputHeight();
+        mPixels = new int[width * height];
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    @Override
+    protected void disposeBuffer() {
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mPixels = null;
+        mTexture = null;
+        mTexturePixels = null;
+    }
+
+    @Override
+    protected void draw() throws InterruptedException {
+        Bitmap texture = mRenderer.getTexture();
+        if (texture == null || texture.isRecycled()) {
+            return;
+        }
+        int textureWidth = texture.getWidth();
+        int textureHeight = texture.getHeight();
+        if (texture != mTexture) {
+            mTexturePixels = new int[textureWidth * textureHeight];
+            texture.getPixels(mTexturePixels, 0, textureWidth, 0, 0, textureWidth, textureHeight);
+            mTexture = texture;
+        }
+
+        int width = mBitmap.getWidth();
+        int height = mBitmap.getHeight();
+        SphericalViewRenderer.Camera camera = mRenderer.getCamera();
+        if (mRenderer.isStereo()) {
+            SphericalViewRenderer.Camera[] cameras
+                = camera.getCamerasForStereo(SphericalViewRenderer.DISTANCE_EYES);
+            PROJECTION.projectStereo(mTexturePixels, textureWidth, textureHeight,
+                createView(cameras[0]), createView(cameras[1]), mPixels, width, height);
+        } else {
+            PROJECTION.project(mTexturePixels, textureWidth, textureHeight,
+                createView(camera), mPixels, 0, width, width, height);
+        }
+        mBitmap.setPixels(mPixels, 0, width, 0, 0, width, height);
+    }
+
+    @Override
+    protected Bitmap readPixels() {
+        return mBitmap;
+    }
+
+    private EquirectangularProjection.View createView(final SphericalViewRenderer.Camera camera) {
+        Vector3D front = camera.getFrontDirection();
+        if (mRenderer.isFlipVertical()) {
+            front = new Vector3D(front.x(), -front.y(), front.z());
+        }
+        return new EquirectangularProjection.View(camera.getPosition(), front,
+            camera.getUpperDirection(), camera.getFovDegree(), mRenderer.getSphereRadius());
+    }
+}
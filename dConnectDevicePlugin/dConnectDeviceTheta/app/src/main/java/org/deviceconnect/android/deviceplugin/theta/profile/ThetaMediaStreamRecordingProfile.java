@@ -18,7 +18,7 @@ import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceClient;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaDeviceException;
 import org.deviceconnect.android.deviceplugin.theta.core.ThetaObject;
 import org.deviceconnect.android.deviceplugin.theta.utils.BitmapUtils;
-import org.deviceconnect.android.deviceplugin.theta.utils.MixedReplaceMediaServer;
+import org.deviceconnect.android.deviceplugin.theta.utils.MotionJpegFrame;
 import org.deviceconnect.android.event.Event;
 import org.deviceconnect.android.event.EventError;
 import org.deviceconnect.android.event.EventManager;
@@ -31,6 +31,7 @@ import org.deviceconnect.android.profile.api.PostApi;
 import org.deviceconnect.android.profile.api.PutApi;
 import org.deviceconnect.android.provider.FileManager;
 import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 
 import java.io.ByteArrayOutputStream;
 import java.util.Iterator;
@@ -512,30 +513,30 @@ public abstract class ThetaMediaStreamRecordingProfile extends MediaStreamRecord
             if (mServer == null) {
                 mServer = new MixedReplaceMediaServer();
                 mServer.setServerName("Live Preview Server");
+                mServer.setContentType("image/jpeg");
                 mServer.start();
             }
             final String segment = SEGMENT_LIVE_PREVIEW;
             if (mLivePreviewTask == null) {
-                mLivePreviewTask = new LivePreviewTask(liveCamera) {
+                mLivePreviewTask = new LivePreviewTask(liveCamera);
+                mLivePreviewTask.addFrameListener(new LivePreviewTask.FrameListener() {
                     @Override
-                    protected void onFrame(final byte[] frame) {
-                        byte[] b;
+                    public void onFrame(final MotionJpegFrame frame) {
                         if (width != null || height != null) {
-                            b = resizeFrame(frame, width, height);
+                            offerFrame(segment, resizeFrame(frame, width, height));
                         } else {
-                            b = frame;
+                            offerFrame(segment, frame);
                         }
-                        offerFrame(segment, b);
                     }
-                };
+                });
                 mExecutor.execute(mLivePreviewTask);
             }
-            return mServer.getUrl() + "/" + segment;
+            return mServer.getUrl(segment);
         }
     }
 
-    private byte[] resizeFrame(final byte[] frame, final Integer newWidth, final Integer newHeight) {
-        Bitmap preview = BitmapFactory.decodeByteArray(frame, 0, frame.length);
+    private byte[] resizeFrame(final MotionJpegFrame frame, final Integer newWidth, final Integer newHeight) {
+        Bitmap preview = BitmapFactory.decodeByteArray(frame.getData(), 0, frame.getLength());
         int w = newWidth != null ? newWidth : preview.getWidth();
         int h = newHeight != null ? newHeight : preview.getHeight();
         Bitmap resized = BitmapUtils.resize(preview, w, h);
@@ -552,6 +553,17 @@ public abstract class ThetaMediaStreamRecordingProfile extends MediaStreamRecord
         }
     }
 
+    private void offerFrame(final String segment, final MotionJpegFrame frame) {
+        synchronized (mLockObj) {
+            if (mServer != null) {
+                // The frame is returned to the pool of the reader, so copy it into a buffer of the server.
+                byte[] buffer = mServer.obtainBuffer(frame.getLength());
+                System.arraycopy(frame.getData(), 0, buffer, 0, frame.getLength());
+                mServer.offerMedia(segment, buffer, frame.getLength());
+            }
+        }
+    }
+
     private void stopLivePreview() {
         synchronized (mLockObj) {
             if (mLivePreviewTask != null) {
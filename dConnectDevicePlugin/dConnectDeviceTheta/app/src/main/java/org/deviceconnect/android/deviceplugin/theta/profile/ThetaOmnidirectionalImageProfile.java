@@ -21,7 +21,6 @@ import org.deviceconnect.android.deviceplugin.theta.ThetaDeviceService;
 import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewParam;
 import org.deviceconnect.android.deviceplugin.theta.core.SphericalViewRenderer;
 import org.deviceconnect.android.deviceplugin.theta.core.sensor.HeadTracker;
-import org.deviceconnect.android.deviceplugin.theta.utils.MixedReplaceMediaServer;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.OmnidirectionalImageProfile;
 import org.deviceconnect.android.profile.api.DConnectApi;
@@ -29,6 +28,7 @@ import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PutApi;
 import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -47,7 +47,12 @@ import java.util.concurrent.TimeUnit;
  * @author NTT DOCOMO, INC.
  */
 public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfile
-    implements MixedReplaceMediaServer.ServerEventListener {
+    implements MixedReplaceMediaServer.StreamEventListener {
+
+    /**
+     * Value of projection parameter to render MJPEG output on CPU by {@link SoftwareProjector}.
+     */
+    private static final String PROJECTION_SOFTWARE = "software";
 
     private final Object mLockObj = new Object();
 
@@ -144,7 +149,21 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
                 mServer = new MixedReplaceMediaServer();
                 mServer.setServerName("ThetaDevicePlugin Server");
                 mServer.setContentType("image/jpeg");
-                mServer.setServerEventListener(ThetaOmnidirectionalImageProfile.this);
+                mServer.setStreamEventListener(ThetaOmnidirectionalImageProfile.this);
+                mServer.setServerEventListener(new MixedReplaceMediaServer.ServerEventListener() {
+                    @Override
+                    public void onStart() {
+                    }
+
+                    @Override
+                    public void onStop() {
+                        mViewers.clear();
+                    }
+
+                    @Override
+                    public void onError() {
+                    }
+                });
                 mServer.start();
             }
         }
@@ -172,7 +191,11 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
 
                         projector = new OverlayProjector(getContext());
                     } else if (isRequiredMJPEG(outputs)) {
-                        projector = new DefaultProjector();
+                        if (isSoftwareProjection(getProjection(request))) {
+                            projector = new SoftwareProjector();
+                        } else {
+                            projector = new DefaultProjector();
+                        }
                     } else {
                         MessageUtils.setInvalidRequestParameterError(response);
                         ((ThetaDeviceService) getContext()).sendResponse(response);
@@ -290,6 +313,10 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
         return false;
     }
 
+    private boolean isSoftwareProjection(final String projection) {
+        return PROJECTION_SOFTWARE.equals(projection);
+    }
+
     @Override
     public byte[] onConnect(final MixedReplaceMediaServer.Request request) {
         String resourceUri = request.getUri();
@@ -304,7 +331,7 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
 
     @Override
     public void onDisconnect(final MixedReplaceMediaServer.Request request) {
-        if (!request.isGet()) {
+        if (!request.isSnapshot()) {
             Viewer viewer = mViewers.remove(request.getUri());
             if (viewer != null) {
                 viewer.stop();
@@ -312,11 +339,6 @@ public class ThetaOmnidirectionalImageProfile extends OmnidirectionalImageProfil
         }
     }
 
-    @Override
-    public void onCloseServer() {
-        mViewers.clear();
-    }
-
     private String omitParameters(final String uri) {
         if (uri == null) {
             return null;
@@ -0,0 +1,54 @@
+package org.deviceconnect.android.deviceplugin.theta.utils;
+
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of byte arrays used for frames of a Motion JPEG stream.
+ * <p>
+ * Frames of a live preview are about the same size, so a pooled array is reused
+ * if it is large enough, otherwise a new array is allocated.
+ * </p>
+ */
+final class FrameBufferPool {
+
+    private final int mMaxSize;
+
+    private final ConcurrentLinkedQueue<byte[]> mBuffers = new ConcurrentLinkedQueue<byte[]>();
+
+    private final AtomicInteger mSize = new AtomicInteger();
+
+    FrameBufferPool(final int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Obtains an array whose length is at least the specified size.
+     * @param size required size
+     * @return array
+     */
+    byte[] obtain(final int size) {
+        byte[] buf;
+        while ((buf = mBuffers.poll()) != null) {
+            mSize.decrementAndGet();
+            if (buf.length >= size) {
+                return buf;
+            }
+        }
+        // Leave some room so that a slightly larger next frame can reuse this array.
+        return new byte[size + (size >> 3)];
+    }
+
+    /**
+     * Returns an array to this pool.
+     * @param buf array
+     */
+    void recycle(final byte[] buf) {
+        if (mSize.incrementAndGet() <= mMaxSize) {
+            mBuffers.offer(buf);
+        } else {
+            mSize.decrementAndGet();
+        }
+    }
+}
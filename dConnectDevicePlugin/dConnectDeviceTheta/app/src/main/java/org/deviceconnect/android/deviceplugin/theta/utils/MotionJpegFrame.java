@@ -0,0 +1,68 @@
+package org.deviceconnect.android.deviceplugin.theta.utils;
+
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A JPEG frame read by {@link MotionJpegInputStream}.
+ * <p>
+ * The frame data is a pooled array shared by all consumers of the frame, so it is not copied
+ * for each consumer. The frame is reference counted: a consumer which keeps the frame must call
+ * {@link #retain()}, and must call {@link #release()} when it no longer needs the frame.
+ * When the last reference is released, the array is returned to the pool and must not be used.
+ * </p>
+ */
+public final class MotionJpegFrame {
+
+    private final byte[] mData;
+
+    private final int mLength;
+
+    private final FrameBufferPool mPool;
+
+    private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+    MotionJpegFrame(final byte[] data, final int length, final FrameBufferPool pool) {
+        mData = data;
+        mLength = length;
+        mPool = pool;
+    }
+
+    /**
+     * Gets the frame data without copying.
+     * <p>
+     * The array may be longer than the frame. Only the first {@link #getLength()} bytes are valid.
+     * </p>
+     * @return frame data
+     */
+    public byte[] getData() {
+        return mData;
+    }
+
+    /**
+     * Gets the length of the frame data.
+     * @return length
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * Increments the reference count.
+     */
+    public void retain() {
+        mRefCount.incrementAndGet();
+    }
+
+    /**
+     * Decrements the reference count.
+     * <p>
+     * The frame data is returned to the pool when the reference count becomes 0.
+     * </p>
+     */
+    public void release() {
+        if (mRefCount.decrementAndGet() == 0) {
+            mPool.recycle(mData);
+        }
+    }
+}
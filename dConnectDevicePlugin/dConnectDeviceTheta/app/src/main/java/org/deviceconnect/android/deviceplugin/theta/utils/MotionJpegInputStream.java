@@ -1,68 +1,272 @@
 package org.deviceconnect.android.deviceplugin.theta.utils;
 
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Properties;
 
-public class MotionJpegInputStream extends DataInputStream {
+/**
+ * Reader of a Motion JPEG (multipart/x-mixed-replace) stream.
+ * <p>
+ * Each frame is read into a pooled array of {@link MotionJpegFrame}. If the part header has
+ * Content-Length, the frame is read directly from the stream into the array. Otherwise,
+ * the end of the frame is found by the multipart boundary, or by the EOI marker if the
+ * boundary is not known.
+ * </p>
+ */
+public class MotionJpegInputStream implements Closeable {
 
-    private final byte[] SOI_MARKER = {(byte) 0xFF, (byte) 0xD8 };
-    private final byte[] EOF_MARKER = { (byte) 0xFF, (byte) 0xD9 };
-    private final String CONTENT_LENGTH = "Content-Length";
-    private final static int HEADER_MAX_LENGTH = 100;
-    private final static int FRAME_MAX_LENGTH = 40000 + HEADER_MAX_LENGTH;
+    private static final byte[] SOI_MARKER = {(byte) 0xFF, (byte) 0xD8 };
+    private static final byte[] EOI_MARKER = { (byte) 0xFF, (byte) 0xD9 };
+    private static final int[] EOI_FAILURE = failureOf(EOI_MARKER);
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes();
+    private static final int HEADER_MAX_LENGTH = 4 * 1024;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final int FRAME_MAX_LENGTH = 8 * 1024 * 1024;
+    private static final int FRAME_INITIAL_LENGTH = 64 * 1024;
+    private static final int POOL_SIZE = 8;
 
-    private int mContentLength = -1;
+    private final InputStream mIn;
 
-    public MotionJpegInputStream(InputStream in) {
-        super(new BufferedInputStream(in, FRAME_MAX_LENGTH));
+    private final byte[] mBuffer = new byte[READ_BUFFER_SIZE];
+
+    private int mPos;
+
+    private int mLimit;
+
+    private byte[] mBoundary;
+
+    private int[] mBoundaryFailure;
+
+    private int mLastFrameLength = FRAME_INITIAL_LENGTH;
+
+    private final FrameBufferPool mPool = new FrameBufferPool(POOL_SIZE);
+
+    public MotionJpegInputStream(final InputStream in) {
+        mIn = in;
     }
 
-    private int getEndOfSequence(DataInputStream in, byte[] sequence) throws IOException {
-        int seqIndex = 0;
-        byte c;
-        for(int i=0; i < FRAME_MAX_LENGTH; i++) {
-            c = (byte) in.readUnsignedByte();
-            if(c == sequence[seqIndex]) {
-                seqIndex++;
-                if(seqIndex == sequence.length) return i + 1;
-            } else seqIndex = 0;
-        }
-        return -1;
+    /**
+     * Reads a next frame.
+     * <p>
+     * The caller must call {@link MotionJpegFrame#release()} when the frame is no longer needed.
+     * </p>
+     * @return frame, or null if the stream is ended
+     * @throws IOException if the stream is broken
+     */
+    public MotionJpegFrame readFrame() throws IOException {
+        int soi = findStartOfImage();
+        if (soi < 0) {
+            return null;
+        }
+        int contentLength = parseHeader(mPos, soi);
+        mPos = soi;
+        if (contentLength > 0) {
+            return readFrame(contentLength);
+        } else {
+            return scanFrame();
+        }
     }
 
-    private int getStartOfSequence(DataInputStream in, byte[] sequence) throws IOException {
-        int end = getEndOfSequence(in, sequence);
-        return (end < 0) ? (-1) : (end - sequence.length);
+    @Override
+    public void close() throws IOException {
+        mIn.close();
     }
 
-    private int parseContentLength(byte[] headerBytes) throws IOException, NumberFormatException {
-        ByteArrayInputStream headerIn = new ByteArrayInputStream(headerBytes);
-        Properties props = new Properties();
-        props.load(headerIn);
-        return Integer.parseInt(props.getProperty(CONTENT_LENGTH));
+    private int findStartOfImage() throws IOException {
+        int scanned = 0;
+        int skipped = 0;
+        while (true) {
+            for (int i = mPos + Math.max(0, scanned - 1); i < mLimit - 1; i++) {
+                if (mBuffer[i] == SOI_MARKER[0] && mBuffer[i + 1] == SOI_MARKER[1]) {
+                    return i;
+                }
+            }
+            scanned = mLimit - mPos;
+            if (scanned > HEADER_MAX_LENGTH) {
+                // Garbage before the frame; skip it but keep the last byte which may be the first half of SOI.
+                skipped += scanned - 1;
+                if (skipped > FRAME_MAX_LENGTH) {
+                    throw new IOException("SOI marker is not found.");
+                }
+                mPos = mLimit - 1;
+                scanned = 1;
+            }
+            if (!fill()) {
+                return -1;
+            }
+        }
     }
 
-    public byte[] readFrame() throws IOException {
-        mark(FRAME_MAX_LENGTH);
-        int headerLen = getStartOfSequence(this, SOI_MARKER);
-        reset();
-        byte[] header = new byte[headerLen];
-        readFully(header);
-        try {
-            mContentLength = parseContentLength(header);
-        } catch (NumberFormatException nfe) {
-            mContentLength = getEndOfSequence(this, EOF_MARKER);
-        }
-        reset();
-        byte[] frameData = new byte[mContentLength];
-        skipBytes(headerLen);
-        readFully(frameData);
-        return frameData;
+    private int parseHeader(final int from, final int to) {
+        int contentLength = -1;
+        int lineStart = from;
+        for (int i = from; i <= to; i++) {
+            if (i < to && mBuffer[i] != '\n') {
+                continue;
+            }
+            int lineEnd = i;
+            if (lineEnd > lineStart && mBuffer[lineEnd - 1] == '\r') {
+                lineEnd--;
+            }
+            if (mBoundary == null && lineEnd - lineStart > 2
+                    && mBuffer[lineStart] == '-' && mBuffer[lineStart + 1] == '-') {
+                mBoundary = new byte[lineEnd - lineStart];
+                System.arraycopy(mBuffer, lineStart, mBoundary, 0, mBoundary.length);
+                mBoundaryFailure = failureOf(mBoundary);
+            } else if (startsWithIgnoreCase(lineStart, lineEnd, CONTENT_LENGTH)) {
+                contentLength = parseValue(lineStart + CONTENT_LENGTH.length, lineEnd);
+            }
+            lineStart = i + 1;
+        }
+        return contentLength;
+    }
+
+    private boolean startsWithIgnoreCase(final int from, final int to, final byte[] name) {
+        if (to - from < name.length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            byte c = mBuffer[from + i];
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            if (c != name[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
+    private int parseValue(final int from, final int to) {
+        int i = from;
+        while (i < to && mBuffer[i] == ' ') {
+            i++;
+        }
+        if (i == to || mBuffer[i++] != ':') {
+            return -1;
+        }
+        while (i < to && mBuffer[i] == ' ') {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        for (; i < to && mBuffer[i] >= '0' && mBuffer[i] <= '9'; i++, digits++) {
+            value = value * 10 + (mBuffer[i] - '0');
+            if (value > FRAME_MAX_LENGTH) {
+                return -1;
+            }
+        }
+        return digits > 0 ? (int) value : -1;
+    }
+
+    private MotionJpegFrame readFrame(final int length) throws IOException {
+        byte[] data = mPool.obtain(length);
+        int n = Math.min(length, mLimit - mPos);
+        System.arraycopy(mBuffer, mPos, data, 0, n);
+        mPos += n;
+        while (n < length) {
+            int read = mIn.read(data, n, length - n);
+            if (read < 0) {
+                mPool.recycle(data);
+                throw new EOFException();
+            }
+            n += read;
+        }
+        return new MotionJpegFrame(data, length, mPool);
+    }
+
+    private MotionJpegFrame scanFrame() throws IOException {
+        byte[] pattern = mBoundary != null ? mBoundary : EOI_MARKER;
+        int[] failure = mBoundary != null ? mBoundaryFailure : EOI_FAILURE;
+        byte[] data = mPool.obtain(mLastFrameLength);
+        int length = 0;
+        int matched = 0;
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                // The last part may not be followed by the boundary.
+                if (pattern == mBoundary) {
+                    length = trimLineBreaks(data, length);
+                    if (length >= EOI_MARKER.length && data[length - 2] == EOI_MARKER[0]
+                            && data[length - 1] == EOI_MARKER[1]) {
+                        return new MotionJpegFrame(data, length, mPool);
+                    }
+                }
+                mPool.recycle(data);
+                throw new EOFException();
+            }
+            int end = -1;
+            for (int i = mPos; i < mLimit; i++) {
+                byte c = mBuffer[i];
+                while (matched > 0 && c != pattern[matched]) {
+                    matched = failure[matched - 1];
+                }
+                if (c == pattern[matched] && ++matched == pattern.length) {
+                    end = i + 1;
+                    break;
+                }
+            }
+            int n = (end >= 0 ? end : mLimit) - mPos;
+            if (length + n > data.length) {
+                if (length + n > FRAME_MAX_LENGTH + pattern.length) {
+                    mPool.recycle(data);
+                    throw new IOException("Frame is too large.");
+                }
+                byte[] newData = mPool.obtain(Math.max(length + n, data.length * 2));
+                System.arraycopy(data, 0, newData, 0, length);
+                mPool.recycle(data);
+                data = newData;
+            }
+            System.arraycopy(mBuffer, mPos, data, length, n);
+            length += n;
+            mPos += n;
+            if (end >= 0) {
+                break;
+            }
+        }
+        if (pattern == mBoundary) {
+            // Exclude the boundary and the line break before it.
+            length = trimLineBreaks(data, length - pattern.length);
+        }
+        mLastFrameLength = length;
+        return new MotionJpegFrame(data, length, mPool);
+    }
+
+    private static int trimLineBreaks(final byte[] data, final int length) {
+        int end = length;
+        while (end > 0 && (data[end - 1] == '\r' || data[end - 1] == '\n')) {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean fill() throws IOException {
+        if (mPos > 0) {
+            System.arraycopy(mBuffer, mPos, mBuffer, 0, mLimit - mPos);
+            mLimit -= mPos;
+            mPos = 0;
+        }
+        int read = mIn.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (read < 0) {
+            return false;
+        }
+        mLimit += read;
+        return true;
+    }
+
+    private static int[] failureOf(final byte[] pattern) {
+        int[] failure = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = failure[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            failure[i] = k;
+        }
+        return failure;
+    }
 }
@@ -166,4 +166,13 @@ public class OmnidirectionalImageProfile extends DConnectProfile
     public static String getOutput(final Intent request) {
         return request.getStringExtra(PARAM_OUTPUT);
     }
+
+    /**
+     * Gets a projection method from the specified request.
+     * @param request Request data
+     * @return projection method
+     */
+    public static String getProjection(final Intent request) {
+        return request.getStringExtra(PARAM_PROJECTION);
+    }
 }
@@ -121,4 +121,9 @@ public interface OmnidirectionalImageProfileConstants extends DConnectProfileCon
      */
     String PARAM_OUTPUT = "output";
 
+    /**
+     * Parameter: {@value} .
+     */
+    String PARAM_PROJECTION = "projection";
+
 }
@@ -0,0 +1,166 @@
+/*
+ EquirectangularProjectionTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.theta.core;
+
+import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.deviceconnect.android.deviceplugin.theta.core.EquirectangularRemapTableTest.createCoordinateImage;
+import static org.deviceconnect.android.deviceplugin.theta.core.EquirectangularRemapTableTest.sourceX;
+import static org.deviceconnect.android.deviceplugin.theta.core.EquirectangularRemapTableTest.sourceY;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link EquirectangularProjection}.
+ * @author NTT DOCOMO, INC.
+ */
+public class EquirectangularProjectionTest {
+
+    private static final int SOURCE_WIDTH = 256;
+
+    private static final int SOURCE_HEIGHT = 128;
+
+    private static final int[] SOURCE = createCoordinateImage(SOURCE_WIDTH, SOURCE_HEIGHT);
+
+    private static final Vector3D ORIGIN = new Vector3D(0, 0, 0);
+
+    private static final Vector3D UP = new Vector3D(0, 1, 0);
+
+    private EquirectangularProjection mProjection;
+
+    @Before
+    public void setUp() {
+        mProjection = new EquirectangularProjection(4);
+    }
+
+    @After
+    public void tearDown() {
+        mProjection.shutdown();
+    }
+
+    @Test
+    public void project_centerOfView() throws Exception {
+        int width = 33;
+        int height = 33;
+        int[] dest = new int[width * height];
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view(new Vector3D(0, 0, 1), 60),
+            dest, 0, width, width, height);
+
+        // Longitude 90 degrees, latitude 0.
+        int center = dest[height / 2 * width + width / 2];
+        assertEquals(191, sourceX(center));
+        assertEquals(63, sourceY(center));
+    }
+
+    @Test
+    public void project_parallelSameAsSingleThread() throws Exception {
+        int width = 160;
+        int height = 120;
+        EquirectangularProjection.View view = view(new Vector3D(1, 0.3f, -0.5f), 75);
+
+        int[] expected = new int[width * height];
+        EquirectangularProjection single = new EquirectangularProjection(1);
+        try {
+            single.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view, expected, 0, width, width, height);
+        } finally {
+            single.shutdown();
+        }
+
+        int[] actual = new int[width * height];
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view, actual, 0, width, width, height);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void project_cachedTableFollowsView() throws Exception {
+        int width = 16;
+        int height = 16;
+        int[] front = new int[width * height];
+        int[] side = new int[width * height];
+        int[] frontAgain = new int[width * height];
+
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view(new Vector3D(1, 0, 0), 60),
+            front, 0, width, width, height);
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view(new Vector3D(0, 0, 1), 60),
+            side, 0, width, width, height);
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view(new Vector3D(1, 0, 0), 60),
+            frontAgain, 0, width, width, height);
+
+        assertNotEquals(front[0], side[0]);
+        assertArrayEquals(front, frontAgain);
+    }
+
+    @Test
+    public void projectStereo_sideBySide() throws Exception {
+        int width = 64;
+        int height = 32;
+        EquirectangularProjection.View left = view(new Vector3D(0, 0, -1), 60);
+        EquirectangularProjection.View right = view(new Vector3D(0, 0, 1), 60);
+
+        int[] dest = new int[width * height];
+        mProjection.projectStereo(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, left, right, dest, width, height);
+
+        int[] expectedLeft = new int[width / 2 * height];
+        int[] expectedRight = new int[width / 2 * height];
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, left, expectedLeft, 0, width / 2, width / 2, height);
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, right, expectedRight, 0, width / 2, width / 2, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width / 2; x++) {
+                assertEquals(expectedLeft[y * width / 2 + x], dest[y * width + x]);
+                assertEquals(expectedRight[y * width / 2 + x], dest[y * width + width / 2 + x]);
+            }
+        }
+    }
+
+    @Test
+    public void project_roundTrip() throws Exception {
+        // Turn the camera to the longitude of each column and read the column back at the center.
+        int size = 3;
+        int[] dest = new int[size * size];
+        for (int x = 0; x < SOURCE_WIDTH; x += 3) {
+            double longitude = ((x + 0.5) / SOURCE_WIDTH - 0.5) * 2.0 * Math.PI;
+            Vector3D front = new Vector3D((float) Math.cos(longitude), 0, (float) Math.sin(longitude));
+            mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view(front, 30), dest, 0, size, size, size);
+            int actual = sourceX(dest[size + 1]);
+            int d = Math.abs(actual - x);
+            assertTrue("x=" + x + ", actual=" + actual, Math.min(d, SOURCE_WIDTH - d) <= 1);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void project_destTooSmall() throws Exception {
+        mProjection.project(SOURCE, SOURCE_WIDTH, SOURCE_HEIGHT, view(new Vector3D(1, 0, 0), 60),
+            new int[10], 0, 4, 4, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void project_sourceTooSmall() throws Exception {
+        mProjection.project(new int[10], SOURCE_WIDTH, SOURCE_HEIGHT, view(new Vector3D(1, 0, 0), 60),
+            new int[16], 0, 4, 4, 4);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void view_invalidFov() {
+        view(new Vector3D(1, 0, 0), 180);
+    }
+
+    @Test
+    public void view_equals() {
+        assertEquals(view(new Vector3D(1, 0, 0), 60), view(new Vector3D(1, 0, 0), 60));
+        assertEquals(view(new Vector3D(1, 0, 0), 60).hashCode(), view(new Vector3D(1, 0, 0), 60).hashCode());
+        assertNotEquals(view(new Vector3D(1, 0, 0), 60), view(new Vector3D(1, 0, 0), 45));
+    }
+
+    private static EquirectangularProjection.View view(final Vector3D front, final float fov) {
+        return new EquirectangularProjection.View(ORIGIN, front, UP, fov, 1);
+    }
+}
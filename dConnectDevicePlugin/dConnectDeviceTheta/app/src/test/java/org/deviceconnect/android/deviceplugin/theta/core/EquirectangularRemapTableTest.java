@@ -0,0 +1,230 @@
+/*
+ EquirectangularRemapTableTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.theta.core;
+
+import org.deviceconnect.android.deviceplugin.theta.utils.Vector3D;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link EquirectangularRemapTable}.
+ * <p>
+ * The source image has the column index in the blue channel and the row index in the green channel,
+ * so the projected pixel tells which source pixel the table picked.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class EquirectangularRemapTableTest {
+
+    private static final int SOURCE_WIDTH = 256;
+
+    private static final int SOURCE_HEIGHT = 128;
+
+    private static final int BACKGROUND = 0xFF000000;
+
+    private static final Vector3D ORIGIN = new Vector3D(0, 0, 0);
+
+    private static final Vector3D UP = new Vector3D(0, 1, 0);
+
+    private static final int[] SOURCE = createCoordinateImage(SOURCE_WIDTH, SOURCE_HEIGHT);
+
+    @Test
+    public void remap_front() {
+        // Longitude 0, latitude 0 is the center of the image.
+        int pixel = projectCenter(ORIGIN, new Vector3D(1, 0, 0), UP);
+        assertEquals(127, sourceX(pixel));
+        assertEquals(63, sourceY(pixel));
+    }
+
+    @Test
+    public void remap_quarterTurns() {
+        int right = projectCenter(ORIGIN, new Vector3D(0, 0, 1), UP);
+        assertEquals(191, sourceX(right));
+        assertEquals(63, sourceY(right));
+
+        int left = projectCenter(ORIGIN, new Vector3D(0, 0, -1), UP);
+        assertEquals(63, sourceX(left));
+        assertEquals(63, sourceY(left));
+    }
+
+    @Test
+    public void remap_elevation() {
+        int up45 = projectCenter(ORIGIN, new Vector3D(1, 1, 0), UP);
+        assertEquals(127, sourceX(up45));
+        assertEquals(31, sourceY(up45));
+
+        int down45 = projectCenter(ORIGIN, new Vector3D(1, -1, 0), UP);
+        assertEquals(127, sourceX(down45));
+        assertEquals(95, sourceY(down45));
+    }
+
+    @Test
+    public void remap_poles_clampRows() {
+        int top = projectCenter(ORIGIN, new Vector3D(0, 1, 0), new Vector3D(0, 0, 1));
+        assertEquals(0, sourceY(top));
+
+        int bottom = projectCenter(ORIGIN, new Vector3D(0, -1, 0), new Vector3D(0, 0, 1));
+        assertEquals(SOURCE_HEIGHT - 1, sourceY(bottom));
+    }
+
+    @Test
+    public void remap_seam_wrapsColumns() {
+        // Longitude 180 degrees is between the last and the first column.
+        int[] source = new int[4 * 2];
+        for (int y = 0; y < 2; y++) {
+            source[y * 4] = 0xFF000064;
+            source[y * 4 + 3] = 0xFF0000C8;
+        }
+        EquirectangularRemapTable table = buildTable(
+            new EquirectangularProjection.View(ORIGIN, new Vector3D(-1, 0, 0), UP, 90, 1), 1, 1, 4, 2);
+        int[] dest = new int[1];
+        table.remap(source, dest, 0, 1, 0, 1);
+        assertEquals(0xFF000096, dest[0]);
+    }
+
+    @Test
+    public void remap_cameraOffCenter() {
+        // From (0.5, 0, 0) along +z, the ray hits the sphere at longitude 60 degrees.
+        int pixel = projectCenter(new Vector3D(0.5f, 0, 0), new Vector3D(0.5f, 0, 1), UP);
+        assertEquals(170, sourceX(pixel));
+        assertEquals(63, sourceY(pixel));
+    }
+
+    @Test
+    public void remap_missingSphere_fillsBackground() {
+        int pixel = projectCenter(new Vector3D(2, 0, 0), new Vector3D(2, 1, 0), UP);
+        assertEquals(BACKGROUND, pixel);
+    }
+
+    @Test
+    public void remap_roundTrip() {
+        // Look at the center of each source pixel and expect to get the same pixel back.
+        for (int y = 4; y < SOURCE_HEIGHT - 4; y += 7) {
+            for (int x = 0; x < SOURCE_WIDTH; x += 5) {
+                double longitude = ((x + 0.5) / SOURCE_WIDTH - 0.5) * 2.0 * Math.PI;
+                double latitude = (0.5 - (y + 0.5) / SOURCE_HEIGHT) * Math.PI;
+                Vector3D front = new Vector3D(
+                    (float) (Math.cos(latitude) * Math.cos(longitude)),
+                    (float) Math.sin(latitude),
+                    (float) (Math.cos(latitude) * Math.sin(longitude)));
+                int pixel = projectCenter(ORIGIN, front, UP);
+                assertTrue("x=" + x + ", y=" + y + ": " + sourceX(pixel),
+                    distance(x, sourceX(pixel), SOURCE_WIDTH) <= 1);
+                assertTrue("x=" + x + ", y=" + y + ": " + sourceY(pixel),
+                    Math.abs(y - sourceY(pixel)) <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void remap_horizontalFieldOfView() {
+        // 90 degrees vertical fov on a square view is 90 degrees horizontal, too.
+        // The edges of the view are at longitude -45 and +45 degrees.
+        int width = 64;
+        EquirectangularRemapTable table = buildTable(
+            new EquirectangularProjection.View(ORIGIN, new Vector3D(1, 0, 0), UP, 90, 1),
+            width, width, SOURCE_WIDTH, SOURCE_HEIGHT);
+        int[] dest = new int[width * width];
+        table.remap(SOURCE, dest, 0, width, 0, width);
+
+        int row = width / 2 * width;
+        assertTrue(Math.abs(sourceX(dest[row]) - 96) <= 1);
+        assertTrue(Math.abs(sourceX(dest[row + width - 1]) - 159) <= 1);
+        for (int x = 1; x < width; x++) {
+            assertTrue(sourceX(dest[row + x]) >= sourceX(dest[row + x - 1]));
+        }
+    }
+
+    @Test
+    public void remap_rowsAndStride() {
+        int width = 8;
+        int height = 6;
+        int stride = 12;
+        int offset = 2;
+        EquirectangularProjection.View view
+            = new EquirectangularProjection.View(ORIGIN, new Vector3D(1, 0, 0), UP, 60, 1);
+        EquirectangularRemapTable table = buildTable(view, width, height, SOURCE_WIDTH, SOURCE_HEIGHT);
+
+        int[] whole = new int[width * height];
+        table.remap(SOURCE, whole, 0, width, 0, height);
+
+        int[] dest = new int[offset + height * stride];
+        table.remap(SOURCE, dest, offset, stride, 0, 2);
+        table.remap(SOURCE, dest, offset, stride, 2, height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                assertEquals(whole[y * width + x], dest[offset + y * stride + x]);
+            }
+            for (int x = width; x < stride && offset + y * stride + x < dest.length; x++) {
+                assertEquals(0, dest[offset + y * stride + x]);
+            }
+        }
+    }
+
+    @Test
+    public void matches() {
+        EquirectangularProjection.View view
+            = new EquirectangularProjection.View(ORIGIN, new Vector3D(1, 0, 0), UP, 60, 1);
+        EquirectangularRemapTable table = new EquirectangularRemapTable(view, 8, 6, 256, 128);
+        assertTrue(table.matches(
+            new EquirectangularProjection.View(ORIGIN, new Vector3D(1, 0, 0), UP, 60, 1), 8, 6, 256, 128));
+        assertFalse(table.matches(
+            new EquirectangularProjection.View(ORIGIN, new Vector3D(1, 0, 0), UP, 61, 1), 8, 6, 256, 128));
+        assertFalse(table.matches(view, 8, 6, 512, 256));
+        assertFalse(table.matches(view, 6, 8, 256, 128));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_sourceTooLarge() {
+        EquirectangularProjection.View view
+            = new EquirectangularProjection.View(ORIGIN, new Vector3D(1, 0, 0), UP, 60, 1);
+        new EquirectangularRemapTable(view, 8, 6, EquirectangularRemapTable.MAX_SOURCE_SIZE + 1, 128);
+    }
+
+    private static int projectCenter(final Vector3D position, final Vector3D front, final Vector3D up) {
+        EquirectangularProjection.View view = new EquirectangularProjection.View(position, front, up, 90, 1);
+        EquirectangularRemapTable table = buildTable(view, 1, 1, SOURCE_WIDTH, SOURCE_HEIGHT);
+        int[] dest = new int[1];
+        table.remap(SOURCE, dest, 0, 1, 0, 1);
+        return dest[0];
+    }
+
+    private static EquirectangularRemapTable buildTable(final EquirectangularProjection.View view,
+                                                        final int width, final int height,
+                                                        final int sourceWidth, final int sourceHeight) {
+        EquirectangularRemapTable table
+            = new EquirectangularRemapTable(view, width, height, sourceWidth, sourceHeight);
+        table.build(0, height);
+        return table;
+    }
+
+    static int[] createCoordinateImage(final int width, final int height) {
+        int[] image = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image[y * width + x] = 0xFF000000 | (y << 8) | x;
+            }
+        }
+        return image;
+    }
+
+    static int sourceX(final int pixel) {
+        return pixel & 0xFF;
+    }
+
+    static int sourceY(final int pixel) {
+        return (pixel >> 8) & 0xFF;
+    }
+
+    private static int distance(final int x0, final int x1, final int width) {
+        int d = Math.abs(x0 - x1);
+        return Math.min(d, width - d);
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ MotionJpegInputStreamTest
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.theta.utils;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link MotionJpegInputStream} with a live preview stream.
+ * <p>
+ * The fixtures have the same part headers as the live preview of THETA, with and without
+ * Content-Length. Each part is a 64x32 JPEG.
+ * Another stream can be replayed by specifying the file with the system property
+ * {@value #PROPERTY_REPLAY_FILE}.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class MotionJpegInputStreamTest {
+
+    /** Stream whose parts have Content-Length. */
+    private static final String FIXTURE = "/theta_preview.mjpeg";
+
+    /** Stream whose parts do not have Content-Length. */
+    private static final String FIXTURE_NO_LENGTH = "/theta_preview_no_length.mjpeg";
+
+    /** System property of the file to replay. */
+    private static final String PROPERTY_REPLAY_FILE = "theta.replay";
+
+    /** Lengths of the JPEG frames in the fixtures. */
+    private static final int[] FRAME_LENGTHS = {831, 809, 782, 817, 814};
+
+    /** Number of times to replay the stream when measuring the allocation. */
+    private static final int REPLAY_COUNT = 500;
+
+    /** Allowed bytes allocated per frame. A frame object is allowed, but its data must not be allocated. */
+    private static final double MAX_BYTES_PER_FRAME = 128;
+
+    @Test
+    public void readFrame_withContentLength() throws IOException {
+        assertFrames(readAll(load(FIXTURE)));
+    }
+
+    @Test
+    public void readFrame_withoutContentLength() throws IOException {
+        assertFrames(readAll(load(FIXTURE_NO_LENGTH)));
+    }
+
+    @Test
+    public void readFrame_withoutBoundary() throws IOException {
+        // Only JPEG images are concatenated; frames are split by the EOI marker.
+        List<byte[]> frames = readAll(load(FIXTURE));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] frame : frames) {
+            out.write(frame);
+        }
+        assertFrames(readAll(out.toByteArray()));
+    }
+
+    @Test
+    public void readFrame_sameFramesWithAndWithoutContentLength() throws IOException {
+        List<byte[]> frames = readAll(load(FIXTURE));
+        List<byte[]> scanned = readAll(load(FIXTURE_NO_LENGTH));
+        assertEquals(frames.size(), scanned.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertArrayEquals("frame " + i, frames.get(i), scanned.get(i));
+        }
+    }
+
+    @Test
+    public void readFrame_readsByteByByte() throws IOException {
+        // The stream may return only a part of the frame at a time.
+        final byte[] data = load(FIXTURE_NO_LENGTH);
+        InputStream in = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(final byte[] b, final int off, final int len) {
+                return super.read(b, off, Math.min(len, 1));
+            }
+        };
+        assertFrames(readAll(new MotionJpegInputStream(in)));
+    }
+
+    @Test(expected = EOFException.class)
+    public void readFrame_truncated() throws IOException {
+        byte[] data = load(FIXTURE);
+        MotionJpegInputStream in = new MotionJpegInputStream(
+                new ByteArrayInputStream(Arrays.copyOf(data, data.length - 100)));
+        while (in.readFrame() != null) {
+            // Read until the truncated frame.
+        }
+    }
+
+    @Test
+    public void release_returnsBufferToPool() throws IOException {
+        for (String fixture : new String[] {FIXTURE, FIXTURE_NO_LENGTH}) {
+            MotionJpegInputStream in = new MotionJpegInputStream(new ByteArrayInputStream(load(fixture)));
+            MotionJpegFrame first = in.readFrame();
+            MotionJpegFrame second = in.readFrame();
+            // The first frame is not released, so its array must not be reused.
+            assertNotSame(fixture, first.getData(), second.getData());
+
+            byte[] secondData = second.getData();
+            second.release();
+            MotionJpegFrame third = in.readFrame();
+            assertSame(fixture, secondData, third.getData());
+
+            // A retained frame is returned to the pool after the last release.
+            byte[] thirdData = third.getData();
+            third.retain();
+            third.release();
+            MotionJpegFrame fourth = in.readFrame();
+            assertNotSame(fixture, thirdData, fourth.getData());
+            third.release();
+            fourth.release();
+            MotionJpegFrame fifth = in.readFrame();
+            assertTrue(fixture, fifth.getData() == thirdData || fifth.getData() == fourth.getData());
+            first.release();
+            fifth.release();
+            assertNull(in.readFrame());
+        }
+    }
+
+    @Test
+    public void readFrame_doesNotAllocateFrameData() throws IOException {
+        com.sun.management.ThreadMXBean bean = getThreadMXBean();
+        Assume.assumeTrue(bean != null);
+
+        for (String fixture : new String[] {FIXTURE, FIXTURE_NO_LENGTH}) {
+            byte[] data = load(fixture);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            for (int i = 0; i < REPLAY_COUNT * 2; i++) {
+                out.write(data);
+            }
+            MotionJpegInputStream in = new MotionJpegInputStream(new ByteArrayInputStream(out.toByteArray()));
+            // Warm up
+            int frames = replay(in, REPLAY_COUNT * FRAME_LENGTHS.length);
+
+            long threadId = Thread.currentThread().getId();
+            long before = bean.getThreadAllocatedBytes(threadId);
+            frames += replay(in, REPLAY_COUNT * FRAME_LENGTHS.length);
+            long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+
+            assertEquals(REPLAY_COUNT * 2 * FRAME_LENGTHS.length, frames);
+            double bytesPerFrame = (double) allocated / (REPLAY_COUNT * FRAME_LENGTHS.length);
+            assertTrue(fixture + ": allocated " + allocated + " bytes (" + bytesPerFrame + " bytes per frame)",
+                    bytesPerFrame < MAX_BYTES_PER_FRAME);
+        }
+    }
+
+    @Test
+    public void replay() throws IOException {
+        String file = System.getProperty(PROPERTY_REPLAY_FILE);
+        Assume.assumeTrue(file != null);
+
+        List<byte[]> frames = readAll(new MotionJpegInputStream(new FileInputStream(new File(file))));
+        assertTrue(frames.size() > 0);
+        for (int i = 0; i < frames.size(); i++) {
+            assertJpeg("frame " + i, frames.get(i));
+        }
+    }
+
+    /**
+     * Checks the frames read from the fixture.
+     * @param frames frames
+     * @throws IOException if a frame cannot be decoded
+     */
+    private static void assertFrames(final List<byte[]> frames) throws IOException {
+        assertEquals(FRAME_LENGTHS.length, frames.size());
+        for (int i = 0; i < frames.size(); i++) {
+            assertEquals("frame " + i, FRAME_LENGTHS[i], frames.get(i).length);
+            BufferedImage image = assertJpeg("frame " + i, frames.get(i));
+            assertEquals(64, image.getWidth());
+            assertEquals(32, image.getHeight());
+        }
+    }
+
+    /**
+     * Checks that the frame is exactly one JPEG image.
+     * @param message message of the assertion
+     * @param frame frame
+     * @return decoded image
+     * @throws IOException if the frame cannot be decoded
+     */
+    private static BufferedImage assertJpeg(final String message, final byte[] frame) throws IOException {
+        assertTrue(message, frame.length > 4);
+        assertEquals(message, (byte) 0xFF, frame[0]);
+        assertEquals(message, (byte) 0xD8, frame[1]);
+        assertEquals(message, (byte) 0xFF, frame[frame.length - 2]);
+        assertEquals(message, (byte) 0xD9, frame[frame.length - 1]);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(frame));
+        assertNotNull(message, image);
+        return image;
+    }
+
+    /**
+     * Reads frames and releases them.
+     * @param in stream
+     * @param count number of frames to read
+     * @return number of the frames read
+     * @throws IOException if the stream is broken
+     */
+    private static int replay(final MotionJpegInputStream in, final int count) throws IOException {
+        int frames = 0;
+        for (int i = 0; i < count; i++) {
+            MotionJpegFrame frame = in.readFrame();
+            if (frame == null) {
+                break;
+            }
+            frame.release();
+            frames++;
+        }
+        return frames;
+    }
+
+    private static List<byte[]> readAll(final byte[] data) throws IOException {
+        return readAll(new MotionJpegInputStream(new ByteArrayInputStream(data)));
+    }
+
+    private static List<byte[]> readAll(final MotionJpegInputStream in) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        try {
+            MotionJpegFrame frame;
+            while ((frame = in.readFrame()) != null) {
+                frames.add(Arrays.copyOf(frame.getData(), frame.getLength()));
+                frame.release();
+            }
+        } finally {
+            in.close();
+        }
+        return frames;
+    }
+
+    private static byte[] load(final String name) throws IOException {
+        InputStream in = MotionJpegInputStreamTest.class.getResourceAsStream(name);
+        assertNotNull(name + " is not found.", in);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Get the ThreadMXBean which can measure allocated bytes.
+     * @return ThreadMXBean, or null if it is not supported
+     */
+    private static com.sun.management.ThreadMXBean getThreadMXBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        sunBean.setThreadAllocatedMemoryEnabled(true);
+        return sunBean;
+    }
+}
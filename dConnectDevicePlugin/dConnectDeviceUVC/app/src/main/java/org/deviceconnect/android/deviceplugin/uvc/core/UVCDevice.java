@@ -31,6 +31,8 @@ public class UVCDevice {
 
     private static final double DEFAULT_MAX_FPS = 30.0d;
 
+    private static final int DEFAULT_PREVIEW_JPEG_QUALITY = 100;
+
     private static final int VS_FORMAT_MJPEG = 0x06;
 
     private static final int[] SUPPORTED_PAYLOAD_FORMATS = {
@@ -69,6 +71,8 @@ public class UVCDevice {
 
     private double mMaxFps;
 
+    private int mPreviewJpegQuality = DEFAULT_PREVIEW_JPEG_QUALITY;
+
     private long mLastFrameTime = -1;
 
     private PendingPermissionRequest mPermissionRequest;
@@ -336,6 +340,14 @@ public class UVCDevice {
         mMinFrameInterval = (long) (1000 / maxFrameRate);
     }
 
+    public int getPreviewJpegQuality() {
+        return mPreviewJpegQuality;
+    }
+
+    public void setPreviewJpegQuality(final int quality) {
+        mPreviewJpegQuality = quality;
+    }
+
     public boolean setNearestPreviewSize(final int requestedWidth,
                                          final int requestedHeight) {
         PreviewOption option = getNearestPreviewSize(requestedWidth, requestedHeight);
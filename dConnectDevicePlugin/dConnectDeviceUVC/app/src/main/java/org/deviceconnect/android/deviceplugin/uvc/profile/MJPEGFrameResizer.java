@@ -0,0 +1,291 @@
+/*
+ MJPEGFrameResizer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.deviceplugin.uvc.profile;
+
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
+
+import java.io.ByteArrayOutputStream;
+import java.util.logging.Logger;
+
+/**
+ * Motion JPEGのフレームを指定されたサイズに変換するクラス.
+ * <p>
+ * フレームのサイズが指定されたサイズと同じ場合は、デコードせずにそのまま返す。
+ * </p>
+ * <p>
+ * 縮小する場合は、{@link BitmapFactory.Options#inSampleSize}で1/2、1/4、1/8に縮小しながらデコードする。
+ * JPEGのデコーダはDCTの段階で縮小するため、フルサイズでデコードするよりも処理量とメモリが少なくて済む。
+ * 残りの拡大縮小はフィルタ付きで描画し、最後に1回だけJPEGにエンコードする。
+ * </p>
+ * <p>
+ * デコード先とエンコード先のバッファは再利用するため、このクラスは同じスレッドから使用すること。
+ * エンコードしたフレームは、サーバのバッファプールから取得したバッファにコピーして渡すため、
+ * フレーム毎に配列を確保しない。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class MJPEGFrameResizer {
+
+    /**
+     * デフォルトのJPEGの品質.
+     */
+    static final int DEFAULT_QUALITY = 100;
+
+    /**
+     * デコード時に指定できる最大の縮小率.
+     */
+    private static final int MAX_SAMPLE_SIZE = 8;
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("uvc.dplugin");
+
+    /**
+     * 変換後の横幅.
+     */
+    private final int mWidth;
+
+    /**
+     * 変換後の縦幅.
+     */
+    private final int mHeight;
+
+    /**
+     * JPEGの品質.
+     */
+    private int mQuality = DEFAULT_QUALITY;
+
+    /**
+     * フレームのサイズを取得するためのオプション.
+     */
+    private final BitmapFactory.Options mBoundsOptions = new BitmapFactory.Options();
+
+    /**
+     * デコードしたフレームのビットマップ. 次のフレームのデコードに再利用する.
+     */
+    private Bitmap mDecoded;
+
+    /**
+     * 変換後のサイズのビットマップ.
+     */
+    private Bitmap mScaled;
+
+    /**
+     * 変換後のサイズに描画するためのキャンバス.
+     */
+    private Canvas mCanvas;
+
+    /**
+     * 拡大縮小時のフィルタを指定するペイント.
+     */
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * 描画先の矩形.
+     */
+    private final Rect mDstRect = new Rect();
+
+    /**
+     * エンコード先のバッファ.
+     */
+    private final FrameOutputStream mOutput = new FrameOutputStream();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param width 変換後の横幅
+     * @param height 変換後の縦幅
+     */
+    MJPEGFrameResizer(final int width, final int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("size is invalid: " + width + " x " + height);
+        }
+        mWidth = width;
+        mHeight = height;
+        mBoundsOptions.inJustDecodeBounds = true;
+        mDstRect.set(0, 0, width, height);
+    }
+
+    /**
+     * 変換後の横幅を取得する.
+     *
+     * @return 変換後の横幅
+     */
+    int getWidth() {
+        return mWidth;
+    }
+
+    /**
+     * 変換後の縦幅を取得する.
+     *
+     * @return 変換後の縦幅
+     */
+    int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * JPEGの品質を設定する.
+     *
+     * @param quality JPEGの品質(0〜100)
+     */
+    synchronized void setQuality(final int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("quality is invalid: " + quality);
+        }
+        mQuality = quality;
+    }
+
+    /**
+     * フレームを変換して、サーバに渡す.
+     *
+     * @param frame Motion JPEGのフレーム
+     * @param server 変換後のフレームを配信するサーバ
+     * @return 変換に成功した場合はtrue、それ以外はfalse
+     */
+    synchronized boolean resize(final byte[] frame, final MixedReplaceMediaServer server) {
+        BitmapFactory.decodeByteArray(frame, 0, frame.length, mBoundsOptions);
+        int srcWidth = mBoundsOptions.outWidth;
+        int srcHeight = mBoundsOptions.outHeight;
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            mLogger.warning("MotionJPEG Frame could not be decoded to bitmap.");
+            return false;
+        }
+        if (srcWidth == mWidth && srcHeight == mHeight) {
+            server.offerMedia(frame);
+            return true;
+        }
+
+        try {
+            Bitmap decoded = decode(frame, calculateSampleSize(srcWidth, srcHeight));
+            if (decoded == null) {
+                mLogger.warning("MotionJPEG Frame could not be decoded to bitmap.");
+                return false;
+            }
+
+            Bitmap result = decoded;
+            if (decoded.getWidth() != mWidth || decoded.getHeight() != mHeight) {
+                if (mScaled == null) {
+                    mScaled = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+                    mCanvas = new Canvas(mScaled);
+                }
+                mCanvas.drawBitmap(decoded, null, mDstRect, mPaint);
+                result = mScaled;
+            }
+
+            mOutput.reset();
+            if (!result.compress(Bitmap.CompressFormat.JPEG, mQuality, mOutput)) {
+                mLogger.warning("MotionJPEG Frame could not be encoded to JPEG.");
+                return false;
+            }
+            int length = mOutput.size();
+            byte[] buffer = server.obtainBuffer(length);
+            System.arraycopy(mOutput.getBuffer(), 0, buffer, 0, length);
+            server.offerMedia(null, buffer, length);
+            return true;
+        } catch (OutOfMemoryError e) {
+            mLogger.warning("MotionJPEG Frame could not be decoded to bitmap for: " + e.getMessage());
+            release();
+            return false;
+        }
+    }
+
+    /**
+     * 使用しているビットマップを解放する.
+     */
+    synchronized void release() {
+        if (mDecoded != null) {
+            mDecoded.recycle();
+            mDecoded = null;
+        }
+        if (mScaled != null) {
+            mScaled.recycle();
+            mScaled = null;
+            mCanvas = null;
+        }
+    }
+
+    /**
+     * 変換後のサイズを下回らない範囲で、最大の縮小率を計算する.
+     *
+     * @param srcWidth フレームの横幅
+     * @param srcHeight フレームの縦幅
+     * @return 縮小率(1、2、4、8のいずれか)
+     */
+    private int calculateSampleSize(final int srcWidth, final int srcHeight) {
+        int sampleSize = 1;
+        while (sampleSize < MAX_SAMPLE_SIZE
+                && srcWidth / (sampleSize * 2) >= mWidth
+                && srcHeight / (sampleSize * 2) >= mHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * フレームを指定した縮小率でデコードする.
+     * <p>
+     * Android 4.4以降では、前回デコードしたビットマップを再利用する。
+     * </p>
+     *
+     * @param frame Motion JPEGのフレーム
+     * @param sampleSize 縮小率
+     * @return デコードしたビットマップ
+     */
+    private Bitmap decode(final byte[] frame, final int sampleSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inMutable = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT && mDecoded != null) {
+            options.inBitmap = mDecoded;
+        }
+
+        Bitmap decoded;
+        try {
+            decoded = BitmapFactory.decodeByteArray(frame, 0, frame.length, options);
+        } catch (IllegalArgumentException e) {
+            // 再利用できないサイズの場合は新しく確保する
+            options.inBitmap = null;
+            decoded = BitmapFactory.decodeByteArray(frame, 0, frame.length, options);
+        }
+        if (decoded != null && decoded != mDecoded) {
+            if (mDecoded != null) {
+                mDecoded.recycle();
+            }
+            mDecoded = decoded;
+        }
+        return decoded;
+    }
+
+    /**
+     * 内部のバッファを参照できるストリーム.
+     */
+    private static class FrameOutputStream extends ByteArrayOutputStream {
+
+        /**
+         * 書き込まれたデータを格納しているバッファを取得する.
+         * <p>
+         * 有効なデータの長さは{@link #size()}で取得する。
+         * </p>
+         *
+         * @return バッファ
+         */
+        byte[] getBuffer() {
+            return buf;
+        }
+    }
+}
@@ -8,15 +8,12 @@ package org.deviceconnect.android.deviceplugin.uvc.profile;
 
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.os.Bundle;
 
 import com.serenegiant.usb.UVCCamera;
 
 import org.deviceconnect.android.deviceplugin.uvc.core.UVCDevice;
 import org.deviceconnect.android.deviceplugin.uvc.core.UVCDeviceManager;
-import org.deviceconnect.android.deviceplugin.uvc.utils.MixedReplaceMediaServer;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.MediaStreamRecordingProfile;
 import org.deviceconnect.android.profile.api.DConnectApi;
@@ -24,8 +21,8 @@ import org.deviceconnect.android.profile.api.DeleteApi;
 import org.deviceconnect.android.profile.api.GetApi;
 import org.deviceconnect.android.profile.api.PutApi;
 import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -51,6 +48,11 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
 
     private static final String RECORDER_CONFIG = ""; // No config.
 
+    /**
+     * プレビューのサイズを変換する時のJPEGの品質(0〜100)を指定するパラメータ.
+     */
+    private static final String PARAM_PREVIEW_JPEG_QUALITY = "previewJpegQuality";
+
     private final Logger mLogger = Logger.getLogger("uvc.dplugin");
 
     private final UVCDeviceManager mDeviceMgr;
@@ -71,8 +73,12 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
 
             PreviewContext context = mContexts.get(device.getId());
             if (context != null) {
-                final byte[] media = context.willResize() ? context.resize(frame) : frame;
-                context.mServer.offerMedia(media);
+                MJPEGFrameResizer resizer = context.mResizer;
+                if (resizer != null) {
+                    resizer.resize(frame, context.mServer);
+                } else {
+                    context.mServer.offerMedia(frame);
+                }
             }
         }
     };
@@ -197,6 +203,7 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
                         Integer previewWidth = getPreviewWidth(request);
                         Integer previewHeight = getPreviewHeight(request);
                         Double previewMaxFrameRate = getPreviewMaxFrameRate(request);
+                        Integer previewJpegQuality = parseInteger(request, PARAM_PREVIEW_JPEG_QUALITY);
 
                         UVCDevice device = mDeviceMgr.getDevice(serviceId);
                         if (device == null) {
@@ -223,6 +230,11 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
                                 "previewWidth must not be null if previewHeight is not null.");
                             return;
                         }
+                        if (previewJpegQuality != null && (previewJpegQuality < 0 || previewJpegQuality > 100)) {
+                            MessageUtils.setInvalidRequestParameterError(response,
+                                "previewJpegQuality must be between 0 and 100.");
+                            return;
+                        }
                         if (!device.isOpen()) {
                             if (!mDeviceMgr.connectDevice(device)) {
                                 MessageUtils.setIllegalDeviceStateError(response, "Failed to open UVC device: " + device.getId());
@@ -246,6 +258,10 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
                         if (previewMaxFrameRate != null) {
                             device.setPreviewFrameRate(previewMaxFrameRate);
                         }
+                        if (previewJpegQuality != null) {
+                            device.setPreviewJpegQuality(previewJpegQuality);
+                            setResult(response, DConnectMessage.RESULT_OK);
+                        }
                     } finally {
                         sendResponse(response);
                     }
@@ -289,8 +305,8 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
                                 MessageUtils.setIllegalServerStateError(response, "Failed to start UVC preview server.");
                                 return;
                             }
-                            context.mWidth = device.getPreviewWidth();
-                            context.mHeight = device.getPreviewHeight();
+                            context.setSize(device.getPreviewWidth(), device.getPreviewHeight(),
+                                device.getPreviewJpegQuality());
 
                             setResult(response, DConnectMessage.RESULT_OK);
                             setUri(response, context.mServer.getUrl());
@@ -405,6 +421,7 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
         PreviewContext context = mContexts.remove(id);
         if (context != null) {
             context.mServer.stop();
+            context.release();
         }
     }
 
@@ -418,14 +435,16 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
 
     private static class PreviewContext {
 
-        Integer mWidth;
-
-        Integer mHeight;
+        /**
+         * フレームのサイズを変換するクラス.
+         * <p>
+         * 同じサーバに接続しているクライアントは、変換後の同じフレームを共有する。
+         * </p>
+         */
+        volatile MJPEGFrameResizer mResizer;
 
         final MixedReplaceMediaServer mServer;
 
-        final Logger mLogger = Logger.getLogger("uvc.dplugin");
-
         PreviewContext(final MixedReplaceMediaServer server) {
             if (server == null) {
                 throw new IllegalArgumentException();
@@ -433,32 +452,26 @@ public class UVCMediaStreamRecordingProfile extends MediaStreamRecordingProfile
             mServer = server;
         }
 
-        boolean willResize() {
-            return mWidth != null || mHeight != null;
+        synchronized void setSize(final int width, final int height, final int quality) {
+            MJPEGFrameResizer resizer = mResizer;
+            if (resizer != null && resizer.getWidth() == width && resizer.getHeight() == height) {
+                resizer.setQuality(quality);
+                return;
+            }
+            MJPEGFrameResizer newResizer = new MJPEGFrameResizer(width, height);
+            newResizer.setQuality(quality);
+            mResizer = newResizer;
+            if (resizer != null) {
+                resizer.release();
+            }
         }
 
-        byte[] resize(final byte[] frame) {
-            byte[] resizedBytes = null;
-            try {
-                Bitmap src = BitmapFactory.decodeByteArray(frame, 0, frame.length);
-                if (src == null) {
-                    mLogger.warning("MotionJPEG Frame could not be decoded to bitmap.");
-                    return null;
-                }
-
-                int w = mWidth != null ? mWidth : src.getWidth();
-                int h = mHeight != null ? mHeight : src.getHeight();
-
-                Bitmap resizedBitmap = Bitmap.createScaledBitmap(src, w, h, true);
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                resizedBitmap.compress(Bitmap.CompressFormat.JPEG, 100, baos);
-                resizedBytes = baos.toByteArray();
-                resizedBitmap.recycle();
-            } catch (OutOfMemoryError e) {
-                mLogger.warning("MotionJPEG Frame could not be decoded to bitmap for: " + e.getMessage());
+        synchronized void release() {
+            MJPEGFrameResizer resizer = mResizer;
+            mResizer = null;
+            if (resizer != null) {
+                resizer.release();
             }
-            return resizedBytes;
         }
-
     }
 }
@@ -6,8 +6,8 @@ import android.util.AttributeSet;
 
 import org.deviceconnect.android.deviceplugin.webrtc.BuildConfig;
 import org.deviceconnect.android.deviceplugin.webrtc.util.ImageUtils;
-import org.deviceconnect.android.deviceplugin.webrtc.util.MixedReplaceMediaServer;
 import org.deviceconnect.android.deviceplugin.webrtc.util.YuvConverter;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 import org.webrtc.EglBase;
 import org.webrtc.SurfaceViewRenderer;
 import org.webrtc.VideoRenderer;
@@ -89,7 +89,7 @@ public class MySurfaceViewRenderer extends SurfaceViewRenderer {
         if (mServer == null) {
             return null;
         }
-        return mServer.getMimeType();
+        return mServer.getContentType();
     }
 
     public void setType(final String type) {
@@ -25,6 +25,7 @@ import org.deviceconnect.android.deviceplugin.webrtc.core.PeerConfig;
 import org.deviceconnect.android.deviceplugin.webrtc.core.WebRTCController;
 import org.deviceconnect.android.deviceplugin.webrtc.fragment.PercentFrameLayout;
 import org.deviceconnect.android.profile.VideoChatProfile;
+import org.deviceconnect.mjpeg.MixedReplaceMediaServer;
 import org.webrtc.EglBase;
 import org.webrtc.RendererCommon;
 import org.webrtc.voiceengine.WebRtcAudioTrack;
@@ -0,0 +1,133 @@
+/*
+ WhitelistTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.policy;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Test of the compiled snapshot of {@link Whitelist}.
+ * <p>
+ * Checks that the snapshot used by {@link Whitelist#allows(Origin)} and {@link Whitelist#hasOrigin(String)}
+ * is rebuilt when the whitelist is changed, and that the change is visible from other instances.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WhitelistTest {
+
+    /** An origin which is not in the default whitelist. */
+    private static final String ORIGIN_A = "http://whitelist-test-a.example.com";
+
+    /** Another origin which is not in the default whitelist. */
+    private static final String ORIGIN_B = "http://whitelist-test-b.example.com";
+
+    /** A literal origin which is not in the default whitelist. */
+    private static final String ORIGIN_LITERAL = "org.deviceconnect.android.manager.policy.test";
+
+    private Whitelist mWhitelist;
+
+    /** Origins added by a test, which are removed after the test. */
+    private final List<OriginInfo> mAdded = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mWhitelist = new Whitelist(InstrumentationRegistry.getTargetContext());
+        assertThat(mWhitelist.hasOrigin(ORIGIN_A), is(false));
+        assertThat(mWhitelist.hasOrigin(ORIGIN_B), is(false));
+        assertThat(mWhitelist.hasOrigin(ORIGIN_LITERAL), is(false));
+    }
+
+    @After
+    public void tearDown() {
+        for (OriginInfo info : mAdded) {
+            try {
+                mWhitelist.removeOrigin(info);
+            } catch (WhitelistException e) {
+                // already removed by the test
+            }
+        }
+    }
+
+    /**
+     * Adds origins to the whitelist.
+     * <pre>
+     * [Expected]
+     * - The added origins are allowed right after they are added.
+     * - The change is visible from another instance.
+     * </pre>
+     */
+    @Test
+    public void testAddOrigin() throws WhitelistException {
+        add(ORIGIN_A);
+        add(ORIGIN_LITERAL);
+
+        assertThat(mWhitelist.hasOrigin(ORIGIN_A), is(true));
+        assertThat(mWhitelist.allows(OriginParser.parse(ORIGIN_A)), is(true));
+        assertThat(mWhitelist.allows(OriginParser.parse(ORIGIN_LITERAL)), is(true));
+        assertThat(mWhitelist.allows(OriginParser.parse(ORIGIN_B)), is(false));
+
+        Whitelist other = new Whitelist(InstrumentationRegistry.getTargetContext());
+        assertThat(other.allows(OriginParser.parse(ORIGIN_A)), is(true));
+        assertThat(other.allows(OriginParser.parse(ORIGIN_LITERAL)), is(true));
+    }
+
+    /**
+     * Updates an origin in the whitelist.
+     * <pre>
+     * [Expected]
+     * - The old origin is no longer allowed.
+     * - The new origin is allowed.
+     * </pre>
+     */
+    @Test
+    public void testUpdateOrigin() throws WhitelistException {
+        OriginInfo info = add(ORIGIN_A);
+        assertThat(mWhitelist.hasOrigin(ORIGIN_A), is(true));
+
+        mWhitelist.updateOrigin(new OriginInfo(info.mId, OriginParser.parse(ORIGIN_B), info.mTitle, info.mDate));
+
+        assertThat(mWhitelist.hasOrigin(ORIGIN_A), is(false));
+        assertThat(mWhitelist.hasOrigin(ORIGIN_B), is(true));
+    }
+
+    /**
+     * Removes an origin from the whitelist.
+     * <pre>
+     * [Expected]
+     * - The removed origin is no longer allowed, also from another instance.
+     * </pre>
+     */
+    @Test
+    public void testRemoveOrigin() throws WhitelistException {
+        Whitelist other = new Whitelist(InstrumentationRegistry.getTargetContext());
+        OriginInfo info = add(ORIGIN_A);
+        assertThat(other.hasOrigin(ORIGIN_A), is(true));
+
+        mWhitelist.removeOrigin(info);
+
+        assertThat(mWhitelist.hasOrigin(ORIGIN_A), is(false));
+        assertThat(other.hasOrigin(ORIGIN_A), is(false));
+    }
+
+    private OriginInfo add(final String originExp) throws WhitelistException {
+        OriginInfo info = mWhitelist.addOrigin(OriginParser.parse(originExp), "WhitelistTest");
+        mAdded.add(info);
+        return info;
+    }
+}
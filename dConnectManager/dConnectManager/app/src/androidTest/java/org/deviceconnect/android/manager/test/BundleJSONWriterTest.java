@@ -0,0 +1,246 @@
+/*
+ BundleJSONWriterTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.test;
+
+import android.os.Bundle;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.deviceconnect.android.manager.DConnectApplication;
+import org.deviceconnect.android.manager.DConnectSettings;
+import org.deviceconnect.android.manager.util.BundleJSONWriter;
+import org.deviceconnect.android.manager.util.DConnectUtil;
+import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * {@link BundleJSONWriter}のテストを実行する.
+ * <p>
+ * JSONObjectを経由する従来の変換と同じバイト列が出力されることを確認する。
+ * また、serviceDiscoveryとfile/listのレスポンスを想定したデータで、両者の処理時間を比較する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BundleJSONWriterTest {
+
+    /**
+     * ログ出力用タグ.
+     */
+    private static final String TAG = "BundleJSONWriterTest";
+
+    /**
+     * 処理時間を比較する時のウォームアップ回数.
+     */
+    private static final int WARM_UP_COUNT = 200;
+
+    /**
+     * 処理時間を比較する時の計測回数.
+     */
+    private static final int MEASURE_COUNT = 1000;
+
+    /**
+     * DeviceConnect設定.
+     */
+    private DConnectSettings mSettings;
+
+    @Before
+    public void setUp() {
+        DConnectApplication app = (DConnectApplication) InstrumentationRegistry.getTargetContext().getApplicationContext();
+        mSettings = app.getSettings();
+    }
+
+    /**
+     * serviceDiscoveryのレスポンスを変換する。
+     * <pre>
+     * 【期待する動作】
+     * ・JSONObjectを経由した場合と同じバイト列が出力されること。
+     * </pre>
+     * @throws Exception 変換に失敗した場合
+     */
+    @Test
+    public void testServiceDiscovery() throws Exception {
+        Bundle b = createServiceDiscovery(50);
+        assertThat(Arrays.equals(new BundleJSONWriter(mSettings).write(b).toByteArray(), convertWithJSONObject(b)), is(true));
+    }
+
+    /**
+     * file/listのレスポンスを変換する。
+     * <pre>
+     * 【期待する動作】
+     * ・JSONObjectを経由した場合と同じバイト列が出力されること。
+     * ・content://から始まるuriが変換されていること。
+     * </pre>
+     * @throws Exception 変換に失敗した場合
+     */
+    @Test
+    public void testFileList() throws Exception {
+        Bundle b = createFileList(200);
+        b.putString("uri", "content://org.deviceconnect.android.manager.provider.fileprovider/list");
+        byte[] json = new BundleJSONWriter(mSettings).write(b).toByteArray();
+        assertThat(Arrays.equals(json, convertWithJSONObject(b)), is(true));
+        assertThat(new JSONObject(new String(json, "UTF-8")).getString("uri").startsWith("content://"), is(false));
+    }
+
+    /**
+     * 様々な型を格納したBundleを変換する。
+     * <pre>
+     * 【期待する動作】
+     * ・JSONObjectを経由した場合と同じバイト列が出力されること。
+     * </pre>
+     * @throws Exception 変換に失敗した場合
+     */
+    @Test
+    public void testVariousTypes() throws Exception {
+        Bundle b = new Bundle();
+        b.putInt(IntentDConnectMessage.EXTRA_REQUEST_CODE, 1);
+        b.putByte("byte", (byte) -1);
+        b.putChar("char", '0');
+        b.putShort("short", (short) 2);
+        b.putLong("long", Long.MIN_VALUE);
+        b.putFloat("float", 0.1f);
+        b.putDouble("double", -0.0d);
+        b.putDouble("double2", 1.5e300);
+        b.putBoolean("boolean", true);
+        b.putString("string", "\"\\/\t\b\n\r\f\u0001あ😀");
+        b.putIntArray("intArray", new int[] {1, -2});
+        b.putFloatArray("floatArray", new float[] {0.1f, 2.0f});
+        b.putCharArray("charArray", new char[] {'a'});
+        b.putSerializable("floatObjArray", new Float[] {0.1f, null});
+        b.putStringArray("stringArray", new String[] {"a", null});
+        b.putSerializable("objArray", new Object[] {1, 2});
+        b.putSerializable("mixedArray", new Object[] {1, "a"});
+        ArrayList<Integer> list = new ArrayList<>();
+        list.add(1);
+        b.putIntegerArrayList("list", list);
+        Bundle child = new Bundle();
+        child.putString("uri", "content://test");
+        b.putBundle("child", child);
+        assertThat(new String(new BundleJSONWriter(mSettings).write(b).toByteArray(), "UTF-8"),
+                is(new String(convertWithJSONObject(b), "UTF-8")));
+    }
+
+    /**
+     * serviceDiscoveryとfile/listのレスポンスで、JSONObjectを経由した場合との処理時間を比較する。
+     * <pre>
+     * 【期待する動作】
+     * ・処理時間がログに出力されること。
+     * </pre>
+     * @throws Exception 変換に失敗した場合
+     */
+    @Test
+    public void testBenchmark() throws Exception {
+        benchmark("serviceDiscovery", createServiceDiscovery(50));
+        benchmark("file/list", createFileList(500));
+    }
+
+    /**
+     * 処理時間を計測してログに出力する.
+     * @param name 計測名
+     * @param b 変換するBundle
+     * @throws Exception 変換に失敗した場合
+     */
+    private void benchmark(final String name, final Bundle b) throws Exception {
+        BundleJSONWriter writer = new BundleJSONWriter(mSettings);
+        for (int i = 0; i < WARM_UP_COUNT; i++) {
+            convertWithJSONObject(b);
+            writer.write(b);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURE_COUNT; i++) {
+            convertWithJSONObject(b);
+        }
+        long jsonObjectTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < MEASURE_COUNT; i++) {
+            writer.write(b);
+        }
+        long writerTime = System.nanoTime() - start;
+
+        Log.i(TAG, String.format("%s: size=%d JSONObject=%.1fus/op BundleJSONWriter=%.1fus/op", name, writer.size(),
+                jsonObjectTime / 1000.0 / MEASURE_COUNT, writerTime / 1000.0 / MEASURE_COUNT));
+    }
+
+    /**
+     * JSONObjectを経由してバイト列に変換する.
+     * @param b 変換するBundle
+     * @return JSONのバイト列
+     * @throws Exception 変換に失敗した場合
+     */
+    private byte[] convertWithJSONObject(final Bundle b) throws Exception {
+        JSONObject root = new JSONObject();
+        DConnectUtil.convertBundleToJSON(mSettings, root, b);
+        return root.toString().getBytes("UTF-8");
+    }
+
+    /**
+     * serviceDiscoveryのレスポンスを作成する.
+     * @param count サービス数
+     * @return レスポンス
+     */
+    private Bundle createServiceDiscovery(final int count) {
+        Bundle[] services = new Bundle[count];
+        for (int i = 0; i < count; i++) {
+            Bundle service = new Bundle();
+            service.putString("id", "Host.dummy" + i + ".localhost.deviceconnect.org");
+            service.putString("name", "Device " + i);
+            service.putString("type", "Unknown");
+            service.putBoolean("online", true);
+            service.putString("config", "{}");
+            service.putStringArray("scopes", new String[] {"battery", "canvas", "deviceOrientation", "file",
+                    "mediaPlayer", "mediaStreamRecording", "notification", "serviceInformation", "vibration"});
+            services[i] = service;
+        }
+        Bundle b = new Bundle();
+        b.putInt(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_OK);
+        b.putInt(IntentDConnectMessage.EXTRA_REQUEST_CODE, 1);
+        b.putString("product", "Device Connect Manager");
+        b.putString("version", "2.1.0");
+        b.putParcelableArray("services", services);
+        return b;
+    }
+
+    /**
+     * file/listのレスポンスを作成する.
+     * @param count ファイル数
+     * @return レスポンス
+     */
+    private Bundle createFileList(final int count) {
+        Bundle[] files = new Bundle[count];
+        for (int i = 0; i < count; i++) {
+            Bundle file = new Bundle();
+            file.putString("path", "/dir/ファイル" + i + ".jpg");
+            file.putString("fileName", "ファイル" + i + ".jpg");
+            file.putString("mimeType", "image/jpeg");
+            file.putString("uri", "content://org.deviceconnect.android.deviceplugin.host.provider/" + i);
+            file.putString("fileType", "0");
+            file.putLong("fileSize", 1024L * i);
+            file.putString("updateDate", "2017-01-01T00:00:00+0900");
+            files[i] = file;
+        }
+        Bundle b = new Bundle();
+        b.putInt(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_OK);
+        b.putInt(IntentDConnectMessage.EXTRA_REQUEST_CODE, 1);
+        b.putInt("count", count);
+        b.putParcelableArray("files", files);
+        return b;
+    }
+}
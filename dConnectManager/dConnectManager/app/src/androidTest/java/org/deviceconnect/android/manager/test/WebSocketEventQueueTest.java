@@ -0,0 +1,172 @@
+/*
+ WebSocketEventQueueTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.test;
+
+import android.os.Bundle;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.deviceconnect.android.manager.WebSocketEventQueue;
+import org.deviceconnect.message.DConnectMessage;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+
+/**
+ * {@link WebSocketEventQueue}のテストを実行する.
+ * <p>
+ * 上限を超えた時の破棄、同じ属性のイベントのまとめ、送信処理の予約状態を確認する。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WebSocketEventQueueTest {
+
+    /**
+     * 上限を超えてイベントを追加する。
+     * <pre>
+     * 【期待する動作】
+     * ・古いイベントから破棄され、新しいイベントが上限の数だけ残ること。
+     * ・破棄したイベントの数が数えられること。
+     * </pre>
+     */
+    @Test
+    public void testDropOldest() {
+        WebSocketEventQueue queue = new WebSocketEventQueue(WebSocketEventQueue.Policy.DROP_OLDEST, 3);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(createEvent("service", "battery", "onLevel", i));
+        }
+
+        assertThat(queue.getBacklog(), is(3));
+        assertThat(queue.getMaxBacklog(), is(3));
+        assertThat(queue.getDroppedCount(), is(2L));
+        List<Bundle> events = queue.poll(10);
+        assertThat(events.size(), is(3));
+        assertThat(events.get(0).getInt("seq"), is(2));
+        assertThat(events.get(1).getInt("seq"), is(3));
+        assertThat(events.get(2).getInt("seq"), is(4));
+    }
+
+    /**
+     * 同じサービス・プロファイル・属性のイベントを追加する。
+     * <pre>
+     * 【期待する動作】
+     * ・同じ属性のイベントは最新の1つだけが、最初に追加された位置に残ること。
+     * ・別の属性のイベントは置き換えられないこと。
+     * ・置き換えたイベントの数が数えられ、破棄したイベントとしては数えられないこと。
+     * </pre>
+     */
+    @Test
+    public void testCoalesce() {
+        WebSocketEventQueue queue = new WebSocketEventQueue(WebSocketEventQueue.Policy.COALESCE, 10);
+        queue.offer(createEvent("service", "deviceOrientation", "onDeviceOrientation", 0));
+        queue.offer(createEvent("service", "battery", "onLevel", 1));
+        queue.offer(createEvent("service", "deviceOrientation", "onDeviceOrientation", 2));
+        queue.offer(createEvent("other", "deviceOrientation", "onDeviceOrientation", 3));
+        queue.offer(createEvent("service", "deviceOrientation", "onDeviceOrientation", 4));
+
+        assertThat(queue.getBacklog(), is(3));
+        assertThat(queue.getCoalescedCount(), is(2L));
+        assertThat(queue.getDroppedCount(), is(0L));
+        List<Bundle> events = queue.poll(10);
+        assertThat(events.size(), is(3));
+        assertThat(events.get(0).getInt("seq"), is(4));
+        assertThat(events.get(1).getInt("seq"), is(1));
+        assertThat(events.get(2).getInt("seq"), is(3));
+    }
+
+    /**
+     * 上限を超えて、まとめられないイベントを追加する。
+     * <pre>
+     * 【期待する動作】
+     * ・COALESCEでも上限を超えた場合は古いイベントから破棄されること。
+     * </pre>
+     */
+    @Test
+    public void testCoalesceOverCapacity() {
+        WebSocketEventQueue queue = new WebSocketEventQueue(WebSocketEventQueue.Policy.COALESCE, 2);
+        queue.offer(createEvent("service", "battery", "onLevel", 0));
+        queue.offer(createEvent("service", "battery", "onCharging", 1));
+        queue.offer(createEvent("service", "battery", "onLevel", 2));
+        queue.offer(createEvent("service", "proximity", "onDeviceProximity", 3));
+
+        assertThat(queue.getBacklog(), is(2));
+        assertThat(queue.getCoalescedCount(), is(1L));
+        assertThat(queue.getDroppedCount(), is(1L));
+        List<Bundle> events = queue.poll(10);
+        assertThat(events.get(0).getInt("seq"), is(1));
+        assertThat(events.get(1).getInt("seq"), is(3));
+    }
+
+    /**
+     * 送信処理の予約状態を確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・最初のイベントの追加時のみ送信処理の開始を要求すること。
+     * ・空のリストを返した後に追加した場合は、再び送信処理の開始を要求すること。
+     * ・指定した数までイベントを取り出せること。
+     * </pre>
+     */
+    @Test
+    public void testSchedule() {
+        WebSocketEventQueue queue = new WebSocketEventQueue(WebSocketEventQueue.Policy.BATCH, 10);
+        assertThat(queue.offer(createEvent("service", "battery", "onLevel", 0)), is(true));
+        assertThat(queue.offer(createEvent("service", "battery", "onLevel", 1)), is(false));
+        assertThat(queue.offer(createEvent("service", "battery", "onLevel", 2)), is(false));
+
+        assertThat(queue.poll(2).size(), is(2));
+        queue.onSent(2);
+        assertThat(queue.offer(createEvent("service", "battery", "onLevel", 3)), is(false));
+        assertThat(queue.poll(2).size(), is(2));
+        queue.onSent(2);
+        assertThat(queue.poll(2).isEmpty(), is(true));
+        assertThat(queue.offer(createEvent("service", "battery", "onLevel", 4)), is(true));
+
+        assertThat(queue.getSentCount(), is(4L));
+        assertThat(queue.getSentFrameCount(), is(2L));
+    }
+
+    /**
+     * キューを閉じる。
+     * <pre>
+     * 【期待する動作】
+     * ・送信待ちのイベントが破棄され、以降のイベントが無視されること。
+     * </pre>
+     */
+    @Test
+    public void testClose() {
+        WebSocketEventQueue queue = new WebSocketEventQueue(WebSocketEventQueue.Policy.DROP_OLDEST, 10);
+        queue.offer(createEvent("service", "battery", "onLevel", 0));
+        queue.close();
+
+        assertThat(queue.offer(createEvent("service", "battery", "onLevel", 1)), is(false));
+        assertThat(queue.getBacklog(), is(0));
+        assertThat(queue.poll(10).isEmpty(), is(true));
+    }
+
+    /**
+     * イベントを作成する.
+     * @param serviceId サービスID
+     * @param profile プロファイル名
+     * @param attribute 属性名
+     * @param seq イベントを識別する番号
+     * @return イベント
+     */
+    private static Bundle createEvent(final String serviceId, final String profile,
+                                      final String attribute, final int seq) {
+        Bundle event = new Bundle();
+        event.putString(DConnectMessage.EXTRA_SERVICE_ID, serviceId);
+        event.putString(DConnectMessage.EXTRA_PROFILE, profile);
+        event.putString(DConnectMessage.EXTRA_ATTRIBUTE, attribute);
+        event.putInt("seq", seq);
+        return event;
+    }
+}
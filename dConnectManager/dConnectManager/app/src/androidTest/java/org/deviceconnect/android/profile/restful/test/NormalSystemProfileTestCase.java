@@ -0,0 +1,204 @@
+/*
+ NormalSystemProfileTestCase.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.profile.restful.test;
+
+import android.support.test.runner.AndroidJUnit4;
+
+import org.deviceconnect.message.DConnectMessage;
+import org.deviceconnect.message.DConnectResponseMessage;
+import org.deviceconnect.profile.AuthorizationProfileConstants;
+import org.deviceconnect.profile.DConnectProfileConstants;
+import org.deviceconnect.profile.SystemProfileConstants;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Systemプロファイルの統計の正常系テスト.
+ * @author NTT DOCOMO, INC.
+ */
+@RunWith(AndroidJUnit4.class)
+public class NormalSystemProfileTestCase extends RESTfulDConnectTestCase {
+
+    /**
+     * 属性名: {@value} .
+     */
+    private static final String ATTRIBUTE_LATENCY = "latency";
+
+    /**
+     * 属性名: {@value} .
+     */
+    private static final String ATTRIBUTE_STATS = "stats";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_FORMAT = "format";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_METRICS = "metrics";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_HTTP = "http";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_SERVICE_CACHE = "serviceCache";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_WEB_SOCKET = "webSocket";
+
+    /**
+     * パラメータ: {@value}.
+     */
+    private static final String PARAM_EVENT_QUEUES = "eventQueues";
+
+    /**
+     * 応答時間の統計を取得する.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /system/latency?accessToken=xxxx
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・resultに0が返ってくること。
+     * ・pluginsにプラグインごとの統計が返ってくること。
+     * </pre>
+     */
+    @Test
+    public void testGetLatency() {
+        requestPlugin();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(MANAGER_URI);
+        builder.append("/").append(SystemProfileConstants.PROFILE_NAME);
+        builder.append("/").append(ATTRIBUTE_LATENCY);
+        builder.append("?");
+        builder.append(AuthorizationProfileConstants.PARAM_ACCESS_TOKEN).append("=").append(getAccessToken());
+
+        DConnectResponseMessage response = mDConnectSDK.get(builder.toString());
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getResult(), is(DConnectMessage.RESULT_OK));
+        assertThat(response.getList(SystemProfileConstants.PARAM_PLUGINS), is(notNullValue()));
+    }
+
+    /**
+     * 応答時間の統計をPrometheusのテキスト形式で取得する.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /system/latency?format=prometheus&accessToken=xxxx
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・resultに0が返ってくること。
+     * ・metricsに応答時間のメトリクスが返ってくること。
+     * </pre>
+     */
+    @Test
+    public void testGetLatencyPrometheus() {
+        requestPlugin();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(MANAGER_URI);
+        builder.append("/").append(SystemProfileConstants.PROFILE_NAME);
+        builder.append("/").append(ATTRIBUTE_LATENCY);
+        builder.append("?").append(PARAM_FORMAT).append("=prometheus");
+        builder.append("&");
+        builder.append(AuthorizationProfileConstants.PARAM_ACCESS_TOKEN).append("=").append(getAccessToken());
+
+        DConnectResponseMessage response = mDConnectSDK.get(builder.toString());
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getResult(), is(DConnectMessage.RESULT_OK));
+        assertThat(response.getString(PARAM_METRICS), containsString("dconnect_api_latency_milliseconds_count{"));
+    }
+
+    /**
+     * マネージャの統計を取得する.
+     * <pre>
+     * 【HTTP通信】
+     * Method: GET
+     * Path: /system/stats?accessToken=xxxx
+     * </pre>
+     * <pre>
+     * 【期待する動作】
+     * ・resultに0が返ってくること。
+     * ・httpにレスポンスを渡した回数が返ってくること。
+     * ・serviceCacheにサービス一覧のキャッシュを参照した回数が返ってくること。
+     * ・webSocketに接続中のWebSocketの個数が返ってくること。
+     * ・eventQueuesにWebSocketごとのイベント送信キューの統計が返ってくること。
+     * </pre>
+     */
+    @Test
+    public void testGetStats() {
+        requestPlugin();
+
+        DConnectResponseMessage response = getStats();
+        DConnectMessage http = response.getMessage(PARAM_HTTP);
+        assertThat(http, is(notNullValue()));
+        assertThat(http.getLong("completions") > 0, is(true));
+
+        // テストの準備でService Discoveryを実行しているので、キャッシュを1回以上参照している
+        DConnectMessage cache = response.getMessage(PARAM_SERVICE_CACHE);
+        assertThat(cache, is(notNullValue()));
+        long lookups = cache.getLong("hits") + cache.getLong("staleHits") + cache.getLong("misses");
+        assertThat(lookups > 0, is(true));
+
+        DConnectMessage webSocket = response.getMessage(PARAM_WEB_SOCKET);
+        assertThat(webSocket, is(notNullValue()));
+        assertThat(webSocket.getInt("connections") >= 0, is(true));
+        assertThat(webSocket.getLong("latePongs") >= 0, is(true));
+        assertThat(webSocket.getLong("rejected") >= 0, is(true));
+        assertThat(response.getList(PARAM_EVENT_QUEUES), is(notNullValue()));
+    }
+
+    /**
+     * マネージャの統計を取得する.
+     * @return レスポンス
+     */
+    private DConnectResponseMessage getStats() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(MANAGER_URI);
+        builder.append("/").append(SystemProfileConstants.PROFILE_NAME);
+        builder.append("/").append(ATTRIBUTE_STATS);
+        builder.append("?");
+        builder.append(AuthorizationProfileConstants.PARAM_ACCESS_TOKEN).append("=").append(getAccessToken());
+
+        DConnectResponseMessage response = mDConnectSDK.get(builder.toString());
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getResult(), is(DConnectMessage.RESULT_OK));
+        return response;
+    }
+
+    /**
+     * 統計を記録させるためにテスト用プラグインへリクエストを送信する.
+     */
+    private void requestPlugin() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(MANAGER_URI);
+        builder.append("/").append(NormalAllGetControlTestCase.PROFILE_NAME);
+        builder.append("?").append(DConnectProfileConstants.PARAM_SERVICE_ID).append("=").append(getServiceId());
+        builder.append("&");
+        builder.append(AuthorizationProfileConstants.PARAM_ACCESS_TOKEN).append("=").append(getAccessToken());
+
+        DConnectResponseMessage response = mDConnectSDK.get(builder.toString());
+        assertThat(response, is(notNullValue()));
+        assertThat(response.getResult(), is(DConnectMessage.RESULT_OK));
+    }
+}
@@ -20,7 +20,9 @@ import android.os.RemoteException;
 import android.support.v4.app.NotificationCompat;
 import android.text.TextUtils;
 
+import org.deviceconnect.android.BatchMessageSender;
 import org.deviceconnect.android.IDConnectCallback;
+import org.deviceconnect.android.MessageBatch;
 import org.deviceconnect.android.event.EventManager;
 import org.deviceconnect.android.event.cache.MemoryCacheController;
 import org.deviceconnect.android.localoauth.CheckAccessTokenResult;
@@ -40,6 +42,7 @@ import org.deviceconnect.android.manager.plugin.DevicePluginManager.DevicePlugin
 import org.deviceconnect.android.manager.plugin.InternalConnection;
 import org.deviceconnect.android.manager.plugin.MessagingException;
 import org.deviceconnect.android.manager.plugin.PluginDetectionException;
+import org.deviceconnect.android.manager.plugin.ServiceRegistry;
 import org.deviceconnect.android.manager.policy.OriginValidator;
 import org.deviceconnect.android.manager.profile.AuthorizationProfile;
 import org.deviceconnect.android.manager.profile.DConnectAvailabilityProfile;
@@ -118,6 +121,9 @@ public abstract class DConnectMessageService extends Service
     /** Notification ID.*/
     private static final int ONGOING_NOTIFICATION_ID = 4035;
 
+    /** キャッシュファイルの合計サイズの上限(バイト). */
+    private static final long MAX_CACHE_SIZE = 256L * 1024 * 1024;
+
     /** プロファイル仕様定義ファイルの拡張子. */
     private static final String SPEC_FILE_EXTENSION = ".json";
 
@@ -172,6 +178,9 @@ public abstract class DConnectMessageService extends Service
     /** イベントブローカー. */
     protected EventBroker mEventBroker;
 
+    /** プラグインが提供するサービス一覧のキャッシュ. */
+    protected final ServiceRegistry mServiceRegistry = new ServiceRegistry();
+
     /** スレッドプール. */
     private final ExecutorService mExecutor = Executors.newFixedThreadPool(10);
 
@@ -192,6 +201,22 @@ public abstract class DConnectMessageService extends Service
             }
             handleExternalMessage(message);
         }
+
+        @Override
+        public int getProtocolVersion() throws RemoteException {
+            return BatchMessageSender.PROTOCOL_VERSION;
+        }
+
+        @Override
+        public void sendMessages(final MessageBatch batch) throws RemoteException {
+            if (BuildConfig.DEBUG) {
+                mLogger.info("IDConnectCallback.sendMessages: from = " + getCallingPackage()
+                        + ", count = " + batch.getMessages().size());
+            }
+            for (Intent message : batch.getMessages()) {
+                handleExternalMessage(message);
+            }
+        }
     };
 
     private String getCallingPackage() {
@@ -242,17 +267,20 @@ public abstract class DConnectMessageService extends Service
 
         // ファイル管理クラス
         mFileMgr = new FileManager(this);
+        mFileMgr.setMaxCacheSize(MAX_CACHE_SIZE);
+        mFileMgr.startAutoRemove();
 
         // デバイスプラグインとのLocal OAuth情報
         mLocalOAuth = new DConnectLocalOAuth(this);
 
         // イベントハンドラーの初期化
         mEventBroker = new EventBroker(this, mEventSessionTable, mLocalOAuth, mPluginManager);
+        mEventBroker.setServiceRegistry(mServiceRegistry);
 
         // プロファイルの追加
         addProfile(new AuthorizationProfile());
         addProfile(new DConnectAvailabilityProfile());
-        addProfile(new DConnectServiceDiscoveryProfile(null, mPluginManager));
+        addProfile(new DConnectServiceDiscoveryProfile(null, mPluginManager, mServiceRegistry));
         addProfile(new DConnectSystemProfile(this, mPluginManager));
 
         // dConnect Managerで処理せず、登録されたデバイスプラグインに処理させるプロファイル
@@ -266,6 +294,7 @@ public abstract class DConnectMessageService extends Service
     @Override
     public void onDestroy() {
         mPluginManager.removeEventListener(this);
+        mFileMgr.stopAutoRemove();
         stopDConnect();
         LocalOAuth2Main.destroy();
         super.onDestroy();
@@ -388,11 +417,6 @@ public abstract class DConnectMessageService extends Service
             return;
         }
 
-        // 不要になったキャッシュファイルの削除を行う
-        if (mFileMgr != null) {
-            mFileMgr.checkAndRemove();
-        }
-
         // レスポンス用のIntentの用意
         Intent response = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
         response.putExtra(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_ERROR);
@@ -672,6 +696,7 @@ public abstract class DConnectMessageService extends Service
     public void onDeviceLost(final DevicePlugin plugin) {
         mEventBroker.removeSessionForPlugin(plugin.getPluginId());
         mLocalOAuth.deleteOAuthDatas(plugin.getPluginId());
+        mServiceRegistry.removePlugin(plugin.getPluginId());
     }
 
     @Override
@@ -988,4 +1013,21 @@ public abstract class DConnectMessageService extends Service
     public DConnectSettings getSettings() {
         return mSettings;
     }
+
+    /**
+     * サービス一覧のキャッシュの統計情報を取得する.
+     * <p>
+     * キャッシュから応答した回数、有効期限切れのキャッシュから応答した回数、
+     * プラグインに問い合わせた回数、キャッシュを削除した回数を格納する。
+     * </p>
+     * @return 統計情報
+     */
+    public Bundle getServiceCacheStats() {
+        Bundle stats = new Bundle();
+        stats.putLong("hits", mServiceRegistry.getHitCount());
+        stats.putLong("staleHits", mServiceRegistry.getStaleHitCount());
+        stats.putLong("misses", mServiceRegistry.getMissCount());
+        stats.putLong("invalidations", mServiceRegistry.getInvalidationCount());
+        return stats;
+    }
 }
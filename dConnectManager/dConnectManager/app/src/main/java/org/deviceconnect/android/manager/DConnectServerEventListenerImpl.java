@@ -15,6 +15,7 @@ import android.net.Uri;
 import org.deviceconnect.android.localoauth.ClientPackageInfo;
 import org.deviceconnect.android.localoauth.LocalOAuth2Main;
 import org.deviceconnect.android.manager.event.EventBroker;
+import org.deviceconnect.android.manager.util.BundleJSONWriter;
 import org.deviceconnect.android.manager.util.DConnectUtil;
 import org.deviceconnect.android.provider.FileManager;
 import org.deviceconnect.message.DConnectMessage;
@@ -30,12 +31,13 @@ import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.ext.oauth.PackageInfoOAuth;
 
-import java.io.UnsupportedEncodingException;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
 
 /**
@@ -44,9 +46,30 @@ import java.util.logging.Logger;
  */
 class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /**
-     * HTTPサーバからリクエストのマップ.
+     * HTTPサーバからのリクエストに対するレスポンス待ちのマップ.
+     * <p>
+     * キーはリクエストコード。レスポンスを受け取った時には、対応するリクエストのスレッドのみを再開する。
+     * </p>
+     */
+    private final Map<Integer, ResponseSlot> mRequestMap = new ConcurrentHashMap<>();
+
+    /**
+     * レスポンスを待っていたスレッドが待機から戻った回数.
+     * <p>
+     * レスポンスの受信やタイムアウト以外の理由で戻った場合も数えるので、
+     * {@link #mCompletionCount}と{@link #mTimeoutCount}の合計を超えた分が無駄な再開の回数になる。
+     * </p>
      */
-    private final Map<Integer, Intent> mRequestMap = new ConcurrentHashMap<>();
+    private final AtomicLong mWakeupCount = new AtomicLong();
+
+    /** 待っていたリクエストにレスポンスを渡した回数. */
+    private final AtomicLong mCompletionCount = new AtomicLong();
+
+    /** タイムアウトしたリクエストの回数. */
+    private final AtomicLong mTimeoutCount = new AtomicLong();
+
+    /** 待っているリクエストが無いため破棄したレスポンスの回数. */
+    private final AtomicLong mDiscardedCount = new AtomicLong();
 
     /** ロガー. */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
@@ -63,8 +86,6 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /** HTTPリクエストのセグメント数(ProfileとInterfacesとAttribute) {@value}. */
     private static final int SEGMENT_INTERFACES = 4;
 
-    /** ポーリング時間(ms). */
-    private static final int POLLING_WAIT_TIME = 10000;
     /** デフォルトのタイムアウト時間(ms). */
     private static final int DEFAULT_RESTFUL_TIMEOUT = 180000;
     /** タイムアウト時間(ms). */
@@ -79,9 +100,6 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     /** ファイルを管理するためのクラス. */
     private FileManager mFileMgr;
 
-    /** ロックオブジェクト. */
-    private final Object mLockObj = new Object();
-
     /**
      * コンストラクタ.
      * @param managerService DeviceConnectManager本体サービス
@@ -107,11 +125,49 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
     void onResponse(final Intent intent) {
         int requestCode = intent.getIntExtra(
                 IntentDConnectMessage.EXTRA_REQUEST_CODE, Integer.MIN_VALUE);
-        mRequestMap.put(requestCode, intent);
-        // レスポンスを受け取ったのでスレッドを再開
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
+        ResponseSlot slot = mRequestMap.get(requestCode);
+        // レスポンスを受け取ったので、対応するスレッドのみを再開
+        if (slot != null && slot.complete(intent)) {
+            mCompletionCount.incrementAndGet();
+            return;
         }
+        // タイムアウトなどで既に待っていない、または既にレスポンスを受け取っている
+        mDiscardedCount.incrementAndGet();
+        if (BuildConfig.DEBUG) {
+            mLogger.warning("onResponse: No request is waiting for the response. requestCode=" + requestCode);
+        }
+    }
+
+    /**
+     * レスポンスを待っていたスレッドが待機から戻った回数を取得する.
+     * @return 待機から戻った回数
+     */
+    long getWakeupCount() {
+        return mWakeupCount.get();
+    }
+
+    /**
+     * 待っていたリクエストにレスポンスを渡した回数を取得する.
+     * @return レスポンスを渡した回数
+     */
+    long getCompletionCount() {
+        return mCompletionCount.get();
+    }
+
+    /**
+     * タイムアウトしたリクエストの回数を取得する.
+     * @return タイムアウトしたリクエストの回数
+     */
+    long getTimeoutCount() {
+        return mTimeoutCount.get();
+    }
+
+    /**
+     * 待っているリクエストが無いため破棄したレスポンスの回数を取得する.
+     * @return 破棄したレスポンスの回数
+     */
+    long getDiscardedCount() {
+        return mDiscardedCount.get();
     }
 
     @Override
@@ -372,11 +428,15 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
         intent.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
         intent.putExtra(DConnectService.EXTRA_INNER_TYPE, DConnectService.INNER_TYPE_HTTP);
 
+        // レスポンスを受け取る前に待ち合わせ用のスロットを登録しておく
+        ResponseSlot slot = new ResponseSlot();
+        mRequestMap.put(requestCode, slot);
+
         mContext.startService(intent);
 
         // レスポンスが返ってくるまで待つ
         // ただし、タイムアウト時間を設定しておき、永遠には待たない。
-        Intent resp = waitForResponse(requestCode);
+        Intent resp = waitForResponse(requestCode, slot);
         try {
             if (resp == null) {
                 // ここのエラーはタイムアウトの場合のみ
@@ -386,13 +446,13 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
             }
         } catch (JSONException e) {
             setJSONFormatError(response);
-        } catch (UnsupportedEncodingException e) {
-            setUnknownError(response);
         }
 
         if (BuildConfig.DEBUG) {
             mLogger.info(String.format(Locale.getDefault(), "@@@ Request URI END(%d): %s %s",
                     (System.currentTimeMillis() - start), method, request.getUri()));
+            mLogger.info(String.format(Locale.getDefault(), "@@@ Response wakeups: %d, completions: %d, timeouts: %d, discarded: %d",
+                    getWakeupCount(), getCompletionCount(), getTimeoutCount(), getDiscardedCount()));
         }
         return true;
     }
@@ -403,21 +463,67 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
      * ただし、タイムアウトなどを起こした場合にはnullが返却される。
      * </p>
      * @param requestCode リクエストコード
+     * @param slot レスポンスを待ち合わせるスロット
      * @return レスポンス用のIntent
      */
-    private Intent waitForResponse(final int requestCode) {
-        final long now = System.currentTimeMillis();
-        while (mRequestMap.get(requestCode) == null
-                && (System.currentTimeMillis() - now) < mTimeout) {
-            synchronized (mLockObj) {
+    private Intent waitForResponse(final int requestCode, final ResponseSlot slot) {
+        try {
+            Intent response = slot.await(mTimeout);
+            if (response == null) {
+                mTimeoutCount.incrementAndGet();
+            }
+            return response;
+        } finally {
+            mRequestMap.remove(requestCode);
+        }
+    }
+
+    /**
+     * 1つのリクエストに対するレスポンスを待ち合わせるスロット.
+     * <p>
+     * 待機するスレッドは1つだけなので、スロット自身をモニターにして待ち合わせる。
+     * </p>
+     */
+    private class ResponseSlot {
+        /** レスポンス. */
+        private Intent mResponse;
+
+        /**
+         * レスポンスを設定して、待機しているスレッドを再開する.
+         * @param response レスポンス
+         * @return 初めてレスポンスが設定された場合はtrue、それ以外はfalse
+         */
+        synchronized boolean complete(final Intent response) {
+            if (mResponse != null) {
+                return false;
+            }
+            mResponse = response;
+            notify();
+            return true;
+        }
+
+        /**
+         * レスポンスを受け取るまで待機する.
+         * @param timeout タイムアウト時間(ミリ秒)
+         * @return レスポンス。タイムアウトした場合はnull
+         */
+        synchronized Intent await(final long timeout) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            while (mResponse == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
                 try {
-                    mLockObj.wait(POLLING_WAIT_TIME);
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
                 } catch (InterruptedException e) {
-                    mLogger.warning("Exception ouccered in wait.");
+                    Thread.currentThread().interrupt();
+                    break;
                 }
+                mWakeupCount.incrementAndGet();
             }
+            return mResponse;
         }
-        return mRequestMap.remove(requestCode);
     }
 
     /**
@@ -644,17 +750,19 @@ class DConnectServerEventListenerImpl implements DConnectServerEventListener {
 
     /**
      * HTTPのレスポンスを組み立てる.
+     * <p>
+     * JSONObjectを経由せずに、BundleからUTF-8のJSONを直接書き込む。
+     * </p>
      * @param response 返答を格納するレスポンス
      * @param resp response用のIntent
      * @throws JSONException JSONの解析に失敗した場合
-     * @throws UnsupportedEncodingException 文字列のエンコードに失敗した場合
      */
-    private void convertResponse(final HttpResponse response, final Intent resp)
-            throws JSONException, UnsupportedEncodingException {
-        JSONObject root = new JSONObject();
-        DConnectUtil.convertBundleToJSON(((DConnectService) mContext).getSettings(), root, resp.getExtras());
+    private void convertResponse(final HttpResponse response, final Intent resp) throws JSONException {
+        BundleJSONWriter writer = new BundleJSONWriter(((DConnectService) mContext).getSettings());
+        writer.write(resp.getExtras());
         response.setContentType(CONTENT_TYPE_JSON);
-        response.setBody(root.toString().getBytes("UTF-8"));
+        response.setContentLength(writer.size());
+        response.setBody(writer.toInputStream());
     }
 
     /**
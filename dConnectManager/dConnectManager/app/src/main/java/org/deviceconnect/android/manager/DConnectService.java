@@ -26,7 +26,6 @@ import org.deviceconnect.android.manager.event.KeepAliveManager;
 import org.deviceconnect.android.manager.plugin.ConnectionType;
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.MessagingException;
-import org.deviceconnect.android.manager.util.DConnectUtil;
 import org.deviceconnect.android.manager.util.VersionName;
 import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
@@ -35,11 +34,10 @@ import org.deviceconnect.server.DConnectServer;
 import org.deviceconnect.server.DConnectServerConfig;
 import org.deviceconnect.server.nanohttpd.DConnectServerNanoHttpd;
 import org.deviceconnect.server.websocket.DConnectWebSocket;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -54,6 +52,11 @@ public class DConnectService extends DConnectMessageService implements WebSocket
      */
     private static final String TAG_WAKE_LOCK = "DeviceConnectManager";
 
+    /**
+     * 同時に接続できるWebSocketの最大数.
+     */
+    private static final int MAX_WEB_SOCKET_CONNECTION_SIZE = 512;
+
     public static final String ACTION_DISCONNECT_WEB_SOCKET = "disconnect.WebSocket";
     public static final String ACTION_SETTINGS_KEEP_ALIVE = "settings.KeepAlive";
     public static final String EXTRA_WEBSOCKET_ID = "webSocketId";
@@ -82,6 +85,9 @@ public class DConnectService extends DConnectMessageService implements WebSocket
     /** イベント送信スレッド. */
     private ExecutorService mEventSender = Executors.newSingleThreadExecutor();
 
+    /** WebSocketごとにイベントを送信するクラス. */
+    private WebSocketEventDispatcher mEventDispatcher;
+
     /** イベントKeep Alive管理クラス. */
     private KeepAliveManager mKeepAliveManager;
 
@@ -108,6 +114,12 @@ public class DConnectService extends DConnectMessageService implements WebSocket
 
         mWebSocketInfoManager = new WebSocketInfoManager();
         mWebSocketInfoManager.addOnWebSocketEventListener(this);
+        mEventDispatcher = new WebSocketEventDispatcher(mSettings, new WebSocketEventDispatcher.MessageSender() {
+            @Override
+            public boolean sendMessage(final String origin, final String message) {
+                return sendMessageToWebSocket(origin, message);
+            }
+        });
 
         mKeepAliveManager = new KeepAliveManager(this, mEventSessionTable);
         mKeepAliveManager.setKeepAliveFunction(mSettings.isEnableKeepAlive());
@@ -142,6 +154,7 @@ public class DConnectService extends DConnectMessageService implements WebSocket
     @Override
     public void onDestroy() {
         mWebSocketInfoManager.removeOnWebSocketEventListener(this);
+        mEventDispatcher.shutdown();
 
         stopRESTfulServer();
         super.onDestroy();
@@ -182,6 +195,8 @@ public class DConnectService extends DConnectMessageService implements WebSocket
 
     @Override
     public void onDisconnect(final String origin) {
+        mEventDispatcher.remove(origin);
+
         Bundle extras = new Bundle();
         extras.putString(IntentDConnectMessage.EXTRA_ORIGIN, origin);
         sendManagerEvent(IntentDConnectMessage.ACTION_EVENT_TRANSMIT_DISCONNECT, extras);
@@ -227,12 +242,7 @@ public class DConnectService extends DConnectMessageService implements WebSocket
     @Override
     public void sendEvent(final String receiver, final Intent event) {
         if (receiver == null || receiver.length() <= 0) {
-            mEventSender.execute(new Runnable() {
-                @Override
-                public void run() {
-                    sendEventToWebSocket(event);
-                }
-            });
+            sendEventToWebSocket(event);
         } else {
             super.sendEvent(receiver, event);
         }
@@ -240,6 +250,9 @@ public class DConnectService extends DConnectMessageService implements WebSocket
 
     /**
      * WebSocketにイベントを送信します.
+     * <p>
+     * イベントはWebSocketごとのキューに追加され、別スレッドで送信されます。
+     * </p>
      *
      * @param event イベントを格納したIntent
      */
@@ -250,31 +263,84 @@ public class DConnectService extends DConnectMessageService implements WebSocket
             return;
         }
         if (mRESTfulServer != null && mRESTfulServer.isRunning()) {
-            WebSocketInfo info = getWebSocketInfo(key);
-            if (info == null) {
+            if (getWebSocketInfo(key) == null) {
                 mLogger.warning("sendMessage: webSocket is not found: key = " + key);
                 return;
             }
-            try {
-                DConnectWebSocket webSocket = mRESTfulServer.getWebSocket(info.getRawId());
-                if (webSocket != null) {
-                    JSONObject root = new JSONObject();
-                    DConnectUtil.convertBundleToJSON(getSettings(), root, event.getExtras());
-                    webSocket.sendMessage(root.toString());
-                    if (BuildConfig.DEBUG) {
-                        mLogger.info(String.format("sendMessage: %s extra: %s", key, event.getExtras()));
-                    }
-                } else {
-                    if (mWebServerListener != null) {
-                        mWebServerListener.onWebSocketDisconnected(webSocket);
-                    }
-                }
-            } catch (JSONException e) {
-                mLogger.warning("JSONException in sendMessage: " + e.toString());
+            mEventDispatcher.dispatch(key, event.getExtras());
+        }
+    }
+
+    /**
+     * WebSocketにメッセージを送信します.
+     *
+     * @param key WebSocketのオリジン、もしくはセッションキー
+     * @param message 送信するメッセージ
+     * @return 送信先のWebSocketが存在した場合はtrue、それ以外はfalse
+     */
+    private boolean sendMessageToWebSocket(final String key, final String message) {
+        DConnectServer server = mRESTfulServer;
+        WebSocketInfo info = getWebSocketInfo(key);
+        if (server == null || info == null) {
+            return false;
+        }
+        DConnectWebSocket webSocket = server.getWebSocket(info.getRawId());
+        if (webSocket != null) {
+            webSocket.sendMessage(message);
+            if (BuildConfig.DEBUG) {
+                mLogger.info(String.format("sendMessage: %s message: %s", key, message));
+            }
+            return true;
+        } else {
+            if (mWebServerListener != null) {
+                mWebServerListener.onWebSocketDisconnected(webSocket);
             }
+            return false;
         }
     }
 
+    /**
+     * 指定したWebSocketのイベント送信キューを取得する.
+     * <p>
+     * 送信待ちのイベントの数や、破棄したイベントの数を確認するために使用する。
+     * </p>
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     * @return イベント送信キュー. イベントを送信していない場合はnull
+     */
+    public WebSocketEventQueue getWebSocketEventQueue(final String origin) {
+        return mEventDispatcher.getQueue(origin);
+    }
+
+    /**
+     * WebSocketごとのイベント送信キューの統計情報を取得する.
+     * <p>
+     * 接続中のWebSocketのキューについて、送信待ちのイベントの数、破棄したイベントの数、
+     * 置き換えたイベントの数などを格納する。
+     * </p>
+     * @return 統計情報の配列
+     */
+    public Bundle[] getWebSocketEventQueueStats() {
+        List<Bundle> list = new ArrayList<>();
+        for (Map.Entry<String, WebSocketEventQueue> entry : mEventDispatcher.getQueues().entrySet()) {
+            WebSocketEventQueue queue = entry.getValue();
+            Bundle stats = new Bundle();
+            stats.putString("origin", entry.getKey());
+            // 各値が同じ時点のものになるように、キューをロックして取得する
+            synchronized (queue) {
+                stats.putString("policy", queue.getPolicy().name());
+                stats.putInt("backlog", queue.getBacklog());
+                stats.putInt("maxBacklog", queue.getMaxBacklog());
+                stats.putLong("dropped", queue.getDroppedCount());
+                stats.putLong("coalesced", queue.getCoalescedCount());
+                stats.putLong("sent", queue.getSentCount());
+                stats.putLong("frames", queue.getSentFrameCount());
+            }
+            list.add(stats);
+        }
+        return list.toArray(new Bundle[list.size()]);
+    }
+
     /**
      * 指定したイベントレシーバーIDに対応するWebSocketを切断する.
      *
@@ -357,7 +423,8 @@ public class DConnectService extends DConnectMessageService implements WebSocket
                 DConnectServerConfig.Builder builder = new DConnectServerConfig.Builder();
                 builder.port(mSettings.getPort()).isSsl(mSettings.isSSL())
                         .documentRootPath(getFilesDir().getAbsolutePath())
-                        .cachePath(mFileMgr.getBasePath().getAbsolutePath());
+                        .cachePath(mFileMgr.getBasePath().getAbsolutePath())
+                        .maxWebSocketConnectionSize(MAX_WEB_SOCKET_CONNECTION_SIZE);
 
                 if (!mSettings.allowExternalIP()) {
                     // ローカルからのアクセスは、デフォルトで許可する
@@ -548,4 +615,44 @@ public class DConnectService extends DConnectMessageService implements WebSocket
     public WebSocketInfoManager getWebSocketInfoManager() {
         return mWebSocketInfoManager;
     }
+
+    /**
+     * HTTPサーバの統計情報を取得する.
+     * <p>
+     * HTTPリクエストのスレッドがレスポンスを待機から戻った回数と、レスポンスを渡した回数などを格納する。
+     * </p>
+     * @return 統計情報. HTTPサーバが起動していない場合はnull
+     */
+    public Bundle getHttpServerStats() {
+        DConnectServerEventListenerImpl listener = mWebServerListener;
+        if (listener == null) {
+            return null;
+        }
+        Bundle stats = new Bundle();
+        stats.putLong("wakeups", listener.getWakeupCount());
+        stats.putLong("completions", listener.getCompletionCount());
+        stats.putLong("timeouts", listener.getTimeoutCount());
+        stats.putLong("discarded", listener.getDiscardedCount());
+        return stats;
+    }
+
+    /**
+     * WebSocketの統計情報を取得する.
+     * <p>
+     * 接続中のWebSocketの個数と、pongが期限内に返ってこなかった回数、最大数を超えたために拒否した接続数を格納する。
+     * </p>
+     * @return 統計情報. HTTPサーバが起動していない場合はnull
+     */
+    public Bundle getWebSocketStats() {
+        DConnectServer server = mRESTfulServer;
+        if (!(server instanceof DConnectServerNanoHttpd)) {
+            return null;
+        }
+        DConnectServerNanoHttpd nanoHttpd = (DConnectServerNanoHttpd) server;
+        Bundle stats = new Bundle();
+        stats.putInt("connections", nanoHttpd.getWebSocketCount());
+        stats.putLong("latePongs", nanoHttpd.getLatePongCount());
+        stats.putLong("rejected", nanoHttpd.getRejectedWebSocketCount());
+        return stats;
+    }
 }
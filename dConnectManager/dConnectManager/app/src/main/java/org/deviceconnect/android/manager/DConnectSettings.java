@@ -27,6 +27,14 @@ public final class DConnectSettings {
     private static final int DEFAULT_WEB_PORT = 8080;
     /** デフォルトのインターバルを定義. */
     private static final int DEFAULT_INTERVAL = 1000 * 60 * 5;
+    /** WebSocketごとに保持するイベントのデフォルトの最大数を定義. */
+    private static final int DEFAULT_EVENT_QUEUE_CAPACITY = 256;
+    /** 1つのフレームにまとめるイベントのデフォルトの最大数を定義. */
+    private static final int DEFAULT_EVENT_BATCH_SIZE = 32;
+    /** イベントをまとめるデフォルトの時間(ms)を定義. */
+    private static final int DEFAULT_EVENT_BATCH_WINDOW = 100;
+    /** サービス一覧のキャッシュのデフォルトの有効期限(ms)を定義. */
+    private static final int DEFAULT_SERVICE_CACHE_TTL = 60 * 1000;
     /** デフォルトのキーワード. */
     public static final String DEFAULT_KEYWORD = DConnectUtil.createKeyword();
 
@@ -419,6 +427,104 @@ public final class DConnectSettings {
         editor.apply();
     }
 
+    /**
+     * WebSocketに送信するイベントの扱い方を取得する.
+     * @return イベントの扱い方
+     */
+    public WebSocketEventQueue.Policy getEventQueuePolicy() {
+        return WebSocketEventQueue.Policy.parse(
+                mPreferences.getString(mContext.getString(R.string.key_settings_event_queue_policy), null),
+                WebSocketEventQueue.Policy.DROP_OLDEST);
+    }
+
+    /**
+     * WebSocketに送信するイベントの扱い方を設定する.
+     * @param policy イベントの扱い方
+     */
+    public void setEventQueuePolicy(final WebSocketEventQueue.Policy policy) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_event_queue_policy), policy.name());
+        editor.apply();
+    }
+
+    /**
+     * WebSocketごとに保持する送信待ちのイベントの最大数を取得する.
+     * @return イベントの最大数
+     */
+    public int getEventQueueCapacity() {
+        return getPositiveInt(R.string.key_settings_event_queue_capacity, DEFAULT_EVENT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * WebSocketごとに保持する送信待ちのイベントの最大数を設定する.
+     * @param capacity イベントの最大数
+     */
+    public void setEventQueueCapacity(final int capacity) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_event_queue_capacity), String.valueOf(capacity));
+        editor.apply();
+    }
+
+    /**
+     * 1つのフレームにまとめるイベントの最大数を取得する.
+     * @return イベントの最大数
+     */
+    public int getEventBatchSize() {
+        return getPositiveInt(R.string.key_settings_event_batch_size, DEFAULT_EVENT_BATCH_SIZE);
+    }
+
+    /**
+     * 1つのフレームにまとめるイベントの最大数を設定する.
+     * @param size イベントの最大数
+     */
+    public void setEventBatchSize(final int size) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_event_batch_size), String.valueOf(size));
+        editor.apply();
+    }
+
+    /**
+     * イベントを1つのフレームにまとめる時間を取得する.
+     * @return 時間(ms)
+     */
+    public int getEventBatchWindow() {
+        return getPositiveInt(R.string.key_settings_event_batch_window, DEFAULT_EVENT_BATCH_WINDOW);
+    }
+
+    /**
+     * イベントを1つのフレームにまとめる時間を設定する.
+     * @param window 時間(ms)
+     */
+    public void setEventBatchWindow(final int window) {
+        SharedPreferences.Editor editor = mPreferences.edit();
+        editor.putString(mContext.getString(R.string.key_settings_event_batch_window), String.valueOf(window));
+        editor.apply();
+    }
+
+    /**
+     * サービス一覧のキャッシュの有効期限を取得する.
+     * @return 有効期限(ms)
+     */
+    public int getServiceCacheTimeToLive() {
+        return getPositiveInt(R.string.key_settings_service_cache_ttl, DEFAULT_SERVICE_CACHE_TTL);
+    }
+
+    /**
+     * 正の整数の設定値を取得する.
+     * @param keyId キーのリソースID
+     * @param defaultValue 設定されていない、または不正な値の場合に返す値
+     * @return 設定値
+     */
+    private int getPositiveInt(final int keyId, final int defaultValue) {
+        try {
+            int value = Integer.parseInt(mPreferences.getString(mContext.getString(keyId),
+                    String.valueOf(defaultValue)));
+            return value > 0 ? value : defaultValue;
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     @Override
     public String toString() {
         return "{\n" +
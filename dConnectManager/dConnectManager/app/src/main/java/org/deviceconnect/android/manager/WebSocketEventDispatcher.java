@@ -0,0 +1,295 @@
+/*
+ WebSocketEventDispatcher.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager;
+
+import android.os.Bundle;
+
+import org.deviceconnect.android.manager.util.DConnectUtil;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * WebSocketへのイベント送信を管理するクラス.
+ * <p>
+ * WebSocketごとに{@link WebSocketEventQueue}を持ち、固定数のスレッドで順番に送信する。
+ * 1回の送信処理で送るフレーム数に上限を設け、上限に達したら他のWebSocketに順番を譲る。
+ * 送信が詰まっているWebSocketのイベントはキューの上限で破棄されるので、メモリもスレッドも増え続けない。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+class WebSocketEventDispatcher {
+
+    /**
+     * イベントを送信するスレッドの数.
+     */
+    private static final int SENDER_THREAD_COUNT = 4;
+
+    /**
+     * 1回の送信処理で1つのWebSocketに送信するフレームの最大数.
+     */
+    private static final int MAX_FRAMES_PER_DRAIN = 16;
+
+    /**
+     * ロガー.
+     */
+    private final Logger mLogger = Logger.getLogger("dconnect.manager");
+
+    /**
+     * DeviceConnectの設定.
+     */
+    private final DConnectSettings mSettings;
+
+    /**
+     * WebSocketにメッセージを送信するクラス.
+     */
+    private final MessageSender mSender;
+
+    /**
+     * WebSocketのオリジン、もしくはセッションキーごとのキュー.
+     */
+    private final ConcurrentHashMap<String, WebSocketEventQueue> mQueues = new ConcurrentHashMap<>();
+
+    /**
+     * イベントを送信するスレッドプール.
+     */
+    private final ExecutorService mExecutor = Executors.newFixedThreadPool(SENDER_THREAD_COUNT);
+
+    /**
+     * {@link WebSocketEventQueue.Policy#BATCH}の送信を遅らせるためのスケジューラ.
+     */
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * コンストラクタ.
+     *
+     * @param settings DeviceConnectの設定
+     * @param sender WebSocketにメッセージを送信するクラス
+     */
+    WebSocketEventDispatcher(final DConnectSettings settings, final MessageSender sender) {
+        mSettings = settings;
+        mSender = sender;
+    }
+
+    /**
+     * イベントを送信する.
+     * <p>
+     * イベントはキューに追加され、別スレッドで送信される。
+     * </p>
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     * @param event イベント
+     */
+    void dispatch(final String origin, final Bundle event) {
+        WebSocketEventQueue queue = mQueues.get(origin);
+        if (queue == null) {
+            WebSocketEventQueue newQueue = new WebSocketEventQueue(mSettings.getEventQueuePolicy(),
+                    mSettings.getEventQueueCapacity());
+            queue = mQueues.putIfAbsent(origin, newQueue);
+            if (queue == null) {
+                queue = newQueue;
+            }
+        }
+        if (queue.offer(event)) {
+            schedule(origin, queue);
+        }
+    }
+
+    /**
+     * 指定したWebSocketのキューを破棄する.
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     */
+    void remove(final String origin) {
+        WebSocketEventQueue queue = mQueues.remove(origin);
+        if (queue != null) {
+            queue.close();
+            if (queue.getDroppedCount() > 0) {
+                mLogger.warning("Events to WebSocket were dropped: origin=" + origin + " queue=" + queue);
+            } else if (BuildConfig.DEBUG) {
+                mLogger.info("WebSocket event queue is removed: origin=" + origin + " queue=" + queue);
+            }
+        }
+    }
+
+    /**
+     * 指定したWebSocketのキューを取得する.
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     * @return キュー. 存在しない場合はnull
+     */
+    WebSocketEventQueue getQueue(final String origin) {
+        return mQueues.get(origin);
+    }
+
+    /**
+     * 全てのWebSocketのキューを取得する.
+     *
+     * @return キューのマップ(キー: WebSocketのオリジン、もしくはセッションキー)のコピー
+     */
+    Map<String, WebSocketEventQueue> getQueues() {
+        return new HashMap<>(mQueues);
+    }
+
+    /**
+     * 送信処理を停止する.
+     */
+    void shutdown() {
+        for (WebSocketEventQueue queue : mQueues.values()) {
+            queue.close();
+        }
+        mQueues.clear();
+        mScheduler.shutdown();
+        mExecutor.shutdown();
+    }
+
+    /**
+     * 送信処理を開始する.
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     * @param queue キュー
+     */
+    private void schedule(final String origin, final WebSocketEventQueue queue) {
+        final Runnable drain = createDrainTask(origin, queue);
+        try {
+            int window = mSettings.getEventBatchWindow();
+            if (queue.getPolicy() == WebSocketEventQueue.Policy.BATCH && window > 0) {
+                // 指定時間内のイベントをまとめるために送信を遅らせる
+                mScheduler.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        execute(drain);
+                    }
+                }, window, TimeUnit.MILLISECONDS);
+            } else {
+                execute(drain);
+            }
+        } catch (RejectedExecutionException e) {
+            // 停止済み
+        }
+    }
+
+    /**
+     * 送信処理をスレッドプールで実行する.
+     *
+     * @param drain 送信処理
+     */
+    private void execute(final Runnable drain) {
+        try {
+            mExecutor.execute(drain);
+        } catch (RejectedExecutionException e) {
+            // 停止済み
+        }
+    }
+
+    /**
+     * キューのイベントを送信する処理を作成する.
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     * @param queue キュー
+     * @return 送信処理
+     */
+    private Runnable createDrainTask(final String origin, final WebSocketEventQueue queue) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (!drain(origin, queue)) {
+                    // 送信予約は解除されていないので、そのまま後ろに並び直す
+                    execute(this);
+                }
+            }
+        };
+    }
+
+    /**
+     * キューが空になるか、フレーム数の上限に達するまでイベントを送信する.
+     *
+     * @param origin WebSocketのオリジン、もしくはセッションキー
+     * @param queue キュー
+     * @return 送信処理が終了した場合はtrue、上限に達したために続きがある場合はfalse
+     */
+    private boolean drain(final String origin, final WebSocketEventQueue queue) {
+        boolean batch = queue.getPolicy() == WebSocketEventQueue.Policy.BATCH;
+        int maxCount = batch ? mSettings.getEventBatchSize() : 1;
+
+        for (int frames = 0; frames < MAX_FRAMES_PER_DRAIN; frames++) {
+            List<Bundle> events = queue.poll(maxCount);
+            if (events.isEmpty()) {
+                return true;
+            }
+            String message;
+            try {
+                message = batch ? toJSONArray(events) : toJSONObject(events.get(0));
+            } catch (JSONException e) {
+                mLogger.warning("JSONException in sendMessage: " + e.toString());
+                continue;
+            }
+            if (!mSender.sendMessage(origin, message)) {
+                remove(origin);
+                return true;
+            }
+            queue.onSent(events.size());
+        }
+        return false;
+    }
+
+    /**
+     * イベントをJSONの文字列に変換する.
+     *
+     * @param event イベント
+     * @return JSONの文字列
+     * @throws JSONException 変換に失敗した場合
+     */
+    private String toJSONObject(final Bundle event) throws JSONException {
+        JSONObject root = new JSONObject();
+        DConnectUtil.convertBundleToJSON(mSettings, root, event);
+        return root.toString();
+    }
+
+    /**
+     * 複数のイベントをJSONの配列の文字列に変換する.
+     *
+     * @param events イベントのリスト
+     * @return JSONの配列の文字列
+     * @throws JSONException 変換に失敗した場合
+     */
+    private String toJSONArray(final List<Bundle> events) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (Bundle event : events) {
+            JSONObject root = new JSONObject();
+            DConnectUtil.convertBundleToJSON(mSettings, root, event);
+            array.put(root);
+        }
+        return array.toString();
+    }
+
+    /**
+     * WebSocketにメッセージを送信するインターフェース.
+     */
+    interface MessageSender {
+        /**
+         * WebSocketにメッセージを送信する.
+         *
+         * @param origin WebSocketのオリジン、もしくはセッションキー
+         * @param message メッセージ
+         * @return 送信先のWebSocketが存在した場合はtrue、それ以外はfalse
+         */
+        boolean sendMessage(String origin, String message);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ WebSocketEventQueue.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager;
+
+import android.os.Bundle;
+
+import org.deviceconnect.message.DConnectMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * WebSocketごとに送信待ちのイベントを保持するキュー.
+ * <p>
+ * 保持できるイベントの個数には上限があり、上限を超えた場合には古いイベントから破棄する。
+ * これにより、イベントを受信しきれないクライアントがいてもメモリが増え続けないようにする。
+ * </p>
+ * <p>
+ * 送信スレッドの予約状態もこのクラスで管理する。{@link #offer(Bundle)}がtrueを返した場合にのみ
+ * 送信処理を開始し、送信処理は{@link #poll(int)}が空のリストを返すまでイベントを送信すること。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class WebSocketEventQueue {
+
+    /**
+     * キューに溜まったイベントの扱い方.
+     */
+    public enum Policy {
+        /**
+         * 上限を超えた場合に、古いイベントから破棄する.
+         */
+        DROP_OLDEST,
+
+        /**
+         * 同じサービス・プロファイル・属性のイベントは、最新のイベントだけを保持する.
+         */
+        COALESCE,
+
+        /**
+         * 一定時間内のイベントを、JSONの配列として1つのフレームにまとめて送信する.
+         */
+        BATCH;
+
+        /**
+         * 名前からポリシーを取得する.
+         *
+         * @param name ポリシー名
+         * @param defaultPolicy 名前に対応するポリシーがない場合のポリシー
+         * @return ポリシー
+         */
+        public static Policy parse(final String name, final Policy defaultPolicy) {
+            if (name != null) {
+                for (Policy policy : values()) {
+                    if (policy.name().equalsIgnoreCase(name)) {
+                        return policy;
+                    }
+                }
+            }
+            return defaultPolicy;
+        }
+    }
+
+    /**
+     * ポリシー.
+     */
+    private final Policy mPolicy;
+
+    /**
+     * 保持できるイベントの最大数.
+     */
+    private final int mCapacity;
+
+    /**
+     * 送信待ちのイベント.
+     * <p>
+     * {@link Policy#COALESCE}以外では、キーは重複しない別々のオブジェクトになる。
+     * </p>
+     */
+    private final LinkedHashMap<Object, Bundle> mEvents = new LinkedHashMap<>();
+
+    /**
+     * 送信処理の予約状態.
+     */
+    private boolean mScheduled;
+
+    /**
+     * キューを閉じたことを示すフラグ.
+     */
+    private boolean mClosed;
+
+    /**
+     * 溜まったイベントの最大数.
+     */
+    private int mMaxBacklog;
+
+    /**
+     * 上限を超えたために破棄したイベントの数.
+     */
+    private long mDroppedCount;
+
+    /**
+     * 新しいイベントで置き換えたイベントの数.
+     */
+    private long mCoalescedCount;
+
+    /**
+     * 送信したイベントの数.
+     */
+    private long mSentCount;
+
+    /**
+     * 送信したフレームの数.
+     */
+    private long mSentFrameCount;
+
+    /**
+     * コンストラクタ.
+     *
+     * @param policy ポリシー
+     * @param capacity 保持できるイベントの最大数
+     */
+    public WebSocketEventQueue(final Policy policy, final int capacity) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy is null.");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0.");
+        }
+        mPolicy = policy;
+        mCapacity = capacity;
+    }
+
+    /**
+     * ポリシーを取得する.
+     *
+     * @return ポリシー
+     */
+    public Policy getPolicy() {
+        return mPolicy;
+    }
+
+    /**
+     * イベントを追加する.
+     *
+     * @param event イベント
+     * @return 送信処理を開始する必要がある場合はtrue、それ以外はfalse
+     */
+    public synchronized boolean offer(final Bundle event) {
+        if (mClosed) {
+            return false;
+        }
+
+        Object key = null;
+        if (mPolicy == Policy.COALESCE) {
+            key = createCoalesceKey(event);
+        }
+        if (key == null) {
+            key = new Object();
+        }
+        if (mEvents.put(key, event) != null) {
+            mCoalescedCount++;
+        } else if (mEvents.size() > mCapacity) {
+            Iterator<Map.Entry<Object, Bundle>> it = mEvents.entrySet().iterator();
+            it.next();
+            it.remove();
+            mDroppedCount++;
+        }
+        if (mEvents.size() > mMaxBacklog) {
+            mMaxBacklog = mEvents.size();
+        }
+
+        if (mScheduled) {
+            return false;
+        }
+        mScheduled = true;
+        return true;
+    }
+
+    /**
+     * 送信するイベントを取り出す.
+     * <p>
+     * 送信待ちのイベントがない場合には空のリストを返し、送信処理の予約を解除する。
+     * </p>
+     *
+     * @param maxCount 取り出すイベントの最大数
+     * @return イベントのリスト
+     */
+    public synchronized List<Bundle> poll(final int maxCount) {
+        if (mEvents.isEmpty() || mClosed) {
+            mScheduled = false;
+            return Collections.emptyList();
+        }
+
+        List<Bundle> events = new ArrayList<>(Math.min(maxCount, mEvents.size()));
+        Iterator<Bundle> it = mEvents.values().iterator();
+        while (it.hasNext() && events.size() < maxCount) {
+            events.add(it.next());
+            it.remove();
+        }
+        return events;
+    }
+
+    /**
+     * イベントを送信したことを通知する.
+     *
+     * @param eventCount 1つのフレームで送信したイベントの数
+     */
+    public synchronized void onSent(final int eventCount) {
+        mSentCount += eventCount;
+        mSentFrameCount++;
+    }
+
+    /**
+     * キューを閉じる.
+     * <p>
+     * 送信待ちのイベントは破棄され、以降に追加されたイベントも無視される。
+     * </p>
+     */
+    public synchronized void close() {
+        mClosed = true;
+        mEvents.clear();
+    }
+
+    /**
+     * 送信待ちのイベントの数を取得する.
+     *
+     * @return 送信待ちのイベントの数
+     */
+    public synchronized int getBacklog() {
+        return mEvents.size();
+    }
+
+    /**
+     * これまでに溜まったイベントの最大数を取得する.
+     *
+     * @return 溜まったイベントの最大数
+     */
+    public synchronized int getMaxBacklog() {
+        return mMaxBacklog;
+    }
+
+    /**
+     * 上限を超えたために破棄したイベントの数を取得する.
+     *
+     * @return 破棄したイベントの数
+     */
+    public synchronized long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * 新しいイベントで置き換えたイベントの数を取得する.
+     *
+     * @return 置き換えたイベントの数
+     */
+    public synchronized long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /**
+     * 送信したイベントの数を取得する.
+     *
+     * @return 送信したイベントの数
+     */
+    public synchronized long getSentCount() {
+        return mSentCount;
+    }
+
+    /**
+     * 送信したフレームの数を取得する.
+     *
+     * @return 送信したフレームの数
+     */
+    public synchronized long getSentFrameCount() {
+        return mSentFrameCount;
+    }
+
+    /**
+     * イベントをまとめるためのキーを作成する.
+     *
+     * @param event イベント
+     * @return キー. プロファイルが指定されていないイベントの場合はnull
+     */
+    private static Object createCoalesceKey(final Bundle event) {
+        String profile = event.getString(DConnectMessage.EXTRA_PROFILE);
+        if (profile == null) {
+            return null;
+        }
+        return event.getString(DConnectMessage.EXTRA_SERVICE_ID) + "/" + profile
+                + "/" + event.getString(DConnectMessage.EXTRA_INTERFACE)
+                + "/" + event.getString(DConnectMessage.EXTRA_ATTRIBUTE);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "{policy: " + mPolicy + ", backlog: " + mEvents.size() + ", maxBacklog: " + mMaxBacklog
+                + ", dropped: " + mDroppedCount + ", coalesced: " + mCoalescedCount
+                + ", sent: " + mSentCount + ", frames: " + mSentFrameCount + "}";
+    }
+}
@@ -7,10 +7,10 @@
 package org.deviceconnect.android.manager;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * イベント送信経路(WebSocket)管理クラス.
@@ -21,7 +21,7 @@ public class WebSocketInfoManager {
     /**
      * WebSocketを格納しておくMap.
      */
-    private final Map<String, WebSocketInfo> mWebSocketInfoMap = new HashMap<>();
+    private final Map<String, WebSocketInfo> mWebSocketInfoMap = new ConcurrentHashMap<>();
 
     /**
      * WebSocketのイベントリスナー.
@@ -16,6 +16,7 @@ import org.deviceconnect.android.manager.DConnectLocalOAuth;
 import org.deviceconnect.android.manager.DConnectMessageService;
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.DevicePluginManager;
+import org.deviceconnect.android.manager.plugin.ServiceRegistry;
 import org.deviceconnect.android.manager.request.DiscoveryDeviceRequest;
 import org.deviceconnect.android.profile.DConnectProfile;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
@@ -46,6 +47,8 @@ public class EventBroker {
 
     private RegistrationListener mListener;
 
+    private ServiceRegistry mServiceRegistry;
+
     public EventBroker(final DConnectMessageService context,
                        final EventSessionTable table,
                        final DConnectLocalOAuth localOAuth,
@@ -60,6 +63,14 @@ public class EventBroker {
         mListener = listener;
     }
 
+    /**
+     * onServiceChangeイベントで更新するサービス一覧のキャッシュを設定する.
+     * @param registry サービス一覧のキャッシュ
+     */
+    public void setServiceRegistry(final ServiceRegistry registry) {
+        mServiceRegistry = registry;
+    }
+
     public void removeEventSession(final String receiverId) {
         mTable.removeForReceiverId(receiverId);
     }
@@ -140,16 +151,8 @@ public class EventBroker {
 
         EventSession targetSession = null;
         if (pluginAccessToken != null) {
-            for (EventSession session : mTable.getAll()) {
-                if (isSameNameCaseSensitive(pluginAccessToken, session.getAccessToken()) &&
-                    isSameNameCaseSensitive(serviceId, session.getServiceId()) &&
-                    isSameName(profileName, session.getProfileName()) &&
-                    isSameName(interfaceName, session.getInterfaceName()) &&
-                    isSameName(attributeName, session.getAttributeName())) {
-                    targetSession = session;
-                    break;
-                }
-            }
+            targetSession = mTable.findByAccessToken(pluginAccessToken, serviceId,
+                profileName, interfaceName, attributeName);
         } else {
             // 旧バージョンのイベントAPIとの互換性保持
             String sessionKey = DConnectProfile.getSessionKey(event);
@@ -157,17 +160,8 @@ public class EventBroker {
                 sessionKey = trimReceiverName(sessionKey);
                 String pluginId = EventProtocol.convertSessionKey2PluginId(sessionKey);
                 String receiverId = EventProtocol.convertSessionKey2Key(sessionKey);
-                for (EventSession session : mTable.getAll()) {
-                    if (isSameNameCaseSensitive(pluginId, session.getPluginId()) &&
-                        isSameNameCaseSensitive(receiverId, session.getReceiverId()) &&
-                        isSameNameCaseSensitive(serviceId, session.getServiceId()) &&
-                        isSameName(profileName, session.getProfileName()) &&
-                        isSameName(interfaceName, session.getInterfaceName()) &&
-                        isSameName(attributeName, session.getAttributeName())) {
-                        targetSession = session;
-                        break;
-                    }
-                }
+                targetSession = mTable.findByReceiverId(pluginId, receiverId, serviceId,
+                    profileName, interfaceName, attributeName);
             }
         }
         if (targetSession != null) {
@@ -215,6 +209,13 @@ public class EventBroker {
         Bundle service = event.getParcelableExtra(ServiceDiscoveryProfile.PARAM_NETWORK_SERVICE);
         String id = service.getString(ServiceDiscoveryProfile.PARAM_ID);
 
+        // キャッシュされているサービス一覧に反映
+        if (mServiceRegistry != null) {
+            Bundle cached = new Bundle(service);
+            cached.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginManager.appendServiceId(plugin, id));
+            mServiceRegistry.onServiceChange(plugin.getPluginId(), cached);
+        }
+
         // サービスIDを変更
         replaceServiceId(event, plugin);
 
@@ -284,28 +285,6 @@ public class EventBroker {
             mPluginManager.appendServiceId(plugin, serviceId));
     }
 
-    private boolean isSameName(final String a, final  String b) {
-        if (a == null && b == null) {
-            return true;
-        }
-        if (a != null) {
-            return a.equalsIgnoreCase(b);
-        } else {
-            return b.equalsIgnoreCase(a);
-        }
-    }
-
-    private boolean isSameNameCaseSensitive(final String a, final  String b) {
-        if (a == null && b == null) {
-            return true;
-        }
-        if (a != null) {
-            return a.equals(b);
-        } else {
-            return b.equals(a);
-        }
-    }
-
     private boolean isRegistrationRequest(final Intent request) {
         String action = request.getAction();
         return IntentDConnectMessage.ACTION_PUT.equals(action);
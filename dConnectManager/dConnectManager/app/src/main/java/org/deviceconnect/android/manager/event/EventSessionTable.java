@@ -4,19 +4,79 @@ package org.deviceconnect.android.manager.event;
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * イベントセッションの一覧.
+ * <p>
+ * イベント受信時の検索を高速化するため、以下の2つのインデックスを保持する。
+ * インデックスの値は変更されないリストとして公開するので、検索時にはロックもコピーも不要となる。
+ * </p>
+ * <ul>
+ * <li>アクセストークン, サービスID, プロファイル名, インターフェース名, アトリビュート名</li>
+ * <li>プラグインID, レシーバーID, サービスID, プロファイル名, インターフェース名, アトリビュート名 (旧バージョンのセッションキー用)</li>
+ * </ul>
+ * <p>
+ * プロファイル名, インターフェース名, アトリビュート名の大文字小文字は区別しない。
+ * </p>
+ */
 public class EventSessionTable {
 
     private final List<EventSession> mEventSessions = new ArrayList<>();
 
+    /** アクセストークンをキーに含むインデックス. */
+    private final Map<IndexKey, List<EventSession>> mAccessTokenIndex = new ConcurrentHashMap<>();
+
+    /** プラグインIDとレシーバーIDをキーに含むインデックス. */
+    private final Map<IndexKey, List<EventSession>> mReceiverIndex = new ConcurrentHashMap<>();
+
     public List<EventSession> getAll() {
         synchronized (mEventSessions) {
             return new ArrayList<>(mEventSessions);
         }
     }
 
+    /**
+     * アクセストークンとイベントのパスに一致するセッションを取得する.
+     *
+     * @param accessToken プラグインのアクセストークン
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return セッション。見つからない場合は<code>null</code>
+     */
+    EventSession findByAccessToken(final String accessToken, final String serviceId,
+                                   final String profileName, final String interfaceName,
+                                   final String attributeName) {
+        return findFirst(mAccessTokenIndex, IndexKey.forAccessToken(accessToken, serviceId,
+                profileName, interfaceName, attributeName));
+    }
+
+    /**
+     * プラグインID・レシーバーIDとイベントのパスに一致するセッションを取得する.
+     *
+     * @param pluginId プラグインID
+     * @param receiverId レシーバーID
+     * @param serviceId サービスID
+     * @param profileName プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attributeName アトリビュート名
+     * @return セッション。見つからない場合は<code>null</code>
+     */
+    EventSession findByReceiverId(final String pluginId, final String receiverId, final String serviceId,
+                                  final String profileName, final String interfaceName,
+                                  final String attributeName) {
+        return findFirst(mReceiverIndex, IndexKey.forReceiverId(pluginId, receiverId, serviceId,
+                profileName, interfaceName, attributeName));
+    }
+
     List<EventSession> findEventSessionsForPlugin(final DevicePlugin plugin) {
         List<EventSession> result = new ArrayList<>();
         synchronized (mEventSessions) {
@@ -32,12 +92,15 @@ public class EventSessionTable {
     void add(final EventSession session) {
         synchronized(mEventSessions) {
             mEventSessions.add(session);
+            addToIndex(session);
         }
     }
 
     void remove(final EventSession session) {
         synchronized (mEventSessions) {
-            mEventSessions.remove(session);
+            if (mEventSessions.remove(session)) {
+                removeFromIndex(session);
+            }
         }
     }
 
@@ -45,7 +108,9 @@ public class EventSessionTable {
         synchronized (mEventSessions) {
             for (EventSession session : mEventSessions) {
                 if (session.getPluginId().equals(pluginId)) {
+                    removeFromIndex(mAccessTokenIndex, IndexKey.forAccessToken(session), session);
                     session.setAccessToken(newAccessToken);
+                    addToIndex(mAccessTokenIndex, IndexKey.forAccessToken(session), session);
                 }
             }
         }
@@ -57,6 +122,7 @@ public class EventSessionTable {
                 EventSession session = it.next();
                 if (session.getPluginId().equals(pluginId)) {
                     it.remove();
+                    removeFromIndex(session);
                 }
             }
         }
@@ -65,10 +131,128 @@ public class EventSessionTable {
     void removeForReceiverId(final String receiverId) {
         synchronized (mEventSessions) {
             for (Iterator<EventSession> it = mEventSessions.iterator(); it.hasNext(); ) {
-                if (it.next().getReceiverId().equals(receiverId)) {
+                EventSession session = it.next();
+                if (session.getReceiverId().equals(receiverId)) {
                     it.remove();
+                    removeFromIndex(session);
                 }
             }
         }
     }
+
+    private void addToIndex(final EventSession session) {
+        addToIndex(mAccessTokenIndex, IndexKey.forAccessToken(session), session);
+        addToIndex(mReceiverIndex, IndexKey.forReceiverId(session), session);
+    }
+
+    private void removeFromIndex(final EventSession session) {
+        removeFromIndex(mAccessTokenIndex, IndexKey.forAccessToken(session), session);
+        removeFromIndex(mReceiverIndex, IndexKey.forReceiverId(session), session);
+    }
+
+    private static EventSession findFirst(final Map<IndexKey, List<EventSession>> index, final IndexKey key) {
+        List<EventSession> sessions = index.get(key);
+        if (sessions == null || sessions.isEmpty()) {
+            return null;
+        }
+        return sessions.get(0);
+    }
+
+    /**
+     * インデックスにセッションを追加する.
+     * <p>
+     * インデックスの値は、ロックせずに参照されるため、常に新しいリストに置き換える。
+     * mEventSessionsのロックを取得した状態で呼び出すこと。
+     * </p>
+     */
+    private static void addToIndex(final Map<IndexKey, List<EventSession>> index, final IndexKey key,
+                                   final EventSession session) {
+        List<EventSession> current = index.get(key);
+        List<EventSession> next = new ArrayList<>(current != null ? current.size() + 1 : 1);
+        if (current != null) {
+            next.addAll(current);
+        }
+        next.add(session);
+        index.put(key, Collections.unmodifiableList(next));
+    }
+
+    /**
+     * インデックスからセッションを削除する.
+     * <p>
+     * mEventSessionsのロックを取得した状態で呼び出すこと。
+     * </p>
+     */
+    private static void removeFromIndex(final Map<IndexKey, List<EventSession>> index, final IndexKey key,
+                                        final EventSession session) {
+        List<EventSession> current = index.get(key);
+        if (current == null) {
+            return;
+        }
+        List<EventSession> next = new ArrayList<>(current);
+        next.remove(session);
+        if (next.isEmpty()) {
+            index.remove(key);
+        } else {
+            index.put(key, Collections.unmodifiableList(next));
+        }
+    }
+
+    /**
+     * インデックスのキー.
+     */
+    private static final class IndexKey {
+        private final String[] mValues;
+        private final int mHashCode;
+
+        private IndexKey(final String... values) {
+            mValues = values;
+            mHashCode = Arrays.hashCode(values);
+        }
+
+        static IndexKey forAccessToken(final EventSession session) {
+            return forAccessToken(session.getAccessToken(), session.getServiceId(),
+                    session.getProfileName(), session.getInterfaceName(), session.getAttributeName());
+        }
+
+        static IndexKey forAccessToken(final String accessToken, final String serviceId,
+                                       final String profileName, final String interfaceName,
+                                       final String attributeName) {
+            return new IndexKey(accessToken, serviceId,
+                    normalize(profileName), normalize(interfaceName), normalize(attributeName));
+        }
+
+        static IndexKey forReceiverId(final EventSession session) {
+            return forReceiverId(session.getPluginId(), session.getReceiverId(), session.getServiceId(),
+                    session.getProfileName(), session.getInterfaceName(), session.getAttributeName());
+        }
+
+        static IndexKey forReceiverId(final String pluginId, final String receiverId, final String serviceId,
+                                      final String profileName, final String interfaceName,
+                                      final String attributeName) {
+            return new IndexKey(pluginId, receiverId, serviceId,
+                    normalize(profileName), normalize(interfaceName), normalize(attributeName));
+        }
+
+        // MEMO パスの大文字小文字を無視
+        private static String normalize(final String name) {
+            return name != null ? name.toLowerCase(Locale.ENGLISH) : null;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IndexKey)) {
+                return false;
+            }
+            IndexKey that = (IndexKey) o;
+            return mHashCode == that.mHashCode && Arrays.equals(mValues, that.mValues);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
 }
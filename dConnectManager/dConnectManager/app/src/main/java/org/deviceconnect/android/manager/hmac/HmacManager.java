@@ -16,6 +16,9 @@ import android.provider.BaseColumns;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -211,6 +214,16 @@ public final class HmacManager {
          */
         private static final String DROP = "DROP TABLE IF EXISTS " + TABLE_NAME;
 
+        /**
+         * The snapshot of all HMAC keys.
+         * <p>
+         * It is shared by all instances because they use the same database,
+         * and replaced with a new map whenever the database is modified.
+         * <code>null</code> if it has not been loaded yet.
+         * </p>
+         */
+        private static volatile Map<String, HmacKey> sKeys;
+
         /**
          * Constructor.
          * @param context Context
@@ -234,20 +247,42 @@ public final class HmacManager {
          * @param origin Origin
          * @return HMAC key
          */
-        synchronized HmacKey getKey(final String origin) {
-            SQLiteDatabase db = openDB();
-            if (db == null) {
-                return null;
+        HmacKey getKey(final String origin) {
+            Map<String, HmacKey> keys = sKeys;
+            if (keys == null) {
+                synchronized (HmacKeyDB.class) {
+                    keys = sKeys;
+                    if (keys == null) {
+                        keys = reloadKeys();
+                    }
+                }
             }
-            Cursor c = db.query(TABLE_NAME, null, ORIGIN + "=?", new String[]{origin}, null, null, null);
-            HmacKey key = null;
-            if (c.moveToFirst()) {
-                key = new HmacKey(c.getString(1), c.getString(2));
+            return keys.get(origin);
+        }
+
+        /**
+         * Reloads the snapshot of all HMAC keys from the database.
+         * @return the new snapshot
+         */
+        private Map<String, HmacKey> reloadKeys() {
+            synchronized (HmacKeyDB.class) {
+                Map<String, HmacKey> keys = new HashMap<>();
+                SQLiteDatabase db = openDB();
+                if (db != null) {
+                    Cursor c = db.query(TABLE_NAME, null, null, null, null, null, null);
+                    if (c.moveToFirst()) {
+                        do {
+                            HmacKey key = new HmacKey(c.getString(1), c.getString(2));
+                            keys.put(key.getOrigin(), key);
+                        } while (c.moveToNext());
+                    }
+                    c.close();
+                    db.close();
+                }
+                keys = Collections.unmodifiableMap(keys);
+                sKeys = keys;
+                return keys;
             }
- 
-            c.close();
-            db.close();
-            return key;
         }
 
         /**
@@ -313,6 +348,7 @@ public final class HmacManager {
                 }
                 db.endTransaction();
                 db.close();
+                reloadKeys();
             }
             return HmacKeyError.NONE;
         }
@@ -341,6 +377,7 @@ public final class HmacManager {
                 }
             } finally {
                 db.close();
+                reloadKeys();
             }
             return HmacKeyError.NONE;
         }
@@ -13,9 +13,14 @@ import android.content.ServiceConnection;
 import android.os.IBinder;
 import android.os.RemoteException;
 
+import org.deviceconnect.android.BatchMessageSender;
 import org.deviceconnect.android.IDConnectCallback;
 import org.deviceconnect.android.IDConnectPlugin;
+import org.deviceconnect.android.MessageBatch;
+import org.deviceconnect.android.message.MessageUtils;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -38,6 +43,14 @@ public class BinderConnection extends AbstractConnection {
 
     private IDConnectPlugin mPlugin;
 
+    /**
+     * メッセージをまとめて送信するクラス.
+     * <p>
+     * プラグインがまとめて送信するプロトコルに対応していない場合はnull.
+     * </p>
+     */
+    private BatchMessageSender mBatchSender;
+
     private Future<ConnectingResult> mRunningTask;
 
     private ExecutorService mExecutor = Executors.newSingleThreadExecutor();
@@ -81,6 +94,7 @@ public class BinderConnection extends AbstractConnection {
 
         if (result.mError == null) {
             mPlugin = result.mPlugin;
+            mBatchSender = result.mBatchSender;
             mServiceConnection = result.mServiceConnection;
             setConnectedState();
         } else {
@@ -96,6 +110,7 @@ public class BinderConnection extends AbstractConnection {
                 mContext.unbindService(mServiceConnection);
                 mServiceConnection = null;
                 mPlugin = null;
+                mBatchSender = null;
             }
             setDisconnectedState();
         }
@@ -104,6 +119,8 @@ public class BinderConnection extends AbstractConnection {
     @Override
     public void send(final Intent message) throws MessagingException {
         mLogger.info("BinderConnection.send: sending: target = " + mPluginName.getPackageName());
+        IDConnectPlugin plugin;
+        BatchMessageSender batchSender;
         synchronized (this) {
             if (ConnectionState.SUSPENDED == getState()) {
                 throw new MessagingException(MessagingException.Reason.CONNECTION_SUSPENDED);
@@ -111,15 +128,104 @@ public class BinderConnection extends AbstractConnection {
             if (ConnectionState.CONNECTED != getState()) {
                 throw new MessagingException(MessagingException.Reason.NOT_CONNECTED);
             }
+            plugin = mPlugin;
+            batchSender = mBatchSender;
+        }
+        if (batchSender != null) {
+            // 送信スレッドで、溜まったメッセージとまとめて送信する
+            batchSender.send(message);
+            return;
         }
         try {
-            mPlugin.sendMessage(message);
+            plugin.sendMessage(message);
             mLogger.info("BinderConnection.send: sent: target = " + mPluginName.getPackageName());
         } catch (RemoteException e) {
             throw new MessagingException(e, MessagingException.Reason.NOT_CONNECTED);
         }
     }
 
+    /**
+     * プラグインにメッセージをまとめて送信するクラスを作成する.
+     *
+     * @param plugin 送信先のプラグイン
+     * @return メッセージをまとめて送信するクラス
+     */
+    private BatchMessageSender createBatchSender(final IDConnectPlugin plugin) {
+        final BatchMessageSender batchSender = new BatchMessageSender(new BatchMessageSender.Transport() {
+            @Override
+            public void sendMessage(final Intent message) throws RemoteException {
+                plugin.sendMessage(message);
+            }
+
+            @Override
+            public void sendMessages(final MessageBatch batch) throws RemoteException {
+                plugin.sendMessages(batch);
+            }
+        });
+        batchSender.setOnSendFailedListener(new BatchMessageSender.OnSendFailedListener() {
+            @Override
+            public void onSendFailed(final List<Intent> messages) {
+                onBatchSendFailed(batchSender, messages);
+            }
+        });
+        return batchSender;
+    }
+
+    /**
+     * まとめて送信したメッセージの送信に失敗した時の処理を行う.
+     * <p>
+     * プラグインとの連携を停止し、送信できなかったリクエストにはエラーレスポンスを返却する。
+     * 以降のリクエストは、再接続できるまで送信前にエラーとなる。
+     * </p>
+     *
+     * @param batchSender 送信に失敗したクラス
+     * @param messages 送信できなかったメッセージのリスト
+     */
+    private void onBatchSendFailed(final BatchMessageSender batchSender, final List<Intent> messages) {
+        mLogger.warning("BinderConnection.onBatchSendFailed: target = " + mPluginName.getPackageName()
+                + ", count = " + messages.size());
+        synchronized (this) {
+            if (mBatchSender == batchSender) {
+                try {
+                    mContext.unbindService(mServiceConnection);
+                } catch (IllegalArgumentException e) {
+                    // 既に切断されている場合
+                }
+                mServiceConnection = null;
+                mPlugin = null;
+                mBatchSender = null;
+                setSuspendedState(ConnectionError.TERMINATED);
+            }
+        }
+        for (Intent message : messages) {
+            sendErrorResponse(message);
+        }
+    }
+
+    /**
+     * 送信できなかったリクエストに対して、エラーレスポンスを返却する.
+     * <p>
+     * リクエストコードを持たないメッセージは無視する。
+     * </p>
+     *
+     * @param request 送信できなかったリクエスト
+     */
+    private void sendErrorResponse(final Intent request) {
+        if (!request.hasExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE)) {
+            return;
+        }
+        Intent response = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
+        response.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE,
+                request.getIntExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, 0));
+        MessageUtils.setIllegalServerStateError(response,
+                "Failed to send a message to the plugin: " + mPluginName.getPackageName());
+        try {
+            mCallback.sendMessage(response);
+        } catch (RemoteException e) {
+            mLogger.warning("Failed to return an error response: " + e.getMessage());
+        }
+    }
+
     private class ConnectingTask implements Callable<ConnectingResult> {
 
         @Override
@@ -136,12 +242,19 @@ public class BinderConnection extends AbstractConnection {
                 public void onServiceConnected(final ComponentName componentName, final IBinder binder) {
                     mLogger.info("onServiceConnected: componentName = " + componentName + ", binder = " + binder);
                     try {
-                        IDConnectPlugin plugin = IDConnectPlugin.Stub.asInterface(binder);
+                        final IDConnectPlugin plugin = IDConnectPlugin.Stub.asInterface(binder);
                         plugin.registerCallback(mCallback);
 
+                        // 旧バージョンのプラグインは0を返すので、メッセージを1件ずつ送信する
+                        BatchMessageSender batchSender = null;
+                        if (plugin.getProtocolVersion() >= BatchMessageSender.PROTOCOL_VERSION) {
+                            batchSender = createBatchSender(plugin);
+                        }
+
                         synchronized (lockObj) {
                             result.mIsComplete = true;
                             result.mPlugin = plugin;
+                            result.mBatchSender = batchSender;
                             result.mServiceConnection = this;
                             lockObj.notifyAll();
                         }
@@ -157,6 +270,7 @@ public class BinderConnection extends AbstractConnection {
                     synchronized (BinderConnection.this) {
                         mServiceConnection = null;
                         mPlugin = null;
+                        mBatchSender = null;
                         setSuspendedState(ConnectionError.TERMINATED);
                     }
                 }
@@ -181,6 +295,7 @@ public class BinderConnection extends AbstractConnection {
     private class ConnectingResult {
         boolean mIsComplete;
         IDConnectPlugin mPlugin;
+        BatchMessageSender mBatchSender;
         ServiceConnection mServiceConnection;
         ConnectionError mError;
     }
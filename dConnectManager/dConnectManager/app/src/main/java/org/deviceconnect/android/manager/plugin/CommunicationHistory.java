@@ -62,6 +62,11 @@ public class CommunicationHistory {
      */
     private int mHistoryMaxSize = DEFAULT_HISTORY_MAX_SIZE;
 
+    /**
+     * 応答時間の統計.
+     */
+    private final LatencyStats mLatencyStats = new LatencyStats();
+
     /**
      * コンストラクタ.
      *
@@ -121,6 +126,14 @@ public class CommunicationHistory {
         return mPreferences.getString(KEY_WORST_REQUEST, "None");
     }
 
+    /**
+     * 応答時間の統計を取得します.
+     * @return 応答時間の統計
+     */
+    public LatencyStats getLatencyStats() {
+        return mLatencyStats;
+    }
+
     public void add(final Info info) {
         if (!info.isTimeout()) {
             add(mRespondedList, info);
@@ -185,6 +185,57 @@ public class DevicePlugin {
         String serviceId = getServiceId(request);
         String path = DConnectUtil.convertRequestToString(request);
         mHistory.add(new CommunicationHistory.Info(serviceId, path, start));
+        mHistory.getLatencyStats().recordTimeout(getMethodName(request), getApiPath(request));
+    }
+
+    /**
+     * 指定されたリクエストの応答時間を統計に記録する.
+     *
+     * {@link #reportRoundTrip(Intent, long, long)}と異なり、ビルドの種類に関わらず常に記録する.
+     *
+     * @param request プラグインへ送信したリクエスト
+     * @param response プラグインから受信したレスポンス
+     * @param start リクエスト送信時刻
+     * @param end レスポンス受信時刻
+     */
+    public void reportLatency(final Intent request, final Intent response, final long start, final long end) {
+        int result = response.getIntExtra(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_ERROR);
+        mHistory.getLatencyStats().recordResponse(getMethodName(request), getApiPath(request),
+                end - start, result != DConnectMessage.RESULT_OK);
+    }
+
+    /**
+     * 指定されたリクエストの送信失敗を統計に記録する.
+     *
+     * @param request プラグインへ送信できなかったリクエスト
+     */
+    public void reportSendError(final Intent request) {
+        mHistory.getLatencyStats().recordError(getMethodName(request), getApiPath(request));
+    }
+
+    /**
+     * 統計の集計に使用するHTTPメソッド名をリクエストから取得する.
+     *
+     * @param request プラグインへ送信したリクエスト
+     * @return HTTPメソッド名
+     */
+    private static String getMethodName(final Intent request) {
+        return LatencyStats.toMethodName(request.getAction());
+    }
+
+    /**
+     * 統計の集計に使用するAPIのパスをリクエストから取得する.
+     * <p>
+     * サービスIDを含まない、プロファイル・インターフェース・アトリビュートからなるパスを返却する。
+     * </p>
+     *
+     * @param request プラグインへ送信したリクエスト
+     * @return APIのパス
+     */
+    private static String getApiPath(final Intent request) {
+        return LatencyStats.toPath(request.getStringExtra(DConnectMessage.EXTRA_PROFILE),
+                request.getStringExtra(DConnectMessage.EXTRA_INTERFACE),
+                request.getStringExtra(DConnectMessage.EXTRA_ATTRIBUTE));
     }
 
     private static String getServiceId(final Intent request) {
@@ -0,0 +1,280 @@
+/*
+ LatencyHistogram.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 応答時間の分布を記録するヒストグラム.
+ * <p>
+ * バケットは固定の対数線形で、16ミリ秒未満は1ミリ秒刻み、それ以上は2のべき乗ごとに8分割する。
+ * 分位数の誤差は最大で12.5%となる。
+ * </p>
+ * <p>
+ * カウンタはスレッドごとに異なるストライプに分散して記録するため、
+ * 複数のスレッドから同時に記録してもロックや同じキャッシュラインの奪い合いが発生しにくい。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 1ミリ秒刻みで記録する範囲.
+     */
+    private static final int LINEAR_LIMIT = 16;
+
+    /**
+     * 2のべき乗ごとの分割数のビット数.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * 2のべき乗ごとの分割数.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * {@link #LINEAR_LIMIT}の指数.
+     */
+    private static final int MIN_EXPONENT = 4;
+
+    /**
+     * 記録する最大の指数. これ以上の値(約17分以上)は最後のバケットに記録する.
+     */
+    private static final int MAX_EXPONENT = 20;
+
+    /**
+     * バケットの個数.
+     */
+    static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - MIN_EXPONENT) * SUB_BUCKET_COUNT + 1;
+
+    /**
+     * ストライプの個数.
+     */
+    private static final int STRIPE_COUNT = stripeCount();
+
+    /**
+     * 1ストライプあたりのスロット数.
+     * <p>
+     * 各バケットのカウンタに加えて、合計値を記録するスロットを持つ。
+     * </p>
+     */
+    private static final int STRIPE_SIZE = BUCKET_COUNT + 1;
+
+    /**
+     * 合計値を記録するスロットの位置.
+     */
+    private static final int SUM_SLOT = BUCKET_COUNT;
+
+    /**
+     * ストライプごとのカウンタ.
+     */
+    private final AtomicLongArray mCounters = new AtomicLongArray(STRIPE_COUNT * STRIPE_SIZE);
+
+    /**
+     * 記録された最大値.
+     */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 応答時間を記録する.
+     *
+     * @param millis 応答時間(ミリ秒). 負の値は0として扱う
+     */
+    public void record(final long millis) {
+        long value = Math.max(0, millis);
+        int base = stripe() * STRIPE_SIZE;
+        mCounters.incrementAndGet(base + bucketOf(value));
+        mCounters.addAndGet(base + SUM_SLOT, value);
+
+        long max = mMax.get();
+        while (value > max) {
+            if (mMax.compareAndSet(max, value)) {
+                break;
+            }
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * 記録された値を集計する.
+     * <p>
+     * 記録中の値は含まれない場合があるが、記録を止めずに集計できる。
+     * </p>
+     *
+     * @return 集計結果
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPE_COUNT; stripe++) {
+            int base = stripe * STRIPE_SIZE;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                buckets[i] += mCounters.get(base + i);
+            }
+            sum += mCounters.get(base + SUM_SLOT);
+        }
+        return new Snapshot(buckets, sum, mMax.get());
+    }
+
+    /**
+     * 現在のスレッドが使用するストライプを取得する.
+     *
+     * @return ストライプの番号
+     */
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 16)) & (STRIPE_COUNT - 1);
+    }
+
+    /**
+     * CPUの個数からストライプの個数を決める.
+     *
+     * @return 2のべき乗のストライプの個数
+     */
+    private static int stripeCount() {
+        int cpus = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 8));
+        return Integer.highestOneBit(cpus * 2 - 1);
+    }
+
+    /**
+     * 値を記録するバケットを取得する.
+     *
+     * @param value 値
+     * @return バケットの番号
+     */
+    static int bucketOf(final long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return LINEAR_LIMIT + (exponent - MIN_EXPONENT) * SUB_BUCKET_COUNT + sub;
+    }
+
+    /**
+     * バケットに記録される値の上限を取得する.
+     *
+     * @param bucket バケットの番号
+     * @return バケットに記録される最大の値. 最後のバケットの場合は{@link Long#MAX_VALUE}
+     */
+    static long upperBoundOf(final int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        if (bucket >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = MIN_EXPONENT + (bucket - LINEAR_LIMIT) / SUB_BUCKET_COUNT;
+        int sub = (bucket - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+
+    /**
+     * ヒストグラムの集計結果.
+     */
+    public static final class Snapshot {
+
+        /**
+         * バケットごとの件数.
+         */
+        private final long[] mBuckets;
+
+        /**
+         * 件数.
+         */
+        private final long mCount;
+
+        /**
+         * 合計値.
+         */
+        private final long mSum;
+
+        /**
+         * 最大値.
+         */
+        private final long mMax;
+
+        /**
+         * コンストラクタ.
+         *
+         * @param buckets バケットごとの件数
+         * @param sum 合計値
+         * @param max 最大値
+         */
+        Snapshot(final long[] buckets, final long sum, final long max) {
+            long count = 0;
+            for (long c : buckets) {
+                count += c;
+            }
+            mBuckets = buckets;
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+        }
+
+        /**
+         * 件数を取得する.
+         *
+         * @return 件数
+         */
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * 合計値を取得する.
+         *
+         * @return 合計値(ミリ秒)
+         */
+        public long getSum() {
+            return mSum;
+        }
+
+        /**
+         * 最大値を取得する.
+         *
+         * @return 最大値(ミリ秒)
+         */
+        public long getMax() {
+            return mMax;
+        }
+
+        /**
+         * 指定した分位数の値を取得する.
+         * <p>
+         * 値はその分位数を含むバケットの上限となる。ただし、最大値を超えることはない。
+         * </p>
+         *
+         * @param quantile 分位数(0.0〜1.0)
+         * @return 分位数の値(ミリ秒). 記録がない場合は0
+         */
+        public long getPercentile(final double quantile) {
+            if (mCount == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * mCount);
+            if (rank < 1) {
+                rank = 1;
+            }
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), mMax);
+                }
+            }
+            return mMax;
+        }
+    }
+}
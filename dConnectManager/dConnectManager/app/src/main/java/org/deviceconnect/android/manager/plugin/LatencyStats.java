@@ -0,0 +1,275 @@
+/*
+ LatencyStats.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * デバイスプラグインへのリクエストの応答時間の統計.
+ * <p>
+ * プラグイン全体と、API(メソッドとパス)ごとに{@link LatencyHistogram}とタイムアウト・エラーの件数を保持する。
+ * デバッグビルドに限らず常に記録する。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class LatencyStats {
+
+    /**
+     * API単位で記録する最大の個数.
+     * <p>
+     * これを超えた場合は{@link #OTHER_PATH}にまとめて記録する。
+     * </p>
+     */
+    static final int MAX_API_COUNT = 256;
+
+    /**
+     * {@link #MAX_API_COUNT}を超えたAPIをまとめるパス.
+     */
+    static final String OTHER_PATH = "/*";
+
+    /**
+     * プラグイン全体の統計.
+     */
+    private final Entry mTotal = new Entry(null, null);
+
+    /**
+     * APIごとの統計.
+     */
+    private final ConcurrentHashMap<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /**
+     * レスポンスを受信したリクエストの応答時間を記録する.
+     *
+     * @param method HTTPメソッド名
+     * @param path プロファイル、インターフェース、アトリビュートからなるパス
+     * @param millis 応答時間(ミリ秒)
+     * @param error レスポンスがエラーの場合はtrue
+     */
+    public void recordResponse(final String method, final String path, final long millis, final boolean error) {
+        record(mTotal, millis, error);
+        record(getEntry(method, path), millis, error);
+    }
+
+    /**
+     * レスポンスがタイムアウトしたリクエストを記録する.
+     *
+     * @param method HTTPメソッド名
+     * @param path プロファイル、インターフェース、アトリビュートからなるパス
+     */
+    public void recordTimeout(final String method, final String path) {
+        mTotal.mTimeoutCount.incrementAndGet();
+        getEntry(method, path).mTimeoutCount.incrementAndGet();
+    }
+
+    /**
+     * プラグインへの送信に失敗したリクエストを記録する.
+     *
+     * @param method HTTPメソッド名
+     * @param path プロファイル、インターフェース、アトリビュートからなるパス
+     */
+    public void recordError(final String method, final String path) {
+        mTotal.mErrorCount.incrementAndGet();
+        getEntry(method, path).mErrorCount.incrementAndGet();
+    }
+
+    /**
+     * プラグイン全体の統計を取得する.
+     *
+     * @return プラグイン全体の統計
+     */
+    public Entry getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * APIごとの統計を取得する.
+     *
+     * @return APIごとの統計のリスト
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(mEntries.values());
+    }
+
+    /**
+     * 統計の値を記録する.
+     *
+     * @param entry 統計
+     * @param millis 応答時間(ミリ秒)
+     * @param error レスポンスがエラーの場合はtrue
+     */
+    private static void record(final Entry entry, final long millis, final boolean error) {
+        entry.mHistogram.record(millis);
+        if (error) {
+            entry.mErrorCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * 指定したAPIの統計を取得する.
+     * <p>
+     * 存在しない場合は作成する。
+     * </p>
+     *
+     * @param method HTTPメソッド名
+     * @param path パス
+     * @return 統計
+     */
+    private Entry getEntry(final String method, final String path) {
+        String key = method + " " + path;
+        Entry entry = mEntries.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        if (mEntries.size() >= MAX_API_COUNT) {
+            return getOtherEntry(method);
+        }
+        Entry newEntry = new Entry(method, path);
+        entry = mEntries.putIfAbsent(key, newEntry);
+        return entry != null ? entry : newEntry;
+    }
+
+    /**
+     * 上限を超えたAPIをまとめて記録する統計を取得する.
+     *
+     * @param method HTTPメソッド名
+     * @return 統計
+     */
+    private Entry getOtherEntry(final String method) {
+        String key = method + " " + OTHER_PATH;
+        Entry newEntry = new Entry(method, OTHER_PATH);
+        Entry entry = mEntries.putIfAbsent(key, newEntry);
+        return entry != null ? entry : newEntry;
+    }
+
+    /**
+     * リクエストからHTTPメソッド名を取得する.
+     *
+     * @param action リクエストのアクション名
+     * @return HTTPメソッド名
+     */
+    static String toMethodName(final String action) {
+        if (action == null) {
+            return "UNKNOWN";
+        }
+        return action.substring(action.lastIndexOf('.') + 1).toUpperCase(Locale.ENGLISH);
+    }
+
+    /**
+     * プロファイル、インターフェース、アトリビュートからパスを作成する.
+     * <p>
+     * Device Connectのパスは大文字小文字を区別しないため、小文字に揃える。
+     * </p>
+     *
+     * @param profile プロファイル名
+     * @param interfaceName インターフェース名
+     * @param attribute アトリビュート名
+     * @return パス
+     */
+    static String toPath(final String profile, final String interfaceName, final String attribute) {
+        StringBuilder path = new StringBuilder();
+        path.append('/').append(profile);
+        if (interfaceName != null) {
+            path.append('/').append(interfaceName);
+        }
+        if (attribute != null) {
+            path.append('/').append(attribute);
+        }
+        return path.toString().toLowerCase(Locale.ENGLISH);
+    }
+
+    /**
+     * 1つのAPI、もしくはプラグイン全体の統計.
+     */
+    public static class Entry {
+
+        /**
+         * HTTPメソッド名. プラグイン全体の場合はnull.
+         */
+        private final String mMethod;
+
+        /**
+         * パス. プラグイン全体の場合はnull.
+         */
+        private final String mPath;
+
+        /**
+         * 応答時間のヒストグラム.
+         */
+        private final LatencyHistogram mHistogram = new LatencyHistogram();
+
+        /**
+         * タイムアウトの件数.
+         */
+        private final AtomicLong mTimeoutCount = new AtomicLong();
+
+        /**
+         * エラーの件数.
+         */
+        private final AtomicLong mErrorCount = new AtomicLong();
+
+        /**
+         * コンストラクタ.
+         *
+         * @param method HTTPメソッド名
+         * @param path パス
+         */
+        Entry(final String method, final String path) {
+            mMethod = method;
+            mPath = path;
+        }
+
+        /**
+         * HTTPメソッド名を取得する.
+         *
+         * @return HTTPメソッド名. プラグイン全体の場合はnull
+         */
+        public String getMethod() {
+            return mMethod;
+        }
+
+        /**
+         * パスを取得する.
+         *
+         * @return パス. プラグイン全体の場合はnull
+         */
+        public String getPath() {
+            return mPath;
+        }
+
+        /**
+         * 応答時間の集計結果を取得する.
+         *
+         * @return 応答時間の集計結果
+         */
+        public LatencyHistogram.Snapshot getSnapshot() {
+            return mHistogram.snapshot();
+        }
+
+        /**
+         * タイムアウトの件数を取得する.
+         *
+         * @return タイムアウトの件数
+         */
+        public long getTimeoutCount() {
+            return mTimeoutCount.get();
+        }
+
+        /**
+         * エラーの件数を取得する.
+         *
+         * @return エラーの件数
+         */
+        public long getErrorCount() {
+            return mErrorCount.get();
+        }
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ ServiceRegistry.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+
+import android.os.Bundle;
+
+import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * デバイスプラグインが提供するサービスの一覧をキャッシュするクラス.
+ * <p>
+ * Service Discoveryのレスポンスで一覧を更新し、プラグインからのonServiceChangeイベントで
+ * 個々のサービスの状態を反映する。キャッシュの有効期限(TTL)は、状態を取得する時に呼び出し側が指定する。
+ * </p>
+ * <p>
+ * 保持するサービスのIDには、プラグインIDが付加されていること。
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+public class ServiceRegistry {
+
+    /** プラグイン毎のキャッシュ. (キー: プラグインID) */
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+
+    /** バックグラウンドで更新中のプラグインID一覧. */
+    private final Set<String> mRefreshingPlugins = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /** キャッシュから応答した回数. */
+    private final AtomicLong mHitCount = new AtomicLong();
+
+    /** 有効期限切れのキャッシュから応答した回数. */
+    private final AtomicLong mStaleHitCount = new AtomicLong();
+
+    /** キャッシュが無く、プラグインに問い合わせた回数. */
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /** キャッシュを削除した回数. */
+    private final AtomicLong mInvalidationCount = new AtomicLong();
+
+    /**
+     * Service Discoveryで取得したサービス一覧を保存する.
+     * @param pluginId プラグインID
+     * @param services サービス一覧
+     */
+    public void putServices(final String pluginId, final List<Bundle> services) {
+        Entry entry = new Entry(System.currentTimeMillis());
+        for (Bundle service : services) {
+            entry.put(new Bundle(service));
+        }
+        mEntries.put(pluginId, entry);
+    }
+
+    /**
+     * キャッシュされたサービス一覧を取得する.
+     * <p>
+     * 返却されるサービスは、キャッシュのコピーとなる。
+     * </p>
+     * @param pluginId プラグインID
+     * @return サービス一覧。キャッシュが無い場合は<code>null</code>
+     */
+    public List<Bundle> getServices(final String pluginId) {
+        Entry entry = mEntries.get(pluginId);
+        if (entry == null) {
+            return null;
+        }
+        return entry.copyServices();
+    }
+
+    /**
+     * 指定したプラグインのキャッシュ状態を取得する.
+     * @param pluginId プラグインID
+     * @param ttl キャッシュ有効期限(ミリ秒)
+     * @return キャッシュ状態
+     */
+    public CacheState getCacheState(final String pluginId, final long ttl) {
+        Entry entry = mEntries.get(pluginId);
+        if (entry == null) {
+            return CacheState.NONE;
+        }
+        long elapsed = System.currentTimeMillis() - entry.mUpdateTime;
+        return elapsed < ttl ? CacheState.FRESH : CacheState.STALE;
+    }
+
+    /**
+     * onServiceChangeイベントで通知されたサービスの状態を反映する.
+     * <p>
+     * キャッシュが無いプラグインについては、次のService Discoveryで取得するので何もしない。
+     * </p>
+     * @param pluginId プラグインID
+     * @param service サービス情報
+     */
+    public void onServiceChange(final String pluginId, final Bundle service) {
+        Entry entry = mEntries.get(pluginId);
+        if (entry == null || service == null) {
+            return;
+        }
+        String serviceId = service.getString(ServiceDiscoveryProfileConstants.PARAM_ID);
+        if (serviceId == null) {
+            return;
+        }
+        // MEMO 古いプラグインはstateを送らないので、無い場合は存在するものとして扱う
+        boolean exists = service.getBoolean(ServiceDiscoveryProfileConstants.PARAM_STATE, true);
+        if (exists) {
+            Bundle copy = new Bundle(service);
+            copy.remove(ServiceDiscoveryProfileConstants.PARAM_STATE);
+            entry.put(copy);
+        } else {
+            entry.remove(serviceId);
+        }
+    }
+
+    /**
+     * 指定したプラグインのキャッシュを削除する.
+     * @param pluginId プラグインID
+     */
+    public void removePlugin(final String pluginId) {
+        if (mEntries.remove(pluginId) != null) {
+            mInvalidationCount.incrementAndGet();
+        }
+        mRefreshingPlugins.remove(pluginId);
+    }
+
+    /**
+     * 全てのキャッシュを削除する.
+     */
+    public void clear() {
+        for (String pluginId : mEntries.keySet()) {
+            removePlugin(pluginId);
+        }
+        mRefreshingPlugins.clear();
+    }
+
+    /**
+     * バックグラウンドでの更新を開始する.
+     * @param pluginId プラグインID
+     * @return 更新を開始する場合は<code>true</code>、既に更新中の場合は<code>false</code>
+     */
+    public boolean beginRefresh(final String pluginId) {
+        return mRefreshingPlugins.add(pluginId);
+    }
+
+    /**
+     * バックグラウンドでの更新を終了する.
+     * @param pluginId プラグインID
+     */
+    public void endRefresh(final String pluginId) {
+        mRefreshingPlugins.remove(pluginId);
+    }
+
+    /**
+     * キャッシュから応答したことを記録する.
+     * @param state 応答したキャッシュの状態
+     */
+    public void recordHit(final CacheState state) {
+        if (state == CacheState.STALE) {
+            mStaleHitCount.incrementAndGet();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * キャッシュが無く、プラグインに問い合わせたことを記録する.
+     */
+    public void recordMiss() {
+        mMissCount.incrementAndGet();
+    }
+
+    /**
+     * 有効期限内のキャッシュから応答した回数を取得する.
+     * @return 回数
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * 有効期限切れのキャッシュから応答した回数を取得する.
+     * @return 回数
+     */
+    public long getStaleHitCount() {
+        return mStaleHitCount.get();
+    }
+
+    /**
+     * キャッシュが無く、プラグインに問い合わせた回数を取得する.
+     * @return 回数
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * プラグインのキャッシュを削除した回数を取得する.
+     * @return 回数
+     */
+    public long getInvalidationCount() {
+        return mInvalidationCount.get();
+    }
+
+    /**
+     * キャッシュの状態.
+     */
+    public enum CacheState {
+        /** キャッシュ無し. */
+        NONE,
+        /** 有効期限内. */
+        FRESH,
+        /** 有効期限切れ. */
+        STALE
+    }
+
+    /**
+     * プラグイン毎のキャッシュ.
+     */
+    private static class Entry {
+        /** サービス一覧. (キー: サービスID) */
+        private final Map<String, Bundle> mServices = new LinkedHashMap<>();
+
+        /** 更新時刻. */
+        private final long mUpdateTime;
+
+        Entry(final long updateTime) {
+            mUpdateTime = updateTime;
+        }
+
+        synchronized void put(final Bundle service) {
+            mServices.put(service.getString(ServiceDiscoveryProfileConstants.PARAM_ID), service);
+        }
+
+        synchronized void remove(final String serviceId) {
+            mServices.remove(serviceId);
+        }
+
+        synchronized List<Bundle> copyServices() {
+            List<Bundle> result = new ArrayList<>(mServices.size());
+            for (Bundle service : mServices.values()) {
+                result.add(new Bundle(service));
+            }
+            return result;
+        }
+    }
+}
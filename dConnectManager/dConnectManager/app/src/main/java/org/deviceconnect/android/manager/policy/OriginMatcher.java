@@ -0,0 +1,82 @@
+/*
+ OriginMatcher.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.policy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the whitelist which is compiled for matching.
+ * <p>
+ * Every origin in the whitelist is matched exactly, so the origins are stored
+ * as normalized strings in hash sets. An origin of unknown type is checked
+ * with {@link Origin#matches(Origin)} one by one.
+ * </p>
+ *
+ * @author NTT DOCOMO, INC.
+ */
+final class OriginMatcher {
+
+    /**
+     * The literal origins.
+     */
+    private final Set<String> mLiterals = new HashSet<>();
+
+    /**
+     * The normalized web application origins.
+     */
+    private final Set<String> mWebApps = new HashSet<>();
+
+    /**
+     * The origins which can not be normalized.
+     */
+    private final List<Origin> mOthers = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param origins the origins in the whitelist
+     */
+    OriginMatcher(final List<OriginInfo> origins) {
+        for (OriginInfo info : origins) {
+            Origin origin = info.getOrigin();
+            if (origin instanceof WebAppOrigin) {
+                mWebApps.add(((WebAppOrigin) origin).getNormalizedString());
+            } else if (origin instanceof LiteralOrigin) {
+                mLiterals.add(origin.toString());
+            } else {
+                mOthers.add(origin);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the specified origin matches any origin in this snapshot.
+     *
+     * @param origin Origin of requests
+     * @return <code>true</code> if the specified origin matches, otherwise <code>false</code>.
+     */
+    boolean matches(final Origin origin) {
+        if (origin instanceof WebAppOrigin) {
+            if (mWebApps.contains(((WebAppOrigin) origin).getNormalizedString())) {
+                return true;
+            }
+        } else if (origin instanceof LiteralOrigin) {
+            if (mLiterals.contains(origin.toString())) {
+                return true;
+            }
+        }
+        for (Origin other : mOthers) {
+            if (other.matches(origin)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -141,6 +141,17 @@ abstract class WebAppOrigin implements Origin {
         return true;
     }
 
+    /**
+     * Returns the string expression which includes the port number always.
+     * <p>
+     * Two origins match if and only if their normalized strings are equal.
+     * </p>
+     * @return the normalized string expression
+     */
+    String getNormalizedString() {
+        return mScheme + SEP_HOST + mHost + SEP_PORT + getPort();
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
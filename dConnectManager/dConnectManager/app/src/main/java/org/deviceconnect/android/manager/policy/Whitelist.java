@@ -29,6 +29,15 @@ public class Whitelist {
     /** The origin database. */
     private final OriginDB mCache;
 
+    /**
+     * The compiled snapshot of the whitelist.
+     * <p>
+     * It is shared by all instances because they use the same database.
+     * <code>null</code> if it has not been loaded yet.
+     * </p>
+     */
+    private static volatile OriginMatcher sMatcher;
+
     /**
      * Constructor.
      * 
@@ -46,13 +55,39 @@ public class Whitelist {
      *      otherwise <code>false</code>.
      */
     public boolean allows(final Origin origin) {
-        List<OriginInfo> patterns = getOrigins();
-        for (OriginInfo p : patterns) {
-            if (p.matches(origin)) {
-                return true;
+        return getMatcher().matches(origin);
+    }
+
+    /**
+     * Returns the compiled snapshot of the whitelist.
+     * <p>
+     * The snapshot is loaded from the database at the first call.
+     * </p>
+     * @return the compiled snapshot
+     */
+    private OriginMatcher getMatcher() {
+        OriginMatcher matcher = sMatcher;
+        if (matcher == null) {
+            synchronized (Whitelist.class) {
+                matcher = sMatcher;
+                if (matcher == null) {
+                    matcher = reloadMatcher();
+                }
             }
         }
-        return false;
+        return matcher;
+    }
+
+    /**
+     * Rebuilds the compiled snapshot from the database.
+     * @return the new snapshot
+     */
+    private OriginMatcher reloadMatcher() {
+        synchronized (Whitelist.class) {
+            OriginMatcher matcher = new OriginMatcher(mCache.getOrigins());
+            sMatcher = matcher;
+            return matcher;
+        }
     }
 
     /**
@@ -69,13 +104,8 @@ public class Whitelist {
      * @param originExp a string expression of origin
      * @return <code>true</code> if origin is included, otherwise <code>false</code>
      */
-    public synchronized boolean hasOrigin(final String originExp) {
-        for (OriginInfo info : mCache.getOrigins()) {
-            if (info.matches(OriginParser.parse(originExp))) {
-                return true;
-            }
-        }
-        return false;
+    public boolean hasOrigin(final String originExp) {
+        return getMatcher().matches(OriginParser.parse(originExp));
     }
 
     /**
@@ -94,6 +124,8 @@ public class Whitelist {
             return new OriginInfo(id, origin, title, date);
         } catch (OriginDBException e) {
             throw new WhitelistException("Failed to store origin: " + origin, e);
+        } finally {
+            reloadMatcher();
         }
     }
 
@@ -108,6 +140,8 @@ public class Whitelist {
             mCache.updateOrigin(info);
         } catch (OriginDBException e) {
             throw new WhitelistException("Failed to store origin: " + info.mOrigin, e);
+        } finally {
+            reloadMatcher();
         }
     }
 
@@ -122,6 +156,8 @@ public class Whitelist {
             mCache.removeOrigin(info);
         } catch (OriginDBException e) {
             throw new WhitelistException("Failed to remove origin: " + info.mOrigin, e);
+        } finally {
+            reloadMatcher();
         }
     }
 
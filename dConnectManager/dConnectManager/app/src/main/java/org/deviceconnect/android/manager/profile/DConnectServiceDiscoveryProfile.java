@@ -12,6 +12,7 @@ import org.deviceconnect.android.event.EventError;
 import org.deviceconnect.android.event.EventManager;
 import org.deviceconnect.android.manager.DConnectMessageService;
 import org.deviceconnect.android.manager.plugin.DevicePluginManager;
+import org.deviceconnect.android.manager.plugin.ServiceRegistry;
 import org.deviceconnect.android.manager.request.ServiceDiscoveryRequest;
 import org.deviceconnect.android.message.MessageUtils;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
@@ -31,15 +32,20 @@ public class DConnectServiceDiscoveryProfile extends ServiceDiscoveryProfile {
     /** デバイスプラグイン管理クラス. */
     private DevicePluginManager mDevicePluginManager;
 
+    /** サービス一覧のキャッシュ. */
+    private ServiceRegistry mServiceRegistry;
+
     /**
      * コンストラクタ.
      * @param provider プロファイルプロバイダ
      * @param mgr デバイスプラグイン管理クラス
+     * @param registry サービス一覧のキャッシュ
      */
     public DConnectServiceDiscoveryProfile(final DConnectServiceProvider provider,
-            final DevicePluginManager mgr) {
+            final DevicePluginManager mgr, final ServiceRegistry registry) {
         super(provider);
         mDevicePluginManager = mgr;
+        mServiceRegistry = registry;
         addApi(mGetRequest);
         addApi(mPutRequest);
         addApi(mDeleteRequest);
@@ -53,6 +59,8 @@ public class DConnectServiceDiscoveryProfile extends ServiceDiscoveryProfile {
             req.setRequest(request);
             req.setTimeout(ServiceDiscoveryRequest.TIMEOUT);
             req.setDevicePluginManager(mDevicePluginManager);
+            req.setServiceRegistry(mServiceRegistry);
+            req.setCacheTimeToLive(((DConnectMessageService) getContext()).getSettings().getServiceCacheTimeToLive());
             ((DConnectMessageService) getContext()).addRequest(req);
             return false;
         }
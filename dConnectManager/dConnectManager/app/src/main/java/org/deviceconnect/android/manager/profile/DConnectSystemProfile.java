@@ -18,6 +18,8 @@ import org.deviceconnect.android.manager.DConnectService;
 import org.deviceconnect.android.manager.R;
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.DevicePluginManager;
+import org.deviceconnect.android.manager.plugin.LatencyHistogram;
+import org.deviceconnect.android.manager.plugin.LatencyStats;
 import org.deviceconnect.android.manager.request.DConnectRequest;
 import org.deviceconnect.android.manager.request.RemoveEventsRequest;
 import org.deviceconnect.android.manager.setting.KeywordDialogActivity;
@@ -44,6 +46,42 @@ import java.util.UUID;
  * @author NTT DOCOMO, INC.
  */
 public class DConnectSystemProfile extends SystemProfile {
+    /** アトリビュート: {@value}. */
+    public static final String ATTRIBUTE_LATENCY = "latency";
+
+    /** アトリビュート: {@value}. */
+    public static final String ATTRIBUTE_STATS = "stats";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_FORMAT = "format";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_METRICS = "metrics";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_APIS = "apis";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_HTTP = "http";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_SERVICE_CACHE = "serviceCache";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_WEB_SOCKET = "webSocket";
+
+    /** パラメータ: {@value}. */
+    public static final String PARAM_EVENT_QUEUES = "eventQueues";
+
+    /** 応答時間の出力形式: {@value}. */
+    public static final String FORMAT_PROMETHEUS = "prometheus";
+
+    /** 応答時間として出力する分位数. */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    /** 分位数のパラメータ名. */
+    private static final String[] QUANTILE_NAMES = {"p50", "p90", "p99"};
+
     /** プロファイル管理クラス. */
     private final DConnectProfileProvider mProvider;
 
@@ -63,6 +101,8 @@ public class DConnectSystemProfile extends SystemProfile {
         addApi(mGetRequest);
         addApi(mPutKeywordRequest);
         addApi(mDeleteEvents);
+        addApi(mGetLatencyRequest);
+        addApi(mGetStatsRequest);
     }
 
     @Override
@@ -202,6 +242,169 @@ public class DConnectSystemProfile extends SystemProfile {
         }
     };
 
+    private final DConnectApi mGetLatencyRequest = new GetApi() {
+        @Override
+        public String getAttribute() {
+            return ATTRIBUTE_LATENCY;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            List<DevicePlugin> plugins = mPluginMgr.getDevicePlugins();
+            if (FORMAT_PROMETHEUS.equals(request.getStringExtra(PARAM_FORMAT))) {
+                response.putExtra(PARAM_METRICS, createPrometheusText(plugins));
+            } else {
+                List<Bundle> list = new ArrayList<Bundle>();
+                for (DevicePlugin plugin : plugins) {
+                    LatencyStats stats = plugin.getHistory().getLatencyStats();
+                    Bundle b = createLatencyBundle(stats.getTotal());
+                    b.putString(PARAM_ID, mPluginMgr.appendServiceId(plugin, null));
+                    b.putString(PARAM_NAME, plugin.getDeviceName());
+                    b.putString(PARAM_PACKAGE_NAME, plugin.getPackageName());
+
+                    List<Bundle> apis = new ArrayList<Bundle>();
+                    for (LatencyStats.Entry entry : stats.getEntries()) {
+                        Bundle api = createLatencyBundle(entry);
+                        api.putString("method", entry.getMethod());
+                        api.putString("path", entry.getPath());
+                        apis.add(api);
+                    }
+                    b.putParcelableArray(PARAM_APIS, apis.toArray(new Bundle[apis.size()]));
+                    list.add(b);
+                }
+                response.putExtra(PARAM_PLUGINS, list.toArray(new Bundle[list.size()]));
+            }
+            setResult(response, DConnectMessage.RESULT_OK);
+            return true;
+        }
+    };
+
+    private final DConnectApi mGetStatsRequest = new GetApi() {
+        @Override
+        public String getAttribute() {
+            return ATTRIBUTE_STATS;
+        }
+
+        @Override
+        public boolean onRequest(final Intent request, final Intent response) {
+            DConnectService service = (DConnectService) getContext();
+            Bundle http = service.getHttpServerStats();
+            if (http != null) {
+                response.putExtra(PARAM_HTTP, http);
+            }
+            response.putExtra(PARAM_SERVICE_CACHE, service.getServiceCacheStats());
+            Bundle webSocket = service.getWebSocketStats();
+            if (webSocket != null) {
+                response.putExtra(PARAM_WEB_SOCKET, webSocket);
+            }
+            response.putExtra(PARAM_EVENT_QUEUES, service.getWebSocketEventQueueStats());
+            setResult(response, DConnectMessage.RESULT_OK);
+            return true;
+        }
+    };
+
+    /**
+     * 応答時間の統計をBundleに変換する.
+     *
+     * @param entry 応答時間の統計
+     * @return 応答時間の統計を格納したBundle
+     */
+    private static Bundle createLatencyBundle(final LatencyStats.Entry entry) {
+        LatencyHistogram.Snapshot snapshot = entry.getSnapshot();
+        Bundle b = new Bundle();
+        b.putLong("count", snapshot.getCount());
+        for (int i = 0; i < QUANTILES.length; i++) {
+            b.putLong(QUANTILE_NAMES[i], snapshot.getPercentile(QUANTILES[i]));
+        }
+        b.putLong("max", snapshot.getMax());
+        b.putLong("timeout", entry.getTimeoutCount());
+        b.putLong("error", entry.getErrorCount());
+        return b;
+    }
+
+    /**
+     * 応答時間の統計をPrometheusのテキスト形式に変換する.
+     * <p>
+     * プラグイン全体の統計は dconnect_plugin_*、APIごとの統計は dconnect_api_* として出力する。
+     * 応答時間の単位はミリ秒。
+     * </p>
+     *
+     * @param plugins デバイスプラグインのリスト
+     * @return Prometheusのテキスト形式の文字列
+     */
+    private static String createPrometheusText(final List<DevicePlugin> plugins) {
+        StringBuilder plugin = new StringBuilder();
+        StringBuilder api = new StringBuilder();
+        appendPrometheusTypes(plugin, "dconnect_plugin");
+        appendPrometheusTypes(api, "dconnect_api");
+        for (DevicePlugin p : plugins) {
+            LatencyStats stats = p.getHistory().getLatencyStats();
+            String pluginLabel = "plugin=\"" + escapeLabel(p.getPackageName()) + "\"";
+            appendPrometheusEntry(plugin, "dconnect_plugin", pluginLabel, stats.getTotal());
+            for (LatencyStats.Entry entry : stats.getEntries()) {
+                String labels = pluginLabel
+                        + ",method=\"" + escapeLabel(entry.getMethod()) + "\""
+                        + ",path=\"" + escapeLabel(entry.getPath()) + "\"";
+                appendPrometheusEntry(api, "dconnect_api", labels, entry);
+            }
+        }
+        return plugin.append(api).toString();
+    }
+
+    /**
+     * Prometheusのメトリクスの型を出力する.
+     *
+     * @param sb 出力先
+     * @param prefix メトリクス名のプレフィクス
+     */
+    private static void appendPrometheusTypes(final StringBuilder sb, final String prefix) {
+        sb.append("# TYPE ").append(prefix).append("_latency_milliseconds summary\n");
+        sb.append("# TYPE ").append(prefix).append("_latency_max_milliseconds gauge\n");
+        sb.append("# TYPE ").append(prefix).append("_timeouts_total counter\n");
+        sb.append("# TYPE ").append(prefix).append("_errors_total counter\n");
+    }
+
+    /**
+     * 応答時間の統計をPrometheusのテキスト形式で出力する.
+     *
+     * @param sb 出力先
+     * @param prefix メトリクス名のプレフィクス
+     * @param labels ラベル
+     * @param entry 応答時間の統計
+     */
+    private static void appendPrometheusEntry(final StringBuilder sb, final String prefix,
+                                              final String labels, final LatencyStats.Entry entry) {
+        LatencyHistogram.Snapshot snapshot = entry.getSnapshot();
+        for (double quantile : QUANTILES) {
+            sb.append(prefix).append("_latency_milliseconds{").append(labels)
+                    .append(",quantile=\"").append(String.valueOf(quantile)).append("\"} ")
+                    .append(snapshot.getPercentile(quantile)).append('\n');
+        }
+        sb.append(prefix).append("_latency_milliseconds_sum{").append(labels).append("} ")
+                .append(snapshot.getSum()).append('\n');
+        sb.append(prefix).append("_latency_milliseconds_count{").append(labels).append("} ")
+                .append(snapshot.getCount()).append('\n');
+        sb.append(prefix).append("_latency_max_milliseconds{").append(labels).append("} ")
+                .append(snapshot.getMax()).append('\n');
+        sb.append(prefix).append("_timeouts_total{").append(labels).append("} ")
+                .append(entry.getTimeoutCount()).append('\n');
+        sb.append(prefix).append("_errors_total{").append(labels).append("} ")
+                .append(entry.getErrorCount()).append('\n');
+    }
+
+    /**
+     * Prometheusのラベルの値をエスケープする.
+     *
+     * @param value ラベルの値
+     * @return エスケープしたラベルの値
+     */
+    private static String escapeLabel(final String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
     public static boolean isWakeUpRequest(final Intent request) {
         String profile = getProfile(request);
         String inter = getInterface(request);
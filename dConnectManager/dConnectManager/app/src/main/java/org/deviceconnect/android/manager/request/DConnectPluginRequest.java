@@ -24,18 +24,9 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
      */
     DevicePlugin mDevicePlugin;
 
-    /** ロックオブジェクト. */
-    private final Object mLockObj = new Object();
-
     /** リクエストコード. */
     protected int mRequestCode;
 
-    /** リクエスト開始時刻. */
-    private long mStartDateTime;
-
-    /** リクエスト完了時刻. */
-    private long mEndDateTime;
-
     /** 通信履歴を保存するかどうかのフラグ. */
     private boolean mIsReportedRoundTripFrag = true;
 
@@ -76,50 +67,56 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
             mDevicePlugin.send(request);
             return true;
         } catch (MessagingException e) {
+            mDevicePlugin.reportSendError(request);
             onMessagingError(e);
             return false;
         }
     }
 
     /**
-     * 指定したリクエストを送信した後、プラグインからのレスポンスを待機する.
-     *
+     * 指定したリクエストをプラグインに送信する.
+     * <p>
+     * このメソッドはプラグインからのレスポンスを待たずに返却する。
+     * レスポンスを受信した場合は{@link #onResponseReceived(Intent, Intent)}が、
+     * 指定された時間内にレスポンスが返ってこない場合は{@link #onResponseTimeout()}が
+     * リクエスト実行用のスレッドで呼び出される。
+     * </p>
      * @param request プラグインへのリクエスト
-     * @return レスポンスの受信に成功した場合は<code>true</code>、そうでない場合は<code>false</code>
+     * @return 送信に成功した場合は<code>true</code>、そうでない場合は<code>false</code>
      */
     boolean sendRequest(final Intent request) {
-        boolean forwarded = false;
-        boolean responded = false;
-        try {
-            mStartDateTime = getCurrentDateTime();
-            forwarded = forwardRequest(request);
-            if (!forwarded) {
-                return false;
-            }
-            if (mResponse == null) {
-                waitForResponse();
+        if (mDevicePlugin == null) {
+            throw new IllegalStateException("destination is not set.");
+        }
+        mResponse = null;
+
+        final int requestCode = mRequestCode;
+        final long start = getCurrentDateTime();
+        mRequestMgr.waitForResponse(requestCode, mTimeout, new DConnectRequestManager.ResponseCallback() {
+            @Override
+            public void onResponse(final Intent response) {
+                long end = getCurrentDateTime();
+                mDevicePlugin.reportLatency(request, response, start, end);
+                reportHistory(request, start, end, true);
+                mResponse = response;
+                onResponseReceived(request, response);
             }
 
-            final Intent response = mResponse;
-            responded = response != null;
-            if (responded) {
-                onResponseReceived(request, response);
-                return true;
-            } else {
+            @Override
+            public void onTimeout() {
+                reportHistory(request, start, getCurrentDateTime(), false);
                 onResponseTimeout();
-                return false;
-            }
-        } finally {
-            mEndDateTime = getCurrentDateTime();
-            if (forwarded) {
-                reportHistory(request, responded);
             }
+        });
+
+        if (!forwardRequest(request)) {
+            mRequestMgr.cancelResponse(requestCode);
+            return false;
         }
+        return true;
     }
 
-    private void reportHistory(final Intent request, final boolean responded) {
-        long start = mStartDateTime;
-        long end = mEndDateTime;
+    private void reportHistory(final Intent request, final long start, final long end, final boolean responded) {
         if (responded) {
             if (mIsReportedRoundTripFrag) {
                 mDevicePlugin.reportRoundTrip(request, start, end);
@@ -129,33 +126,6 @@ public abstract class DConnectPluginRequest extends DConnectRequest {
         }
     }
 
-    /**
-     * 各デバイスからのレスポンスを待つ.
-     *
-     * この関数から返答があるのは以下の条件になる。
-     * <ul>
-     * <li>デバイスプラグインからレスポンスがあった場合
-     * <li>指定された時間無いにレスポンスが返ってこない場合
-     * </ul>
-     */
-    private void waitForResponse() {
-        synchronized (mLockObj) {
-            try {
-                mLockObj.wait(mTimeout);
-            } catch (InterruptedException e) {
-                // ignore
-            }
-        }
-    }
-
-    @Override
-    public void setResponse(final Intent response) {
-        super.setResponse(response);
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
-        }
-    }
-
     private long getCurrentDateTime() {
         return System.currentTimeMillis();
     }
@@ -11,15 +11,26 @@ import android.util.Log;
 
 import org.deviceconnect.android.manager.BuildConfig;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.deviceconnect.server.util.HashedWheelTimer;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * dConnect Managerで処理されるリクエストを管理するクラス.
+ * <p>
+ * プラグインへ送信したリクエストのレスポンスは、リクエストコードをキーとした
+ * {@link PendingResponse}で管理する。レスポンス待ちの間はスレッドを占有せず、
+ * タイムアウトは全リクエストで共有する1つのタイマーで監視する。
+ * </p>
  * @author NTT DOCOMO, INC.
  */
 public class DConnectRequestManager {
@@ -29,21 +40,39 @@ public class DConnectRequestManager {
     /** 最大スレッド数を定義する. */
     private static final int MAX_THREAD_SIZE = 4;
 
+    /** タイムアウト監視のティック間隔(ミリ秒)を定義する. */
+    private static final long TIMER_TICK_DURATION = 100;
+
+    /** タイムアウト監視のスロット数を定義する. */
+    private static final int TIMER_TICKS_PER_WHEEL = 512;
+
     /** リクエストを実行するためのスレッドを管理するExecutor. */
     private final ExecutorService mExecutor = Executors.newFixedThreadPool(MAX_THREAD_SIZE);
 
-    /** シングルスレッドでリクエストを実行するためのスレッドを管理するExecutor. */
-    private final ExecutorService mSingleExecutor = Executors.newSingleThreadExecutor();
+    /** レスポンスのタイムアウトを監視するタイマー. */
+    private final HashedWheelTimer mTimer = new HashedWheelTimer("DConnectRequestTimer",
+            TIMER_TICK_DURATION, TimeUnit.MILLISECONDS, TIMER_TICKS_PER_WHEEL);
+
+    /** レスポンス待ちのハンドル一覧. (キー: リクエストコード) */
+    private final ConcurrentHashMap<Integer, PendingResponse> mPendingResponses = new ConcurrentHashMap<>();
 
     /** リクエスト一覧. */
     private final List<DConnectRequest> mRequestList = Collections.synchronizedList(new ArrayList<DConnectRequest>());
 
+    /** シングルスレッドで実行するリクエストの待ち行列. */
+    private final Queue<DConnectRequest> mSerialRequestQueue = new LinkedList<>();
+
+    /** シングルスレッドで実行中のリクエスト. */
+    private DConnectRequest mRunningSerialRequest;
+
     /**
      * リクエスト管理を終了する.
      */
     public synchronized void shutdown() {
         mExecutor.shutdown();
-        mSingleExecutor.shutdown();
+        mTimer.stop();
+        mSerialRequestQueue.clear();
+        mPendingResponses.clear();
     }
 
     /**
@@ -75,15 +104,48 @@ public class DConnectRequestManager {
 
     /**
      * シングルスレッドで実行するリクエストを追加する.
+     * <p>
+     * 追加されたリクエストは1つずつ順番に実行される。
+     * リクエストは処理が完了した時に{@link #finishRequestOnSingleThread(DConnectRequest)}を
+     * 呼び出して、次のリクエストに実行を譲ること。
+     * </p>
      * @param request 追加するリクエスト
      */
     synchronized void addRequestOnSingleThread(final DConnectRequest request) {
-        if (mSingleExecutor.isShutdown()) {
+        if (mExecutor.isShutdown()) {
             return;
         }
         request.setRequestMgr(this);
-        mRequestList.add(request);
-        mSingleExecutor.execute(new Runnable() {
+        mSerialRequestQueue.offer(request);
+        if (mRunningSerialRequest == null) {
+            executeNextSerialRequest();
+        }
+    }
+
+    /**
+     * シングルスレッドで実行していたリクエストの完了を通知する.
+     * @param request 完了したリクエスト
+     */
+    synchronized void finishRequestOnSingleThread(final DConnectRequest request) {
+        if (mRunningSerialRequest == request) {
+            mRunningSerialRequest = null;
+            executeNextSerialRequest();
+        }
+    }
+
+    /**
+     * 待ち行列から次のリクエストを取り出して実行する.
+     */
+    private void executeNextSerialRequest() {
+        if (mExecutor.isShutdown()) {
+            return;
+        }
+        final DConnectRequest request = mSerialRequestQueue.poll();
+        mRunningSerialRequest = request;
+        if (request == null) {
+            return;
+        }
+        mExecutor.execute(new Runnable() {
             @Override
             public void run() {
                 try {
@@ -93,13 +155,85 @@ public class DConnectRequestManager {
                     if (BuildConfig.DEBUG) {
                         Log.e("dConnectManager", "runtime", e);
                     }
-                } finally {
-                    mRequestList.remove(request);
+                    finishRequestOnSingleThread(request);
                 }
             }
         });
     }
 
+    /**
+     * 指定したリクエストコードのレスポンス待ちを登録する.
+     * <p>
+     * このメソッドはレスポンスを待たずに返却する。
+     * レスポンスを受信した場合、またはタイムアウトした場合には、
+     * 指定したコールバックがリクエスト実行用のスレッドで呼び出される。
+     * </p>
+     * @param requestCode リクエストコード
+     * @param timeout タイムアウト時間(ミリ秒)
+     * @param callback レスポンスを通知するコールバック
+     */
+    void waitForResponse(final int requestCode, final long timeout, final ResponseCallback callback) {
+        final PendingResponse pending = new PendingResponse(requestCode, callback);
+        PendingResponse old = mPendingResponses.put(requestCode, pending);
+        if (old != null) {
+            old.cancel();
+        }
+        pending.setTimeout(schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (mPendingResponses.remove(requestCode, pending)) {
+                    pending.expire();
+                }
+            }
+        }, timeout));
+    }
+
+    /**
+     * 指定したリクエストコードのレスポンス待ちを解除する.
+     * @param requestCode リクエストコード
+     */
+    void cancelResponse(final int requestCode) {
+        PendingResponse pending = mPendingResponses.remove(requestCode);
+        if (pending != null) {
+            pending.cancel();
+        }
+    }
+
+    /**
+     * 指定した時間が経過した後に、リクエスト実行用のスレッドでタスクを実行する.
+     * @param task 実行するタスク
+     * @param delay 実行までの時間(ミリ秒)
+     * @return 登録したタイムアウト
+     */
+    HashedWheelTimer.Timeout schedule(final Runnable task, final long delay) {
+        return mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(task);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * レスポンス待ちのリクエスト数を取得する.
+     * @return レスポンス待ちのリクエスト数
+     */
+    public int getPendingResponseCount() {
+        return mPendingResponses.size();
+    }
+
+    /**
+     * リクエスト実行用のスレッドでタスクを実行する.
+     * @param task 実行するタスク
+     */
+    private void dispatch(final Runnable task) {
+        try {
+            mExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // shutdown後は通知しない
+        }
+    }
+
     /**
      * レスポンスを受け付ける.
      * @param response レスポンス
@@ -107,6 +241,21 @@ public class DConnectRequestManager {
     public void setResponse(final Intent response) {
         int code = response.getIntExtra(
                 IntentDConnectMessage.EXTRA_REQUEST_CODE, ERROR_CODE);
+        setResponse(code, response);
+    }
+
+    /**
+     * 指定したリクエストコードのレスポンスを受け付ける.
+     * @param code リクエストコード
+     * @param response レスポンス
+     */
+    void setResponse(final int code, final Intent response) {
+        PendingResponse pending = mPendingResponses.remove(code);
+        if (pending != null) {
+            pending.complete(response);
+            return;
+        }
+
         synchronized (mRequestList) {
             for (DConnectRequest request : mRequestList) {
                 if (request.hasRequestCode(code)) {
@@ -116,4 +265,97 @@ public class DConnectRequestManager {
             }
         }
     }
+
+    /**
+     * プラグインからのレスポンスを受け取るコールバック.
+     */
+    interface ResponseCallback {
+        /**
+         * レスポンスを受信したことを通知する.
+         * @param response レスポンス
+         */
+        void onResponse(Intent response);
+
+        /**
+         * レスポンスがタイムアウトしたことを通知する.
+         */
+        void onTimeout();
+    }
+
+    /**
+     * レスポンス待ちのハンドル.
+     */
+    private class PendingResponse {
+        /** リクエストコード. */
+        private final int mRequestCode;
+
+        /** レスポンスを通知するコールバック. */
+        private final ResponseCallback mCallback;
+
+        /** タイムアウト. */
+        private HashedWheelTimer.Timeout mTimeout;
+
+        /**
+         * コンストラクタ.
+         * @param requestCode リクエストコード
+         * @param callback レスポンスを通知するコールバック
+         */
+        PendingResponse(final int requestCode, final ResponseCallback callback) {
+            mRequestCode = requestCode;
+            mCallback = callback;
+        }
+
+        /**
+         * タイムアウトを設定する.
+         * @param timeout タイムアウト
+         */
+        synchronized void setTimeout(final HashedWheelTimer.Timeout timeout) {
+            mTimeout = timeout;
+        }
+
+        /**
+         * タイムアウトを解除する.
+         */
+        synchronized void cancel() {
+            if (mTimeout != null) {
+                mTimeout.cancel();
+            }
+        }
+
+        /**
+         * レスポンスを受信した時に呼び出される.
+         * @param response レスポンス
+         */
+        void complete(final Intent response) {
+            cancel();
+            dispatch(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        mCallback.onResponse(response);
+                    } catch (Throwable e) {
+                        if (BuildConfig.DEBUG) {
+                            Log.e("dConnectManager", "Failed to handle a response: requestCode=" + mRequestCode, e);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * タイムアウトした時に呼び出される.
+         * <p>
+         * タイマーからリクエスト実行用のスレッドに切り替えた後で呼び出される。
+         * </p>
+         */
+        void expire() {
+            try {
+                mCallback.onTimeout();
+            } catch (Throwable e) {
+                if (BuildConfig.DEBUG) {
+                    Log.e("dConnectManager", "Failed to handle a timeout: requestCode=" + mRequestCode, e);
+                }
+            }
+        }
+    }
 }
@@ -20,8 +20,7 @@ import org.deviceconnect.profile.DConnectProfileConstants;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Logger;
 
 /**
@@ -154,8 +153,8 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
      */
     protected void executeRequest() {
         String profile = mRequest.getStringExtra(DConnectMessage.EXTRA_PROFILE);
-        String serviceId = mRequest.getStringExtra(DConnectMessage.EXTRA_SERVICE_ID);
-        String origin = getRequestOrigin(mRequest);
+        final String serviceId = mRequest.getStringExtra(DConnectMessage.EXTRA_SERVICE_ID);
+        final String origin = getRequestOrigin(mRequest);
 
         if (mUseAccessToken && !isIgnoredPluginProfile(profile)) {
             String accessToken = getAccessTokenForPlugin(origin, serviceId);
@@ -173,17 +172,23 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
                 request.setOrigin(origin);
                 request.setLocalOAuth(mLocalOAuth);
                 request.setReportedRoundTrip(false);
-                request.waitForLocalOAuth();
-
-                if (request.isNeedAccessToken()) {
-                    accessToken = getAccessTokenForPlugin(origin, serviceId);
-                    if (accessToken != null) {
-                        onAccessTokenUpdated(mDevicePlugin, accessToken);
-                        executeRequest(accessToken);
+                request.setOnAuthorizedListener(new OnAuthorizedListener() {
+                    @Override
+                    public void onAuthorized(final OAuthRequest authRequest) {
+                        if (authRequest.isNeedAccessToken()) {
+                            String accessToken = getAccessTokenForPlugin(origin, serviceId);
+                            if (accessToken != null) {
+                                onAccessTokenUpdated(mDevicePlugin, accessToken);
+                                executeRequest(accessToken);
+                            }
+                        } else {
+                            executeRequest(null);
+                        }
                     }
-                } else {
-                    executeRequest(null);
-                }
+                });
+
+                // OAuthの認証だけは、シングルスレッドで動作させないとおかしな挙動が発生
+                mRequestMgr.addRequestOnSingleThread(request);
             }
         } else {
             executeRequest(null);
@@ -235,13 +240,17 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
     }
 
     /**
-     * クライアントデータ.
+     * Local OAuthの認可処理の完了を通知するリスナー.
      */
-    private static class ClientData {
-        /** クライアントID. */
-        String mClientId;
-        /** クライアントシークレット. */
-        String mClientSecret;
+    private interface OnAuthorizedListener {
+        /**
+         * 認可処理が完了したことを通知する.
+         * <p>
+         * 認可処理でエラーが発生した場合には、リクエスト元へのレスポンスは返却済みとなる.
+         * </p>
+         * @param request 認可処理を行ったリクエスト
+         */
+        void onAuthorized(OAuthRequest request);
     }
 
     /**
@@ -254,8 +263,14 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
         private String mServiceId;
         /** 認証フラグ. */
         private boolean mNeedAccessToken = true;
-        /** 認証結果を受け取るまで待機するためのオブジェクト. */
-        private CountDownLatch mLatch = new CountDownLatch(1);
+        /** アクセストークンの取得要求中であることを示すフラグ. */
+        private boolean mRequestingAccessToken;
+        /** アクセストークンを要求しているOAuthデータ. */
+        private OAuthData mOAuthData;
+        /** 認可処理の完了フラグ. */
+        private final AtomicBoolean mFinished = new AtomicBoolean();
+        /** 認可処理の完了を通知するリスナー. */
+        private OnAuthorizedListener mListener;
         /** LocalOAuth管理クラス. */
         private DConnectLocalOAuth mLocalOAuth;
         /** ロガー. */
@@ -285,13 +300,17 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
             mLocalOAuth = localOAuth;
         }
 
+        /**
+         * 認可処理の完了を通知するリスナーを設定する.
+         * @param listener リスナー
+         */
+        void setOnAuthorizedListener(final OnAuthorizedListener listener) {
+            mListener = listener;
+        }
+
         @Override
         public void run() {
-            try {
-                authorize();
-            } finally {
-                mLatch.countDown();
-            }
+            authorize();
         }
 
         /**
@@ -302,29 +321,35 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
 
             OAuthData oauth = mLocalOAuth.getOAuthData(mOrigin, mServiceId);
             if (oauth == null) {
-                ClientData clientData = executeCreateClient(mServiceId);
-                if (clientData == null) {
-                    // MEMO executeCreateClientの中でレスポンスは返しているので
-                    // ここでは何も処理を行わない。
-                    return;
-                } else if (clientData.mClientId == null) {
-                    // MEMO プラグインが認証を不要としていた場合の処理
-                    mNeedAccessToken = false;
-                    return;
-                } else {
-                    // クライアントデータを保存
-                    mLocalOAuth.setOAuthData(mOrigin, mServiceId, clientData.mClientId);
-                    oauth = mLocalOAuth.getOAuthData(mOrigin, mServiceId);
-                }
+                executeCreateClient(mServiceId);
+            } else {
+                requestAccessToken(oauth);
             }
+        }
 
+        /**
+         * 保存されているアクセストークンが無い場合には、アクセストークンの取得を要求する.
+         * @param oauth OAuthデータ
+         */
+        private void requestAccessToken(final OAuthData oauth) {
             String accessToken = mLocalOAuth.getAccessToken(oauth.getId());
             if (accessToken == null) {
                 // 再度アクセストークンを取得してから再度実行
-                accessToken = executeAccessToken(mServiceId, oauth.getClientId());
-                if (accessToken != null) {
-                    // アクセストークンを保存
-                    mLocalOAuth.setAccessToken(oauth.getId(), accessToken);
+                mOAuthData = oauth;
+                executeAccessToken(mServiceId, oauth.getClientId());
+            } else {
+                finish();
+            }
+        }
+
+        /**
+         * 認可処理を完了する.
+         */
+        private void finish() {
+            if (mFinished.compareAndSet(false, true)) {
+                mRequestMgr.finishRequestOnSingleThread(this);
+                if (mListener != null) {
+                    mListener.onAuthorized(this);
                 }
             }
         }
@@ -337,37 +362,29 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
             return mNeedAccessToken;
         }
 
-        /**
-         * Local OAuthの実行を待ちます.
-         */
-        void waitForLocalOAuth() {
-            // OAuthの認証だけは、シングルスレッドで動作させないとおかしな挙動が発生
-            mRequestMgr.addRequestOnSingleThread(this);
-
-            // レスポンスが返却されるまで待機
-            try {
-                mLatch.await(mTimeout, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                mLogger.warning("timeout.");
+        @Override
+        protected void onResponseReceived(final Intent request, final Intent response) {
+            if (mRequestingAccessToken) {
+                onAccessTokenReceived(response);
+            } else {
+                onCreateClientReceived(response);
             }
         }
 
+        @Override
+        protected void onResponseTimeout() {
+            super.onResponseTimeout();
+            finish();
+        }
+
         /**
          * クライアントの作成をデバイスプラグインに要求する.
          *
-         * 結果が返ってくるまで、この関数は返り値を返却しない。
-         * 返り値がnullの場合には、クライアントの作成に失敗している。
-         *
-         * [実装要求]
-         * null(エラー)を返す場合には、リクエスト元にレスポンスを返却するので注意が必要。
+         * 結果はレスポンスを受信した後に{@link #onCreateClientReceived(Intent)}で処理する。
          *
          * @param serviceId サービスID
-         * @return クライアントデータ
          */
-        private ClientData executeCreateClient(final String serviceId) {
-            // 命令を実行する前にレスポンスを初期化しておく
-            mResponse = null;
-
+        private void executeCreateClient(final String serviceId) {
             // 各デバイスに送信するリクエストを作成
             Intent request = createRequestMessage(mRequest, mDevicePlugin);
             request.setAction(IntentDConnectMessage.ACTION_GET);
@@ -380,51 +397,55 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
             request.putExtra(DConnectProfileConstants.PARAM_SERVICE_ID, serviceId);
             request.putExtra(AuthorizationProfileConstants.PARAM_PACKAGE, mOrigin);
 
-            if (sendRequest(request)) {
-                int result = getResult(mResponse);
-                if (result == DConnectMessage.RESULT_OK) {
-                    String clientId = mResponse.getStringExtra(AuthorizationProfileConstants.PARAM_CLIENT_ID);
-                    if (clientId == null) {
-                        // クライアントの作成エラー
-                        sendCannotCreateClient();
-                    } else {
-                        // クライアントデータを作成
-                        ClientData client = new ClientData();
-                        client.mClientId = clientId;
-                        client.mClientSecret = null;
-                        return client;
-                    }
+            mRequestingAccessToken = false;
+            if (!sendRequest(request)) {
+                finish();
+            }
+        }
+
+        /**
+         * クライアント作成要求のレスポンスを処理する.
+         *
+         * [実装要求]
+         * エラーの場合には、リクエスト元にレスポンスを返却するので注意が必要。
+         *
+         * @param response レスポンス
+         */
+        private void onCreateClientReceived(final Intent response) {
+            int result = getResult(response);
+            if (result == DConnectMessage.RESULT_OK) {
+                String clientId = response.getStringExtra(AuthorizationProfileConstants.PARAM_CLIENT_ID);
+                if (clientId == null) {
+                    // クライアントの作成エラー
+                    sendCannotCreateClient();
+                    finish();
                 } else {
-                    int errorCode = getErrorCode(mResponse);
-                    if (errorCode == DConnectMessage.ErrorCode.NOT_SUPPORT_PROFILE.getCode()) {
-                        // authorizationプロファイルに対応していないのでアクセストークンはいらない。
-                        mLogger.info("DevicePlugin not support Authorization Profile.");
-                        return new ClientData();
-                    } else {
-                        sendResponse(mResponse);
-                    }
+                    // クライアントデータを保存
+                    mLocalOAuth.setOAuthData(mOrigin, mServiceId, clientId);
+                    requestAccessToken(mLocalOAuth.getOAuthData(mOrigin, mServiceId));
+                }
+            } else {
+                int errorCode = getErrorCode(response);
+                if (errorCode == DConnectMessage.ErrorCode.NOT_SUPPORT_PROFILE.getCode()) {
+                    // authorizationプロファイルに対応していないのでアクセストークンはいらない。
+                    mLogger.info("DevicePlugin not support Authorization Profile.");
+                    mNeedAccessToken = false;
+                } else {
+                    sendResponse(response);
                 }
+                finish();
             }
-            return null;
         }
 
         /**
          * アクセストークンの取得要求をデバイスプラグインに対して行う.
          *
-         * 結果が返ってくるまで、この関数は返り値を返却しない。
-         * アクセストークンの取得に失敗した場合にはnullを返却する。
-         *
-         * [実装要求]
-         * null(エラー)を返す場合には、リクエスト元にレスポンスを返却するので注意が必要。
+         * 結果はレスポンスを受信した後に{@link #onAccessTokenReceived(Intent)}で処理する。
          *
          * @param serviceId サービスID
          * @param clientId クライアントID
-         * @return アクセストークン
          */
-        private String executeAccessToken(final String serviceId, final String clientId) {
-            // 命令を実行する前にレスポンスを初期化しておく
-            mResponse = null;
-
+        private void executeAccessToken(final String serviceId, final String clientId) {
             // 各デバイスに送信するリクエストを作成
             Intent request = createRequestMessage(mRequest, mDevicePlugin);
             request.setAction(IntentDConnectMessage.ACTION_GET);
@@ -438,27 +459,40 @@ public abstract class LocalOAuthRequest extends DConnectPluginRequest {
             request.putExtra(AuthorizationProfileConstants.PARAM_APPLICATION_NAME, mContext.getString(R.string.app_name));
             request.putExtra(AuthorizationProfileConstants.PARAM_SCOPE, combineStr(getScope()));
 
-            // レスポンスを返却する
-            if (sendRequest(request)) {
-                int result = getResult(mResponse);
-                if (result == DConnectMessage.RESULT_OK) {
-                    String accessToken = mResponse.getStringExtra(DConnectMessage.EXTRA_ACCESS_TOKEN);
-                    if (accessToken == null) {
-                        sendCannotCreateAccessToken();
-                    } else {
-                        return accessToken;
-                    }
+            mRequestingAccessToken = true;
+            if (!sendRequest(request)) {
+                finish();
+            }
+        }
+
+        /**
+         * アクセストークン取得要求のレスポンスを処理する.
+         *
+         * [実装要求]
+         * エラーの場合には、リクエスト元にレスポンスを返却するので注意が必要。
+         *
+         * @param response レスポンス
+         */
+        private void onAccessTokenReceived(final Intent response) {
+            int result = getResult(response);
+            if (result == DConnectMessage.RESULT_OK) {
+                String accessToken = response.getStringExtra(DConnectMessage.EXTRA_ACCESS_TOKEN);
+                if (accessToken == null) {
+                    sendCannotCreateAccessToken();
                 } else {
-                    // 認証エラーで、有効期限切れ・スコープ範囲外以外はClientIdを作り直す処理を入れる
-                    int errorCode = getErrorCode(mResponse);
-                    if (errorCode == DConnectMessage.ErrorCode.NOT_FOUND_CLIENT_ID.getCode()
-                            || errorCode == DConnectMessage.ErrorCode.AUTHORIZATION.getCode()) {
-                        mLocalOAuth.deleteOAuthData(mOrigin, serviceId);
-                    }
-                    sendResponse(mResponse);
+                    // アクセストークンを保存
+                    mLocalOAuth.setAccessToken(mOAuthData.getId(), accessToken);
+                }
+            } else {
+                // 認証エラーで、有効期限切れ・スコープ範囲外以外はClientIdを作り直す処理を入れる
+                int errorCode = getErrorCode(response);
+                if (errorCode == DConnectMessage.ErrorCode.NOT_FOUND_CLIENT_ID.getCode()
+                        || errorCode == DConnectMessage.ErrorCode.AUTHORIZATION.getCode()) {
+                    mLocalOAuth.deleteOAuthData(mOrigin, mServiceId);
                 }
+                sendResponse(response);
             }
-            return null;
+            finish();
         }
 
         /**
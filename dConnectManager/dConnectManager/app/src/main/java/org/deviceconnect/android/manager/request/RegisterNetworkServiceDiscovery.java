@@ -28,9 +28,6 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
     /** 送信先のデバイスプラグイン. */
     private DevicePlugin mDevicePlugin;
 
-    /** ロックオブジェクト. */
-    private final Object mLockObj = new Object();
-
     /** リクエストコード. */
     private int mRequestCode;
 
@@ -42,14 +39,6 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
         mDevicePlugin = plugin;
     }
 
-    @Override
-    public void setResponse(final Intent response) {
-        super.setResponse(response);
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
-        }
-    }
-
     @Override
     public boolean hasRequestCode(final int requestCode) {
         return mRequestCode == requestCode;
@@ -65,30 +54,41 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
         request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, mRequestCode);
         mRequest = request;
 
+        // レスポンスを待つ
+        final int requestCode = mRequestCode;
+        mRequestMgr.waitForResponse(requestCode, mTimeout, new DConnectRequestManager.ResponseCallback() {
+            @Override
+            public void onResponse(final Intent response) {
+                mResponse = response;
+                onResponseReceived(response);
+            }
+
+            @Override
+            public void onTimeout() {
+                sendTimeoutError();
+            }
+        });
+
         // リクエスト送信
         if (!forwardRequest(request)) {
-            return;
-        }
-
-        if (mResponse == null) {
-            // 各デバイスのレスポンスを待つ
-            waitForResponse();
+            mRequestMgr.cancelResponse(requestCode);
         }
+    }
 
-        // レスポンスを解析して、処理を行う
-        if (mResponse != null) {
-            // リカバリ不可能なのでログだけ出して終了
-            // ここで、登録できなかった場合には、デバイス発見イベントは使用することができない。
-            // ただし、Service Discoveryは使用できるので問題はないと考える。
-            int result = getResult(mResponse);
-            if (result == DConnectMessage.RESULT_ERROR) {
-                int errorCode = getErrorCode(mResponse);
-                String errorMsg = getErrorMessage(mResponse);
-                mLogger.severe("Failed to register onservicechange event." 
-                        + "errorCode=" + errorCode + " errorMessage=" + errorMsg);
-            }
-        } else {
-            sendTimeoutError();
+    /**
+     * レスポンスを解析して、処理を行う.
+     * @param response レスポンス
+     */
+    private void onResponseReceived(final Intent response) {
+        // リカバリ不可能なのでログだけ出して終了
+        // ここで、登録できなかった場合には、デバイス発見イベントは使用することができない。
+        // ただし、Service Discoveryは使用できるので問題はないと考える。
+        int result = getResult(response);
+        if (result == DConnectMessage.RESULT_ERROR) {
+            int errorCode = getErrorCode(response);
+            String errorMsg = getErrorMessage(response);
+            mLogger.severe("Failed to register onservicechange event."
+                    + "errorCode=" + errorCode + " errorMessage=" + errorMsg);
         }
     }
 
@@ -146,22 +146,4 @@ public class RegisterNetworkServiceDiscovery extends DConnectRequest {
         String msg = response.getStringExtra(DConnectMessage.EXTRA_ERROR_MESSAGE);
         return msg;
     }
-    /**
-     * 各デバイスからのレスポンスを待つ.
-     * 
-     * この関数から返答があるのは以下の条件になる。
-     * <ul>
-     * <li>デバイスプラグインからレスポンスがあった場合
-     * <li>指定された時間無いにレスポンスが返ってこない場合
-     * </ul>
-     */
-    private void waitForResponse() {
-        synchronized (mLockObj) {
-            try {
-                mLockObj.wait(mTimeout);
-            } catch (InterruptedException e) {
-                return;
-            }
-        }
-    }
 }
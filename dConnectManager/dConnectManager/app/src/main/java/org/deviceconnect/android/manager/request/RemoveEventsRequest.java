@@ -7,7 +7,6 @@
 package org.deviceconnect.android.manager.request;
 
 import android.content.Intent;
-import android.util.SparseArray;
 
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.MessagingException;
@@ -16,45 +15,23 @@ import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.logging.Logger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 各デバイスプラグインにイベント解除要求を行う.
  * @author NTT DOCOMO, INC.
  */
 public class RemoveEventsRequest extends DConnectRequest {
-    /** レスポンスが返ってきた個数. */
-    private int mResponseCount;
+    /** レスポンスを待っているプラグインの個数. */
+    private AtomicInteger mRemainingCount;
 
-    /** リクエストコードを格納する配列. */
-    private SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<DevicePlugin>();
-
-    /** ロガー. */
-    private final Logger mLogger = Logger.getLogger("dconnect.manager");
-
-    /** ロックオブジェクト. */
-    private final Object mLockObj = new Object();
-
-    @Override
-    public void setResponse(final Intent response) {
-        // リクエストコードを取得
-        int requestCode = response.getIntExtra(
-                IntentDConnectMessage.EXTRA_REQUEST_CODE, -1);
-        if (requestCode == -1) {
-            mLogger.warning("Illegal requestCode. requestCode=" + requestCode);
-            return;
-        }
-
-        // レスポンス個数を追加
-        mResponseCount++;
-        synchronized (mLockObj) {
-            mLockObj.notifyAll();
-        }
-    }
+    /** レスポンスの返却済みフラグ. */
+    private final AtomicBoolean mFinished = new AtomicBoolean();
 
     @Override
     public boolean hasRequestCode(final int requestCode) {
-        return mRequestCodeArray.get(requestCode) != null;
+        return false;
     }
 
     @Override
@@ -68,6 +45,12 @@ public class RemoveEventsRequest extends DConnectRequest {
         }
 
         List<DevicePlugin> plugins = mPluginMgr.getDevicePlugins();
+        mRemainingCount = new AtomicInteger(plugins.size());
+        if (plugins.size() == 0) {
+            finish();
+            return;
+        }
+
         for (int i = 0; i < plugins.size(); i++) {
             DevicePlugin plugin = plugins.get(i);
 
@@ -79,33 +62,47 @@ public class RemoveEventsRequest extends DConnectRequest {
             }
 
             // リクエストコード作成
-            int requestCode = UUID.randomUUID().hashCode();
-            mRequestCodeArray.put(requestCode, plugin);
+            final int requestCode = UUID.randomUUID().hashCode();
 
             request.setComponent(plugin.getComponentName());
             request.putExtra(IntentDConnectMessage.EXTRA_REQUEST_CODE, requestCode);
+
+            // 各デバイスのレスポンスを待つ
+            mRequestMgr.waitForResponse(requestCode, mTimeout, new DConnectRequestManager.ResponseCallback() {
+                @Override
+                public void onResponse(final Intent response) {
+                    onPluginFinished();
+                }
+
+                @Override
+                public void onTimeout() {
+                    onPluginFinished();
+                }
+            });
             try {
                 plugin.send(request);
             } catch (MessagingException e) {
-                // NOP.
+                mRequestMgr.cancelResponse(requestCode);
+                onPluginFinished();
             }
         }
+    }
 
-        // 各デバイスのレスポンスを待つ
-        long start = System.currentTimeMillis();
-        while (plugins.size() > 0 && mResponseCount < plugins.size()) {
-            synchronized (mLockObj) {
-                try {
-                    mLockObj.wait(mTimeout);
-                } catch (InterruptedException e) {
-                    // do nothing.
-                    mLogger.warning("Exception ouccered in wait.");
-                }
-            }
-            // タイムアウトチェック
-            if (System.currentTimeMillis() - start > mTimeout) {
-                break;
-            }
+    /**
+     * プラグインの処理が完了したことを通知する.
+     */
+    private void onPluginFinished() {
+        if (mRemainingCount.decrementAndGet() <= 0) {
+            finish();
+        }
+    }
+
+    /**
+     * レスポンスを返却する.
+     */
+    private void finish() {
+        if (!mFinished.compareAndSet(false, true)) {
+            return;
         }
 
         // パラメータを設定する
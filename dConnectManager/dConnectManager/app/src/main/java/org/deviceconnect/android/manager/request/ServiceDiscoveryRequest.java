@@ -9,24 +9,26 @@ package org.deviceconnect.android.manager.request;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Parcelable;
-import android.util.SparseArray;
 
 import org.deviceconnect.android.manager.BuildConfig;
 import org.deviceconnect.android.manager.DConnectMessageService;
 import org.deviceconnect.android.manager.plugin.DevicePlugin;
 import org.deviceconnect.android.manager.plugin.MessagingException;
+import org.deviceconnect.android.manager.plugin.ServiceRegistry;
 import org.deviceconnect.android.profile.ServiceDiscoveryProfile;
 import org.deviceconnect.message.DConnectMessage;
 import org.deviceconnect.message.intent.message.IntentDConnectMessage;
 import org.deviceconnect.profile.ServiceDiscoveryProfileConstants;
+import org.deviceconnect.server.util.HashedWheelTimer;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
@@ -46,22 +48,60 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
      */
     public static final int TIMEOUT = 8000;
 
+    /** キャッシュを使わずにプラグインに問い合わせることを指定するパラメータ名: {@value}. */
+    public static final String PARAM_FORCE_REFRESH = "forceRefresh";
+
     /** プラグイン側のService Discoveryのプロファイル名: {@value}. */
     private static final String PROFILE_NETWORK_SERVICE_DISCOVERY = "networkServiceDiscovery";
 
     /** プラグイン側のService Discoveryのプロファイル名: {@value}. */
     private static final String ATTRIBUTE_GET_NETWORK_SERVICES = "getNetworkServices";
 
-    /** リクエストコードを格納する配列. */
-    private SparseArray<DevicePlugin> mRequestCodeArray = new SparseArray<>();
+    /** レスポンスの無いプラグインの一覧. (キー: リクエストコード) */
+    private final Map<Integer, DevicePlugin> mRequestCodeArray = new ConcurrentHashMap<>();
 
     /** 発見したサービスを一時的に格納しておくリスト. */
-    private final List<Bundle> mServices = new ArrayList<>();
+    private final List<Bundle> mServices = Collections.synchronizedList(new ArrayList<Bundle>());
 
     /** ロガー. */
     private final Logger mLogger = Logger.getLogger("dconnect.manager");
 
-    private CountDownLatch mCountDownLatch;
+    /** レスポンスを待っているプラグインの個数. */
+    private AtomicInteger mRemainingCount;
+
+    /** レスポンスの返却済みフラグ. */
+    private final AtomicBoolean mFinished = new AtomicBoolean();
+
+    /** 全体のタイムアウト. */
+    private HashedWheelTimer.Timeout mTimeoutHandle;
+
+    /** サービス一覧のキャッシュ. */
+    private ServiceRegistry mServiceRegistry;
+
+    /** キャッシュ有効期限(ミリ秒). */
+    private long mCacheTimeToLive;
+
+    /**
+     * サービス一覧のキャッシュを設定する.
+     * <p>
+     * 設定されていない場合には、常に全てのプラグインに問い合わせる。
+     * </p>
+     * @param registry サービス一覧のキャッシュ
+     */
+    public void setServiceRegistry(final ServiceRegistry registry) {
+        mServiceRegistry = registry;
+    }
+
+    /**
+     * キャッシュ有効期限を設定する.
+     * <p>
+     * 有効期限切れのキャッシュから応答した場合には、バックグラウンドでキャッシュを更新する。
+     * </p>
+     * @param ttl キャッシュ有効期限(ミリ秒)
+     */
+    public void setCacheTimeToLive(final long ttl) {
+        mCacheTimeToLive = ttl;
+    }
 
     @Override
     public synchronized boolean hasRequestCode(final int requestCode) {
@@ -78,25 +118,113 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             throw new RuntimeException("mDevicePluginManager is null.");
         }
 
-        final List<DevicePlugin> plugins = mPluginMgr.getEnabledDevicePlugins();
-        mCountDownLatch = new CountDownLatch(plugins.size());
+        final List<DevicePlugin> plugins = findPluginsToRequest(mPluginMgr.getEnabledDevicePlugins());
+        if (plugins.size() == 0) {
+            finish();
+            return;
+        }
+        mRemainingCount = new AtomicInteger(plugins.size());
+
+        // 全プラグインのレスポンスが揃わない場合でも、タイムアウト時間で結果を返却する
+        mTimeoutHandle = mRequestMgr.schedule(new Runnable() {
+            @Override
+            public void run() {
+                finish();
+            }
+        }, mTimeout);
 
         for (int i = 0; i < plugins.size(); i++) {
-            DiscoveryRequestForPlugin request = new DiscoveryRequestForPlugin();
-            request.setContext(mContext);
-            request.setRequest(mRequest);
-            request.setDevicePluginManager(mPluginMgr);
-            request.setDestination(plugins.get(i));
-            request.setTimeout(TIMEOUT);
-            ((DConnectMessageService) mContext).addRequest(request);
-        }
-
-        if (mCountDownLatch.getCount() > 0) {
-            try {
-                mCountDownLatch.await(mTimeout, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                mLogger.warning("Exception occurred in wait.");
+            sendDiscoveryRequest(plugins.get(i), false);
+        }
+    }
+
+    /**
+     * キャッシュから応答できないプラグインの一覧を取得する.
+     * <p>
+     * キャッシュから応答できるプラグインのサービスは、この時点で結果に追加する。
+     * 有効期限切れのキャッシュを使用した場合には、バックグラウンドでキャッシュを更新する。
+     * </p>
+     * @param plugins 有効なプラグインの一覧
+     * @return 問い合わせが必要なプラグインの一覧
+     */
+    private List<DevicePlugin> findPluginsToRequest(final List<DevicePlugin> plugins) {
+        if (mServiceRegistry == null) {
+            return plugins;
+        }
+
+        boolean forceRefresh = isForceRefresh(mRequest);
+        List<DevicePlugin> result = new ArrayList<>();
+        for (DevicePlugin plugin : plugins) {
+            String pluginId = plugin.getPluginId();
+            if (!forceRefresh) {
+                ServiceRegistry.CacheState state = mServiceRegistry.getCacheState(pluginId, mCacheTimeToLive);
+                List<Bundle> cached = mServiceRegistry.getServices(pluginId);
+                if (state != ServiceRegistry.CacheState.NONE && cached != null) {
+                    mServices.addAll(cached);
+                    mServiceRegistry.recordHit(state);
+                    if (state == ServiceRegistry.CacheState.STALE && mServiceRegistry.beginRefresh(pluginId)) {
+                        sendDiscoveryRequest(plugin, true);
+                    }
+                    continue;
+                }
             }
+            mServiceRegistry.recordMiss();
+            result.add(plugin);
+        }
+        return result;
+    }
+
+    /**
+     * キャッシュを使わずにプラグインに問い合わせるかどうかを判定する.
+     * @param request リクエスト
+     * @return キャッシュを使わない場合は<code>true</code>、そうでない場合は<code>false</code>
+     */
+    private static boolean isForceRefresh(final Intent request) {
+        Object value = request.getExtras() != null ? request.getExtras().get(PARAM_FORCE_REFRESH) : null;
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        return value != null && "true".equalsIgnoreCase(value.toString());
+    }
+
+    /**
+     * プラグインにService Discoveryのリクエストを送信する.
+     * @param plugin 送信先のプラグイン
+     * @param background バックグラウンドでのキャッシュ更新の場合は<code>true</code>
+     */
+    private void sendDiscoveryRequest(final DevicePlugin plugin, final boolean background) {
+        DiscoveryRequestForPlugin request = new DiscoveryRequestForPlugin(background);
+        request.setContext(mContext);
+        request.setRequest(mRequest);
+        request.setDevicePluginManager(mPluginMgr);
+        request.setDestination(plugin);
+        request.setTimeout(TIMEOUT);
+        ((DConnectMessageService) mContext).addRequest(request);
+    }
+
+    /**
+     * プラグインの処理が完了したことを通知する.
+     * @param requestCode プラグインへのリクエストコード
+     * @param responded プラグインからレスポンスがあった場合はtrue、それ以外はfalse
+     */
+    private void onPluginFinished(final int requestCode, final boolean responded) {
+        if (responded) {
+            mRequestCodeArray.remove(requestCode);
+        }
+        if (mRemainingCount.decrementAndGet() <= 0) {
+            finish();
+        }
+    }
+
+    /**
+     * 発見したサービスの一覧をレスポンスとして返却する.
+     */
+    private void finish() {
+        if (!mFinished.compareAndSet(false, true)) {
+            return;
+        }
+        if (mTimeoutHandle != null) {
+            mTimeoutHandle.cancel();
         }
 
         // レスポンスの無かったプラグインのログを出力
@@ -105,24 +233,24 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
         }
 
         // パラメータを設定する
+        Bundle[] services;
+        synchronized (mServices) {
+            services = mServices.toArray(new Bundle[mServices.size()]);
+        }
         mResponse = new Intent(IntentDConnectMessage.ACTION_RESPONSE);
         mResponse.putExtra(IntentDConnectMessage.EXTRA_RESULT,
                 IntentDConnectMessage.RESULT_OK);
-        mResponse.putExtra(ServiceDiscoveryProfile.PARAM_SERVICES,
-                mServices.toArray(new Bundle[mServices.size()]));
+        mResponse.putExtra(ServiceDiscoveryProfile.PARAM_SERVICES, services);
 
         // レスポンスを返却する
         sendResponse(mResponse);
     }
 
-    private void outputNotRespondedPlugins(final SparseArray<DevicePlugin> notRespondedPlugins) {
+    private void outputNotRespondedPlugins(final Map<Integer, DevicePlugin> notRespondedPlugins) {
         if (notRespondedPlugins.size() > 0) {
             String notRespondedLog = "Not responded plug-in(s) for service discovery: \n";
-            for (int index = 0; index < notRespondedPlugins.size(); index++) {
-                DevicePlugin plugin = notRespondedPlugins.valueAt(index);
-                if (plugin != null) {
-                    notRespondedLog += " - " + plugin.getDeviceName() + "\n";
-                }
+            for (DevicePlugin plugin : notRespondedPlugins.values()) {
+                notRespondedLog += " - " + plugin.getDeviceName() + "\n";
             }
             mLogger.warning(notRespondedLog);
         } else {
@@ -132,11 +260,24 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
 
     private class DiscoveryRequestForPlugin extends DConnectPluginRequest {
 
+        /** バックグラウンドでのキャッシュ更新フラグ. */
+        private final boolean mBackground;
+
+        /**
+         * コンストラクタ.
+         * @param background バックグラウンドでのキャッシュ更新の場合は<code>true</code>
+         */
+        DiscoveryRequestForPlugin(final boolean background) {
+            mBackground = background;
+        }
+
         @Override
         public void run() {
             // リクエストコード発行
             mRequestCode = UUID.randomUUID().hashCode();
-            mRequestCodeArray.put(mRequestCode, mDevicePlugin);
+            if (!mBackground) {
+                mRequestCodeArray.put(mRequestCode, mDevicePlugin);
+            }
 
             // 送信用のIntentを作成
             final Intent request = createRequestMessage(mRequest, null);
@@ -156,6 +297,7 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
             int result = response.getIntExtra(IntentDConnectMessage.EXTRA_RESULT, -1);
             if (result == IntentDConnectMessage.RESULT_OK) {
                 // 送られてきたサービスIDにデバイスプラグインのIDを付加して保存
+                List<Bundle> pluginServices = new ArrayList<>();
                 Parcelable[] services = response.getParcelableArrayExtra(
                         ServiceDiscoveryProfileConstants.PARAM_SERVICES);
                 if (services != null) {
@@ -163,20 +305,42 @@ public class ServiceDiscoveryRequest extends DConnectRequest {
                         Bundle b = (Bundle) p;
                         String id = b.getString(ServiceDiscoveryProfile.PARAM_ID);
                         b.putString(ServiceDiscoveryProfile.PARAM_ID, mPluginMgr.appendServiceId(mDevicePlugin, id));
-                        mServices.add(b);
+                        pluginServices.add(b);
                     }
                 }
+                if (mServiceRegistry != null) {
+                    mServiceRegistry.putServices(mDevicePlugin.getPluginId(), pluginServices);
+                }
+                if (!mBackground) {
+                    mServices.addAll(pluginServices);
+                }
             }
 
             // レスポンス個数を追加
-            mCountDownLatch.countDown();
-            mRequestCodeArray.remove(mRequestCode);
+            onFinished(true);
+        }
+
+        @Override
+        protected void onResponseTimeout() {
+            // 応答しないプラグインがあっても、他のプラグインの結果を返却する
+            onFinished(false);
         }
 
         @Override
         protected void onMessagingError(final MessagingException e) {
-            mCountDownLatch.countDown();
-            mRequestCodeArray.remove(mRequestCode);
+            onFinished(true);
+        }
+
+        /**
+         * このプラグインへの問い合わせが完了したことを通知する.
+         * @param responded プラグインからレスポンスがあった場合はtrue、それ以外はfalse
+         */
+        private void onFinished(final boolean responded) {
+            if (mBackground) {
+                mServiceRegistry.endRefresh(mDevicePlugin.getPluginId());
+            } else {
+                onPluginFinished(mRequestCode, responded);
+            }
         }
     }
 }
@@ -0,0 +1,578 @@
+/*
+ BundleJSONWriter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.util;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import org.deviceconnect.android.manager.DConnectSettings;
+import org.deviceconnect.message.intent.message.IntentDConnectMessage;
+import org.json.JSONException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * BundleをUTF-8のJSONに直接書き出すクラス.
+ * <p>
+ * {@link DConnectUtil#convertBundleToJSON(DConnectSettings, org.json.JSONObject, Bundle)}で
+ * JSONObjectを作成してから文字列とバイト列に変換する代わりに、Bundleを辿りながら内部のバッファに書き込む。
+ * 出力するJSONは、JSONObject#toString()と同じ形式になる。
+ * </p>
+ * <p>
+ * content://から始まるuriは、書き込む時にManagerのFilesプロファイルへのURIに変換する。
+ * </p>
+ * <p>
+ * このクラスはスレッドセーフではない。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class BundleJSONWriter {
+    /** バッファの初期サイズ. */
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    /** 16進数の文字. */
+    private static final byte[] HEX = {
+            '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    /** 負のゼロのビット表現. */
+    private static final long NEGATIVE_ZERO_BITS = Double.doubleToLongBits(-0d);
+
+    /** DeviceConnect設定. */
+    private final DConnectSettings mSettings;
+
+    /** JSONを書き込むバッファ. */
+    private byte[] mBuffer = new byte[DEFAULT_CAPACITY];
+
+    /** 書き込んだサイズ. */
+    private int mCount;
+
+    /** 数値を書き込む時の作業領域. */
+    private final byte[] mDigits = new byte[20];
+
+    /**
+     * コンストラクタ.
+     * @param settings DeviceConnect設定
+     */
+    public BundleJSONWriter(final DConnectSettings settings) {
+        mSettings = settings;
+    }
+
+    /**
+     * BundleをJSONとして書き込む.
+     * <p>
+     * 前回書き込んだJSONは破棄される。
+     * </p>
+     * @param b 書き込むBundle
+     * @return このインスタンス
+     * @throws JSONException JSONで表現できない値が含まれていた場合
+     */
+    public BundleJSONWriter write(final Bundle b) throws JSONException {
+        mCount = 0;
+        writeBundle(b, true);
+        return this;
+    }
+
+    /**
+     * 書き込んだJSONのサイズを取得する.
+     * @return サイズ(バイト)
+     */
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * 書き込んだJSONを読み込むストリームを取得する.
+     * <p>
+     * 内部のバッファをコピーせずに参照するので、次に{@link #write(Bundle)}を呼び出すまでに読み込むこと。
+     * </p>
+     * @return ストリーム
+     */
+    public InputStream toInputStream() {
+        return new ByteArrayInputStream(mBuffer, 0, mCount);
+    }
+
+    /**
+     * 書き込んだJSONのコピーを取得する.
+     * @return JSONのバイト列
+     */
+    public byte[] toByteArray() {
+        byte[] result = new byte[mCount];
+        System.arraycopy(mBuffer, 0, result, 0, mCount);
+        return result;
+    }
+
+    /**
+     * BundleをJSONのオブジェクトとして書き込む.
+     * @param b 書き込むBundle
+     * @param convertUri uriを変換する場合はtrue
+     * @throws JSONException JSONで表現できない値が含まれていた場合
+     */
+    private void writeBundle(final Bundle b, final boolean convertUri) throws JSONException {
+        writeByte('{');
+        if (b != null) {
+            boolean first = true;
+            for (String key : b.keySet()) {
+                if (key.equals(IntentDConnectMessage.EXTRA_REQUEST_CODE)) {
+                    // request_codeはRESTfulにはいらないので削除しておく
+                    continue;
+                }
+                int mark = mCount;
+                if (!first) {
+                    writeByte(',');
+                }
+                writeString(key);
+                writeByte(':');
+                if (writeValue(key, b.get(key), convertUri)) {
+                    first = false;
+                } else {
+                    // JSONに変換できない値は、キーごと書き込まない
+                    mCount = mark;
+                }
+            }
+        }
+        writeByte('}');
+    }
+
+    /**
+     * Bundleに格納されている値を書き込む.
+     * <p>
+     * 型の判定はJSONUtils#convertBundleToJSONと同じ順番で行う。
+     * </p>
+     * @param key キー
+     * @param value 値
+     * @param convertUri uriを変換する場合はtrue
+     * @return 書き込んだ場合はtrue、JSONに変換できない値の場合はfalse
+     * @throws JSONException JSONで表現できない値が含まれていた場合
+     */
+    private boolean writeValue(final String key, final Object value, final boolean convertUri) throws JSONException {
+        if (value instanceof Integer[] || value instanceof Long[] || value instanceof Short[]
+                || value instanceof Byte[] || value instanceof Character[] || value instanceof Float[]
+                || value instanceof Double[] || value instanceof Boolean[] || value instanceof String[]) {
+            writeObjectArray((Object[]) value);
+        } else if (value instanceof Integer) {
+            writeLong((Integer) value);
+        } else if (value instanceof int[]) {
+            int[] bb = (int[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Short) {
+            writeLong((Short) value);
+        } else if (value instanceof short[]) {
+            short[] bb = (short[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Character) {
+            // JSONObject#put(String, int)と同様に文字コードを数値として書き込む
+            writeLong((Character) value);
+        } else if (value instanceof char[]) {
+            char[] bb = (char[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Byte) {
+            writeLong((Byte) value);
+        } else if (value instanceof byte[]) {
+            byte[] bb = (byte[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Long) {
+            writeLong((Long) value);
+        } else if (value instanceof long[]) {
+            long[] bb = (long[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeLong(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Float) {
+            writeDouble((Float) value);
+        } else if (value instanceof float[]) {
+            float[] bb = (float[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeDouble(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Double) {
+            writeDouble((Double) value);
+        } else if (value instanceof double[]) {
+            double[] bb = (double[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeDouble(bb[i]);
+            }
+            writeByte(']');
+        } else if (value instanceof Boolean) {
+            writeAscii((Boolean) value ? "true" : "false");
+        } else if (value instanceof boolean[]) {
+            boolean[] bb = (boolean[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(bb[i] ? "true" : "false");
+            }
+            writeByte(']');
+        } else if (value instanceof String) {
+            String str = (String) value;
+            if (convertUri && "uri".equals(key) && DConnectUtil.startWithContent(str)) {
+                str = DConnectUtil.createUri(mSettings, str);
+            }
+            writeString(str);
+        } else if (value instanceof Bundle) {
+            writeBundle((Bundle) value, convertUri);
+        } else if (value instanceof Bundle[]) {
+            Bundle[] bb = (Bundle[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeBundle(bb[i], false);
+            }
+            writeByte(']');
+        } else if (value instanceof Parcelable[]) {
+            Parcelable[] bb = (Parcelable[]) value;
+            writeByte('[');
+            for (int i = 0; i < bb.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeBundle(bb[i] instanceof Bundle ? (Bundle) bb[i] : null, false);
+            }
+            writeByte(']');
+        } else if (value instanceof Object[]) {
+            // プリミティブ型のラッパークラスの配列がObject[]として扱われる場合への対処
+            Object[] bb = (Object[]) value;
+            if (!isPrimitiveWrapperArray(bb)) {
+                return false;
+            }
+            writeObjectArray(bb);
+        } else if (value instanceof List<?>) {
+            List<?> bb = (List<?>) value;
+            writeByte('[');
+            for (int i = 0; i < bb.size(); i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                Object v = bb.get(i);
+                if (v instanceof Parcelable) {
+                    writeBundle(v instanceof Bundle ? (Bundle) v : null, false);
+                } else {
+                    writeElement(v);
+                }
+            }
+            writeByte(']');
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 配列を書き込む.
+     * @param array 配列
+     * @throws JSONException JSONで表現できない値が含まれていた場合
+     */
+    private void writeObjectArray(final Object[] array) throws JSONException {
+        writeByte('[');
+        for (int i = 0; i < array.length; i++) {
+            if (i > 0) {
+                writeByte(',');
+            }
+            writeElement(array[i]);
+        }
+        writeByte(']');
+    }
+
+    /**
+     * 配列の要素を書き込む.
+     * <p>
+     * JSONArray#put(Object)で格納した値と同じように書き込む。
+     * </p>
+     * @param value 値
+     * @throws JSONException JSONで表現できない値の場合
+     */
+    private void writeElement(final Object value) throws JSONException {
+        if (value == null) {
+            writeAscii("null");
+        } else if (value instanceof Boolean) {
+            writeAscii((Boolean) value ? "true" : "false");
+        } else if (value instanceof Number) {
+            writeNumber((Number) value);
+        } else {
+            writeString(value.toString());
+        }
+    }
+
+    /**
+     * 数値を書き込む.
+     * <p>
+     * JSONObject#numberToString(Number)と同じ形式で書き込む。
+     * </p>
+     * @param number 数値
+     * @throws JSONException 数値がNaNまたは無限大の場合
+     */
+    private void writeNumber(final Number number) throws JSONException {
+        if (number instanceof Integer || number instanceof Long
+                || number instanceof Short || number instanceof Byte) {
+            writeLong(number.longValue());
+        } else if (number instanceof Double) {
+            writeDouble(number.doubleValue());
+        } else {
+            double doubleValue = number.doubleValue();
+            checkDouble(doubleValue);
+            long longValue = number.longValue();
+            if (doubleValue == (double) longValue) {
+                writeLong(longValue);
+            } else {
+                writeAscii(number.toString());
+            }
+        }
+    }
+
+    /**
+     * 浮動小数点数を書き込む.
+     * @param value 浮動小数点数
+     * @throws JSONException 数値がNaNまたは無限大の場合
+     */
+    private void writeDouble(final double value) throws JSONException {
+        checkDouble(value);
+        if (Double.doubleToLongBits(value) == NEGATIVE_ZERO_BITS) {
+            writeAscii("-0");
+            return;
+        }
+        long longValue = (long) value;
+        if (value == (double) longValue) {
+            writeLong(longValue);
+        } else {
+            writeAscii(Double.toString(value));
+        }
+    }
+
+    /**
+     * JSONで表現できる数値か確認する.
+     * @param value 数値
+     * @throws JSONException 数値がNaNまたは無限大の場合
+     */
+    private static void checkDouble(final double value) throws JSONException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new JSONException("Forbidden numeric value: " + value);
+        }
+    }
+
+    /**
+     * 整数を書き込む.
+     * @param value 整数
+     */
+    private void writeLong(final long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        long v = value;
+        if (v < 0) {
+            writeByte('-');
+            v = -v;
+        }
+        int pos = mDigits.length;
+        do {
+            mDigits[--pos] = (byte) ('0' + (v % 10));
+            v /= 10;
+        } while (v != 0);
+        int len = mDigits.length - pos;
+        ensureCapacity(len);
+        System.arraycopy(mDigits, pos, mBuffer, mCount, len);
+        mCount += len;
+    }
+
+    /**
+     * 文字列をJSONの文字列としてエスケープしてUTF-8で書き込む.
+     * <p>
+     * エスケープの規則はJSONStringerと同じにする。
+     * </p>
+     * @param value 文字列
+     */
+    private void writeString(final String value) {
+        final int length = value.length();
+        // 1文字あたりエスケープの最大6バイトを考慮しておく
+        ensureCapacity(length * 6 + 2);
+        byte[] buf = mBuffer;
+        int count = mCount;
+        buf[count++] = '"';
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                case '/':
+                    buf[count++] = '\\';
+                    buf[count++] = (byte) c;
+                    break;
+                case '\t':
+                    buf[count++] = '\\';
+                    buf[count++] = 't';
+                    break;
+                case '\b':
+                    buf[count++] = '\\';
+                    buf[count++] = 'b';
+                    break;
+                case '\n':
+                    buf[count++] = '\\';
+                    buf[count++] = 'n';
+                    break;
+                case '\r':
+                    buf[count++] = '\\';
+                    buf[count++] = 'r';
+                    break;
+                case '\f':
+                    buf[count++] = '\\';
+                    buf[count++] = 'f';
+                    break;
+                default:
+                    if (c <= 0x1F) {
+                        buf[count++] = '\\';
+                        buf[count++] = 'u';
+                        buf[count++] = '0';
+                        buf[count++] = '0';
+                        buf[count++] = HEX[(c >> 4) & 0xF];
+                        buf[count++] = HEX[c & 0xF];
+                    } else if (c < 0x80) {
+                        buf[count++] = (byte) c;
+                    } else if (c < 0x800) {
+                        buf[count++] = (byte) (0xC0 | (c >> 6));
+                        buf[count++] = (byte) (0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int cp = Character.toCodePoint(c, value.charAt(++i));
+                        buf[count++] = (byte) (0xF0 | (cp >> 18));
+                        buf[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                        buf[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                        buf[count++] = (byte) (0x80 | (cp & 0x3F));
+                    } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+                        // String#getBytes("UTF-8")と同様に、対になっていないサロゲートは'?'に置き換える
+                        buf[count++] = '?';
+                    } else {
+                        buf[count++] = (byte) (0xE0 | (c >> 12));
+                        buf[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                        buf[count++] = (byte) (0x80 | (c & 0x3F));
+                    }
+                    break;
+            }
+        }
+        buf[count++] = '"';
+        mCount = count;
+    }
+
+    /**
+     * ASCII文字列を書き込む.
+     * @param value ASCII文字列
+     */
+    private void writeAscii(final String value) {
+        final int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            mBuffer[mCount++] = (byte) value.charAt(i);
+        }
+    }
+
+    /**
+     * 1バイト書き込む.
+     * @param b 書き込む値
+     */
+    private void writeByte(final int b) {
+        ensureCapacity(1);
+        mBuffer[mCount++] = (byte) b;
+    }
+
+    /**
+     * 指定されたサイズを書き込めるようにバッファを拡張する.
+     * @param size 書き込むサイズ
+     */
+    private void ensureCapacity(final int size) {
+        int required = mCount + size;
+        if (required > mBuffer.length) {
+            int newLength = Math.max(mBuffer.length * 2, required);
+            byte[] newBuffer = new byte[newLength];
+            System.arraycopy(mBuffer, 0, newBuffer, 0, mCount);
+            mBuffer = newBuffer;
+        }
+    }
+
+    /**
+     * 指定したObject[]がプリミティブ型のラッパークラスの配列であるかどうかをチェックする.
+     * <p>
+     * なお、配列のすべての要素の型が同一でない場合、falseを返す.
+     * </p>
+     * @param array チェックするオブジェクト配列
+     * @return プリミティブ型のラッパークラスの配列である場合はtrue、そうでない場合はfalse
+     */
+    private static boolean isPrimitiveWrapperArray(final Object[] array) {
+        Class<?> classCache = null;
+        for (Object obj : array) {
+            if (obj != null) {
+                if (!isPrimitiveWrapper(obj)) {
+                    return false;
+                }
+                if (classCache == null) {
+                    classCache = obj.getClass();
+                } else if (classCache != obj.getClass()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 指定したObjectがプリミティブ型のラッパークラスであるかどうかをチェックする.
+     *
+     * @param obj チェックするオブジェクト
+     * @return プリミティブ型のラッパークラスである場合はtrue、そうでない場合はfalse
+     */
+    private static boolean isPrimitiveWrapper(final Object obj) {
+        return obj instanceof Byte || obj instanceof Short || obj instanceof Integer
+                || obj instanceof Long || obj instanceof Float || obj instanceof Double
+                || obj instanceof Character || obj instanceof Boolean;
+    }
+}
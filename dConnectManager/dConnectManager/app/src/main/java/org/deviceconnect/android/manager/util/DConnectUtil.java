@@ -138,7 +138,7 @@ public final class DConnectUtil {
      * @param uri ファイルへのContentUri
      * @return URI
      */
-    private static String createUri(final DConnectSettings settings, final String uri) {
+    static String createUri(final DConnectSettings settings, final String uri) {
         StringBuilder builder = new StringBuilder();
         builder.append(settings.isSSL() ? "https://" : "http://");
         builder.append(settings.getHost());
@@ -188,7 +188,7 @@ public final class DConnectUtil {
      * @param uri チェックするuri
      * @return content://から始まる場合はtrue、それ以外はfalse
      */
-    private static boolean startWithContent(final String uri) {
+    static boolean startWithContent(final String uri) {
         return uri != null && (uri.startsWith("content://"));
     }
 
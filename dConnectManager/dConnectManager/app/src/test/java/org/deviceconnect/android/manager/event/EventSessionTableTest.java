@@ -0,0 +1,196 @@
+/*
+ EventSessionTableTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.event;
+
+import android.content.Intent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the indexes of {@link EventSessionTable}.
+ * @author NTT DOCOMO, INC.
+ */
+public class EventSessionTableTest {
+
+    private EventSessionTable mTable;
+
+    @Before
+    public void setUp() {
+        mTable = new EventSessionTable();
+    }
+
+    @Test
+    public void add() {
+        EventSession session1 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin1", "receiver2", "token1", "service1", "deviceOrientation", null, "onDeviceOrientation");
+        mTable.add(session1);
+        mTable.add(session2);
+
+        assertIndexesMatchTable();
+        assertSame(session1, mTable.findByAccessToken("token1", "service1", "battery", null, "onChargingChange"));
+        assertSame(session2, mTable.findByReceiverId("plugin1", "receiver2", "service1",
+                "deviceOrientation", null, "onDeviceOrientation"));
+    }
+
+    @Test
+    public void add_ignoresCaseOfPath() {
+        EventSession session = createSession("plugin1", "receiver1", "token1", "service1", "Battery", null, "onChargingChange");
+        mTable.add(session);
+
+        assertSame(session, mTable.findByAccessToken("token1", "service1", "battery", null, "ONCHARGINGCHANGE"));
+        assertSame(session, mTable.findByReceiverId("plugin1", "receiver1", "service1", "BATTERY", null, "onchargingchange"));
+        assertNull(mTable.findByAccessToken("TOKEN1", "service1", "battery", null, "onChargingChange"));
+    }
+
+    @Test
+    public void add_sameKey() {
+        EventSession session1 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        mTable.add(session1);
+        mTable.add(session2);
+        assertIndexesMatchTable();
+
+        // The remaining session is found after the first one is removed.
+        mTable.remove(session1);
+        assertIndexesMatchTable();
+        assertSame(session2, mTable.findByAccessToken("token1", "service1", "battery", null, "onChargingChange"));
+
+        mTable.remove(session2);
+        assertIndexesMatchTable();
+        assertNull(mTable.findByAccessToken("token1", "service1", "battery", null, "onChargingChange"));
+    }
+
+    @Test
+    public void updateAccessTokenForPlugin() {
+        EventSession session1 = createSession("plugin1", "receiver1", "oldToken", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin2", "receiver1", "token2", "service2", "battery", null, "onChargingChange");
+        mTable.add(session1);
+        mTable.add(session2);
+
+        mTable.updateAccessTokenForPlugin("plugin1", "newToken");
+
+        assertIndexesMatchTable();
+        assertEquals("newToken", session1.getAccessToken());
+        assertNull(mTable.findByAccessToken("oldToken", "service1", "battery", null, "onChargingChange"));
+        assertSame(session1, mTable.findByAccessToken("newToken", "service1", "battery", null, "onChargingChange"));
+        assertSame(session2, mTable.findByAccessToken("token2", "service2", "battery", null, "onChargingChange"));
+    }
+
+    @Test
+    public void remove() {
+        EventSession session1 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onBatteryChange");
+        mTable.add(session1);
+        mTable.add(session2);
+
+        mTable.remove(session1);
+
+        assertIndexesMatchTable();
+        assertNull(mTable.findByAccessToken("token1", "service1", "battery", null, "onChargingChange"));
+        assertNull(mTable.findByReceiverId("plugin1", "receiver1", "service1", "battery", null, "onChargingChange"));
+        assertSame(session2, mTable.findByAccessToken("token1", "service1", "battery", null, "onBatteryChange"));
+    }
+
+    @Test
+    public void remove_notAdded() {
+        EventSession session1 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        mTable.add(session1);
+
+        // A session with the same key which is not in the table does not remove the indexed one.
+        mTable.remove(session2);
+
+        assertIndexesMatchTable();
+        assertSame(session1, mTable.findByAccessToken("token1", "service1", "battery", null, "onChargingChange"));
+    }
+
+    @Test
+    public void removeForPlugin() {
+        EventSession session1 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin2", "receiver1", "token2", "service2", "battery", null, "onChargingChange");
+        mTable.add(session1);
+        mTable.add(session2);
+
+        mTable.removeForPlugin("plugin1");
+
+        assertIndexesMatchTable();
+        assertEquals(1, mTable.getAll().size());
+        assertNull(mTable.findByAccessToken("token1", "service1", "battery", null, "onChargingChange"));
+        assertNull(mTable.findByReceiverId("plugin1", "receiver1", "service1", "battery", null, "onChargingChange"));
+        assertSame(session2, mTable.findByReceiverId("plugin2", "receiver1", "service2", "battery", null, "onChargingChange"));
+    }
+
+    @Test
+    public void removeForReceiverId() {
+        EventSession session1 = createSession("plugin1", "receiver1", "token1", "service1", "battery", null, "onChargingChange");
+        EventSession session2 = createSession("plugin1", "receiver2", "token1", "service1", "battery", null, "onBatteryChange");
+        mTable.add(session1);
+        mTable.add(session2);
+
+        mTable.removeForReceiverId("receiver1");
+
+        assertIndexesMatchTable();
+        assertEquals(1, mTable.getAll().size());
+        assertNull(mTable.findByReceiverId("plugin1", "receiver1", "service1", "battery", null, "onChargingChange"));
+        assertSame(session2, mTable.findByReceiverId("plugin1", "receiver2", "service1", "battery", null, "onBatteryChange"));
+    }
+
+    /**
+     * Checks that every session in the table can be found by both indexes.
+     */
+    private void assertIndexesMatchTable() {
+        List<EventSession> sessions = mTable.getAll();
+        for (EventSession session : sessions) {
+            EventSession byAccessToken = mTable.findByAccessToken(session.getAccessToken(),
+                    session.getServiceId(), session.getProfileName(), session.getInterfaceName(),
+                    session.getAttributeName());
+            EventSession byReceiverId = mTable.findByReceiverId(session.getPluginId(),
+                    session.getReceiverId(), session.getServiceId(), session.getProfileName(),
+                    session.getInterfaceName(), session.getAttributeName());
+            assertSameKey(session, byAccessToken);
+            assertSameKey(session, byReceiverId);
+            assertTrue(sessions.contains(byAccessToken));
+            assertTrue(sessions.contains(byReceiverId));
+        }
+    }
+
+    private static void assertSameKey(final EventSession expected, final EventSession actual) {
+        assertEquals(expected.getPluginId(), actual.getPluginId());
+        assertEquals(expected.getReceiverId(), actual.getReceiverId());
+        assertEquals(expected.getAccessToken(), actual.getAccessToken());
+        assertEquals(expected.getServiceId(), actual.getServiceId());
+        assertEquals(expected.getProfileName().toLowerCase(), actual.getProfileName().toLowerCase());
+        assertEquals(expected.getAttributeName().toLowerCase(), actual.getAttributeName().toLowerCase());
+    }
+
+    private static EventSession createSession(final String pluginId, final String receiverId,
+                                              final String accessToken, final String serviceId,
+                                              final String profileName, final String interfaceName,
+                                              final String attributeName) {
+        EventSession session = new EventSession() {
+            @Override
+            public void sendEvent(final Intent event) {
+            }
+        };
+        session.setPluginId(pluginId);
+        session.setReceiverId(receiverId);
+        session.setAccessToken(accessToken);
+        session.setServiceId(serviceId);
+        session.setProfileName(profileName);
+        session.setInterfaceName(interfaceName);
+        session.setAttributeName(attributeName);
+        return session;
+    }
+}
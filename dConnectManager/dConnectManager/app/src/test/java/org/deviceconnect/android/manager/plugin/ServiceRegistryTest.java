@@ -0,0 +1,154 @@
+/*
+ ServiceRegistryTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.plugin;
+
+import android.os.Bundle;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the cache state and the counters of {@link ServiceRegistry}.
+ * @author NTT DOCOMO, INC.
+ */
+public class ServiceRegistryTest {
+
+    /** TTL which does not expire during a test, in milliseconds. */
+    private static final long LONG_TTL = 60 * 1000;
+
+    private ServiceRegistry mRegistry;
+
+    @Before
+    public void setUp() {
+        mRegistry = new ServiceRegistry();
+    }
+
+    @Test
+    public void lookup_miss() {
+        assertEquals(ServiceRegistry.CacheState.NONE, lookup("plugin1", LONG_TTL));
+        assertNull(mRegistry.getServices("plugin1"));
+
+        assertCounts(0, 0, 1, 0);
+    }
+
+    @Test
+    public void lookup_hit() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+
+        assertEquals(ServiceRegistry.CacheState.FRESH, lookup("plugin1", LONG_TTL));
+        assertEquals(ServiceRegistry.CacheState.FRESH, lookup("plugin1", LONG_TTL));
+        assertNotNull(mRegistry.getServices("plugin1"));
+
+        assertCounts(2, 0, 0, 0);
+    }
+
+    @Test
+    public void lookup_staleHit() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+
+        assertEquals(ServiceRegistry.CacheState.STALE, lookup("plugin1", 0));
+
+        assertCounts(0, 1, 0, 0);
+    }
+
+    @Test
+    public void lookup_otherPlugin() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+
+        assertEquals(ServiceRegistry.CacheState.NONE, lookup("plugin2", LONG_TTL));
+        assertEquals(ServiceRegistry.CacheState.FRESH, lookup("plugin1", LONG_TTL));
+
+        assertCounts(1, 0, 1, 0);
+    }
+
+    @Test
+    public void removePlugin() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+        mRegistry.putServices("plugin2", new ArrayList<Bundle>());
+        assertEquals(ServiceRegistry.CacheState.FRESH, lookup("plugin1", LONG_TTL));
+
+        mRegistry.removePlugin("plugin1");
+
+        assertNull(mRegistry.getServices("plugin1"));
+        assertEquals(ServiceRegistry.CacheState.NONE, lookup("plugin1", LONG_TTL));
+        assertEquals(ServiceRegistry.CacheState.FRESH, lookup("plugin2", LONG_TTL));
+        assertCounts(2, 0, 1, 1);
+    }
+
+    @Test
+    public void removePlugin_notCached() {
+        mRegistry.removePlugin("plugin1");
+
+        assertCounts(0, 0, 0, 0);
+    }
+
+    @Test
+    public void removePlugin_endsRefresh() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+        assertTrue(mRegistry.beginRefresh("plugin1"));
+        assertFalse(mRegistry.beginRefresh("plugin1"));
+
+        mRegistry.removePlugin("plugin1");
+
+        assertTrue(mRegistry.beginRefresh("plugin1"));
+    }
+
+    @Test
+    public void clear() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+        mRegistry.putServices("plugin2", new ArrayList<Bundle>());
+
+        mRegistry.clear();
+
+        assertEquals(ServiceRegistry.CacheState.NONE, lookup("plugin1", LONG_TTL));
+        assertEquals(ServiceRegistry.CacheState.NONE, lookup("plugin2", LONG_TTL));
+        assertCounts(0, 0, 2, 2);
+    }
+
+    @Test
+    public void putServices_afterRemove() {
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+        mRegistry.removePlugin("plugin1");
+        assertEquals(ServiceRegistry.CacheState.NONE, lookup("plugin1", LONG_TTL));
+
+        mRegistry.putServices("plugin1", new ArrayList<Bundle>());
+
+        assertEquals(ServiceRegistry.CacheState.FRESH, lookup("plugin1", LONG_TTL));
+        assertCounts(1, 0, 1, 1);
+    }
+
+    /**
+     * Looks up the cache in the same way as the Service Discovery request.
+     */
+    private ServiceRegistry.CacheState lookup(final String pluginId, final long ttl) {
+        ServiceRegistry.CacheState state = mRegistry.getCacheState(pluginId, ttl);
+        List<Bundle> cached = mRegistry.getServices(pluginId);
+        if (state != ServiceRegistry.CacheState.NONE && cached != null) {
+            mRegistry.recordHit(state);
+        } else {
+            mRegistry.recordMiss();
+        }
+        return state;
+    }
+
+    private void assertCounts(final long hits, final long staleHits, final long misses,
+                              final long invalidations) {
+        assertEquals("hits", hits, mRegistry.getHitCount());
+        assertEquals("staleHits", staleHits, mRegistry.getStaleHitCount());
+        assertEquals("misses", misses, mRegistry.getMissCount());
+        assertEquals("invalidations", invalidations, mRegistry.getInvalidationCount());
+    }
+}
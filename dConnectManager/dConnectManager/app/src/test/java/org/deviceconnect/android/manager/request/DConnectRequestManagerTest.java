@@ -0,0 +1,177 @@
+/*
+ DConnectRequestManagerTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.android.manager.request;
+
+import android.content.Intent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of the response correlation of {@link DConnectRequestManager}.
+ * @author NTT DOCOMO, INC.
+ */
+public class DConnectRequestManagerTest {
+
+    /** Timeout of the requests which should not time out, in milliseconds. */
+    private static final long LONG_TIMEOUT = 60000;
+
+    /** Timeout of the requests which should time out, in milliseconds. */
+    private static final long SHORT_TIMEOUT = 200;
+
+    /** Time to wait for the callbacks in seconds. */
+    private static final long WAIT = 10;
+
+    private DConnectRequestManager mRequestMgr;
+
+    @Before
+    public void setUp() {
+        mRequestMgr = new DConnectRequestManager();
+    }
+
+    @After
+    public void tearDown() {
+        mRequestMgr.shutdown();
+    }
+
+    @Test
+    public void waitForResponse_response() throws InterruptedException {
+        TestCallback callback = new TestCallback();
+        mRequestMgr.waitForResponse(1, LONG_TIMEOUT, callback);
+        assertEquals(1, mRequestMgr.getPendingResponseCount());
+
+        Intent response = new Intent();
+        mRequestMgr.setResponse(1, response);
+        callback.await();
+
+        assertSame(response, callback.getResponse());
+        assertEquals(0, callback.getTimeoutCount());
+        assertEquals(0, mRequestMgr.getPendingResponseCount());
+    }
+
+    @Test
+    public void waitForResponse_timeout() throws InterruptedException {
+        TestCallback callback = new TestCallback();
+        mRequestMgr.waitForResponse(1, SHORT_TIMEOUT, callback);
+        callback.await();
+
+        assertEquals(1, callback.getTimeoutCount());
+        assertEquals(0, mRequestMgr.getPendingResponseCount());
+
+        // A late response is not delivered.
+        mRequestMgr.setResponse(1, new Intent());
+        Thread.sleep(SHORT_TIMEOUT);
+        assertEquals(0, callback.getResponseCount());
+    }
+
+    @Test
+    public void waitForResponse_responsesAreMatchedByRequestCode() throws InterruptedException {
+        TestCallback callback1 = new TestCallback();
+        TestCallback callback2 = new TestCallback();
+        mRequestMgr.waitForResponse(1, LONG_TIMEOUT, callback1);
+        mRequestMgr.waitForResponse(2, LONG_TIMEOUT, callback2);
+
+        Intent response2 = new Intent();
+        mRequestMgr.setResponse(2, response2);
+        callback2.await();
+        assertSame(response2, callback2.getResponse());
+        assertEquals(0, callback1.getResponseCount());
+        assertEquals(1, mRequestMgr.getPendingResponseCount());
+
+        Intent response1 = new Intent();
+        mRequestMgr.setResponse(1, response1);
+        callback1.await();
+        assertSame(response1, callback1.getResponse());
+    }
+
+    @Test
+    public void waitForResponse_sameRequestCodeReplacesOldWait() throws InterruptedException {
+        TestCallback old = new TestCallback();
+        TestCallback callback = new TestCallback();
+        mRequestMgr.waitForResponse(1, SHORT_TIMEOUT, old);
+        mRequestMgr.waitForResponse(1, LONG_TIMEOUT, callback);
+        assertEquals(1, mRequestMgr.getPendingResponseCount());
+
+        // The timeout of the old wait is cancelled.
+        Thread.sleep(SHORT_TIMEOUT * 3);
+        assertEquals(0, old.getTimeoutCount());
+
+        Intent response = new Intent();
+        mRequestMgr.setResponse(1, response);
+        callback.await();
+        assertSame(response, callback.getResponse());
+        assertEquals(0, old.getResponseCount());
+    }
+
+    @Test
+    public void cancelResponse() throws InterruptedException {
+        TestCallback callback = new TestCallback();
+        mRequestMgr.waitForResponse(1, SHORT_TIMEOUT, callback);
+        mRequestMgr.cancelResponse(1);
+        assertEquals(0, mRequestMgr.getPendingResponseCount());
+
+        mRequestMgr.setResponse(1, new Intent());
+        Thread.sleep(SHORT_TIMEOUT * 3);
+        assertEquals(0, callback.getResponseCount());
+        assertEquals(0, callback.getTimeoutCount());
+    }
+
+    @Test
+    public void cancelResponse_unknownRequestCode() {
+        mRequestMgr.cancelResponse(1);
+        mRequestMgr.setResponse(1, new Intent());
+
+        assertEquals(0, mRequestMgr.getPendingResponseCount());
+    }
+
+    /**
+     * Callback which records the notifications.
+     */
+    private static class TestCallback implements DConnectRequestManager.ResponseCallback {
+        private final CountDownLatch mLatch = new CountDownLatch(1);
+        private final List<Intent> mResponses = new ArrayList<>();
+        private int mTimeoutCount;
+
+        @Override
+        public synchronized void onResponse(final Intent response) {
+            mResponses.add(response);
+            mLatch.countDown();
+        }
+
+        @Override
+        public synchronized void onTimeout() {
+            mTimeoutCount++;
+            mLatch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            assertTrue("not notified", mLatch.await(WAIT, TimeUnit.SECONDS));
+        }
+
+        synchronized Intent getResponse() {
+            return mResponses.get(0);
+        }
+
+        synchronized int getResponseCount() {
+            return mResponses.size();
+        }
+
+        synchronized int getTimeoutCount() {
+            return mTimeoutCount;
+        }
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ HashedWheelTimer.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.util;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 大量のタイムアウトを1つのスレッドで管理するためのタイマー.
+ * <p>
+ * タイムアウトはティック単位で丸められたスロット(ホイール)に格納されるため、
+ * 登録・キャンセルは件数によらず定数時間で行うことができる.
+ * ただし、タイムアウトの精度はティックの間隔に依存する.
+ * </p>
+ * <p>
+ * タイムアウト時に実行されるタスクはタイマーのスレッドで実行されるので、
+ * 時間のかかる処理は別スレッドに委譲すること.
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+public class HashedWheelTimer {
+
+    /** ロガー. */
+    private final Logger mLogger = Logger.getLogger("dconnect.server");
+
+    /** ティックの間隔(ナノ秒). */
+    private final long mTickDuration;
+
+    /** ホイールのスロット一覧. */
+    private final Queue<TimeoutEntry>[] mWheel;
+
+    /** スロット番号を算出するためのマスク. */
+    private final int mMask;
+
+    /** ホイールに格納される前のタイムアウト一覧. */
+    private final Queue<TimeoutEntry> mPendingTimeouts = new ConcurrentLinkedQueue<TimeoutEntry>();
+
+    /** 未完了のタイムアウトの個数. */
+    private final AtomicInteger mPendingCount = new AtomicInteger();
+
+    /** タイマーのスレッド. */
+    private final Thread mWorkerThread;
+
+    /** タイマーの開始時刻(ナノ秒). */
+    private final long mStartTime;
+
+    /** タイマーの停止フラグ. */
+    private volatile boolean mStopped;
+
+    /**
+     * コンストラクタ.
+     * @param name スレッド名
+     * @param tickDuration ティックの間隔
+     * @param unit ティックの間隔の単位
+     * @param ticksPerWheel ホイールのスロット数
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public HashedWheelTimer(final String name, final long tickDuration, final TimeUnit unit,
+                            final int ticksPerWheel) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0.");
+        }
+        if (ticksPerWheel <= 0) {
+            throw new IllegalArgumentException("ticksPerWheel must be greater than 0.");
+        }
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        mWheel = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            mWheel[i] = new LinkedList<TimeoutEntry>();
+        }
+        mMask = size - 1;
+        mTickDuration = unit.toNanos(tickDuration);
+        mStartTime = System.nanoTime();
+        mWorkerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWorker();
+            }
+        }, name);
+        mWorkerThread.setDaemon(true);
+        mWorkerThread.start();
+    }
+
+    /**
+     * タイムアウトを登録する.
+     * @param task タイムアウト時に実行するタスク
+     * @param delay タイムアウトまでの時間
+     * @param unit タイムアウトまでの時間の単位
+     * @return 登録したタイムアウト
+     */
+    public Timeout newTimeout(final Runnable task, final long delay, final TimeUnit unit) {
+        if (task == null) {
+            throw new IllegalArgumentException("task is null.");
+        }
+        if (mStopped) {
+            throw new IllegalStateException("Timer is already stopped.");
+        }
+        long deadline = System.nanoTime() - mStartTime + unit.toNanos(Math.max(delay, 0));
+        TimeoutEntry entry = new TimeoutEntry(task, deadline);
+        mPendingCount.incrementAndGet();
+        mPendingTimeouts.add(entry);
+        return entry;
+    }
+
+    /**
+     * 未完了のタイムアウトの個数を取得する.
+     * @return 未完了のタイムアウトの個数
+     */
+    public int getPendingCount() {
+        return mPendingCount.get();
+    }
+
+    /**
+     * タイマーを停止する.
+     * <p>
+     * 未完了のタイムアウトは実行されずに破棄される.
+     * </p>
+     */
+    public void stop() {
+        mStopped = true;
+        mWorkerThread.interrupt();
+    }
+
+    /**
+     * タイマーのスレッドで実行する処理.
+     */
+    private void runWorker() {
+        long tick = 0;
+        while (!mStopped) {
+            if (!waitForNextTick(tick)) {
+                break;
+            }
+            transferPendingTimeouts(tick);
+            expireTimeouts(mWheel[(int) (tick & mMask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * 次のティックまで待機する.
+     * @param tick 現在のティック
+     * @return 次のティックに到達した場合はtrue、タイマーが停止された場合はfalse
+     */
+    private boolean waitForNextTick(final long tick) {
+        long deadline = mTickDuration * (tick + 1);
+        while (true) {
+            long sleepTime = deadline - (System.nanoTime() - mStartTime);
+            if (sleepTime <= 0) {
+                return true;
+            }
+            try {
+                TimeUnit.NANOSECONDS.sleep(sleepTime);
+            } catch (InterruptedException e) {
+                if (mStopped) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    /**
+     * 登録されたタイムアウトをホイールのスロットに格納する.
+     * @param tick 現在のティック
+     */
+    private void transferPendingTimeouts(final long tick) {
+        TimeoutEntry entry;
+        while ((entry = mPendingTimeouts.poll()) != null) {
+            if (entry.isCancelled()) {
+                continue;
+            }
+            long calculated = entry.mDeadline / mTickDuration;
+            entry.mRemainingRounds = (calculated - tick) / mWheel.length;
+            long ticks = Math.max(calculated, tick);
+            mWheel[(int) (ticks & mMask)].add(entry);
+        }
+    }
+
+    /**
+     * スロットに格納されているタイムアウトのうち、期限を迎えたものを実行する.
+     * @param bucket スロット
+     */
+    private void expireTimeouts(final Queue<TimeoutEntry> bucket) {
+        Iterator<TimeoutEntry> it = bucket.iterator();
+        while (it.hasNext()) {
+            TimeoutEntry entry = it.next();
+            if (entry.isCancelled()) {
+                it.remove();
+            } else if (entry.mRemainingRounds <= 0) {
+                it.remove();
+                entry.expire();
+            } else {
+                entry.mRemainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * 登録されたタイムアウト.
+     */
+    public interface Timeout {
+        /**
+         * タイムアウトをキャンセルする.
+         * @return キャンセルできた場合はtrue、既に実行またはキャンセルされていた場合はfalse
+         */
+        boolean cancel();
+
+        /**
+         * タイムアウトが実行済みか確認する.
+         * @return 実行済みの場合はtrue、それ以外はfalse
+         */
+        boolean isExpired();
+    }
+
+    /**
+     * ホイールに格納されるタイムアウトの実装.
+     */
+    private class TimeoutEntry implements Timeout {
+        /** 初期状態. */
+        private static final int STATE_INIT = 0;
+        /** キャンセル済み. */
+        private static final int STATE_CANCELLED = 1;
+        /** 実行済み. */
+        private static final int STATE_EXPIRED = 2;
+
+        /** タイムアウト時に実行するタスク. */
+        private final Runnable mTask;
+
+        /** タイムアウトの期限(タイマー開始時刻からのナノ秒). */
+        private final long mDeadline;
+
+        /** 実行されるまでに残っているホイールの周回数. */
+        private long mRemainingRounds;
+
+        /** 状態. */
+        private final AtomicInteger mState = new AtomicInteger(STATE_INIT);
+
+        /**
+         * コンストラクタ.
+         * @param task タイムアウト時に実行するタスク
+         * @param deadline タイムアウトの期限
+         */
+        TimeoutEntry(final Runnable task, final long deadline) {
+            mTask = task;
+            mDeadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (mState.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+                mPendingCount.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isExpired() {
+            return mState.get() == STATE_EXPIRED;
+        }
+
+        /**
+         * キャンセルされているか確認する.
+         * @return キャンセルされている場合はtrue、それ以外はfalse
+         */
+        boolean isCancelled() {
+            return mState.get() == STATE_CANCELLED;
+        }
+
+        /**
+         * タイムアウトのタスクを実行する.
+         */
+        void expire() {
+            if (!mState.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+                return;
+            }
+            mPendingCount.decrementAndGet();
+            try {
+                mTask.run();
+            } catch (Throwable e) {
+                mLogger.log(Level.WARNING, "An exception occurred in a timeout task.", e);
+            }
+        }
+    }
+}
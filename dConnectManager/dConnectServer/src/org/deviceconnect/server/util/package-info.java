@@ -0,0 +1,10 @@
+/*
+ org.deviceconnect.server.util
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+/**
+ * Device Connect Server Utility.
+ */
+package org.deviceconnect.server.util;
@@ -0,0 +1,176 @@
+/*
+ HashedWheelTimerTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test of {@link HashedWheelTimer}.
+ * @author NTT DOCOMO, INC.
+ */
+public class HashedWheelTimerTest {
+
+    /** Tick duration in milliseconds. */
+    private static final long TICK = 10;
+
+    /** Number of slots, which is small so that a timeout can go around the wheel. */
+    private static final int TICKS_PER_WHEEL = 4;
+
+    /** Time to wait for the timeouts in seconds. */
+    private static final long WAIT = 10;
+
+    private HashedWheelTimer mTimer;
+
+    private final List<String> mLog = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        mTimer = new HashedWheelTimer("HashedWheelTimerTest", TICK, TimeUnit.MILLISECONDS, TICKS_PER_WHEEL);
+    }
+
+    @After
+    public void tearDown() {
+        mTimer.stop();
+    }
+
+    @Test
+    public void newTimeout_expiresInDeadlineOrder() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(3);
+        mTimer.newTimeout(new LogTask("c", latch), TICK * 9, TimeUnit.MILLISECONDS);
+        mTimer.newTimeout(new LogTask("a", latch), TICK, TimeUnit.MILLISECONDS);
+        mTimer.newTimeout(new LogTask("b", latch), TICK * 5, TimeUnit.MILLISECONDS);
+        assertEquals(3, mTimer.getPendingCount());
+
+        assertTrue(latch.await(WAIT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("a", "b", "c"), getLog());
+        assertEquals(0, mTimer.getPendingCount());
+    }
+
+    @Test
+    public void newTimeout_doesNotExpireEarly() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedWheelTimer.Timeout timeout = mTimer.newTimeout(new LogTask("a", latch), TICK * 3,
+                TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(WAIT, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("expired after " + elapsed + " ms", elapsed >= TICK * 3);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void newTimeout_rollsOverWheel() throws InterruptedException {
+        // The deadline is in the same slot as the first timeout, but several revolutions later.
+        long rounds = 3;
+        long delay = TICK * TICKS_PER_WHEEL * rounds + TICK;
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch late = new CountDownLatch(1);
+        long start = System.nanoTime();
+        mTimer.newTimeout(new LogTask("late", late), delay, TimeUnit.MILLISECONDS);
+        mTimer.newTimeout(new LogTask("first", first), TICK, TimeUnit.MILLISECONDS);
+
+        assertTrue(first.await(WAIT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("first"), getLog());
+        assertTrue(late.await(WAIT, TimeUnit.SECONDS));
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("expired after " + elapsed + " ms", elapsed >= delay);
+        assertEquals(Arrays.asList("first", "late"), getLog());
+    }
+
+    @Test
+    public void cancel_preventsExpiry() throws InterruptedException {
+        CountDownLatch cancelledLatch = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        HashedWheelTimer.Timeout cancelled = mTimer.newTimeout(new LogTask("cancelled", cancelledLatch),
+                TICK * 2, TimeUnit.MILLISECONDS);
+        mTimer.newTimeout(new LogTask("a", latch), TICK * 4, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+        assertEquals(1, mTimer.getPendingCount());
+        assertTrue(latch.await(WAIT, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("a"), getLog());
+        assertFalse(cancelled.isExpired());
+        assertEquals(1, cancelledLatch.getCount());
+        assertEquals(0, mTimer.getPendingCount());
+    }
+
+    @Test
+    public void cancel_afterTransfer() throws InterruptedException {
+        CountDownLatch cancelledLatch = new CountDownLatch(1);
+        HashedWheelTimer.Timeout cancelled = mTimer.newTimeout(new LogTask("cancelled", cancelledLatch),
+                TICK * TICKS_PER_WHEEL * 3, TimeUnit.MILLISECONDS);
+        // Wait until the timeout is moved to the wheel.
+        Thread.sleep(TICK * 3);
+        assertTrue(cancelled.cancel());
+
+        assertFalse(cancelledLatch.await(TICK * TICKS_PER_WHEEL * 4, TimeUnit.MILLISECONDS));
+        assertEquals(0, mTimer.getPendingCount());
+    }
+
+    @Test
+    public void newTimeout_exceptionDoesNotStopTimer() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        mTimer.newTimeout(new Runnable() {
+            @Override
+            public void run() {
+                throw new RuntimeException("test");
+            }
+        }, TICK, TimeUnit.MILLISECONDS);
+        mTimer.newTimeout(new LogTask("a", latch), TICK * 2, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(WAIT, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void newTimeout_afterStop() {
+        mTimer.stop();
+        mTimer.newTimeout(new LogTask("a", new CountDownLatch(1)), TICK, TimeUnit.MILLISECONDS);
+    }
+
+    private List<String> getLog() {
+        synchronized (mLog) {
+            return new ArrayList<String>(mLog);
+        }
+    }
+
+    /**
+     * Task which records its name.
+     */
+    private class LogTask implements Runnable {
+        private final String mName;
+        private final CountDownLatch mLatch;
+
+        LogTask(final String name, final CountDownLatch latch) {
+            mName = name;
+            mLatch = latch;
+        }
+
+        @Override
+        public void run() {
+            synchronized (mLog) {
+                mLog.add(mName);
+            }
+            mLatch.countDown();
+        }
+    }
+}
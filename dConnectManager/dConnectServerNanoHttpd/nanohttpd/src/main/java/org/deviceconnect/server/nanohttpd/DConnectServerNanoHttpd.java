@@ -17,26 +17,19 @@ import org.deviceconnect.server.http.HttpResponse;
 import org.deviceconnect.server.nanohttpd.logger.AndroidHandler;
 import org.deviceconnect.server.nanohttpd.security.Firewall;
 import org.deviceconnect.server.nanohttpd.util.KeyStoreManager;
+import org.deviceconnect.server.util.HashedWheelTimer;
 import org.deviceconnect.server.websocket.DConnectWebSocket;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.RandomAccessFile;
 import java.lang.reflect.Field;
 import java.net.Socket;
-import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
@@ -50,6 +43,12 @@ import java.util.StringTokenizer;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -61,6 +60,7 @@ import javax.net.ssl.SSLServerSocketFactory;
 
 import fi.iki.elonen.NanoHTTPD;
 import fi.iki.elonen.NanoHTTPD.IHTTPSession;
+import fi.iki.elonen.NanoHTTPD.ResponseException;
 import fi.iki.elonen.NanoHTTPD.Response.Status;
 import fi.iki.elonen.NanoWSD;
 
@@ -93,16 +93,6 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private static final int MAX_HEADER_SIZE = 1024;
 
-    /**
-     * リクエストを読み込むためのバッファサイズを定義.
-     */
-    private static final int REQUEST_BUFFER_LEN = 1024;
-
-    /**
-     * メモリ上に格納しておく上限サイズを定義.
-     */
-    private static final int MEMORY_STORE_LIMIT = 1024;
-
     /**
      * Content-Dispositionヘッダーを見つける正規表現を定義.
      */
@@ -143,6 +133,26 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private static final int WEBSOCKET_KEEP_ALIVE_INTERVAL = 3000;
 
+    /**
+     * KeepAlive用タイマーのティックの間隔(ms).
+     */
+    private static final int KEEP_ALIVE_TICK_DURATION = 100;
+
+    /**
+     * KeepAlive用タイマーのホイールのスロット数.
+     */
+    private static final int KEEP_ALIVE_TICKS_PER_WHEEL = 64;
+
+    /**
+     * KeepAliveのpingを送信するスレッドの最大数.
+     */
+    private static final int KEEP_ALIVE_THREAD_COUNT = 4;
+
+    /**
+     * KeepAliveのpingを送信するスレッドが、処理が無い時に終了するまでの時間(秒).
+     */
+    private static final long KEEP_ALIVE_THREAD_IDLE_TIME = 30;
+
     /**
      * application/jsonのContent-Typeを定義.
      */
@@ -158,6 +168,36 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private Context mContext;
 
+    /**
+     * スレッドごとのTempFileManager.
+     */
+    private final ThreadLocal<NanoTempFileManager> mTempFileManagers = new ThreadLocal<>();
+
+    /**
+     * 全てのWebSocketのKeepAliveを管理するタイマー.
+     */
+    private HashedWheelTimer mKeepAliveTimer;
+
+    /**
+     * KeepAliveのpingを送信するスレッドプール.
+     * <p>
+     * 送信が詰まっているWebSocketがあっても、他のWebSocketのKeepAliveが遅れないように
+     * タイマーのスレッドではなく、こちらで送信する。スレッド数は{@link #KEEP_ALIVE_THREAD_COUNT}までで、
+     * それを超える送信はキューで待たせる。
+     * </p>
+     */
+    private ThreadPoolExecutor mKeepAliveExecutor;
+
+    /**
+     * pongが期限内に返ってこなかった回数.
+     */
+    private final AtomicLong mLatePongCount = new AtomicLong();
+
+    /**
+     * 最大数を超えたために拒否したWebSocketの接続数.
+     */
+    private final AtomicLong mRejectedWebSocketCount = new AtomicLong();
+
     /**
      * Keep-Aliveの状態定数.
      *
@@ -222,11 +262,19 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         mServer = new NanoServer(mConfig.getHost(), mConfig.getPort());
+        mKeepAliveTimer = new HashedWheelTimer("WebSocketKeepAlive", KEEP_ALIVE_TICK_DURATION,
+                TimeUnit.MILLISECONDS, KEEP_ALIVE_TICKS_PER_WHEEL);
+        mKeepAliveExecutor = new ThreadPoolExecutor(KEEP_ALIVE_THREAD_COUNT, KEEP_ALIVE_THREAD_COUNT,
+                KEEP_ALIVE_THREAD_IDLE_TIME, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        mKeepAliveExecutor.allowCoreThreadTimeOut(true);
 
         // キャッシュのパスが設定されていた場合には、指定したフォルダを使用する
-        if (mConfig.getCachePath() != null) {
-            mServer.setTempFileManagerFactory(new NanoTempFileManagerFactory(mConfig.getCachePath()));
+        // 設定されていない場合には、システムの一時フォルダを使用する
+        String cachePath = mConfig.getCachePath();
+        if (cachePath == null) {
+            cachePath = System.getProperty("java.io.tmpdir");
         }
+        mServer.setTempFileManagerFactory(new NanoTempFileManagerFactory(cachePath));
 
         // SSLが有効になっている場合には、SSL用の設定を行う
         if (mConfig.isSsl()) {
@@ -277,6 +325,8 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         mServer.stop();
         mServer = null;
+
+        stopKeepAliveTimer();
     }
 
     @Override
@@ -289,6 +339,49 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         return VERSION;
     }
 
+    /**
+     * 接続中のWebSocketの個数を取得します.
+     *
+     * @return 接続中のWebSocketの個数
+     */
+    public int getWebSocketCount() {
+        return mSockets.size();
+    }
+
+    /**
+     * pingに対するpongが期限内に返ってこなかった回数を取得します.
+     * <p>
+     * pongが返ってこなかったWebSocketは切断されます。
+     * </p>
+     * @return pongが期限内に返ってこなかった回数
+     */
+    public long getLatePongCount() {
+        return mLatePongCount.get();
+    }
+
+    /**
+     * 最大数を超えたために拒否したWebSocketの接続数を取得します.
+     *
+     * @return 拒否したWebSocketの接続数
+     */
+    public long getRejectedWebSocketCount() {
+        return mRejectedWebSocketCount.get();
+    }
+
+    /**
+     * KeepAlive用のタイマーを停止します.
+     */
+    private synchronized void stopKeepAliveTimer() {
+        if (mKeepAliveTimer != null) {
+            mKeepAliveTimer.stop();
+            mKeepAliveTimer = null;
+        }
+        if (mKeepAliveExecutor != null) {
+            mKeepAliveExecutor.shutdown();
+            mKeepAliveExecutor = null;
+        }
+    }
+
     /**
      * 証明書を読み込みFactoryクラスを生成する.
      *
@@ -350,7 +443,8 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      * NanoHTTPDに定義されていないエラーコードを定義するクラス.
      */
     private enum DConnectStatus implements NanoHTTPD.Response.IStatus {
-        ENTITY_TOO_LARGE(413, "Request Entity Too Large");
+        ENTITY_TOO_LARGE(413, "Request Entity Too Large"),
+        SERVICE_UNAVAILABLE(503, "Service Unavailable");
 
         private final int requestStatus;
         private final String description;
@@ -382,6 +476,19 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          */
         private Firewall mFirewall;
 
+        /**
+         * HTTPSession#splitbyteのフィールド.
+         * <p>
+         * リクエストごとにフィールドを検索しないように、サーバー作成時に取得しておく。
+         * </p>
+         */
+        private final Field mSplitbyteField;
+
+        /**
+         * HTTPSession#rlenのフィールド.
+         */
+        private final Field mRlenField;
+
         /**
          * コンストラクタ.
          *
@@ -391,6 +498,8 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         NanoServer(final String hostname, final int port) {
             super(hostname, port);
             mFirewall = new Firewall(mConfig.getIPWhiteList());
+            mSplitbyteField = getSessionField("splitbyte");
+            mRlenField = getSessionField("rlen");
             mimeTypes();
         }
 
@@ -425,7 +534,14 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                     return newFixedLengthResponse(BAD_REQUEST, NanoHTTPD.MIME_PLAINTEXT, "Missing Websocket-Key");
                 }
 
-                // TODO: WebSocketの最大個数をチェックする
+                if (mSockets.size() >= mConfig.getMaxWebSocketConnectionSize()) {
+                    mRejectedWebSocketCount.incrementAndGet();
+                    mLogger.warning("The number of WebSockets exceeds the limit. max = "
+                            + mConfig.getMaxWebSocketConnectionSize());
+                    return newFixedLengthResponse(DConnectStatus.SERVICE_UNAVAILABLE, NanoHTTPD.MIME_PLAINTEXT,
+                            "Too many WebSocket connections.");
+                }
+
                 WebSocket webSocket = openWebSocket(session);
                 Response handshakeResponse = webSocket.getHandshakeResponse();
                 try {
@@ -513,14 +629,15 @@ public class DConnectServerNanoHttpd extends DConnectServer {
          * @return ヘッダーサイズがバッファよりも大きい場合にはtrue、それ以外はfalse
          */
         private boolean checkHeaderSize(final IHTTPSession session) {
+            if (mSplitbyteField == null || mRlenField == null) {
+                return false;
+            }
             try {
-                int splitbyte = getSplitbyte(session);
-                int rlen = getRlen(session);
+                int splitbyte = mSplitbyteField.getInt(session);
+                int rlen = mRlenField.getInt(session);
                 if (splitbyte == 0 && rlen == HTTPSession.BUFSIZE) {
                     return false;
                 }
-            } catch (NoSuchFieldException e) {
-                return false;
             } catch (IllegalAccessException e) {
                 return false;
             }
@@ -528,37 +645,21 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * HTTPSession#splitbyteの値を取得する.
-         * <p>
-         * privateのフィールドにアクセスして、値を取得します。
-         * </p>
-         * @param session HTTPセッション
-         * @return splitbyteの値
-         * @throws NoSuchFieldException
-         * @throws IllegalAccessException
-         */
-        private int getSplitbyte(final IHTTPSession session) throws NoSuchFieldException, IllegalAccessException {
-            Class c = session.getClass();
-            Field fld = c.getDeclaredField("splitbyte");
-            fld.setAccessible(true);
-            return (Integer) fld.get(session);
-        }
-
-        /**
-         * HTTPSession#rlenの値を取得する.
+         * HTTPSessionのprivateのフィールドを取得する.
          * <p>
-         * privateのフィールドにアクセスして、値を取得します。
+         * MEMO: RetroGuardなどでミニファイされた場合には、取得できないので注意
          * </p>
-         * @param session HTTPセッション
-         * @return splitbyteの値
-         * @throws NoSuchFieldException
-         * @throws IllegalAccessException
+         * @param name フィールド名
+         * @return フィールド. 取得できない場合はnull.
          */
-        private int getRlen(final IHTTPSession session) throws NoSuchFieldException, IllegalAccessException {
-            Class c = session.getClass();
-            Field fld = c.getDeclaredField("rlen");
-            fld.setAccessible(true);
-            return (Integer) fld.get(session);
+        private Field getSessionField(final String name) {
+            try {
+                Field fld = HTTPSession.class.getDeclaredField(name);
+                fld.setAccessible(true);
+                return fld;
+            } catch (NoSuchFieldException e) {
+                return null;
+            }
         }
 
         /**
@@ -578,75 +679,85 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             }
 
             Map<String, String> files = new HashMap<>();
-            RandomAccessFile randomAccessFile = null;
-            try {
-                long size = getBodySize(session);
-                ByteArrayOutputStream baos = null;
-                DataOutput requestDataOutput;
-                // Store the request in memory or a file, depending on size
-                if (size < MEMORY_STORE_LIMIT) {
-                    baos = new ByteArrayOutputStream();
-                    requestDataOutput = new DataOutputStream(baos);
-                } else {
-                    randomAccessFile = getTmpBucket(session);
-                    requestDataOutput = randomAccessFile;
-                }
-
-                InputStream inputStream = session.getInputStream();
-                int len = 0;
-                byte[] buf = new byte[REQUEST_BUFFER_LEN];
-                while (len >= 0 && size > 0) {
-                    len = inputStream.read(buf, 0, (int) Math.min(size, REQUEST_BUFFER_LEN));
-                    size -= len;
-                    if (len > 0) {
-                        requestDataOutput.write(buf, 0, len);
+            long size = getBodySize(session);
+            InputStream inputStream = session.getInputStream();
+
+            if (Method.POST.equals(session.getMethod()) || Method.PUT.equals(session.getMethod())) {
+                ContentType contentType = new ContentType(session.getHeaders().get("content-type"));
+                if (contentType.isMultipart()) {
+                    String boundary = contentType.getBoundary();
+                    if (boundary == null) {
+                        skipBody(inputStream, size);
+                        throw new ResponseException(BAD_REQUEST,
+                                "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html");
                     }
-                }
-
-                TempBuffer tmpBuf;
-                if (baos != null) {
-                    tmpBuf = new TempByteBuffer(ByteBuffer.wrap(baos.toByteArray(), 0, baos.size()));
-                } else {
+                    MultipartParser parser = new MultipartParser(inputStream, size, boundary);
                     try {
-                        tmpBuf = new TempByteBuffer(randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length()));
-                    } catch (IOException e) {
-                        tmpBuf = new TempFileBuffer(randomAccessFile);
+                        decodeMultipartFormData(contentType, parser, request.getQueryParameters(), files);
+                    } finally {
+                        // 次のリクエストの解析に影響しないように、読み残したボディを読み捨てる
+                        parser.skipRemaining();
+                    }
+                } else {
+                    byte[] postBytes = readBody(inputStream, size);
+                    // MEMO: contentTypeの文字コードを設定するとデフォルトでASCIIになり文字化けを起こす
+//                  String postLine = new String(postBytes, contentType.getEncoding()).trim();
+                    String postLine = new String(postBytes, mConfig.getCharset()).trim();
+                    if ("application/x-www-form-urlencoded".equalsIgnoreCase(contentType.getContentType())) {
+                        decodeParms(postLine, request.getQueryParameters());
+                    } else if (postLine.length() != 0) {
+                        files.put("postData", postLine);
                     }
-                    randomAccessFile.seek(0);
                 }
+            } else {
+                skipBody(inputStream, size);
+            }
 
-                if (Method.POST.equals(session.getMethod()) || Method.PUT.equals(session.getMethod())) {
-                    ContentType contentType = new ContentType(session.getHeaders().get("content-type"));
-                    if (contentType.isMultipart()) {
-                        String boundary = contentType.getBoundary();
-                        if (boundary == null) {
-                            throw new ResponseException(BAD_REQUEST,
-                                    "BAD REQUEST: Content type is multipart/form-data but boundary missing. Usage: GET /example/file.html");
-                        }
-                        decodeMultipartFormData(session, contentType, tmpBuf, request.getQueryParameters(), files);
-                    } else {
-                        byte[] postBytes = new byte[tmpBuf.remaining()];
-                        tmpBuf.get(postBytes);
-                        // MEMO: contentTypeの文字コードを設定するとデフォルトでASCIIになり文字化けを起こす
-//                      String postLine = new String(postBytes, contentType.getEncoding()).trim();
-                        String postLine = new String(postBytes, mConfig.getCharset()).trim();
-                        if ("application/x-www-form-urlencoded".equalsIgnoreCase(contentType.getContentType())) {
-                            decodeParms(postLine, request.getQueryParameters());
-                        } else if (postLine.length() != 0) {
-                            files.put("postData", postLine);
-                        }
-                    }
+            request.setFiles(files);
+        }
+
+        /**
+         * ボディを読み込む.
+         * @param inputStream ボディを読み込むストリーム
+         * @param size ボディのサイズ
+         * @return ボディ
+         * @throws IOException ボディの読み込みに失敗した場合
+         */
+        private byte[] readBody(final InputStream inputStream, final long size) throws IOException {
+            byte[] body = new byte[(int) size];
+            int offset = 0;
+            while (offset < body.length) {
+                int len = inputStream.read(body, offset, body.length - offset);
+                if (len < 0) {
+                    break;
                 }
+                offset += len;
+            }
+            if (offset < body.length) {
+                byte[] tmp = new byte[offset];
+                System.arraycopy(body, 0, tmp, 0, offset);
+                body = tmp;
+            }
+            return body;
+        }
 
-                request.setFiles(files);
-            } finally {
-                if (randomAccessFile != null) {
-                    try {
-                        randomAccessFile.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+        /**
+         * ボディを読み捨てる.
+         * @param inputStream ボディを読み込むストリーム
+         * @param size ボディのサイズ
+         * @throws IOException ボディの読み込みに失敗した場合
+         */
+        private void skipBody(final InputStream inputStream, final long size) throws IOException {
+            long remaining = size;
+            while (remaining > 0) {
+                long len = inputStream.skip(remaining);
+                if (len <= 0) {
+                    if (inputStream.read() < 0) {
+                        break;
                     }
+                    len = 1;
                 }
+                remaining -= len;
             }
         }
 
@@ -667,105 +778,15 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * TempFileManagerのインスタンスを取得する.
-         * <p>
-         * TempFileManagerのインスタンスはprivateになっているために通常はアクセスできない。
-         * その問題を回避するためにリフレクションを使用している。
-         * </p>
+         * 実行中のスレッドで処理しているセッションのTempFileManagerを取得する.
          * <p>
-         * MEMO: RetroGuardなどでミニファイされた場合には、動作しなくなるので注意
+         * NanoHTTPDは接続ごとにスレッドを作成し、そのスレッド上でTempFileManagerの作成とリクエストの処理を行うので、
+         * {@link NanoTempFileManagerFactory}でスレッドに紐付けたTempFileManagerを返却する。
          * </p>
-         * @param session Httpリクエストのセッションデータ
          * @return TempFileManagerのインスタンス
          */
-        private TempFileManager getTempFileManager(final IHTTPSession session) {
-            try {
-                Class c = HTTPSession.class;
-                Field fld = c.getDeclaredField("tempFileManager");
-                fld.setAccessible(true);
-                return (TempFileManager) fld.get(session);
-            } catch (NoSuchFieldException e) {
-                return null;
-            } catch (IllegalAccessException e) {
-                return null;
-            }
-        }
-
-        /**
-         * multipartで送られてきデータを一時的に格納するファイルを作成する.
-         * @param session Httpリクエストのセッションデータ
-         * @return 一時的なファイル
-         */
-        private RandomAccessFile getTmpBucket(final IHTTPSession session) {
-            try {
-                TempFileManager mgr = getTempFileManager(session);
-                if (mgr == null) {
-                    throw new RuntimeException("Cannot get a TempFileManager.");
-                }
-                TempFile tempFile = mgr.createTempFile(null);
-                return new RandomAccessFile(tempFile.getName(), "rw");
-            } catch (Exception e) {
-                throw new Error(e); // we won't recover, so throw an error
-            }
-        }
-
-        /**
-         * Find the byte positions where multipart boundaries start. This reads
-         * a large block at a time and uses a temporary buffer to optimize
-         * (memory mapped) file access.
-         */
-        private int[] getBoundaryPositions(final TempBuffer b, final byte[] boundary) throws IOException {
-            int[] res = new int[0];
-            if (b.remaining() < boundary.length) {
-                return res;
-            }
-
-            int search_window_pos = 0;
-            byte[] search_window = new byte[4 * 1024 + boundary.length];
-
-            int first_fill = (b.remaining() < search_window.length) ? b.remaining() : search_window.length;
-            b.get(search_window, 0, first_fill);
-            int new_bytes = first_fill - boundary.length;
-
-            do {
-                // Search the search_window
-                for (int j = 0; j < new_bytes; j++) {
-                    for (int i = 0; i < boundary.length; i++) {
-                        if (search_window[j + i] != boundary[i])
-                            break;
-                        if (i == boundary.length - 1) {
-                            // Match found, add it to results
-                            int[] new_res = new int[res.length + 1];
-                            System.arraycopy(res, 0, new_res, 0, res.length);
-                            new_res[res.length] = search_window_pos + j;
-                            res = new_res;
-                        }
-                    }
-                }
-                search_window_pos += new_bytes;
-
-                // Copy the end of the buffer to the start
-                System.arraycopy(search_window, search_window.length - boundary.length, search_window, 0, boundary.length);
-
-                // Refill search_window
-                new_bytes = search_window.length - boundary.length;
-                new_bytes = (b.remaining() < new_bytes) ? b.remaining() : new_bytes;
-                b.get(search_window, boundary.length, new_bytes);
-            } while (new_bytes > 0);
-            return res;
-        }
-
-        /**
-         * 改行コードまでオフセットを移動する.
-         * @param partHeaderBuff データ
-         * @param index オフセット
-         * @return 移動したインデックス
-         */
-        private int scipOverNewLine(final byte[] partHeaderBuff, int index) {
-            while (partHeaderBuff[index] != '\n') {
-                index++;
-            }
-            return ++index;
+        private NanoTempFileManager getTempFileManager() {
+            return mTempFileManagers.get();
         }
 
         /**
@@ -793,47 +814,30 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         /**
          * multipartをデコードする.
-         * @param session Httpリクエストのセッションデータ
+         * <p>
+         * パートのデータはストリームから逐次読み込み、ファイルのパートは一時ファイルに直接書き込む。
+         * </p>
          * @param contentType コンテントタイプ
-         * @param fbuf bodyデータ
+         * @param parser multipartの解析クラス
          * @param parms queryデータ
          * @param files multipartのファイルパスを格納するマップ
          * @throws ResponseException レスポンスの作成に失敗した場合
          */
-        private void decodeMultipartFormData(final IHTTPSession session, final ContentType contentType, final TempBuffer fbuf,
+        private void decodeMultipartFormData(final ContentType contentType, final MultipartParser parser,
                                              final Map<String, String> parms, final Map<String, String> files) throws ResponseException {
             int pcount = 0;
             try {
-                int[] boundaryIdxs = getBoundaryPositions(fbuf, contentType.getBoundary().getBytes());
-                if (boundaryIdxs.length < 2) {
+                if (!parser.skipPreamble()) {
                     throw new ResponseException(BAD_REQUEST,
                             "BAD REQUEST: Content type is multipart/form-data but contains less than two boundary strings.");
                 }
 
-                byte[] partHeaderBuff = new byte[MAX_HEADER_SIZE];
-                for (int boundaryIdx = 0; boundaryIdx < boundaryIdxs.length - 1; boundaryIdx++) {
-                    fbuf.position(boundaryIdxs[boundaryIdx]);
-                    int len = (fbuf.remaining() < MAX_HEADER_SIZE) ? fbuf.remaining() : MAX_HEADER_SIZE;
-                    fbuf.get(partHeaderBuff, 0, len);
-                    BufferedReader in =
-                            new BufferedReader(new InputStreamReader(
-                                    new ByteArrayInputStream(partHeaderBuff, 0, len),
-                                        Charset.forName(contentType.getEncoding())), len);
-
-                    int headerLines = 0;
-                    // First line is boundary string
-                    String mpline = in.readLine();
-                    headerLines++;
-                    if (mpline == null || !mpline.contains(contentType.getBoundary())) {
-                        throw new ResponseException(BAD_REQUEST,
-                                "BAD REQUEST: Content type is multipart/form-data but chunk does not start with boundary.");
-                    }
-
+                Charset headerCharset = Charset.forName(contentType.getEncoding());
+                ByteArrayOutputStream fieldData = new ByteArrayOutputStream();
+                String[] partHeaders;
+                while ((partHeaders = parser.readPartHeaders(headerCharset)) != null) {
                     String partName = null, fileName = null, partContentType = null;
-                    // Parse the reset of the header lines
-                    mpline = in.readLine();
-                    headerLines++;
-                    while (mpline != null && mpline.trim().length() > 0) {
+                    for (String mpline : partHeaders) {
                         Matcher matcher = CONTENT_DISPOSITION_PATTERN.matcher(mpline);
                         if (matcher.matches()) {
                             String attributeString = matcher.group(2);
@@ -859,31 +863,18 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                         if (matcher.matches()) {
                             partContentType = matcher.group(2).trim();
                         }
-                        mpline = in.readLine();
-                        headerLines++;
-                    }
-                    int partHeaderLength = 0;
-                    while (headerLines-- > 0) {
-                        partHeaderLength = scipOverNewLine(partHeaderBuff, partHeaderLength);
-                    }
-                    // Read the part data
-                    if (partHeaderLength >= len - 4) {
-                        throw new ResponseException(Response.Status.INTERNAL_ERROR, "Multipart header size exceeds MAX_HEADER_SIZE.");
                     }
-                    int partDataStart = boundaryIdxs[boundaryIdx] + partHeaderLength;
-                    int partDataEnd = boundaryIdxs[boundaryIdx + 1] - 4;
 
-                    fbuf.position(partDataStart);
                     if (partContentType == null) {
                         // Read the part into a string
-                        byte[] data_bytes = new byte[partDataEnd - partDataStart];
-                        fbuf.get(data_bytes);
+                        fieldData.reset();
+                        parser.readPartData(fieldData);
                         // MEMO: デフォルトの文字コードでマルチパートの文字列は取得する
-//                        parms.put(partName, new String(data_bytes, contentType.getEncoding()));
-                        parms.put(partName, new String(data_bytes, mConfig.getCharset()));
+//                        parms.put(partName, fieldData.toString(contentType.getEncoding()));
+                        parms.put(partName, fieldData.toString(mConfig.getCharset()));
                     } else {
                         // Read it into a file
-                        String path = saveTmpFile(session, fbuf, partDataStart, partDataEnd - partDataStart, fileName);
+                        String path = saveTmpFile(parser, fileName);
                         if (!files.containsKey(partName)) {
                             files.put(partName, path);
                         } else {
@@ -905,35 +896,35 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         /**
-         * Retrieves the content of a sent file and saves it to a temporary
-         * file. The full path to the saved file is returned.
+         * パートのデータを一時的なファイルに保存する.
+         * <p>
+         * データが空の場合には、空文字を返却する。
+         * </p>
+         * @param parser multipartの解析クラス
+         * @param filename_hint ファイル名
+         * @return 保存したファイルへのパス
+         * @throws IOException ファイルの保存に失敗した場合
+         * @throws ResponseException パートのデータが不正な場合
          */
-        private String saveTmpFile(final IHTTPSession session, final TempBuffer b, final int offset, final int len, final String filename_hint) {
-            String path = "";
-            if (len > 0) {
-                FileOutputStream fileOutputStream = null;
+        private String saveTmpFile(final MultipartParser parser, final String filename_hint)
+                throws IOException, ResponseException {
+            NanoTempFileManager mgr = getTempFileManager();
+            if (mgr == null) {
+                throw new IOException("Cannot get a TempFileManager.");
+            }
+            TempFile tempFile = mgr.createTempFile(filename_hint);
+            FileOutputStream fileOutputStream = new FileOutputStream(tempFile.getName());
+            long length;
+            try {
+                length = parser.readPartData(fileOutputStream);
+            } finally {
                 try {
-                    TempFileManager mgr = getTempFileManager(session);
-                    if (mgr == null) {
-                        throw new RuntimeException("Cannot get a TempFileManager.");
-                    }
-                    TempFile tempFile = mgr.createTempFile(filename_hint);
-                    fileOutputStream = new FileOutputStream(tempFile.getName());
-                    b.write(fileOutputStream, offset, len);
-                    path = tempFile.getName();
-                } catch (Exception e) { // Catch exception if any
-                    throw new Error(e); // we won't recover, so throw an error
-                } finally {
-                    if (fileOutputStream != null) {
-                        try {
-                            fileOutputStream.close();
-                        } catch (IOException e) {
-                            e.printStackTrace();
-                        }
-                    }
+                    fileOutputStream.close();
+                } catch (IOException e) {
+                    mLogger.warning("Failed to close a temporary file. " + e.toString());
                 }
             }
-            return path;
+            return length > 0 ? tempFile.getName() : "";
         }
 
         /**
@@ -1105,11 +1096,6 @@ public class DConnectServerNanoHttpd extends DConnectServer {
      */
     private class NanoWebSocket extends NanoWSD.WebSocket implements DConnectWebSocket {
 
-        /**
-         * KeepAlive実行用のタイマー.
-         */
-        private Timer mKeepAliveTimer;
-
         /**
          * Keep-Aliveのタスク.
          */
@@ -1128,9 +1114,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         NanoWebSocket(final IHTTPSession handshakeRequest) {
             super(handshakeRequest);
             mKeepAliveTask = new KeepAliveTask();
-            mKeepAliveTimer = new Timer();
-            mKeepAliveTimer.scheduleAtFixedRate(mKeepAliveTask,
-                    WEBSOCKET_KEEP_ALIVE_INTERVAL, WEBSOCKET_KEEP_ALIVE_INTERVAL);
+            mKeepAliveTask.schedule();
 
             mSockets.put(getId(), this);
             if (mListener != null) {
@@ -1235,7 +1219,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
             if (mListener != null) {
                 mListener.onWebSocketDisconnected(this);
             }
-            mKeepAliveTimer.cancel();
+            mKeepAliveTask.cancel();
         }
 
         @Override
@@ -1250,16 +1234,29 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         /**
          * Keep-Alive用タイマータスク.
+         * <p>
+         * 全てのWebSocketで共有しているタイマーに、インターバルごとに登録し直して実行する。
+         * </p>
          *
          * @author NTT DOCOMO, INC.
          */
-        private class KeepAliveTask extends TimerTask {
+        private class KeepAliveTask implements Runnable {
 
             /**
              * 処理状態.
              */
             private KeepAliveState mState;
 
+            /**
+             * タイマーに登録中のタイムアウト.
+             */
+            private volatile HashedWheelTimer.Timeout mTimeout;
+
+            /**
+             * キャンセルフラグ.
+             */
+            private volatile boolean mCancelled;
+
             /**
              * コンストラクタ.
              */
@@ -1285,14 +1282,69 @@ public class DConnectServerNanoHttpd extends DConnectServer {
                 return mState;
             }
 
+            /**
+             * 次のKeep-Aliveをタイマーに登録する.
+             */
+            void schedule() {
+                HashedWheelTimer timer = mKeepAliveTimer;
+                if (mCancelled || timer == null) {
+                    return;
+                }
+                try {
+                    mTimeout = timer.newTimeout(this, WEBSOCKET_KEEP_ALIVE_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (IllegalStateException e) {
+                    // サーバーが停止された
+                }
+            }
+
+            /**
+             * Keep-Aliveを停止する.
+             */
+            void cancel() {
+                mCancelled = true;
+                HashedWheelTimer.Timeout timeout = mTimeout;
+                if (timeout != null) {
+                    timeout.cancel();
+                }
+            }
+
             @Override
             public void run() {
+                // タイマーのスレッドでは送信しないで、スレッドプールに渡す
+                ExecutorService executor = mKeepAliveExecutor;
+                if (mCancelled || executor == null) {
+                    return;
+                }
+                try {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            keepAlive();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // サーバーが停止された
+                }
+            }
+
+            /**
+             * pingを送信する.
+             * <p>
+             * 前回のpingに対するpongが返ってきていない場合には、WebSocketを切断する。
+             * </p>
+             */
+            private void keepAlive() {
                 try {
                     synchronized (this) {
+                        if (mCancelled) {
+                            return;
+                        }
                         if (mState == KeepAliveState.GOT_PONG) {
                             setState(KeepAliveState.WAITING_PONG);
                             ping("DConnectServer".getBytes());
+                            schedule();
                         } else {
+                            mLatePongCount.incrementAndGet();
                             close(NanoWSD.WebSocketFrame.CloseCode.GoingAway, "Client is dead.", false);
                         }
                     }
@@ -1325,7 +1377,11 @@ public class DConnectServerNanoHttpd extends DConnectServer {
 
         @Override
         public NanoHTTPD.TempFileManager create() {
-            return new NanoTempFileManager(mCacheDir);
+            // NanoHTTPDは接続を処理するスレッド上でcreateを呼び出すので、
+            // リクエストの処理中に取得できるようにスレッドに紐付けておく
+            NanoTempFileManager manager = new NanoTempFileManager(mCacheDir);
+            mTempFileManagers.set(manager);
+            return manager;
         }
     }
 
@@ -1374,7 +1430,7 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
 
         @Override
-        public NanoHTTPD.TempFile createTempFile(final String filename_hint) throws Exception {
+        public NanoHTTPD.TempFile createTempFile(final String filename_hint) throws IOException {
             NanoHTTPD.TempFile tempFile = new DConnectTempFile(mCacheDir);
             mTempFiles.add(tempFile);
             return tempFile;
@@ -1434,106 +1490,296 @@ public class DConnectServerNanoHttpd extends DConnectServer {
         }
     }
 
-    private interface TempBuffer {
-        TempBuffer position(int position) throws IOException;
-        int remaining() throws IOException;
-        TempBuffer get(byte[] dst, int dstOffset, int byteCount) throws IOException;
-        TempBuffer get(byte[] dst) throws IOException;
+    /**
+     * multipart/form-dataのボディをストリームから逐次解析するクラス.
+     * <p>
+     * ボディ全体をメモリや一時ファイルに格納せずに、固定サイズのバッファの中でバウンダリーを検索する。
+     * バウンダリーの検索には、事前に作成したスキップテーブルを使用する(Boyer-Moore-Horspool法)。
+     * </p>
+     */
+    static class MultipartParser {
+        /**
+         * 読み込み用のバッファサイズ.
+         */
+        private static final int BUFFER_SIZE = 8 * 1024;
 
-        void write(FileOutputStream out, int offset, int length) throws IOException;
-    }
+        /**
+         * 改行コード.
+         */
+        private static final byte[] CRLF = {'\r', '\n'};
 
-    private class TempFileBuffer implements TempBuffer {
+        /**
+         * パートのヘッダーの終わり.
+         */
+        private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
 
-        private RandomAccessFile mRandomAccessFile;
-        private long mLimit;
-        private long mPosition;
+        /**
+         * ボディを読み込むストリーム.
+         */
+        private final InputStream mInputStream;
 
-        TempFileBuffer(final RandomAccessFile file) throws IOException {
-            mRandomAccessFile = file;
-            mPosition = 0;
-            mLimit = file.length();
-        }
+        /**
+         * まだストリームから読み込んでいないボディのサイズ.
+         */
+        private long mRemaining;
 
-        @Override
-        public TempBuffer position(final int position) throws IOException {
-            mPosition = position;
-            mRandomAccessFile.seek(position);
-            return this;
-        }
+        /**
+         * パートの区切り("\r\n--" + バウンダリー).
+         */
+        private final byte[] mDelimiter;
 
-        @Override
-        public int remaining() {
-            return (int) (mLimit - mPosition);
-        }
+        /**
+         * 区切りを検索する時のスキップテーブル.
+         */
+        private final int[] mSkipTable = new int[256];
 
-        @Override
-        public TempBuffer get(final byte[] dst, final int dstOffset, final int byteCount) throws IOException {
-            mRandomAccessFile.seek(mPosition);
-            mRandomAccessFile.readFully(dst, dstOffset, byteCount);
-            mPosition += byteCount;
-            return this;
+        /**
+         * 読み込み用のバッファ.
+         */
+        private final byte[] mBuffer;
+
+        /**
+         * バッファ内の未処理データの開始位置.
+         */
+        private int mHead;
+
+        /**
+         * バッファ内の未処理データの終了位置.
+         */
+        private int mTail;
+
+        /**
+         * コンストラクタ.
+         * @param inputStream ボディを読み込むストリーム
+         * @param size ボディのサイズ
+         * @param boundary バウンダリー
+         */
+        MultipartParser(final InputStream inputStream, final long size, final String boundary) {
+            mInputStream = inputStream;
+            mRemaining = size;
+
+            byte[] b = boundary.getBytes(Charset.forName("ISO-8859-1"));
+            mDelimiter = new byte[b.length + 4];
+            mDelimiter[0] = '\r';
+            mDelimiter[1] = '\n';
+            mDelimiter[2] = '-';
+            mDelimiter[3] = '-';
+            System.arraycopy(b, 0, mDelimiter, 4, b.length);
+
+            int last = mDelimiter.length - 1;
+            for (int i = 0; i < mSkipTable.length; i++) {
+                mSkipTable[i] = mDelimiter.length;
+            }
+            for (int i = 0; i < last; i++) {
+                mSkipTable[mDelimiter[i] & 0xFF] = last - i;
+            }
+
+            mBuffer = new byte[Math.max(BUFFER_SIZE, MAX_HEADER_SIZE) + mDelimiter.length];
+            // ボディ先頭のバウンダリーも他の区切りと同じように検索できるように改行を置いておく
+            System.arraycopy(CRLF, 0, mBuffer, 0, CRLF.length);
+            mTail = CRLF.length;
         }
 
-        @Override
-        public TempBuffer get(final byte[] dst) throws IOException {
-            return get(dst, 0, dst.length);
+        /**
+         * 最初の区切りまでのデータを読み捨てる.
+         * @return 区切りが見つかった場合はtrue、それ以外はfalse
+         * @throws IOException 読み込みに失敗した場合
+         */
+        boolean skipPreamble() throws IOException {
+            return readUntilDelimiter(null) >= 0;
         }
 
-        @Override
-        public void write(final FileOutputStream out, final int offset, final int length) throws IOException {
-            mRandomAccessFile.seek(offset);
-            byte[] buf = new byte[4096];
-            int len = 4096;
-            int size = length;
-            while (size > 0) {
-                mRandomAccessFile.readFully(buf, 0, len);
-                out.write(buf, 0, len);
-                size -= len;
-                if (size < 4096) {
-                    len = size;
+        /**
+         * 次のパートのヘッダーを読み込む.
+         * <p>
+         * 終端の区切りに到達した場合にはnullを返却する。
+         * </p>
+         * @param charset ヘッダーの文字コード
+         * @return ヘッダーの行一覧
+         * @throws IOException 読み込みに失敗した場合
+         * @throws ResponseException データが不正な場合
+         */
+        String[] readPartHeaders(final Charset charset) throws IOException, ResponseException {
+            if (!ensure(2)) {
+                throw new ResponseException(BAD_REQUEST,
+                        "BAD REQUEST: Content type is multipart/form-data but chunk does not start with boundary.");
+            }
+            if (mBuffer[mHead] == '-' && mBuffer[mHead + 1] == '-') {
+                return null;
+            }
+
+            // 区切りの直後の改行からヘッダーの終わりの空行までを検索する
+            int end;
+            while ((end = indexOf(HEADER_END, mHead)) < 0) {
+                if (mTail - mHead > MAX_HEADER_SIZE) {
+                    throw new ResponseException(Status.INTERNAL_ERROR, "Multipart header size exceeds MAX_HEADER_SIZE.");
+                }
+                if (!fill()) {
+                    throw new ResponseException(BAD_REQUEST,
+                            "BAD REQUEST: Content type is multipart/form-data but chunk does not start with boundary.");
                 }
             }
-        }
-    }
+            if (mBuffer[mHead] != '\r' || mBuffer[mHead + 1] != '\n') {
+                throw new ResponseException(BAD_REQUEST,
+                        "BAD REQUEST: Content type is multipart/form-data but chunk does not start with boundary.");
+            }
 
-    private class TempByteBuffer implements TempBuffer {
+            if (end - mHead > MAX_HEADER_SIZE) {
+                throw new ResponseException(Status.INTERNAL_ERROR, "Multipart header size exceeds MAX_HEADER_SIZE.");
+            }
 
-        private ByteBuffer mByteBuffer;
+            int start = mHead + CRLF.length;
+            String[] lines;
+            if (end <= start) {
+                lines = new String[0];
+            } else {
+                lines = new String(mBuffer, start, end - start, charset).split("\r\n");
+            }
+            mHead = end + HEADER_END.length;
+            return lines;
+        }
 
-        TempByteBuffer(ByteBuffer buffer) {
-            mByteBuffer = buffer;
+        /**
+         * パートのデータを次の区切りまで読み込み、指定されたストリームに書き込む.
+         * @param out 書き込み先のストリーム
+         * @return 書き込んだデータのサイズ
+         * @throws IOException 読み込みに失敗した場合
+         * @throws ResponseException データが不正な場合
+         */
+        long readPartData(final OutputStream out) throws IOException, ResponseException {
+            long length = readUntilDelimiter(out);
+            if (length < 0) {
+                throw new ResponseException(BAD_REQUEST,
+                        "BAD REQUEST: Content type is multipart/form-data but contains less than two boundary strings.");
+            }
+            return length;
         }
 
-        @Override
-        public TempBuffer position(final int position) {
-            mByteBuffer.position(position);
-            return this;
+        /**
+         * 読み込んでいないボディを全て読み捨てる.
+         * @throws IOException 読み込みに失敗した場合
+         */
+        void skipRemaining() throws IOException {
+            mHead = 0;
+            mTail = 0;
+            while (mRemaining > 0) {
+                int len = mInputStream.read(mBuffer, 0, (int) Math.min(mBuffer.length, mRemaining));
+                if (len < 0) {
+                    break;
+                }
+                mRemaining -= len;
+            }
         }
 
-        @Override
-        public int remaining() {
-            return mByteBuffer.remaining();
+        /**
+         * 次の区切りまでのデータを指定されたストリームに書き込み、区切りの直後まで読み進める.
+         * <p>
+         * 区切りの一部かもしれないバッファの末尾を残して、それ以外のデータはバッファから直接書き込む。
+         * </p>
+         * @param out 書き込み先のストリーム. nullの場合は読み捨てる.
+         * @return 書き込んだデータのサイズ. 区切りが見つからなかった場合は-1.
+         * @throws IOException 読み込みに失敗した場合
+         */
+        private long readUntilDelimiter(final OutputStream out) throws IOException {
+            long length = 0;
+            while (true) {
+                int index = indexOfDelimiter(mHead, mTail);
+                int end = index >= 0 ? index : mTail - (mDelimiter.length - 1);
+                if (end > mHead) {
+                    if (out != null) {
+                        out.write(mBuffer, mHead, end - mHead);
+                    }
+                    length += end - mHead;
+                    mHead = end;
+                }
+                if (index >= 0) {
+                    mHead = index + mDelimiter.length;
+                    return length;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+            }
         }
 
-        @Override
-        public TempBuffer get(final byte[] dst, final int dstOffset, final int byteCount) {
-            mByteBuffer.get(dst, dstOffset, byteCount);
-            return this;
+        /**
+         * バッファ内から区切りを検索する.
+         * @param from 検索開始位置
+         * @param to 検索終了位置
+         * @return 区切りの位置. 見つからない場合は-1.
+         */
+        private int indexOfDelimiter(final int from, final int to) {
+            final int last = mDelimiter.length - 1;
+            int i = from;
+            while (i + last < to) {
+                int j = last;
+                while (mBuffer[i + j] == mDelimiter[j]) {
+                    if (j == 0) {
+                        return i;
+                    }
+                    j--;
+                }
+                i += mSkipTable[mBuffer[i + last] & 0xFF];
+            }
+            return -1;
         }
 
-        @Override
-        public TempBuffer get(final byte[] dst) {
-            mByteBuffer.get(dst);
-            return this;
+        /**
+         * バッファ内から指定されたバイト列を検索する.
+         * @param pattern 検索するバイト列
+         * @param from 検索開始位置
+         * @return 見つかった位置. 見つからない場合は-1.
+         */
+        private int indexOf(final byte[] pattern, final int from) {
+            for (int i = from; i + pattern.length <= mTail; i++) {
+                int j = 0;
+                while (j < pattern.length && mBuffer[i + j] == pattern[j]) {
+                    j++;
+                }
+                if (j == pattern.length) {
+                    return i;
+                }
+            }
+            return -1;
         }
 
-        @Override
-        public void write(final FileOutputStream out, final int offset, final int len) throws IOException {
-            ByteBuffer src = mByteBuffer.duplicate();
-            FileChannel dest = out.getChannel();
-            src.position(offset).limit(offset + len);
-            dest.write(src.slice());
+        /**
+         * バッファ内に指定されたサイズ以上の未処理データがあるようにする.
+         * @param size サイズ
+         * @return 指定されたサイズ以上のデータがある場合はtrue、それ以外はfalse
+         * @throws IOException 読み込みに失敗した場合
+         */
+        private boolean ensure(final int size) throws IOException {
+            while (mTail - mHead < size) {
+                if (!fill()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 未処理データをバッファの先頭に詰めて、ストリームからデータを読み込む.
+         * @return データを読み込めた場合はtrue、それ以外はfalse
+         * @throws IOException 読み込みに失敗した場合
+         */
+        private boolean fill() throws IOException {
+            if (mHead > 0) {
+                System.arraycopy(mBuffer, mHead, mBuffer, 0, mTail - mHead);
+                mTail -= mHead;
+                mHead = 0;
+            }
+            if (mRemaining <= 0 || mTail == mBuffer.length) {
+                return false;
+            }
+            int len = mInputStream.read(mBuffer, mTail, (int) Math.min(mBuffer.length - mTail, mRemaining));
+            if (len < 0) {
+                mRemaining = 0;
+                return false;
+            }
+            mTail += len;
+            mRemaining -= len;
+            return true;
         }
     }
 }
@@ -0,0 +1,334 @@
+/*
+ MultipartParserTest.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.server.nanohttpd;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import fi.iki.elonen.NanoHTTPD.ResponseException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test of {@link DConnectServerNanoHttpd.MultipartParser}.
+ * @author NTT DOCOMO, INC.
+ */
+public class MultipartParserTest {
+
+    private static final Charset CHARSET = Charset.forName("ISO-8859-1");
+
+    private static final String BOUNDARY = "----TestBoundary7MA4YWxk";
+
+    /** Larger than the buffer of the parser, so that the data is read in several times. */
+    private static final int LARGE_DATA_SIZE = 20 * 1024;
+
+    @Test
+    public void parse_singlePart() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n"
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        List<Part> parts = parse(body.getBytes(CHARSET), Integer.MAX_VALUE);
+
+        assertEquals(1, parts.size());
+        assertArrayEquals(new String[] {"Content-Disposition: form-data; name=\"a\""}, parts.get(0).mHeaders);
+        assertEquals("value", parts.get(0).getDataAsString());
+    }
+
+    @Test
+    public void parse_boundarySplitAcrossReads() throws Exception {
+        byte[] data = createData(LARGE_DATA_SIZE);
+        byte[] body = concat(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "\r\n").getBytes(CHARSET),
+                data,
+                ("\r\n--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"b\"\r\n"
+                + "\r\n"
+                + "second\r\n"
+                + "--" + BOUNDARY + "--\r\n").getBytes(CHARSET));
+
+        // Every chunk size splits some delimiter or part header across two reads.
+        int[] chunkSizes = {1, 2, 3, 7, BOUNDARY.length() + 3, 1000, 8191};
+        for (int chunkSize : chunkSizes) {
+            List<Part> parts = parse(body, chunkSize);
+
+            assertEquals("chunkSize=" + chunkSize, 2, parts.size());
+            assertArrayEquals("chunkSize=" + chunkSize, data, parts.get(0).mData);
+            assertEquals("chunkSize=" + chunkSize, "second", parts.get(1).getDataAsString());
+        }
+    }
+
+    @Test
+    public void parse_dataContainingPartOfDelimiter() throws Exception {
+        String value = "a\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "b\r\n-";
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n"
+                + "\r\n"
+                + value + "\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        List<Part> parts = parse(body.getBytes(CHARSET), 5);
+
+        assertEquals(1, parts.size());
+        assertEquals(value, parts.get(0).getDataAsString());
+    }
+
+    @Test
+    public void parse_emptyParts() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n"
+                + "\r\n"
+                + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "\r\n"
+                + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"c\"\r\n"
+                + "\r\n"
+                + "c\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        List<Part> parts = parse(body.getBytes(CHARSET), 4);
+
+        assertEquals(3, parts.size());
+        assertEquals(1, parts.get(0).mHeaders.length);
+        assertEquals(0, parts.get(0).mData.length);
+        assertEquals(0, parts.get(1).mHeaders.length);
+        assertEquals(0, parts.get(1).mData.length);
+        assertEquals("c", parts.get(2).getDataAsString());
+    }
+
+    @Test
+    public void parse_noParts() throws Exception {
+        String body = "--" + BOUNDARY + "--\r\n";
+        List<Part> parts = parse(body.getBytes(CHARSET), Integer.MAX_VALUE);
+
+        assertTrue(parts.isEmpty());
+    }
+
+    @Test
+    public void parse_preambleAndEpilogue() throws Exception {
+        String body = "This is the preamble.\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n"
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY + "--\r\n"
+                + "This is the epilogue.\r\n"
+                + "--" + BOUNDARY + "\r\n";
+        byte[] bytes = body.getBytes(CHARSET);
+        CountingInputStream in = new CountingInputStream(bytes, 3);
+        DConnectServerNanoHttpd.MultipartParser parser = new DConnectServerNanoHttpd.MultipartParser(
+                in, bytes.length, BOUNDARY);
+        List<Part> parts = parse(parser);
+
+        assertEquals(1, parts.size());
+        assertEquals("value", parts.get(0).getDataAsString());
+
+        // The epilogue is discarded so that it is not read as the next request.
+        parser.skipRemaining();
+        assertEquals(bytes.length, in.getReadCount());
+    }
+
+    @Test
+    public void skipRemaining_doesNotReadBeyondBody() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        byte[] bytes = body.getBytes(CHARSET);
+        byte[] nextRequest = "GET / HTTP/1.1\r\n\r\n".getBytes(CHARSET);
+        CountingInputStream in = new CountingInputStream(concat(bytes, nextRequest), 1000);
+        DConnectServerNanoHttpd.MultipartParser parser = new DConnectServerNanoHttpd.MultipartParser(
+                in, bytes.length, BOUNDARY);
+
+        assertTrue(parser.skipPreamble());
+        parser.skipRemaining();
+        assertEquals(bytes.length, in.getReadCount());
+    }
+
+    @Test
+    public void skipPreamble_noBoundary() throws Exception {
+        byte[] bytes = "no boundary in this body".getBytes(CHARSET);
+        DConnectServerNanoHttpd.MultipartParser parser = new DConnectServerNanoHttpd.MultipartParser(
+                new ByteArrayInputStream(bytes), bytes.length, BOUNDARY);
+
+        assertFalse(parser.skipPreamble());
+    }
+
+    @Test
+    public void parse_missingClosingBoundary() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n"
+                + "\r\n"
+                + "value\r\n";
+        try {
+            parse(body.getBytes(CHARSET), 4);
+            fail("ResponseException is not thrown.");
+        } catch (ResponseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parse_missingClosingDashes() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"a\"\r\n"
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY;
+        try {
+            parse(body.getBytes(CHARSET), Integer.MAX_VALUE);
+            fail("ResponseException is not thrown.");
+        } catch (ResponseException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void parse_oversizedPartHeader() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + createName(2048) + "\"\r\n"
+                + "\r\n"
+                + "value\r\n"
+                + "--" + BOUNDARY + "--\r\n";
+        // The header is rejected whether or not it is read at once.
+        int[] chunkSizes = {Integer.MAX_VALUE, 100};
+        for (int chunkSize : chunkSizes) {
+            try {
+                parse(body.getBytes(CHARSET), chunkSize);
+                fail("ResponseException is not thrown. chunkSize=" + chunkSize);
+            } catch (ResponseException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void parse_unterminatedPartHeader() throws Exception {
+        String body = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + createName(LARGE_DATA_SIZE) + "\"";
+        try {
+            parse(body.getBytes(CHARSET), 100);
+            fail("ResponseException is not thrown.");
+        } catch (ResponseException e) {
+            // expected
+        }
+    }
+
+    private static List<Part> parse(final byte[] body, final int chunkSize) throws IOException, ResponseException {
+        DConnectServerNanoHttpd.MultipartParser parser = new DConnectServerNanoHttpd.MultipartParser(
+                new CountingInputStream(body, chunkSize), body.length, BOUNDARY);
+        return parse(parser);
+    }
+
+    private static List<Part> parse(final DConnectServerNanoHttpd.MultipartParser parser)
+            throws IOException, ResponseException {
+        assertTrue("The first boundary is not found.", parser.skipPreamble());
+        List<Part> parts = new ArrayList<>();
+        String[] headers;
+        while ((headers = parser.readPartHeaders(CHARSET)) != null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long length = parser.readPartData(out);
+            assertEquals(out.size(), length);
+            parts.add(new Part(headers, out.toByteArray()));
+        }
+        assertNull(parser.readPartHeaders(CHARSET));
+        return parts;
+    }
+
+    private static byte[] createData(final int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            // Includes CR, LF and '-' so that the data looks like a delimiter in places.
+            data[i] = (byte) "\r\n-ab".charAt(i % 5);
+        }
+        return data;
+    }
+
+    private static String createName(final int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append('n');
+        }
+        return sb.toString();
+    }
+
+    private static byte[] concat(final byte[]... arrays) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] array : arrays) {
+            out.write(array, 0, array.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Part of the multipart body.
+     */
+    private static class Part {
+        private final String[] mHeaders;
+        private final byte[] mData;
+
+        Part(final String[] headers, final byte[] data) {
+            mHeaders = headers;
+            mData = data;
+        }
+
+        String getDataAsString() {
+            return new String(mData, CHARSET);
+        }
+    }
+
+    /**
+     * Stream which returns at most the given number of bytes per read, and counts the bytes read.
+     */
+    private static class CountingInputStream extends InputStream {
+        private final ByteArrayInputStream mInputStream;
+        private final int mChunkSize;
+        private int mReadCount;
+
+        CountingInputStream(final byte[] data, final int chunkSize) {
+            mInputStream = new ByteArrayInputStream(data);
+            mChunkSize = chunkSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = mInputStream.read();
+            if (b >= 0) {
+                mReadCount++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            int n = mInputStream.read(b, off, Math.min(len, mChunkSize));
+            if (n > 0) {
+                mReadCount += n;
+            }
+            return n;
+        }
+
+        int getReadCount() {
+            return mReadCount;
+        }
+    }
+}
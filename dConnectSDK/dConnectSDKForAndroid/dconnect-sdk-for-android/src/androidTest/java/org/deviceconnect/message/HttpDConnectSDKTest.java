@@ -11,6 +11,7 @@ import android.net.Uri;
 import android.support.test.InstrumentationRegistry;
 import android.support.test.runner.AndroidJUnit4;
 
+import org.deviceconnect.message.entity.BinaryEntity;
 import org.deviceconnect.message.entity.FileEntity;
 import org.deviceconnect.message.entity.MultipartEntity;
 import org.deviceconnect.message.entity.StringEntity;
@@ -1144,6 +1145,106 @@ public class HttpDConnectSDKTest {
         assertThat(response.getString(AvailabilityProfileConstants.PARAM_UUID), is(uuid));
     }
 
+    /**
+     * サイズの大きいファイルとバイナリを含むマルチパートでpostを呼び出し、レスポンスを受け取れることを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・DConnectResponseMessageが返却されること。
+     * ・resultに0が返却されること。
+     * ・サーバで受信したファイルとバイナリが送信したデータと一致すること。
+     * </pre>
+     */
+    @Test
+    public void post_large_file() {
+        Context context = InstrumentationRegistry.getTargetContext();
+        String path = context.getFilesDir() + "/large.dat";
+        final byte[] fileData = new byte[8 * 1024 * 1024];
+        for (int i = 0; i < fileData.length; i++) {
+            fileData[i] = (byte) i;
+        }
+        writeFile(new File(path), fileData);
+        final byte[] binaryData = "This is a binary.".getBytes();
+
+        final MultipartEntity data = new MultipartEntity();
+        data.add("key", new StringEntity("value"));
+        data.add("data", new FileEntity(new File(path)));
+        data.add("binary", new BinaryEntity(binaryData, "binary.dat"));
+
+        mTestServer.setServerCallback(new TestServer.ServerCallback() {
+            @Override
+            public NanoHTTPD.Response serve(final String uri, final NanoHTTPD.Method method, final Map<String, String> headers,
+                                            final Map<String, String> parms, final Map<String, String> files) {
+                if (!method.equals(NanoHTTPD.Method.POST)) {
+                    return newBadRequest("Method is not POST.");
+                }
+
+                if (!"value".equals(parms.get("key"))) {
+                    return newBadRequest("body is invalid.");
+                }
+
+                File file = new File(files.get("data"));
+                if (!file.isFile() || !Arrays.equals(fileData, getFile(file))) {
+                    return newBadRequest("data is invalid.");
+                }
+
+                File binary = new File(files.get("binary"));
+                if (!binary.isFile() || !Arrays.equals(binaryData, getFile(binary))) {
+                    return newBadRequest("binary is invalid.");
+                }
+
+                try {
+                    JSONObject jsonObject = new JSONObject();
+                    jsonObject.put(DConnectMessage.EXTRA_RESULT, DConnectMessage.RESULT_OK);
+                    return newJsonResponse(jsonObject);
+                } catch (JSONException e) {
+                    return newInternalServerError(e.getMessage());
+                }
+            }
+        });
+
+        DConnectSDK sdk = DConnectSDKFactory.create(InstrumentationRegistry.getTargetContext(), DConnectSDKFactory.Type.HTTP);
+        DConnectResponseMessage response = sdk.post("http://localhost:4035/gotapi/availability", data);
+        assertThat(response, notNullValue());
+        assertThat(response.getResult(), is(DConnectMessage.RESULT_OK));
+    }
+
+    /**
+     * 様々な型の値を含むレスポンスを受け取れることを確認する。
+     * <pre>
+     * 【期待する動作】
+     * ・DConnectResponseMessageが返却されること。
+     * ・数値、真偽値、文字列、オブジェクト、配列がJSONObjectと同じ型で格納されていること。
+     * ・同じSDKで連続してリクエストを送信できること。
+     * </pre>
+     */
+    @Test
+    public void get_value_types() {
+        mTestServer.setServerCallback(new TestServer.ServerCallback() {
+            @Override
+            public NanoHTTPD.Response serve(final String uri, final NanoHTTPD.Method method, final Map<String, String> headers,
+                                            final Map<String, String> parms, final Map<String, String> files) {
+                return newJsonResponse("{\"result\":0,\"int\":1,\"long\":12345678901,\"double\":1.5,"
+                        + "\"bool\":true,\"string\":\"\\u3042\",\"object\":{\"key\":\"value\"},"
+                        + "\"array\":[1,{\"key\":\"value\"}]}");
+            }
+        });
+
+        DConnectSDK sdk = DConnectSDKFactory.create(InstrumentationRegistry.getTargetContext(), DConnectSDKFactory.Type.HTTP);
+        for (int i = 0; i < 3; i++) {
+            DConnectResponseMessage response = sdk.get("http://localhost:4035/gotapi/availability");
+            assertThat(response, notNullValue());
+            assertThat(response.getResult(), is(DConnectMessage.RESULT_OK));
+            assertThat(response.getInt("int"), is(1));
+            assertThat(response.getLong("long"), is(12345678901L));
+            assertThat(response.getDouble("double"), is(1.5));
+            assertThat(response.getBoolean("bool"), is(true));
+            assertThat(response.getString("string"), is("\u3042"));
+            assertThat(response.getMessage("object").getString("key"), is("value"));
+            assertThat(response.getList("array").size(), is(2));
+            assertThat(((DConnectMessage) response.getList("array").get(1)).getString("key"), is("value"));
+        }
+    }
+
     /**
      * deleteを呼び出し、レスポンスを受け取れることを確認する。
      * <pre>
@@ -9,11 +9,14 @@ package org.deviceconnect.message;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.util.JsonReader;
+import android.util.JsonToken;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -67,6 +70,20 @@ class BasicDConnectMessage extends HashMap<String, Object> implements DConnectMe
         convertJSONToMap(json, this);
     }
 
+    /**
+     * メッセージをJSONのストリームから生成する.
+     * <p>
+     * JSONObjectを経由せずに、読み込みながらMapに変換する。
+     * 値の型は{@link #BasicDConnectMessage(JSONObject)}と同じになる。
+     * </p>
+     *
+     * @param reader メッセージJSONのリーダー
+     * @throws IOException JSONの読み込みに失敗した場合
+     */
+    BasicDConnectMessage(final JsonReader reader) throws IOException {
+        readJSONToMap(reader, this);
+    }
+
     /**
      * メッセージをIntentから生成する.
      * @param intent メッセージIntent
@@ -494,6 +511,112 @@ class BasicDConnectMessage extends HashMap<String, Object> implements DConnectMe
             }
         }
     }
+
+    /**
+     * JSONのストリームを読み込みながらMapに変換する.
+     * @param reader JSONのリーダー
+     * @param message 変換先のメッセージ
+     * @throws IOException JSONの読み込みに失敗した場合
+     */
+    private static void readJSONToMap(final JsonReader reader, final DConnectMessage message) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            JsonToken token = reader.peek();
+            if (token == JsonToken.BEGIN_OBJECT) {
+                DConnectMessage m = new BasicDConnectMessage();
+                readJSONToMap(reader, m);
+                message.put(key, m);
+            } else if (token == JsonToken.BEGIN_ARRAY) {
+                List<Object> array = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        DConnectMessage m = new BasicDConnectMessage();
+                        readJSONToMap(reader, m);
+                        array.add(m);
+                    } else {
+                        array.add(readJSONValue(reader));
+                    }
+                }
+                reader.endArray();
+                message.put(key, array);
+            } else {
+                message.put(key, readJSONValue(reader));
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * JSONの値を{@link JSONObject#get(String)}と同じ型で読み込む.
+     * @param reader JSONのリーダー
+     * @return 値
+     * @throws IOException JSONの読み込みに失敗した場合
+     */
+    private static Object readJSONValue(final JsonReader reader) throws IOException {
+        try {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT: {
+                    JSONObject object = new JSONObject();
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        object.put(reader.nextName(), readJSONValue(reader));
+                    }
+                    reader.endObject();
+                    return object;
+                }
+                case BEGIN_ARRAY: {
+                    JSONArray array = new JSONArray();
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        array.put(readJSONValue(reader));
+                    }
+                    reader.endArray();
+                    return array;
+                }
+                case BOOLEAN:
+                    return reader.nextBoolean();
+                case NULL:
+                    reader.nextNull();
+                    return JSONObject.NULL;
+                case NUMBER:
+                    return parseNumber(reader.nextString());
+                default:
+                    return reader.nextString();
+            }
+        } catch (JSONException e) {
+            throw new IOException(e.getMessage());
+        }
+    }
+
+    /**
+     * 数値の文字列を{@link JSONObject}と同じ型に変換する.
+     * <p>
+     * 小数点や指数を含む場合はDouble、intの範囲に収まる場合はInteger、それ以外はLongとする。
+     * </p>
+     * @param number 数値の文字列
+     * @return 数値
+     */
+    private static Object parseNumber(final String number) {
+        try {
+            if (number.indexOf('.') == -1 && number.indexOf('e') == -1 && number.indexOf('E') == -1) {
+                long value = Long.parseLong(number);
+                if (value <= Integer.MAX_VALUE && value >= Integer.MIN_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            }
+        } catch (NumberFormatException e) {
+            // Doubleとして変換する
+        }
+        try {
+            return Double.valueOf(number);
+        } catch (NumberFormatException e) {
+            return number;
+        }
+    }
+
     /**
      * 指定したObject[]がプリミティブ型のラッパークラスの配列であるかどうかをチェックする.
      * <p>
@@ -7,10 +7,13 @@
 package org.deviceconnect.message;
 
 import android.content.Intent;
+import android.util.JsonReader;
 
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+
 /**
  * Device Connect Managerからのレスポンスメッセージ.
  * @author NTT DOCOMO, INC.
@@ -62,6 +65,16 @@ public class DConnectResponseMessage extends BasicDConnectMessage {
         super(json);
     }
 
+    /**
+     * Device Connect レスポンスメッセージをJSONのストリームから生成する.
+     *
+     * @param reader メッセージJSONのリーダー
+     * @throws IOException JSONの読み込みに失敗した場合に発生.
+     */
+    DConnectResponseMessage(final JsonReader reader) throws IOException {
+        super(reader);
+    }
+
     /**
      * Device Connect メッセージをIntentから生成する.
      *
@@ -8,6 +8,7 @@ package org.deviceconnect.message;
 
 import android.net.Uri;
 import android.os.Build;
+import android.util.JsonReader;
 import android.util.Log;
 
 import org.deviceconnect.message.entity.BinaryEntity;
@@ -16,17 +17,11 @@ import org.deviceconnect.message.entity.FileEntity;
 import org.deviceconnect.message.entity.MultipartEntity;
 import org.deviceconnect.message.entity.StringEntity;
 import org.deviceconnect.sdk.BuildConfig;
-import org.json.JSONException;
 
-import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
@@ -43,6 +38,7 @@ import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
@@ -87,14 +83,23 @@ class HttpDConnectSDK extends DConnectSDK {
     private DConnectWebSocketClient mWebSocketClient = new DConnectWebSocketClient();
 
     /**
-     * マルチパートのバウンダリーに付加するハイフンを定義.
+     * 全ての証明書を許諾するSSLSocketFactory.
+     * <p>
+     * HttpURLConnectionはSSLSocketFactoryごとにコネクションを再利用するため、
+     * 毎回生成せずに使い回す。
+     * </p>
      */
-    private final static String TWO_HYPHEN = "--";
+    private static SSLSocketFactory sSSLSocketFactory;
 
     /**
-     * マルチパートの改行コードを定義.
+     * 全てのホスト名を許諾するHostnameVerifier.
      */
-    private final static String EOL = "\r\n";
+    private static final HostnameVerifier HOSTNAME_VERIFIER = new HostnameVerifier() {
+        @Override
+        public boolean verify(final String hostname, final SSLSession sslSession) {
+            return true;
+        }
+    };
 
     /**
      * {@link DConnectSDKFactory}で生成させるためにpackageスコープにしておく。
@@ -113,152 +118,107 @@ class HttpDConnectSDK extends DConnectSDK {
      */
     private HttpsURLConnection makeHttpsURLConnection(final URL url) throws IOException, NoSuchAlgorithmException, KeyManagementException {
         HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
-        connection.setHostnameVerifier(new HostnameVerifier() {
-            @Override
-            public boolean verify(final String hostname, final SSLSession sslSession) {
-                return true;
-            }
-        });
-
-        TrustManager[] transManagers = {
-                new X509TrustManager() {
-                    @Override
-                    public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
-                    }
-
-                    @Override
-                    public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
-                    }
-
-                    @Override
-                    public X509Certificate[] getAcceptedIssuers() {
-                        return new X509Certificate[0];
-                    }
-                }
-        };
-
-        SSLContext sslcontext = SSLContext.getInstance("SSL");
-        sslcontext.init(null, transManagers, new SecureRandom());
-        connection.setSSLSocketFactory(sslcontext.getSocketFactory());
-
+        connection.setHostnameVerifier(HOSTNAME_VERIFIER);
+        connection.setSSLSocketFactory(getSSLSocketFactory());
         return connection;
     }
 
     /**
-     * コンテンツのサイズを計算する.
-     * @param dataMap データ一覧
-     * @param boundary バウンダリ
-     * @return コンテンツサイズ
-     * @throws IOException サイズの計算に失敗した場合に発生
+     * 勝手サーバ証明書を許諾するSSLSocketFactoryを取得する.
+     *
+     * @return SSLSocketFactoryのインスタンス
+     * @throws NoSuchAlgorithmException SSLの暗号化に失敗した場合に発生
+     * @throws KeyManagementException Keyの管理に失敗した場合の発生
      */
-    private int calcContentLength(final Map<String, Entity> dataMap, final String boundary) throws IOException {
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        int size = writeMultipart(out, dataMap, boundary, false);
-        return out.size() + size;
+    private static synchronized SSLSocketFactory getSSLSocketFactory() throws NoSuchAlgorithmException, KeyManagementException {
+        if (sSSLSocketFactory == null) {
+            TrustManager[] transManagers = {
+                    new X509TrustManager() {
+                        @Override
+                        public void checkClientTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+                        }
+
+                        @Override
+                        public void checkServerTrusted(final X509Certificate[] chain, final String authType) throws CertificateException {
+                        }
+
+                        @Override
+                        public X509Certificate[] getAcceptedIssuers() {
+                            return new X509Certificate[0];
+                        }
+                    }
+            };
+
+            SSLContext sslcontext = SSLContext.getInstance("SSL");
+            sslcontext.init(null, transManagers, new SecureRandom());
+            sSSLSocketFactory = sslcontext.getSocketFactory();
+        }
+        return sSSLSocketFactory;
     }
 
     /**
-     * マルチパートを指定したストリームに書き込む.
+     * 送信するボディのサイズを設定する.
      * <p>
-     * writeFlagがfalseの場合には、コンテンツのデータはストリームに書き込まない。<br>
-     * Content-Lengthのサイズを算出する時に使用します。
+     * サイズを指定しない場合、HttpURLConnectionはボディを全てメモリに溜めてから送信するため、
+     * 固定長のストリーミングモードを設定する。
+     * intの範囲を超える場合はチャンク形式で送信する。
      * </p>
-     * @param out マルチパートを書き込むストリーム
-     * @param dataMap マルチパートに書き込むデータ
-     * @param boundary マルチパートのバウンダリー
-     * @param writeFlag コンテンツデータを書き込むフラグ
-     * @return コンテンツデータサイズ
-     * @throws IOException ファイルのオープンやストリームの書き込みに失敗した場合に発生
+     * @param conn コネクション
+     * @param length ボディのサイズ
      */
-    private int writeMultipart(final OutputStream out, final Map<String, Entity> dataMap, final String boundary, final boolean writeFlag) throws IOException {
-        int contentLength = 0;
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
-        for (Map.Entry<String, Entity> data : dataMap.entrySet()) {
-            String key = data.getKey();
-            Entity val = data.getValue();
-
-            if (val instanceof StringEntity) {
-                writer.write(String.format("%s%s%s", TWO_HYPHEN, boundary, EOL));
-                writer.write(String.format("Content-Disposition: form-data; name=\"%s\"%s", key, EOL));
-                writer.write(EOL);
-                writer.write(((StringEntity) val).getContent());
-                writer.write(EOL);
-            } else if (val instanceof BinaryEntity) {
-                contentLength += (((BinaryEntity) val).getContent()).length;
-
-                writer.write(String.format("%s%s%s", TWO_HYPHEN, boundary, EOL));
-                writer.write(String.format("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"%s", key, ((BinaryEntity) val).getName(), EOL));
-                writer.write(String.format("Content-Type: application/octet-stream%s", EOL));
-                writer.write(String.format("Content-Transfer-Encoding: binary%s", EOL));
-                writer.write(EOL);
-                writer.flush();
-
-                if (writeFlag) {
-                    out.write(((BinaryEntity) val).getContent());
-                }
-
-                writer.write(EOL);
-            } else if (val instanceof FileEntity) {
-                File file = ((FileEntity) val).getContent();
-
-                contentLength += file.length();
-
-                writer.write(String.format("%s%s%s", TWO_HYPHEN, boundary, EOL));
-                writer.write(String.format("Content-Disposition: form-data; name=\"%s\"; filename=\"%s\"%s", key, file.getName(), EOL));
-                writer.write(String.format("Content-Type: application/octet-stream%s", EOL));
-                writer.write(String.format("Content-Transfer-Encoding: binary%s", EOL));
-                writer.write(EOL);
-                writer.flush();
-
-                if (writeFlag) {
-                    writeFile(out, file);
-                }
-
-                writer.write(EOL);
-            } else {
-                throw new IllegalArgumentException("data is not String or File. key=" + key + " value=" + val);
-            }
-            writer.flush();
+    private static void setStreamingMode(final HttpURLConnection conn, final long length) {
+        if (length <= Integer.MAX_VALUE) {
+            conn.setFixedLengthStreamingMode((int) length);
+        } else {
+            conn.setChunkedStreamingMode(BUF_SIZE);
         }
+    }
 
-        writer.write(String.format("%s%s%s%s", TWO_HYPHEN, boundary, TWO_HYPHEN, EOL));
-        writer.flush();
-
-        return contentLength;
+    /**
+     * ボディのサイズを取得する.
+     * @param body ボディ
+     * @return ボディのサイズ
+     */
+    private static long getContentLength(final Entity body) {
+        if (body instanceof BinaryEntity) {
+            return ((BinaryEntity) body).getContent().length;
+        } else if (body instanceof StringEntity) {
+            return ((StringEntity) body).getContent().getBytes().length;
+        } else if (body instanceof FileEntity) {
+            return ((FileEntity) body).getContent().length();
+        }
+        return -1;
     }
 
     /**
-     * 指定されたストリームにファイルデータを書き込む.
+     * ストリームからレスポンスのJSONを読み込みながらDConnectResponseMessageを生成する.
      * <p>
-     * 指定されたファイルが見つからない場合にはIOExceptionを発生する。
+     * コネクションを再利用できるように、JSONの後ろに残ったデータも読み捨ててからストリームを閉じる。
      * </p>
-     * @param out データを書き込むストリーム
-     * @param file 書き込みファイル
-     * @throws IOException 読み込むファイルが見つからない場合に発生
+     * @param in レスポンスのストリーム
+     * @return DConnectResponseMessageのインスタンス
+     * @throws IOException 読み込みに失敗した場合に発生
      */
-    private void writeFile(final OutputStream out, final File file) throws IOException {
-        byte[] buf = new byte[4096];
-        int len;
-        FileInputStream fis = null;
+    private DConnectResponseMessage readMessage(final InputStream in) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
         try {
-            fis = new FileInputStream(file);
-            while ((len = fis.read(buf)) > 0) {
-                out.write(buf, 0, len);
-                out.flush();
+            DConnectResponseMessage message = new DConnectResponseMessage(reader);
+            byte[] buf = new byte[BUF_SIZE];
+            while (in.read(buf) != -1) {
+                // 読み捨てる
             }
+            return message;
         } finally {
-            if (fis != null) {
-                try {
-                    fis.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
+            reader.close();
         }
     }
 
     /**
      * 指定したURIに接続を行い通信結果を返却する.
+     * <p>
+     * レスポンスを最後まで読み込めた場合はコネクションを切断せず、
+     * HttpURLConnectionのコネクションプールに戻して次のリクエストで再利用する。
+     * </p>
      *
      * @param method HTTPメソッド
      * @param uri 通信先のURI
@@ -269,7 +229,7 @@ class HttpDConnectSDK extends DConnectSDK {
      * @throws NoSuchAlgorithmException SSLの暗号化に失敗した場合に発生
      * @throws KeyManagementException Keyの管理に失敗した場合の発生
      */
-    private byte[] connect(final Method method, final String uri, final Map<String, String> headers, final Entity body)
+    private DConnectResponseMessage connect(final Method method, final String uri, final Map<String, String> headers, final Entity body)
             throws IOException, NoSuchAlgorithmException, KeyManagementException {
         if (DEBUG) {
             Log.d(TAG, "connect: method=" + method + " uri=" + uri);
@@ -283,8 +243,8 @@ class HttpDConnectSDK extends DConnectSDK {
             }
         }
 
-        String boundary = String.format("%x", new Random().hashCode());
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        boolean hasBody = body != null && (Method.POST.equals(method) || Method.PUT.equals(method));
+        boolean completed = false;
         HttpURLConnection conn = null;
         try {
             if (uri.startsWith("https://")) {
@@ -315,77 +275,62 @@ class HttpDConnectSDK extends DConnectSDK {
                 conn.setRequestProperty("Connection", "close");
             }
 
-            // マルチパートのContentTypeを設定する
-            if (body != null && body instanceof MultipartEntity) {
-                conn.setRequestProperty("Content-Type", String.format("multipart/form-data; boundary=%s", boundary));
-                conn.setFixedLengthStreamingMode(calcContentLength(((MultipartEntity) body).getContent(), boundary));
+            // マルチパートのContentTypeとサイズを設定する
+            MultipartWriter multipart = null;
+            if (body instanceof MultipartEntity) {
+                multipart = new MultipartWriter((MultipartEntity) body,
+                        String.format("%x", new Random().hashCode()));
+                conn.setRequestProperty("Content-Type", multipart.getContentType());
+                setStreamingMode(conn, multipart.getContentLength());
+            } else if (hasBody) {
+                setStreamingMode(conn, getContentLength(body));
             }
             conn.setUseCaches(false);
 
             conn.connect();
 
             // Bodyにデータが存在する場合には、データを書き込む
-            if (body != null && (Method.POST.equals(method) || Method.PUT.equals(method))) {
+            if (hasBody) {
                 OutputStream os = conn.getOutputStream();
-                if (body instanceof BinaryEntity) {
-                    os.write(((BinaryEntity) body).getContent());
-                } else if (body instanceof StringEntity) {
-                    os.write(((StringEntity) body).getContent().getBytes());
-                } else if (body instanceof FileEntity) {
-                    writeFile(os, ((FileEntity) body).getContent());
-                } else if (body instanceof MultipartEntity) {
-                    writeMultipart(os, ((MultipartEntity) body).getContent(), boundary, true);
+                try {
+                    if (body instanceof BinaryEntity) {
+                        os.write(((BinaryEntity) body).getContent());
+                    } else if (body instanceof StringEntity) {
+                        os.write(((StringEntity) body).getContent().getBytes());
+                    } else if (body instanceof FileEntity) {
+                        MultipartWriter.writeFile(os, ((FileEntity) body).getContent());
+                    } else if (multipart != null) {
+                        multipart.writeTo(os);
+                    }
+                    os.flush();
+                } finally {
+                    os.close();
                 }
-                os.flush();
-                os.close();
             }
 
+            InputStream in;
             int resp = conn.getResponseCode();
             if (resp == SUCCESS_RESPONSE_CODE) {
-                InputStream in = conn.getInputStream();
-                int len;
-                byte[] buf = new byte[BUF_SIZE];
-                while ((len = in.read(buf)) > 0) {
-                    baos.write(buf, 0, len);
-                }
-                in.close();
+                in = conn.getInputStream();
             } else {
                 if (DEBUG) {
                     Log.w(TAG, "Failed to connect the server. response=" + resp);
                 }
+                in = conn.getErrorStream();
+            }
 
-                InputStream in = conn.getErrorStream();
-                int len;
-                byte[] buf = new byte[BUF_SIZE];
-                while ((len = in.read(buf)) > 0) {
-                    baos.write(buf, 0, len);
-                }
-                in.close();
+            if (in == null) {
+                return new DConnectResponseMessage(DConnectMessage.ErrorCode.ACCESS_FAILED);
             }
+            DConnectResponseMessage message = readMessage(in);
+            completed = true;
+            return message;
         } finally {
-            if (conn != null) {
+            // 途中で失敗したコネクションは再利用できないので切断する
+            if (conn != null && !completed) {
                 conn.disconnect();
             }
         }
-        return baos.toByteArray();
-    }
-
-    /**
-     * 指定されたデータからDConnectResponseMessageを生成する.
-     * @param result 通信結果のデータ
-     * @return DConnectResponseMessageのインスタンス
-     */
-    private DConnectResponseMessage createMessage(final byte[] result) {
-        if (result == null) {
-            return new DConnectResponseMessage(DConnectMessage.ErrorCode.ACCESS_FAILED);
-        }
-        try {
-            return new DConnectResponseMessage(new String(result, "UTF-8"));
-        } catch (JSONException e) {
-            return createErrorMessage(DConnectMessage.ErrorCode.UNKNOWN.getCode(), e.getMessage());
-        } catch (UnsupportedEncodingException e) {
-            return createErrorMessage(DConnectMessage.ErrorCode.UNKNOWN.getCode(), e.getMessage());
-        }
     }
 
     @Override
@@ -400,7 +345,7 @@ class HttpDConnectSDK extends DConnectSDK {
         }
 
         try {
-            return createMessage(connect(method, uri.toString(), headers, body));
+            return connect(method, uri.toString(), headers, body);
         } catch (MalformedURLException e) {
             throw new IllegalArgumentException("uri is invalid.");
         } catch (SocketTimeoutException e) {
@@ -0,0 +1,258 @@
+/*
+ MultipartWriter.java
+ Copyright (c) 2017 NTT DOCOMO,INC.
+ Released under the MIT license
+ http://opensource.org/licenses/mit-license.php
+ */
+package org.deviceconnect.message;
+
+import org.deviceconnect.message.entity.BinaryEntity;
+import org.deviceconnect.message.entity.Entity;
+import org.deviceconnect.message.entity.FileEntity;
+import org.deviceconnect.message.entity.MultipartEntity;
+import org.deviceconnect.message.entity.StringEntity;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * マルチパートのボディを書き込むクラス.
+ * <p>
+ * 各パートのヘッダーだけを事前にバイト列に変換しておき、
+ * Content-Lengthはヘッダーとコンテンツのサイズの合計から算出する。
+ * コンテンツはバッファに溜めずにそのままストリームに書き込む。
+ * </p>
+ * @author NTT DOCOMO, INC.
+ */
+class MultipartWriter {
+    /**
+     * マルチパートのバウンダリーに付加するハイフンを定義.
+     */
+    private static final String TWO_HYPHEN = "--";
+
+    /**
+     * マルチパートの改行コードを定義.
+     */
+    private static final String EOL = "\r\n";
+
+    /**
+     * 改行コードのバイト列.
+     */
+    private static final byte[] EOL_BYTES = toBytes(EOL);
+
+    /**
+     * ファイルを読み込むバッファのサイズ.
+     */
+    private static final int BUF_SIZE = 8192;
+
+    /**
+     * マルチパートのバウンダリー.
+     */
+    private final String mBoundary;
+
+    /**
+     * 各パート.
+     */
+    private final List<Part> mParts = new ArrayList<>();
+
+    /**
+     * マルチパートの終端.
+     */
+    private final byte[] mTerminator;
+
+    /**
+     * コンストラクタ.
+     * @param entity マルチパートのデータ
+     * @param boundary マルチパートのバウンダリー
+     * @throws IllegalArgumentException マルチパートに未対応のデータが含まれている場合に発生
+     */
+    MultipartWriter(final MultipartEntity entity, final String boundary) {
+        mBoundary = boundary;
+        for (Map.Entry<String, Entity> data : entity.getContent().entrySet()) {
+            mParts.add(createPart(data.getKey(), data.getValue()));
+        }
+        mTerminator = toBytes(TWO_HYPHEN + boundary + TWO_HYPHEN + EOL);
+    }
+
+    /**
+     * Content-Typeを取得する.
+     * @return Content-Type
+     */
+    String getContentType() {
+        return "multipart/form-data; boundary=" + mBoundary;
+    }
+
+    /**
+     * マルチパートのボディのサイズを取得する.
+     * <p>
+     * ファイルの中身は読み込まずに、ファイルサイズから算出する。
+     * </p>
+     * @return ボディのサイズ
+     */
+    long getContentLength() {
+        long length = mTerminator.length;
+        for (Part part : mParts) {
+            length += part.mHeader.length + part.getContentLength() + EOL_BYTES.length;
+        }
+        return length;
+    }
+
+    /**
+     * マルチパートのボディをストリームに書き込む.
+     * @param out 書き込み先のストリーム
+     * @throws IOException ファイルの読み込みやストリームへの書き込みに失敗した場合に発生
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        for (Part part : mParts) {
+            out.write(part.mHeader);
+            part.writeContentTo(out);
+            out.write(EOL_BYTES);
+        }
+        out.write(mTerminator);
+    }
+
+    /**
+     * パートを作成する.
+     * @param key パートの名前
+     * @param val パートのデータ
+     * @return パート
+     */
+    private Part createPart(final String key, final Entity val) {
+        StringBuilder header = new StringBuilder();
+        header.append(TWO_HYPHEN).append(mBoundary).append(EOL);
+        if (val instanceof StringEntity) {
+            header.append("Content-Disposition: form-data; name=\"").append(key).append("\"").append(EOL);
+            header.append(EOL);
+            return new Part(toBytes(header.toString()), toBytes(((StringEntity) val).getContent()), null);
+        }
+
+        String fileName;
+        byte[] content = null;
+        File file = null;
+        if (val instanceof BinaryEntity) {
+            fileName = ((BinaryEntity) val).getName();
+            content = ((BinaryEntity) val).getContent();
+        } else if (val instanceof FileEntity) {
+            file = ((FileEntity) val).getContent();
+            fileName = file.getName();
+        } else {
+            throw new IllegalArgumentException("data is not String or File. key=" + key + " value=" + val);
+        }
+        header.append("Content-Disposition: form-data; name=\"").append(key)
+                .append("\"; filename=\"").append(fileName).append("\"").append(EOL);
+        header.append("Content-Type: application/octet-stream").append(EOL);
+        header.append("Content-Transfer-Encoding: binary").append(EOL);
+        header.append(EOL);
+        return new Part(toBytes(header.toString()), content, file);
+    }
+
+    /**
+     * 指定されたストリームにファイルデータを書き込む.
+     * <p>
+     * 指定されたファイルが見つからない場合にはIOExceptionを発生する。
+     * </p>
+     * @param out データを書き込むストリーム
+     * @param file 書き込みファイル
+     * @throws IOException 読み込むファイルが見つからない場合に発生
+     */
+    static void writeFile(final OutputStream out, final File file) throws IOException {
+        byte[] buf = new byte[BUF_SIZE];
+        int len;
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            while ((len = fis.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            try {
+                fis.close();
+            } catch (IOException e) {
+                // ignore.
+            }
+        }
+    }
+
+    /**
+     * 文字列をUTF-8のバイト列に変換する.
+     * @param value 文字列
+     * @return バイト列
+     */
+    private static byte[] toBytes(final String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * マルチパートの1つのパート.
+     */
+    private static class Part {
+        /**
+         * パートのヘッダー.
+         */
+        private final byte[] mHeader;
+
+        /**
+         * パートのコンテンツ. ファイルの場合はnull.
+         */
+        private final byte[] mContent;
+
+        /**
+         * パートのファイル. ファイル以外の場合はnull.
+         */
+        private final File mFile;
+
+        /**
+         * ファイルのサイズ.
+         * <p>
+         * Content-Lengthの算出後にファイルサイズが変わったことを検出するために保持する。
+         * </p>
+         */
+        private final long mFileLength;
+
+        /**
+         * コンストラクタ.
+         * @param header パートのヘッダー
+         * @param content パートのコンテンツ
+         * @param file パートのファイル
+         */
+        Part(final byte[] header, final byte[] content, final File file) {
+            mHeader = header;
+            mContent = content;
+            mFile = file;
+            mFileLength = file != null ? file.length() : 0;
+        }
+
+        /**
+         * コンテンツのサイズを取得する.
+         * @return コンテンツのサイズ
+         */
+        long getContentLength() {
+            return mFile != null ? mFileLength : mContent.length;
+        }
+
+        /**
+         * コンテンツをストリームに書き込む.
+         * @param out 書き込み先のストリーム
+         * @throws IOException ファイルの読み込みやストリームへの書き込みに失敗した場合に発生
+         */
+        void writeContentTo(final OutputStream out) throws IOException {
+            if (mFile != null) {
+                if (mFile.length() != mFileLength) {
+                    throw new IOException("File size has been changed. file=" + mFile);
+                }
+                writeFile(out, mFile);
+            } else {
+                out.write(mContent);
+            }
+        }
+    }
+}